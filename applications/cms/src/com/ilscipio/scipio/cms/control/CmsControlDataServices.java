@@ -1,15 +1,19 @@
 package com.ilscipio.scipio.cms.control;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import org.ofbiz.base.util.Debug;
 import org.ofbiz.base.util.UtilGenerics;
 import org.ofbiz.base.util.UtilMisc;
 import org.ofbiz.base.util.UtilValidate;
 import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.GenericEntityException;
+import org.ofbiz.entity.GenericValue;
 import org.ofbiz.entity.util.DistributedCacheClear;
 import org.ofbiz.service.DispatchContext;
 import org.ofbiz.service.ServiceUtil;
@@ -192,6 +196,66 @@ public abstract class CmsControlDataServices {
         return result;
     }
 
+    /**
+     * Invalidates the CMS output cache entries depending on the given records, after commit; invoked by entity ECAs
+     * on CMS page, template and content changes.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public static Map<String, Object> clearOutputCache(DispatchContext dctx, Map<String, Object> context) {
+        if (!CmsOutputCache.isEnabled()) {
+            return ServiceUtil.returnSuccess();
+        }
+        Delegator delegator = dctx.getDelegator();
+        String pageId = (String) context.get("pageId");
+        String pageTemplateId = (String) context.get("pageTemplateId");
+        String assetTemplateId = (String) context.get("assetTemplateId");
+        String contentId = (String) context.get("contentId");
+        String dataResourceId = (String) context.get("dataResourceId");
+        // Scripts are shared by any number of pages and templates, so script changes (other than associations) clear everything
+        boolean clearAll = Boolean.TRUE.equals(context.get("clearAll")) || (UtilValidate.isNotEmpty(context.get("scriptTemplateId"))
+                && UtilValidate.isEmpty(pageId) && UtilValidate.isEmpty(pageTemplateId) && UtilValidate.isEmpty(assetTemplateId));
+
+        Set<String> dependencies = new LinkedHashSet<>();
+        if (!clearAll) {
+            if (UtilValidate.isNotEmpty(pageId)) {
+                dependencies.add(CmsOutputCache.getPageDependency(pageId));
+            }
+            if (UtilValidate.isNotEmpty(pageTemplateId)) {
+                dependencies.add(CmsOutputCache.getPageTemplateDependency(pageTemplateId));
+            }
+            if (UtilValidate.isNotEmpty(assetTemplateId)) {
+                dependencies.add(CmsOutputCache.getAssetTemplateDependency(assetTemplateId));
+            }
+            if (UtilValidate.isNotEmpty(contentId)) {
+                dependencies.add(CmsOutputCache.getContentDependency(contentId));
+            }
+            // Data resource (and electronic text) changes affect the content records using them
+            if (UtilValidate.isEmpty(contentId) && UtilValidate.isNotEmpty(dataResourceId) && CmsOutputCache.hasContentDependencies()) {
+                try {
+                    List<GenericValue> contents = delegator.from("Content").select("contentId").where("dataResourceId", dataResourceId).queryList();
+                    for (GenericValue content : contents) {
+                        dependencies.add(CmsOutputCache.getContentDependency(content.getString("contentId")));
+                    }
+                } catch (GenericEntityException e) {
+                    Debug.logError(e, "Cms: Could not look up content of data resource [" + dataResourceId + "] for output cache invalidation", module);
+                    clearAll = true;
+                }
+            }
+        }
+        CmsOutputCache.invalidateAfterCommit(dependencies, clearAll);
+
+        if (Boolean.TRUE.equals(context.get("distribute")) && (clearAll || !dependencies.isEmpty() || UtilValidate.isNotEmpty(dataResourceId))) {
+            DistributedCacheClear dcc = delegator.getDistributedCacheClear();
+            if (dcc != null) {
+                // Other servers resolve data resources against their own index
+                Map<String, Object> distCtx = UtilMisc.toMap("pageId", pageId, "pageTemplateId", pageTemplateId, "assetTemplateId", assetTemplateId,
+                        "contentId", contentId, "dataResourceId", dataResourceId, "clearAll", clearAll, "distribute", false);
+                dcc.runDistributedService("cmsDistributedClearOutputCache", distCtx);
+            }
+        }
+        return ServiceUtil.returnSuccess();
+    }
+
     public static Map<String, Object> deleteAllMappingRecords(DispatchContext dctx, Map<String, Object> context) {
         Delegator delegator = dctx.getDelegator();
 
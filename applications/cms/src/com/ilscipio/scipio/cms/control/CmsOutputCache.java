@@ -0,0 +1,640 @@
+package com.ilscipio.scipio.cms.control;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilHttp;
+import org.ofbiz.base.util.UtilProperties;
+import org.ofbiz.base.util.UtilValidate;
+import org.ofbiz.base.util.cache.CacheListener;
+import org.ofbiz.base.util.cache.CacheWeighable;
+import org.ofbiz.base.util.cache.UtilCache;
+import org.ofbiz.entity.transaction.GenericTransactionException;
+import org.ofbiz.entity.transaction.TransactionUtil;
+import org.ofbiz.webapp.website.WebSiteWorker;
+
+import com.ilscipio.scipio.cms.CmsUtil;
+import com.ilscipio.scipio.cms.content.CmsPage;
+import com.ilscipio.scipio.cms.data.CmsObjectCache;
+import com.ilscipio.scipio.cms.template.CmsAssetTemplate;
+import com.ilscipio.scipio.cms.template.CmsPageTemplate;
+
+/**
+ * Rendered output cache for CMS pages (full page, {@link CmsScreenViewHandler}) and asset fragments
+ * ({@link CmsAssetTemplate.AssetTemplateRenderer}), with dependency-tracked invalidation.
+ * <p>Only live (non-preview) GET/HEAD requests are cached, and only when the session has none of the bypass session
+ * attributes (by default userLogin and shoppingCart) and the request has no parameters other than the configured
+ * key parameters. Keys vary by webSiteId, locale, host, request URI and key parameter values; fragment keys also by
+ * the asset content, attributes and context overrides. Only pages and asset templates listed in
+ * <code>render.outputCache.pages</code>/<code>render.outputCache.assets</code> (cms.properties) are cached; assets
+ * whose output depends on context set by page scripts must not be listed.</p>
+ * <p>Each entry records the CMS objects and content its render used (page, page template, asset templates and content
+ * registered with {@link #addContentDependency}), nested fragment dependencies included. Changes to those records
+ * invalidate the entries after commit through the <code>cmsClearOutputCache</code> entity ECAs, and on the other
+ * cluster servers through <code>cmsDistributedClearOutputCache</code>. Because the CMS data objects themselves are
+ * cached with a time expiry, renders started less than that expiry time after an invalidation of one of their
+ * dependencies are served but not stored. Templates and scripts can exclude the current render with
+ * {@link #setUncacheable(HttpServletRequest)}.</p>
+ * <p>Memory bounds are set in cache.properties on the <code>cms.render.output.page</code> and
+ * <code>cms.render.output.fragment</code> caches (e.g. with the bytes weigher).</p>
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public final class CmsOutputCache {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    private static final String TRACKER_ATTR = "_SCP_CMS_OUTCACHE_TRACKER_";
+    private static final String REQUEST_KEY_ATTR = "_SCP_CMS_OUTCACHE_REQKEY_";
+    private static final String NO_REQUEST_KEY = "";
+    private static final String SEP = "::";
+    private static final int PRUNE_INTERVAL = 1024;
+
+    private static final boolean enabled = UtilProperties.getPropertyAsBoolean("cms", "render.outputCache.enabled", false);
+    private static final Set<String> pages = readSet("render.outputCache.pages", "");
+    private static final Set<String> assets = readSet("render.outputCache.assets", "");
+    private static final Set<String> keyParams = readSet("render.outputCache.keyParams", "");
+    private static final Set<String> bypassSessionAttributes = readSet("render.outputCache.bypassSessionAttributes", "userLogin,shoppingCart");
+    private static final int maxEntrySize = UtilProperties.getPropertyAsInteger("cms", "render.outputCache.maxEntrySize", 1048576);
+    /** Time after an invalidation during which renders using the invalidated records are not stored (see class doc). */
+    private static final long storeDelay = readStoreDelay();
+
+    private static final UtilCache<String, CachedOutput> pageCache = UtilCache.createUtilCache("cms.render.output.page", 0, 0, 0, true);
+    private static final UtilCache<String, CachedOutput> fragmentCache = UtilCache.createUtilCache("cms.render.output.fragment", 0, 0, 0, true);
+
+    /** Dependency key to the (cache-prefixed) keys of the entries that depend on it. */
+    private static final Map<String, Set<String>> dependents = new ConcurrentHashMap<>();
+    /** Dependency key to the time of its last invalidation, for the store delay; pruned once older than the delay. */
+    private static final Map<String, Long> invalidationTimes = new ConcurrentHashMap<>();
+    private static volatile long allInvalidationTime = 0;
+    private static final AtomicLong storeCount = new AtomicLong();
+
+    static {
+        if (enabled) {
+            pageCache.addListener(new DependencyCleaner("P"));
+            fragmentCache.addListener(new DependencyCleaner("F"));
+            Debug.logInfo("Cms: Output cache enabled; pages: " + pages + "; assets: " + assets + "; key params: " + keyParams
+                    + "; store delay after invalidation: " + storeDelay + "ms", module);
+        }
+    }
+
+    private CmsOutputCache() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static boolean isPageCached(CmsPage page) {
+        return enabled && isListed(pages, page.getId(), page.getName());
+    }
+
+    public static boolean isAssetCached(CmsAssetTemplate assetTemplate) {
+        return enabled && isListed(assets, assetTemplate.getId(), assetTemplate.getName());
+    }
+
+    public static String getPageDependency(String pageId) {
+        return "CmsPage" + SEP + pageId;
+    }
+
+    public static String getPageTemplateDependency(String pageTemplateId) {
+        return "CmsPageTemplate" + SEP + pageTemplateId;
+    }
+
+    public static String getAssetTemplateDependency(String assetTemplateId) {
+        return "CmsAssetTemplate" + SEP + assetTemplateId;
+    }
+
+    public static String getContentDependency(String contentId) {
+        return "Content" + SEP + contentId;
+    }
+
+    /** Returns true if any cached entry depends on a Content record (used to skip DataResource lookups). */
+    public static boolean hasContentDependencies() {
+        for (String dependency : dependents.keySet()) {
+            if (dependency.startsWith("Content" + SEP)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Registers the asset template as a dependency of the current cached renders of the request, if any. */
+    public static void addAssetDependency(HttpServletRequest request, CmsAssetTemplate assetTemplate) {
+        if (assetTemplate != null && assetTemplate.getId() != null) {
+            addDependency(request, getAssetTemplateDependency(assetTemplate.getId()));
+        }
+    }
+
+    /**
+     * Registers the Content record as a dependency of the current cached renders of the request, if any; for content
+     * (such as media) whose changes affect the rendered output.
+     */
+    public static void addContentDependency(HttpServletRequest request, String contentId) {
+        if (UtilValidate.isNotEmpty(contentId)) {
+            addDependency(request, getContentDependency(contentId));
+        }
+    }
+
+    public static void addDependency(HttpServletRequest request, String dependency) {
+        Tracker tracker = (request != null) ? (Tracker) request.getAttribute(TRACKER_ATTR) : null;
+        if (tracker != null) {
+            tracker.dependencies.add(dependency);
+        }
+    }
+
+    /** Prevents the current cached renders of the request, if any, from being stored (e.g. for user-specific output). */
+    public static void setUncacheable(HttpServletRequest request) {
+        Tracker tracker = (request != null) ? (Tracker) request.getAttribute(TRACKER_ATTR) : null;
+        if (tracker != null) {
+            tracker.uncacheable = true;
+        }
+    }
+
+    /** Returns a cached render for the page, or null if the page is not cached for this request. */
+    public static Render getPageRender(HttpServletRequest request, HttpServletResponse response, CmsPage page) {
+        if (!isPageCached(page)) {
+            return null;
+        }
+        String requestKey = getRequestKey(request);
+        if (requestKey == null) {
+            return null;
+        }
+        Render render = new Render(pageCache, "P", page.getId() + SEP + requestKey, request, response);
+        render.dependencies.add(getPageDependency(page.getId()));
+        CmsPageTemplate pageTemplate = page.getTemplate();
+        if (pageTemplate != null) {
+            render.dependencies.add(getPageTemplateDependency(pageTemplate.getId()));
+            for (CmsAssetTemplate assetTemplate : pageTemplate.getAssetTemplatesByImportName().values()) {
+                render.dependencies.add(getAssetTemplateDependency(assetTemplate.getId()));
+            }
+        }
+        return render;
+    }
+
+    /**
+     * Returns a cached render for the asset, or null if the asset is not cached for this request; contentParts are the
+     * asset content and any attribute and context overrides, which are digested into the key.
+     */
+    public static Render getAssetRender(HttpServletRequest request, HttpServletResponse response, CmsAssetTemplate assetTemplate,
+                                        CmsPage page, Object... contentParts) {
+        if (request == null || !isAssetCached(assetTemplate)) {
+            return null;
+        }
+        String requestKey = getRequestKey(request);
+        if (requestKey == null) {
+            return null;
+        }
+        String contentDigest = digest(contentParts);
+        if (contentDigest == null) {
+            return null;
+        }
+        String pageId = (page != null) ? page.getId() : "-";
+        Render render = new Render(fragmentCache, "F", assetTemplate.getId() + SEP + pageId + SEP + requestKey + SEP + contentDigest, request, response);
+        render.dependencies.add(getAssetTemplateDependency(assetTemplate.getId()));
+        if (page != null) {
+            render.dependencies.add(getPageDependency(page.getId()));
+        }
+        return render;
+    }
+
+    /**
+     * Invalidates the entries depending on the given dependency keys, after the current transaction commits (or
+     * immediately if none).
+     */
+    public static void invalidateAfterCommit(Collection<String> dependencies, boolean all) {
+        if (!enabled || (!all && dependencies.isEmpty())) {
+            return;
+        }
+        try {
+            if (TransactionUtil.isTransactionInPlace()) {
+                TransactionUtil.registerSynchronization(new Synchronization() {
+                    @Override
+                    public void beforeCompletion() {
+                    }
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (status == Status.STATUS_COMMITTED) {
+                            invalidate(dependencies, all);
+                        }
+                    }
+                });
+                return;
+            }
+        } catch (GenericTransactionException e) {
+            Debug.logWarning("Cms: Could not register output cache invalidation for transaction commit; invalidating now: " + e.toString(), module);
+        }
+        invalidate(dependencies, all);
+    }
+
+    /** Invalidates the entries depending on the given dependency keys, or all entries. */
+    public static void invalidate(Collection<String> dependencies, boolean all) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (all) {
+            allInvalidationTime = now;
+            pageCache.clear();
+            fragmentCache.clear();
+            dependents.clear();
+            if (CmsUtil.verboseOn()) {
+                Debug.logInfo("Cms: Cleared output cache", module);
+            }
+            return;
+        }
+        int removed = 0;
+        for (String dependency : dependencies) {
+            invalidationTimes.put(dependency, now);
+            Set<String> refs = dependents.remove(dependency);
+            if (refs != null) {
+                for (String ref : refs) {
+                    if (getCache(ref).remove(ref.substring(1)) != null) {
+                        removed++;
+                    }
+                }
+            }
+        }
+        if (invalidationTimes.size() > PRUNE_INTERVAL) {
+            invalidationTimes.values().removeIf(time -> time + storeDelay < now);
+        }
+        if (CmsUtil.verboseOn()) {
+            Debug.logInfo("Cms: Invalidated " + removed + " output cache entries for " + dependencies, module);
+        }
+    }
+
+    /**
+     * Returns the request part of the cache keys, or null if the request is not cacheable; computed once per request.
+     */
+    static String getRequestKey(HttpServletRequest request) {
+        String requestKey = (String) request.getAttribute(REQUEST_KEY_ATTR);
+        if (requestKey == null) {
+            requestKey = makeRequestKey(request);
+            request.setAttribute(REQUEST_KEY_ATTR, (requestKey != null) ? requestKey : NO_REQUEST_KEY);
+        }
+        return NO_REQUEST_KEY.equals(requestKey) ? null : requestKey;
+    }
+
+    private static String makeRequestKey(HttpServletRequest request) {
+        if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+            return null;
+        }
+        if (hasBypassSessionAttributes(request)) {
+            return null;
+        }
+        Map<String, String[]> params = request.getParameterMap();
+        for (String name : params.keySet()) {
+            if (!keyParams.contains(name)) {
+                return null;
+            }
+        }
+        String requestUri = (String) request.getAttribute("javax.servlet.forward.request_uri");
+        if (requestUri == null) {
+            requestUri = request.getRequestURI();
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(WebSiteWorker.getWebSiteId(request)).append(SEP).append(UtilHttp.getLocale(request)).append(SEP)
+                .append(request.getScheme()).append("://").append(request.getServerName()).append(':').append(request.getServerPort())
+                .append(requestUri);
+        for (String name : new TreeMap<>(params).keySet()) {
+            for (String value : params.get(name)) {
+                sb.append(SEP).append(name).append('=').append(value);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean hasBypassSessionAttributes(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            for (String attr : bypassSessionAttributes) {
+                if (session.getAttribute(attr) != null) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static UtilCache<String, CachedOutput> getCache(String ref) {
+        return (ref.charAt(0) == 'P') ? pageCache : fragmentCache;
+    }
+
+    private static boolean isListed(Set<String> set, String id, String name) {
+        return set.contains("*") || (id != null && set.contains(id)) || (name != null && set.contains(name));
+    }
+
+    private static boolean isInvalidatedSince(Collection<String> dependencies, long startTime) {
+        if (allInvalidationTime + storeDelay >= startTime) {
+            return true;
+        }
+        for (String dependency : dependencies) {
+            Long time = invalidationTimes.get(dependency);
+            if (time != null && time + storeDelay >= startTime) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void store(UtilCache<String, CachedOutput> cache, String prefix, String key, CachedOutput output, long startTime) {
+        String ref = prefix + key;
+        // Index before put and re-check after, so a concurrent invalidation either finds the entry or is seen here
+        for (String dependency : output.dependencies) {
+            dependents.computeIfAbsent(dependency, k -> ConcurrentHashMap.newKeySet()).add(ref);
+        }
+        cache.put(key, output);
+        if (isInvalidatedSince(output.dependencies, startTime)) {
+            cache.remove(key);
+        }
+        if (storeCount.incrementAndGet() % PRUNE_INTERVAL == 0) {
+            pruneDependents();
+        }
+    }
+
+    /** Removes index references to entries evicted by the cache size or weight bounds (not reported to listeners). */
+    private static void pruneDependents() {
+        Iterator<Map.Entry<String, Set<String>>> it = dependents.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Set<String>> entry = it.next();
+            entry.getValue().removeIf(ref -> !getCache(ref).containsKey(ref.substring(1)));
+            if (entry.getValue().isEmpty()) {
+                dependents.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private static String digest(Object... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (Object part : parts) {
+            appendValue(sb, part);
+            sb.append('\u0000');
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            Debug.logError(e, "Cms: Could not digest output cache key", module);
+            return null;
+        }
+    }
+
+    /** Appends a deterministic representation of the value (maps sorted by key). */
+    private static void appendValue(StringBuilder sb, Object value) {
+        if (value instanceof Map) {
+            Map<String, Object> sorted = new TreeMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                sorted.put(String.valueOf(entry.getKey()), entry.getValue());
+            }
+            sb.append('{');
+            for (Map.Entry<String, Object> entry : sorted.entrySet()) {
+                sb.append(entry.getKey()).append('=');
+                appendValue(sb, entry.getValue());
+                sb.append(',');
+            }
+            sb.append('}');
+        } else if (value instanceof Collection) {
+            sb.append('[');
+            for (Object item : (Collection<?>) value) {
+                appendValue(sb, item);
+                sb.append(',');
+            }
+            sb.append(']');
+        } else {
+            sb.append(value);
+        }
+    }
+
+    private static Set<String> readSet(String name, String defaultValue) {
+        Set<String> set = new HashSet<>();
+        for (String value : UtilProperties.getPropertyValue("cms", name, defaultValue).split(",")) {
+            if (!value.trim().isEmpty()) {
+                set.add(value.trim());
+            }
+        }
+        return Collections.unmodifiableSet(set);
+    }
+
+    private static long readStoreDelay() {
+        long delay = 2000;
+        if (UtilProperties.getPropertyAsBoolean("cms", "cache.obj.global.allow", true)) {
+            for (String cacheName : new String[] { "cms.content.page.id", "cms.content.page.name", "cms.template.asset.id",
+                    "cms.template.asset.name", "cms.template.script.id", "cms.template.script.name" }) {
+                Integer expireTime = CmsObjectCache.readExpireTime(cacheName);
+                if (expireTime != null && expireTime > delay) {
+                    delay = expireTime;
+                }
+            }
+        }
+        return delay;
+    }
+
+    /**
+     * A cacheable page or fragment render: {@link #writeCached} on hit, otherwise {@link #begin}, render to the returned
+     * writer, then {@link #end}.
+     */
+    public static final class Render {
+        private final UtilCache<String, CachedOutput> cache;
+        private final String prefix;
+        private final String key;
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+        private final Set<String> dependencies = new LinkedHashSet<>();
+        private Tracker tracker;
+        private CaptureWriter captureWriter;
+        private long startTime;
+
+        private Render(UtilCache<String, CachedOutput> cache, String prefix, String key, HttpServletRequest request, HttpServletResponse response) {
+            this.cache = cache;
+            this.prefix = prefix;
+            this.key = key;
+            this.request = request;
+            this.response = response;
+        }
+
+        /** Writes the cached output if present, adding its dependencies to any enclosing render; returns true if written. */
+        public boolean writeCached(Writer out) throws IOException {
+            CachedOutput output = cache.get(key);
+            if (output == null) {
+                return false;
+            }
+            Tracker parent = (Tracker) request.getAttribute(TRACKER_ATTR);
+            if (parent != null) {
+                parent.dependencies.addAll(output.dependencies);
+            }
+            out.write(output.output);
+            return true;
+        }
+
+        /** Starts dependency tracking and returns the writer to render to, which captures the output. */
+        public Writer begin(Writer out) {
+            this.startTime = System.currentTimeMillis();
+            this.tracker = new Tracker((Tracker) request.getAttribute(TRACKER_ATTR));
+            this.tracker.dependencies.addAll(dependencies);
+            request.setAttribute(TRACKER_ATTR, tracker);
+            this.captureWriter = new CaptureWriter(out, maxEntrySize);
+            return captureWriter;
+        }
+
+        /** Ends tracking and stores the output if the render succeeded and is still cacheable; must always be called after begin. */
+        public void end(boolean success) {
+            Tracker parent = tracker.parent;
+            if (parent != null) {
+                parent.dependencies.addAll(tracker.dependencies);
+                parent.uncacheable |= tracker.uncacheable;
+            }
+            request.setAttribute(TRACKER_ATTR, parent);
+            if (!success || tracker.uncacheable || captureWriter.isOverflow()
+                    || (response != null && response.getStatus() != HttpServletResponse.SC_OK) || hasBypassSessionAttributes(request)) {
+                return;
+            }
+            if (isInvalidatedSince(tracker.dependencies, startTime)) {
+                return;
+            }
+            store(cache, prefix, key, new CachedOutput(captureWriter.getCaptured(), tracker.dependencies), startTime);
+        }
+    }
+
+    /** Dependencies of the current cached render of a request, linked to the enclosing (page) render. */
+    private static final class Tracker {
+        private final Tracker parent;
+        private final Set<String> dependencies = new HashSet<>();
+        private boolean uncacheable;
+
+        private Tracker(Tracker parent) {
+            this.parent = parent;
+        }
+    }
+
+    private static final class CachedOutput implements Serializable, CacheWeighable {
+        private static final long serialVersionUID = 1L;
+        private final String output;
+        private final List<String> dependencies;
+
+        private CachedOutput(String output, Collection<String> dependencies) {
+            this.output = output;
+            this.dependencies = new ArrayList<>(dependencies);
+        }
+
+        @Override
+        public long getCacheWeight() {
+            long weight = 64 + 2L * output.length();
+            for (String dependency : dependencies) {
+                weight += 48 + 2L * dependency.length();
+            }
+            return weight;
+        }
+    }
+
+    /** Writes through to the target writer while capturing the output, up to a maximum size. */
+    private static final class CaptureWriter extends Writer {
+        private final Writer out;
+        private final int maxSize;
+        private StringBuilder captured = new StringBuilder();
+
+        private CaptureWriter(Writer out, int maxSize) {
+            this.out = out;
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            out.write(cbuf, off, len);
+            if (captured != null) {
+                if (captured.length() + len > maxSize) {
+                    captured = null;
+                } else {
+                    captured.append(cbuf, off, len);
+                }
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            out.write(str, off, len);
+            if (captured != null) {
+                if (captured.length() + len > maxSize) {
+                    captured = null;
+                } else {
+                    captured.append(str, off, off + len);
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        boolean isOverflow() {
+            return captured == null;
+        }
+
+        String getCaptured() {
+            return captured.toString();
+        }
+    }
+
+    /** Removes the index references of entries removed from a cache. */
+    private static final class DependencyCleaner implements CacheListener<String, CachedOutput> {
+        private final String prefix;
+
+        private DependencyCleaner(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public void noteKeyRemoval(UtilCache<String, CachedOutput> cache, String key, CachedOutput oldValue) {
+            if (oldValue == null) {
+                return;
+            }
+            String ref = prefix + key;
+            for (String dependency : oldValue.dependencies) {
+                dependents.computeIfPresent(dependency, (k, refs) -> {
+                    refs.remove(ref);
+                    return refs.isEmpty() ? null : refs;
+                });
+            }
+        }
+
+        @Override
+        public void noteKeyAddition(UtilCache<String, CachedOutput> cache, String key, CachedOutput newValue) {
+        }
+
+        @Override
+        public void noteKeyUpdate(UtilCache<String, CachedOutput> cache, String key, CachedOutput newValue, CachedOutput oldValue) {
+        }
+    }
+}
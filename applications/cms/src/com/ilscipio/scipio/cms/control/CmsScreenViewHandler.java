@@ -410,10 +410,26 @@ public class CmsScreenViewHandler extends MacroScreenViewHandler implements View
             CmsControlUtil.checkSetNoCacheResponse(request, response);
         }
 
+        // SCIPIO: 3.0.0: Output cache (live renders only)
+        CmsOutputCache.Render outputCacheRender = (renderMode != CmsCallType.OFBIZ_PREVIEW) ?
+                CmsOutputCache.getPageRender(request, response, cmsPage) : null;
+        Writer origWriter = null;
+        boolean outputCacheSuccess = false;
         try {
+            if (outputCacheRender != null) {
+                if (outputCacheRender.writeCached(vrctx.renderWriter())) {
+                    if (CmsUtil.verboseOn()) {
+                        Debug.logInfo("Cms: Rendered page " + cmsPage.getLogIdRepr() + " from output cache" + CmsControlUtil.getReqLogIdDelimStr(request), module);
+                    }
+                    return true;
+                }
+                origWriter = vrctx.renderWriter();
+                vrctx.writer(outputCacheRender.begin(origWriter));
+            }
 
             // Main render invocation
             renderInvoker.invokeCmsRendering(vrctx, cmsPage, cmsView, webSiteId, renderMode);
+            outputCacheSuccess = true;
 
         // NOTE: 2016: this is never thrown from local cms renders, but leaving here for future use
 //        } catch (CmsCallHttpException e) {
@@ -441,6 +457,11 @@ public class CmsScreenViewHandler extends MacroScreenViewHandler implements View
                     " for view " + cmsView.getLogIdRepr() + " via CMS invocation: " + e.getMessage() + CmsControlUtil.getReqLogIdDelimStr(request), module);
             handleException(request, response, e, renderMode);
             return false; // Nothing can be sent after this
+        } finally {
+            if (origWriter != null) {
+                vrctx.writer(origWriter);
+                outputCacheRender.end(outputCacheSuccess);
+            }
         }
 
         return true;
@@ -25,6 +25,8 @@ import org.ofbiz.entity.util.EntityUtil;
 import org.ofbiz.webapp.control.RequestHandler;
 import org.ofbiz.webapp.control.WebAppConfigurationException;
 
+import com.ilscipio.scipio.cms.control.CmsOutputCache;
+
 public abstract class CmsMediaWorker {
 
     private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
@@ -215,9 +217,16 @@ public abstract class CmsMediaWorker {
         List<GenericValue> imageSizeDimensionList = UtilMisc.newList();
         List<Long> scpWidthList = UtilMisc.newList();
 
+        // SCIPIO: 3.0.0: The srcset is part of the rendered output, so it depends on the media and its variants
+        Set<String> variantContentIds = getVariantContentAssocContentIdTo(delegator, contentId);
+        CmsOutputCache.addContentDependency(request, contentId);
+        for (String variantContentId : variantContentIds) {
+            CmsOutputCache.addContentDependency(request, variantContentId);
+        }
+
         EntityListIterator contentDataResourceList = null;
         try {
-            contentDataResourceList = getMediaContentDataResourceViewTo(delegator, "IMAGE_OBJECT", getVariantContentAssocContentIdTo(delegator, contentId), null);
+            contentDataResourceList = getMediaContentDataResourceViewTo(delegator, "IMAGE_OBJECT", variantContentIds, null);
             GenericValue contentDataResource;
             Map<String, GenericValue> dataResourceBySizeIdMap = UtilMisc.newMap();
             while ((contentDataResource = contentDataResourceList.next()) != null) {
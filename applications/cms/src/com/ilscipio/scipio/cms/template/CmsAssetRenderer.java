@@ -4,6 +4,7 @@ import com.ilscipio.scipio.cms.CmsException;
 import com.ilscipio.scipio.cms.content.CmsPage;
 import com.ilscipio.scipio.cms.content.CmsPageContent;
 import com.ilscipio.scipio.cms.content.CmsPageContext;
+import com.ilscipio.scipio.cms.control.CmsOutputCache;
 import com.ilscipio.scipio.cms.template.ftl.CmsAssetDirective;
 import freemarker.core.Environment;
 import org.ofbiz.base.util.UtilGenerics;
@@ -468,8 +469,10 @@ public class CmsAssetRenderer {
                             new CmsAssetTemplate.AssetTemplateRenderer.AtRenderArgs(out, stackContext, pageContext,
                                     page, assetContent, earlyCtxVars, attrOvrdCtxVars, finalOvrdCtxVars, true));
                 } else if (mode == CmsAssetDirective.Mode.INCLUDE) {
+                    CmsOutputCache.addAssetDependency(pageContext.getRequest(), assetTemplate); // SCIPIO: 3.0.0
                     assetTemplate.getRenderer().includeTemplate(env);
                 } else if (mode == CmsAssetDirective.Mode.IMPORT) {
+                    CmsOutputCache.addAssetDependency(pageContext.getRequest(), assetTemplate); // SCIPIO: 3.0.0
                     assetTemplate.getRenderer().importTemplate(env, namespace);
                 } else {
                     throw new CmsException("error determining asset mode");
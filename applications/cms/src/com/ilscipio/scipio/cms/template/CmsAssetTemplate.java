@@ -1,5 +1,6 @@
 package com.ilscipio.scipio.cms.template;
 
+import java.io.IOException;
 import java.io.Writer;
 import java.util.HashMap;
 import java.util.List;
@@ -24,6 +25,7 @@ import com.ilscipio.scipio.cms.content.CmsPage;
 import com.ilscipio.scipio.cms.content.CmsPageContent;
 import com.ilscipio.scipio.cms.content.CmsPageContext;
 import com.ilscipio.scipio.cms.control.CmsControlUtil;
+import com.ilscipio.scipio.cms.control.CmsOutputCache;
 import com.ilscipio.scipio.cms.data.CmsDataObject;
 import com.ilscipio.scipio.cms.data.CmsEntityVisit;
 import com.ilscipio.scipio.cms.data.CmsEntityVisit.CmsEntityVisitor;
@@ -523,7 +525,36 @@ public class CmsAssetTemplate extends CmsMasterComplexTemplate<CmsAssetTemplate,
             if (!renderArgs.hasTxTimeout()) {
                 renderArgs.setTxTimeoutExdr(this.getCmsTemplate().getTxTimeoutExdr());
             }
-            return super.processAndRender(renderArgs);
+            // SCIPIO: 3.0.0: Fragment output cache (live renders only)
+            CmsPageContext pageContext = renderArgs.getPageContext();
+            if (pageContext == null || pageContext.isPreview() || pageContext.getRequest() == null) {
+                return super.processAndRender(renderArgs);
+            }
+            CmsOutputCache.addAssetDependency(pageContext.getRequest(), getCmsTemplate());
+            CmsOutputCache.Render outputCacheRender = CmsOutputCache.getAssetRender(pageContext.getRequest(), pageContext.getResponse(),
+                    getCmsTemplate(), renderArgs.getPage(), renderArgs.getContent(), renderArgs.getEarlyCtxVars(),
+                    renderArgs.getAttrOvrdCtxVars(), renderArgs.getFinalOvrdCtxVars());
+            if (outputCacheRender == null) {
+                return super.processAndRender(renderArgs);
+            }
+            try {
+                if (outputCacheRender.writeCached(renderArgs.getOut())) {
+                    return null;
+                }
+            } catch (IOException e) {
+                throw new CmsException("Error writing cached asset output: " + e.getMessage(), e);
+            }
+            Writer out = renderArgs.getOut();
+            renderArgs.setOut(outputCacheRender.begin(out));
+            boolean success = false;
+            try {
+                Object result = super.processAndRender(renderArgs);
+                success = true;
+                return result;
+            } finally {
+                renderArgs.setOut(out);
+                outputCacheRender.end(success);
+            }
         }
 
         @Override
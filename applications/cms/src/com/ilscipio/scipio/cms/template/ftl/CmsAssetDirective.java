@@ -19,6 +19,7 @@ import com.ilscipio.scipio.cms.CmsException;
 import com.ilscipio.scipio.cms.content.CmsPage;
 import com.ilscipio.scipio.cms.content.CmsPageContent;
 import com.ilscipio.scipio.cms.content.CmsPageContext;
+import com.ilscipio.scipio.cms.control.CmsOutputCache;
 import com.ilscipio.scipio.cms.template.CmsAssetTemplate;
 import com.ilscipio.scipio.cms.template.CmsAssetTemplate.AssetTemplateRenderer.AtRenderArgs;
 import com.ilscipio.scipio.cms.template.CmsPageTemplate;
@@ -275,8 +276,10 @@ public class CmsAssetDirective implements TemplateDirectiveModel, Serializable {
                     assetTemplate.getRenderer().processAndRender(new AtRenderArgs(out, context, pageContext, page,
                             assetContent, earlyCtxVars, attrOvrdCtxVars, finalOvrdCtxVars, true));
                 } else if (mode == Mode.INCLUDE) {
+                    CmsOutputCache.addAssetDependency(pageContext.getRequest(), assetTemplate); // SCIPIO: 3.0.0
                     assetTemplate.getRenderer().includeTemplate(env);
                 } else if (mode == Mode.IMPORT) {
+                    CmsOutputCache.addAssetDependency(pageContext.getRequest(), assetTemplate); // SCIPIO: 3.0.0
                     assetTemplate.getRenderer().importTemplate(env, namespace);
                 } else {
                     throw new CmsException("error determining asset mode");
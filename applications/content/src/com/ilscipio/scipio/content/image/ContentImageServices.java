@@ -25,17 +25,28 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
 import com.ilscipio.scipio.common.util.fileType.FileTypeUtil;
 import org.apache.commons.io.FileUtils;
@@ -49,6 +60,7 @@ import org.ofbiz.base.util.UtilProperties;
 import org.ofbiz.base.util.UtilValidate;
 import org.ofbiz.base.util.string.FlexibleStringExpander;
 import org.ofbiz.common.image.ImageProfile;
+import org.ofbiz.common.image.ImageScalePipeline;
 import org.ofbiz.common.image.ImageTransform;
 import org.ofbiz.common.image.ImageVariantConfig;
 import org.ofbiz.common.image.storer.ImageStorers;
@@ -87,6 +99,8 @@ public abstract class ContentImageServices {
     // SCIPIO: FIXME?: don't really want this dependency, but not major issue
     private static final String resourceProduct = "ProductErrorUiLabels";
     private static final Locale LOG_LANG = Debug.getLogLocale();
+    /** Manifest signature suffix of variants omitted by upscale mode OMIT (SCIPIO: 3.0.0). */
+    private static final String OMITTED_SIGNATURE_SUFFIX = "|omitted";
 
     protected ContentImageServices() {
     }
@@ -248,6 +262,66 @@ public abstract class ContentImageServices {
                 bufImgPath = imageServerPath + "/" + expandImageFnFmt(imageOrigFnFmtExpander, origSizeType, imagePathArgs) + "." + imgExtension;
             }
 
+            // SCIPIO: 3.0.0: Skip the variants whose original checksum and settings match the original's manifest; if no
+            // variant needs producing, the original is not even decoded
+            Boolean skipUnchangedObj = (Boolean) context.get("skipUnchanged");
+            boolean skipUnchanged = (skipUnchangedObj != null) ? skipUnchangedObj : ImageScalePipeline.isSkipUnchanged();
+            ImageScalePipeline.Manifest manifest = null;
+            Map<String, String> variantSignatures = new HashMap<>();
+            Set<String> unchangedSizeTypes = new HashSet<>();
+            if (skipUnchanged) {
+                try {
+                    manifest = ImageScalePipeline.Manifest.read(new File(bufImgPath));
+                } catch (IOException e) {
+                    Debug.logWarning(logPrefix + "Could not checksum original image [" + bufImgPath + "]; not skipping unchanged variants: " + e.toString(), module);
+                }
+                if (manifest != null) {
+                    String profileName = (imageProfile != null) ? imageProfile.getName() : null;
+                    for (String sizeType : sizeTypeList) {
+                        ImageVariantConfig.VariantInfo variantInfo = imgPropCfg.getVariant(sizeType);
+                        if (variantInfo == null) {
+                            continue;
+                        }
+                        String newFileFullLoc = imageServerPath + "/" + expandImageFnFmt(imageFnFmtExpander, sizeType, imagePathArgs)
+                                + "." + getVariantFileType(delegator, variantInfo, imgExtension);
+                        String signature = ImageScalePipeline.getVariantSignature(newFileFullLoc, variantInfo.getWidth(), variantInfo.getHeight(),
+                                variantInfo.getUpscaleMode(), profileName, scalingOptions, imageWriteOptions);
+                        variantSignatures.put(sizeType, signature);
+                        if (manifest.isUnchanged(sizeType, signature + OMITTED_SIGNATURE_SUFFIX)
+                                || (manifest.isUnchanged(sizeType, signature) && new File(newFileFullLoc).isFile())) {
+                            unchangedSizeTypes.add(sizeType);
+                        } else {
+                            manifest.remove(sizeType);
+                        }
+                    }
+                    int[] origSize = (!copyOrig && !unchangedSizeTypes.isEmpty() && unchangedSizeTypes.size() == variantSignatures.size())
+                            ? readImageSize(new File(bufImgPath)) : null;
+                    if (origSize != null) {
+                        Map<String, Map<String, Object>> imgInfoMap = new LinkedHashMap<>();
+                        Map<String, Object> sizeTypeInfo = new LinkedHashMap<>();
+                        sizeTypeInfo.put("sizeType", "original");
+                        if (imageOrigUrl != null) {
+                            sizeTypeInfo.put("url", imageOrigUrl);
+                        }
+                        sizeTypeInfo.put("variantInfo", new ImageVariantConfig.VariantInfo("original", origSize[0], origSize[1], null, null));
+                        sizeTypeInfo.put("width", origSize[0]);
+                        sizeTypeInfo.put("height", origSize[1]);
+                        sizeTypeInfo.put("copyOrig", copyOrig);
+                        sizeTypeInfo.put("mimeTypeId", origMimeTypeId);
+                        imgInfoMap.put("original", sizeTypeInfo);
+                        String msg = "Skipped " + unchangedSizeTypes.size() + " unchanged variants of image " + ContentImageWorker.formatLogInfoPath(bufImgPath);
+                        Debug.logInfo(logPrefix + msg, module);
+                        Map<String, Object> result = ServiceUtil.returnSuccess(msg);
+                        result.put("imageUrlMap", new LinkedHashMap<String, String>());
+                        result.put("imageInfoMap", imgInfoMap);
+                        result.put("successCount", 0);
+                        result.put("failCount", 0);
+                        result.put("skipCount", unchangedSizeTypes.size());
+                        return result;
+                    }
+                }
+            }
+
             /* get original BUFFERED IMAGE */
             Map<String, Object> resultBufImgMap = ImageTransform.getBufferedImage(bufImgPath, locale);
 
@@ -375,16 +449,24 @@ public abstract class ContentImageServices {
                 }
 
                 /* Scale image for each size from ImageProperties.xml */
+                // SCIPIO: 3.0.0: Variants are now prepared here in order, then scaled and written on the ImageScalePipeline
+                // pool, largest first, each scaled from the smallest larger variant already scaled (cascade) instead of
+                // always from the original; results are then registered in the original order as before.
                 int successCount = 0;
                 int scaleErrorCount = 0;
                 int writeErrorCount = 0;
-                int skipCount = 0; // TODO: currently implemented by caller
+                int skipCount = 0;
+                List<ScaleVariant> variants = new ArrayList<>();
                 for (String sizeType : sizeTypeList) {
                     ImageVariantConfig.VariantInfo variantInfo = imgPropCfg.getVariant(sizeType);
                     if (variantInfo == null) {
                         Debug.logError(logPrefix+"sizeType " + sizeType + " is not part of ImageProperties.xml; ignoring", module);
                         continue;
                     }
+                    if (unchangedSizeTypes.contains(sizeType)) {
+                        skipCount++;
+                        continue;
+                    }
 
                     boolean keepOrig = false;
                     Integer targetWidth = variantInfo.getWidth();
@@ -394,6 +476,9 @@ public abstract class ContentImageServices {
                             keepOrig = true;
                         } else if (targetWidth > (int) imgWidth && targetHeight > (int) imgHeight) {
                             if (variantInfo.getUpscaleMode() == ImageVariantConfig.VariantInfo.UpscaleMode.OMIT) {
+                                if (manifest != null) {
+                                    manifest.put(sizeType, variantSignatures.get(sizeType) + OMITTED_SIGNATURE_SUFFIX);
+                                }
                                 continue;
                             } else if (variantInfo.getUpscaleMode() == ImageVariantConfig.VariantInfo.UpscaleMode.OFF) {
                                 keepOrig = true;
@@ -401,140 +486,150 @@ public abstract class ContentImageServices {
                         }
                     }
 
-                    // Scale
-                    Map<String, Object> resultScaleImgMap = Collections.emptyMap();
+                    // Target dimensions, computed from the original so cascaded variants get the same size as direct ones
+                    ScaleVariant variant = new ScaleVariant(sizeType, variantInfo, keepOrig);
                     if (!keepOrig) {
-                        try {
-                            resultScaleImgMap = ImageTransform.scaleImage(bufImg, imgHeight, imgWidth, targetHeight.doubleValue(), targetWidth.doubleValue(), locale, scalingOptions);
-                            if (!ServiceUtil.isSuccess(resultScaleImgMap)) {
-                                String errMsg = "Error scaling image for file [" + bufImgPath + "] sizeType [" + sizeType + "] from [" + imgWidth + "x" + imgHeight + "] to [" + targetWidth + "x" + targetHeight + "]"
-                                        + ": " + ServiceUtil.getErrorMessage(resultScaleImgMap);
-                                if (colorSpaceType == ColorSpace.TYPE_GRAY || colorSpaceType == ColorSpace.TYPE_CMYK) {
-                                    errMsg += "; aborting resizing due to possibly unsupported image colorspace [" +
-                                            (colorSpaceType == ColorSpace.TYPE_GRAY ? "TYPE_GRAY" : "TYPE_CMYK") + "]";
-                                    // SCIPIO: 2.1.0: These image types typically fail scaling
-                                    Debug.logError(logPrefix + errMsg, module);
-                                    scaleErrorCount++;
-                                    return UtilMisc.put(ServiceUtil.returnError(errMsg), "reason", "unsupported-colorspace");
-                                } else {
-                                    Debug.logError(logPrefix + errMsg, module);
-                                    scaleErrorCount++;
-                                }
-                                continue;
-                            }
-                        } catch(Exception e) {
+                        Map<String, Object> scaleDimMap = ImageTransform.getScaleImageDimensions(imgHeight, imgWidth, targetHeight.doubleValue(), targetWidth.doubleValue(), locale);
+                        if (!ServiceUtil.isSuccess(scaleDimMap)) {
                             String errMsg = "Error scaling image for file [" + bufImgPath + "] sizeType [" + sizeType + "] from [" + imgWidth + "x" + imgHeight + "] to [" + targetWidth + "x" + targetHeight + "]"
-                                    + ": " + e.toString();
-                            Debug.logError(logPrefix + errMsg, module);
-                            scaleErrorCount++;
+                                    + ": " + ServiceUtil.getErrorMessage(scaleDimMap);
+                            if (colorSpaceType == ColorSpace.TYPE_GRAY || colorSpaceType == ColorSpace.TYPE_CMYK) {
+                                errMsg += "; aborting resizing due to possibly unsupported image colorspace [" +
+                                        (colorSpaceType == ColorSpace.TYPE_GRAY ? "TYPE_GRAY" : "TYPE_CMYK") + "]";
+                                // SCIPIO: 2.1.0: These image types typically fail scaling
+                                Debug.logError(logPrefix + errMsg, module);
+                                scaleErrorCount++;
+                                return UtilMisc.put(ServiceUtil.returnError(errMsg), "reason", "unsupported-colorspace");
+                            } else {
+                                Debug.logError(logPrefix + errMsg, module);
+                                scaleErrorCount++;
+                            }
                             continue;
                         }
+                        variant.width = (Integer) scaleDimMap.get("width");
+                        variant.height = (Integer) scaleDimMap.get("height");
+                    } else {
+                        variant.width = (int) imgWidth;
+                        variant.height = (int) imgHeight;
                     }
 
-                    /* Write the new image file */
-                    if (keepOrig || "success".equals(resultScaleImgMap.get("responseMessage"))) {
-                        BufferedImage bufNewImg = (BufferedImage) resultScaleImgMap.get("bufferedImage");
-
-                        // Build full path for the new scaled image
-                        //imageFnToUse = sizeType + imageFnToUse.substring(imageFnToUse.lastIndexOf(".")); // BUG
-                        String newFileLocation = expandImageFnFmt(imageFnFmtExpander, sizeType, imagePathArgs);
-                        targetDirectory = imageServerPath + "/" + getExpandedFnFmtDirPrefix(newFileLocation);
-                        try {
-                            // Create the new directory
-                            File targetDir = new File(targetDirectory);
-                            if (!targetDir.exists()) {
-                                boolean created = targetDir.mkdirs();
-                                if (!created) {
-                                    Debug.logError(logPrefix+UtilProperties.getMessage(resourceProduct, "ScaleImage.unable_to_create_target_directory", LOG_LANG) + " - " + targetDirectory, module);
-                                    return ServiceUtil.returnError(UtilProperties.getMessage(resourceProduct, "ScaleImage.unable_to_create_target_directory", locale) + " - " + targetDirectory);
-                                }
-                            } else if (deleteOld) {
-                            // TODO?: how do this here?
-//                            // Delete existing image files
-//                            // Images aren't ordered by productId (${location}/${viewtype}/${sizetype}/${id}) !!! BE CAREFUL !!!
-//                             if (newFileLocation.endsWith("/" + "id-FIXME")) {
-//                                try {
-//                                    File[] files = targetDir.listFiles();
-//                                    for (File file : files) {
-//                                        if (file.isFile() && file.getName().startsWith("id-FIXME")) {
-//                                            file.delete();
-//                                        }
+                    // Build full path for the new scaled image
+                    //imageFnToUse = sizeType + imageFnToUse.substring(imageFnToUse.lastIndexOf(".")); // BUG
+                    String newFileLocation = expandImageFnFmt(imageFnFmtExpander, sizeType, imagePathArgs);
+                    targetDirectory = imageServerPath + "/" + getExpandedFnFmtDirPrefix(newFileLocation);
+                    try {
+                        // Create the new directory
+                        File targetDir = new File(targetDirectory);
+                        if (!targetDir.exists()) {
+                            boolean created = targetDir.mkdirs();
+                            if (!created) {
+                                Debug.logError(logPrefix+UtilProperties.getMessage(resourceProduct, "ScaleImage.unable_to_create_target_directory", LOG_LANG) + " - " + targetDirectory, module);
+                                return ServiceUtil.returnError(UtilProperties.getMessage(resourceProduct, "ScaleImage.unable_to_create_target_directory", locale) + " - " + targetDirectory);
+                            }
+                        } else if (deleteOld) {
+                        // TODO?: how do this here?
+//                        // Delete existing image files
+//                        // Images aren't ordered by productId (${location}/${viewtype}/${sizetype}/${id}) !!! BE CAREFUL !!!
+//                         if (newFileLocation.endsWith("/" + "id-FIXME")) {
+//                            try {
+//                                File[] files = targetDir.listFiles();
+//                                for (File file : files) {
+//                                    if (file.isFile() && file.getName().startsWith("id-FIXME")) {
+//                                        file.delete();
 //                                    }
-//                                } catch (SecurityException e) {
-//                                    Debug.logError(e, logPrefix+e.getMessage(), module);
 //                                }
+//                            } catch (SecurityException e) {
+//                                Debug.logError(e, logPrefix+e.getMessage(), module);
 //                            }
-                            }
-                        } catch (Exception e) {
-                            Debug.logError(e, logPrefix+"Unexpected error during directory creation or file deletion: " + e.getMessage(), module);
-                            return ServiceUtil.returnError(UtilProperties.getMessage(resourceProduct, "ScaleImage.error_occurs_during_writing", locale));
+//                        }
+                        }
+                    } catch (Exception e) {
+                        Debug.logError(e, logPrefix+"Unexpected error during directory creation or file deletion: " + e.getMessage(), module);
+                        return ServiceUtil.returnError(UtilProperties.getMessage(resourceProduct, "ScaleImage.error_occurs_during_writing", locale));
+                    }
+
+                    // write new image
+                    String targetFileType = getVariantFileType(delegator, variantInfo, imgExtension);
+                    String mimeTypeId = origMimeTypeId;
+                    // SCIPIO: 2020-09: Support for specific storage format
+                    if (variantInfo.getFormat() != null) {
+                        mimeTypeId = null;
+                        GenericValue fileExt = EntityQuery.use(delegator).from("FileExtension").where("fileExtensionId", targetFileType).cache().queryOne();
+                        if (fileExt == null) {
+                            Debug.logWarning(logPrefix+"Could not find mimeTypeId for file extension [" + targetFileType + "]", module);
+                        } else {
+                            mimeTypeId = fileExt.getString("mimeTypeId");
                         }
+                    }
+                    variant.targetFileType = targetFileType;
+                    variant.mimeTypeId = mimeTypeId;
+                    variant.newFileLocExt = newFileLocation + "." + targetFileType;
+                    variant.newFileFullLoc = imageServerPath + "/" + variant.newFileLocExt;
+                    variant.copyOrig = keepOrig && Objects.equals(targetFileType, imgExtension);
+                    variants.add(variant);
+                }
 
-                        // write new image
-                        String targetFileType = imgExtension;
-                        String mimeTypeId = origMimeTypeId;
-                        // SCIPIO: 2020-09: Support for specific storage format
-                        if (variantInfo != null && variantInfo.getFormat() != null) {
-                            targetFileType = variantInfo.resolveFormatExt(delegator);
-                            mimeTypeId = null;
-                            GenericValue fileExt = EntityQuery.use(delegator).from("FileExtension").where("fileExtensionId", targetFileType).cache().queryOne();
-                            if (fileExt == null) {
-                                Debug.logWarning(logPrefix+"Could not find mimeTypeId for file extension [" + targetFileType + "]", module);
-                            } else {
-                                mimeTypeId = fileExt.getString("mimeTypeId");
-                            }
+                // Scale and write (see ScaleVariant)
+                scheduleScaleVariants(variants, bufImg, new File(bufImgPath), locale, scalingOptions,
+                        (imageProfile != null) ? imageProfile.getName() : null, imageWriteOptions, delegator);
+
+                for (ScaleVariant variant : variants) {
+                    String sizeType = variant.sizeType;
+                    Integer targetWidth = variant.variantInfo.getWidth();
+                    Integer targetHeight = variant.variantInfo.getHeight();
+                    Throwable scaleError = variant.getScaleError();
+                    if (scaleError != null) {
+                        String errMsg = "Error scaling image for file [" + bufImgPath + "] sizeType [" + sizeType + "] from [" + imgWidth + "x" + imgHeight + "] to [" + targetWidth + "x" + targetHeight + "]"
+                                + ": " + scaleError.toString();
+                        Debug.logError(logPrefix + errMsg, module);
+                        scaleErrorCount++;
+                        continue;
+                    }
+                    Throwable writeError = variant.getWriteError();
+                    if (writeError != null) {
+                        if (variant.copyOrig) {
+                            Debug.logError(writeError, logPrefix + UtilProperties.getMessage(resourceProduct, "ScaleImage.error_occurs_during_writing", LOG_LANG) + ": " + writeError.getMessage(), module);
+                            return ServiceUtil.returnError(UtilProperties.getMessage(resourceProduct, "ScaleImage.error_occurs_during_writing", locale));
                         }
-                        String newFileLocExt = newFileLocation + "." + targetFileType;
-                        String newFileFullLoc = imageServerPath + "/" + newFileLocExt;
-                        if (keepOrig && Objects.equals(targetFileType, imgExtension)) {
-                            try {
-                                FileUtils.copyFile(new File(bufImgPath), new File(newFileFullLoc));
-                            } catch (IOException e) {
-                                Debug.logError(e, logPrefix + UtilProperties.getMessage(resourceProduct, "ScaleImage.error_occurs_during_writing", LOG_LANG) + ": " + e.getMessage(), module);
-                                return ServiceUtil.returnError(UtilProperties.getMessage(resourceProduct, "ScaleImage.error_occurs_during_writing", locale));
-                            }
+                        String errMsg = "Error writing image for file [" + bufImgPath + "] sizeType [" + sizeType + "] from [" + imgWidth + "x" + imgHeight + "] to [" + targetWidth + "x" + targetHeight + "]"
+                                + ": " + writeError.toString();
+                        if (colorSpaceType == ColorSpace.TYPE_GRAY || colorSpaceType == ColorSpace.TYPE_CMYK) {
+                            errMsg += "; aborting write due to possibly unsupported image colorspace [" +
+                                    (colorSpaceType == ColorSpace.TYPE_GRAY ? "TYPE_GRAY" : "TYPE_CMYK") + "]";
+                            // SCIPIO: 2.1.0: These image types typically fail writing
+                            Debug.logError(logPrefix + errMsg, module);
+                            writeErrorCount++;
+                            return UtilMisc.put(ServiceUtil.returnError(errMsg), "reason", "unsupported-colorspace");
                         } else {
-                            try {
-                                ImageStorers.write(keepOrig ? bufImg : bufNewImg, targetFileType, new File(newFileFullLoc),
-                                        (imageProfile != null) ? imageProfile.getName() : null, imageWriteOptions, delegator); // SCIPIO: ImageIO->ImageStorers
-                                successCount++;
-                            } catch (Exception e) {
-                                String errMsg = "Error writing image for file [" + bufImgPath + "] sizeType [" + sizeType + "] from [" + imgWidth + "x" + imgHeight + "] to [" + targetWidth + "x" + targetHeight + "]"
-                                        + ": " + e.toString();
-                                if (colorSpaceType == ColorSpace.TYPE_GRAY || colorSpaceType == ColorSpace.TYPE_CMYK) {
-                                    errMsg += "; aborting write due to possibly unsupported image colorspace [" +
-                                            (colorSpaceType == ColorSpace.TYPE_GRAY ? "TYPE_GRAY" : "TYPE_CMYK") + "]";
-                                    // SCIPIO: 2.1.0: These image types typically fail writing
-                                    Debug.logError(logPrefix + errMsg, module);
-                                    writeErrorCount++;
-                                    return UtilMisc.put(ServiceUtil.returnError(errMsg), "reason", "unsupported-colorspace");
-                                } else {
-                                    Debug.logError(logPrefix + errMsg, module);
-                                    writeErrorCount++;
-                                    continue;
-                                }
-                            }
+                            Debug.logError(logPrefix + errMsg, module);
+                            writeErrorCount++;
+                            continue;
                         }
+                    }
+                    if (!variant.copyOrig) {
+                        successCount++;
+                    }
+                    if (manifest != null) {
+                        manifest.put(sizeType, variantSignatures.get(sizeType));
+                    }
 
-                        // Save each Url
-                        String imageUrl = imageUrlPrefixPrefix + imageUrlPrefix + "/" + newFileLocExt;
-                        imgUrlMap.put(sizeType, imageUrl);
+                    // Save each Url
+                    String imageUrl = imageUrlPrefixPrefix + imageUrlPrefix + "/" + variant.newFileLocExt;
+                    imgUrlMap.put(sizeType, imageUrl);
 
-                        // SCIPIO
-                        Map<String, Object> sizeTypeInfo = new LinkedHashMap<>();
-                        sizeTypeInfo.put("sizeType", sizeType);
-                        sizeTypeInfo.put("url", imageUrl);
-                        sizeTypeInfo.put("variantInfo", variantInfo);
-                        sizeTypeInfo.put("width", keepOrig ? (int) imgWidth : bufNewImg.getWidth());
-                        sizeTypeInfo.put("height", keepOrig ? (int) imgHeight : bufNewImg.getHeight());
-                        sizeTypeInfo.put("mimeTypeId", mimeTypeId);
-                        imgInfoMap.put(sizeType, sizeTypeInfo);
-                    } else {
-                        // SCIPIO: new
-                        Debug.logError(logPrefix+ServiceUtil.getErrorMessage(resultScaleImgMap), module);
-                        return ServiceUtil.returnError(ServiceUtil.getErrorMessage(resultScaleImgMap));
-                    }
+                    // SCIPIO
+                    Map<String, Object> sizeTypeInfo = new LinkedHashMap<>();
+                    sizeTypeInfo.put("sizeType", sizeType);
+                    sizeTypeInfo.put("url", imageUrl);
+                    sizeTypeInfo.put("variantInfo", variant.variantInfo);
+                    sizeTypeInfo.put("width", variant.width);
+                    sizeTypeInfo.put("height", variant.height);
+                    sizeTypeInfo.put("mimeTypeId", variant.mimeTypeId);
+                    imgInfoMap.put(sizeType, sizeTypeInfo);
                 } // Loop over sizeType
+                if (manifest != null) {
+                    manifest.store();
+                }
 
                 // this is helpful info and doesn't do much harm
                 //if (ImageUtil.verboseOn()) {
@@ -612,6 +707,120 @@ public abstract class ContentImageServices {
         }
     }
 
+    private static String getVariantFileType(Delegator delegator, ImageVariantConfig.VariantInfo variantInfo, String imgExtension) throws GenericEntityException {
+        return (variantInfo.getFormat() != null) ? variantInfo.resolveFormatExt(delegator) : imgExtension;
+    }
+
+    /** Reads the dimensions of an image file from its header without decoding it, or null if not readable. */
+    private static int[] readImageSize(File file) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            Iterator<ImageReader> readers = (in != null) ? ImageIO.getImageReaders(in) : Collections.emptyIterator();
+            if (readers.hasNext()) {
+                ImageReader reader = readers.next();
+                try {
+                    reader.setInput(in, true, true);
+                    return new int[] { reader.getWidth(0), reader.getHeight(0) };
+                } finally {
+                    reader.dispose();
+                }
+            }
+        } catch (IOException e) {
+            Debug.logWarning("Could not read image size of [" + file + "]: " + e.toString(), module);
+        }
+        return null;
+    }
+
+    /**
+     * Scales and writes the variants on the {@link ImageScalePipeline} executor and waits for all of them to finish.
+     * <p>Scaled variants are processed largest first and, if cascade is enabled, each is scaled from the smallest larger
+     * variant allowed by {@link ImageScalePipeline#isCascadeSource} (or from the original if that one failed), using the
+     * exact target dimensions computed from the original. Errors are left on the variant futures for the caller.</p>
+     */
+    private static void scheduleScaleVariants(List<ScaleVariant> variants, BufferedImage bufImg, File origFile, Locale locale,
+                                              Map<String, Object> scalingOptions, String profileName, Map<String, Object> imageWriteOptions, Delegator delegator) {
+        Executor executor = ImageScalePipeline.getExecutor();
+        List<ScaleVariant> scaledVariants = new ArrayList<>(variants.size());
+        for (ScaleVariant variant : variants) {
+            if (variant.keepOrig) {
+                variant.scaled = CompletableFuture.completedFuture(bufImg);
+            } else {
+                scaledVariants.add(variant);
+            }
+        }
+        scaledVariants.sort(Comparator.comparingLong((ScaleVariant variant) -> (long) variant.width * variant.height).reversed());
+        for (int i = 0; i < scaledVariants.size(); i++) {
+            ScaleVariant variant = scaledVariants.get(i);
+            CompletableFuture<BufferedImage> source = CompletableFuture.completedFuture(bufImg);
+            if (ImageScalePipeline.isCascade()) {
+                for (int j = i - 1; j >= 0; j--) {
+                    ScaleVariant sourceVariant = scaledVariants.get(j);
+                    if (ImageScalePipeline.isCascadeSource(sourceVariant.width, sourceVariant.height, variant.width, variant.height)) {
+                        source = sourceVariant.scaled.handle((img, e) -> (img != null) ? img : bufImg);
+                        break;
+                    }
+                }
+            }
+            variant.scaled = source.thenApplyAsync(img -> ImageTransform.scaleImageExactToBufferedImage(img, variant.height, variant.width, locale, scalingOptions), executor);
+        }
+        List<CompletableFuture<Void>> writes = new ArrayList<>(variants.size());
+        for (ScaleVariant variant : variants) {
+            variant.written = variant.scaled.thenAcceptAsync(img -> {
+                try {
+                    if (variant.copyOrig) {
+                        FileUtils.copyFile(origFile, new File(variant.newFileFullLoc));
+                    } else {
+                        ImageStorers.write(img, variant.targetFileType, new File(variant.newFileFullLoc), profileName, imageWriteOptions, delegator); // SCIPIO: ImageIO->ImageStorers
+                    }
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+            writes.add(variant.written);
+        }
+        CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])).exceptionally(e -> null).join();
+    }
+
+    /** A size variant being produced by contentImageFileScaleInAllSizeCore, with its target and its scale and write futures. */
+    private static class ScaleVariant {
+        final String sizeType;
+        final ImageVariantConfig.VariantInfo variantInfo;
+        final boolean keepOrig;
+        int width;
+        int height;
+        String targetFileType;
+        String mimeTypeId;
+        String newFileLocExt;
+        String newFileFullLoc;
+        boolean copyOrig;
+        CompletableFuture<BufferedImage> scaled;
+        CompletableFuture<Void> written;
+
+        ScaleVariant(String sizeType, ImageVariantConfig.VariantInfo variantInfo, boolean keepOrig) {
+            this.sizeType = sizeType;
+            this.variantInfo = variantInfo;
+            this.keepOrig = keepOrig;
+        }
+
+        Throwable getScaleError() {
+            return getError(scaled);
+        }
+
+        Throwable getWriteError() {
+            return getError(written);
+        }
+
+        private static Throwable getError(CompletableFuture<?> future) {
+            try {
+                future.join();
+                return null;
+            } catch (CompletionException e) {
+                return (e.getCause() != null) ? e.getCause() : e;
+            } catch (CancellationException e) {
+                return e;
+            }
+        }
+    }
+
     public static String expandImageFnFmt(FlexibleStringExpander exdr, String sizeType, Map<String, ?> context) throws IllegalArgumentException {
         Map<String, Object> fnContext = new HashMap<>(context);
         fnContext.put("sizetype", sizeType);
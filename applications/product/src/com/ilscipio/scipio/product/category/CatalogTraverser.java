@@ -789,8 +789,17 @@ public class CatalogTraverser extends AbstractCatalogVisitor {
      * product in the system, bypassing catalog/category rollup; for crude operations.
      */
     public boolean traverseAllProductsInSystem() throws GeneralException {
+        return traverseAllProductsInSystem(null);
+    }
+
+    /**
+     * Calls the {@link CatalogVisitor#visitProduct} method for every product in the system matching the given condition
+     * (e.g. a productId range, to split the traversal), bypassing catalog/category rollup; for crude operations.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public boolean traverseAllProductsInSystem(EntityCondition productCond) throws GeneralException {
         TraversalState state = newTraversalState();
-        try (EntityListIterator productIt = delegator.from("Product").cache(isUseCache()).queryIterator()) {
+        try (EntityListIterator productIt = delegator.from("Product").where(productCond).cache(isUseCache()).queryIterator()) {
             GenericValue product;
             while ((product = productIt.next()) != null) {
                 // NOTE: doChildProducts = false, because already counted in our global query here
@@ -35,6 +35,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * SCIPIO: New product image services, alternatives to {@link org.ofbiz.product.imagemanagement.ImageManagementServices}
@@ -456,7 +462,7 @@ public class ProductImageServices {
 
         Map<String, Object> resizeCtx = UtilMisc.toMap("productId", productId, "imageOrigUrl", origImageUrl, "imageViewType", origImageViewType,
                 "locale", ctx.get("locale"), "userLogin", ctx.get("userLogin"), "timeZone", ctx.get("timeZone"), "imageProfile", imageProfile,
-                "sizeTypeList", sizeTypeList, "copyOrig", copyOrig);
+                "sizeTypeList", sizeTypeList, "copyOrig", copyOrig, "skipUnchanged", ctx.attr("skipUnchanged"));
         try {
             Map<String, Object> resizeResult;
             if (nonFatal) {
@@ -760,23 +766,22 @@ public class ProductImageServices {
     public static Map<String, Object> productImageAutoRescaleProducts(ServiceContext ctx, ProcessSignals processSignals, boolean logFinal) throws ServiceValidationException {
         String logPrefix = ctx.getModelService().name + ": ";
         int productCount = 0;
-        int successCount = 0;
-        int errorCount = 0;
-        int failCount = 0;
-        int skipCount = 0;
-        int variantSuccessCount = 0;
-        int variantFailCount = 0;
+        RescaleProductsStats productStats = new RescaleProductsStats();
         Iterator<?> productsIt = (ctx.attr("products") != null) ? UtilMisc.asIterator(ctx.attr("products")) : null;
         if (productsIt == null) {
             productsIt = (ctx.attr("productIdList") != null) ? UtilMisc.asIterator(ctx.attr("productIdList")) : null;
         }
         int lastProductCount = ctx.attr("lastProductCount", 10);
         List<String> lastProductIdList = new LinkedList<>();
-        List<String> failProductIdList = new ArrayList<>();
+        // SCIPIO: 3.0.0: Optionally process products concurrently, each in its own transaction; the semaphore bounds the
+        // number of products queued ahead of the worker threads
+        int threads = ctx.attr("threads", 1);
+        ExecutorService executor = (threads > 1) ? makeRescaleProductsExecutor(threads) : null;
+        Semaphore queuePermits = (executor != null) ? new Semaphore(threads * 2) : null;
         try {
             Integer maxProducts = ctx.attr("maxProducts");
             Integer maxErrorCount = ctx.attr("maxProducts");
-            boolean sepProductTrans = ctx.attr("sepProductTrans", true);
+            boolean sepProductTrans = (executor != null) || ctx.attr("sepProductTrans", true);
             Integer logBatch = ctx.attr("logBatch");
             if (logBatch != null && logBatch <= 0) {
                 logBatch = null;
@@ -843,41 +848,33 @@ public class ProductImageServices {
                         throw new ServiceValidationException("Invalid product, should be GenericValue or String: " + productObj.getClass(), ctx.getModelService());
                     }
                     servCtx.put("nonFatal", true); // TODO: unhardcode (NOTE: causes extra separate transactions per-image)
-                    Map<String, Object> servResult = ctx.dispatcher().runSync("productImageAutoRescale", servCtx, sepProductTrans);
-                    if (!ServiceUtil.isSuccess(servResult)) {
-                        failProductIdList.add(productId);
-                    }
-                    Integer servErrorCount = (Integer) servResult.get("errorCount");
-                    if (servErrorCount == null) {
-                        servErrorCount = ServiceUtil.isError(servResult) ? 1 : 0;
-                    }
-                    Integer servFailCount = (Integer) servResult.get("failCount");
-                    if (servFailCount == null) {
-                        servFailCount = ServiceUtil.isFailure(servResult) ? 1 : 0;
-                    }
-                    Integer servSuccessCount = (Integer) servResult.get("successCount");
-                    if (servSuccessCount == null) {
-                        servSuccessCount = ServiceUtil.isSuccess(servResult) ? 1 : 0;
-                    }
-                    Integer servSkipCount = (Integer) servResult.get("skipCount");
-                    errorCount += servErrorCount;
-                    failCount += servFailCount;
-                    successCount += servSuccessCount;
-                    if (servSkipCount != null) {
-                        skipCount += servSkipCount;
-                    }
-                    Integer servVariantSuccessCount = (Integer) servResult.get("variantSuccessCount");
-                    if (servVariantSuccessCount != null) {
-                        variantSuccessCount += servVariantSuccessCount;
-                    }
-                    Integer servVariantFailCount = (Integer) servResult.get("variantFailCount");
-                    if (servVariantFailCount != null) {
-                        variantFailCount += servVariantFailCount;
+                    if (executor != null) {
+                        queuePermits.acquire();
+                        try {
+                            executor.execute(() -> {
+                                try {
+                                    rescaleProduct(ctx, logPrefix, productId, servCtx, true, productStats);
+                                } finally {
+                                    queuePermits.release();
+                                }
+                            });
+                        } catch (RejectedExecutionException e) {
+                            queuePermits.release();
+                            throw e;
+                        }
+                    } else {
+                        rescaleProduct(ctx, logPrefix, productId, servCtx, sepProductTrans, productStats);
                     }
                 } catch (GenericServiceException e) {
                     Debug.logError(e, logPrefix + e.toString(), module);
-                    errorCount++;
+                    productStats.addError();
+                } catch (InterruptedException e) {
+                    // NOTE: From queuePermits.acquire()
+                    Debug.logError(logPrefix + "Interrupted (products: " + productCount + ", last: " + lastProductIdList + ")", module);
+                    Thread.currentThread().interrupt();
+                    break;
                 }
+                int errorCount = productStats.getErrorCount();
                 if (maxErrorCount != null && errorCount >= maxErrorCount) {
                     Debug.logError(logPrefix + "max errors reached (" + maxErrorCount + ")", module);
                     break;
@@ -891,6 +888,17 @@ public class ProductImageServices {
                 Debug.logWarning(logPrefix + "Did not reach allResumeId product [" + allResumeId + "]; either no products or wrong productId", module);
             }
         } finally {
+            if (executor != null) {
+                executor.shutdown();
+                try {
+                    while (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
+                        Debug.logInfo(logPrefix + "Waiting for queued products to finish", module);
+                    }
+                } catch (InterruptedException e) {
+                    executor.shutdownNow();
+                    Thread.currentThread().interrupt();
+                }
+            }
             if (productsIt instanceof AutoCloseable) {
                 try {
                     ((AutoCloseable) productsIt).close();
@@ -899,8 +907,15 @@ public class ProductImageServices {
                 }
             }
         }
-        Map<String, Object> stats = UtilMisc.put(new LinkedHashMap<>(), "successCount", successCount, "failCount", failCount, "errorCount", errorCount,
-                "skipCount", skipCount, "variantSuccessCount", variantSuccessCount, "variantFailCount", variantFailCount);
+        Map<String, Object> stats;
+        int errorCount;
+        List<String> failProductIdList;
+        synchronized (productStats) {
+            errorCount = productStats.errorCount;
+            failProductIdList = new ArrayList<>(productStats.failProductIdList);
+            stats = UtilMisc.put(new LinkedHashMap<>(), "successCount", productStats.successCount, "failCount", productStats.failCount, "errorCount", errorCount,
+                    "skipCount", productStats.skipCount, "variantSuccessCount", productStats.variantSuccessCount, "variantFailCount", productStats.variantFailCount);
+        }
         String failProductsStr = " (failed products: " + failProductIdList + ")";
         if (logFinal && Debug.infoOn()) {
             if (errorCount > 0) {
@@ -925,6 +940,79 @@ public class ProductImageServices {
         return productImageAutoRescaleProducts(ctx, null, false);
     }
 
+    /** Runs productImageAutoRescale for one product of productImageAutoRescaleProducts and adds its result to the stats (SCIPIO: 3.0.0). */
+    private static void rescaleProduct(ServiceContext ctx, String logPrefix, String productId, Map<String, Object> servCtx, boolean sepProductTrans,
+                                       RescaleProductsStats productStats) {
+        try {
+            Map<String, Object> servResult = ctx.dispatcher().runSync("productImageAutoRescale", servCtx, sepProductTrans);
+            productStats.add(productId, servResult);
+        } catch (GenericServiceException e) {
+            Debug.logError(e, logPrefix + e.toString(), module);
+            productStats.addError();
+        }
+    }
+
+    private static ExecutorService makeRescaleProductsExecutor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "Scipio-productImageAutoRescale-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Totals of productImageAutoRescaleProducts, shared by its worker threads (SCIPIO: 3.0.0). */
+    private static class RescaleProductsStats {
+        int successCount = 0;
+        int errorCount = 0;
+        int failCount = 0;
+        int skipCount = 0;
+        int variantSuccessCount = 0;
+        int variantFailCount = 0;
+        final List<String> failProductIdList = new ArrayList<>();
+
+        synchronized void add(String productId, Map<String, Object> servResult) {
+            if (!ServiceUtil.isSuccess(servResult)) {
+                failProductIdList.add(productId);
+            }
+            Integer servErrorCount = (Integer) servResult.get("errorCount");
+            if (servErrorCount == null) {
+                servErrorCount = ServiceUtil.isError(servResult) ? 1 : 0;
+            }
+            Integer servFailCount = (Integer) servResult.get("failCount");
+            if (servFailCount == null) {
+                servFailCount = ServiceUtil.isFailure(servResult) ? 1 : 0;
+            }
+            Integer servSuccessCount = (Integer) servResult.get("successCount");
+            if (servSuccessCount == null) {
+                servSuccessCount = ServiceUtil.isSuccess(servResult) ? 1 : 0;
+            }
+            Integer servSkipCount = (Integer) servResult.get("skipCount");
+            errorCount += servErrorCount;
+            failCount += servFailCount;
+            successCount += servSuccessCount;
+            if (servSkipCount != null) {
+                skipCount += servSkipCount;
+            }
+            Integer servVariantSuccessCount = (Integer) servResult.get("variantSuccessCount");
+            if (servVariantSuccessCount != null) {
+                variantSuccessCount += servVariantSuccessCount;
+            }
+            Integer servVariantFailCount = (Integer) servResult.get("variantFailCount");
+            if (servVariantFailCount != null) {
+                variantFailCount += servVariantFailCount;
+            }
+        }
+
+        synchronized void addError() {
+            errorCount++;
+        }
+
+        synchronized int getErrorCount() {
+            return errorCount;
+        }
+    }
+
     public static Map<String, Object> productImageAutoRescaleAll(ServiceContext ctx) throws ServiceValidationException {
         try {
             productImageAutoRescaleAllSignals.clear();
@@ -26,7 +26,9 @@ import java.util.concurrent.ConcurrentHashMap;
  * WARN: This class intentionally ignores differences in "moment" parameters! Currently it assumes moments passed are never non-null
  * and will always be the "now" timestamp when passed.
  * </p>
- * NOT thread-safe (meant for local worker caching).
+ * <p>SCIPIO: 3.0.0: Thread-safe, so that a single instance can be shared by the parallel document building threads of
+ * <code>EntityIndexer</code>; the data fields are volatile and only ever hold immutable values, so concurrent lookups of the
+ * same key at worst read the value from db twice.</p>
  * TODO: REVIEW: delegator/inheritance complications for extension; may be fixed up in future. For now *Src methods are provided for overriding underlying logic.
  *  It is recommended that overriding classes create both * and *Src methods as shown below.
  */
@@ -109,7 +111,7 @@ public class ProductDataCache extends ProductDataReader {
     }
 
     protected <C extends DataCache> void updateCache(Map<String, C> cache, String key, C value, Integer maxEntries) {
-        if (cache.containsKey(key)) { // once added, never removed and never need to re-create (fine if assume thread-unsafe)
+        if (cache.containsKey(key)) { // once added, never re-created (SCIPIO: 3.0.0: putIfAbsent below for concurrent adds)
             return;
         }
         if (maxEntries != null && cache.size() >= maxEntries) {
@@ -123,7 +125,7 @@ public class ProductDataCache extends ProductDataReader {
                 //}
             }
         }
-        cache.put(key, value);
+        cache.putIfAbsent(key, value);
     }
 
     public static class DataCache {
@@ -143,9 +145,9 @@ public class ProductDataCache extends ProductDataReader {
 
     public static class ProductData extends DataCache {
         protected final String productId;
-        protected GenericValue product;
-        protected List<GenericValue> productAssocFrom;
-        protected List<GenericValue> productAssocTo;
+        protected volatile GenericValue product;
+        protected volatile List<GenericValue> productAssocFrom;
+        protected volatile List<GenericValue> productAssocTo;
 
         public ProductData(String productId) {
             this.productId = productId;
@@ -159,6 +161,9 @@ public class ProductDataCache extends ProductDataReader {
             return data.product;
         }
         GenericValue product = getProductSrc(dctx, productId, useCache);
+        if (product == null) { // SCIPIO: 3.0.0: Don't cache missing products (removed or invalid id)
+            return null;
+        }
         product.setImmutable();
         data.product = product;
         updateCache(productCache, productId, data, maxCacheProducts);
@@ -222,12 +227,12 @@ public class ProductDataCache extends ProductDataReader {
 
     public static class CategoryData extends DataCache {
         protected final String productCategoryId;
-        protected GenericValue productCategory;
+        protected volatile GenericValue productCategory;
         /* TODO: REVIEW: not yet necessary (for solr performance) - getCategoryRollupTrails only needs to call this once per category
         protected List<GenericValue> productCategoryRollups;
          */
-        protected List<List<String>> rollupTrails;
-        protected List<String> catalogIds;
+        protected volatile List<List<String>> rollupTrails;
+        protected volatile List<String> catalogIds;
 
         public CategoryData(String productCategoryId) {
             this.productCategoryId = productCategoryId;
@@ -310,9 +315,9 @@ public class ProductDataCache extends ProductDataReader {
 
     public static class CatalogData extends DataCache {
         protected final String prodCatalogId;
-        protected GenericValue prodCatalog;
-        protected List<GenericValue> productStoreCatalogs;
-        protected List<GenericValue> productStoreCatalogAndStores;
+        protected volatile GenericValue prodCatalog;
+        protected volatile List<GenericValue> productStoreCatalogs;
+        protected volatile List<GenericValue> productStoreCatalogAndStores;
 
         public CatalogData(String prodCatalogId) {
             this.prodCatalogId = prodCatalogId;
@@ -374,7 +379,7 @@ public class ProductDataCache extends ProductDataReader {
 
     public static class StoreData extends DataCache {
         protected final String productStoreId;
-        protected GenericValue productStore;
+        protected volatile GenericValue productStore;
 
         public StoreData(String productStoreId) {
             this.productStoreId = productStoreId;
@@ -388,6 +393,9 @@ public class ProductDataCache extends ProductDataReader {
             return data.productStore;
         }
         GenericValue productStore = getProductStoreSrc(dctx, productStoreId, useCache);
+        if (productStore == null) { // SCIPIO: 3.0.0: Don't cache missing stores
+            return null;
+        }
         productStore.setImmutable();
         data.productStore = productStore;
         updateCache(storeCache, productStoreId, data, maxCacheStores);
@@ -515,6 +515,46 @@ public abstract class SeoCatalogServices {
     private static final Map<String, Object> newAltUrlContentFields = UtilMisc.toMap("description", "Alternative URL");
     private static final Map<String, Object> newAltUrlDataResourceFields = UtilMisc.toMap("statusId", "CTNT_PUBLISHED");
 
+    /**
+     * Entity ECA service that registers a refresh of the {@link SeoCatalogUrlIndex} entries of the changed product,
+     * category, content or electronic text, run after the transaction commits; does nothing locally if no index is in use.
+     * If distribute is true, the refresh is also sent to the other servers after commit.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public static Map<String, Object> updateSeoCatalogUrlIndex(DispatchContext dctx, Map<String, ? extends Object> context) {
+        if (Boolean.TRUE.equals(context.get("distribute"))) {
+            Map<String, Object> distCtx = UtilMisc.toMap("productId", context.get("productId"), "productCategoryId", context.get("productCategoryId"),
+                    "contentId", context.get("contentId"), "contentIdTo", context.get("contentIdTo"),
+                    "dataResourceId", context.get("dataResourceId"), "distribute", false);
+            SeoCatalogUrlIndex.distributeRefreshAfterCommit(dctx.getDelegator(), distCtx);
+        }
+        SeoCatalogUrlIndex urlIndex = SeoCatalogUrlIndex.getInstanceIfExists(dctx.getDelegator());
+        if (urlIndex != null) {
+            List<String> contentIds = new ArrayList<>(2);
+            if (context.get("contentId") != null) {
+                contentIds.add((String) context.get("contentId"));
+            }
+            if (context.get("contentIdTo") != null) {
+                contentIds.add((String) context.get("contentIdTo"));
+            }
+            urlIndex.refreshAfterCommit((String) context.get("productId"), (String) context.get("productCategoryId"), contentIds,
+                    (String) context.get("dataResourceId"));
+        }
+        return ServiceUtil.returnSuccess();
+    }
+
+    /**
+     * Entity ECA condition service for {@link #updateSeoCatalogUrlIndex}: true if inbound-url-index is enabled in the
+     * common SeoConfig.xml or a {@link SeoCatalogUrlIndex} is in use on this server (enabled by a website config).
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public static Map<String, Object> checkSeoCatalogUrlIndexEcaCondition(DispatchContext dctx, Map<String, ? extends Object> context) {
+        Map<String, Object> result = ServiceUtil.returnSuccess();
+        result.put("conditionReply", SeoConfig.getCommonConfig().isInboundUrlIndex()
+                || SeoCatalogUrlIndex.getInstanceIfExists(dctx.getDelegator()) != null);
+        return result;
+    }
+
     /**
      * Re-generates alternative urls for store/website based on ruleset outlined in SeoConfig.xml.
      */
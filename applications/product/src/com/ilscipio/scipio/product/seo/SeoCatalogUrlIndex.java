@@ -0,0 +1,557 @@
+package com.ilscipio.scipio.product.seo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.ofbiz.base.concurrent.ExecutionPool;
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.DelegatorFactory;
+import org.ofbiz.entity.GenericEntityException;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityOperator;
+import org.ofbiz.entity.transaction.GenericTransactionException;
+import org.ofbiz.entity.transaction.TransactionUtil;
+import org.ofbiz.entity.util.EntityListIterator;
+import org.ofbiz.entity.util.EntityQuery;
+import org.ofbiz.entity.util.DistributedCacheClear;
+import org.ofbiz.entity.util.EntityUtil;
+
+import com.ilscipio.scipio.product.category.CatalogUrlType;
+
+/**
+ * In-memory index of the product and category ALTERNATIVE_URL records (all locales) of a delegator, for inbound SEO
+ * URL matching by {@link SeoCatalogUrlWorker} without alt URL queries.
+ * <p>Alt URL values (the same minimal fields as the worker queries) are hashed by their exact textData, so that a path
+ * segment is resolved with one map lookup per name/ID split; path segments that match no alt URL (and, if
+ * {@link SeoConfig#isInboundUrlIndexIds()}, no product/category ID) are rejected without touching the database.
+ * Date ranges are not indexed but filtered at lookup, like the cached queries.</p>
+ * <p>The index is built in the background on first use ({@link #getLoadedInstance} returns null meanwhile, and callers
+ * fall back to queries), then maintained incrementally: entity ECAs ({@link SeoCatalogServices#updateSeoCatalogUrlIndex})
+ * register the changed products, categories, contents and electronic texts, which are re-read after the transaction
+ * commits, in a background task that coalesces repeated changes; the changes are also sent to the other servers through
+ * {@link DistributedCacheClear} after commit ({@link #distributeRefreshAfterCommit}).</p>
+ * <p>NOTE: textData is matched exactly (case-sensitive), which gives the same results as the query path, whose LIKE
+ * candidates are filtered by the case-sensitive <code>pathSegment.startsWith(textData)</code> check; IDs are matched
+ * ignoring case like that check, whereas the ID equality of the query path depends on the database collation.</p>
+ * <p>Shared by all websites of the delegator, since alt URLs are not website-specific.</p>
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public class SeoCatalogUrlIndex {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    private static final Map<String, SeoCatalogUrlIndex> delegatorIndexes = new ConcurrentHashMap<>();
+
+    private static final List<String> simpleOrderBy = UtilMisc.toList("-fromDate");
+    private static final List<String> localizedOrderBy = UtilMisc.toList("-fromDate", "-caFromDate");
+
+    private final String delegatorName;
+    private final boolean indexIds;
+    private final TypeIndex productIndex;
+    private final TypeIndex categoryIndex;
+    private final AtomicBoolean loadStarted = new AtomicBoolean(false);
+    private volatile boolean loaded = false;
+    /** Pending refreshes, coalesced; run by the drain task once the index is loaded. */
+    private final Set<Refresh> pendingRefreshes = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+
+    protected SeoCatalogUrlIndex(String delegatorName, boolean indexIds) {
+        this.delegatorName = delegatorName;
+        this.indexIds = indexIds;
+        this.productIndex = new TypeIndex(CatalogUrlType.PRODUCT, "productId", "Product", "ProductContentAndElecTextShort",
+                "ProductContentAssocAndElecTextShort", EntityCondition.makeCondition("productContentTypeId", "ALTERNATIVE_URL"));
+        this.categoryIndex = new TypeIndex(CatalogUrlType.CATEGORY, "productCategoryId", "ProductCategory", "ProductCategoryContentAndElecTextShort",
+                "ProductCategoryContentAssocAndElecTextShort", EntityCondition.makeCondition("prodCatContentTypeId", "ALTERNATIVE_URL"));
+    }
+
+    /**
+     * Returns the index of the delegator if it is loaded, or null if it is not (yet), in which case the load is started
+     * in the background.
+     */
+    public static SeoCatalogUrlIndex getLoadedInstance(Delegator delegator) {
+        SeoCatalogUrlIndex index = delegatorIndexes.computeIfAbsent(delegator.getDelegatorName(),
+                delegatorName -> new SeoCatalogUrlIndex(delegatorName, SeoConfig.getCommonConfig().isInboundUrlIndexIds()));
+        if (index.loaded) {
+            return index;
+        }
+        index.startLoad();
+        return null;
+    }
+
+    /** Returns the index of the delegator if it was created (loaded or loading), or null; never starts a load. */
+    public static SeoCatalogUrlIndex getInstanceIfExists(Delegator delegator) {
+        return delegatorIndexes.get(delegator.getDelegatorName());
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public boolean isIndexIds() {
+        return indexIds;
+    }
+
+    protected TypeIndex getTypeIndex(CatalogUrlType entityType) {
+        return (entityType == CatalogUrlType.CATEGORY) ? categoryIndex : productIndex;
+    }
+
+    /**
+     * Returns the alt URL values whose textData and ID may match the path segment, in the same form and order as the
+     * worker's non-localized (<code>localized</code> false) or ALTERNATE_LOCALE (true) alt URL queries built with
+     * {@link SeoCatalogUrlWorker#makeAltUrlTextIdMatchCombinations}, without date filtering.
+     */
+    public List<GenericValue> getAltUrlValues(CatalogUrlType entityType, String pathSegment, boolean requireId, boolean localized) {
+        TypeIndex typeIndex = getTypeIndex(entityType);
+        Map<String, List<GenericValue>> valuesByText = localized ? typeIndex.localizedByText : typeIndex.simpleByText;
+        List<GenericValue> result = null;
+        int lastIndex = pathSegment.lastIndexOf('-');
+        while (lastIndex > 0) {
+            String id = pathSegment.substring(lastIndex + 1);
+            if (!id.isEmpty()) {
+                List<GenericValue> values = valuesByText.get(pathSegment.substring(0, lastIndex));
+                if (values != null) {
+                    for (GenericValue value : values) {
+                        if (id.equalsIgnoreCase(value.getString(typeIndex.idField))) {
+                            if (result == null) {
+                                result = new ArrayList<>();
+                            }
+                            result.add(value);
+                        }
+                    }
+                }
+            }
+            lastIndex = pathSegment.lastIndexOf('-', lastIndex - 1);
+        }
+        if (!requireId) {
+            List<GenericValue> values = valuesByText.get(pathSegment);
+            if (values != null) {
+                if (result == null) {
+                    result = new ArrayList<>(values);
+                } else {
+                    result.addAll(values);
+                }
+            }
+        }
+        if (result == null) {
+            return Collections.emptyList();
+        }
+        return (result.size() > 1) ? EntityUtil.orderBy(result, localized ? localizedOrderBy : simpleOrderBy) : result;
+    }
+
+    /**
+     * Returns false if the ID is known not to exist (IDs indexed and not found), true if it exists or IDs are not indexed.
+     */
+    public boolean mayHaveId(CatalogUrlType entityType, String id) {
+        Set<String> ids = getTypeIndex(entityType).ids;
+        return ids == null || ids.contains(id);
+    }
+
+    /**
+     * Sends a refresh of the given product, category, contents and/or data resource to the other servers
+     * (<code>distributedUpdateSeoCatalogUrlIndex</code>, whose context this is) through {@link DistributedCacheClear},
+     * once the current transaction commits (nothing if it rolls back), so they re-read committed data; right away if
+     * there is no transaction. Does nothing if distributed cache clear is not configured.
+     */
+    public static void distributeRefreshAfterCommit(Delegator delegator, Map<String, Object> refreshContext) {
+        DistributedCacheClear dcc = delegator.getDistributedCacheClear();
+        if (dcc == null) {
+            return;
+        }
+        runAfterCommit(() -> dcc.runDistributedService("distributedUpdateSeoCatalogUrlIndex", refreshContext), "distributed URL index refresh");
+    }
+
+    /**
+     * Registers a refresh of the index entries of the given product, category, contents and/or data resource (any may be
+     * null), run in the background after the current transaction commits (discarded if it rolls back), or right away
+     * if there is no transaction.
+     */
+    public void refreshAfterCommit(String productId, String productCategoryId, Collection<String> contentIds, String dataResourceId) {
+        List<Refresh> refreshes = new ArrayList<>(2);
+        if (productId != null) {
+            refreshes.add(new Refresh(CatalogUrlType.PRODUCT, productId, null, null));
+        }
+        if (productCategoryId != null) {
+            refreshes.add(new Refresh(CatalogUrlType.CATEGORY, productCategoryId, null, null));
+        }
+        if (refreshes.isEmpty() && ((contentIds != null && !contentIds.isEmpty()) || dataResourceId != null)) {
+            refreshes.add(new Refresh(null, null, (contentIds != null) ? new HashSet<>(contentIds) : Collections.emptySet(), dataResourceId));
+        }
+        if (refreshes.isEmpty()) {
+            return;
+        }
+        runAfterCommit(() -> addRefreshes(refreshes), "URL index refresh");
+    }
+
+    /** Runs the action after the current transaction commits (never if it rolls back), or right away if there is no transaction. */
+    protected static void runAfterCommit(Runnable action, String actionDesc) {
+        try {
+            if (TransactionUtil.isTransactionInPlace()) {
+                TransactionUtil.registerSynchronization(new Synchronization() {
+                    @Override
+                    public void beforeCompletion() {
+                    }
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (status == Status.STATUS_COMMITTED) {
+                            action.run();
+                        }
+                    }
+                });
+                return;
+            }
+        } catch (GenericTransactionException e) {
+            Debug.logWarning("Seo: Could not register " + actionDesc + " for transaction commit; running now: " + e.toString(), module);
+        }
+        action.run();
+    }
+
+    protected void addRefreshes(Collection<Refresh> refreshes) {
+        pendingRefreshes.addAll(refreshes);
+        scheduleDrain();
+    }
+
+    protected void scheduleDrain() {
+        if (loaded && !pendingRefreshes.isEmpty() && drainScheduled.compareAndSet(false, true)) {
+            try {
+                ExecutionPool.GLOBAL_BATCH.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                drainScheduled.set(false);
+                Debug.logWarning("Seo: Could not schedule URL index refresh: " + e.toString(), module);
+            }
+        }
+    }
+
+    protected void drain() {
+        try {
+            Delegator delegator = DelegatorFactory.getDelegator(delegatorName);
+            while (!pendingRefreshes.isEmpty()) {
+                List<Refresh> refreshes = new ArrayList<>(pendingRefreshes);
+                pendingRefreshes.removeAll(refreshes);
+                Set<Refresh> ownerRefreshes = new HashSet<>();
+                for (Refresh refresh : refreshes) {
+                    if (refresh.entityType != null) {
+                        ownerRefreshes.add(refresh);
+                    } else {
+                        // Contents and texts: the owners that have them now, and the owners that had them in the index
+                        for (TypeIndex typeIndex : new TypeIndex[] { productIndex, categoryIndex }) {
+                            for (String id : typeIndex.findOwnerIds(delegator, refresh.contentIds, refresh.dataResourceId)) {
+                                ownerRefreshes.add(new Refresh(typeIndex.entityType, id, null, null));
+                            }
+                        }
+                    }
+                }
+                for (Refresh refresh : ownerRefreshes) {
+                    getTypeIndex(refresh.entityType).refreshOwner(delegator, refresh.id, indexIds);
+                }
+            }
+        } catch (Exception e) {
+            Debug.logError(e, "Seo: Error refreshing URL index", module);
+        } finally {
+            drainScheduled.set(false);
+        }
+        scheduleDrain(); // refreshes added after the last check
+    }
+
+    protected void startLoad() {
+        if (loadStarted.compareAndSet(false, true)) {
+            try {
+                ExecutionPool.GLOBAL_BATCH.execute(this::load);
+            } catch (RejectedExecutionException e) {
+                loadStarted.set(false);
+                Debug.logWarning("Seo: Could not schedule URL index load: " + e.toString(), module);
+            }
+        }
+    }
+
+    protected void load() {
+        long startTime = System.currentTimeMillis();
+        try {
+            Delegator delegator = DelegatorFactory.getDelegator(delegatorName);
+            productIndex.load(delegator, indexIds);
+            categoryIndex.load(delegator, indexIds);
+            loaded = true;
+            Debug.logInfo("Seo: Loaded URL index for delegator [" + delegatorName + "] in " + (System.currentTimeMillis() - startTime)
+                    + "ms; product alt URLs: " + productIndex.size() + ", category alt URLs: " + categoryIndex.size()
+                    + (indexIds ? ", product IDs: " + productIndex.ids.size() + ", category IDs: " + categoryIndex.ids.size() : ""), module);
+        } catch (Exception e) {
+            Debug.logError(e, "Seo: Error loading URL index for delegator [" + delegatorName + "]; using alt URL queries", module);
+            productIndex.clear();
+            categoryIndex.clear();
+            loadStarted.set(false); // retried on next use
+            return;
+        }
+        scheduleDrain(); // changes committed during the load
+    }
+
+    /** The index of one entity type (products or categories). Readers are lock-free; writers synchronize on the instance. */
+    protected static class TypeIndex {
+        protected final CatalogUrlType entityType;
+        protected final String idField;
+        protected final String entityName;
+        protected final String simpleEntityName;
+        protected final String localizedEntityName;
+        protected final EntityCondition altUrlCond;
+        protected final Set<String> simpleSelectFields;
+        protected final Set<String> localizedSelectFields;
+        protected final EntityCondition localeAssocCond = EntityCondition.makeCondition("contentAssocTypeId", "ALTERNATE_LOCALE");
+
+        /** Exact textData to unmodifiable lists of values. */
+        protected final Map<String, List<GenericValue>> simpleByText = new ConcurrentHashMap<>();
+        protected final Map<String, List<GenericValue>> localizedByText = new ConcurrentHashMap<>();
+        /** Owner ID to the textData keys of its values, and reverse maps for content/data resource changes. */
+        protected final Map<String, Set<String>> textsById = new ConcurrentHashMap<>();
+        protected final Map<String, Set<String>> idsByContentId = new ConcurrentHashMap<>();
+        protected final Map<String, Set<String>> idsByDataResourceId = new ConcurrentHashMap<>();
+        protected volatile Set<String> ids;
+
+        protected TypeIndex(CatalogUrlType entityType, String idField, String entityName, String simpleEntityName, String localizedEntityName, EntityCondition altUrlCond) {
+            this.entityType = entityType;
+            this.idField = idField;
+            this.entityName = entityName;
+            this.simpleEntityName = simpleEntityName;
+            this.localizedEntityName = localizedEntityName;
+            this.altUrlCond = altUrlCond;
+            this.simpleSelectFields = UtilMisc.toSet(idField, "textData", "localeString", "contentId", "dataResourceId", "fromDate", "thruDate");
+            this.localizedSelectFields = UtilMisc.toSet(idField, "textData", "localeString", "contentId", "contentIdTo", "dataResourceId", "fromDate", "thruDate", "caFromDate", "caThruDate");
+        }
+
+        protected int size() {
+            int size = 0;
+            for (List<GenericValue> values : simpleByText.values()) {
+                size += values.size();
+            }
+            for (List<GenericValue> values : localizedByText.values()) {
+                size += values.size();
+            }
+            return size;
+        }
+
+        protected synchronized void clear() {
+            simpleByText.clear();
+            localizedByText.clear();
+            textsById.clear();
+            idsByContentId.clear();
+            idsByDataResourceId.clear();
+            ids = null;
+        }
+
+        protected synchronized void load(Delegator delegator, boolean indexIds) throws GenericEntityException {
+            Map<String, List<GenericValue>> simpleValues = new HashMap<>();
+            Map<String, List<GenericValue>> localizedValues = new HashMap<>();
+            try (EntityListIterator eli = EntityQuery.use(delegator).from(simpleEntityName).where(altUrlCond).select(simpleSelectFields).queryIterator()) {
+                GenericValue value;
+                while ((value = eli.next()) != null) {
+                    addValue(simpleValues, value);
+                }
+            }
+            try (EntityListIterator eli = EntityQuery.use(delegator).from(localizedEntityName).where(altUrlCond, localeAssocCond).select(localizedSelectFields).queryIterator()) {
+                GenericValue value;
+                while ((value = eli.next()) != null) {
+                    addValue(localizedValues, value);
+                }
+            }
+            putValues(simpleByText, simpleValues, simpleOrderBy);
+            putValues(localizedByText, localizedValues, localizedOrderBy);
+            if (indexIds) {
+                Set<String> ids = ConcurrentHashMap.newKeySet();
+                try (EntityListIterator eli = EntityQuery.use(delegator).from(entityName).select(idField).queryIterator()) {
+                    GenericValue value;
+                    while ((value = eli.next()) != null) {
+                        ids.add(value.getString(idField));
+                    }
+                }
+                this.ids = ids;
+            }
+        }
+
+        private void addValue(Map<String, List<GenericValue>> valuesByText, GenericValue value) {
+            String textData = value.getString("textData");
+            String id = value.getString(idField);
+            if (textData == null || id == null) {
+                return;
+            }
+            valuesByText.computeIfAbsent(textData, k -> new ArrayList<>(1)).add(value);
+            textsById.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet()).add(textData);
+            addReverse(idsByContentId, value.getString("contentId"), id);
+            addReverse(idsByContentId, value.getString("contentIdTo"), id);
+            addReverse(idsByDataResourceId, value.getString("dataResourceId"), id);
+        }
+
+        private static void putValues(Map<String, List<GenericValue>> target, Map<String, List<GenericValue>> valuesByText, List<String> orderBy) {
+            for (Map.Entry<String, List<GenericValue>> entry : valuesByText.entrySet()) {
+                List<GenericValue> values = entry.getValue();
+                target.put(entry.getKey(), Collections.unmodifiableList((values.size() > 1) ? EntityUtil.orderBy(values, orderBy) : values));
+            }
+        }
+
+        private static void addReverse(Map<String, Set<String>> reverseMap, String key, String id) {
+            if (key != null) {
+                reverseMap.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(id);
+            }
+        }
+
+        private static void removeReverse(Map<String, Set<String>> reverseMap, String key, String id) {
+            if (key != null) {
+                reverseMap.computeIfPresent(key, (k, ownerIds) -> (ownerIds.remove(id) && ownerIds.isEmpty()) ? null : ownerIds);
+            }
+        }
+
+        /** Returns the IDs of the owners that have, or had in the index, alt URLs using the contents or data resource. */
+        protected Set<String> findOwnerIds(Delegator delegator, Set<String> contentIds, String dataResourceId) throws GenericEntityException {
+            Set<String> ownerIds = new HashSet<>();
+            List<EntityCondition> simpleConds = new ArrayList<>();
+            List<EntityCondition> localizedConds = new ArrayList<>();
+            if (contentIds != null && !contentIds.isEmpty()) {
+                for (String contentId : contentIds) {
+                    ownerIds.addAll(idsByContentId.getOrDefault(contentId, Collections.emptySet()));
+                }
+                simpleConds.add(EntityCondition.makeCondition("contentId", EntityOperator.IN, contentIds));
+                localizedConds.add(EntityCondition.makeCondition("contentId", EntityOperator.IN, contentIds));
+                localizedConds.add(EntityCondition.makeCondition("contentIdTo", EntityOperator.IN, contentIds));
+            }
+            if (dataResourceId != null) {
+                ownerIds.addAll(idsByDataResourceId.getOrDefault(dataResourceId, Collections.emptySet()));
+                simpleConds.add(EntityCondition.makeCondition("dataResourceId", dataResourceId));
+                localizedConds.add(EntityCondition.makeCondition("dataResourceId", dataResourceId));
+            }
+            if (!simpleConds.isEmpty()) {
+                for (GenericValue value : EntityQuery.use(delegator).from(simpleEntityName).where(altUrlCond,
+                        EntityCondition.makeCondition(simpleConds, EntityOperator.OR)).select(idField).distinct().queryList()) {
+                    ownerIds.add(value.getString(idField));
+                }
+                for (GenericValue value : EntityQuery.use(delegator).from(localizedEntityName).where(altUrlCond, localeAssocCond,
+                        EntityCondition.makeCondition(localizedConds, EntityOperator.OR)).select(idField).distinct().queryList()) {
+                    ownerIds.add(value.getString(idField));
+                }
+            }
+            return ownerIds;
+        }
+
+        /** Re-reads the alt URLs (and existence, if IDs are indexed) of one product or category and replaces its entries. */
+        protected void refreshOwner(Delegator delegator, String id, boolean indexIds) throws GenericEntityException {
+            EntityCondition idCond = EntityCondition.makeCondition(idField, id);
+            List<GenericValue> simpleValues = EntityQuery.use(delegator).from(simpleEntityName).where(altUrlCond, idCond)
+                    .select(simpleSelectFields).queryList();
+            List<GenericValue> localizedValues = EntityQuery.use(delegator).from(localizedEntityName).where(altUrlCond, localeAssocCond, idCond)
+                    .select(localizedSelectFields).queryList();
+            boolean exists = indexIds && EntityQuery.use(delegator).from(entityName).where(idField, id).queryCount() > 0;
+            synchronized (this) {
+                Set<String> oldTexts = textsById.remove(id);
+                Set<String> texts = new HashSet<>();
+                if (oldTexts != null) {
+                    texts.addAll(oldTexts);
+                }
+                // Each key is replaced in one step, so concurrent lookups see either the old or the new values
+                Set<String> newTexts = ConcurrentHashMap.newKeySet();
+                List<GenericValue> oldValues = new ArrayList<>();
+                replaceValues(simpleByText, texts, id, simpleValues, simpleOrderBy, newTexts, oldValues);
+                replaceValues(localizedByText, texts, id, localizedValues, localizedOrderBy, newTexts, oldValues);
+                if (!newTexts.isEmpty()) {
+                    textsById.put(id, newTexts);
+                }
+                for (GenericValue value : oldValues) {
+                    removeReverse(idsByContentId, value.getString("contentId"), id);
+                    removeReverse(idsByContentId, value.getString("contentIdTo"), id);
+                    removeReverse(idsByDataResourceId, value.getString("dataResourceId"), id);
+                }
+                for (List<GenericValue> values : List.of(simpleValues, localizedValues)) {
+                    for (GenericValue value : values) {
+                        addReverse(idsByContentId, value.getString("contentId"), id);
+                        addReverse(idsByContentId, value.getString("contentIdTo"), id);
+                        addReverse(idsByDataResourceId, value.getString("dataResourceId"), id);
+                    }
+                }
+                Set<String> ids = this.ids;
+                if (ids != null) {
+                    if (exists) {
+                        ids.add(id);
+                    } else {
+                        ids.remove(id);
+                    }
+                }
+            }
+        }
+
+        private void replaceValues(Map<String, List<GenericValue>> valuesByText, Set<String> oldTexts, String id, List<GenericValue> newValues,
+                                   List<String> orderBy, Set<String> newTexts, List<GenericValue> removedValues) {
+            Map<String, List<GenericValue>> newValuesByText = new HashMap<>();
+            for (GenericValue value : newValues) {
+                String textData = value.getString("textData");
+                if (textData != null) {
+                    newValuesByText.computeIfAbsent(textData, k -> new ArrayList<>(1)).add(value);
+                    newTexts.add(textData);
+                }
+            }
+            Set<String> texts = new HashSet<>(oldTexts);
+            texts.addAll(newValuesByText.keySet());
+            for (String textData : texts) {
+                valuesByText.compute(textData, (k, oldValues) -> {
+                    List<GenericValue> values = new ArrayList<>();
+                    if (oldValues != null) {
+                        for (GenericValue value : oldValues) {
+                            if (!id.equals(value.getString(idField))) {
+                                values.add(value);
+                            } else {
+                                removedValues.add(value);
+                            }
+                        }
+                    }
+                    values.addAll(newValuesByText.getOrDefault(k, Collections.emptyList()));
+                    if (values.isEmpty()) {
+                        return null;
+                    }
+                    return Collections.unmodifiableList((values.size() > 1) ? EntityUtil.orderBy(values, orderBy) : values);
+                });
+            }
+        }
+    }
+
+    /** A pending refresh: of one product/category (entityType and id), or of the owners of contents/a data resource. */
+    protected static final class Refresh {
+        final CatalogUrlType entityType;
+        final String id;
+        final Set<String> contentIds;
+        final String dataResourceId;
+
+        Refresh(CatalogUrlType entityType, String id, Set<String> contentIds, String dataResourceId) {
+            this.entityType = entityType;
+            this.id = id;
+            this.contentIds = contentIds;
+            this.dataResourceId = dataResourceId;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Refresh)) {
+                return false;
+            }
+            Refresh other = (Refresh) obj;
+            return entityType == other.entityType && Objects.equals(id, other.id) && Objects.equals(contentIds, other.contentIds)
+                    && Objects.equals(dataResourceId, other.dataResourceId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(entityType, id, contentIds, dataResourceId);
+        }
+    }
+}
@@ -2583,6 +2583,15 @@ public class SeoCatalogUrlWorker implements Serializable {
         }
     }
 
+    /**
+     * Returns the loaded inbound URL index if enabled by {@link SeoConfig#isInboundUrlIndex()}, or null to use queries
+     * (disabled, or still loading in the background).
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    protected SeoCatalogUrlIndex getInboundUrlIndex(Delegator delegator) {
+        return getConfig().isInboundUrlIndex() ? SeoCatalogUrlIndex.getLoadedInstance(delegator) : null;
+    }
+
     /**
      * SCIPIO: Tries to match an alt URL path element to a product and caches the results IF they match.
      * Heavily modified logic from CatalogUrlFilter.
@@ -2634,6 +2643,16 @@ public class SeoCatalogUrlWorker implements Serializable {
      */
     protected void matchPathSegmentProductByAltUrl(Delegator delegator, String pathSegment, PathSegmentMatchOptions matchOptions, Timestamp moment, Map<String, PathSegmentEntity> results) throws GenericEntityException {
         // SCIPIO: this is a new filter that narrows down results from DB, which otherwise may be huge.
+        SeoCatalogUrlIndex urlIndex = getInboundUrlIndex(delegator);
+        if (urlIndex != null) { // SCIPIO: 3.0.0: Same candidates from the in-memory index, no queries
+            matchPathSegmentAltUrl(delegator, pathSegment, filterProductContentAltUrlValuesByDate(delegator,
+                    urlIndex.getAltUrlValues(CatalogUrlType.PRODUCT, pathSegment, matchOptions.isRequireId(), false), moment),
+                    "productId", CatalogUrlType.PRODUCT, matchOptions, moment, results);
+            matchPathSegmentAltUrl(delegator, pathSegment, filterProductContentAltUrlLocalizedValuesByDate(delegator,
+                    urlIndex.getAltUrlValues(CatalogUrlType.PRODUCT, pathSegment, matchOptions.isRequireId(), true), moment),
+                    "productId", CatalogUrlType.PRODUCT, matchOptions, moment, results);
+            return;
+        }
         EntityCondition matchTextIdCond = makeAltUrlTextIdMatchCombinations(pathSegment, "productId", "textData", matchOptions.isRequireId());
 
         // Search for non-localized alt urls
@@ -2686,6 +2705,10 @@ public class SeoCatalogUrlWorker implements Serializable {
      * NOTE: This will skip returning a match if the results map already contains an exact match, but will replace a previous non-exact match.
      */
     protected void matchPathSegmentProductById(Delegator delegator, String pathSegment, PathSegmentMatchOptions matchOptions, Timestamp moment, Map<String, PathSegmentEntity> results) throws GenericEntityException {
+        SeoCatalogUrlIndex urlIndex = getInboundUrlIndex(delegator);
+        if (urlIndex != null && !urlIndex.mayHaveId(CatalogUrlType.PRODUCT, pathSegment)) { // SCIPIO: 3.0.0
+            return;
+        }
         // TODO: REVIEW: Do not use entity cache here: we already have UtilCaches and too many cache misses is not good
         boolean useCache = false;
         GenericValue product = EntityQuery.use(delegator).from("Product").where("productId", pathSegment).cache(useCache).queryOne();
@@ -2762,6 +2785,16 @@ public class SeoCatalogUrlWorker implements Serializable {
      */
     protected void matchPathSegmentCategoryByAltUrl(Delegator delegator, String pathSegment, PathSegmentMatchOptions matchOptions, Timestamp moment, Map<String, PathSegmentEntity> results) throws GenericEntityException {
         // SCIPIO: this is a new filter that narrows down results from DB, which otherwise may be huge.
+        SeoCatalogUrlIndex urlIndex = getInboundUrlIndex(delegator);
+        if (urlIndex != null) { // SCIPIO: 3.0.0: Same candidates from the in-memory index, no queries
+            matchPathSegmentAltUrl(delegator, pathSegment, filterProductCategoryContentAltUrlValuesByDate(delegator,
+                    urlIndex.getAltUrlValues(CatalogUrlType.CATEGORY, pathSegment, matchOptions.isRequireId(), false), moment),
+                    "productCategoryId", CatalogUrlType.CATEGORY, matchOptions, moment, results);
+            matchPathSegmentAltUrl(delegator, pathSegment, filterProductCategoryContentAltUrlLocalizedValuesByDate(delegator,
+                    urlIndex.getAltUrlValues(CatalogUrlType.CATEGORY, pathSegment, matchOptions.isRequireId(), true), moment),
+                    "productCategoryId", CatalogUrlType.CATEGORY, matchOptions, moment, results);
+            return;
+        }
         EntityCondition matchTextIdCond = makeAltUrlTextIdMatchCombinations(pathSegment, "productCategoryId", "textData", matchOptions.isRequireId());
 
         // Search for non-localized alt urls
@@ -2813,6 +2846,10 @@ public class SeoCatalogUrlWorker implements Serializable {
      * NOTE: This will skip returning a match if the results map already contains an exact match, but will replace a previous non-exact match.
      */
     protected void matchPathSegmentCategoryById(Delegator delegator, String pathSegment, PathSegmentMatchOptions matchOptions, Timestamp moment, Map<String, PathSegmentEntity> results) throws GenericEntityException {
+        SeoCatalogUrlIndex urlIndex = getInboundUrlIndex(delegator);
+        if (urlIndex != null && !urlIndex.mayHaveId(CatalogUrlType.CATEGORY, pathSegment)) { // SCIPIO: 3.0.0
+            return;
+        }
         // TODO: REVIEW: Do not use entity cache here: we already have UtilCaches and too many cache misses is not good
         boolean useCache = false;
         GenericValue productCategory = delegator.query().from("ProductCategory").where("productCategoryId", pathSegment).cache(useCache).queryOne();
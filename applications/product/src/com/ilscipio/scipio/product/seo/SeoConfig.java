@@ -144,6 +144,8 @@ public class SeoConfig {
     private final String productUrlTargetSeparator;
     private final boolean productSimpleIdLookup;
     private final boolean categorySimpleIdLookup;
+    private final boolean inboundUrlIndex; // SCIPIO: 3.0.0
+    private final boolean inboundUrlIndexIds; // SCIPIO: 3.0.0
 
     private final List<UrlFilter> urlFilters;
 
@@ -328,6 +330,8 @@ public class SeoConfig {
 
         boolean productSimpleIdLookup = false;
         boolean categorySimpleIdLookup = false;
+        boolean inboundUrlIndex = false;
+        boolean inboundUrlIndexIds = false;
 
         if (rootElem != null && isInitialed) {
 
@@ -415,6 +419,9 @@ public class SeoConfig {
 
                         productSimpleIdLookup = booleanSetting(catUrlElem, "product-simple-id-lookup", false);
                         categorySimpleIdLookup = booleanSetting(catUrlElem, "category-simple-id-lookup", false);
+
+                        inboundUrlIndex = booleanSetting(catUrlElem, "inbound-url-index", inboundUrlIndex);
+                        inboundUrlIndexIds = booleanSetting(catUrlElem, "inbound-url-index-ids", inboundUrlIndexIds);
                     }
                 }
             } catch (NullPointerException e) {
@@ -674,6 +681,8 @@ public class SeoConfig {
         }
         this.productSimpleIdLookup = productSimpleIdLookup;
         this.categorySimpleIdLookup = categorySimpleIdLookup;
+        this.inboundUrlIndex = inboundUrlIndex;
+        this.inboundUrlIndexIds = inboundUrlIndexIds;
         this.isInitialed = isInitialed;
     }
 
@@ -1124,6 +1133,24 @@ public class SeoConfig {
         return categorySimpleIdLookup;
     }
 
+    /**
+     * If true, inbound product/category path segments are matched against the in-memory {@link SeoCatalogUrlIndex}
+     * instead of alt URL queries.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public boolean isInboundUrlIndex() {
+        return inboundUrlIndex;
+    }
+
+    /**
+     * If true, the {@link SeoCatalogUrlIndex} also holds all product and category IDs, so that unknown ID-only path
+     * segments are rejected without a query; only read from the common config.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public boolean isInboundUrlIndexIds() {
+        return inboundUrlIndexIds;
+    }
+
     public List<UrlFilter> getUrlFilters() {
         return urlFilters;
     }
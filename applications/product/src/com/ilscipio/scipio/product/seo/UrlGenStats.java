@@ -67,6 +67,29 @@ public class UrlGenStats {
         this.contentFiltered = other.contentFiltered;
     }
 
+    /**
+     * Adds the counts of the given stats to these, for example to merge the stats of parallel generation shards.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public UrlGenStats add(UrlGenStats other) {
+        this.productSuccess += other.productSuccess;
+        this.productError += other.productError;
+        this.productSkipped += other.productSkipped;
+        this.productDupSkip += other.productDupSkip;
+        this.productFiltered += other.productFiltered;
+        this.categorySuccess += other.categorySuccess;
+        this.categoryError += other.categoryError;
+        this.categorySkipped += other.categorySkipped;
+        this.categoryDupSkip += other.categoryDupSkip;
+        this.categoryFiltered += other.categoryFiltered;
+        this.contentSuccess += other.contentSuccess;
+        this.contentError += other.contentError;
+        this.contentSkipped += other.contentSkipped;
+        this.contentDupSkip += other.contentDupSkip;
+        this.contentFiltered += other.contentFiltered;
+        return this;
+    }
+
     public boolean hasError() {
         return productError > 0 || categoryError > 0 || contentError > 0;
     }
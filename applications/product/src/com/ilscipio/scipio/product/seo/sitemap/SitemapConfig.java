@@ -37,6 +37,10 @@ public class SitemapConfig implements Serializable {
 
     public static final int DEFAULT_SITEMAP_SIZE = UtilProperties.getPropertyAsInteger(SITEMAPCOMMON_RESOURCE, "sitemap.default.sitemapsize", 50000);
     public static final int DEFAULT_INDEX_SIZE = UtilProperties.getPropertyAsInteger(SITEMAPCOMMON_RESOURCE, "sitemap.default.indexsize", 50000);
+    /** Maximum uncompressed sitemap file size allowed by the sitemap protocol (50MB). SCIPIO: 3.0.0: Added. */
+    public static final int MAX_FILE_SIZE = 52428800;
+    public static final int DEFAULT_THREADS = UtilProperties.getPropertyAsInteger(SITEMAPCOMMON_RESOURCE, "sitemap.default.threads", 1); // SCIPIO: 3.0.0: Added
+    public static final int DEFAULT_PRODUCT_ID_RANGE_SIZE = UtilProperties.getPropertyAsInteger(SITEMAPCOMMON_RESOURCE, "sitemap.default.productIdRangeSize", 10000); // SCIPIO: 3.0.0: Added
 
     public static final FlexibleStringExpander DEFAULT_CMS_PAGE_URL_ATTR = FlexibleStringExpander.getInstance("currentUrl_${localeVar}");
 
@@ -111,6 +115,12 @@ public class SitemapConfig implements Serializable {
     private final String categoryTraversalMode;
     private final String productTraversalMode;
 
+    private final int threads; // SCIPIO: 3.0.0: Added
+    private final int productIdRangeSize; // SCIPIO: 3.0.0: Added
+    private final boolean streaming; // SCIPIO: 3.0.0: Added
+    private final Integer maxFileSize; // SCIPIO: 3.0.0: Added
+    private final String urlDedup; // SCIPIO: 3.0.0: Added
+
     private final Map<String, Object> settingsMap; // copy of the settings map, for print/reference/other
 
     private final FlexibleStringExpander cmsPageUrlAttr;
@@ -208,6 +218,22 @@ public class SitemapConfig implements Serializable {
         this.categoryTraversalMode = asNormString(map.get("categoryTraversalMode"), "depth-first");
         this.productTraversalMode = asNormString(map.get("productTraversalMode"), "depth-first");
 
+        Integer threads = asInteger(map.get("threads"), DEFAULT_THREADS);
+        this.threads = (threads != null && threads > 1) ? threads : 1;
+        Integer productIdRangeSize = asInteger(map.get("productIdRangeSize"), DEFAULT_PRODUCT_ID_RANGE_SIZE);
+        this.productIdRangeSize = (productIdRangeSize != null && productIdRangeSize > 0) ? productIdRangeSize : DEFAULT_PRODUCT_ID_RANGE_SIZE;
+        this.streaming = asBoolean(map.get("streaming"), true);
+        Integer maxFileSize = asInteger(map.get("maxFileSize"), MAX_FILE_SIZE);
+        if (maxFileSize <= 0) maxFileSize = null; // explicit -1 means don't limit
+        this.maxFileSize = maxFileSize;
+        String urlDedup = asNormString(map.get("urlDedup"), SitemapUrlSet.EXACT);
+        if (!SitemapUrlSet.isValidMode(urlDedup)) {
+            Debug.logError(logPrefix+"website '" + webSiteId + "' sitemaps.properties configuration error: invalid urlDedup value (" + urlDedup
+                    + "); using " + SitemapUrlSet.EXACT + " (supported values: " + SitemapUrlSet.MODES + ")", module);
+            urlDedup = SitemapUrlSet.EXACT;
+        }
+        this.urlDedup = urlDedup;
+
         this.cmsPageUrlAttr = FlexibleStringExpander.getInstance(asNormString(map.get("cmsPageUrlAttr")));
 
         Object logLevelObj = map.get("logLevel");
@@ -569,6 +595,36 @@ public class SitemapConfig implements Serializable {
 
     public String getProductTraversalMode() { return productTraversalMode; }
 
+    /**
+     * Number of parallel shards the catalog traversal is split across; 1 for single-threaded generation.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public int getThreads() { return threads; }
+
+    /**
+     * Number of products per product ID range in sharded all-system product traversal.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public int getProductIdRangeSize() { return productIdRangeSize; }
+
+    /**
+     * If true, URLs are written to the sitemap files as they are added instead of being buffered per file.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public boolean isStreaming() { return streaming; }
+
+    /**
+     * Maximum uncompressed size in bytes of a sitemap file in streaming mode, or null for no limit.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public Integer getMaxFileSize() { return maxFileSize; }
+
+    /**
+     * Duplicate URL detection mode: exact, hash or none (see {@link SitemapUrlSet}).
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public String getUrlDedup() { return urlDedup; }
+
     // ADVANCED GETTERS
 
     public String getSitemapDirUrlLocation(String webappDir) {
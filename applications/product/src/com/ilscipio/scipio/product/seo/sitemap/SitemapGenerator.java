@@ -9,22 +9,34 @@ import java.net.URL;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import com.ilscipio.scipio.base.util.WildPattern;
 import com.ilscipio.scipio.product.category.CatalogAltUrlSanitizer;
 import com.ilscipio.scipio.product.category.CatalogFilters;
+import com.ilscipio.scipio.product.category.CatalogTraversalException.StopCatalogTraversalException;
+import com.ilscipio.scipio.product.category.CategoryRefType;
 import com.ilscipio.scipio.product.seo.SeoConfig;
 import com.redfin.sitemapgenerator.AltLink;
+import com.redfin.sitemapgenerator.W3CDateFormat;
 import org.ofbiz.base.location.FlexibleLocation;
 import org.ofbiz.base.util.Debug;
 import org.ofbiz.base.util.GeneralException;
@@ -36,6 +48,7 @@ import org.ofbiz.entity.Delegator;
 import org.ofbiz.entity.GenericValue;
 import org.ofbiz.entity.condition.EntityCondition;
 import org.ofbiz.entity.condition.EntityOperator;
+import org.ofbiz.entity.util.EntityListIterator;
 import org.ofbiz.service.LocalDispatcher;
 import org.ofbiz.service.ModelService;
 import org.ofbiz.service.ServiceUtil;
@@ -55,7 +68,8 @@ import com.redfin.sitemapgenerator.WebSitemapUrl;
 /**
  * Builds sitemap and records stats.
  * <p>
- * NOT thread-safe.
+ * NOT thread-safe. Parallel generation (sitemaps.properties <code>threads</code>) uses one copy of the generator per
+ * thread, see {@link #buildCatalogSitemapsParallel(int)}.
  * <p>
  * TODO: missing multi-locale link support - unclear if library supports - may need to do one-locale-per-index
  * TODO: does not delete old files (minor issue - spiders will simply ignore them in theory)
@@ -87,6 +101,9 @@ public class SitemapGenerator extends SeoCatalogTraverser {
     protected ElemHandler productElemHandler = null; // optimization
     protected ElemHandler contentElemHandler = null; // optimization
     protected Map<String, ?> servCtxOpts;
+    protected W3CDateFormat dateFormat; // SCIPIO: 3.0.0: Added: own copy for parallel shards (not thread-safe)
+    protected int shardIndex; // SCIPIO: 3.0.0: Added: 1-based index of a parallel shard, 0 if not a shard
+    protected List<SitemapGenerator> shards; // SCIPIO: 3.0.0: Added: shards of the last parallel generation, or null
 
     public enum ElemType { CATEGORY, PRODUCT, CONTENT }
 
@@ -144,6 +161,9 @@ public class SitemapGenerator extends SeoCatalogTraverser {
         this.productElemHandler = other.productElemHandler;
         this.contentElemHandler = other.contentElemHandler;
         this.servCtxOpts = other.servCtxOpts;
+        this.dateFormat = other.dateFormat;
+        this.shardIndex = other.shardIndex;
+        this.shards = other.shards;
     }
 
     public static SitemapGeneratorFactory getFactory(SitemapConfig sitemapConfig) {
@@ -412,6 +432,7 @@ public class SitemapGenerator extends SeoCatalogTraverser {
     public void reset() throws GeneralException {
         super.reset();
         resetElemHandlers();
+        this.shards = null;
     }
 
     // moved to TraversalState
@@ -572,18 +593,29 @@ public class SitemapGenerator extends SeoCatalogTraverser {
         myDir.mkdirs();
         return WebSitemapGenerator.builder(getBaseUrl(getDefaultLocale()), myDir)
                 .fileNamePrefix(filePrefix)
-                .dateFormat(sitemapConfig.getDateFormat())
+                .dateFormat(getDateFormat())
                 .gzip(sitemapConfig.isGzip())
                 .namespaces(UtilMisc.orderedMap("xhtml", "http://www.w3.org/1999/xhtml"))
+                .streaming(sitemapConfig.isStreaming())
                 .build();
     }
 
+    /**
+     * Returns the sitemap date format; parallel shards use their own copy because the format is not thread-safe.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    protected W3CDateFormat getDateFormat() {
+        return (dateFormat != null) ? dateFormat : sitemapConfig.getDateFormat();
+    }
+
     /**
      * The main iteration call for product/category sitemap generation - wrapper
      * around {@link #traverseCategoriesDepthFirst(List)}, plus content.
      */
     public void buildSitemapForWebsite() throws GeneralException {
-        if ("all-system".equals(getSitemapConfig().getCategoryTraversalMode()) || "all-system".equals(getSitemapConfig().getProductTraversalMode())) {
+        if (getSitemapConfig().getThreads() > 1) { // SCIPIO: 3.0.0: Added
+            buildCatalogSitemapsParallel(getSitemapConfig().getThreads());
+        } else if ("all-system".equals(getSitemapConfig().getCategoryTraversalMode()) || "all-system".equals(getSitemapConfig().getProductTraversalMode())) {
             setProdCatalogFromProductStore();
             if (isDoCategory()) {
                 try(DoStateHandler dsh = doCategoryOnlySection()) {
@@ -609,6 +641,265 @@ public class SitemapGenerator extends SeoCatalogTraverser {
         buildSitemapForContent();
     }
 
+    /**
+     * Product and category sitemap generation split across parallel shards, each a copy of this generator (made by the
+     * {@link SitemapGeneratorFactory}) writing its own sitemap files, named using {@link #getShardFilenamePrefix()}.
+     * <p>
+     * The work is split into tasks the shards pull from a common queue: one per top-level ProdCatalogCategory for
+     * depth-first traversal, one per range of {@link SitemapConfig#getProductIdRangeSize()} product IDs for all-system
+     * product traversal, and a single task for all-system category traversal. The shards share the duplicate URL sets
+     * of this generator (see {@link SitemapUrlSet}), so a URL reached by several shards is written once, by whichever
+     * gets there first. Each shard commits its own files; once all are done their stats are added to this
+     * generator's and {@link #commitSitemapsAndIndex()} lists their files in the index.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public void buildCatalogSitemapsParallel(int threads) throws GeneralException {
+        List<ShardTask> taskList = makeShardTasks();
+        int shardCount = Math.min(threads, taskList.size());
+        if (shardCount <= 0) {
+            return;
+        }
+        Queue<ShardTask> tasks = new ConcurrentLinkedQueue<>(taskList);
+        AtomicBoolean stopped = new AtomicBoolean(false);
+        List<SitemapGenerator> shards = new ArrayList<>(shardCount);
+        for (int i = 1; i <= shardCount; i++) {
+            shards.add(createShard(i));
+        }
+        Debug.logInfo(getLogMsgPrefix() + "Building catalog sitemaps in " + shardCount + " parallel shards (" + taskList.size() + " tasks)", module);
+        ExecutorService executor = makeShardExecutor(shardCount);
+        try {
+            List<Future<?>> futures = new ArrayList<>(shardCount);
+            for (SitemapGenerator shard : shards) {
+                futures.add(executor.submit(() -> {
+                    shard.runShardTasks(tasks, stopped);
+                    return null;
+                }));
+            }
+            Throwable error = null;
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (error == null) {
+                        error = e.getCause();
+                    } else {
+                        Debug.logError(e.getCause(), getLogMsgPrefix() + "Sitemap shard failed", module);
+                    }
+                }
+            }
+            if (error != null) {
+                throw new GeneralException("Could not build catalog sitemaps: " + error.getMessage(), error);
+            }
+        } catch (InterruptedException e) {
+            stopped.set(true);
+            Thread.currentThread().interrupt();
+            throw new GeneralException("Interrupted while building catalog sitemaps", e);
+        } finally {
+            executor.shutdown();
+        }
+        for (SitemapGenerator shard : shards) {
+            getStats().add(shard.getStats());
+        }
+        this.shards = shards;
+    }
+
+    /**
+     * Makes the tasks of a parallel generation (see {@link #buildCatalogSitemapsParallel(int)}).
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    protected List<ShardTask> makeShardTasks() throws GeneralException {
+        List<ShardTask> tasks = new ArrayList<>();
+        boolean categoryAllSystem = "all-system".equals(getSitemapConfig().getCategoryTraversalMode());
+        boolean productAllSystem = "all-system".equals(getSitemapConfig().getProductTraversalMode());
+        if (categoryAllSystem || productAllSystem) {
+            setProdCatalogFromProductStore();
+            if (isDoCategory()) {
+                if (categoryAllSystem) {
+                    tasks.add(new ShardTask(ElemType.CATEGORY, null, null, null));
+                } else {
+                    addStoreCatalogShardTasks(tasks, ElemType.CATEGORY);
+                }
+            }
+            if (isDoProduct()) {
+                if (productAllSystem) {
+                    for (EntityCondition productCond : makeProductIdRangeConditions(getSitemapConfig().getProductIdRangeSize())) {
+                        tasks.add(new ShardTask(ElemType.PRODUCT, null, null, productCond));
+                    }
+                } else {
+                    addStoreCatalogShardTasks(tasks, ElemType.PRODUCT);
+                }
+            }
+        } else {
+            addStoreCatalogShardTasks(tasks, null);
+        }
+        return tasks;
+    }
+
+    protected void addStoreCatalogShardTasks(List<ShardTask> tasks, ElemType type) throws GeneralException {
+        GenericValue productStore = getProductStore();
+        if (productStore == null) {
+            throw new IllegalStateException("ProductStore not set on CatalogTraverser");
+        }
+        for (GenericValue prodCatalog : queryProductStoreCatalogList(productStore)) {
+            for (GenericValue prodCatalogCategory : queryProdCatalogCategoryList(prodCatalog)) {
+                tasks.add(new ShardTask(type, prodCatalog, prodCatalogCategory, null));
+            }
+        }
+    }
+
+    /**
+     * Splits the products of the system into productId ranges of the given size, in a single pass over the IDs that
+     * only keeps the range boundaries.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    protected List<EntityCondition> makeProductIdRangeConditions(int rangeSize) throws GeneralException {
+        List<EntityCondition> conds = new ArrayList<>();
+        String fromId = null;
+        long count = 0;
+        try (EntityListIterator productIt = getDelegator().from("Product").select("productId").orderBy("productId").queryIterator()) {
+            GenericValue product;
+            while ((product = productIt.next()) != null) {
+                if (count > 0 && (count % rangeSize) == 0) {
+                    String toId = product.getString("productId");
+                    conds.add(makeIdRangeCondition("productId", fromId, toId));
+                    fromId = toId;
+                }
+                count++;
+            }
+        }
+        conds.add(makeIdRangeCondition("productId", fromId, null));
+        return conds;
+    }
+
+    protected static EntityCondition makeIdRangeCondition(String fieldName, String fromId, String toId) {
+        List<EntityCondition> conds = new ArrayList<>(2);
+        if (fromId != null) {
+            conds.add(EntityCondition.makeCondition(fieldName, EntityOperator.GREATER_THAN_EQUAL_TO, fromId));
+        }
+        if (toId != null) {
+            conds.add(EntityCondition.makeCondition(fieldName, EntityOperator.LESS_THAN, toId));
+        }
+        return conds.isEmpty() ? null : EntityCondition.makeCondition(conds, EntityOperator.AND);
+    }
+
+    /**
+     * Creates a parallel generation shard: a reset copy of this generator with its own date format and file names,
+     * sharing this generator's duplicate URL sets.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    protected SitemapGenerator createShard(int shardIndex) throws GeneralException {
+        SitemapGenerator shard = getFactory(sitemapConfig).createGenerator(this);
+        shard.reset();
+        shard.shardIndex = shardIndex;
+        shard.dateFormat = (W3CDateFormat) getDateFormat().clone();
+        for (Map.Entry<ElemType, ElemHandler> entry : shard.elemHandlers.entrySet()) {
+            ElemHandler elemHandler = elemHandlers.get(entry.getKey());
+            if (elemHandler != null) {
+                entry.getValue().setSeenUrls(elemHandler.getSeenUrls());
+            }
+        }
+        return shard;
+    }
+
+    protected ExecutorService makeShardExecutor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "Scipio-sitemap-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Runs tasks from the queue on this shard until it is empty or the generation is stopped, then commits the
+     * shard's sitemap files. A failure or a traversal stop ({@link StopCatalogTraversalException}) stops all shards.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    protected void runShardTasks(Queue<ShardTask> tasks, AtomicBoolean stopped) throws GeneralException {
+        try {
+            ShardTask task;
+            while (!stopped.get() && (task = tasks.poll()) != null) {
+                if (!runShardTask(task)) {
+                    stopped.set(true);
+                }
+            }
+        } catch (GeneralException | RuntimeException e) {
+            stopped.set(true);
+            try {
+                commitSitemaps(); // closes open files
+            } catch (RuntimeException e2) {
+                Debug.logWarning(getLogMsgPrefix() + "Could not close sitemap files of failed shard " + shardIndex + ": " + e2.toString(), module);
+            }
+            throw e;
+        }
+        commitSitemaps();
+    }
+
+    /**
+     * Runs one task on this shard; returns false if the traversal was stopped.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    protected boolean runShardTask(ShardTask task) throws GeneralException {
+        try (DoStateHandler dsh = (task.getType() == ElemType.CATEGORY) ? doCategoryOnlySection()
+                : (task.getType() == ElemType.PRODUCT) ? doProductOnlySection() : getDoStateHandler()) {
+            if (task.getProdCatalogCategory() != null) {
+                setProdCatalog(task.getProdCatalog());
+                try {
+                    traverseCategoriesDepthFirstImpl(Collections.singletonList(task.getProdCatalogCategory()),
+                            CategoryRefType.CATALOG_ASSOC.getResolver(), newTraversalState());
+                    return true;
+                } catch (StopCatalogTraversalException e) {
+                    return false; // NOTE: not an error - just stop
+                }
+            } else if (task.getType() == ElemType.PRODUCT) {
+                return traverseAllProductsInSystem(task.getProductCond());
+            } else {
+                return traverseAllCategoriesInSystem();
+            }
+        }
+    }
+
+    /**
+     * Returns the file name part identifying this parallel generation shard (e.g. <code>s2_</code> for
+     * <code>product_s2_1.xml.gz</code>), or empty if not a shard.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public String getShardFilenamePrefix() {
+        return (shardIndex > 0) ? "s" + shardIndex + "_" : "";
+    }
+
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    /**
+     * Unit of work of a parallel generation shard: the depth-first traversal of a top-level catalog category, the
+     * all-system traversal of a productId range, or the all-system category traversal.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    protected static class ShardTask {
+        private final ElemType type;
+        private final GenericValue prodCatalog;
+        private final GenericValue prodCatalogCategory;
+        private final EntityCondition productCond;
+
+        public ShardTask(ElemType type, GenericValue prodCatalog, GenericValue prodCatalogCategory, EntityCondition productCond) {
+            this.type = type;
+            this.prodCatalog = prodCatalog;
+            this.prodCatalogCategory = prodCatalogCategory;
+            this.productCond = productCond;
+        }
+
+        /** Returns CATEGORY or PRODUCT to restrict the task to categories or products, or null for both. */
+        public ElemType getType() { return type; }
+
+        public GenericValue getProdCatalog() { return prodCatalog; }
+
+        public GenericValue getProdCatalogCategory() { return prodCatalogCategory; }
+
+        public EntityCondition getProductCond() { return productCond; }
+    }
+
     /**
      * Content link generation. Includes CMS if enabled ({@link #buildSitemapForCmsPage}).
      */
@@ -1054,19 +1345,25 @@ public class SitemapGenerator extends SeoCatalogTraverser {
 
     protected ElemHandler getContentElemHandler() { return elemHandlers.get(ElemType.CONTENT); }
 
+    /**
+     * Space left in a sitemap file for the next URL entry (with alternate links) and the closing tag when checking maxFileSize.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    protected static final int FILE_SIZE_RESERVE = 32768;
+
     protected abstract class ElemHandler {
         private WebSitemapGenerator wsg;
         private List<String> sitemapFiles;
         private long urlCount;
         private long sitemapFileIndex;
-        private Set<String> seenUrls;
+        private SitemapUrlSet seenUrls; // SCIPIO: 3.0.0: Was Set<String>; configurable mode, shared by parallel shards
 
         protected ElemHandler() {
             this.wsg = null;
             this.sitemapFiles = new ArrayList<>();
             this.urlCount = 0;
             this.sitemapFileIndex = 0;
-            this.seenUrls = new LinkedHashSet<>();
+            this.seenUrls = SitemapUrlSet.create(sitemapConfig.getUrlDedup());
         }
 
         protected ElemHandler(ElemHandler other) {
@@ -1074,18 +1371,20 @@ public class SitemapGenerator extends SeoCatalogTraverser {
             this.sitemapFiles = new ArrayList<>(other.sitemapFiles);
             this.urlCount = other.urlCount;
             this.sitemapFileIndex = other.sitemapFileIndex;
-            this.seenUrls = new LinkedHashSet<>(other.seenUrls);
+            this.seenUrls = other.seenUrls.copy();
         }
 
         public WebSitemapGenerator getWsg() { return wsg; }
         public List<String> getSitemapFiles() { return sitemapFiles; }
         public long getUrlCount() { return urlCount; }
         public long getSitemapFileIndex() { return sitemapFileIndex; }
+        public SitemapUrlSet getSeenUrls() { return seenUrls; }
+        protected void setSeenUrls(SitemapUrlSet seenUrls) { this.seenUrls = seenUrls; }
 
         public abstract String getTypeFilenamePrefix();
 
         public String getNumberedSitemapFilenamePrefix() {
-            return getTypeFilenamePrefix() + sitemapFileIndex;
+            return getTypeFilenamePrefix() + getShardFilenamePrefix() + sitemapFileIndex;
         }
 
         public String getSitemapFilename() {
@@ -1093,21 +1392,35 @@ public class SitemapGenerator extends SeoCatalogTraverser {
         }
 
         public void addUrl(WebSitemapUrl url) throws IOException, URISyntaxException {
-            if (sitemapConfig.getSizemapSize() != null && urlCount >= sitemapConfig.getSizemapSize()) {
+            if (isSitemapFileFull()) {
                 commitSitemapFile();
             }
             if (wsg == null) {
                 beginSitemapFile();
             }
             String urlStr = url.getUrl().toString();
-            if (!seenUrls.contains(urlStr)) {
+            if (seenUrls.add(urlStr)) {
                 wsg.addUrl(url);
-                seenUrls.add(urlStr);
                 urlCount++;
                 updateStatsCount();
             }
         }
 
+        /**
+         * Returns true if the current file has reached the configured sizemapSize, the protocol maximum of 50000 URLs
+         * or, in streaming mode, the configured maxFileSize (less {@link #FILE_SIZE_RESERVE} for the next URL).
+         * <p>SCIPIO: 3.0.0: Added.</p>
+         */
+        protected boolean isSitemapFileFull() {
+            if (wsg == null) {
+                return false;
+            }
+            if ((sitemapConfig.getSizemapSize() != null && urlCount >= sitemapConfig.getSizemapSize()) || urlCount >= WebSitemapGenerator.MAX_URLS_PER_SITEMAP) {
+                return true;
+            }
+            return (sitemapConfig.getMaxFileSize() != null && wsg.getWrittenSize() >= sitemapConfig.getMaxFileSize() - FILE_SIZE_RESERVE);
+        }
+
         protected void beginSitemapFile() throws IOException, URISyntaxException {
             sitemapFileIndex++;
             urlCount = 0;
@@ -1167,14 +1480,28 @@ public class SitemapGenerator extends SeoCatalogTraverser {
     protected List<String> getAllSitemapFilenames() {
         List<String> sitemapFiles = new ArrayList<>();
         for(ElemType elemType : ElemType.values()) { // always same order
-            sitemapFiles.addAll(elemHandlers.get(elemType).getSitemapFiles());
+            ElemHandler elemHandler = elemHandlers.get(elemType);
+            if (elemHandler != null) {
+                sitemapFiles.addAll(elemHandler.getSitemapFiles());
+            }
+            if (shards != null) { // SCIPIO: 3.0.0: Parallel generation shard files (committed by the shards)
+                for (SitemapGenerator shard : shards) {
+                    ElemHandler shardElemHandler = shard.elemHandlers.get(elemType);
+                    if (shardElemHandler != null) {
+                        sitemapFiles.addAll(shardElemHandler.getSitemapFiles());
+                    }
+                }
+            }
         }
         return sitemapFiles;
     }
 
     public void commitSitemaps() {
         for(ElemType elemType : ElemType.values()) { // always same order
-            elemHandlers.get(elemType).commitSitemapFile();
+            ElemHandler elemHandler = elemHandlers.get(elemType);
+            if (elemHandler != null) {
+                elemHandler.commitSitemapFile();
+            }
         }
     }
 
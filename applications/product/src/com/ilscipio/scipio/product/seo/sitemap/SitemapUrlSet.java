@@ -0,0 +1,189 @@
+package com.ilscipio.scipio.product.seo.sitemap;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe set of the URLs already written to the sitemaps of one type, used to skip duplicates; one instance is
+ * shared by all the shards of a parallel generation.
+ *
+ * <p>Modes (sitemaps.properties <code>urlDedup</code>):</p>
+ * <ul>
+ * <li>exact (default): keeps every URL string.</li>
+ * <li>hash: keeps only a 64-bit hash of each URL in a primitive open-addressing table, 16 to 32 bytes per URL
+ *     regardless of URL length, for catalogs too large to keep all URLs in memory. Unlike a Bloom filter of the same
+ *     size, false positives (which would silently leave a URL out of the sitemap) require a full 64-bit collision,
+ *     with odds of about n<sup>2</sup>/2<sup>65</sup> for n URLs (under 1 in 30 million at 1 million URLs).</li>
+ * <li>none: no duplicate check.</li>
+ * </ul>
+ *
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public abstract class SitemapUrlSet {
+
+    public static final String EXACT = "exact";
+    public static final String HASH = "hash";
+    public static final String NONE = "none";
+    public static final List<String> MODES = Collections.unmodifiableList(Arrays.asList(EXACT, HASH, NONE));
+
+    public static boolean isValidMode(String mode) {
+        return MODES.contains(mode);
+    }
+
+    public static SitemapUrlSet create(String mode) {
+        if (HASH.equals(mode)) {
+            return new HashUrlSet();
+        } else if (NONE.equals(mode)) {
+            return new NoneUrlSet();
+        }
+        return new ExactUrlSet();
+    }
+
+    /** Adds the URL and returns true if it was not already in the set. */
+    public abstract boolean add(String url);
+
+    /** Returns the number of URLs in the set (0 for mode none). */
+    public abstract long size();
+
+    /** Returns an independent copy of the set. */
+    public abstract SitemapUrlSet copy();
+
+    protected static class ExactUrlSet extends SitemapUrlSet {
+        private final Set<String> urls = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public boolean add(String url) {
+            return urls.add(url);
+        }
+
+        @Override
+        public long size() {
+            return urls.size();
+        }
+
+        @Override
+        public SitemapUrlSet copy() {
+            ExactUrlSet other = new ExactUrlSet();
+            other.urls.addAll(urls);
+            return other;
+        }
+    }
+
+    protected static class HashUrlSet extends SitemapUrlSet {
+        private static final int STRIPES = 16; // power of 2
+        private final HashTable[] tables = new HashTable[STRIPES];
+
+        protected HashUrlSet() {
+            for (int i = 0; i < STRIPES; i++) {
+                tables[i] = new HashTable();
+            }
+        }
+
+        @Override
+        public boolean add(String url) {
+            long hash = hash(url);
+            // NOTE: Stripe on the high bits, the table slots use the low bits
+            HashTable table = tables[(int) (hash >>> 60) & (STRIPES - 1)];
+            synchronized (table) {
+                return table.add(hash);
+            }
+        }
+
+        @Override
+        public long size() {
+            long size = 0;
+            for (HashTable table : tables) {
+                synchronized (table) {
+                    size += table.size;
+                }
+            }
+            return size;
+        }
+
+        @Override
+        public SitemapUrlSet copy() {
+            HashUrlSet other = new HashUrlSet();
+            for (int i = 0; i < STRIPES; i++) {
+                synchronized (tables[i]) {
+                    other.tables[i].slots = tables[i].slots.clone();
+                    other.tables[i].size = tables[i].size;
+                }
+            }
+            return other;
+        }
+
+        /** 64-bit FNV-1a over the UTF-16 chars, with a final avalanche (MurmurHash3 fmix64) so all bits are usable. */
+        static long hash(String url) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < url.length(); i++) {
+                hash ^= url.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return (hash != 0) ? hash : 1; // 0 marks empty slots
+        }
+
+        /** Open-addressing (linear probing) table of non-zero longs, kept at most half full. Not thread-safe. */
+        private static class HashTable {
+            long[] slots = new long[1024];
+            int size = 0;
+
+            boolean add(long hash) {
+                int mask = slots.length - 1;
+                int i = (int) hash & mask;
+                long slot;
+                while ((slot = slots[i]) != 0) {
+                    if (slot == hash) {
+                        return false;
+                    }
+                    i = (i + 1) & mask;
+                }
+                slots[i] = hash;
+                if (++size > (slots.length >> 1)) {
+                    grow();
+                }
+                return true;
+            }
+
+            void grow() {
+                long[] oldSlots = slots;
+                long[] newSlots = new long[oldSlots.length << 1];
+                int mask = newSlots.length - 1;
+                for (long hash : oldSlots) {
+                    if (hash != 0) {
+                        int i = (int) hash & mask;
+                        while (newSlots[i] != 0) {
+                            i = (i + 1) & mask;
+                        }
+                        newSlots[i] = hash;
+                    }
+                }
+                slots = newSlots;
+            }
+        }
+    }
+
+    protected static class NoneUrlSet extends SitemapUrlSet {
+        @Override
+        public boolean add(String url) {
+            return true;
+        }
+
+        @Override
+        public long size() {
+            return 0;
+        }
+
+        @Override
+        public SitemapUrlSet copy() {
+            return this;
+        }
+    }
+}
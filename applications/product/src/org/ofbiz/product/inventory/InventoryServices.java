@@ -23,10 +23,12 @@ import java.math.MathContext;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 import org.ofbiz.base.util.Debug;
@@ -1083,4 +1085,125 @@ public class InventoryServices {
             return ServiceUtil.returnError(e.getMessage());
         }
     }
+
+    /**
+     * Applies the ATP/QOH differences of a new InventoryItemDetail to InventorySummary in the same transaction;
+     * schedules a recount of the product instead if the summary row does not exist yet.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public static Map<String, Object> updateInventorySummaryFromDetail(ServiceContext ctx) {
+        if (!InventorySummaryWorker.isEnabled()) {
+            return ServiceUtil.returnSuccess();
+        }
+        String inventoryItemId = ctx.attr("inventoryItemId");
+        try {
+            GenericValue inventoryItem = ctx.delegator().from("InventoryItem").where("inventoryItemId", inventoryItemId).queryOne();
+            if (inventoryItem == null || inventoryItem.get("productId") == null) {
+                return ServiceUtil.returnSuccess();
+            }
+            if (InventorySummaryWorker.isSerialized(inventoryItem)) {
+                // Serialized item totals follow their status, not their details
+                InventorySummaryWorker.recountAfterCommit(ctx.dispatcher(), UtilMisc.toList(inventoryItem.getString("productId")));
+            } else if (InventorySummaryWorker.isCounted(inventoryItem)) {
+                if (!InventorySummaryWorker.addToSummary(ctx.delegator(), inventoryItem.getString("productId"), inventoryItem.getString("facilityId"),
+                        ctx.attr("availableToPromiseDiff"), ctx.attr("quantityOnHandDiff"))) {
+                    InventorySummaryWorker.recountAfterCommit(ctx.dispatcher(), UtilMisc.toList(inventoryItem.getString("productId")));
+                }
+            }
+            return ServiceUtil.returnSuccess();
+        } catch (GenericEntityException e) {
+            Debug.logError(e, "Could not update InventorySummary for inventory item [" + inventoryItemId + "]", module);
+            return ServiceUtil.returnError(e.getMessage());
+        }
+    }
+
+    /**
+     * Schedules a recount of InventorySummary after commit for the changes to an InventoryItem (before the write) that
+     * the detail differences do not cover: status, type, product or facility changes, serialized totals and removals.
+     * Without inventoryItem (InventoryItem removals, InventoryItemDetail updates and removals), always recounts the item's product.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public static Map<String, Object> updateInventorySummaryFromItem(ServiceContext ctx) {
+        if (!InventorySummaryWorker.isEnabled()) {
+            return ServiceUtil.returnSuccess();
+        }
+        String inventoryItemId = ctx.attr("inventoryItemId");
+        GenericValue inventoryItem = ctx.attr("inventoryItem");
+        if (inventoryItem != null && inventoryItem.originalDbValuesAvailable() && !InventorySummaryWorker.isSerialized(inventoryItem)) {
+            boolean changed = false;
+            for (String fieldName : UtilMisc.toList("statusId", "inventoryItemTypeId", "productId", "facilityId")) {
+                if (inventoryItem.containsKey(fieldName) && !Objects.equals(inventoryItem.get(fieldName), inventoryItem.getOriginalDbValue(fieldName))) {
+                    changed = true;
+                    break;
+                }
+            }
+            if (!changed) {
+                return ServiceUtil.returnSuccess();
+            }
+        }
+        try {
+            Set<String> productIds = new LinkedHashSet<>();
+            if (inventoryItem != null && inventoryItem.getString("productId") != null) {
+                productIds.add(inventoryItem.getString("productId"));
+            }
+            // The stored row still has the previous product (the ECA runs before the write)
+            GenericValue storedItem = ctx.delegator().from("InventoryItem").where("inventoryItemId", inventoryItemId).queryOne();
+            if (storedItem != null && storedItem.getString("productId") != null) {
+                productIds.add(storedItem.getString("productId"));
+            }
+            InventorySummaryWorker.recountAfterCommit(ctx.dispatcher(), productIds);
+            return ServiceUtil.returnSuccess();
+        } catch (GenericEntityException e) {
+            Debug.logError(e, "Could not schedule InventorySummary recount for inventory item [" + inventoryItemId + "]", module);
+            return ServiceUtil.returnError(e.getMessage());
+        }
+    }
+
+    /**
+     * Recounts the InventorySummary rows of a product, or verifies (and unless verifyOnly, repairs) all of them using
+     * grouped queries; mismatched products are recounted in separate transactions.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public static Map<String, Object> rebuildInventorySummary(ServiceContext ctx) {
+        String productId = ctx.attr("productId");
+        boolean verifyOnly = ctx.attr("verifyOnly", false);
+        try {
+            if (productId != null) {
+                int changedCount = InventorySummaryWorker.recountProduct(ctx.delegator(), productId);
+                if (changedCount > 0 && Debug.verboseOn()) {
+                    Debug.logVerbose("rebuildInventorySummary: Updated " + changedCount + " summary rows for product [" + productId + "]", module);
+                }
+                Map<String, Object> result = ServiceUtil.returnSuccess();
+                result.put("mismatchCount", (changedCount > 0) ? 1 : 0);
+                return result;
+            }
+            InventorySummaryWorker.VerifyResult verifyResult = InventorySummaryWorker.verifyAll(ctx.delegator(), !verifyOnly);
+            int repairedCount = 0;
+            int errorCount = 0;
+            if (!verifyOnly) {
+                for (String mismatchProductId : verifyResult.getMismatchProductIds()) {
+                    Map<String, Object> res = ctx.dispatcher().runSyncNewTrans("rebuildInventorySummary", UtilMisc.toMap("productId", mismatchProductId));
+                    if (!ServiceUtil.isSuccess(res)) {
+                        Debug.logError("rebuildInventorySummary: error recounting product [" + mismatchProductId + "]: " + ServiceUtil.getErrorMessage(res), module);
+                        errorCount++;
+                    } else if (((Integer) res.get("mismatchCount")) > 0) {
+                        repairedCount++;
+                    }
+                }
+            }
+            int mismatchCount = verifyResult.getMismatchProductIds().size() + verifyResult.getMissingProductIds().size();
+            String msg = "Verified InventorySummary (" + verifyResult + ", repaired products: " + repairedCount + ", errors: " + errorCount + ")";
+            Debug.log((mismatchCount == 0 || (!verifyOnly && errorCount == 0)) ? Debug.INFO : Debug.WARNING, "rebuildInventorySummary: " + msg, module);
+            if (verifyOnly && mismatchCount > 0) {
+                Debug.logWarning("rebuildInventorySummary: Mismatched products: " + verifyResult.getMismatchProductIds()
+                        + "; missing products: " + verifyResult.getMissingProductIds(), module);
+            }
+            Map<String, Object> result = (errorCount == 0) ? ServiceUtil.returnSuccess(msg) : ServiceUtil.returnFailure(msg);
+            result.put("mismatchCount", mismatchCount);
+            return result;
+        } catch (GeneralException e) {
+            Debug.logError(e, module);
+            return ServiceUtil.returnError(e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,406 @@
+package org.ofbiz.product.inventory;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilDateTime;
+import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.base.util.UtilProperties;
+import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.GenericEntityException;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityOperator;
+import org.ofbiz.entity.datasource.GenericHelperInfo;
+import org.ofbiz.entity.jdbc.SQLProcessor;
+import org.ofbiz.entity.model.DynamicViewEntity;
+import org.ofbiz.entity.model.ModelEntity;
+import org.ofbiz.entity.transaction.GenericTransactionException;
+import org.ofbiz.entity.transaction.TransactionUtil;
+import org.ofbiz.entity.util.EntityListIterator;
+import org.ofbiz.entity.util.EntityQuery;
+import org.ofbiz.service.GenericServiceException;
+import org.ofbiz.service.LocalDispatcher;
+
+/**
+ * Maintains and reads <code>InventorySummary</code>, the materialized per-product/per-facility ATP/QOH totals of the
+ * inventory items counted by <code>getProductInventoryAvailable</code> (no statusId given): items with no status,
+ * <code>INV_AVAILABLE</code> or <code>INV_NS_RETURNED</code> status, and serialized items (whose totals reflect their status).
+ *
+ * <p>The totals are maintained incrementally, in the same transaction as each <code>InventoryItemDetail</code> insert,
+ * by an atomic <code>UPDATE ... SET total = total + diff</code>. Changes that cannot be applied as a difference (item status,
+ * type, product or facility changes, serialized items, detail updates/removals, missing summary rows) schedule a recount of
+ * the product after commit, which locks the product's summary rows and replaces them from a grouped query over
+ * <code>InventoryItem</code>. {@link #verifyAll} compares all summary rows against one grouped query and repairs the
+ * products that differ; it is run by the <code>rebuildInventorySummary</code> service.</p>
+ *
+ * <p>Reads go through the entity cache ({@link #getInventoryAvailable}); the rows are cleared from it after commit.
+ * Enabled by <code>inventory.summary.enabled</code> in inventory.properties.</p>
+ *
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public final class InventorySummaryWorker {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    /** Summary facilityId for inventory items without a facility. */
+    public static final String NO_FACILITY_ID = "_NA_";
+
+    private static final List<String> availableStatusIds = UtilMisc.unmodifiableArrayList("INV_AVAILABLE", "INV_NS_RETURNED");
+    private static final boolean enabled = UtilProperties.getPropertyAsBoolean("inventory", "inventory.summary.enabled", false);
+
+    /** Products (delegatorName::productId) with a recount scheduled but not yet started, so each is only queued once. */
+    private static final Set<String> pendingRecounts = ConcurrentHashMap.newKeySet();
+
+    private InventorySummaryWorker() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Returns true if the inventory item counts towards the summary totals. */
+    public static boolean isCounted(GenericValue inventoryItem) {
+        String statusId = inventoryItem.getString("statusId");
+        return statusId == null || availableStatusIds.contains(statusId) || isSerialized(inventoryItem);
+    }
+
+    public static boolean isSerialized(GenericValue inventoryItem) {
+        return "SERIALIZED_INV_ITEM".equals(inventoryItem.getString("inventoryItemTypeId"));
+    }
+
+    public static String getSummaryFacilityId(String facilityId) {
+        return (facilityId != null) ? facilityId : NO_FACILITY_ID;
+    }
+
+    /**
+     * Returns the availableToPromiseTotal and quantityOnHandTotal of the product in the given facility, or in all
+     * facilities if facilityId is null, from the entity-cached summary; returns null if the summary is disabled or has
+     * no rows for the product/facility, in which case the caller should use another source.
+     */
+    public static Map<String, Object> getInventoryAvailable(Delegator delegator, String productId, String facilityId) {
+        if (!enabled || productId == null) {
+            return null;
+        }
+        try {
+            List<GenericValue> summaries;
+            if (facilityId != null) {
+                GenericValue summary = EntityQuery.use(delegator).from("InventorySummary").where("productId", productId,
+                        "facilityId", facilityId).cache(true).queryOne();
+                summaries = (summary != null) ? Collections.singletonList(summary) : Collections.emptyList();
+            } else {
+                summaries = EntityQuery.use(delegator).from("InventorySummary").where("productId", productId).cache(true).queryList();
+            }
+            if (summaries.isEmpty()) {
+                return null;
+            }
+            BigDecimal availableToPromiseTotal = BigDecimal.ZERO;
+            BigDecimal quantityOnHandTotal = BigDecimal.ZERO;
+            for (GenericValue summary : summaries) {
+                availableToPromiseTotal = availableToPromiseTotal.add(summary.getBigDecimal("availableToPromiseTotal"));
+                quantityOnHandTotal = quantityOnHandTotal.add(summary.getBigDecimal("quantityOnHandTotal"));
+            }
+            return UtilMisc.toMap("availableToPromiseTotal", availableToPromiseTotal, "quantityOnHandTotal", quantityOnHandTotal);
+        } catch (GenericEntityException e) {
+            Debug.logError(e, "Could not read InventorySummary for product [" + productId + "]", module);
+            return null;
+        }
+    }
+
+    /**
+     * Adds the differences to the summary row of the product/facility with an atomic update, in the current transaction,
+     * and clears the row from the entity cache after commit. Returns false if there is no summary row yet.
+     */
+    public static boolean addToSummary(Delegator delegator, String productId, String facilityId, BigDecimal availableToPromiseDiff,
+                                       BigDecimal quantityOnHandDiff) throws GenericEntityException {
+        GenericHelperInfo helperInfo = delegator.getGroupHelperInfo(delegator.getEntityGroupName("InventorySummary"));
+        ModelEntity modelEntity = delegator.getModelEntity("InventorySummary");
+        String atpCol = modelEntity.getField("availableToPromiseTotal").getColName();
+        String qohCol = modelEntity.getField("quantityOnHandTotal").getColName();
+        StringBuilder sql = new StringBuilder("UPDATE ").append(modelEntity.getTableName(helperInfo.getHelperBaseName()));
+        sql.append(" SET ").append(atpCol).append(" = ").append(atpCol).append(" + ?, ");
+        sql.append(qohCol).append(" = ").append(qohCol).append(" + ?, ");
+        sql.append(modelEntity.getField(ModelEntity.STAMP_FIELD).getColName()).append(" = ?, ");
+        sql.append(modelEntity.getField(ModelEntity.STAMP_TX_FIELD).getColName()).append(" = ?");
+        sql.append(" WHERE ").append(modelEntity.getField("productId").getColName()).append(" = ? AND ");
+        sql.append(modelEntity.getField("facilityId").getColName()).append(" = ?");
+        String summaryFacilityId = getSummaryFacilityId(facilityId);
+        int updated;
+        try (SQLProcessor sqlP = new SQLProcessor(delegator, helperInfo)) {
+            sqlP.prepareStatement(sql.toString());
+            sqlP.setValue(availableToPromiseDiff != null ? availableToPromiseDiff : BigDecimal.ZERO);
+            sqlP.setValue(quantityOnHandDiff != null ? quantityOnHandDiff : BigDecimal.ZERO);
+            sqlP.setValue(UtilDateTime.nowTimestamp());
+            sqlP.setValue(TransactionUtil.getTransactionStartStamp());
+            sqlP.setValue(productId);
+            sqlP.setValue(summaryFacilityId);
+            updated = sqlP.executeUpdate();
+        } catch (SQLException e) {
+            throw new GenericEntityException("Unable to update InventorySummary for product [" + productId + "] facility ["
+                    + summaryFacilityId + "]: " + e.getMessage(), e);
+        }
+        if (updated > 0) {
+            GenericValue summaryPk = delegator.makeValue("InventorySummary", "productId", productId, "facilityId", summaryFacilityId);
+            runAfterCommit(() -> delegator.clearCacheLine(summaryPk), null);
+        }
+        return updated > 0;
+    }
+
+    /**
+     * Schedules an asynchronous recount (<code>rebuildInventorySummary</code>) of each product after the current
+     * transaction commits (immediately if there is none); products that already have a recount pending are skipped.
+     */
+    public static void recountAfterCommit(LocalDispatcher dispatcher, Collection<String> productIds) {
+        String delegatorName = dispatcher.getDelegator().getDelegatorName();
+        for (String productId : productIds) {
+            String pendingKey = delegatorName + "::" + productId;
+            if (productId == null || !pendingRecounts.add(pendingKey)) {
+                continue;
+            }
+            runAfterCommit(() -> {
+                try {
+                    dispatcher.runAsync("rebuildInventorySummary", UtilMisc.toMap("productId", productId), false);
+                } catch (GenericServiceException e) {
+                    pendingRecounts.remove(pendingKey);
+                    Debug.logError(e, "Could not schedule InventorySummary recount for product [" + productId + "]", module);
+                }
+            }, () -> pendingRecounts.remove(pendingKey));
+        }
+    }
+
+    private static void runAfterCommit(Runnable onCommit, Runnable onRollback) {
+        try {
+            if (TransactionUtil.isTransactionInPlace()) {
+                TransactionUtil.registerSynchronization(new Synchronization() {
+                    @Override
+                    public void beforeCompletion() {
+                    }
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (status == Status.STATUS_COMMITTED) {
+                            onCommit.run();
+                        } else if (onRollback != null) {
+                            onRollback.run();
+                        }
+                    }
+                });
+                return;
+            }
+        } catch (GenericTransactionException e) {
+            Debug.logWarning("Could not register InventorySummary update for transaction commit; running now: " + e.toString(), module);
+        }
+        onCommit.run();
+    }
+
+    /**
+     * Recounts the summary rows of the product, in the current transaction. The rows are locked first, so that
+     * concurrent detail inserts are either visible to the recount or applied after it.
+     * Returns the number of summary rows created, updated or removed.
+     */
+    public static int recountProduct(Delegator delegator, String productId) throws GenericEntityException {
+        pendingRecounts.remove(delegator.getDelegatorName() + "::" + productId);
+        lockProductSummaries(delegator, productId);
+        Map<String, BigDecimal[]> totals = readTotals(delegator, productId).getOrDefault(productId, Collections.emptyMap());
+        List<GenericValue> summaries = EntityQuery.use(delegator).from("InventorySummary").where("productId", productId).queryList();
+        return syncSummaries(delegator, productId, totals, summaries);
+    }
+
+    private static void lockProductSummaries(Delegator delegator, String productId) throws GenericEntityException {
+        GenericHelperInfo helperInfo = delegator.getGroupHelperInfo(delegator.getEntityGroupName("InventorySummary"));
+        ModelEntity modelEntity = delegator.getModelEntity("InventorySummary");
+        String qohCol = modelEntity.getField("quantityOnHandTotal").getColName();
+        String sql = "UPDATE " + modelEntity.getTableName(helperInfo.getHelperBaseName()) + " SET " + qohCol + " = " + qohCol
+                + " WHERE " + modelEntity.getField("productId").getColName() + " = ?";
+        try (SQLProcessor sqlP = new SQLProcessor(delegator, helperInfo)) {
+            sqlP.prepareStatement(sql);
+            sqlP.setValue(productId);
+            sqlP.executeUpdate();
+        } catch (SQLException e) {
+            throw new GenericEntityException("Unable to lock InventorySummary for product [" + productId + "]: " + e.getMessage(), e);
+        }
+    }
+
+    /** Creates, updates and removes the product's summary rows to match the totals; returns the number of changed rows. */
+    private static int syncSummaries(Delegator delegator, String productId, Map<String, BigDecimal[]> totals,
+                                     List<GenericValue> summaries) throws GenericEntityException {
+        Map<String, BigDecimal[]> remaining = new LinkedHashMap<>(totals);
+        int changed = 0;
+        for (GenericValue summary : summaries) {
+            BigDecimal[] facilityTotals = remaining.remove(summary.getString("facilityId"));
+            if (facilityTotals == null) {
+                summary.remove();
+                changed++;
+            } else if (!matches(summary, facilityTotals)) {
+                summary.set("availableToPromiseTotal", facilityTotals[0]);
+                summary.set("quantityOnHandTotal", facilityTotals[1]);
+                summary.store();
+                changed++;
+            }
+        }
+        for (Map.Entry<String, BigDecimal[]> entry : remaining.entrySet()) {
+            makeSummary(delegator, productId, entry.getKey(), entry.getValue()).create();
+            changed++;
+        }
+        return changed;
+    }
+
+    private static GenericValue makeSummary(Delegator delegator, String productId, String facilityId, BigDecimal[] facilityTotals) {
+        return delegator.makeValue("InventorySummary", "productId", productId, "facilityId", facilityId,
+                "availableToPromiseTotal", facilityTotals[0], "quantityOnHandTotal", facilityTotals[1]);
+    }
+
+    private static boolean matches(GenericValue summary, BigDecimal[] facilityTotals) {
+        BigDecimal atp = summary.getBigDecimal("availableToPromiseTotal");
+        BigDecimal qoh = summary.getBigDecimal("quantityOnHandTotal");
+        return atp != null && qoh != null && atp.compareTo(facilityTotals[0]) == 0 && qoh.compareTo(facilityTotals[1]) == 0;
+    }
+
+    /**
+     * Reads the counted ATP/QOH totals by product and facility with one grouped query over InventoryItem (for the given
+     * product, or all if null); product/facility pairs whose items are all uncounted get zero totals.
+     */
+    private static Map<String, Map<String, BigDecimal[]>> readTotals(Delegator delegator, String productId) throws GenericEntityException {
+        EntityCondition productCond = (productId != null) ? EntityCondition.makeCondition("productId", productId)
+                : EntityCondition.makeCondition("productId", EntityOperator.NOT_EQUAL, null);
+        Map<String, Map<String, BigDecimal[]>> totals = new HashMap<>();
+        try (EntityListIterator eli = EntityQuery.use(delegator).select("productId", "facilityId").from("InventoryItem")
+                .where(productCond).distinct().queryIterator()) {
+            GenericValue pair;
+            while ((pair = eli.next()) != null) {
+                totals.computeIfAbsent(pair.getString("productId"), k -> new HashMap<>())
+                        .put(getSummaryFacilityId(pair.getString("facilityId")), new BigDecimal[] { BigDecimal.ZERO, BigDecimal.ZERO });
+            }
+        }
+        DynamicViewEntity totalsView = new DynamicViewEntity();
+        totalsView.addMemberEntity("II", "InventoryItem");
+        totalsView.addAlias("II", "productId", null, true, null, true);
+        totalsView.addAlias("II", "facilityId", null, true, null, true);
+        totalsView.addAlias("II", "availableToPromiseTotal", null, false, "sum", true);
+        totalsView.addAlias("II", "quantityOnHandTotal", null, false, "sum", true);
+        totalsView.addAlias("II", "statusId", null, false, null, false);
+        totalsView.addAlias("II", "inventoryItemTypeId", null, false, null, false);
+        EntityCondition countedCond = EntityCondition.makeCondition(UtilMisc.toList(
+                EntityCondition.makeCondition("statusId", EntityOperator.EQUALS, null),
+                EntityCondition.makeCondition("statusId", EntityOperator.IN, availableStatusIds),
+                EntityCondition.makeCondition("inventoryItemTypeId", "SERIALIZED_INV_ITEM")), EntityOperator.OR);
+        try (EntityListIterator eli = EntityQuery.use(delegator).from(totalsView).where(productCond, countedCond).queryIterator()) {
+            GenericValue sums;
+            while ((sums = eli.next()) != null) {
+                BigDecimal atp = sums.getBigDecimal("availableToPromiseTotal");
+                BigDecimal qoh = sums.getBigDecimal("quantityOnHandTotal");
+                totals.computeIfAbsent(sums.getString("productId"), k -> new HashMap<>())
+                        .put(getSummaryFacilityId(sums.getString("facilityId")), new BigDecimal[] {
+                                (atp != null) ? atp : BigDecimal.ZERO, (qoh != null) ? qoh : BigDecimal.ZERO });
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Compares all summary rows with the totals read by one grouped query over InventoryItem. If repair is true,
+     * products without summary rows get them created in the current transaction, and the products whose rows differ
+     * are returned in the result for a locked recount in their own transactions (rows read during concurrent inventory
+     * changes may differ only transiently).
+     */
+    public static VerifyResult verifyAll(Delegator delegator, boolean repair) throws GenericEntityException {
+        Map<String, Map<String, BigDecimal[]>> totals = readTotals(delegator, null);
+        VerifyResult result = new VerifyResult();
+        try (EntityListIterator eli = EntityQuery.use(delegator).from("InventorySummary").orderBy("productId", "facilityId").queryIterator()) {
+            String productId = null;
+            List<GenericValue> productSummaries = new ArrayList<>();
+            GenericValue summary;
+            while ((summary = eli.next()) != null) {
+                result.summaryCount++;
+                if (productId != null && !productId.equals(summary.getString("productId"))) {
+                    verifyProduct(productId, totals.remove(productId), productSummaries, result);
+                    productSummaries.clear();
+                }
+                productId = summary.getString("productId");
+                productSummaries.add(summary);
+            }
+            if (productId != null) {
+                verifyProduct(productId, totals.remove(productId), productSummaries, result);
+            }
+        }
+        // Products left have inventory items but no summary rows at all
+        List<GenericValue> toCreate = new ArrayList<>();
+        for (Map.Entry<String, Map<String, BigDecimal[]>> entry : totals.entrySet()) {
+            result.productCount++;
+            result.missingProductIds.add(entry.getKey());
+            if (repair) {
+                for (Map.Entry<String, BigDecimal[]> facilityEntry : entry.getValue().entrySet()) {
+                    toCreate.add(makeSummary(delegator, entry.getKey(), facilityEntry.getKey(), facilityEntry.getValue()));
+                }
+            }
+        }
+        if (!toCreate.isEmpty()) {
+            delegator.storeAll(toCreate);
+            result.createdCount = toCreate.size();
+        }
+        return result;
+    }
+
+    private static void verifyProduct(String productId, Map<String, BigDecimal[]> totals, List<GenericValue> summaries, VerifyResult result) {
+        result.productCount++;
+        boolean matches = (totals != null) ? (totals.size() == summaries.size()) : summaries.isEmpty();
+        for (int i = 0; matches && i < summaries.size(); i++) {
+            BigDecimal[] facilityTotals = totals.get(summaries.get(i).getString("facilityId"));
+            matches = (facilityTotals != null) && matches(summaries.get(i), facilityTotals);
+        }
+        if (!matches) {
+            result.mismatchProductIds.add(productId);
+        }
+    }
+
+    public static class VerifyResult {
+        protected int productCount;
+        protected int summaryCount;
+        protected int createdCount;
+        protected final List<String> mismatchProductIds = new ArrayList<>();
+        protected final List<String> missingProductIds = new ArrayList<>();
+
+        /** Number of products with inventory items or summary rows. */
+        public int getProductCount() {
+            return productCount;
+        }
+
+        public int getSummaryCount() {
+            return summaryCount;
+        }
+
+        /** Number of summary rows created for the products without any. */
+        public int getCreatedCount() {
+            return createdCount;
+        }
+
+        /** Products whose summary rows differ from their inventory items. */
+        public List<String> getMismatchProductIds() {
+            return mismatchProductIds;
+        }
+
+        /** Products with inventory items but no summary rows. */
+        public List<String> getMissingProductIds() {
+            return missingProductIds;
+        }
+
+        @Override
+        public String toString() {
+            return "products: " + productCount + ", summary rows: " + summaryCount + ", mismatched products: "
+                    + mismatchProductIds.size() + ", missing products: " + missingProductIds.size() + ", created rows: " + createdCount;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.ilscipio.scipio.solr;
 
 import org.ofbiz.base.SystemState;
+import org.ofbiz.base.concurrent.ExecutionPool;
 import org.ofbiz.base.util.Debug;
 import org.ofbiz.base.util.GeneralException;
 import org.ofbiz.base.util.ProcessSignals;
@@ -32,6 +33,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -42,8 +44,11 @@ import java.util.Objects;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -109,6 +114,7 @@ public class EntityIndexer implements Runnable {
     protected int bufSize;
     protected int sleepTime;
     protected long lastRunStatsTime = 0;
+    protected int docBuildThreads; // SCIPIO: 3.0.0
 
     protected EntityIndexer(String name, Map<String, ?> properties, Queue<Entry> queue) {
         if (properties == null) {
@@ -126,20 +132,74 @@ public class EntityIndexer implements Runnable {
         this.maxRunTime = UtilMisc.toInteger(properties.get("maxRunTime"), 60000);
         this.bufSize = UtilMisc.toInteger(properties.get("bufSize"), 1000);
         this.sleepTime = UtilMisc.toInteger(properties.get("sleepTime"), 500);
+        Object docBuildThreads = properties.get("docBuildThreads");
+        this.docBuildThreads = "auto".equals(docBuildThreads) ? Runtime.getRuntime().availableProcessors() : UtilMisc.toInteger(docBuildThreads, 0);
         this.runSemaphore = new Semaphore(1);
         this.lastRunStatsTime = 0;
     }
 
     public static class Factory {
         public EntityIndexer makeIndexer(String name, Map<String, ?> properties) {
-            return new EntityIndexer(name, properties, makeQueue(properties));
+            return new EntityIndexer(name, properties, makeQueue(name, properties));
+        }
+
+        /**
+         * Makes the indexer queue according to the <code>queue</code> property: <code>memory</code> (default) for the
+         * in-memory queue, <code>journal</code> for the durable {@link IndexingJournalQueue}, or the name of a
+         * {@link DurableQueue} class having a (String name, Map properties) constructor.
+         * <p>SCIPIO: 3.0.0: Added.</p>
+         */
+        public Queue<Entry> makeQueue(String name, Map<String, ?> properties) {
+            String queueType = (String) properties.get("queue");
+            if (UtilValidate.isEmpty(queueType) || "memory".equals(queueType)) {
+                return makeQueue(properties);
+            } else if ("journal".equals(queueType)) {
+                return new IndexingJournalQueue(name, properties);
+            }
+            try {
+                return UtilGenerics.cast(Thread.currentThread().getContextClassLoader().loadClass(queueType)
+                        .getConstructor(String.class, Map.class).newInstance(name, properties));
+            } catch(Exception e) {
+                Debug.logError(e, "Could not load entity indexer queue class [" + queueType + "] for indexer [" + name
+                        + "]; using in-memory queue", module);
+                return makeQueue(properties);
+            }
         }
 
+        /**
+         * Makes the default in-memory queue.
+         */
         public Queue<Entry> makeQueue(Map<String, ?> properties) {
             return new PriorityBlockingQueue<>(1000);
         }
     }
 
+    /**
+     * Queue that keeps the entries it hands out until they are acknowledged after their documents are committed,
+     * and keeps them across restarts.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public interface DurableQueue extends Queue<Entry> {
+        /** Opens the queue for the given indexer, replaying its persisted unacknowledged entries. */
+        void open(EntityIndexer indexer) throws IOException;
+
+        void close() throws IOException;
+
+        /** Moves up to max entries to the given collection; they stay pending until acknowledged. */
+        int drainTo(Collection<? super Entry> entries, int max);
+
+        /** Acknowledges polled entries whose documents were committed; unknown entries are ignored. */
+        void ack(Collection<? extends Entry> entries);
+
+        /** Returns the number of polled entries not yet acknowledged. */
+        int getInFlightSize();
+
+        /** Returns the entry time of the oldest queued entry, or -1 if empty. */
+        long getOldestEntryTime();
+
+        Map<String, Object> getStats();
+    }
+
     /**
      * Gets a data indexer for the given data source name (entity name) and data element ID (primary key).
      * NOTE: The data source name must not contain the string "::".
@@ -151,6 +211,13 @@ public class EntityIndexer implements Runnable {
                 indexer = indexerMap.get(name);
                 if (indexer == null) {
                     indexer = makeIndexer(name);
+                    if (indexer != null && indexer.getQueue() instanceof DurableQueue) { // SCIPIO: 3.0.0: Replay persisted entries
+                        try {
+                            ((DurableQueue) indexer.getQueue()).open(indexer);
+                        } catch (IOException e) {
+                            Debug.logError(e, "Could not open durable queue for entity indexer [" + name + "]", module);
+                        }
+                    }
                     indexerMap.put(name, indexer);
                 }
             }
@@ -251,6 +318,53 @@ public class EntityIndexer implements Runnable {
         return queue;
     }
 
+    /**
+     * Returns the number of entries waiting in the queue (queue depth).
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public int getQueueSize() {
+        return getQueue().size();
+    }
+
+    /**
+     * Returns the age in milliseconds of the oldest entry waiting in the queue (lag), or 0 if the queue is empty.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public long getQueueLag() {
+        long oldestEntryTime;
+        if (getQueue() instanceof DurableQueue) {
+            oldestEntryTime = ((DurableQueue) getQueue()).getOldestEntryTime();
+        } else {
+            Entry entry = getQueue().peek();
+            oldestEntryTime = (entry != null) ? entry.getEntryTime() : -1;
+        }
+        return (oldestEntryTime >= 0) ? Math.max(0, System.currentTimeMillis() - oldestEntryTime) : 0;
+    }
+
+    /**
+     * Returns queue statistics: size, lag and, for durable queues, their own statistics.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public Map<String, Object> getQueueStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", getQueueSize());
+        stats.put("lag", getQueueLag());
+        if (getQueue() instanceof DurableQueue) {
+            stats.putAll(((DurableQueue) getQueue()).getStats());
+        }
+        return stats;
+    }
+
+    /**
+     * Acknowledges polled entries after their documents were committed to the consumers, for durable queues.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public void ack(Collection<? extends Entry> entries) {
+        if (getQueue() instanceof DurableQueue && !entries.isEmpty()) {
+            ((DurableQueue) getQueue()).ack(entries);
+        }
+    }
+
     public Map<String, ?> getProperties() {
         return properties;
     }
@@ -292,6 +406,8 @@ public class EntityIndexer implements Runnable {
         int count;
         if (getQueue() instanceof PriorityBlockingQueue) {
             count = ((PriorityBlockingQueue<Entry>) getQueue()).drainTo(entries, max);
+        } else if (getQueue() instanceof DurableQueue) { // SCIPIO: 3.0.0
+            count = ((DurableQueue) getQueue()).drainTo(entries, max);
         } else {
             for(int i = 0; i < max; i++) {
                 Entry entry = getQueue().poll();
@@ -340,6 +456,119 @@ public class EntityIndexer implements Runnable {
         return sleepTime;
     }
 
+    /**
+     * Returns the number of threads used to build documents in parallel, or 0 or 1 for sequential building on the
+     * calling thread (<code>docBuildThreads</code> property; "auto" for the number of processors).
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public int getDocBuildThreads() {
+        return docBuildThreads;
+    }
+
+    /**
+     * Builds a result (typically a document) for each of the given items, with up to {@link #getDocBuildThreads()} tasks
+     * on {@link ExecutionPool#GLOBAL_BATCH} (daemon threads, so there is no pool of its own to stop) if greater than 1,
+     * otherwise on the calling thread, and returns the results in item order so the caller can pass them to hooks and
+     * consumers in the same order as sequential building would.
+     * <p>The builder must be thread-safe in parallel mode; it runs outside the caller's transaction, so it should only
+     * read data. Exceptions are caught per item and returned in the result.</p>
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public <T, R> List<BuildResult<T, R>> buildInOrder(List<T> items, DocBuilderFunction<T, R> builder) throws InterruptedException {
+        List<BuildResult<T, R>> results = new ArrayList<>(items.size());
+        if (getDocBuildThreads() <= 1 || items.size() <= 1) {
+            for(T item : items) {
+                results.add(BuildResult.build(item, builder));
+            }
+            return results;
+        }
+        // Each task claims the next item until none are left, so at most docBuildThreads items are built at a time
+        BuildResult<T, R>[] built = UtilGenerics.cast(new BuildResult<?, ?>[items.size()]);
+        AtomicInteger nextIndex = new AtomicInteger();
+        Runnable task = () -> {
+            for(int i = nextIndex.getAndIncrement(); i < built.length; i = nextIndex.getAndIncrement()) {
+                built[i] = BuildResult.build(items.get(i), builder);
+            }
+        };
+        int taskCount = Math.min(getDocBuildThreads(), items.size());
+        List<Future<?>> futures = new ArrayList<>(taskCount);
+        boolean done = false;
+        try {
+            for(int i = 0; i < taskCount; i++) {
+                futures.add(ExecutionPool.GLOBAL_BATCH.submit(task));
+            }
+            for(Future<?> future : futures) {
+                try {
+                    future.get(); // NOTE: also makes the array writes of the task visible here
+                } catch (ExecutionException e) {
+                    // BuildResult.build catches exceptions, so this is an Error
+                    throw new IllegalStateException("Error building document: " + e.getCause(), e.getCause());
+                }
+            }
+            done = true;
+        } finally {
+            if (!done) {
+                nextIndex.set(built.length); // stop claiming items
+                for(Future<?> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        }
+        results.addAll(Arrays.asList(built));
+        return results;
+    }
+
+    /**
+     * Returns a {@link BuildResult} exception as a GeneralException for rethrowing, or throws it directly if unchecked.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    protected static GeneralException rethrowBuildException(Exception e) {
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        } else if (e instanceof GeneralException) {
+            return (GeneralException) e;
+        }
+        return new GeneralException(e);
+    }
+
+    /**
+     * Document builder function for {@link #buildInOrder}.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    @FunctionalInterface
+    public interface DocBuilderFunction<T, R> {
+        R build(T item) throws Exception;
+    }
+
+    /**
+     * Result of building one item in {@link #buildInOrder}: the built value (may be null) or the exception.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public static class BuildResult<T, R> {
+        private final T item;
+        private final R value;
+        private final Exception exception;
+
+        protected BuildResult(T item, R value, Exception exception) {
+            this.item = item;
+            this.value = value;
+            this.exception = exception;
+        }
+
+        static <T, R> BuildResult<T, R> build(T item, DocBuilderFunction<T, R> builder) {
+            try {
+                return new BuildResult<>(item, builder.build(item), null);
+            } catch (Exception e) {
+                return new BuildResult<>(item, null, e);
+            }
+        }
+
+        public T getItem() { return item; }
+        public R getValue() { return value; }
+        public Exception getException() { return exception; }
+        public boolean isError() { return exception != null; }
+    }
+
     @Override
     public void run() {
         try {
@@ -356,6 +585,7 @@ public class EntityIndexer implements Runnable {
         List<Entry> entries = new ArrayList<>(getBufSize());
         List<DocEntry> docs = new ArrayList<>(getBufSize());
         Set<Entry> docsToRemove = new LinkedHashSet<>(getBufSize());
+        List<Entry> entriesToAck = (getQueue() instanceof DurableQueue) ? new ArrayList<>(getBufSize()) : null; // SCIPIO: 3.0.0
 
         int processedEntries = 0;
         int totalProcessedEntries = 0;
@@ -421,6 +651,9 @@ public class EntityIndexer implements Runnable {
                                 extraInfo + ")", module);
                     }
                     readDocs(dctx, context, entries, docs, docsToRemove);
+                    if (entriesToAck != null) {
+                        entriesToAck.addAll(entries);
+                    }
                     entries.clear();
                 } else if (!flush) {
                     Thread.sleep(getSleepTime());
@@ -434,13 +667,20 @@ public class EntityIndexer implements Runnable {
                 docsToRemove.clear();
                 processedEntries = 0;
             }
+            // SCIPIO: 3.0.0: Acknowledge after commit; if anything above throws, the entries stay unacknowledged and
+            // are replayed from the durable queue at next startup
+            if (entriesToAck != null && !entriesToAck.isEmpty()) {
+                ack(entriesToAck);
+                entriesToAck.clear();
+            }
         }
         if (getStatsInterval() >= 0) {
             long nowTime = System.currentTimeMillis();
             if ((nowTime - lastRunStatsTime) > getStatsInterval()) {
                 lastRunStatsTime = nowTime;
                 Debug.logInfo("Entity indexer [" + getName() + "] run doc stats: [committed=" + docsCommitted + ", removed=" + docsRemoved +
-                        ", entries=" + totalProcessedEntries + ", runTime=" + UtilDateTime.formatDurationHMS(nowTime - startTime) + "ms]", module);
+                        ", entries=" + totalProcessedEntries + ", runTime=" + UtilDateTime.formatDurationHMS(nowTime - startTime) + "ms" +
+                        ", queue=" + getQueueStats() + "]", module);
             }
         }
     }
@@ -704,6 +944,27 @@ public class EntityIndexer implements Runnable {
         return makeEntry(other, toPk(pk), entryTime);
     }
 
+    /**
+     * Merges two entries for the same PK into one, used by queues that coalesce duplicate PKs; next is the newer entry.
+     * Default keeps the newer action and flush and combines the topics (no topics meaning all topics).
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public Entry mergeEntry(Entry prev, Entry next) {
+        if (prev == null) {
+            return next;
+        }
+        Collection<String> topics = null;
+        if (prev.hasTopic() && next.hasTopic()) {
+            topics = new LinkedHashSet<>(prev.getTopics());
+            topics.addAll(next.getTopics());
+        }
+        String flush = "all".equals(prev.getFlush()) ? prev.getFlush() : next.getFlush();
+        Map<String, Object> persistFields = new HashMap<>(prev.getPersistFields());
+        persistFields.putAll(next.getPersistFields());
+        return makeEntry(next.getPk(), (next.getEntityRef() != null) ? next.getEntityRef() : prev.getEntityRef(),
+                next.getAction(), next.getEntryTime(), topics, flush, persistFields, null);
+    }
+
     public static class Entry implements Comparable<Entry>, Serializable {
         protected final GenericPK pk;
         protected transient String shortPk;
@@ -779,6 +1040,16 @@ public class EntityIndexer implements Runnable {
             return flush;
         }
 
+        /**
+         * Returns the extra entry fields that {@link DurableQueue} implementations persist and pass back to
+         * {@link EntityIndexer#makeEntry(GenericPK, Object, Action, long, Collection, String, Map, Object)} as context
+         * when replaying the entry; values must be String, Boolean, Long or Integer.
+         * <p>SCIPIO: 3.0.0: Added.</p>
+         */
+        public Map<String, Object> getPersistFields() {
+            return Collections.emptyMap();
+        }
+
         @Override
         public int compareTo(Entry o) {
             if (pk.equals(o.pk)) {
@@ -1438,6 +1709,59 @@ public class EntityIndexer implements Runnable {
         return ServiceUtil.returnSuccess();
     }
 
+    /**
+     * Opens the indexers configured with a durable queue (<code>entity.indexer.[name].queue</code>), which replays
+     * their unacknowledged entries, and starts processing for those that have any. Run at startup.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public static Map<String, Object> replayEntityIndexing(ServiceContext ctx) {
+        Collection<String> entityNames = ctx.attr("entityNames");
+        if (UtilValidate.isEmpty(entityNames)) {
+            entityNames = getDurableQueueIndexerNames();
+        }
+        int replayed = 0;
+        for(String entityName : entityNames) {
+            EntityIndexer targetIndexer = getIndexer(entityName);
+            if (targetIndexer == null || !(targetIndexer.getQueue() instanceof DurableQueue)) {
+                continue;
+            }
+            int queueSize = targetIndexer.getQueueSize();
+            if (queueSize > 0 && !targetIndexer.isRunning()) {
+                replayed += queueSize;
+                try {
+                    ctx.dispatcher().runAsync("runEntityIndexing",
+                            UtilMisc.toMap("userLogin", ctx.attr("userLogin"), "entityName", targetIndexer.getName()),
+                            ServiceOptions.asyncMemory().priority(targetIndexer.getRunServicePriority()));
+                } catch (GenericServiceException e) {
+                    String msg = "Could not schedule runEntityIndexing: " + e.toString();
+                    Debug.logError(e, "replayEntityIndexing: " + msg, module);
+                    return ServiceUtil.returnFailure(msg);
+                }
+            }
+        }
+        return ServiceUtil.returnSuccess("Replayed " + replayed + " queued entity indexing entries for indexers " + entityNames);
+    }
+
+    /**
+     * Returns the names of the indexers configured with a durable (non-memory) queue.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public static Set<String> getDurableQueueIndexerNames() {
+        Set<String> names = new LinkedHashSet<>();
+        Map<String, Map<String, Object>> indexerProps = UtilProperties.extractPropertiesWithPrefixAndId(new LinkedHashMap<>(),
+                UtilProperties.getMergedPropertiesFromAllComponents("entityindexing"), "entity.indexer.");
+        for(Map.Entry<String, Map<String, Object>> entry : indexerProps.entrySet()) {
+            Object queueType = entry.getValue().get("queue");
+            if (queueType == null) {
+                queueType = defaultProperties.get("queue");
+            }
+            if (!"default".equals(entry.getKey()) && UtilValidate.isNotEmpty((String) queueType) && !"memory".equals(queueType)) {
+                names.add(entry.getKey());
+            }
+        }
+        return names;
+    }
+
     public static boolean isDebug() {
         return DEBUG;
     }
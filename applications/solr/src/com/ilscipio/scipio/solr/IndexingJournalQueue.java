@@ -0,0 +1,462 @@
+package com.ilscipio.scipio.solr;
+
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.base.util.UtilValidate;
+import org.ofbiz.entity.GenericPK;
+import org.ofbiz.entity.model.ModelEntity;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Durable {@link EntityIndexer} queue backed by an append-only local journal file, selected using
+ * <code>entity.indexer.[name].queue=journal</code> in entityindexing.properties.
+ *
+ * <p>Every added entry is appended to the journal before it becomes visible to the indexer. Entries polled by the
+ * indexer stay in-flight until the indexer acknowledges them after it has committed their documents to the consumers
+ * ({@link #ack}); acknowledgements are appended to the journal as well. When the indexer is created after a restart or
+ * crash, the journal is replayed and every entry that was queued or in-flight but not acknowledged is queued again.</p>
+ *
+ * <p>Entries are coalesced by primary key: adding an entry for a PK that is already queued (not in-flight) merges it
+ * into the queued entry using {@link EntityIndexer#mergeEntry}, which keeps its place in the queue. The journal is
+ * compacted (rewritten with only the unacknowledged entries) at startup and whenever enough acknowledged or superseded
+ * records have accumulated.</p>
+ *
+ * <p>Only the PK, action, entry time, topics, flush and {@link EntityIndexer.Entry#getPersistFields()} of an entry are
+ * journaled; the entity value reference (entityRef) is not, which only means the value is looked up again.</p>
+ *
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public class IndexingJournalQueue extends AbstractQueue<EntityIndexer.Entry> implements EntityIndexer.DurableQueue {
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    private static final int MAGIC = 0x53494A31; // "SIJ1"
+    private static final byte REC_ADD = 'A';
+    private static final byte REC_ACK = 'K';
+
+    private static final byte VAL_NULL = 0;
+    private static final byte VAL_STRING = 1;
+    private static final byte VAL_BOOLEAN = 2;
+    private static final byte VAL_LONG = 3;
+    private static final byte VAL_INTEGER = 4;
+
+    protected final String name;
+    protected final File file;
+    protected final boolean fsync;
+    protected final int compactThreshold;
+
+    protected EntityIndexer indexer;
+    protected DataOutputStream out;
+    protected FileOutputStream fileOut;
+
+    /** Queued entries by PK, in queue order. */
+    private final LinkedHashMap<GenericPK, Node> queued = new LinkedHashMap<>();
+    /** Polled entries awaiting acknowledgement, by entry identity (the same PK may be in-flight more than once). */
+    private final IdentityHashMap<EntityIndexer.Entry, Node> inFlight = new IdentityHashMap<>();
+    private long nextSeq = 1;
+    private long deadRecords = 0;
+    private long ackedTotal = 0;
+    private long coalescedTotal = 0;
+
+    protected static class Node {
+        protected final long seq;
+        protected EntityIndexer.Entry entry;
+
+        protected Node(long seq, EntityIndexer.Entry entry) {
+            this.seq = seq;
+            this.entry = entry;
+        }
+    }
+
+    public IndexingJournalQueue(String name, Map<String, ?> properties) {
+        this.name = name;
+        String dir = (String) properties.get("queue.journal.dir");
+        if (UtilValidate.isEmpty(dir)) {
+            dir = "runtime/indexing";
+        }
+        File dirFile = new File(dir);
+        if (!dirFile.isAbsolute()) {
+            dirFile = new File(System.getProperty("ofbiz.home"), dir);
+        }
+        this.file = new File(dirFile, name + ".journal");
+        this.fsync = UtilMisc.booleanValue(properties.get("queue.journal.fsync"), false);
+        this.compactThreshold = UtilMisc.toInteger(properties.get("queue.journal.compactThreshold"), 10000);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Replays the journal into the queue and compacts it; called once by {@link EntityIndexer#getIndexer} when the
+     * indexer is created, before any entry is added.
+     */
+    @Override
+    public synchronized void open(EntityIndexer indexer) throws IOException {
+        this.indexer = indexer;
+        if (!file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
+            throw new IOException("Could not create entity indexer journal directory: " + file.getParentFile());
+        }
+        if (file.exists()) {
+            replay();
+        }
+        compact();
+        if (!queued.isEmpty()) {
+            Debug.logInfo("Entity indexer [" + name + "]: replayed " + queued.size() + " unacknowledged entries from journal " + file, module);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+            fileOut = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean offer(EntityIndexer.Entry entry) {
+        try {
+            enqueue(entry);
+            flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write entity indexer journal " + file + ": " + e.toString(), e);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean addAll(Collection<? extends EntityIndexer.Entry> entries) {
+        try {
+            for (EntityIndexer.Entry entry : entries) {
+                enqueue(entry);
+            }
+            flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write entity indexer journal " + file + ": " + e.toString(), e);
+        }
+        return !entries.isEmpty();
+    }
+
+    private void enqueue(EntityIndexer.Entry entry) throws IOException {
+        if (out == null) {
+            throw new IOException("Journal not open");
+        }
+        Node node = new Node(nextSeq++, entry);
+        writeAdd(out, node);
+        Node prev = queued.get(entry.getPk());
+        if (prev != null) {
+            // Coalesce: the merged entry takes the new record but keeps the place and entry time of the queued one
+            EntityIndexer.Entry merged = indexer.mergeEntry(prev.entry, entry);
+            merged.entryTime = Math.min(prev.entry.getEntryTime(), merged.getEntryTime());
+            node.entry = merged;
+            queued.put(entry.getPk(), node);
+            deadRecords++;
+            coalescedTotal++;
+        } else {
+            queued.put(entry.getPk(), node);
+        }
+    }
+
+    @Override
+    public synchronized EntityIndexer.Entry poll() {
+        Iterator<Node> it = queued.values().iterator();
+        if (!it.hasNext()) {
+            return null;
+        }
+        Node node = it.next();
+        it.remove();
+        inFlight.put(node.entry, node);
+        return node.entry;
+    }
+
+    @Override
+    public synchronized int drainTo(Collection<? super EntityIndexer.Entry> entries, int max) {
+        int count = 0;
+        Iterator<Node> it = queued.values().iterator();
+        while (count < max && it.hasNext()) {
+            Node node = it.next();
+            it.remove();
+            inFlight.put(node.entry, node);
+            entries.add(node.entry);
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized EntityIndexer.Entry peek() {
+        Iterator<Node> it = queued.values().iterator();
+        return it.hasNext() ? it.next().entry : null;
+    }
+
+    @Override
+    public synchronized int size() {
+        return queued.size();
+    }
+
+    /**
+     * Returns a snapshot iterator over the queued entries.
+     */
+    @Override
+    public synchronized Iterator<EntityIndexer.Entry> iterator() {
+        List<EntityIndexer.Entry> entries = new ArrayList<>(queued.size());
+        for (Node node : queued.values()) {
+            entries.add(node.entry);
+        }
+        return Collections.unmodifiableList(entries).iterator();
+    }
+
+    @Override
+    public synchronized void ack(Collection<? extends EntityIndexer.Entry> entries) {
+        List<Long> seqs = new ArrayList<>(entries.size());
+        for (EntityIndexer.Entry entry : entries) {
+            Node node = inFlight.remove(entry);
+            if (node != null) {
+                seqs.add(node.seq);
+            }
+        }
+        if (seqs.isEmpty() || out == null) {
+            return;
+        }
+        try {
+            out.writeByte(REC_ACK);
+            out.writeInt(seqs.size());
+            for (Long seq : seqs) {
+                out.writeLong(seq);
+            }
+            flush();
+            ackedTotal += seqs.size();
+            deadRecords += seqs.size() + 1;
+            if (deadRecords >= compactThreshold || (queued.isEmpty() && inFlight.isEmpty() && deadRecords >= compactThreshold / 10)) {
+                compact();
+            }
+        } catch (IOException e) {
+            // Not fatal: the entries are replayed (reindexed again) after restart
+            Debug.logError(e, "Entity indexer [" + name + "]: could not write acknowledgement to journal " + file, module);
+        }
+    }
+
+    @Override
+    public synchronized int getInFlightSize() {
+        return inFlight.size();
+    }
+
+    @Override
+    public synchronized long getOldestEntryTime() {
+        // NOTE: queue order is entry time order except for entries created before but added after others (requeues)
+        Iterator<Node> it = queued.values().iterator();
+        return it.hasNext() ? it.next().entry.getEntryTime() : -1;
+    }
+
+    @Override
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queued", queued.size());
+        stats.put("inFlight", inFlight.size());
+        stats.put("acked", ackedTotal);
+        stats.put("coalesced", coalescedTotal);
+        stats.put("deadRecords", deadRecords);
+        stats.put("journalBytes", file.length());
+        return stats;
+    }
+
+    private void flush() throws IOException {
+        out.flush();
+        if (fsync) {
+            fileOut.getFD().sync();
+        }
+    }
+
+    /**
+     * Rewrites the journal with only the in-flight and queued entries, replacing the old one atomically.
+     */
+    protected void compact() throws IOException {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream tmpOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            tmpOut.writeInt(MAGIC);
+            for (Node node : inFlight.values()) {
+                writeAdd(tmpOut, node);
+            }
+            for (Node node : queued.values()) {
+                writeAdd(tmpOut, node);
+            }
+        }
+        close();
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        fileOut = new FileOutputStream(file, true);
+        out = new DataOutputStream(new BufferedOutputStream(fileOut));
+        deadRecords = 0;
+    }
+
+    private void replay() throws IOException {
+        ModelEntity modelEntity = indexer.getModelEntity();
+        Map<GenericPK, Node> pending = new LinkedHashMap<>();
+        Map<Long, GenericPK> seqPks = new HashMap<>();
+        long maxSeq = 0;
+        int records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an entity indexer journal: " + file);
+            }
+            while (true) {
+                int type = in.read();
+                if (type < 0) {
+                    break;
+                }
+                if (type == REC_ADD) {
+                    Node node = readAdd(in, modelEntity);
+                    maxSeq = Math.max(maxSeq, node.seq);
+                    GenericPK pk = node.entry.getPk();
+                    Node prev = pending.get(pk);
+                    if (prev != null) {
+                        EntityIndexer.Entry merged = indexer.mergeEntry(prev.entry, node.entry);
+                        merged.entryTime = Math.min(prev.entry.getEntryTime(), merged.getEntryTime());
+                        node.entry = merged;
+                    }
+                    pending.put(pk, node);
+                    seqPks.put(node.seq, pk);
+                } else if (type == REC_ACK) {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        long seq = in.readLong();
+                        GenericPK pk = seqPks.remove(seq);
+                        Node node = (pk != null) ? pending.get(pk) : null;
+                        if (node != null && node.seq == seq) {
+                            pending.remove(pk);
+                        }
+                    }
+                } else {
+                    throw new IOException("Invalid record type " + type + " in entity indexer journal " + file);
+                }
+                records++;
+            }
+        } catch (EOFException e) {
+            // Last record was cut off by a crash during the write; it was never visible to the indexer
+            Debug.logWarning("Entity indexer [" + name + "]: journal " + file + " ends with an incomplete record after "
+                    + records + " records; ignoring it", module);
+        }
+        for (Node node : pending.values()) {
+            queued.put(node.entry.getPk(), node);
+        }
+        nextSeq = maxSeq + 1;
+    }
+
+    private static void writeAdd(DataOutputStream out, Node node) throws IOException {
+        EntityIndexer.Entry entry = node.entry;
+        out.writeByte(REC_ADD);
+        out.writeLong(node.seq);
+        out.writeLong(entry.getEntryTime());
+        out.writeByte((entry.getAction() != null) ? entry.getAction().ordinal() + 1 : 0);
+        writeValue(out, entry.getFlush());
+        Collection<String> topics = entry.getTopics();
+        out.writeInt(topics.size());
+        for (String topic : topics) {
+            out.writeUTF(topic);
+        }
+        GenericPK pk = entry.getPk();
+        Collection<String> pkFieldNames = pk.getModelEntity().getPkFieldNames();
+        out.writeInt(pkFieldNames.size());
+        for (String fieldName : pkFieldNames) {
+            out.writeUTF(fieldName);
+            Object value = pk.get(fieldName);
+            writeValue(out, (value != null) ? value.toString() : null);
+        }
+        Map<String, Object> persistFields = entry.getPersistFields();
+        out.writeInt(persistFields.size());
+        for (Map.Entry<String, Object> field : persistFields.entrySet()) {
+            out.writeUTF(field.getKey());
+            writeValue(out, field.getValue());
+        }
+    }
+
+    private Node readAdd(DataInputStream in, ModelEntity modelEntity) throws IOException {
+        long seq = in.readLong();
+        long entryTime = in.readLong();
+        int actionIndex = in.readByte();
+        EntityIndexer.Action action = (actionIndex > 0) ? EntityIndexer.Action.values()[actionIndex - 1] : null;
+        String flush = (String) readValue(in);
+        int topicCount = in.readInt();
+        Collection<String> topics = (topicCount > 0) ? new LinkedHashSet<>() : null;
+        for (int i = 0; i < topicCount; i++) {
+            topics.add(in.readUTF());
+        }
+        GenericPK pk = GenericPK.create(indexer.getDefaultDelegator(), modelEntity, Collections.emptyMap());
+        int pkCount = in.readInt();
+        for (int i = 0; i < pkCount; i++) {
+            pk.setString(in.readUTF(), (String) readValue(in));
+        }
+        int fieldCount = in.readInt();
+        Map<String, Object> persistFields = (fieldCount > 0) ? new HashMap<>() : null;
+        for (int i = 0; i < fieldCount; i++) {
+            persistFields.put(in.readUTF(), readValue(in));
+        }
+        EntityIndexer.Entry entry = indexer.makeEntry(pk, null, action, entryTime, topics, flush, persistFields, null);
+        return new Node(seq, entry);
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(VAL_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(VAL_STRING);
+            out.writeUTF((String) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(VAL_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Long) {
+            out.writeByte(VAL_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(VAL_INTEGER);
+            out.writeInt((Integer) value);
+        } else {
+            throw new IllegalArgumentException("Unsupported entity indexer journal value type: " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        int type = in.readByte();
+        switch (type) {
+        case VAL_NULL:
+            return null;
+        case VAL_STRING:
+            return in.readUTF();
+        case VAL_BOOLEAN:
+            return in.readBoolean();
+        case VAL_LONG:
+            return in.readLong();
+        case VAL_INTEGER:
+            return in.readInt();
+        default:
+            throw new IOException("Invalid value type " + type + " in entity indexer journal");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "IndexingJournalQueue{name='" + name + "', file=" + file + ", queued=" + size() + ", inFlight=" + getInFlightSize() + "}";
+    }
+}
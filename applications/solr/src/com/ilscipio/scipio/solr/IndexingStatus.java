@@ -25,6 +25,10 @@ public interface IndexingStatus {
     int getNumFiltered();
     default int getTotalFailures() { return getGeneralFailures() + getHookFailures(); }
     default String getIndexProgressString() { return getStartIndex() + "-" + getEndIndex() + " / " + getMaxDocs(); }
+    /** Returns the number of entries waiting in the entity indexer queue, or -1 if not indexing from a queue. SCIPIO: 3.0.0: Added. */
+    default int getQueueSize() { return -1; }
+    /** Returns the age in milliseconds of the oldest entry waiting in the entity indexer queue, or -1 if not indexing from a queue. SCIPIO: 3.0.0: Added. */
+    default long getQueueLag() { return -1; }
 
     class Standard implements IndexingStatus {
         private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
@@ -42,6 +46,7 @@ public interface IndexingStatus {
         private int hookFailures;
         private int numFiltered;
         private boolean aborted = false;
+        private EntityIndexer entityIndexer;
 
         public Standard(DispatchContext dctx, IndexingHookHandler.HookType hookType, SolrDocBuilder indexer, int maxDocs, int bufSize, String logPrefix) {
             this.dctx = dctx;
@@ -136,6 +141,20 @@ public interface IndexingStatus {
             return numFiltered;
         }
 
+        /** Returns the entity indexer whose queue is being processed, or null. */
+        public EntityIndexer getEntityIndexer() { return entityIndexer; }
+        public void setEntityIndexer(EntityIndexer entityIndexer) { this.entityIndexer = entityIndexer; }
+
+        @Override
+        public int getQueueSize() {
+            return (entityIndexer != null) ? entityIndexer.getQueueSize() : -1;
+        }
+
+        @Override
+        public long getQueueLag() {
+            return (entityIndexer != null) ? entityIndexer.getQueueLag() : -1;
+        }
+
         public void increaseNumFiltered(int amount) {
             this.numFiltered += amount;
         }
@@ -16,6 +16,7 @@ import org.ofbiz.service.ServiceUtil;
 
 import java.io.IOException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -33,6 +34,8 @@ import java.util.Set;
  */
 public class ProductIndexer extends EntityIndexer {
     private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+    /** SCIPIO: Max products per document building chunk when there is no buffer size. */
+    private static final int DOC_BUILD_CHUNK = 1000;
 
     protected ProductIndexer(String name, Map<String, ?> properties, Queue<Entry> queue) {
         super(name, properties, queue);
@@ -43,7 +46,7 @@ public class ProductIndexer extends EntityIndexer {
 
         @Override
         public ProductIndexer makeIndexer(String name, Map<String, ?> properties) {
-            return new ProductIndexer(name, properties, makeQueue(properties));
+            return new ProductIndexer(name, properties, makeQueue(name, properties));
         }
     }
 
@@ -78,6 +81,7 @@ public class ProductIndexer extends EntityIndexer {
                 IndexingHookHandler.Handlers.getHookHandlerFactories(hookType));
         String logPrefix = "readDocs: ";
         IndexingStatus.Standard status = new IndexingStatus.Standard(dctx, hookType, docBuilder, expandedProducts.size(), getBufSize(), logPrefix);
+        status.setEntityIndexer(this);
         if (expandResult.isError()) { // for expandProductsForIndexing above - need to return status
             status.registerGeneralFailure("Error expanding products for indexing: " + ServiceUtil.getErrorMessage(expandResult.getErrorResult()), null);
             return status;
@@ -113,47 +117,49 @@ public class ProductIndexer extends EntityIndexer {
              */
             int numLeft = status.getBufSize();
             while ((status.getBufSize() <= 0 || numLeft > 0) && prodIt.hasNext()) {
-                docsConsumed++;
-                Map.Entry<String, ProductEntry> mapEntry = prodIt.next();
-                ProductEntry entry = mapEntry.getValue();
-                String productId = mapEntry.getKey();
-                if (entry.isExplicitRemove()) {
-                    docsToRemove.add(entry);
-                    for(IndexingHookHandler hookHandler : hookHandlers) {
-                        try {
-                            hookHandler.processDocRemove(status, entry);
-                        } catch (ContinueException e) {
-                            status.registerHookFailure(null, e, hookHandler, "processDocRemove");
+                // SCIPIO: 3.0.0: Build the documents of the next chunk (in parallel if docBuildThreads is set), then process
+                // the results in order on this thread
+                int chunkMax = (status.getBufSize() > 0) ? numLeft : DOC_BUILD_CHUNK;
+                List<Map.Entry<String, ProductEntry>> chunk = new ArrayList<>(Math.min(chunkMax, expandedProducts.size()));
+                while (chunk.size() < chunkMax && prodIt.hasNext()) {
+                    chunk.add(prodIt.next());
+                }
+                List<BuildResult<Map.Entry<String, ProductEntry>, ProductDocResult>> results = buildInOrder(chunk,
+                        mapEntry -> mapEntry.getValue().isExplicitRemove() ? null : buildProductDoc(dctx, docBuilder, mapEntry.getKey(), mapEntry.getValue()));
+                for(BuildResult<Map.Entry<String, ProductEntry>, ProductDocResult> result : results) {
+                    docsConsumed++;
+                    ProductEntry entry = result.getItem().getValue();
+                    String productId = result.getItem().getKey();
+                    ProductDocResult docResult = result.getValue();
+                    if (entry.isExplicitRemove()) {
+                        docsToRemove.add(entry);
+                        for(IndexingHookHandler hookHandler : hookHandlers) {
+                            try {
+                                hookHandler.processDocRemove(status, entry);
+                            } catch (ContinueException e) {
+                                status.registerHookFailure(null, e, hookHandler, "processDocRemove");
+                            }
                         }
-                    }
-                } else {
-                    // IMPORTANT: 2020-05-13: Contrary to older code here we'll always force a new Product lookup due to risks of not doing and many cases doing that anyway
-                    //Map<String, Object> product = UtilGenerics.cast(props.get("instance"));
-                    GenericValue product = docBuilder.getProductData().getProduct(dctx, productId, false);
-                    if (product != null) {
-                        Map<String, Object> doc;
-                        SolrDocBuilder.ProductDocBuilder data;
-                        try {
-                            Timestamp moment = UtilDateTime.nowTimestamp();
-                            data = docBuilder.makeProductDocBuilder(product, moment);
-                            doc = docBuilder.makeProductMapDoc(data, entry, null);
-                            if (doc != null) {
-                                status.increaseNumDocs(1);
-                                numLeft--;
-                                ProductDocEntry docEntry = makeDocEntry(entry, doc, data);
-                                docs.add(docEntry);
-                                for (IndexingHookHandler hookHandler : hookHandlers) {
-                                    try {
-                                        hookHandler.processDocAdd(status, docEntry);
-                                    } catch (ContinueException e) {
-                                        status.registerHookFailure(null, e, hookHandler, "processDocAdd");
-                                    }
+                    } else if (result.isError()) {
+                        if (!(result.getException() instanceof ContinueException)) {
+                            throw rethrowBuildException(result.getException());
+                        }
+                        status.registerGeneralFailure("Error reading product '" + productId + "'", result.getException());
+                    } else if (docResult.product != null) {
+                        if (docResult.doc != null) {
+                            status.increaseNumDocs(1);
+                            numLeft--;
+                            ProductDocEntry docEntry = makeDocEntry(entry, docResult.doc, docResult.data);
+                            docs.add(docEntry);
+                            for (IndexingHookHandler hookHandler : hookHandlers) {
+                                try {
+                                    hookHandler.processDocAdd(status, docEntry);
+                                } catch (ContinueException e) {
+                                    status.registerHookFailure(null, e, hookHandler, "processDocAdd");
                                 }
-                            } else {
-                                status.increaseNumFiltered(1);
                             }
-                        } catch (ContinueException e) {
-                            status.registerGeneralFailure("Error reading product '" + productId + "'", e);
+                        } else {
+                            status.increaseNumFiltered(1);
                         }
                     } else {
                         if (entry.isExplicitAdd()) {
@@ -197,6 +203,32 @@ public class ProductIndexer extends EntityIndexer {
         return status;
     }
 
+    /**
+     * Builds the document for one product, for {@link #buildInOrder}; runs on a batch pool thread in parallel mode.
+     * IMPORTANT: 2020-05-13: Contrary to older code here we'll always force a new Product lookup due to risks of not doing and many cases doing that anyway
+     */
+    protected ProductDocResult buildProductDoc(DispatchContext dctx, SolrDocBuilder docBuilder, String productId, ProductEntry entry) throws GeneralException {
+        GenericValue product = docBuilder.getProductData().getProduct(dctx, productId, false);
+        if (product == null) {
+            return new ProductDocResult(null, null, null);
+        }
+        Timestamp moment = UtilDateTime.nowTimestamp();
+        SolrDocBuilder.ProductDocBuilder data = docBuilder.makeProductDocBuilder(product, moment);
+        return new ProductDocResult(product, docBuilder.makeProductMapDoc(data, entry, null), data);
+    }
+
+    protected static class ProductDocResult {
+        protected final GenericValue product;
+        protected final Map<String, Object> doc;
+        protected final SolrDocBuilder.ProductDocBuilder data;
+
+        protected ProductDocResult(GenericValue product, Map<String, Object> doc, SolrDocBuilder.ProductDocBuilder data) {
+            this.product = product;
+            this.doc = doc;
+            this.data = data;
+        }
+    }
+
     @Override
     public ProductEntry makeEntry(GenericPK pk, Object entityRef, Action action, long entryTime, Collection<String> topics, String flush, Map<String, Object> context, Object properties) {
         return new ProductEntry(pk, entityRef, action, entryTime, topics, flush, context);
@@ -211,6 +243,11 @@ public class ProductIndexer extends EntityIndexer {
         return new ProductEntry((ProductEntry) other, toPk(pk), entryTime);
     }
 
+    @Override
+    public ProductEntry mergeEntry(Entry prev, Entry next) {
+        return ((ProductEntry) next).merge((ProductEntry) prev);
+    }
+
     /**
      * Product queue entry.
      */
@@ -245,6 +282,16 @@ public class ProductIndexer extends EntityIndexer {
             this.updateVirtualDeep = other.updateVirtualDeep;
         }
 
+        @Override
+        public Map<String, Object> getPersistFields() {
+            Map<String, Object> fields = new LinkedHashMap<>();
+            fields.put("updateVariants", updateVariants);
+            fields.put("updateVariantsDeep", updateVariantsDeep);
+            fields.put("updateVirtual", updateVirtual);
+            fields.put("updateVirtualDeep", updateVirtualDeep);
+            return fields;
+        }
+
         public Boolean getUpdateVariants() { return updateVariants; }
         public Boolean getUpdateVariantsDeep() { return updateVariantsDeep; }
         public Boolean getUpdateVirtual() { return updateVirtual; }
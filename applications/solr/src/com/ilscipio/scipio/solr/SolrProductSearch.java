@@ -1494,33 +1494,47 @@ public abstract class SolrProductSearch {
 
                 int numLeft = bufSize;
                 while ((bufSize <= 0 || numLeft > 0) && !lastReached) {
-                    GenericValue product = prodIt.next();
-                    if (product != null) {
+                    // SCIPIO: 3.0.0: Read the next chunk on this thread, build its documents using the Product indexer's
+                    // document building pool (if docBuildThreads is set), then process the results in order
+                    int chunkMax = (bufSize > 0) ? numLeft : 1000;
+                    List<GenericValue> chunk = new ArrayList<>(Math.min(chunkMax, 1000));
+                    while (chunk.size() < chunkMax) {
+                        GenericValue product = prodIt.next();
+                        if (product == null) {
+                            lastReached = true;
+                            break;
+                        }
+                        chunk.add(product);
+                    }
+                    final List<SolrDocBuilder.ProductFilter> chunkProductFilters = productFilters;
+                    List<EntityIndexer.BuildResult<GenericValue, ProductIndexer.ProductDocEntry>> buildResults = ProductIndexer.getDefault().buildInOrder(chunk,
+                            product -> docBuilder.asDocEntry(product, chunkProductFilters, UtilDateTime.nowTimestamp()));
+                    for(EntityIndexer.BuildResult<GenericValue, ProductIndexer.ProductDocEntry> buildResult : buildResults) {
                         docsConsumed++;
-                        try {
-                            Timestamp moment = UtilDateTime.nowTimestamp();
-                            ProductIndexer.ProductDocEntry docEntry = docBuilder.asDocEntry(product, productFilters, moment);
-                            if (docEntry != null) {
-                                docs.add(docEntry.getDoc());
-                                status.increaseNumDocs(1);
-                                numLeft--;
-
-                                for (IndexingHookHandler hookHandler : hookHandlers) {
-                                    try {
-                                        hookHandler.processDocAdd(status, docEntry);
-                                    } catch (ContinueException e) {
-                                        status.registerHookFailure(null, e, hookHandler, "processDocAdd");
-                                    }
-                                }
-                            } else {
-                                status.increaseNumFiltered(1);
+                        if (buildResult.isError()) {
+                            if (!(buildResult.getException() instanceof ContinueException)) {
+                                throw EntityIndexer.rethrowBuildException(buildResult.getException());
                             }
-                        } catch (ContinueException e) {
                             //return ServiceUtil.returnError("Error reading product '" + productId + "': " + e.getMessage());
-                            status.registerGeneralFailure("Error reading product '" + product.get("productId") + "'", e);
+                            status.registerGeneralFailure("Error reading product '" + buildResult.getItem().get("productId") + "'", buildResult.getException());
+                            continue;
+                        }
+                        ProductIndexer.ProductDocEntry docEntry = buildResult.getValue();
+                        if (docEntry != null) {
+                            docs.add(docEntry.getDoc());
+                            status.increaseNumDocs(1);
+                            numLeft--;
+
+                            for (IndexingHookHandler hookHandler : hookHandlers) {
+                                try {
+                                    hookHandler.processDocAdd(status, docEntry);
+                                } catch (ContinueException e) {
+                                    status.registerHookFailure(null, e, hookHandler, "processDocAdd");
+                                }
+                            }
+                        } else {
+                            status.increaseNumFiltered(1);
                         }
-                    } else {
-                        lastReached = true;
                     }
                 }
 
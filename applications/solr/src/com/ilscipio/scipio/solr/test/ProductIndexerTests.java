@@ -0,0 +1,124 @@
+package com.ilscipio.scipio.solr.test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.util.EntityQuery;
+import org.ofbiz.service.DispatchContext;
+import org.ofbiz.service.testtools.OFBizTestCase;
+
+import com.ilscipio.scipio.solr.EntityIndexer;
+import com.ilscipio.scipio.solr.ProductIndexer;
+
+/**
+ * Tests that parallel document building (<code>docBuildThreads</code>) produces the same documents, committed in the
+ * same order, as sequential building.
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public class ProductIndexerTests extends OFBizTestCase {
+
+    public ProductIndexerTests(String name) {
+        super(name);
+    }
+
+    public void testBuildInOrder() throws Exception {
+        TestProductIndexer indexer = TestProductIndexer.make(4, 10);
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            items.add(i);
+        }
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<EntityIndexer.BuildResult<Integer, String>> results = indexer.buildInOrder(items, item -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextInt(3)); // finish out of order
+                if (item % 50 == 7) {
+                    throw new IllegalArgumentException("item " + item);
+                }
+                return "doc-" + item;
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+        assertEquals("result count", items.size(), results.size());
+        for (int i = 0; i < items.size(); i++) {
+            EntityIndexer.BuildResult<Integer, String> result = results.get(i);
+            assertEquals("item order", items.get(i), result.getItem());
+            if (i % 50 == 7) {
+                assertTrue("error kept with its item", result.isError());
+                assertEquals("error message", "item " + i, result.getException().getMessage());
+            } else {
+                assertEquals("value", "doc-" + i, result.getValue());
+            }
+        }
+        assertTrue("at most docBuildThreads at a time", maxRunning.get() <= indexer.getDocBuildThreads());
+    }
+
+    public void testParallelReadDocsMatchesSequential() throws Exception {
+        List<GenericValue> products = EntityQuery.use(delegator).from("Product").orderBy("productId").maxRows(60).queryList();
+        if (products.isEmpty()) {
+            return; // no product data loaded
+        }
+        TestProductIndexer sequential = TestProductIndexer.make(0, 7);
+        TestProductIndexer parallel = TestProductIndexer.make(4, 7);
+        assertEquals("sequential", 0, sequential.getDocBuildThreads());
+        assertEquals("parallel", 4, parallel.getDocBuildThreads());
+
+        List<EntityIndexer.DocEntry> sequentialDocs = sequential.readAndCommit(dispatcher.getDispatchContext(), products);
+        List<EntityIndexer.DocEntry> parallelDocs = parallel.readAndCommit(dispatcher.getDispatchContext(), products);
+
+        assertFalse("documents built", sequentialDocs.isEmpty());
+        assertEquals("document count", sequentialDocs.size(), parallelDocs.size());
+        for (int i = 0; i < sequentialDocs.size(); i++) {
+            assertEquals("commit order", sequentialDocs.get(i).getShortPk(), parallelDocs.get(i).getShortPk());
+            assertEquals("document " + sequentialDocs.get(i).getShortPk(), sequentialDocs.get(i).getDoc(), parallelDocs.get(i).getDoc());
+        }
+        assertEquals("removals", sequential.committedRemoves, parallel.committedRemoves);
+    }
+
+    /** ProductIndexer that records the documents passed to commit instead of sending them to the consumers. */
+    static class TestProductIndexer extends ProductIndexer {
+        final List<EntityIndexer.DocEntry> committedDocs = new ArrayList<>();
+        final List<String> committedRemoves = new ArrayList<>();
+
+        TestProductIndexer(Map<String, ?> properties) {
+            super("Product", properties, new ProductIndexer.Factory().makeQueue(properties));
+        }
+
+        static TestProductIndexer make(int docBuildThreads, int bufSize) {
+            Map<String, Object> properties = new HashMap<>();
+            properties.put("docBuildThreads", docBuildThreads);
+            properties.put("bufSize", bufSize);
+            return new TestProductIndexer(properties);
+        }
+
+        List<EntityIndexer.DocEntry> readAndCommit(DispatchContext dctx, List<GenericValue> products) throws Exception {
+            List<Entry> entries = new ArrayList<>();
+            for (GenericValue product : products) {
+                entries.add(makeEntry(product.getPrimaryKey(), Action.ADD, null));
+            }
+            // A removal and a missing product, which go through the same ordered result handling
+            entries.add(makeEntry(products.get(0).getPrimaryKey(), Action.REMOVE, null));
+            entries.add(makeEntry(dctx.getDelegator().makePK("Product", "productId", "PIT-MISSING"), Action.ADD, null));
+            readDocsAndCommit(dctx, new HashMap<>(), entries);
+            return committedDocs;
+        }
+
+        @Override
+        public Object commit(DispatchContext dctx, Map<String, Object> context, Collection<? extends DocEntry> docs,
+                             Collection<? extends Entry> docsToRemove) {
+            committedDocs.addAll(docs);
+            for (Entry entry : docsToRemove) {
+                committedRemoves.add(entry.getShortPk());
+            }
+            return null;
+        }
+    }
+}
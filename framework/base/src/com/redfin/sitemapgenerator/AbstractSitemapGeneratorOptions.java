@@ -37,6 +37,7 @@ abstract class AbstractSitemapGeneratorOptions<THIS extends AbstractSitemapGener
 	boolean autoValidate = false;
 	boolean gzip = false;
 	Map<String, String> namespaces; // SCIPIO: 3.0.0: Added
+	boolean streaming = false; // SCIPIO: 3.0.0: Added
 
 	public AbstractSitemapGeneratorOptions(URL baseUrl, File baseDir) {
 		if (baseUrl == null) throw new NullPointerException("baseUrl may not be null");
@@ -118,6 +119,20 @@ abstract class AbstractSitemapGeneratorOptions<THIS extends AbstractSitemapGener
 		return getThis();
 	}
 
+	/**
+	 * Write each URL to the sitemap file as it is added, instead of keeping all URLs in memory until {@link SitemapGenerator#write()}.
+	 *
+	 * <p>In this mode the generator writes a single file and does not split it; the caller must start a new generator
+	 * before reaching maxUrls (see {@link SitemapGenerator#getUrlCount()} and {@link SitemapGenerator#getWrittenSize()}).
+	 * {@link SitemapGenerator#writeAsStrings()} is not supported.</p>
+	 *
+	 * <p>SCIPIO: 3.0.0: Added.</p>
+	 */
+	public THIS streaming(boolean streaming) {
+		this.streaming = streaming;
+		return getThis();
+	}
+
 	@SuppressWarnings("unchecked")
 	THIS getThis() {
 		return (THIS)this;
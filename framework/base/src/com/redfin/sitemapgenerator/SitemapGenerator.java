@@ -30,6 +30,12 @@ abstract class SitemapGenerator<U extends ISitemapUrl, THIS extends SitemapGener
 	private final ISitemapUrlRenderer<U> renderer;
 	private int mapCount = 0;
 	private boolean finished = false;
+	private final boolean streaming; // SCIPIO: 3.0.0: Added
+	private OutputStreamWriter streamOut; // SCIPIO: 3.0.0: Added
+	private File streamFile; // SCIPIO: 3.0.0: Added
+	private final StringBuilder streamBuffer = new StringBuilder(); // SCIPIO: 3.0.0: Added
+	private int streamUrlCount = 0; // SCIPIO: 3.0.0: Added
+	private long streamWrittenSize = 0; // SCIPIO: 3.0.0: Added
 	
 	private final ArrayList<File> outFiles = new ArrayList<File>();
 	
@@ -45,6 +51,7 @@ abstract class SitemapGenerator<U extends ISitemapUrl, THIS extends SitemapGener
 		maxUrls = options.maxUrls;
 		autoValidate = options.autoValidate;
 		gzip = options.gzip;
+		streaming = options.streaming; // SCIPIO: 3.0.0: Added
 		this.renderer = renderer;
 
 		if(options.suffixStringPattern != null && !options.suffixStringPattern.isEmpty()) {
@@ -64,6 +71,10 @@ abstract class SitemapGenerator<U extends ISitemapUrl, THIS extends SitemapGener
 	public THIS addUrl(U url) {
 		if (finished) throw new RuntimeException("Sitemap already printed; you must create a new generator to make more sitemaps"); 
 		UrlUtils.checkUrl(url.getUrl(), baseUrl);
+		if (streaming) { // SCIPIO: 3.0.0: Added
+			addUrlStreaming(url);
+			return getThis();
+		}
 		if (urls.size() == maxUrls) {
 			if (!allowMultipleSitemaps) throw new RuntimeException("More than " + maxUrls + " urls, but allowMultipleSitemaps is false.  Enable allowMultipleSitemaps to split the sitemap into multiple files with a sitemap index.");
 			if (baseDir != null) {
@@ -168,6 +179,12 @@ abstract class SitemapGenerator<U extends ISitemapUrl, THIS extends SitemapGener
 	 */
 	public List<File> write() {
 		if (finished) throw new RuntimeException("Sitemap already printed; you must create a new generator to make more sitemaps");
+		if (streaming) { // SCIPIO: 3.0.0: Added
+			if (!allowEmptySitemap && streamUrlCount == 0) throw new RuntimeException("No URLs added, sitemap would be empty; you must add some URLs with addUrls");
+			finishStream();
+			finished = true;
+			return outFiles;
+		}
 		if (!allowEmptySitemap && urls.isEmpty() && mapCount == 0) throw new RuntimeException("No URLs added, sitemap would be empty; you must add some URLs with addUrls");
 		try {
 			writeSiteMap();
@@ -186,6 +203,7 @@ abstract class SitemapGenerator<U extends ISitemapUrl, THIS extends SitemapGener
 	 * @return a list of XML-formatted strings
 	 */
 	public List<String> writeAsStrings() {
+		if (streaming) throw new UnsupportedOperationException("writeAsStrings is not supported in streaming mode"); // SCIPIO: 3.0.0: Added
 		List<String> listOfSiteMapStrings = new ArrayList<String>();
 		for (int start = 0; start < urls.size(); start += maxUrls) {
 			int end = start + maxUrls;
@@ -200,6 +218,14 @@ abstract class SitemapGenerator<U extends ISitemapUrl, THIS extends SitemapGener
 	}
 	
 	private void writeSiteMapAsString(StringBuilder sb, List<U> urls) {
+		writeSiteMapHeader(sb); // SCIPIO: 3.0.0: Factored out for streaming mode
+		for (U url : urls) {
+			renderer.render(url, sb, dateFormat);
+		}
+		sb.append("</urlset>");
+	}
+
+	private void writeSiteMapHeader(StringBuilder sb) {
 		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
 		sb.append("<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\" ");
 		if (renderer.getXmlNamespaces() != null) {
@@ -207,10 +233,99 @@ abstract class SitemapGenerator<U extends ISitemapUrl, THIS extends SitemapGener
 			sb.append(' ');
 		}
 		sb.append(">\n");
-		for (U url : urls) {
-			renderer.render(url, sb, dateFormat);
+	}
+
+	/**
+	 * Returns the number of URLs in the current sitemap file: written so far in streaming mode, pending otherwise.
+	 *
+	 * <p>SCIPIO: 3.0.0: Added.</p>
+	 */
+	public int getUrlCount() {
+		return streaming ? streamUrlCount : urls.size();
+	}
+
+	/**
+	 * Returns the uncompressed size in bytes (UTF-8) of the sitemap file written so far in streaming mode, header
+	 * included but not the closing tag; always 0 outside streaming mode.
+	 *
+	 * <p>SCIPIO: 3.0.0: Added.</p>
+	 */
+	public long getWrittenSize() {
+		return streamWrittenSize;
+	}
+
+	private void addUrlStreaming(U url) { // SCIPIO: 3.0.0: Added
+		if (streamUrlCount == maxUrls) throw new RuntimeException("More than " + maxUrls + " urls in streaming mode; a new generator must be used for each " + maxUrls + " urls");
+		try {
+			if (streamOut == null) openStream();
+			streamBuffer.setLength(0);
+			renderer.render(url, streamBuffer, dateFormat);
+			streamOut.append(streamBuffer);
+			streamWrittenSize += utf8Length(streamBuffer);
+			streamUrlCount++;
+		} catch (IOException e) {
+			closeStreamQuietly();
+			throw new RuntimeException("Problem writing sitemap file " + streamFile, e);
+		}
+	}
+
+	private void openStream() throws IOException { // SCIPIO: 3.0.0: Added
+		if (baseDir == null) {
+			throw new NullPointerException("To write to files, baseDir must not be null");
+		}
+		streamFile = new File(baseDir, fileNamePrefix + fileNameSuffix);
+		outFiles.add(streamFile);
+		FileOutputStream fileStream = new FileOutputStream(streamFile);
+		try {
+			streamOut = new OutputStreamWriter(gzip ? new GZIPOutputStream(fileStream) : fileStream, Charset.forName("UTF-8").newEncoder());
+		} catch (IOException e) {
+			fileStream.close();
+			throw e;
+		}
+		streamBuffer.setLength(0);
+		writeSiteMapHeader(streamBuffer);
+		streamOut.append(streamBuffer);
+		streamWrittenSize = utf8Length(streamBuffer);
+	}
+
+	private void finishStream() { // SCIPIO: 3.0.0: Added
+		try {
+			if (streamOut == null) openStream(); // empty sitemap (allowEmptySitemap)
+			streamOut.write("</urlset>");
+			streamOut.close();
+			streamOut = null;
+			if (autoValidate) SitemapValidator.validateWebSitemap(streamFile);
+		} catch (IOException e) {
+			throw new RuntimeException("Problem writing sitemap file " + streamFile, e);
+		} catch (SAXException e) {
+			throw new RuntimeException("Sitemap file failed to validate (bug?)", e);
+		} finally {
+			closeStreamQuietly();
+		}
+	}
+
+	private static int utf8Length(CharSequence cs) { // SCIPIO: 3.0.0: Added
+		int length = cs.length();
+		for (int i = 0; i < cs.length(); i++) {
+			char c = cs.charAt(i);
+			if (c >= 0x800) {
+				length += Character.isSurrogate(c) ? 1 : 2; // a surrogate pair is 4 bytes
+			} else if (c >= 0x80) {
+				length++;
+			}
+		}
+		return length;
+	}
+
+	private void closeStreamQuietly() { // SCIPIO: 3.0.0: Added
+		if (streamOut != null) {
+			try {
+				streamOut.close();
+			} catch (IOException e) {
+				// ignore: already failing
+			}
+			streamOut = null;
 		}
-		sb.append("</urlset>");
 	}
 	
 	/**
@@ -51,9 +51,21 @@ public final class ExecutionPool {
     private static final int MAX_CAP = 0x7fff; // FIXME: inaccessible as ForkJoinPool.MAX_CAP
     public static final ForkJoinPool GLOBAL_FORK_JOIN = new ForkJoinPool(Math.min(MAX_CAP, Runtime.getRuntime().availableProcessors()),
             ExecutionForkJoinWorkerThreadFactory.getDefault(), null, false);
-    private static final ExecutorService pulseExecutionPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ExecutionPoolThreadFactory(null, "Scipio-ExecutionPoolPulseWorker"));
     private static final Boolean logQueueSize= UtilProperties.getPropertyAsBoolean("cache", "cache.delayqeue.log.enable", false);
 
+    /**
+     * Pulse scheduler: "wheel" (default) for the sharded {@link TimerWheel}, or "delayqueue" for the legacy global {@link DelayQueue}.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public static final String PULSE_SCHEDULER = UtilProperties.getPropertyValue("cache", "cache.expire.scheduler", "wheel");
+    private static final boolean useTimerWheel = !"delayqueue".equals(PULSE_SCHEDULER);
+    private static final TimerWheel timerWheel = useTimerWheel ? new TimerWheel(
+            TimeUnit.MILLISECONDS.toNanos(UtilProperties.getPropertyAsInteger("cache", "cache.expire.wheel.tickMillis", 10)),
+            UtilProperties.getPropertyAsInteger("cache", "cache.expire.wheel.size", 1024),
+            getWheelShardCount(UtilProperties.getPropertyAsInteger("cache", "cache.expire.wheel.shards", 0)),
+            new ExecutionPoolThreadFactory(null, "Scipio-ExecutionPoolTimerWheel")) : null;
+    private static final ExecutorService pulseExecutionPool = useTimerWheel ? null : Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ExecutionPoolThreadFactory(null, "Scipio-ExecutionPoolPulseWorker"));
+
     protected static class ExecutionPoolThreadFactory implements ThreadFactory {
         private final ThreadGroup group;
         private final String namePrefix;
@@ -97,10 +109,19 @@ public final class ExecutionPool {
         return result;
     }
 
+    private static int getWheelShardCount(int shards) {
+        return (shards > 0) ? shards : Runtime.getRuntime().availableProcessors();
+    }
+
     /**
-     * Adds a pulse to the global/static execution pool delay queue.
+     * Adds a pulse to the global/static execution pool timer wheel or delay queue.
+     * <p>SCIPIO: 3.0.0: Now uses the sharded {@link TimerWheel} by default (O(1), see {@link #PULSE_SCHEDULER}).</p>
      */
     public static void addPulse(Pulse pulse) {
+        if (useTimerWheel) {
+            timerWheel.add(pulse);
+            return;
+        }
         if(logQueueSize && delayQueue.size() == 10000){
             Debug.logError("DelayQueue size hit 10.000 entries. Slow down possible.",module);
         }
@@ -108,19 +129,42 @@ public final class ExecutionPool {
     }
 
     /**
-     * Removes a pulse to the global/static execution pool delay queue.
+     * Removes a pulse to the global/static execution pool timer wheel or delay queue.
      * <p>SCIPIO: 2.1.0: UtilCache instances now avoid calling this method due to the immense size of the queue, and
      * this is relatively cost-free optimization as long as <code>putIfAbsent</code> operations are preferred over
      * <code>put</code> operations.</p>
+     * <p>SCIPIO: 3.0.0: O(1) with the timer wheel, see {@link #isRemovePulseCheap()}.</p>
      */
     public static void removePulse(Pulse pulse) {
+        if (useTimerWheel) {
+            timerWheel.cancel(pulse);
+            return;
+        }
         delayQueue.remove(pulse);
     }
 
+    /**
+     * Returns true if {@link #removePulse(Pulse)} is constant-time (timer wheel), false if linear (delay queue).
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public static boolean isRemovePulseCheap() {
+        return useTimerWheel;
+    }
+
+    /**
+     * Returns the number of scheduled pulses.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public static int getPulseCount() {
+        return useTimerWheel ? timerWheel.size() : delayQueue.size();
+    }
+
     static {
-        int numberOfExecutionPoolPulseWorkers = Runtime.getRuntime().availableProcessors();
-        for (int i = 0; i < numberOfExecutionPoolPulseWorkers; i++) {
-            pulseExecutionPool.execute(new ExecutionPoolPulseWorker());
+        if (!useTimerWheel) {
+            int numberOfExecutionPoolPulseWorkers = Runtime.getRuntime().availableProcessors();
+            for (int i = 0; i < numberOfExecutionPoolPulseWorkers; i++) {
+                pulseExecutionPool.execute(new ExecutionPoolPulseWorker());
+            }
         }
     }
 
@@ -164,6 +208,12 @@ public final class ExecutionPool {
         protected final long loadTimeNanos;
         protected final long expireTimeNanos;
 
+        // SCIPIO: 3.0.0: TimerWheel bucket links (intrusive, so add/cancel allocate nothing), guarded by the shard lock
+        volatile TimerWheel.Shard wheelShard;
+        Pulse wheelPrev;
+        Pulse wheelNext;
+        long wheelDeadlineTick;
+
         protected Pulse(long expireDelayNanos) {
             this(System.nanoTime(), expireDelayNanos);
         }
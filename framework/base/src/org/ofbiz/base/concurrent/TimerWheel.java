@@ -0,0 +1,277 @@
+package org.ofbiz.base.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.ofbiz.base.util.Debug;
+
+/**
+ * Hashed timing wheel for {@link ExecutionPool.Pulse} scheduling, with O(1) add and cancel.
+ * <p>Time is divided into ticks of <code>tickNanos</code>; a pulse goes into the bucket of the tick at or after its expiry
+ * time (<code>tick & (wheelSize - 1)</code>), in an intrusive doubly-linked list using fields of the pulse itself, so neither
+ * add nor cancel allocates or searches. Pulses more than one rotation away simply stay in their bucket until their tick comes
+ * round. Pulses never run early and run at most about one tick late.</p>
+ * <p>The wheel is split into shards, each with its own lock, buckets and ticker thread, and a pulse is added to the shard
+ * picked from the calling thread, so concurrent adds and cancels from different threads rarely contend. Expired pulses
+ * are run on the shard's ticker thread outside the lock. A ticker parks until the next deadline of its shard (indefinitely
+ * while the shard is empty) instead of waking every tick, and is woken by adds of earlier deadlines.</p>
+ * <p>SCIPIO: 3.0.0: Added to replace the global {@link java.util.concurrent.DelayQueue} for UtilCache expiry.</p>
+ */
+public final class TimerWheel {
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    private final long startNanos;
+    private final long tickNanos;
+    private final int wheelMask;
+    private final Shard[] shards;
+    private final int shardMask;
+    private volatile boolean stopped;
+
+    /**
+     * Creates the wheel and starts one ticker thread per shard.
+     * @param tickNanos tick duration (expiry precision)
+     * @param wheelSize buckets per shard, rounded up to a power of two
+     * @param shardCount number of shards, rounded up to a power of two
+     * @param threadFactory ticker thread factory (should make daemon threads)
+     */
+    public TimerWheel(long tickNanos, int wheelSize, int shardCount, ThreadFactory threadFactory) {
+        if (tickNanos <= 0) {
+            throw new IllegalArgumentException("tickNanos must be positive");
+        }
+        this.startNanos = System.nanoTime();
+        this.tickNanos = tickNanos;
+        this.wheelMask = powerOfTwo(wheelSize) - 1;
+        this.shards = new Shard[powerOfTwo(shardCount)];
+        this.shardMask = shards.length - 1;
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard();
+        }
+        for (Shard shard : shards) {
+            shard.ticker = threadFactory.newThread(shard::runTicker);
+        }
+        for (Shard shard : shards) {
+            shard.ticker.start();
+        }
+    }
+
+    /**
+     * Stops the ticker threads and waits up to <code>timeoutMillis</code> for them to end; pulses still scheduled, or
+     * added afterward, are not run.
+     */
+    public void shutdown(long timeoutMillis) throws InterruptedException {
+        stopped = true;
+        for (Shard shard : shards) {
+            shard.ticker.interrupt();
+        }
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (Shard shard : shards) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining > 0) {
+                shard.ticker.join(remaining);
+            }
+        }
+    }
+
+    public boolean isShutdown() {
+        return stopped;
+    }
+
+    private static int powerOfTwo(int value) {
+        return (value <= 1) ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    public long getTickNanos() {
+        return tickNanos;
+    }
+
+    public int getWheelSize() {
+        return wheelMask + 1;
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /** Returns the number of scheduled pulses (sum over shards, not an atomic snapshot). */
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.size;
+        }
+        return size;
+    }
+
+    /** Schedules the pulse to run at its {@link ExecutionPool.Pulse#getExpireTimeNanos()}; reschedules it if already scheduled. */
+    public void add(ExecutionPool.Pulse pulse) {
+        cancel(pulse);
+        long deadlineTick = tickOf(pulse.getExpireTimeNanos());
+        shards[(int) Thread.currentThread().getId() & shardMask].add(pulse, deadlineTick);
+    }
+
+    /** Unschedules the pulse if scheduled; returns false if it was not (already run, cancelled or never added). */
+    public boolean cancel(ExecutionPool.Pulse pulse) {
+        Shard shard = pulse.wheelShard;
+        return (shard != null) && shard.cancel(pulse);
+    }
+
+    /** Returns the first tick at or after the given time, so pulses never run early. */
+    private long tickOf(long timeNanos) {
+        long elapsed = timeNanos - startNanos;
+        return (elapsed <= 0) ? 0 : (elapsed + tickNanos - 1) / tickNanos;
+    }
+
+    final class Shard {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ExecutionPool.Pulse[] heads = new ExecutionPool.Pulse[wheelMask + 1];
+        private long processedTick = -1; // guarded by lock
+        private volatile long wakeTick = Long.MAX_VALUE; // tick the ticker parks until; written under lock
+        private volatile int size;
+        private Thread ticker;
+
+        void add(ExecutionPool.Pulse pulse, long deadlineTick) {
+            boolean wake = false;
+            lock.lock();
+            try {
+                if (deadlineTick <= processedTick) {
+                    deadlineTick = processedTick + 1; // tick already passed: next one
+                }
+                int index = (int) deadlineTick & wheelMask;
+                pulse.wheelDeadlineTick = deadlineTick;
+                pulse.wheelPrev = null;
+                pulse.wheelNext = heads[index];
+                if (heads[index] != null) {
+                    heads[index].wheelPrev = pulse;
+                }
+                heads[index] = pulse;
+                pulse.wheelShard = this;
+                size++;
+                if (deadlineTick < wakeTick) {
+                    wakeTick = deadlineTick;
+                    wake = true;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (wake) {
+                LockSupport.unpark(ticker);
+            }
+        }
+
+        boolean cancel(ExecutionPool.Pulse pulse) {
+            lock.lock();
+            try {
+                if (pulse.wheelShard != this) { // run or cancelled concurrently
+                    return false;
+                }
+                unlink(pulse, (int) pulse.wheelDeadlineTick & wheelMask);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void unlink(ExecutionPool.Pulse pulse, int index) {
+            if (pulse.wheelPrev != null) {
+                pulse.wheelPrev.wheelNext = pulse.wheelNext;
+            } else {
+                heads[index] = pulse.wheelNext;
+            }
+            if (pulse.wheelNext != null) {
+                pulse.wheelNext.wheelPrev = pulse.wheelPrev;
+            }
+            pulse.wheelPrev = null;
+            pulse.wheelNext = null;
+            pulse.wheelShard = null;
+            size--;
+        }
+
+        /** Unlinks the expired pulses of the tick's bucket into the list. */
+        private void expire(long tick, List<ExecutionPool.Pulse> expired) {
+            lock.lock();
+            try {
+                int index = (int) tick & wheelMask;
+                ExecutionPool.Pulse pulse = heads[index];
+                while (pulse != null) {
+                    ExecutionPool.Pulse next = pulse.wheelNext;
+                    if (pulse.wheelDeadlineTick <= tick) {
+                        unlink(pulse, index);
+                        expired.add(pulse);
+                    }
+                    pulse = next;
+                }
+                processedTick = tick;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Returns the earliest deadline tick at or after fromTick, or Long.MAX_VALUE if the shard is empty; sets it as the
+         * tick to wake at. Scans at most one rotation of buckets.
+         */
+        private long nextWakeTick(long fromTick) {
+            lock.lock();
+            try {
+                long next = Long.MAX_VALUE;
+                if (size > 0) {
+                    for (long t = fromTick; t <= fromTick + wheelMask && next == Long.MAX_VALUE; t++) {
+                        for (ExecutionPool.Pulse pulse = heads[(int) t & wheelMask]; pulse != null; pulse = pulse.wheelNext) {
+                            if (pulse.wheelDeadlineTick <= t) {
+                                next = t; // due in this rotation; earlier buckets have nothing due
+                                break;
+                            }
+                        }
+                    }
+                    if (next == Long.MAX_VALUE) { // all pulses more than one rotation away
+                        for (ExecutionPool.Pulse head : heads) {
+                            for (ExecutionPool.Pulse pulse = head; pulse != null; pulse = pulse.wheelNext) {
+                                next = Math.min(next, pulse.wheelDeadlineTick);
+                            }
+                        }
+                    }
+                }
+                wakeTick = next;
+                return next;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void runTicker() {
+            List<ExecutionPool.Pulse> expired = new ArrayList<>();
+            long tick = 0;
+            nextWakeTick(tick);
+            while (!stopped && !Thread.currentThread().isInterrupted()) {
+                long now = System.nanoTime();
+                long currentTick = (now - startNanos) / tickNanos;
+                long wake = Math.max(tick, wakeTick);
+                if (currentTick < wake) {
+                    if (wake == Long.MAX_VALUE) {
+                        LockSupport.park(this); // empty: until an add
+                    } else {
+                        LockSupport.parkNanos(this, startNanos + wake * tickNanos - now);
+                    }
+                    continue;
+                }
+                // Catch up on missed ticks; a full rotation visits every bucket, so older ticks can be skipped
+                long fromTick = Math.max(tick, currentTick - wheelMask);
+                for (long t = fromTick; t <= currentTick; t++) {
+                    expire(t, expired);
+                }
+                tick = currentTick + 1;
+                nextWakeTick(tick);
+                for (ExecutionPool.Pulse pulse : expired) {
+                    try {
+                        pulse.run();
+                    } catch (Throwable t) {
+                        Debug.logError(t, "Error running expired pulse", module);
+                    }
+                }
+                expired.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.ofbiz.base.concurrent.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.ofbiz.base.concurrent.ExecutionPool;
+import org.ofbiz.base.concurrent.TimerWheel;
+
+/**
+ * Throughput benchmark of {@link TimerWheel} against the legacy {@link DelayQueue} pulse scheduler under concurrent
+ * add/cancel churn, as done by UtilCache puts that replace expiring cache lines.
+ * <p>Each thread keeps a window of live pulses (long expiry, so the scheduler holds <code>live</code> entries in total) and
+ * repeatedly cancels a random one of its pulses and adds a new one in its place; results are cancel+add pairs per second,
+ * after a warmup. Not a unit test (not in basetests.xml); run manually, e.g.:</p>
+ * <pre>java -cp ... org.ofbiz.base.concurrent.test.PulseSchedulerBenchmark [threads=8] [live=100000] [seconds=5] [iterations=3]</pre>
+ * <p>NOTE: Kept dependency-free (no JMH in the build); warmup and repeated iterations stand in for the JMH harness.</p>
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public class PulseSchedulerBenchmark {
+
+    interface Scheduler {
+        void add(ExecutionPool.Pulse pulse);
+        void cancel(ExecutionPool.Pulse pulse);
+        String getName();
+    }
+
+    static class BenchPulse extends ExecutionPool.Pulse {
+        BenchPulse(long delayNanos) {
+            super(delayNanos);
+        }
+
+        @Override
+        public void run() {
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = (args.length > 0) ? Integer.parseInt(args[0]) : 8;
+        int live = (args.length > 1) ? Integer.parseInt(args[1]) : 100000;
+        int seconds = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+        int iterations = (args.length > 3) ? Integer.parseInt(args[3]) : 3;
+
+        TimerWheel wheel = new TimerWheel(TimeUnit.MILLISECONDS.toNanos(10), 1024, Runtime.getRuntime().availableProcessors(), r -> {
+            Thread t = new Thread(r, "PulseSchedulerBenchmark-wheel");
+            t.setDaemon(true);
+            return t;
+        });
+        DelayQueue<ExecutionPool.Pulse> delayQueue = new DelayQueue<>();
+        Scheduler[] schedulers = new Scheduler[] {
+            new Scheduler() {
+                public void add(ExecutionPool.Pulse pulse) { wheel.add(pulse); }
+                public void cancel(ExecutionPool.Pulse pulse) { wheel.cancel(pulse); }
+                public String getName() { return "TimerWheel"; }
+            },
+            new Scheduler() {
+                public void add(ExecutionPool.Pulse pulse) { delayQueue.put(pulse); }
+                public void cancel(ExecutionPool.Pulse pulse) { delayQueue.remove(pulse); }
+                public String getName() { return "DelayQueue"; }
+            }
+        };
+        System.out.println("threads=" + threads + ", live=" + live + ", seconds=" + seconds + ", iterations=" + iterations);
+        for (Scheduler scheduler : schedulers) {
+            run(scheduler, threads, live, 1, "warmup");
+            for (int i = 1; i <= iterations; i++) {
+                run(scheduler, threads, live, seconds, "iteration " + i);
+            }
+        }
+    }
+
+    static void run(Scheduler scheduler, int threads, int live, int seconds, String label) throws InterruptedException {
+        int perThread = Math.max(1, live / threads);
+        long delayNanos = TimeUnit.HOURS.toNanos(1);
+        LongAdder ops = new LongAdder();
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long[] endNanos = new long[1];
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                ExecutionPool.Pulse[] window = new ExecutionPool.Pulse[perThread];
+                for (int j = 0; j < perThread; j++) {
+                    window[j] = new BenchPulse(delayNanos);
+                    scheduler.add(window[j]);
+                }
+                ready.countDown();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                while (System.nanoTime() < endNanos[0]) {
+                    int index = random.nextInt(perThread);
+                    scheduler.cancel(window[index]);
+                    window[index] = new BenchPulse(delayNanos);
+                    scheduler.add(window[index]);
+                    count++;
+                }
+                ops.add(count);
+                for (ExecutionPool.Pulse pulse : window) {
+                    scheduler.cancel(pulse);
+                }
+                done.countDown();
+            }, "PulseSchedulerBenchmark-" + i).start();
+        }
+        ready.await();
+        endNanos[0] = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        start.countDown();
+        done.await();
+        System.out.printf("%-10s %-12s %,15.0f ops/s%n", scheduler.getName(), label, ops.sum() / (double) seconds);
+    }
+}
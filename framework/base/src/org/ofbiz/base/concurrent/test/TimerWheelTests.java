@@ -0,0 +1,181 @@
+package org.ofbiz.base.concurrent.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.ofbiz.base.concurrent.ExecutionPool;
+import org.ofbiz.base.concurrent.TimerWheel;
+import org.ofbiz.base.test.GenericTestCaseBase;
+
+/**
+ * TimerWheel tests.
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public class TimerWheelTests extends GenericTestCaseBase {
+
+    public TimerWheelTests(String name) {
+        super(name);
+    }
+
+    private final List<TimerWheel> wheels = new ArrayList<>();
+    private final List<Thread> tickers = new ArrayList<>();
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (TimerWheel wheel : wheels) {
+            wheel.shutdown(5000);
+        }
+        for (Thread ticker : tickers) {
+            assertFalse("ticker stopped", ticker.isAlive());
+        }
+        super.tearDown();
+    }
+
+    TimerWheel newWheel(int wheelSize, int shards) {
+        TimerWheel wheel = new TimerWheel(TimeUnit.MILLISECONDS.toNanos(5), wheelSize, shards, r -> {
+            Thread t = new Thread(r, "TimerWheelTests");
+            t.setDaemon(true);
+            tickers.add(t);
+            return t;
+        });
+        wheels.add(wheel);
+        return wheel;
+    }
+
+    static class TestPulse extends ExecutionPool.Pulse {
+        final CountDownLatch latch;
+        volatile long runNanos;
+
+        TestPulse(long delayMillis, CountDownLatch latch) {
+            super(TimeUnit.MILLISECONDS.toNanos(delayMillis));
+            this.latch = latch;
+        }
+
+        @Override
+        public void run() {
+            runNanos = System.nanoTime();
+            latch.countDown();
+        }
+    }
+
+    public void testExpiresNotEarly() throws Exception {
+        TimerWheel wheel = newWheel(64, 2);
+        CountDownLatch latch = new CountDownLatch(3);
+        List<TestPulse> pulses = new ArrayList<>();
+        pulses.add(new TestPulse(20, latch));
+        pulses.add(new TestPulse(60, latch));
+        pulses.add(new TestPulse(500, latch)); // more than one rotation (64 * 5ms)
+        for (TestPulse pulse : pulses) {
+            wheel.add(pulse);
+        }
+        assertEquals("size", 3, wheel.size());
+        assertTrue("all expired", latch.await(5, TimeUnit.SECONDS));
+        for (TestPulse pulse : pulses) {
+            assertTrue("not early", pulse.runNanos >= pulse.getExpireTimeNanos());
+        }
+        assertEquals("size after", 0, wheel.size());
+    }
+
+    public void testCancel() throws Exception {
+        TimerWheel wheel = newWheel(64, 1);
+        CountDownLatch latch = new CountDownLatch(1);
+        TestPulse cancelled = new TestPulse(30, new CountDownLatch(1));
+        TestPulse kept = new TestPulse(60, latch);
+        wheel.add(cancelled);
+        wheel.add(kept);
+        assertTrue("cancel", wheel.cancel(cancelled));
+        assertFalse("cancel twice", wheel.cancel(cancelled));
+        assertTrue("kept expired", latch.await(5, TimeUnit.SECONDS));
+        assertEquals("cancelled not run", 1, cancelled.latch.getCount());
+        assertFalse("cancel after run", wheel.cancel(kept));
+    }
+
+    public void testAlreadyExpired() throws Exception {
+        TimerWheel wheel = newWheel(16, 1);
+        CountDownLatch latch = new CountDownLatch(1);
+        wheel.add(new TestPulse(-1000, latch));
+        assertTrue("expired", latch.await(5, TimeUnit.SECONDS));
+    }
+
+    public void testConcurrentAddCancel() throws Exception {
+        TimerWheel wheel = newWheel(256, 4);
+        int threads = 4;
+        int perThread = 5000;
+        AtomicInteger runCount = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                for (int j = 0; j < perThread; j++) {
+                    ExecutionPool.Pulse pulse = new ExecutionPool.Pulse(TimeUnit.MILLISECONDS.toNanos(50 + (j % 100))) {
+                        @Override
+                        public void run() {
+                            runCount.incrementAndGet();
+                        }
+                    };
+                    wheel.add(pulse);
+                    if (j % 2 == 0) {
+                        wheel.cancel(pulse);
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        assertTrue("producers done", done.await(10, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (runCount.get() < threads * perThread / 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals("uncancelled pulses run", threads * perThread / 2, runCount.get());
+        assertEquals("size", 0, wheel.size());
+    }
+
+    public void testIdleShardsPark() throws Exception {
+        TimerWheel wheel = newWheel(64, 2);
+        // Empty shards park until an add instead of waking every tick
+        assertTrue("empty tickers parked", awaitTickerStates(Thread.State.WAITING));
+
+        // A pulse far away (several rotations) parks its ticker until its deadline; an earlier one wakes it up
+        CountDownLatch farLatch = new CountDownLatch(1);
+        TestPulse far = new TestPulse(60000, farLatch);
+        wheel.add(far);
+        CountDownLatch nearLatch = new CountDownLatch(1);
+        TestPulse near = new TestPulse(50, nearLatch);
+        wheel.add(near);
+        assertTrue("near expired", nearLatch.await(5, TimeUnit.SECONDS));
+        assertTrue("near not early", near.runNanos >= near.getExpireTimeNanos());
+        assertEquals("far pending", 1, farLatch.getCount());
+        assertEquals("size", 1, wheel.size());
+
+        assertTrue("cancel far", wheel.cancel(far));
+    }
+
+    public void testShutdown() throws Exception {
+        TimerWheel wheel = newWheel(16, 2);
+        CountDownLatch latch = new CountDownLatch(1);
+        wheel.add(new TestPulse(100, latch));
+        wheel.shutdown(5000);
+        assertTrue("shutdown", wheel.isShutdown());
+        for (Thread ticker : tickers) {
+            assertFalse("ticker stopped", ticker.isAlive());
+        }
+        assertFalse("not run after shutdown", latch.await(300, TimeUnit.MILLISECONDS));
+    }
+
+    private boolean awaitTickerStates(Thread.State state) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            boolean all = true;
+            for (Thread ticker : tickers) {
+                all &= (ticker.getState() == state);
+            }
+            if (all) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+}
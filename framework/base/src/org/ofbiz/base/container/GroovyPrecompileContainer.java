@@ -0,0 +1,77 @@
+package org.ofbiz.base.container;
+
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.GroovyScriptClassCache;
+import org.ofbiz.base.util.UtilProperties;
+
+/**
+ * Precompiles the Groovy scripts of all components at startup, using {@link GroovyScriptClassCache#precompileAll(boolean)},
+ * so the first requests after a deploy do not stall compiling hundreds of screen, service and event scripts.
+ *
+ * <p>Enabled by <code>script.precompile.enabled</code> in groovy.properties. Runs in a background thread unless
+ * <code>script.precompile.wait</code> is set, in which case startup waits for it to finish. Combined with
+ * <code>script.classCache.enabled</code>, later boots load the compiled classes from the class cache instead.</p>
+ *
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public class GroovyPrecompileContainer implements Container {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    private String name;
+    private boolean enabled;
+    private boolean warmCache;
+    private boolean wait;
+    private int logSlowest;
+
+    @Override
+    public void init(String[] args, String name, String configFile) throws ContainerException {
+        this.name = name;
+        this.enabled = UtilProperties.getPropertyAsBoolean("groovy", "script.precompile.enabled", false);
+        this.warmCache = UtilProperties.getPropertyAsBoolean("groovy", "script.precompile.warmCache", true);
+        this.wait = UtilProperties.getPropertyAsBoolean("groovy", "script.precompile.wait", false);
+        this.logSlowest = UtilProperties.getPropertyAsInteger("groovy", "script.precompile.logSlowest", 10);
+    }
+
+    @Override
+    public boolean start() throws ContainerException {
+        if (!enabled) {
+            return true;
+        }
+        if (wait) {
+            precompile();
+        } else {
+            Thread thread = new Thread(this::precompile, "Scipio-groovy-precompile");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return true;
+    }
+
+    protected void precompile() {
+        Debug.logInfo("Precompiling component Groovy scripts (class cache: "
+                + (GroovyScriptClassCache.isEnabled() ? "enabled" : "disabled") + ")", module);
+        try {
+            GroovyScriptClassCache.PrecompileResult result = GroovyScriptClassCache.precompileAll(warmCache);
+            Debug.logInfo("Precompiled component Groovy scripts: " + result, module);
+            if (logSlowest > 0 && Debug.infoOn()) {
+                StringBuilder sb = new StringBuilder("Slowest Groovy script compiles:");
+                for (GroovyScriptClassCache.ScriptStats stats : GroovyScriptClassCache.getSlowestScripts(logSlowest)) {
+                    sb.append("\n    ").append(stats);
+                }
+                Debug.logInfo(sb.toString(), module);
+            }
+        } catch (Exception e) {
+            Debug.logError(e, "Error precompiling component Groovy scripts: " + e.toString(), module);
+        }
+    }
+
+    @Override
+    public void stop() throws ContainerException {
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,553 @@
+package org.ofbiz.base.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.tools.GroovyClass;
+import org.ofbiz.base.component.ComponentConfig;
+import org.ofbiz.base.concurrent.ExecutionPool;
+
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovySystem;
+
+/**
+ * Persistent Groovy script class cache and ahead-of-time script precompiler for the location scripts
+ * loaded through {@link GroovyUtil#getScriptClassFromLocation(String)}.
+ *
+ * <p>When <code>script.classCache.enabled</code> is set in groovy.properties, each location script is compiled to
+ * bytecode once and written under <code>script.classCache.dir</code>, keyed by a SHA-256 checksum over the script
+ * text, its location, the Groovy and Java versions, the compiler configuration and the runtime classpath jars.
+ * Later loads (including after restarts) define the classes directly from the cache file when the checksum matches,
+ * skipping parsing and the shared <code>GroovyClassLoader</code> entirely. Each script is defined in its own small
+ * class loader, like the <code>GroovyClassLoader.InnerLoader</code> it replaces.</p>
+ *
+ * <p>{@link #precompileAll(boolean)} walks the script files of all enabled components and compiles (or loads) them
+ * in parallel on {@link ExecutionPool#GLOBAL_FORK_JOIN}; it is run at startup by
+ * {@link org.ofbiz.base.container.GroovyPrecompileContainer} when <code>script.precompile.enabled</code> is set.</p>
+ *
+ * <p>Per-script load and compile times are recorded for all location scripts, whether or not the class cache is
+ * enabled, and can be read using {@link #getScriptStats()}.</p>
+ *
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public final class GroovyScriptClassCache {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    private static final int FILE_MAGIC = 0x53474343; // "SGCC"
+    private static final int FILE_VERSION = 1;
+    private static final String FILE_EXT = ".gclass";
+
+    private static final boolean enabled = UtilProperties.getPropertyAsBoolean("groovy", "script.classCache.enabled", false);
+    private static final String cacheDirName = UtilProperties.getPropertyValue("groovy", "script.classCache.dir", "runtime/data/groovy-classes");
+    private static final Set<String> precompileExcludeDirs = Collections.unmodifiableSet(new HashSet<>(StringUtil.split(
+            UtilProperties.getPropertyValue("groovy", "script.precompile.excludeDirs", "build,lib,libsrc,src,node_modules"), ",")));
+
+    private static final Map<String, ScriptStats> scriptStats = new ConcurrentHashMap<>();
+    private static volatile String environmentChecksum;
+    private static volatile File cacheDir;
+
+    private GroovyScriptClassCache() {
+    }
+
+    /** Returns true if the persistent script class cache is enabled (<code>script.classCache.enabled</code>). */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Loads the script class for the given location from the persistent cache, or compiles it and writes it to the
+     * cache if there is no entry matching the current script checksum.
+     */
+    static Class<?> getScriptClass(String location, URL scriptUrl) throws IOException {
+        long startTime = System.nanoTime();
+        String text;
+        try (InputStream in = scriptUrl.openStream()) {
+            text = UtilIO.readString(in);
+        }
+        LoadResult result = loadOrCompile(location, text);
+        recordStats(location, result.source, System.nanoTime() - startTime, result.compileNanos, result.classCount, result.byteCount);
+        return result.scriptClass;
+    }
+
+    /**
+     * Records load statistics for a location script parsed outside the class cache.
+     */
+    static void recordParse(String location, long nanos) {
+        recordStats(location, ScriptStats.Source.PARSED, nanos, nanos, 0, 0);
+    }
+
+    /**
+     * Returns the per-script load statistics, by script location, for all location scripts loaded since startup.
+     */
+    public static Map<String, ScriptStats> getScriptStats() {
+        return Collections.unmodifiableMap(scriptStats);
+    }
+
+    /**
+     * Returns the statistics of the <code>count</code> scripts that took the longest to compile, slowest first.
+     */
+    public static List<ScriptStats> getSlowestScripts(int count) {
+        return scriptStats.values().stream()
+                .sorted(Comparator.comparingLong(ScriptStats::getCompileNanos).reversed())
+                .limit(count).collect(Collectors.toList());
+    }
+
+    /**
+     * Compiles or loads from the class cache all the Groovy scripts of all enabled components, in parallel.
+     * If <code>warm</code> is true, the resulting classes are also added to the in-memory
+     * <code>script.GroovyLocationParsedCache</code> so first requests do not need to load them.
+     * <p>When the class cache is enabled, cache files not matching any current script are removed afterward.</p>
+     */
+    public static PrecompileResult precompileAll(boolean warm) {
+        GroovyUtil.initBaseScript();
+        long startTime = System.nanoTime();
+        Map<String, Path> scripts = findComponentScripts();
+        List<Future<PrecompileItem>> futures = new ArrayList<>(scripts.size());
+        for (Map.Entry<String, Path> entry : scripts.entrySet()) {
+            futures.add(ExecutionPool.GLOBAL_FORK_JOIN.submit(() -> precompile(entry.getKey(), entry.getValue(), warm)));
+        }
+        PrecompileResult result = new PrecompileResult();
+        Set<String> checksums = new HashSet<>();
+        for (Future<PrecompileItem> future : futures) {
+            PrecompileItem item;
+            try {
+                item = future.get();
+            } catch (Exception e) {
+                Debug.logError(e, "Groovy precompile: unexpected error: " + e.toString(), module);
+                result.failed++;
+                continue;
+            }
+            if (item.error != null) {
+                result.failed++;
+                result.errors.put(item.location, item.error);
+                continue;
+            }
+            if (item.checksum != null) {
+                checksums.add(item.checksum);
+            }
+            if (item.source == ScriptStats.Source.CACHED) {
+                result.cached++;
+            } else {
+                result.compiled++;
+            }
+        }
+        if (enabled) {
+            result.pruned = pruneCacheFiles(checksums);
+        }
+        result.totalNanos = System.nanoTime() - startTime;
+        return result;
+    }
+
+    private static PrecompileItem precompile(String location, Path file, boolean warm) {
+        PrecompileItem item = new PrecompileItem(location);
+        long startTime = System.nanoTime();
+        try {
+            String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            LoadResult result;
+            if (enabled) {
+                result = loadOrCompile(location, text);
+                item.checksum = result.checksum;
+            } else {
+                result = defineClasses(compile(location, text), location, null);
+            }
+            item.source = result.source;
+            recordStats(location, result.source, System.nanoTime() - startTime, result.compileNanos, result.classCount, result.byteCount);
+            if (warm) {
+                GroovyUtil.cacheScriptClass(location, result.scriptClass);
+            }
+        } catch (Throwable t) {
+            // NOTE: Some component scripts are not standalone (e.g. includes, templates) and may fail to compile; they are logged and skipped
+            item.error = t.toString();
+            Debug.logWarning("Groovy precompile: could not compile script [" + location + "]: " + t.toString(), module);
+        }
+        return item;
+    }
+
+    private static LoadResult loadOrCompile(String location, String text) throws IOException {
+        String checksum = getChecksum(location, text);
+        File file = new File(getCacheDir(), checksum + FILE_EXT);
+        if (file.isFile()) {
+            try {
+                CompiledScript compiled = readCacheFile(file, checksum, location);
+                if (compiled != null) {
+                    return defineClasses(compiled, location, checksum);
+                }
+            } catch (Exception e) {
+                Debug.logWarning("Could not read Groovy class cache file [" + file + "] for script [" + location
+                        + "]; recompiling: " + e.toString(), module);
+            }
+        }
+        CompiledScript compiled = compile(location, text);
+        try {
+            writeCacheFile(file, checksum, location, compiled);
+        } catch (IOException e) {
+            Debug.logWarning("Could not write Groovy class cache file [" + file + "] for script [" + location + "]: " + e.toString(), module);
+        }
+        return defineClasses(compiled, location, checksum);
+    }
+
+    /**
+     * Compiles the script to bytecode using the same compiler configuration and source name as
+     * {@link GroovyUtil#getScriptClassFromLocation(String)}, so the generated class names are identical.
+     */
+    private static CompiledScript compile(String location, String text) throws IOException {
+        long startTime = System.nanoTime();
+        CompilerConfiguration config = GroovyUtil.getLocationCompilerConfig();
+        try (GroovyClassLoader resolveLoader = new GroovyClassLoader(GroovyUtil.class.getClassLoader(), config)) {
+            CompilationUnit unit = new CompilationUnit(config, null, resolveLoader);
+            unit.addSource(location, text);
+            unit.compile(Phases.CLASS_GENERATION);
+            String mainClassName = unit.getAST().getModules().get(0).getClasses().get(0).getName();
+            Map<String, byte[]> classBytes = new LinkedHashMap<>();
+            for (GroovyClass groovyClass : unit.getClasses()) {
+                classBytes.put(groovyClass.getName(), groovyClass.getBytes());
+            }
+            return new CompiledScript(mainClassName, classBytes, System.nanoTime() - startTime, ScriptStats.Source.COMPILED);
+        }
+    }
+
+    private static LoadResult defineClasses(CompiledScript compiled, String location, String checksum) throws IOException {
+        ScriptClassLoader loader = new ScriptClassLoader(GroovyUtil.class.getClassLoader(), compiled.classBytes);
+        int byteCount = 0;
+        for (byte[] bytes : compiled.classBytes.values()) {
+            byteCount += bytes.length;
+        }
+        int classCount = compiled.classBytes.size();
+        try {
+            Class<?> scriptClass = loader.loadClass(compiled.mainClassName);
+            return new LoadResult(scriptClass, compiled.source, checksum, compiled.compileNanos, classCount, byteCount);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Main class [" + compiled.mainClassName + "] not found for script [" + location + "]", e);
+        }
+    }
+
+    private static CompiledScript readCacheFile(File file, String checksum, String location) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION || !checksum.equals(in.readUTF()) || !location.equals(in.readUTF())) {
+                return null;
+            }
+            String mainClassName = in.readUTF();
+            int classCount = in.readInt();
+            Map<String, byte[]> classBytes = new LinkedHashMap<>();
+            for (int i = 0; i < classCount; i++) {
+                String name = in.readUTF();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                classBytes.put(name, bytes);
+            }
+            return new CompiledScript(mainClassName, classBytes, 0, ScriptStats.Source.CACHED);
+        }
+    }
+
+    private static void writeCacheFile(File file, String checksum, String location, CompiledScript compiled) throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Could not create directory [" + dir + "]");
+        }
+        Path tempFile = Files.createTempFile(dir.toPath(), checksum, ".tmp");
+        try {
+            try (OutputStream fileOut = Files.newOutputStream(tempFile);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(FILE_VERSION);
+                out.writeUTF(checksum);
+                out.writeUTF(location);
+                out.writeUTF(compiled.mainClassName);
+                out.writeInt(compiled.classBytes.size());
+                for (Map.Entry<String, byte[]> entry : compiled.classBytes.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue().length);
+                    out.write(entry.getValue());
+                }
+            }
+            Files.move(tempFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static int pruneCacheFiles(Set<String> checksums) {
+        File[] files = getCacheDir().listFiles((dir, name) -> name.endsWith(FILE_EXT));
+        if (files == null) {
+            return 0;
+        }
+        int pruned = 0;
+        for (File file : files) {
+            String checksum = file.getName().substring(0, file.getName().length() - FILE_EXT.length());
+            if (!checksums.contains(checksum) && file.delete()) {
+                pruned++;
+            }
+        }
+        return pruned;
+    }
+
+    /**
+     * Returns the script files of all enabled components, by <code>component://</code> location.
+     */
+    private static Map<String, Path> findComponentScripts() {
+        Map<String, Path> scripts = new LinkedHashMap<>();
+        for (ComponentConfig component : ComponentConfig.getAllComponents()) {
+            if (!component.enabled()) {
+                continue;
+            }
+            Path root = new File(component.getRootLocation()).toPath();
+            if (!Files.isDirectory(root)) {
+                continue;
+            }
+            try (Stream<Path> paths = Files.walk(root)) {
+                paths.filter(path -> path.getFileName().toString().endsWith(".groovy") && Files.isRegularFile(path))
+                        .filter(path -> !precompileExcludeDirs.contains(root.relativize(path).getName(0).toString()))
+                        .sorted()
+                        .forEach(path -> scripts.put("component://" + component.getComponentName() + "/"
+                                + root.relativize(path).toString().replace(File.separatorChar, '/'), path));
+            } catch (IOException e) {
+                Debug.logWarning("Groovy precompile: could not list scripts of component [" + component.getComponentName() + "]: " + e.toString(), module);
+            }
+        }
+        return scripts;
+    }
+
+    private static String getChecksum(String location, String text) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(getEnvironmentChecksum().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(location.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(text.getBytes(StandardCharsets.UTF_8));
+        return StringUtil.toHexString(digest.digest());
+    }
+
+    /**
+     * Returns a checksum of everything besides the script itself that affects its bytecode: the Groovy and Java
+     * versions, the compiler configuration and the jars/directories of the classpath (paths, sizes and times).
+     */
+    private static String getEnvironmentChecksum() {
+        String checksum = environmentChecksum;
+        if (checksum == null) {
+            CompilerConfiguration config = GroovyUtil.getLocationCompilerConfig();
+            StringBuilder sb = new StringBuilder();
+            sb.append(FILE_VERSION).append('|').append(GroovySystem.getVersion())
+                    .append('|').append(System.getProperty("java.specification.version"))
+                    .append('|').append(config.getScriptBaseClass())
+                    .append('|').append(config.getTargetBytecode())
+                    .append('|').append(config.getOptimizationOptions())
+                    .append('|').append(config.getCompilationCustomizers().size());
+            for (ClassLoader loader = GroovyUtil.class.getClassLoader(); loader != null; loader = loader.getParent()) {
+                if (loader instanceof URLClassLoader) {
+                    for (URL url : ((URLClassLoader) loader).getURLs()) {
+                        sb.append('|').append(url);
+                        if ("file".equals(url.getProtocol())) {
+                            File file = FileUtil.getFile(url.getPath());
+                            if (file.isFile()) {
+                                sb.append(':').append(file.length()).append(':').append(file.lastModified());
+                            }
+                        }
+                    }
+                }
+            }
+            checksum = getDigestHex(sb.toString());
+            environmentChecksum = checksum;
+        }
+        return checksum;
+    }
+
+    private static String getDigestHex(String value) {
+        try {
+            return StringUtil.toHexString(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static File getCacheDir() {
+        File dir = cacheDir;
+        if (dir == null) {
+            dir = new File(cacheDirName);
+            if (!dir.isAbsolute() && System.getProperty("ofbiz.home") != null) {
+                dir = new File(System.getProperty("ofbiz.home"), cacheDirName);
+            }
+            cacheDir = dir;
+        }
+        return dir;
+    }
+
+    private static void recordStats(String location, ScriptStats.Source source, long loadNanos, long compileNanos, int classCount, int byteCount) {
+        scriptStats.put(location, new ScriptStats(location, source, loadNanos, compileNanos, classCount, byteCount, System.currentTimeMillis()));
+    }
+
+    /**
+     * Load statistics of one location script.
+     */
+    public static final class ScriptStats {
+        public enum Source {
+            /** Parsed by the Groovy class loader (class cache disabled). */
+            PARSED,
+            /** Compiled from source into the class cache. */
+            COMPILED,
+            /** Loaded from the class cache. */
+            CACHED
+        }
+
+        private final String location;
+        private final Source source;
+        private final long loadNanos;
+        private final long compileNanos;
+        private final int classCount;
+        private final int byteCount;
+        private final long loadTime;
+
+        ScriptStats(String location, Source source, long loadNanos, long compileNanos, int classCount, int byteCount, long loadTime) {
+            this.location = location;
+            this.source = source;
+            this.loadNanos = loadNanos;
+            this.compileNanos = compileNanos;
+            this.classCount = classCount;
+            this.byteCount = byteCount;
+            this.loadTime = loadTime;
+        }
+
+        public String getLocation() { return location; }
+        public Source getSource() { return source; }
+        /** Total time to read, compile or load from cache, and define the script classes. */
+        public long getLoadNanos() { return loadNanos; }
+        /** Time spent compiling; zero when loaded from the class cache. */
+        public long getCompileNanos() { return compileNanos; }
+        /** Number of generated classes (script, closures, inner classes); zero when parsed. */
+        public int getClassCount() { return classCount; }
+        /** Total bytecode size of the generated classes; zero when parsed. */
+        public int getByteCount() { return byteCount; }
+        /** Time of the load, in milliseconds since the epoch. */
+        public long getLoadTime() { return loadTime; }
+
+        @Override
+        public String toString() {
+            return location + " [" + source + ", load " + (loadNanos / 1000000) + "ms, compile " + (compileNanos / 1000000) + "ms]";
+        }
+    }
+
+    /**
+     * Result of {@link #precompileAll(boolean)}.
+     */
+    public static final class PrecompileResult {
+        private int compiled;
+        private int cached;
+        private int failed;
+        private int pruned;
+        private long totalNanos;
+        private final Map<String, String> errors = new LinkedHashMap<>();
+
+        public int getCompiled() { return compiled; }
+        public int getCached() { return cached; }
+        public int getFailed() { return failed; }
+        public int getPruned() { return pruned; }
+        public long getTotalNanos() { return totalNanos; }
+        /** Error messages of the scripts that could not be compiled, by location. */
+        public Map<String, String> getErrors() { return Collections.unmodifiableMap(errors); }
+
+        @Override
+        public String toString() {
+            return "compiled: " + compiled + ", loaded from cache: " + cached + ", failed: " + failed
+                    + ", pruned cache files: " + pruned + ", time: " + (totalNanos / 1000000) + "ms";
+        }
+    }
+
+    private static final class PrecompileItem {
+        private final String location;
+        private String checksum;
+        private ScriptStats.Source source;
+        private String error;
+
+        PrecompileItem(String location) {
+            this.location = location;
+        }
+    }
+
+    private static final class CompiledScript {
+        private final String mainClassName;
+        private final Map<String, byte[]> classBytes;
+        private final long compileNanos;
+        private final ScriptStats.Source source;
+
+        CompiledScript(String mainClassName, Map<String, byte[]> classBytes, long compileNanos, ScriptStats.Source source) {
+            this.mainClassName = mainClassName;
+            this.classBytes = classBytes;
+            this.compileNanos = compileNanos;
+            this.source = source;
+        }
+    }
+
+    private static final class LoadResult {
+        private final Class<?> scriptClass;
+        private final ScriptStats.Source source;
+        private final String checksum;
+        private final long compileNanos;
+        private final int classCount;
+        private final int byteCount;
+
+        LoadResult(Class<?> scriptClass, ScriptStats.Source source, String checksum, long compileNanos, int classCount, int byteCount) {
+            this.scriptClass = scriptClass;
+            this.source = source;
+            this.checksum = checksum;
+            this.compileNanos = compileNanos;
+            this.classCount = classCount;
+            this.byteCount = byteCount;
+        }
+    }
+
+    /**
+     * Defines the classes of one compiled script on demand, from their bytecode.
+     */
+    private static final class ScriptClassLoader extends ClassLoader {
+        private final Map<String, byte[]> classBytes;
+
+        ScriptClassLoader(ClassLoader parent, Map<String, byte[]> classBytes) {
+            super(parent);
+            this.classBytes = new ConcurrentHashMap<>(classBytes);
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classBytes.remove(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+}
@@ -366,10 +366,16 @@ public class GroovyUtil {
                 if (scriptUrl == null) {
                     throw new GeneralException("Script not found at location [" + location + "]");
                 }
-                if (GroovyLoader.classLoader != null) {
-                    scriptClass = parseClass(scriptUrl.openStream(), location, GroovyLoader.classLoader);
+                if (GroovyScriptClassCache.isEnabled()) { // SCIPIO: 3.0.0: Persistent checksum-keyed class cache
+                    scriptClass = GroovyScriptClassCache.getScriptClass(location, scriptUrl);
                 } else {
-                    scriptClass = parseClass(scriptUrl.openStream(), location);
+                    long startTime = System.nanoTime(); // SCIPIO: 3.0.0: Per-script compile time stats
+                    if (GroovyLoader.classLoader != null) {
+                        scriptClass = parseClass(scriptUrl.openStream(), location, GroovyLoader.classLoader);
+                    } else {
+                        scriptClass = parseClass(scriptUrl.openStream(), location);
+                    }
+                    GroovyScriptClassCache.recordParse(location, System.nanoTime() - startTime);
                 }
                 Class<?> scriptClassCached = parsedScripts.putIfAbsent(location, scriptClass);
                 if (scriptClassCached == null) { // putIfAbsent returns null if the class is added to the cache
@@ -389,6 +395,22 @@ public class GroovyUtil {
         }
     }
 
+    /**
+     * SCIPIO: Adds a script class loaded ahead of time to the location script cache, unless already present.
+     * Added 3.0.0.
+     */
+    static void cacheScriptClass(String location, Class<?> scriptClass) {
+        parsedScripts.putIfAbsent(location, scriptClass);
+    }
+
+    /**
+     * SCIPIO: Returns the compiler configuration used for location scripts by {@link #getScriptClassFromLocation}.
+     * Added 3.0.0.
+     */
+    static CompilerConfiguration getLocationCompilerConfig() {
+        return (GroovyLoader.classLoader != null) ? GroovyLoader.compilerConfig : CompilerConfiguration.DEFAULT;
+    }
+
     /**
      * @throws IOException
      * @deprecated SCIPIO: 2017-01-30: ambiguous; method specifying an explicit ClassLoader should be used instead, to ensure library loading consistency.
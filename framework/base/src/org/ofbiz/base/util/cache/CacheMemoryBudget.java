@@ -0,0 +1,116 @@
+package org.ofbiz.base.util.cache;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilProperties;
+
+/**
+ * Memory budget shared by all {@link UtilCache} instances that have a weigher, configured by
+ * <code>cache.weight.globalMax</code> in cache.properties (bytes with <code>k/m/g</code> suffix, or a percentage of the
+ * maximum heap; 0 disables).
+ * <p>Weighted caches report the weight of each entry they store. Once the weight added since the last check exceeds
+ * 1/64 of the budget, the next writing thread sums the weighted sizes of all registered caches and, if the total is over
+ * budget, trims every cache by the same proportion, least recently used entries first, down to
+ * <code>cache.weight.globalTrimRatio</code> of the budget. Each cache's own <code>maxWeight</code> still applies.</p>
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public final class CacheMemoryBudget {
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    private static class Holder {
+        private static final CacheMemoryBudget GLOBAL = new CacheMemoryBudget(
+                CacheWeighers.parseWeight(UtilProperties.getPropertyValue(UtilCache.CFG_RES, "cache.weight.globalMax", "0")),
+                UtilProperties.getPropertyAsDouble(UtilCache.CFG_RES, "cache.weight.globalTrimRatio", 0.9));
+    }
+
+    private final long maxWeight;
+    private final long checkWeight;
+    private final double trimRatio;
+    private final Set<UtilCache<?, ?>> caches = ConcurrentHashMap.newKeySet();
+    private final LongAdder pendingWeight = new LongAdder();
+    private final ReentrantLock trimLock = new ReentrantLock();
+    private final AtomicLong trimCount = new AtomicLong();
+
+    CacheMemoryBudget(Long maxWeight, double trimRatio) {
+        this.maxWeight = (maxWeight != null && maxWeight > 0) ? maxWeight : 0;
+        this.checkWeight = Math.max(this.maxWeight / 64, 1);
+        this.trimRatio = (trimRatio > 0 && trimRatio <= 1) ? trimRatio : 0.9;
+        if (this.maxWeight > 0) {
+            Debug.logInfo("Cache global memory budget: " + this.maxWeight + " bytes (trim to " + this.trimRatio + ")", module);
+        }
+    }
+
+    public static CacheMemoryBudget getGlobal() {
+        return Holder.GLOBAL;
+    }
+
+    public boolean isEnabled() {
+        return maxWeight > 0;
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /** Returns the current total weight of the registered caches. */
+    public long getWeightedSize() {
+        long total = 0;
+        for (UtilCache<?, ?> cache : caches) {
+            total += cache.getWeightedSize();
+        }
+        return total;
+    }
+
+    /** Returns the number of times the caches were trimmed for exceeding the budget. */
+    public long getTrimCount() {
+        return trimCount.get();
+    }
+
+    public int getCacheCount() {
+        return caches.size();
+    }
+
+    void register(UtilCache<?, ?> cache) {
+        caches.add(cache);
+    }
+
+    void added(long weight) {
+        pendingWeight.add(weight);
+    }
+
+    /** Checks the budget if enough weight was added since the last check; skipped if another thread is checking. */
+    void afterWrite() {
+        if (pendingWeight.sum() >= checkWeight && trimLock.tryLock()) {
+            try {
+                check();
+            } finally {
+                trimLock.unlock();
+            }
+        }
+    }
+
+    private void check() {
+        pendingWeight.reset();
+        long total = getWeightedSize();
+        if (total <= maxWeight) {
+            return;
+        }
+        double ratio = (maxWeight * trimRatio) / total;
+        for (UtilCache<?, ?> cache : caches) {
+            long size = cache.getWeightedSize();
+            if (size > 0) {
+                cache.trimToWeight((long) (size * ratio));
+            }
+        }
+        trimCount.incrementAndGet();
+        if (Debug.infoOn()) {
+            Debug.logInfo("Cache global memory budget exceeded (" + total + " > " + maxWeight + " bytes); trimmed "
+                    + caches.size() + " weighted caches to " + getWeightedSize() + " bytes", module);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package org.ofbiz.base.util.cache;
+
+/**
+ * Object that estimates its own retained size for the <code>bytes</code> cache weigher ({@link CacheWeighers#estimateSize(Object)}),
+ * for types whose size the generic estimator cannot see, such as entity values and rendered widget output.
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public interface CacheWeighable {
+
+    /** Returns the approximate retained size of this object in bytes, including the objects it exclusively references. */
+    long getCacheWeight();
+
+}
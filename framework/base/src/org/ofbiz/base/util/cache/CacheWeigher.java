@@ -0,0 +1,16 @@
+package org.ofbiz.base.util.cache;
+
+/**
+ * Computes the weight of a cache entry for weight-bounded {@link UtilCache} instances (<code>weigher</code> and
+ * <code>maxWeight</code> cache properties), normally its approximate retained size in bytes.
+ * <p>Weights are computed once when a value is put, so implementations should be cheap estimates rather than exact
+ * measurements, and must not return negative values. See {@link CacheWeighers} for the built-in weighers.</p>
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+@FunctionalInterface
+public interface CacheWeigher {
+
+    /** Returns the weight of the entry; the key is the internal cache key. */
+    long weigh(Object key, Object value);
+
+}
@@ -0,0 +1,194 @@
+package org.ofbiz.base.util.cache;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilValidate;
+
+/**
+ * Built-in {@link CacheWeigher} implementations and size estimation helpers.
+ * <ul>
+ *   <li><code>entries</code> ({@link #ENTRIES}): every entry weighs 1, so <code>maxWeight</code> is an entry count.</li>
+ *   <li><code>bytes</code> ({@link #BYTES}): estimated retained size in bytes of key and value ({@link #estimateSize(Object)}).</li>
+ *   <li>Any other value is the name of a class implementing {@link CacheWeigher} with a public no-argument constructor.</li>
+ * </ul>
+ * <p>The estimates assume a 64-bit JVM with compressed references and compact strings; they are meant to keep cache
+ * memory within the right order of magnitude, not to be exact. Large collections and maps are estimated from a sample
+ * of their elements.</p>
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public final class CacheWeighers {
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    public static final String ENTRIES_NAME = "entries";
+    public static final String BYTES_NAME = "bytes";
+
+    /** Weighs every entry 1. */
+    public static final CacheWeigher ENTRIES = (key, value) -> 1;
+
+    /** Weighs the estimated retained size in bytes of key and value. */
+    public static final CacheWeigher BYTES = (key, value) -> estimateSize(key) + estimateSize(value);
+
+    static final long OBJECT_SIZE = 16;
+    static final long ARRAY_HEADER_SIZE = 16;
+    static final long REFERENCE_SIZE = 4;
+    static final long STRING_SIZE = 24 + ARRAY_HEADER_SIZE;
+    static final long COLLECTION_SIZE = 48;
+    static final long COLLECTION_ELEMENT_SIZE = 16;
+    static final long MAP_SIZE = 64;
+    static final long MAP_ENTRY_SIZE = 36;
+    static final long UNKNOWN_SIZE = 64;
+    private static final int MAX_DEPTH = 4;
+    private static final int SAMPLE_SIZE = 32;
+
+    private CacheWeighers() {
+    }
+
+    /**
+     * Returns the weigher for the given <code>weigher</code> property value: {@link #ENTRIES_NAME}, {@link #BYTES_NAME}
+     * or a class name; null if empty or invalid (logged).
+     */
+    public static CacheWeigher getWeigher(String name) {
+        if (UtilValidate.isEmpty(name)) {
+            return null;
+        } else if (ENTRIES_NAME.equals(name)) {
+            return ENTRIES;
+        } else if (BYTES_NAME.equals(name)) {
+            return BYTES;
+        }
+        try {
+            Class<?> cls = Thread.currentThread().getContextClassLoader().loadClass(name);
+            return (CacheWeigher) cls.getConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            Debug.logError("Invalid cache weigher [" + name + "]: " + e.toString(), module);
+            return null;
+        }
+    }
+
+    /** Returns the name of the weigher as accepted by {@link #getWeigher(String)}, or null if null. */
+    public static String getWeigherName(CacheWeigher weigher) {
+        if (weigher == null) {
+            return null;
+        } else if (weigher == ENTRIES) {
+            return ENTRIES_NAME;
+        } else if (weigher == BYTES) {
+            return BYTES_NAME;
+        }
+        return weigher.getClass().getName();
+    }
+
+    /**
+     * Parses a weight or memory size: a plain number, a number with a <code>k</code>, <code>m</code> or <code>g</code>
+     * (binary) suffix, or a percentage of the maximum heap size (<code>25%</code>). Returns null if empty or invalid (logged).
+     */
+    public static Long parseWeight(String value) {
+        if (UtilValidate.isEmpty(value)) {
+            return null;
+        }
+        String str = value.trim().toLowerCase();
+        try {
+            if (str.endsWith("%")) {
+                double percent = Double.parseDouble(str.substring(0, str.length() - 1).trim());
+                return (long) (Runtime.getRuntime().maxMemory() * (percent / 100.0));
+            }
+            long multiplier = 1;
+            char unit = str.charAt(str.length() - 1);
+            if (unit == 'k') {
+                multiplier = 1024L;
+            } else if (unit == 'm') {
+                multiplier = 1024L * 1024L;
+            } else if (unit == 'g') {
+                multiplier = 1024L * 1024L * 1024L;
+            }
+            if (multiplier != 1) {
+                str = str.substring(0, str.length() - 1).trim();
+            }
+            return Long.parseLong(str) * multiplier;
+        } catch (NumberFormatException e) {
+            Debug.logError("Invalid cache weight or size [" + value + "]", module);
+            return null;
+        }
+    }
+
+    /**
+     * Estimates the retained size of the object in bytes: {@link CacheWeighable#getCacheWeight()} if implemented, otherwise
+     * by type for strings, boxed primitives, dates, arrays, collections and maps (recursively, sampled), and a fixed
+     * size for other objects.
+     */
+    public static long estimateSize(Object value) {
+        return estimateSize(value, 0);
+    }
+
+    private static long estimateSize(Object value, int depth) {
+        if (value == null || value instanceof Boolean || value instanceof Enum) {
+            return 0; // shared instances
+        } else if (value instanceof CacheWeighable) {
+            return ((CacheWeighable) value).getCacheWeight();
+        } else if (value instanceof String) {
+            return STRING_SIZE + ((String) value).length();
+        } else if (value instanceof CharSequence) {
+            return OBJECT_SIZE + ARRAY_HEADER_SIZE + 2L * ((CharSequence) value).length();
+        } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+            return 48;
+        } else if (value instanceof Number || value instanceof Character) {
+            return OBJECT_SIZE + 8;
+        } else if (value instanceof Date) {
+            return OBJECT_SIZE + 16;
+        } else if (value instanceof byte[]) {
+            return ARRAY_HEADER_SIZE + ((byte[]) value).length;
+        } else if (value instanceof char[]) {
+            return ARRAY_HEADER_SIZE + 2L * ((char[]) value).length;
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            long size = ARRAY_HEADER_SIZE + REFERENCE_SIZE * array.length;
+            if (depth < MAX_DEPTH) {
+                size += estimateElements(Arrays.asList(array), array.length, depth);
+            }
+            return size;
+        } else if (value.getClass().isArray()) {
+            return ARRAY_HEADER_SIZE + 8L * Array.getLength(value); // primitive: upper bound
+        } else if (depth >= MAX_DEPTH) {
+            return UNKNOWN_SIZE;
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            int size = collection.size();
+            return COLLECTION_SIZE + COLLECTION_ELEMENT_SIZE * size + estimateElements(collection, size, depth);
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            int size = map.size();
+            return MAP_SIZE + MAP_ENTRY_SIZE * size + estimateElements(map.keySet(), size, depth)
+                    + estimateElements(map.values(), size, depth);
+        }
+        return UNKNOWN_SIZE;
+    }
+
+    /** Sums the estimated sizes of the elements, extrapolating from the first {@link #SAMPLE_SIZE} elements if more. */
+    private static long estimateElements(Iterable<?> elements, int size, int depth) {
+        if (size <= 0) {
+            return 0;
+        }
+        long total = 0;
+        int sampled = 0;
+        try {
+            Iterator<?> it = elements.iterator();
+            while (sampled < SAMPLE_SIZE && it.hasNext()) {
+                total += estimateSize(it.next(), depth + 1);
+                sampled++;
+            }
+        } catch (ConcurrentModificationException e) {
+            // Value modified concurrently (should not happen for cached values): use what was sampled
+        }
+        if (sampled == 0) {
+            return UNKNOWN_SIZE * size;
+        }
+        return (sampled >= size) ? total : (total / sampled) * size;
+    }
+}
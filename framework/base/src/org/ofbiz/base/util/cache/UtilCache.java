@@ -37,6 +37,7 @@ import org.ofbiz.base.concurrent.ExecutionPool;
 import org.ofbiz.base.util.*;
 
 import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.googlecode.concurrentlinkedhashmap.EntryWeigher;
 import com.googlecode.concurrentlinkedhashmap.EvictionListener;
 
 /**
@@ -80,6 +81,27 @@ public class UtilCache<K, V> implements Serializable, EvictionListener<Object, C
      */
     public static final String CFG_RES = "cache";
 
+    /**
+     * Least-recently-used eviction (<code>ConcurrentLinkedHashMap</code>), the default.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public static final String EVICTION_POLICY_LRU = "lru";
+
+    /**
+     * Window-TinyLFU frequency-aware admission and eviction ({@link WTinyLfuMap}), resistant to scans.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public static final String EVICTION_POLICY_TINYLFU = "tinylfu";
+
+    /**
+     * Capacity of weighted caches that have no <code>maxWeight</code> but are bounded by the global {@link CacheMemoryBudget}
+     * (the largest capacity <code>ConcurrentLinkedHashMap</code> accepts).
+     */
+    private static final long WEIGHT_UNBOUNDED = Long.MAX_VALUE - Integer.MAX_VALUE;
+
+    /** Estimated weight in bytes added to each entry of a weighted cache for the cache line and map node. */
+    private static final long CACHE_LINE_WEIGHT = 80;
+
     private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
 
     /** A static Map to keep track of all of the UtilCache instances. */
@@ -118,6 +140,31 @@ public class UtilCache<K, V> implements Serializable, EvictionListener<Object, C
     /** Specifies whether or not to use soft references for this cache, defaults to false */
     protected boolean useSoftReference;
 
+    /**
+     * Eviction policy for bounded caches: {@link #EVICTION_POLICY_LRU} (default) or {@link #EVICTION_POLICY_TINYLFU}.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    protected String evictionPolicy;
+
+    /**
+     * Weigher for weight-bounded caches, or null if bounded by entry count (maxInMemory/sizeLimit).
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    protected CacheWeigher weigher;
+
+    /**
+     * Maximum total weight of the entries if weighted, or 0 if only bounded by the global {@link CacheMemoryBudget}.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    protected long maxWeight;
+
+    /**
+     * True if the memory table is weight-bounded, which is the case if a weigher is set along with a maxWeight or
+     * global memory budget; maxInMemory and sizeLimit then do not apply.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    protected boolean weighted;
+
     /**
      * Main key format for keys in the {@link #memoryTable}, in the form: <code>delegator::productId::...</code>.
      * <p>SCIPIO: 2.1.0: Added for {@link UtilCache.Index} support: added keyFormat definition for use in defining index keys from main cache keys.</p>
@@ -167,6 +214,9 @@ public class UtilCache<K, V> implements Serializable, EvictionListener<Object, C
     /** A count of the number of cache misses because it was cleared from the Soft Reference (ie garbage collection, etc) */
     protected final AtomicLong missCountSoftRef = new AtomicLong(0);
 
+    /** A count of the number of entries evicted to respect maxInMemory/sizeLimit (SCIPIO: 3.0.0: Added) */
+    protected final AtomicLong evictionCount = new AtomicLong(0);
+
     /** A count of the number of cache hits on removes */
     protected final AtomicLong removeHitCount = new AtomicLong(0);
     /** A count of the number of cache misses on removes */
@@ -185,19 +235,29 @@ public class UtilCache<K, V> implements Serializable, EvictionListener<Object, C
         this.maxInMemory = (builder.maxInMemory() != null) ? builder.maxInMemory() : 0;
         this.expireDelayNanos = (builder.expireDelay() != null) ? TimeUnit.NANOSECONDS.convert(builder.expireDelay(), TimeUnit.MILLISECONDS) : 0L;
         this.useSoftReference = (builder.useSoftReference() != null) ? builder.useSoftReference() : false;
+        this.evictionPolicy = normalizeEvictionPolicy(builder.evictionPolicy(), this.name);
+        this.weigher = builder.weigher();
+        this.maxWeight = (builder.maxWeight() != null) ? builder.maxWeight() : 0L;
         this.keyFormat = UtilValidate.nullIfEmpty(builder.keyFormat());
         this.indexDefs = UtilValidate.isNotEmpty(builder.indexDefs()) ? builder.indexDefs() : Collections.emptyMap();
         int maxMemSize = this.maxInMemory;
         if (maxMemSize == 0) {
             maxMemSize = sizeLimit;
         }
-        if (maxMemSize == 0) {
+        long weightCapacity = getWeightCapacity();
+        if (weightCapacity > 0) { // SCIPIO: 3.0.0: Weight bounding
+            this.weighted = true;
+            if (maxMemSize > 0) {
+                Debug.logInfo("Cache [" + this.name + "] is bounded by weight; ignoring maxInMemory/sizeLimit " + maxMemSize, module);
+            }
+            this.memoryTable = makeBoundedMemoryTable(weightCapacity);
+        } else if (maxMemSize == 0) {
+            if (this.weigher != null) {
+                Debug.logWarning("Cache [" + this.name + "] has a weigher but no maxWeight and no global cache.weight.globalMax; ignoring weigher", module);
+            }
             this.memoryTable = new ConcurrentHashMap<>();
         } else {
-            this.memoryTable = new ConcurrentLinkedHashMap.Builder<Object, CacheLine<V>>()
-                .maximumWeightedCapacity(maxMemSize)
-                .listener(this)
-                .build();
+            this.memoryTable = makeBoundedMemoryTable(maxMemSize);
         }
         Map<String, Index> indexNameMap = Collections.emptyMap();
         List<Index> indexList = Collections.emptyList();
@@ -211,6 +271,73 @@ public class UtilCache<K, V> implements Serializable, EvictionListener<Object, C
         }
         this.indexNameMap = indexNameMap;
         this.indexList = indexList;
+        if (this.weighted && CacheMemoryBudget.getGlobal().isEnabled()) {
+            CacheMemoryBudget.getGlobal().register(this);
+        }
+    }
+
+    /**
+     * Creates the bounded memory table for the {@link #evictionPolicy}, with this cache as eviction listener; if
+     * {@link #weighted}, the capacity is a weight and entries are weighed using {@link #weigher}.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    protected ConcurrentMap<Object, CacheLine<V>> makeBoundedMemoryTable(long capacity) {
+        EntryWeigher<Object, CacheLine<V>> lineWeigher = weighted ? this::weighCacheLine : null;
+        if (EVICTION_POLICY_TINYLFU.equals(evictionPolicy)) {
+            return new WTinyLfuMap<>(capacity, lineWeigher, this);
+        }
+        ConcurrentLinkedHashMap.Builder<Object, CacheLine<V>> builder = new ConcurrentLinkedHashMap.Builder<Object, CacheLine<V>>()
+                .maximumWeightedCapacity(capacity)
+                .listener(this);
+        if (lineWeigher != null) {
+            builder.weigher(lineWeigher);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the capacity of the weight-bounded memory table: maxWeight, or unbounded if only the global budget applies,
+     * or 0 if not weighted.
+     */
+    private long getWeightCapacity() {
+        if (weigher == null) {
+            return 0;
+        } else if (maxWeight > 0) {
+            return maxWeight;
+        }
+        return CacheMemoryBudget.getGlobal().isEnabled() ? WEIGHT_UNBOUNDED : 0;
+    }
+
+    /** Weighs a cache line when it is put into a weighted memory table (SCIPIO: 3.0.0: Added). */
+    private int weighCacheLine(Object key, CacheLine<V> line) {
+        long weight;
+        try {
+            weight = weigher.weigh(key, line.getValue());
+        } catch (RuntimeException e) {
+            Debug.logWarning("Could not weigh entry for key '" + key + "' in cache [" + getName() + "]: " + e.toString(), module);
+            weight = CacheWeighers.UNKNOWN_SIZE;
+        }
+        weight = Math.max(weight, 0) + CACHE_LINE_WEIGHT;
+        CacheMemoryBudget.getGlobal().added(weight);
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    /** Checks the global memory budget after a put into a weighted cache (SCIPIO: 3.0.0: Added). */
+    private void afterWeightedPut() {
+        CacheMemoryBudget budget = CacheMemoryBudget.getGlobal();
+        if (budget.isEnabled()) {
+            budget.afterWrite();
+        }
+    }
+
+    private static String normalizeEvictionPolicy(String evictionPolicy, String cacheName) {
+        if (UtilValidate.isEmpty(evictionPolicy) || EVICTION_POLICY_LRU.equals(evictionPolicy)) {
+            return EVICTION_POLICY_LRU;
+        } else if (EVICTION_POLICY_TINYLFU.equals(evictionPolicy) || "w-tinylfu".equals(evictionPolicy)) {
+            return EVICTION_POLICY_TINYLFU;
+        }
+        Debug.logWarning("Invalid evictionPolicy [" + evictionPolicy + "] for cache [" + cacheName + "]; using " + EVICTION_POLICY_LRU, module);
+        return EVICTION_POLICY_LRU;
     }
 
     /**
@@ -359,6 +486,9 @@ public class UtilCache<K, V> implements Serializable, EvictionListener<Object, C
         Integer maxInMemory;
         Long expireDelay;
         Boolean useSoftReference;
+        String evictionPolicy;
+        CacheWeigher weigher;
+        Long maxWeight;
         String keyFormat;
         Map<String, Object> indexDefs;
 
@@ -384,6 +514,9 @@ public class UtilCache<K, V> implements Serializable, EvictionListener<Object, C
             this.maxInMemory = other.maxInMemory;
             this.expireDelay = other.expireDelay;
             this.useSoftReference = other.useSoftReference;
+            this.evictionPolicy = other.evictionPolicy;
+            this.weigher = other.weigher;
+            this.maxWeight = other.maxWeight;
             this.keyFormat = other.keyFormat;
             this.indexDefs = other.indexDefs;
 
@@ -568,6 +701,47 @@ public class UtilCache<K, V> implements Serializable, EvictionListener<Object, C
             return this;
         }
 
+        public String evictionPolicy() {
+            return evictionPolicy;
+        }
+
+        /**
+         * Sets the eviction policy used when maxInMemory or sizeLimit is set: {@link #EVICTION_POLICY_LRU} (default)
+         * or {@link #EVICTION_POLICY_TINYLFU}.
+         * <p>SCIPIO: 3.0.0: Added.</p>
+         */
+        public Builder<K, V> evictionPolicy(String evictionPolicy) {
+            this.evictionPolicy = evictionPolicy;
+            return this;
+        }
+
+        public CacheWeigher weigher() {
+            return weigher;
+        }
+
+        /**
+         * Sets the weigher, which makes the cache bounded by total weight ({@link #maxWeight(Long)} and the global
+         * {@link CacheMemoryBudget}) instead of maxInMemory/sizeLimit; see {@link CacheWeighers}.
+         * <p>SCIPIO: 3.0.0: Added.</p>
+         */
+        public Builder<K, V> weigher(CacheWeigher weigher) {
+            this.weigher = weigher;
+            return this;
+        }
+
+        public Long maxWeight() {
+            return maxWeight;
+        }
+
+        /**
+         * Sets the maximum total weight of the entries (bytes for {@link CacheWeighers#BYTES}); requires a weigher.
+         * <p>SCIPIO: 3.0.0: Added.</p>
+         */
+        public Builder<K, V> maxWeight(Long maxWeight) {
+            this.maxWeight = maxWeight;
+            return this;
+        }
+
         public String keyFormat() {
             return keyFormat;
         }
@@ -678,6 +852,26 @@ public class UtilCache<K, V> implements Serializable, EvictionListener<Object, C
             if (value != null) {
                 this.useSoftReference(UtilMisc.booleanValue(value));
             }
+            // SCIPIO: 3.0.0: evictionPolicy
+            value = getPropertyParam(res, propNames, "evictionPolicy");
+            if (UtilValidate.isNotEmpty(value)) {
+                this.evictionPolicy(value);
+            }
+            // SCIPIO: 3.0.0: weigher and maxWeight
+            value = getPropertyParam(res, propNames, "weigher");
+            if (UtilValidate.isNotEmpty(value)) {
+                CacheWeigher weigher = CacheWeighers.getWeigher(value);
+                if (weigher != null) {
+                    this.weigher(weigher);
+                }
+            }
+            value = getPropertyParam(res, propNames, "maxWeight");
+            if (UtilValidate.isNotEmpty(value)) {
+                Long maxWeight = CacheWeighers.parseWeight(value);
+                if (maxWeight != null) {
+                    this.maxWeight(maxWeight);
+                }
+            }
             // SCIPIO: 2.1.0: keyFormat and indexDefs
             value = getPropertyParam(res, propNames, "keyFormat");
             if (UtilValidate.isNotEmpty(value)) {
@@ -960,6 +1154,10 @@ public class UtilCache<K, V> implements Serializable, EvictionListener<Object, C
         V oldValue = line.getValue();
         // SCIPIO: 2.1.0: Becomes expensive and is not strictly needed because deletions are by CacheLine not by key and putIfAbsent() helps
         //ExecutionPool.removePulse(line);
+        // SCIPIO: 3.0.0: O(1) with the timer wheel, so replaced/removed lines no longer wait in the scheduler until expiry
+        if (line.getLoadTimeNanos() > 0 && ExecutionPool.isRemovePulseCheap()) {
+            ExecutionPool.removePulse(line);
+        }
         line.cancel();
         return oldValue;
     }
@@ -991,6 +1189,9 @@ public class UtilCache<K, V> implements Serializable, EvictionListener<Object, C
         }
         CacheLine<V> oldCacheLine = memoryTable.put(fromKey(key), newCacheLine);
         registerExpirePulse(newCacheLine);
+        if (weighted) { // SCIPIO: 3.0.0
+            afterWeightedPut();
+        }
         V oldValue = oldCacheLine == null ? null : cancel(oldCacheLine);
         if (oldValue == null) {
             noteAddition(key, value);
@@ -1018,6 +1219,9 @@ public class UtilCache<K, V> implements Serializable, EvictionListener<Object, C
             oldValue = null;
             // SCIPIO: 2.1.0: As above, now simply run tryRegister() here after the line is actually added
             registerExpirePulse(newCacheLine);
+            if (weighted) { // SCIPIO: 3.0.0
+                afterWeightedPut();
+            }
         } else {
             if (!indexList.isEmpty()) { // SCIPIO: 2.1.0: Added for UtilCache.Index support
                 // NOTE: In this case the cache line was not added, so remove it immediately
@@ -1639,8 +1843,35 @@ public class UtilCache<K, V> implements Serializable, EvictionListener<Object, C
         return this.removeMissCount.get();
     }
 
+    /**
+     * Returns the number of entries evicted to respect maxInMemory/sizeLimit.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public long getEvictionCount() {
+        return this.evictionCount.get();
+    }
+
+    /**
+     * Returns hits / (hits + misses) since start or {@link #clearCounters()}, or 0 if there were no lookups.
+     * <p>SCIPIO: 3.0.0: Added to compare eviction policies.</p>
+     */
+    public double getHitRatio() {
+        long hits = getHitCount();
+        long total = hits + getMissCountTotal();
+        return (total > 0) ? ((double) hits / total) : 0.0;
+    }
+
+    /**
+     * Returns the eviction policy, {@link #EVICTION_POLICY_LRU} or {@link #EVICTION_POLICY_TINYLFU}.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public String getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
     /** Clears the hit and miss counters. */
     public void clearCounters() {
+        this.evictionCount.set(0);
         this.hitCount.set(0);
         this.missCountNotFound.set(0);
         this.missCountExpired.set(0);
@@ -1651,15 +1882,20 @@ public class UtilCache<K, V> implements Serializable, EvictionListener<Object, C
 
     public void setMaxInMemory(int newInMemory) {
         this.maxInMemory = newInMemory;
+        if (weighted) { // SCIPIO: 3.0.0: Bounded by maxWeight instead
+            return;
+        }
         Map<Object, CacheLine<V>> oldmap = this.memoryTable;
         if (newInMemory > 0) {
             if (this.memoryTable instanceof ConcurrentLinkedHashMap<?, ?>) {
                 ((ConcurrentLinkedHashMap<?, ?>) this.memoryTable).setCapacity(newInMemory);
                 return;
+            } else if (this.memoryTable instanceof WTinyLfuMap<?, ?>) { // SCIPIO: 3.0.0
+                ((WTinyLfuMap<?, ?>) this.memoryTable).setCapacity(newInMemory);
+                return;
             }
-            this.memoryTable = new ConcurrentLinkedHashMap.Builder<Object, CacheLine<V>>()
-                    .maximumWeightedCapacity(newInMemory)
-                    .build();
+            // SCIPIO: 3.0.0: Now also registers this as eviction listener (was missing) and follows evictionPolicy
+            this.memoryTable = makeBoundedMemoryTable(newInMemory);
         } else {
             this.memoryTable = new ConcurrentHashMap<>();
         }
@@ -1670,6 +1906,79 @@ public class UtilCache<K, V> implements Serializable, EvictionListener<Object, C
         return maxInMemory;
     }
 
+    /**
+     * Returns the weigher, or null if the cache is bounded by entry count.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public CacheWeigher getWeigher() {
+        return weigher;
+    }
+
+    /**
+     * Returns true if the cache is bounded by total entry weight rather than entry count.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public boolean isWeighted() {
+        return weighted;
+    }
+
+    /**
+     * Returns the maximum total weight of the entries, or 0 if none (only the global budget applies, or not weighted).
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Sets the maximum total weight, evicting immediately if over; has no effect on a cache created without weigher.
+     * 0 leaves the cache bounded only by the global {@link CacheMemoryBudget}.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public void setMaxWeight(long newMaxWeight) {
+        this.maxWeight = newMaxWeight;
+        if (!weighted) {
+            return;
+        }
+        long capacity = (newMaxWeight > 0) ? newMaxWeight : WEIGHT_UNBOUNDED;
+        if (memoryTable instanceof ConcurrentLinkedHashMap<?, ?>) {
+            ((ConcurrentLinkedHashMap<?, ?>) memoryTable).setCapacity(capacity);
+        } else if (memoryTable instanceof WTinyLfuMap<?, ?>) {
+            ((WTinyLfuMap<?, ?>) memoryTable).setCapacity(capacity);
+        }
+    }
+
+    /**
+     * Returns the total weight of the entries (estimated bytes for the <code>bytes</code> weigher), or 0 if not weighted.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public long getWeightedSize() {
+        if (!weighted) {
+            return 0;
+        } else if (memoryTable instanceof ConcurrentLinkedHashMap<?, ?>) {
+            return ((ConcurrentLinkedHashMap<?, ?>) memoryTable).weightedSize();
+        } else if (memoryTable instanceof WTinyLfuMap<?, ?>) {
+            return ((WTinyLfuMap<?, ?>) memoryTable).weightedSize();
+        }
+        return 0;
+    }
+
+    /**
+     * Evicts least recently used entries until the total weight is at most the target, for the global
+     * {@link CacheMemoryBudget}; the capacity is unchanged.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    protected void trimToWeight(long targetWeight) {
+        if (memoryTable instanceof WTinyLfuMap<?, ?>) {
+            ((WTinyLfuMap<?, ?>) memoryTable).trimToWeight(targetWeight);
+        } else if (memoryTable instanceof ConcurrentLinkedHashMap<?, ?>) {
+            // No direct trim: lower the capacity, which evicts immediately, then restore it
+            ConcurrentLinkedHashMap<?, ?> table = (ConcurrentLinkedHashMap<?, ?>) memoryTable;
+            table.setCapacity(Math.max(targetWeight, 0));
+            table.setCapacity((maxWeight > 0) ? maxWeight : WEIGHT_UNBOUNDED);
+        }
+    }
+
     public void setSizeLimit(int newSizeLimit) {
         this.sizeLimit = newSizeLimit;
     }
@@ -2009,11 +2318,15 @@ public class UtilCache<K, V> implements Serializable, EvictionListener<Object, C
             out.put("expireDelay", this.getExpireDelay());
             out.put("expireDelayNanos", this.expireDelayNanos);
             out.put("useSoftReference", this.getUseSoftReference());
+            out.put("evictionPolicy", this.getEvictionPolicy());
+            out.put("weigher", CacheWeighers.getWeigherName(this.getWeigher()));
+            out.put("maxWeight", this.getMaxWeight());
             //out.put("keyFormat", this.keyFormat);
             //out.put("indexDefs", this.indexDefs);
         }
         if (types == null || types.contains("stats-basic")) {
             out.put("size", this.size());
+            out.put("weightedSize", this.getWeightedSize());
             //out.put("cacheSize", this.size());
         }
         if (types == null || types.contains("stats-hit")) {
@@ -2024,6 +2337,8 @@ public class UtilCache<K, V> implements Serializable, EvictionListener<Object, C
             out.put("missCountSoftRef", this.getMissCountSoftRef());
             out.put("removeHitCount", this.getRemoveHitCount());
             out.put("removeMissCount", this.getRemoveMissCount());
+            out.put("hitRatio", this.getHitRatio());
+            out.put("evictionCount", this.getEvictionCount());
         }
         if (types == null || types.contains("stats-mem")) {
             out.put("cacheMemory", this.getSizeInBytes());
@@ -2532,6 +2847,7 @@ public class UtilCache<K, V> implements Serializable, EvictionListener<Object, C
 
     @Override
     public void onEviction(Object key, CacheLine<V> cacheLine) {
+        evictionCount.incrementAndGet(); // SCIPIO: 3.0.0
         if (!indexList.isEmpty()) { // SCIPIO: 2.1.0: Added for UtilCache.Index support
             removeCacheLineFromIndexes(cacheLine);
         }
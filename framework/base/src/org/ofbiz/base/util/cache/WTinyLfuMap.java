@@ -0,0 +1,840 @@
+package org.ofbiz.base.util.cache;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.googlecode.concurrentlinkedhashmap.EntryWeigher;
+import com.googlecode.concurrentlinkedhashmap.EvictionListener;
+
+/**
+ * Bounded concurrent map with a Window-TinyLFU admission and eviction policy, an alternative to the pure LRU
+ * <code>ConcurrentLinkedHashMap</code> for {@link UtilCache} (<code>evictionPolicy=tinylfu</code>).
+ * <p>New entries enter a small LRU admission window (1% of the capacity); entries leaving the window compete with the
+ * least recently used entry of the main segmented LRU area (80% protected, 20% probation) and only the one with the
+ * higher estimated access frequency is kept. Frequencies are estimated by a count-min sketch of 4-bit counters that is
+ * periodically halved, so the map remembers popularity beyond its own contents and a one-time scan (crawler, sitemap
+ * generation) cannot flush the hot working set.</p>
+ * <p>Reads only record the access in a lossy striped buffer; policy updates are applied in batches under a single lock,
+ * as are writes. Like <code>ConcurrentLinkedHashMap</code>, the {@link EvictionListener} is notified (outside the lock)
+ * only of capacity evictions, not of explicit removes or {@link #clear()}.</p>
+ * <p>With an {@link EntryWeigher} the capacity and all segment sizes are in weight units (for example estimated bytes)
+ * rather than entries; an entry's weight is computed when its value is put or replaced.</p>
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public final class WTinyLfuMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+
+    private static final int READ_BUFFER_SIZE = 64; // per stripe, power of two
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+    private static final int READ_DRAIN_THRESHOLD = 32;
+    private static final int NUM_READ_BUFFERS = ceilingPowerOfTwo(Runtime.getRuntime().availableProcessors());
+    private static final int ADMIT_HASHDOS_THRESHOLD = 5;
+    private static final int WEIGHTED_SKETCH_MIN_CAPACITY = 64;
+
+    private static final byte QUEUE_NONE = 0;
+    private static final byte QUEUE_WINDOW = 1;
+    private static final byte QUEUE_PROBATION = 2;
+    private static final byte QUEUE_PROTECTED = 3;
+
+    private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    private final EvictionListener<K, V> listener;
+    private final EntryWeigher<? super K, ? super V> weigher;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final ReadBuffer<K, V>[] readBuffers;
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    // Guarded by evictionLock
+    private final FrequencySketch sketch = new FrequencySketch();
+    private final AccessQueue<K, V> window = new AccessQueue<>();
+    private final AccessQueue<K, V> probation = new AccessQueue<>();
+    private final AccessQueue<K, V> protectedQueue = new AccessQueue<>();
+    private long maximum;
+    private long windowMaximum;
+    private long protectedMaximum;
+    private long windowSize;
+    private long protectedSize;
+    private volatile long policySize; // total weight known to the policy
+
+    public WTinyLfuMap(long maximum, EvictionListener<K, V> listener) {
+        this(maximum, null, listener);
+    }
+
+    /**
+     * Creates a map bounded by total weight; a null weigher weighs every entry 1, bounding by entry count.
+     */
+    public WTinyLfuMap(long maximum, EntryWeigher<? super K, ? super V> weigher, EvictionListener<K, V> listener) {
+        this.listener = listener;
+        this.weigher = weigher;
+        @SuppressWarnings("unchecked")
+        ReadBuffer<K, V>[] readBuffers = new ReadBuffer[NUM_READ_BUFFERS];
+        for (int i = 0; i < readBuffers.length; i++) {
+            readBuffers[i] = new ReadBuffer<>();
+        }
+        this.readBuffers = readBuffers;
+        setCapacity(maximum);
+    }
+
+    private static int ceilingPowerOfTwo(int value) {
+        return (value <= 1) ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    /** Sets the maximum number of entries (or total weight, if weighted), evicting immediately if the map is larger. */
+    public void setCapacity(long maximum) {
+        if (maximum < 0) {
+            throw new IllegalArgumentException("Negative capacity");
+        }
+        List<Node<K, V>> evicted = new ArrayList<>();
+        evictionLock.lock();
+        try {
+            this.maximum = maximum;
+            this.windowMaximum = Math.max(1, maximum / 100);
+            this.protectedMaximum = (long) ((maximum - windowMaximum) * 0.8);
+            sketch.ensureCapacity((weigher == null) ? maximum : Math.max(data.size(), WEIGHTED_SKETCH_MIN_CAPACITY));
+            drainReadBuffers();
+            evict(evicted);
+        } finally {
+            evictionLock.unlock();
+        }
+        notifyEvicted(evicted);
+    }
+
+    public long capacity() {
+        return maximum;
+    }
+
+    /** Returns the total weight of the entries, which is the number of entries if not weighted. */
+    public long weightedSize() {
+        return policySize;
+    }
+
+    /**
+     * Evicts entries in least recently used order, probation first, until the total weight is at most the given target,
+     * without changing the capacity. Used to give back memory to a budget shared with other maps.
+     */
+    public void trimToWeight(long targetWeight) {
+        List<Node<K, V>> evicted = new ArrayList<>();
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+            evictLru(Math.max(targetWeight, 0), evicted);
+        } finally {
+            evictionLock.unlock();
+        }
+        notifyEvicted(evicted);
+    }
+
+    /** Returns the number of entries evicted for capacity since creation. */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    @Override
+    public int size() {
+        return data.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return data.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return data.containsKey(key);
+    }
+
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            return null;
+        }
+        afterRead(node);
+        return node.value;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return put(key, value, false);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return put(key, value, true);
+    }
+
+    private V put(K key, V value, boolean onlyIfAbsent) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        int weight = weigh(key, value);
+        Object[] result = new Object[2]; // [0]: old value, [1]: added node
+        boolean[] reweighed = new boolean[1];
+        Node<K, V> current = data.compute(key, (k, prior) -> {
+            if (prior == null) {
+                Node<K, V> node = new Node<>(k, value, weight);
+                result[1] = node;
+                return node;
+            }
+            result[0] = prior.value;
+            if (!onlyIfAbsent) {
+                prior.value = value;
+                if (prior.weight != weight) {
+                    prior.weight = weight;
+                    reweighed[0] = true;
+                }
+            }
+            return prior;
+        });
+        @SuppressWarnings("unchecked")
+        Node<K, V> added = (Node<K, V>) result[1];
+        if (added != null) {
+            afterAdd(added);
+        } else if (reweighed[0]) {
+            afterUpdate(current);
+        } else {
+            afterRead(current);
+        }
+        @SuppressWarnings("unchecked")
+        V oldValue = (V) result[0];
+        return oldValue;
+    }
+
+    @Override
+    public V remove(Object key) {
+        Object[] removed = new Object[1];
+        data.computeIfPresent(castKey(key), (k, node) -> {
+            node.alive = false;
+            removed[0] = node;
+            return null;
+        });
+        @SuppressWarnings("unchecked")
+        Node<K, V> node = (Node<K, V>) removed[0];
+        if (node == null) {
+            return null;
+        }
+        afterRemove(node);
+        return node.value;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        Object[] removed = new Object[1];
+        data.computeIfPresent(castKey(key), (k, node) -> {
+            if (!Objects.equals(node.value, value)) {
+                return node;
+            }
+            node.alive = false;
+            removed[0] = node;
+            return null;
+        });
+        @SuppressWarnings("unchecked")
+        Node<K, V> node = (Node<K, V>) removed[0];
+        if (node == null) {
+            return false;
+        }
+        afterRemove(node);
+        return true;
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        Objects.requireNonNull(value);
+        int weight = weigh(key, value);
+        Object[] result = new Object[1];
+        Node<K, V> node = data.computeIfPresent(key, (k, prior) -> {
+            result[0] = prior.value;
+            prior.value = value;
+            prior.weight = weight;
+            return prior;
+        });
+        if (node != null) {
+            afterWrite(node);
+        }
+        @SuppressWarnings("unchecked")
+        V oldValue = (V) result[0];
+        return oldValue;
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        Objects.requireNonNull(newValue);
+        int weight = weigh(key, newValue);
+        boolean[] replaced = new boolean[1];
+        Node<K, V> node = data.computeIfPresent(key, (k, prior) -> {
+            if (Objects.equals(prior.value, oldValue)) {
+                prior.value = newValue;
+                prior.weight = weight;
+                replaced[0] = true;
+            }
+            return prior;
+        });
+        if (node != null && replaced[0]) {
+            afterWrite(node);
+        }
+        return replaced[0];
+    }
+
+    @Override
+    public void clear() {
+        for (K key : data.keySet()) {
+            remove(key);
+        }
+    }
+
+    private int weigh(K key, V value) {
+        if (weigher == null) {
+            return 1;
+        }
+        int weight = weigher.weightOf(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("Negative weight for key: " + key);
+        }
+        return weight;
+    }
+
+    private void afterWrite(Node<K, V> node) {
+        if (weigher != null) {
+            afterUpdate(node);
+        } else {
+            afterRead(node);
+        }
+    }
+
+    private void afterRead(Node<K, V> node) {
+        if (node == null) {
+            return;
+        }
+        int stripe = (int) Thread.currentThread().getId() & (readBuffers.length - 1);
+        if (readBuffers[stripe].offer(node) >= READ_DRAIN_THRESHOLD && evictionLock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void afterAdd(Node<K, V> node) {
+        List<Node<K, V>> evicted = new ArrayList<>();
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+            if (node.alive) { // else removed before the policy saw it
+                if (weigher != null && data.size() > sketch.capacity()) {
+                    sketch.ensureCapacity(2L * data.size());
+                }
+                sketch.increment(node.key);
+                int weight = node.weight;
+                node.policyWeight = weight;
+                node.queue = QUEUE_WINDOW;
+                window.addLast(node);
+                windowSize += weight;
+                policySize += weight;
+                evict(evicted);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+        notifyEvicted(evicted);
+    }
+
+    /** Applies a changed weight of a replaced value and counts the write as an access. */
+    private void afterUpdate(Node<K, V> node) {
+        List<Node<K, V>> evicted = new ArrayList<>();
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+            if (node.queue != QUEUE_NONE) {
+                int weight = node.weight;
+                long delta = weight - node.policyWeight;
+                node.policyWeight = weight;
+                if (node.queue == QUEUE_WINDOW) {
+                    windowSize += delta;
+                } else if (node.queue == QUEUE_PROTECTED) {
+                    protectedSize += delta;
+                }
+                policySize += delta;
+                onAccess(node);
+                evict(evicted);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+        notifyEvicted(evicted);
+    }
+
+    private void afterRemove(Node<K, V> node) {
+        evictionLock.lock();
+        try {
+            unlink(node);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /** Applies the buffered reads to the policy. Lock must be held. */
+    private void drainReadBuffers() {
+        for (ReadBuffer<K, V> buffer : readBuffers) {
+            buffer.drain(this::onAccess);
+        }
+    }
+
+    /** Lock must be held. */
+    private void onAccess(Node<K, V> node) {
+        sketch.increment(node.key);
+        switch (node.queue) {
+        case QUEUE_WINDOW:
+            window.moveToLast(node);
+            break;
+        case QUEUE_PROBATION:
+            probation.remove(node);
+            node.queue = QUEUE_PROTECTED;
+            protectedQueue.addLast(node);
+            protectedSize += node.policyWeight;
+            demoteProtectedOverflow();
+            break;
+        case QUEUE_PROTECTED:
+            protectedQueue.moveToLast(node);
+            demoteProtectedOverflow(); // for a replaced value that became heavier
+            break;
+        default: // removed or not yet added
+            break;
+        }
+    }
+
+    /** Lock must be held. */
+    private void demoteProtectedOverflow() {
+        while (protectedSize > protectedMaximum) {
+            Node<K, V> demoted = protectedQueue.pollFirst();
+            protectedSize -= demoted.policyWeight;
+            demoted.queue = QUEUE_PROBATION;
+            probation.addLast(demoted);
+        }
+    }
+
+    /** Removes the node from its policy queue. Lock must be held. */
+    private void unlink(Node<K, V> node) {
+        switch (node.queue) {
+        case QUEUE_WINDOW:
+            window.remove(node);
+            windowSize -= node.policyWeight;
+            break;
+        case QUEUE_PROBATION:
+            probation.remove(node);
+            break;
+        case QUEUE_PROTECTED:
+            protectedQueue.remove(node);
+            protectedSize -= node.policyWeight;
+            break;
+        default:
+            return;
+        }
+        node.queue = QUEUE_NONE;
+        policySize -= node.policyWeight;
+    }
+
+    /**
+     * Moves window overflow into probation as candidates, then evicts until within capacity: each candidate is admitted
+     * against the probation LRU victim by frequency. Lock must be held.
+     */
+    private void evict(List<Node<K, V>> evicted) {
+        Node<K, V> firstCandidate = null;
+        while (windowSize > windowMaximum) {
+            Node<K, V> node = window.pollFirst();
+            windowSize -= node.policyWeight;
+            node.queue = QUEUE_PROBATION;
+            probation.addLast(node);
+            if (firstCandidate == null) {
+                firstCandidate = node;
+            }
+        }
+        Node<K, V> candidate = firstCandidate;
+        while (policySize > maximum && candidate != null) {
+            Node<K, V> victim = probation.peekFirst();
+            Node<K, V> nextCandidate = candidate.next; // candidates are contiguous at the probation tail
+            if (victim == candidate || !admit(candidate.key, victim.key)) {
+                evictNode(candidate, evicted);
+            } else {
+                evictNode(victim, evicted);
+            }
+            candidate = nextCandidate;
+        }
+        // Capacity lowered or nothing left to compare: plain LRU order, probation first
+        evictLru(maximum, evicted);
+    }
+
+    /** Evicts in LRU order, probation first, until the total weight is at most the limit. Lock must be held. */
+    private void evictLru(long limit, List<Node<K, V>> evicted) {
+        while (policySize > limit) {
+            Node<K, V> victim = probation.peekFirst();
+            if (victim == null) {
+                victim = protectedQueue.peekFirst();
+            }
+            if (victim == null) {
+                victim = window.peekFirst();
+            }
+            evictNode(victim, evicted);
+        }
+    }
+
+    private boolean admit(K candidateKey, K victimKey) {
+        int candidateFreq = sketch.frequency(candidateKey);
+        int victimFreq = sketch.frequency(victimKey);
+        if (candidateFreq > victimFreq) {
+            return true;
+        } else if (candidateFreq <= ADMIT_HASHDOS_THRESHOLD) {
+            return false;
+        }
+        // Occasionally admit a warm candidate so an attacker can't pin the victim by inflating its frequency
+        return (ThreadLocalRandom.current().nextInt() & 127) == 0;
+    }
+
+    private void evictNode(Node<K, V> node, List<Node<K, V>> evicted) {
+        unlink(node);
+        boolean[] removed = new boolean[1];
+        data.computeIfPresent(node.key, (k, current) -> {
+            if (current != node) {
+                return current;
+            }
+            node.alive = false;
+            removed[0] = true;
+            return null;
+        });
+        if (removed[0]) {
+            evictionCount.incrementAndGet();
+            evicted.add(node);
+        }
+    }
+
+    private void notifyEvicted(List<Node<K, V>> evicted) {
+        if (listener != null) {
+            for (Node<K, V> node : evicted) {
+                listener.onEviction(node.key, node.value);
+            }
+        }
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                Iterator<Node<K, V>> it = data.values().iterator();
+                return new Iterator<Entry<K, V>>() {
+                    Node<K, V> current;
+
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public Entry<K, V> next() {
+                        Node<K, V> node = it.next();
+                        current = node;
+                        return new SimpleEntry<K, V>(node.key, node.value) {
+                            @Override
+                            public V setValue(V value) {
+                                super.setValue(value);
+                                return put(node.key, value);
+                            }
+                        };
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (current == null) {
+                            throw new IllegalStateException();
+                        }
+                        WTinyLfuMap.this.remove(current.key);
+                        current = null;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return data.size();
+            }
+        };
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return new AbstractSet<K>() {
+            @Override
+            public Iterator<K> iterator() {
+                Iterator<Entry<K, V>> it = entrySet().iterator();
+                return new Iterator<K>() {
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public K next() {
+                        return it.next().getKey();
+                    }
+
+                    @Override
+                    public void remove() {
+                        it.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return data.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return data.containsKey(o);
+            }
+        };
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                Iterator<Entry<K, V>> it = entrySet().iterator();
+                return new Iterator<V>() {
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public V next() {
+                        return it.next().getValue();
+                    }
+
+                    @Override
+                    public void remove() {
+                        it.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return data.size();
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> K castKey(Object key) {
+        return (K) key;
+    }
+
+    static final class Node<K, V> {
+        final K key;
+        volatile V value;
+        volatile int weight;
+        volatile boolean alive = true;
+        // Guarded by evictionLock
+        byte queue = QUEUE_NONE;
+        int policyWeight;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /** Intrusive doubly-linked access-order queue, least recently used first. Not thread-safe. */
+    static final class AccessQueue<K, V> {
+        private Node<K, V> first;
+        private Node<K, V> last;
+
+        Node<K, V> peekFirst() {
+            return first;
+        }
+
+        void addLast(Node<K, V> node) {
+            node.prev = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+        }
+
+        Node<K, V> pollFirst() {
+            Node<K, V> node = first;
+            if (node != null) {
+                remove(node);
+            }
+            return node;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prev == null) {
+                first = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                last = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToLast(Node<K, V> node) {
+            if (node != last) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+
+    /**
+     * Lossy bounded buffer of read accesses: producers claim a slot by CAS and drop the access when the buffer is full,
+     * the consumer drains under the eviction lock.
+     */
+    static final class ReadBuffer<K, V> {
+        private final AtomicLong writeCounter = new AtomicLong();
+        private final AtomicReferenceArray<Node<K, V>> buffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+        private volatile long readCounter; // written only under the eviction lock
+
+        /** Returns the number of pending reads, or READ_BUFFER_SIZE if full (access dropped). */
+        int offer(Node<K, V> node) {
+            long head = readCounter;
+            long tail = writeCounter.get();
+            long pending = tail - head;
+            if (pending >= READ_BUFFER_SIZE) {
+                return READ_BUFFER_SIZE;
+            }
+            if (writeCounter.compareAndSet(tail, tail + 1)) {
+                buffer.lazySet((int) tail & READ_BUFFER_MASK, node);
+            }
+            return (int) pending + 1;
+        }
+
+        void drain(java.util.function.Consumer<Node<K, V>> consumer) {
+            long head = readCounter;
+            long tail = writeCounter.get();
+            while (head < tail) {
+                int index = (int) head & READ_BUFFER_MASK;
+                Node<K, V> node = buffer.get(index);
+                if (node == null) {
+                    break; // claimed but not yet published
+                }
+                buffer.lazySet(index, null);
+                consumer.accept(node);
+                head++;
+            }
+            readCounter = head;
+        }
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters (4 hash functions, 16 counters per long) estimating access frequency.
+     * All counters are halved after 10 * maximum increments, so old popularity ages out. Not thread-safe.
+     */
+    static final class FrequencySketch {
+        private static final long[] SEED = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+        private static final long ONE_MASK = 0x1111111111111111L;
+
+        private long[] table = new long[8];
+        private int tableMask = 7;
+        private int sampleSize = 80;
+        private int size;
+
+        int capacity() {
+            return table.length;
+        }
+
+        void ensureCapacity(long maximum) {
+            int max = (int) Math.min(Math.max(maximum, 1), Integer.MAX_VALUE >>> 1);
+            int length = Math.max(ceilingPowerOfTwo(max), 8);
+            if (length > table.length) {
+                table = new long[length];
+                tableMask = length - 1;
+                size = 0;
+            }
+            sampleSize = (int) Math.min(10L * max, Integer.MAX_VALUE);
+        }
+
+        int frequency(Object e) {
+            int hash = spread(e.hashCode());
+            int start = (hash & 3) << 2;
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        void increment(Object e) {
+            int hash = spread(e.hashCode());
+            int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                added |= incrementAt(indexOf(hash, i), start + i);
+            }
+            if (added && ++size >= sampleSize) {
+                reset();
+            }
+        }
+
+        private boolean incrementAt(int i, int j) {
+            int offset = j << 2;
+            long mask = 0xfL << offset;
+            if ((table[i] & mask) != mask) {
+                table[i] += 1L << offset;
+                return true;
+            }
+            return false;
+        }
+
+        private void reset() {
+            int count = 0;
+            for (int i = 0; i < table.length; i++) {
+                count += Long.bitCount(table[i] & ONE_MASK);
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            size = (size >>> 1) - (count >>> 2);
+        }
+
+        private int indexOf(int item, int i) {
+            long hash = (item + SEED[i]) * SEED[i];
+            hash += (hash >>> 32);
+            return ((int) hash) & tableMask;
+        }
+
+        private static int spread(int x) {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+    }
+}
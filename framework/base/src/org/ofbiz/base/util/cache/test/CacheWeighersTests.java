@@ -0,0 +1,64 @@
+package org.ofbiz.base.util.cache.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ofbiz.base.test.GenericTestCaseBase;
+import org.ofbiz.base.util.cache.CacheWeighable;
+import org.ofbiz.base.util.cache.CacheWeighers;
+import org.ofbiz.base.util.cache.UtilCache;
+
+/**
+ * CacheWeighers and weight-bounded UtilCache tests.
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public class CacheWeighersTests extends GenericTestCaseBase {
+
+    public CacheWeighersTests(String name) {
+        super(name);
+    }
+
+    public void testEstimateSize() {
+        assertEquals("null", 0, CacheWeighers.estimateSize(null));
+        assertTrue("string grows with length", CacheWeighers.estimateSize("a") + 999 == CacheWeighers.estimateSize(repeat(1000)));
+        assertEquals("weighable", 12345, CacheWeighers.estimateSize((CacheWeighable) () -> 12345));
+        List<String> list = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            list.add(repeat(100));
+        }
+        long listSize = CacheWeighers.estimateSize(list);
+        assertTrue("sampled list size " + listSize, listSize > 100 * 1000 && listSize < 200 * 1000);
+    }
+
+    public void testParseWeight() {
+        assertEquals("plain", Long.valueOf(100), CacheWeighers.parseWeight("100"));
+        assertEquals("k", Long.valueOf(2048), CacheWeighers.parseWeight("2k"));
+        assertEquals("m", Long.valueOf(3L * 1024 * 1024), CacheWeighers.parseWeight("3M"));
+        assertEquals("percent", Long.valueOf(Runtime.getRuntime().maxMemory() / 2), CacheWeighers.parseWeight("50%"));
+        assertNull("empty", CacheWeighers.parseWeight(""));
+    }
+
+    public void testWeightedCache() {
+        for (String evictionPolicy : new String[] { UtilCache.EVICTION_POLICY_LRU, UtilCache.EVICTION_POLICY_TINYLFU }) {
+            UtilCache<String, String> cache = UtilCache.<String, String>builder(getClass().getName() + "." + evictionPolicy)
+                    .autoProps(false).evictionPolicy(evictionPolicy).weigher(CacheWeighers.BYTES).maxWeight(100L * 1024).build();
+            assertTrue(evictionPolicy + " weighted", cache.isWeighted());
+            for (int i = 0; i < 100; i++) {
+                cache.put("key" + i, repeat(10 * 1024));
+            }
+            assertTrue(evictionPolicy + " weightedSize " + cache.getWeightedSize(), cache.getWeightedSize() <= 100L * 1024);
+            assertTrue(evictionPolicy + " size " + cache.size(), cache.size() >= 8 && cache.size() <= 10);
+            assertEquals(evictionPolicy + " evictions", 100 - cache.size(), cache.getEvictionCount());
+            cache.setMaxWeight(50L * 1024);
+            assertTrue(evictionPolicy + " shrunk " + cache.size(), cache.size() <= 5);
+        }
+    }
+
+    private static String repeat(int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append('x');
+        }
+        return sb.toString();
+    }
+}
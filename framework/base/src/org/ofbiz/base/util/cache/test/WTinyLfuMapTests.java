@@ -0,0 +1,116 @@
+package org.ofbiz.base.util.cache.test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ofbiz.base.test.GenericTestCaseBase;
+import org.ofbiz.base.util.cache.WTinyLfuMap;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+
+/**
+ * WTinyLfuMap tests.
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public class WTinyLfuMapTests extends GenericTestCaseBase {
+
+    public WTinyLfuMapTests(String name) {
+        super(name);
+    }
+
+    public void testMapOperations() {
+        WTinyLfuMap<String, String> map = new WTinyLfuMap<>(100, null);
+        assertNull("put", map.put("one", "uno"));
+        assertEquals("put replace", "uno", map.put("one", "only"));
+        assertEquals("putIfAbsent existing", "only", map.putIfAbsent("one", "other"));
+        assertEquals("get", "only", map.get("one"));
+        assertFalse("remove wrong value", map.remove("one", "uno"));
+        assertTrue("replace", map.replace("one", "only", "single"));
+        assertEquals("entries", 1, map.entrySet().size());
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            entry.setValue("set");
+        }
+        assertEquals("setValue", "set", map.get("one"));
+        assertEquals("remove", "set", map.remove("one"));
+        assertTrue("empty", map.isEmpty());
+    }
+
+    public void testBoundedWithListener() {
+        List<String> evicted = new ArrayList<>();
+        WTinyLfuMap<String, String> map = new WTinyLfuMap<>(50, (key, value) -> evicted.add(key));
+        for (int i = 0; i < 500; i++) {
+            map.put("k" + i, "v" + i);
+        }
+        assertEquals("size", 50, map.size());
+        assertEquals("evicted", 450, evicted.size());
+        assertEquals("evictionCount", 450, map.getEvictionCount());
+        for (String key : evicted) {
+            assertFalse("evicted key absent", map.containsKey(key));
+        }
+        map.setCapacity(10);
+        assertEquals("size after shrink", 10, map.size());
+        map.clear();
+        assertEquals("clear does not notify", 490, evicted.size());
+    }
+
+    public void testWeighted() {
+        WTinyLfuMap<String, String> map = new WTinyLfuMap<>(1000, (key, value) -> value.length(), null);
+        for (int i = 0; i < 100; i++) {
+            map.put("k" + i, "0123456789");
+        }
+        assertEquals("weightedSize", 1000, map.weightedSize());
+        assertEquals("size", 100, map.size());
+        map.put("big", new String(new char[500]));
+        assertTrue("evicted for weight", map.weightedSize() <= 1000);
+        map.put("k99", new String(new char[200])); // heavier replacement
+        assertTrue("evicted after replace", map.weightedSize() <= 1000);
+        map.trimToWeight(300);
+        assertTrue("trimmed", map.weightedSize() <= 300);
+        assertEquals("capacity unchanged", 1000, map.capacity());
+        map.clear();
+        assertEquals("cleared", 0, map.weightedSize());
+    }
+
+    /**
+     * A hot set accessed repeatedly, interleaved with a one-time scan of many keys: LRU loses the hot set, W-TinyLFU keeps it.
+     */
+    public void testScanResistance() {
+        int capacity = 1000;
+        WTinyLfuMap<Integer, Integer> tinyLfu = new WTinyLfuMap<>(capacity, null);
+        Map<Integer, Integer> lru = new ConcurrentLinkedHashMap.Builder<Integer, Integer>().maximumWeightedCapacity(capacity).build();
+        double tinyLfuRatio = hotHitRatio(tinyLfu, capacity);
+        double lruRatio = hotHitRatio(lru, capacity);
+        assertTrue("W-TinyLFU hot hit ratio " + tinyLfuRatio + " > LRU " + lruRatio, tinyLfuRatio > lruRatio + 0.3);
+    }
+
+    private static double hotHitRatio(Map<Integer, Integer> map, int capacity) {
+        int hotSize = capacity / 2;
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < hotSize; i++) {
+                if (map.get(i) == null) {
+                    map.put(i, i);
+                }
+            }
+        }
+        Map<String, Integer> counts = new HashMap<>();
+        int scanKey = 1000000;
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < capacity * 2; i++) { // scan: each key seen once
+                map.put(scanKey, scanKey);
+                scanKey++;
+            }
+            for (int i = 0; i < hotSize; i++) {
+                if (map.get(i) != null) {
+                    counts.merge("hit", 1, Integer::sum);
+                } else {
+                    counts.merge("miss", 1, Integer::sum);
+                    map.put(i, i);
+                }
+            }
+        }
+        int hits = counts.getOrDefault("hit", 0);
+        return hits / (double) (hits + counts.getOrDefault("miss", 0));
+    }
+}
@@ -35,6 +35,11 @@ public class PagedList<E> implements Iterable<E> {
     protected final int viewIndex;
     protected final int viewSize;
     protected final List<E> data;
+    // SCIPIO: 3.0.0: Keyset (seek) paging continuation cursors
+    protected final boolean cursorPaged;
+    protected final String nextCursor;
+    protected final String previousCursor;
+    protected final boolean listSizeEstimated;
 
     /**
      * Default constructor - populates all fields in this class
@@ -52,6 +57,30 @@ public class PagedList<E> implements Iterable<E> {
         this.viewIndex = viewIndex;
         this.viewSize = viewSize;
         this.data = data;
+        this.cursorPaged = false;
+        this.nextCursor = null;
+        this.previousCursor = null;
+        this.listSizeEstimated = false;
+    }
+
+    /**
+     * Cursor-paged (keyset) list constructor (SCIPIO).
+     * <p>The cursors are opaque continuation tokens for the next and previous pages (null if none); if
+     * listSizeEstimated, size is not an exact count but an estimate or lower bound.</p>
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public PagedList(int startIndex, int endIndex, int size, int viewIndex, int viewSize, List<E> data,
+                     String nextCursor, String previousCursor, boolean listSizeEstimated) {
+        this.startIndex = startIndex;
+        this.endIndex = endIndex;
+        this.size = size;
+        this.viewIndex = viewIndex;
+        this.viewSize = viewSize;
+        this.data = data;
+        this.cursorPaged = true;
+        this.nextCursor = nextCursor;
+        this.previousCursor = previousCursor;
+        this.listSizeEstimated = listSizeEstimated;
     }
 
     /**
@@ -64,6 +93,10 @@ public class PagedList<E> implements Iterable<E> {
         this.viewIndex = other.viewIndex;
         this.viewSize = other.viewSize;
         this.data = data;
+        this.cursorPaged = other.cursorPaged;
+        this.nextCursor = other.nextCursor;
+        this.previousCursor = other.previousCursor;
+        this.listSizeEstimated = other.listSizeEstimated;
     }
 
     /**
@@ -129,6 +162,35 @@ public class PagedList<E> implements Iterable<E> {
         return viewSize;
     }
 
+    /**
+     * @return true if this page was selected by keyset (seek) paging and pages are reached using
+     * {@link #getNextCursor()} and {@link #getPreviousCursor()} (SCIPIO)
+     */
+    public boolean isCursorPaged() {
+        return cursorPaged;
+    }
+
+    /**
+     * @return the opaque continuation cursor of the next page, or null if none or not cursor-paged (SCIPIO)
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * @return the opaque continuation cursor of the previous page, or null if none or not cursor-paged (SCIPIO)
+     */
+    public String getPreviousCursor() {
+        return previousCursor;
+    }
+
+    /**
+     * @return true if {@link #getListSize()} is an estimate or lower bound rather than an exact count (SCIPIO)
+     */
+    public boolean isListSizeEstimated() {
+        return listSizeEstimated;
+    }
+
     /**
      * @return an interator object over the data returned in getData() method
      *         of this class
@@ -645,6 +645,7 @@ public abstract class FlexibleStringExpander implements Serializable, IsEmpty {
     protected static class CurrElem extends ArrayOffsetString {
         protected final char[] valueStr;
         protected final FlexibleStringExpander codeExpr;
+        private UelUtil.CachedExpression valueExpr; // SCIPIO: 3.0.0: Compiled on first use (immutable, so racy publication is safe)
 
         protected CurrElem(char[] chars, int offset, int length, int parseStart, int parseLength) {
             super(chars, offset, length);
@@ -658,7 +659,12 @@ public abstract class FlexibleStringExpander implements Serializable, IsEmpty {
         @Override
         protected Object get(Map<String, ? extends Object> context, TimeZone timeZone, Locale locale) {
             try {
-                Object obj = UelUtil.evaluate(context, new String(this.valueStr));
+                UelUtil.CachedExpression valueExpr = this.valueExpr;
+                if (valueExpr == null) {
+                    valueExpr = UelUtil.getExpression(new String(this.valueStr), Object.class);
+                    this.valueExpr = valueExpr;
+                }
+                Object obj = valueExpr.getValue(context);
                 if (obj != null) {
                     String currencyCode = this.codeExpr.expandString(context, timeZone, locale);
                     // SCIPIO: 2017-01-13: added BigDecimal instanceof check to avoid string overhead and potential loss of information
@@ -770,6 +776,7 @@ public abstract class FlexibleStringExpander implements Serializable, IsEmpty {
     /** An object that represents a simple, non-nested expression. */
     protected static class VarElem extends ArrayOffsetString {
         protected final char[] bracketedOriginal;
+        private UelUtil.CachedExpression expr; // SCIPIO: 3.0.0: Compiled on first use (immutable, so racy publication is safe)
 
         protected VarElem(char[] chars, int offset, int length, int parseStart, int parseLength) {
             super(chars, offset, length);
@@ -780,7 +787,12 @@ public abstract class FlexibleStringExpander implements Serializable, IsEmpty {
         protected Object get(Map<String, ? extends Object> context, TimeZone timeZone, Locale locale) {
             Object obj = null;
             try {
-                obj = UelUtil.evaluate(context, new String(this.bracketedOriginal));
+                UelUtil.CachedExpression expr = this.expr;
+                if (expr == null) {
+                    expr = UelUtil.getExpression(new String(this.bracketedOriginal), Object.class);
+                    this.expr = expr;
+                }
+                obj = expr.getValue(context);
             } catch (PropertyNotFoundException e) {
                 if (Debug.verboseOn()) {
                     Debug.logVerbose("Error evaluating expression " + this + ": " + e, module);
@@ -19,11 +19,13 @@
 package org.ofbiz.base.util.string;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import javax.el.ArrayELResolver;
 import javax.el.BeanELResolver;
@@ -46,11 +48,22 @@ import org.ofbiz.base.util.UtilGenerics;
 import org.ofbiz.base.util.UtilMisc;
 import org.ofbiz.base.util.collections.LocalizedMap;
 
-/** Implements the Unified Expression Language (JSR-245). */
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+
+/**
+ * Implements the Unified Expression Language (JSR-245).
+ * <p>SCIPIO: 3.0.0: Expressions are now compiled once without binding the context variables, and kept in a bounded
+ * cache ({@link #getExpression(String, Class)}); top-level identifiers are resolved against the context at evaluation
+ * time by the resolver instead of the variable mapper at creation time. Expressions that are a simple property path
+ * over maps (<code>${a.b.c}</code>, <code>${a[b]}</code>, <code>${a['b']}</code>) are evaluated directly without JUEL
+ * when every step is a map. The ELContext instances are reused per thread.</p>
+ */
 public class UelUtil {
     private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
     public static final String localizedMapLocaleKey = LocalizedMap.class.getName() + "_locale".replace(".", "_");
     private static final ExpressionFactory exprFactory = JuelConnector.newExpressionFactory();
+    /** Maximum number of compiled expressions in {@link #expressionCache} (SCIPIO: 3.0.0: Added). */
+    private static final int EXPRESSION_CACHE_SIZE = 10000;
     private static final ELResolver defaultResolver = new ExtendedCompositeResolver() {
         {
             add(new ExtendedMapResolver(false));
@@ -61,6 +74,19 @@ public class UelUtil {
             add(new BeanELResolver(false));
         }
     };
+    /**
+     * Context used only to create cacheable expressions: functions are bound, variables are not.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    private static final ELContext compileContext = new CompileContext();
+    /**
+     * Compiled expressions, by expression string if the expected type is Object, otherwise by {@link TypedKey}.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    private static final ConcurrentLinkedHashMap<Object, CachedExpression> expressionCache =
+            new ConcurrentLinkedHashMap.Builder<Object, CachedExpression>().maximumWeightedCapacity(EXPRESSION_CACHE_SIZE).build();
+    private static final ThreadLocal<ReadOnlyContext> readOnlyContexts = ThreadLocal.withInitial(ReadOnlyContext::new);
+    private static final ThreadLocal<BasicContext> basicContexts = ThreadLocal.withInitial(BasicContext::new);
 
     private UelUtil () {}
 
@@ -84,9 +110,42 @@ public class UelUtil {
      * @return Result object
      */
     public static Object evaluate(Map<String, ? extends Object> context, String expression, Class<?> expectedType) {
-        ELContext elContext = new ReadOnlyContext(context);
-        ValueExpression ve = exprFactory.createValueExpression(elContext, expression, expectedType);
-        return ve.getValue(elContext);
+        return getExpression(expression, expectedType).getValue(context); // SCIPIO: 3.0.0: Cached
+    }
+
+    /**
+     * Returns the compiled expression from the cache, compiling it if needed; the result does not depend on any context
+     * and can be kept and evaluated concurrently.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     * @param expression UEL expression
+     * @param expectedType The expected object Class to return, or null for Object
+     * @return The compiled expression
+     * @throws javax.el.ELException if the expression cannot be parsed
+     */
+    public static CachedExpression getExpression(String expression, Class<?> expectedType) {
+        if (expectedType == null) {
+            expectedType = Object.class;
+        }
+        Object key = (expectedType == Object.class) ? expression : new TypedKey(expression, expectedType);
+        CachedExpression cached = expressionCache.get(key);
+        if (cached == null) {
+            cached = new CachedExpression(expression, expectedType);
+            CachedExpression existing = expressionCache.putIfAbsent(key, cached);
+            if (existing != null) {
+                cached = existing;
+            }
+        }
+        return cached;
+    }
+
+    /** Returns the number of cached compiled expressions (SCIPIO: 3.0.0: Added). */
+    public static int getExpressionCacheSize() {
+        return expressionCache.size();
+    }
+
+    /** Clears the compiled expression cache (SCIPIO: 3.0.0: Added). */
+    public static void clearExpressionCache() {
+        expressionCache.clear();
     }
 
     /** Evaluates a Unified Expression Language expression and sets the resulting object
@@ -99,9 +158,8 @@ public class UelUtil {
         if (Debug.verboseOn()) {
             Debug.logVerbose("UelUtil.setValue invoked, expression = " + expression + ", value = " + value, module);
         }
-        ELContext elContext = new BasicContext(context);
-        ValueExpression ve = exprFactory.createValueExpression(elContext, expression, expectedType);
-        ve.setValue(elContext, value);
+        // SCIPIO: 3.0.0: Cached; the expected type only applies to getValue, so the Object expression is shared
+        getExpression(expression, Object.class).setValue(context, value);
     }
 
     /** Evaluates a Unified Expression Language expression and sets the resulting object
@@ -113,17 +171,295 @@ public class UelUtil {
         if (Debug.verboseOn()) {
             Debug.logVerbose("UelUtil.removeValue invoked, expression = " + expression , module);
         }
-        ELContext elContext = new BasicContext(context);
-        ValueExpression ve = exprFactory.createValueExpression(elContext, expression, Object.class);
-        ve.setValue(elContext, null);
+        getExpression(expression, Object.class).setValue(context, null); // SCIPIO: 3.0.0: Cached
+    }
+
+    /**
+     * Compiled UEL expression, independent of any context and safe for concurrent use; see {@link #getExpression(String, Class)}.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public static final class CachedExpression {
+        private final String expression;
+        private final Class<?> expectedType;
+        private final ValueExpression valueExpression;
+        /** Simple property path (root variable then properties), or null if not a simple path or not expecting Object. */
+        private final String[] path;
+        /** For each path step, true if the step is <code>[variable]</code> rather than a property name. */
+        private final boolean[] pathVariables;
+
+        private CachedExpression(String expression, Class<?> expectedType) {
+            this.expression = expression;
+            this.expectedType = expectedType;
+            this.valueExpression = exprFactory.createValueExpression(compileContext, expression, expectedType);
+            List<String> path = null;
+            List<Boolean> pathVariables = null;
+            if (expectedType == Object.class) {
+                path = new ArrayList<>();
+                pathVariables = new ArrayList<>();
+                if (!parseSimplePath(expression, path, pathVariables)) {
+                    path = null;
+                }
+            }
+            if (path != null) {
+                this.path = path.toArray(new String[0]);
+                this.pathVariables = new boolean[pathVariables.size()];
+                for (int i = 0; i < this.pathVariables.length; i++) {
+                    this.pathVariables[i] = pathVariables.get(i);
+                }
+            } else {
+                this.path = null;
+                this.pathVariables = null;
+            }
+        }
+
+        public String getExpressionString() {
+            return expression;
+        }
+
+        public Class<?> getExpectedType() {
+            return expectedType;
+        }
+
+        /** Returns true if the expression is a simple property path that may be evaluated without JUEL. */
+        public boolean isSimplePath() {
+            return path != null;
+        }
+
+        /** Evaluates the expression against the context (variables), see {@link UelUtil#evaluate(Map, String, Class)}. */
+        public Object getValue(Map<String, ? extends Object> context) {
+            if (path != null) {
+                Object value = getPathValue(context);
+                if (value != NOT_SIMPLE) {
+                    return value;
+                }
+            }
+            ReadOnlyContext elContext = ReadOnlyContext.acquire(context);
+            try {
+                return valueExpression.getValue(elContext);
+            } finally {
+                elContext.release();
+            }
+        }
+
+        /** Sets the value the expression refers to, see {@link UelUtil#setValue(Map, String, Class, Object)}. */
+        public void setValue(Map<String, Object> context, Object value) {
+            BasicContext elContext = BasicContext.acquire(context);
+            try {
+                valueExpression.setValue(elContext, value);
+            } finally {
+                elContext.release();
+            }
+        }
+
+        /**
+         * Evaluates the simple path directly, with the same results as the resolvers for maps; returns {@link #NOT_SIMPLE}
+         * when a step is not a map or the result would need JUEL (unresolved variable, to raise its exception).
+         */
+        private Object getPathValue(Map<String, ? extends Object> context) {
+            Object base = resolveVariable(path[0], context, null);
+            if (base == null) {
+                return NOT_SIMPLE;
+            }
+            for (int i = 1; i < path.length; i++) {
+                Object property = path[i];
+                if (pathVariables[i]) {
+                    property = resolveVariable(path[i], context, null);
+                    if (property == null) {
+                        return NOT_SIMPLE;
+                    }
+                }
+                if (base instanceof LocalizedMap) {
+                    Object locale = resolveVariable(localizedMapLocaleKey, context, null);
+                    if (locale == null) {
+                        locale = resolveVariable("locale", context, null);
+                    }
+                    if (locale != null && !(locale instanceof Locale)) {
+                        return NOT_SIMPLE; // let the resolver report it
+                    }
+                    if (!(property instanceof String)) {
+                        return NOT_SIMPLE;
+                    }
+                    base = resolveVariable((String) property, UtilGenerics.<Map<String, ?>>cast(base),
+                            (locale != null) ? (Locale) locale : Locale.getDefault());
+                } else if (base instanceof Map) {
+                    if (property instanceof String) {
+                        base = resolveVariable((String) property, UtilGenerics.<Map<String, ?>>cast(base), null);
+                    } else {
+                        base = ((Map<?, ?>) base).get(property);
+                    }
+                } else {
+                    return NOT_SIMPLE;
+                }
+                if (base == null) {
+                    return null;
+                }
+            }
+            return base;
+        }
+
+        @Override
+        public String toString() {
+            return expression;
+        }
     }
 
-    private static class BasicContext extends ELContext {
-        private final Map<String, Object> variables;
+    private static final Object NOT_SIMPLE = new Object();
+
+    /**
+     * Parses <code>${root.name[variable]['name']...}</code> into the path; returns false for anything else, including
+     * EL keywords, which JUEL would parse differently.
+     */
+    private static boolean parseSimplePath(String expression, List<String> path, List<Boolean> pathVariables) {
+        if (!expression.startsWith("${") || !expression.endsWith("}")) {
+            return false;
+        }
+        int end = expression.length() - 1;
+        int i = 2;
+        int start = i;
+        while (i < end && Character.isJavaIdentifierPart(expression.charAt(i))) {
+            i++;
+        }
+        if (!addPathIdentifier(expression.substring(start, i), false, path, pathVariables)) {
+            return false;
+        }
+        while (i < end) {
+            char c = expression.charAt(i);
+            if (c == '.') {
+                start = ++i;
+                while (i < end && Character.isJavaIdentifierPart(expression.charAt(i))) {
+                    i++;
+                }
+                if (!addPathIdentifier(expression.substring(start, i), false, path, pathVariables)) {
+                    return false;
+                }
+            } else if (c == '[') {
+                i++;
+                if (i < end && expression.charAt(i) == '\'') {
+                    start = ++i;
+                    while (i < end && expression.charAt(i) != '\'' && expression.charAt(i) != '\\') {
+                        i++;
+                    }
+                    if (i + 1 >= end || expression.charAt(i) != '\'' || expression.charAt(i + 1) != ']') {
+                        return false;
+                    }
+                    path.add(expression.substring(start, i));
+                    pathVariables.add(false);
+                    i += 2;
+                } else {
+                    start = i;
+                    while (i < end && Character.isJavaIdentifierPart(expression.charAt(i))) {
+                        i++;
+                    }
+                    if (i >= end || expression.charAt(i) != ']' || !addPathIdentifier(expression.substring(start, i), true, path, pathVariables)) {
+                        return false;
+                    }
+                    i++;
+                }
+            } else {
+                return false;
+            }
+        }
+        return path.size() > 1;
+    }
+
+    private static final Set<String> EL_KEYWORDS = UtilMisc.unmodifiableHashSet("and", "div", "empty", "eq", "false",
+            "ge", "gt", "instanceof", "le", "lt", "mod", "ne", "not", "null", "or", "true");
+
+    private static boolean addPathIdentifier(String identifier, boolean variable, List<String> path, List<Boolean> pathVariables) {
+        if (identifier.isEmpty() || !Character.isJavaIdentifierStart(identifier.charAt(0)) || EL_KEYWORDS.contains(identifier)) {
+            return false;
+        }
+        path.add(identifier);
+        pathVariables.add(variable);
+        return true;
+    }
+
+    /** Key of expressions compiled for an expected type other than Object. */
+    private static final class TypedKey {
+        private final String expression;
+        private final Class<?> expectedType;
+
+        private TypedKey(String expression, Class<?> expectedType) {
+            this.expression = expression;
+            this.expectedType = expectedType;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof TypedKey)) {
+                return false;
+            }
+            TypedKey other = (TypedKey) obj;
+            return expression.equals(other.expression) && expectedType == other.expectedType;
+        }
+
+        @Override
+        public int hashCode() {
+            return expression.hashCode() * 31 + expectedType.hashCode();
+        }
+    }
+
+    /**
+     * Context that only provides the functions, used to create expressions that leave all variables to the resolver.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    private static class CompileContext extends ELContext {
+        private final VariableMapper variableMapper = new VariableMapper() {
+            @Override
+            public ValueExpression resolveVariable(String variable) {
+                return null;
+            }
+            @Override
+            public ValueExpression setVariable(String variable, ValueExpression expression) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        @Override
+        public ELResolver getELResolver() {
+            return defaultResolver;
+        }
+        @Override
+        public FunctionMapper getFunctionMapper() {
+            return UelFunctions.getFunctionMapper();
+        }
+        @Override
+        public VariableMapper getVariableMapper() {
+            return variableMapper;
+        }
+    }
+
+    /**
+     * Context whose variables resolve the top-level identifiers of compiled expressions.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    private static abstract class VariablesContext extends ELContext {
+        abstract Map<String, ? extends Object> getVariables();
+    }
+
+    /**
+     * SCIPIO: 3.0.0: Now reusable per thread via {@link #acquire(Map)} and {@link #release()}; a new instance is used
+     * when the thread's instance is busy in an enclosing evaluation.
+     */
+    private static class BasicContext extends VariablesContext {
+        private Map<String, Object> variables;
         private final VariableMapper variableMapper;
-        private BasicContext(Map<String, Object> context) {
+        private BasicContext() {
             this.variableMapper = new BasicVariableMapper(this);
-            this.variables = context;
+        }
+        static BasicContext acquire(Map<String, Object> context) {
+            BasicContext elContext = basicContexts.get();
+            if (elContext.variables != null) {
+                elContext = new BasicContext();
+            }
+            elContext.variables = context;
+            return elContext;
+        }
+        void release() {
+            this.variables = null;
+        }
+        @Override
+        Map<String, ? extends Object> getVariables() {
+            return variables;
         }
         @Override
         public ELResolver getELResolver() {
@@ -139,12 +475,29 @@ public class UelUtil {
         }
     }
 
-    private static class ReadOnlyContext extends ELContext {
-        private final Map<String, ? extends Object> variables;
+    /**
+     * SCIPIO: 3.0.0: Now reusable per thread, like {@link BasicContext}.
+     */
+    private static class ReadOnlyContext extends VariablesContext {
+        private Map<String, ? extends Object> variables;
         private final VariableMapper variableMapper;
-        private ReadOnlyContext(Map<String, ? extends Object> context) {
+        private ReadOnlyContext() {
             this.variableMapper = new ReadOnlyVariableMapper(this);
-            this.variables = UtilGenerics.cast(context);
+        }
+        static ReadOnlyContext acquire(Map<String, ? extends Object> context) {
+            ReadOnlyContext elContext = readOnlyContexts.get();
+            if (elContext.variables != null) {
+                elContext = new ReadOnlyContext();
+            }
+            elContext.variables = context;
+            return elContext;
+        }
+        void release() {
+            this.variables = null;
+        }
+        @Override
+        Map<String, ? extends Object> getVariables() {
+            return variables;
         }
         @Override
         public ELResolver getELResolver() {
@@ -331,6 +684,25 @@ public class UelUtil {
      * auto-vivify.
      */
     private static class ExtendedCompositeResolver extends CompositeELResolver {
+        /**
+         * Resolves top-level identifiers from the context variables, as the variable mappers did when the variables
+         * were bound at expression creation; unknown or null variables are left to the other resolvers (unresolved).
+         * <p>SCIPIO: 3.0.0: Added for context-independent cached expressions.</p>
+         */
+        @Override
+        public Object getValue(ELContext context, Object base, Object property) {
+            if (base == null && property != null && context instanceof VariablesContext) {
+                Map<String, ? extends Object> variables = ((VariablesContext) context).getVariables();
+                if (variables != null) {
+                    Object value = resolveVariable(property.toString(), variables, null);
+                    if (value != null) {
+                        context.setPropertyResolved(true);
+                        return value;
+                    }
+                }
+            }
+            return super.getValue(context, base, property);
+        }
         @Override
         public void setValue(ELContext context, Object base, Object property, Object val) {
             super.setValue(context, base, property, val);
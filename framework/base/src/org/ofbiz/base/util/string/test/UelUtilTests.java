@@ -0,0 +1,111 @@
+package org.ofbiz.base.util.string.test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.el.PropertyNotFoundException;
+
+import org.ofbiz.base.test.GenericTestCaseBase;
+import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.base.util.collections.LocalizedMap;
+import org.ofbiz.base.util.string.UelUtil;
+
+/**
+ * UelUtil tests, mainly that cached and simple-path evaluation give the same results as JUEL.
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public class UelUtilTests extends GenericTestCaseBase {
+
+    public UelUtilTests(String name) {
+        super(name);
+    }
+
+    @SuppressWarnings("serial")
+    private static class TestLocalizedMap extends HashMap<String, Object> implements LocalizedMap<Object> {
+        @Override
+        public Object get(String name, Locale locale) {
+            return name + "_" + locale;
+        }
+    }
+
+    private static Map<String, Object> makeContext() {
+        Map<String, Object> product = new HashMap<>();
+        product.put("productId", "GZ-1000");
+        product.put("price", 10);
+        Map<String, Object> context = new HashMap<>();
+        context.put("product", product);
+        context.put("field", "productId");
+        context.put("nested", UtilMisc.toMap("inner", product));
+        context.put("localized", new TestLocalizedMap());
+        context.put("locale", Locale.GERMAN);
+        context.put("list", new ArrayList<>(List.of("a", "b")));
+        context.put("nullValue", null);
+        return context;
+    }
+
+    /** Evaluates the expression, and the same expression in parentheses, which always goes through JUEL. */
+    private static Object assertSameAsJuel(String label, Map<String, Object> context, String expression, boolean simple) {
+        assertEquals(label + " simple path", simple, UelUtil.getExpression(expression, Object.class).isSimplePath());
+        Object value = UelUtil.evaluate(context, expression);
+        String juelExpression = "${(" + expression.substring(2, expression.length() - 1) + ")}";
+        assertFalse(label + " juel", UelUtil.getExpression(juelExpression, Object.class).isSimplePath());
+        assertEquals(label, UelUtil.evaluate(context, juelExpression), value);
+        return value;
+    }
+
+    public void testSimplePaths() {
+        Map<String, Object> context = makeContext();
+        assertEquals("dot", "GZ-1000", assertSameAsJuel("dot", context, "${product.productId}", true));
+        assertEquals("nested", "GZ-1000", assertSameAsJuel("nested", context, "${nested.inner.productId}", true));
+        assertEquals("bracket variable", "GZ-1000", assertSameAsJuel("bracket variable", context, "${product[field]}", true));
+        assertEquals("bracket literal", "GZ-1000", assertSameAsJuel("bracket literal", context, "${product['productId']}", true));
+        assertNull("missing property", assertSameAsJuel("missing property", context, "${product.missing}", true));
+        assertNull("null base", assertSameAsJuel("null base", context, "${product.missing.other}", true));
+        assertEquals("localized", "name_de", assertSameAsJuel("localized", context, "${localized.name}", true));
+        assertEquals("suffix", "", assertSameAsJuel("suffix", context, "${product.missing$string}", true));
+        assertEquals("list index", "b", assertSameAsJuel("list index", context, "${list[1]}", false));
+        context.put("index", 1);
+        assertEquals("list (JUEL fallback)", "b", assertSameAsJuel("list", context, "${list[index]}", true));
+        assertEquals("operator", Boolean.TRUE, assertSameAsJuel("operator", context, "${product.price > 5}", false));
+        assertEquals("empty keyword", Boolean.FALSE, assertSameAsJuel("empty keyword", context, "${empty product.productId}", false));
+    }
+
+    public void testUnresolvedVariable() {
+        Map<String, Object> context = makeContext();
+        for (String expression : new String[] { "${missing.productId}", "${nullValue.productId}", "${missing}" }) {
+            try {
+                UelUtil.evaluate(context, expression);
+                fail("PropertyNotFoundException expected for " + expression);
+            } catch (PropertyNotFoundException e) {
+                // expected, as before caching
+            }
+        }
+        assertEquals("same context after failure", "GZ-1000", UelUtil.evaluate(context, "${product.productId}"));
+    }
+
+    public void testSetValue() {
+        Map<String, Object> context = makeContext();
+        UelUtil.setValue(context, "${product.productId}", String.class, "GZ-2000");
+        assertEquals("set property", "GZ-2000", UelUtil.evaluate(context, "${product.productId}"));
+        UelUtil.setValue(context, "${newVar}", String.class, "value");
+        assertEquals("set variable", "value", context.get("newVar"));
+        UelUtil.setValue(context, "${newMap.key}", String.class, "value");
+        assertEquals("auto-vivify", "value", UelUtil.evaluate(context, "${newMap.key}"));
+        UelUtil.removeValue(context, "${newMap.key}");
+        assertNull("removed", UelUtil.evaluate(context, "${newMap.key}"));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testCachedIndependentOfContext() {
+        UelUtil.CachedExpression expression = UelUtil.getExpression("${product.productId}", Object.class);
+        assertSame("cached", expression, UelUtil.getExpression("${product.productId}", Object.class));
+        Map<String, Object> other = makeContext();
+        ((Map<String, Object>) other.get("product")).put("productId", "OTHER");
+        assertEquals("first context", "GZ-1000", expression.getValue(makeContext()));
+        assertEquals("second context", "OTHER", expression.getValue(other));
+        assertEquals("expected type", "10", UelUtil.evaluate(makeContext(), "${product.price}", String.class));
+    }
+}
@@ -0,0 +1,152 @@
+package org.ofbiz.base.util.template;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.ofbiz.base.util.cache.UtilCache;
+
+import freemarker.core.Environment;
+import freemarker.template.SimpleHash;
+import freemarker.template.SimpleNumber;
+import freemarker.template.SimpleScalar;
+import freemarker.template.Template;
+import freemarker.template.TemplateBooleanModel;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+
+/**
+ * SCIPIO: Invokes Freemarker macros by name with a prebuilt argument map on an existing {@link Environment},
+ * instead of building a <code>&lt;@macroName arg=... /&gt;</code> call string and parsing it into a new
+ * {@link Template} for every call.
+ * <p>
+ * The macro is looked up in the environment (for the widget renderers, the main namespace of the already-loaded
+ * macro library) and called through a small invocation template, <code>&lt;@macro?with_args(args)/&gt;</code>,
+ * which is parsed once and reused.
+ * <p>
+ * Argument values follow the conventions of the string-building callers (see MacroScreenRenderer.executeMacro):
+ * <ul>
+ * <li>null: argument omitted, so the macro parameter default applies (string callers appended <code>null</code>,
+ * an undefined expression, which has the same effect)</li>
+ * <li>String: string value</li>
+ * <li>Boolean, Number: boolean and number values</li>
+ * <li>{@link TemplateModel}: passed as-is</li>
+ * <li>any other object (typically a StringBuilder): its toString() is a raw FTL expression, passed to the
+ * invocation template as a string variable along with its argument name and evaluated there with <code>?eval</code>;
+ * the invocation templates only depend on the number of raw arguments, so only the expressions themselves are parsed
+ * per call</li>
+ * </ul>
+ * <p>
+ * SCIPIO: 3.0.0: Added.
+ */
+public final class FtlMacroInvoker {
+
+    //private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    private static final String MACRO_VAR = "_scpMacroInvokeTarget";
+    private static final String ARGS_VAR = "_scpMacroInvokeArgs";
+    private static final String RAW_NAME_VAR_PREFIX = "_scpMacroInvokeRawName";
+    private static final String RAW_EXPR_VAR_PREFIX = "_scpMacroInvokeRawExpr";
+
+    private static final String PLAIN_INVOKE_SOURCE = "<@" + MACRO_VAR + "?with_args(" + ARGS_VAR + ")/>";
+
+    /**
+     * Invocation templates by number of raw expression arguments.
+     */
+    private static final UtilCache<Integer, Template> invokeTemplateCache = UtilCache.createUtilCache("template.ftl.macro.invoke", 1000, 1000, 0, false);
+
+    private FtlMacroInvoker() {
+    }
+
+    /**
+     * Invokes the named macro in the given environment with the given arguments, writing to the environment's output.
+     * <p>
+     * The macro is resolved the same way as <code>&lt;@macroName/&gt;</code> included in the environment would be.
+     */
+    public static void invokeMacro(Environment env, String macroName, Map<String, ?> args) throws TemplateException, IOException {
+        TemplateModel macro = env.getVariable(macroName);
+        if (macro == null) {
+            throw new TemplateModelException("Macro or directive not found in environment: " + macroName);
+        }
+        // NOTE: LinkedHashMap keeps argument order for macros that collect extra args
+        SimpleHash argsModel = new SimpleHash(new LinkedHashMap<String, Object>(), env.getObjectWrapper());
+        int rawArgCount = 0;
+        if (args != null) {
+            for (Map.Entry<String, ?> entry : args.entrySet()) {
+                Object value = entry.getValue();
+                if (value == null) {
+                    continue;
+                } else if (value instanceof String) {
+                    argsModel.put(entry.getKey(), new SimpleScalar((String) value));
+                } else if (value instanceof Boolean) {
+                    argsModel.put(entry.getKey(), ((Boolean) value) ? TemplateBooleanModel.TRUE : TemplateBooleanModel.FALSE);
+                } else if (value instanceof Number) {
+                    argsModel.put(entry.getKey(), new SimpleNumber((Number) value));
+                } else if (value instanceof TemplateModel) {
+                    argsModel.put(entry.getKey(), value);
+                } else {
+                    env.setVariable(RAW_NAME_VAR_PREFIX + rawArgCount, new SimpleScalar(entry.getKey()));
+                    env.setVariable(RAW_EXPR_VAR_PREFIX + rawArgCount, new SimpleScalar(value.toString()));
+                    rawArgCount++;
+                }
+            }
+        }
+        Template template = getInvokeTemplate(rawArgCount);
+        env.setVariable(MACRO_VAR, macro);
+        env.setVariable(ARGS_VAR, argsModel);
+        FreeMarkerWorker.includeTemplate(template, env);
+    }
+
+    /**
+     * Builds the equivalent <code>&lt;@macroName arg=... /&gt;</code> call string, using the same value
+     * conventions as {@link #invokeMacro(Environment, String, Map)}; used for logging and for the string-parsing path.
+     * <p>
+     * NOTE: {@link TemplateModel} values have no source form; callers that use this for the string-parsing path
+     * must not pass them.
+     */
+    public static String makeMacroCall(String macroName, Map<String, ?> args, FtlScriptFormatter ftlFmt) {
+        StringBuilder sb = new StringBuilder("<@");
+        sb.append(macroName);
+        if (args != null) {
+            for (Map.Entry<String, ?> entry : args.entrySet()) {
+                Object value = entry.getValue();
+                if (value == null) {
+                    continue;
+                }
+                sb.append(' ');
+                sb.append(entry.getKey());
+                sb.append('=');
+                if (value instanceof String) {
+                    sb.append(ftlFmt.makeStringLiteral((String) value));
+                } else {
+                    sb.append(value);
+                }
+            }
+        }
+        sb.append(" />");
+        return sb.toString();
+    }
+
+    private static Template getInvokeTemplate(int rawArgCount) throws IOException {
+        Template template = invokeTemplateCache.get(rawArgCount);
+        if (template == null) {
+            String source = PLAIN_INVOKE_SOURCE;
+            if (rawArgCount > 0) {
+                // NOTE: FTL hash literal keys may be expressions, so the argument names are data as well
+                StringBuilder rawArgs = new StringBuilder();
+                for (int i = 0; i < rawArgCount; i++) {
+                    if (i > 0) {
+                        rawArgs.append(", ");
+                    }
+                    rawArgs.append(RAW_NAME_VAR_PREFIX).append(i).append(": ").append(RAW_EXPR_VAR_PREFIX).append(i).append("?eval");
+                }
+                source = "<@" + MACRO_VAR + "?with_args(" + ARGS_VAR + " + {" + rawArgs + "})/>";
+            }
+            template = new Template("FtlMacroInvoker", new StringReader(source), FreeMarkerWorker.getDefaultOfbizConfig());
+            template = invokeTemplateCache.putIfAbsentAndGet(rawArgCount, template);
+        }
+        return template;
+    }
+}
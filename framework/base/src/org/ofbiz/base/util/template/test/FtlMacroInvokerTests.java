@@ -0,0 +1,134 @@
+package org.ofbiz.base.util.template.test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.ofbiz.base.test.GenericTestCaseBase;
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.template.FreeMarkerWorker;
+import org.ofbiz.base.util.template.FtlMacroInvoker;
+import org.ofbiz.base.util.template.FtlScriptFormatter;
+
+import freemarker.core.Environment;
+import freemarker.template.Template;
+
+/**
+ * SCIPIO: Tests for {@link FtlMacroInvoker}: direct invocation must render the same as the
+ * parsed macro call string it replaces; also logs a rough timing comparison of the two.
+ */
+public class FtlMacroInvokerTests extends GenericTestCaseBase {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    private static final String MACRO_LIB = "<#macro renderTestField text=\"dflt\" flag=false num=0 alert=\"false\" attribs={}>"
+            + "[${text}|${flag?c}|${num}|${alert}|${attribs.a!}:${attribs.b!}]"
+            + "</#macro>";
+
+    private static final int TIMING_CALLS = 2000;
+
+    private final FtlScriptFormatter ftlFmt = new FtlScriptFormatter();
+
+    public FtlMacroInvokerTests(String name) {
+        super(name);
+    }
+
+    public void testStringAndTypedArgs() throws Exception {
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("text", "quote \" backslash \\ interp ${notExecuted}");
+        args.put("flag", true);
+        args.put("num", 42);
+        args.put("alert", "true");
+        assertSameOutput(args);
+    }
+
+    public void testNullArgUsesDefault() throws Exception {
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("text", null);
+        args.put("num", 1);
+        assertEquals("[dflt|false|1|false|:]", invoke(args));
+        assertSameOutput(args);
+    }
+
+    public void testRawExpressionArgs() throws Exception {
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("text", "");
+        args.put("attribs", new StringBuilder("{'b':2, 'a':'x'}"));
+        assertEquals("[|false|0|false|x:2]", invoke(args));
+        assertSameOutput(args);
+        // a different expression goes through the same cached invocation template
+        args.put("attribs", new StringBuilder("{'a':'y'}"));
+        assertEquals("[|false|0|false|y:]", invoke(args));
+        assertSameOutput(args);
+    }
+
+    public void testUnknownMacro() throws Exception {
+        Environment env = makeEnvironment(new StringWriter());
+        try {
+            FtlMacroInvoker.invokeMacro(env, "noSuchMacro", null);
+            fail("Expected exception for unknown macro");
+        } catch (freemarker.template.TemplateModelException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Rough comparison of parsing a call string per call vs direct invocation; logged only, not asserted,
+     * so machine load cannot make the test fail.
+     */
+    public void testTiming() throws Exception {
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("text", "field-title");
+        args.put("flag", false);
+        args.put("num", 3);
+        args.put("alert", "false");
+
+        StringWriter parsedOut = new StringWriter();
+        Environment parsedEnv = makeEnvironment(parsedOut);
+        StringWriter invokedOut = new StringWriter();
+        Environment invokedEnv = makeEnvironment(invokedOut);
+        // warm-up
+        for (int i = 0; i < TIMING_CALLS / 10; i++) {
+            parseAndInclude(parsedEnv, args);
+            FtlMacroInvoker.invokeMacro(invokedEnv, "renderTestField", args);
+        }
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < TIMING_CALLS; i++) {
+            parseAndInclude(parsedEnv, args);
+        }
+        long parsedNanos = System.nanoTime() - startNanos;
+        startNanos = System.nanoTime();
+        for (int i = 0; i < TIMING_CALLS; i++) {
+            FtlMacroInvoker.invokeMacro(invokedEnv, "renderTestField", args);
+        }
+        long invokedNanos = System.nanoTime() - startNanos;
+        assertEquals(parsedOut.toString(), invokedOut.toString());
+        Debug.logInfo("Macro call timing (" + TIMING_CALLS + " calls): parsed call string: "
+                + (parsedNanos / 1000000) + "ms, direct invocation: " + (invokedNanos / 1000000) + "ms", module);
+    }
+
+    private void assertSameOutput(Map<String, Object> args) throws Exception {
+        StringWriter parsedOut = new StringWriter();
+        parseAndInclude(makeEnvironment(parsedOut), args);
+        assertEquals(parsedOut.toString(), invoke(args));
+    }
+
+    private String invoke(Map<String, Object> args) throws Exception {
+        StringWriter out = new StringWriter();
+        FtlMacroInvoker.invokeMacro(makeEnvironment(out), "renderTestField", args);
+        return out.toString();
+    }
+
+    private void parseAndInclude(Environment env, Map<String, Object> args) throws Exception {
+        String macro = FtlMacroInvoker.makeMacroCall("renderTestField", args, ftlFmt);
+        Template template = new Template("FtlMacroInvokerTests_call", new StringReader(macro), FreeMarkerWorker.getDefaultOfbizConfig());
+        FreeMarkerWorker.includeTemplate(template, env);
+    }
+
+    private static Environment makeEnvironment(StringWriter out) throws Exception {
+        Template lib = new Template("FtlMacroInvokerTests_lib", new StringReader(MACRO_LIB), FreeMarkerWorker.getDefaultOfbizConfig());
+        return FreeMarkerWorker.renderTemplate(lib, new HashMap<String, Object>(), out);
+    }
+}
@@ -62,7 +62,9 @@ import org.ofbiz.entity.condition.EntityOperator;
 import org.ofbiz.entity.model.ModelEntity;
 import org.ofbiz.entity.transaction.TransactionUtil;
 import org.ofbiz.entity.util.EntityFindOptions;
+import org.ofbiz.entity.util.DistributedCacheClear;
 import org.ofbiz.entity.util.EntityQuery;
+import org.ofbiz.security.EffectivePermissions;
 import org.ofbiz.service.DispatchContext;
 import org.ofbiz.service.GenericServiceException;
 import org.ofbiz.service.LocalDispatcher;
@@ -619,4 +621,25 @@ public class CommonServices {
         }
         return ServiceUtil.returnError(UtilProperties.getMessage(resource, "CommonMetricNotFound", UtilMisc.toMap("name", name), locale));
     }
+
+    /**
+     * Invalidates the effective permission snapshot of the given user login, or of all user logins, after commit;
+     * invoked by entity ECAs on <code>UserLoginSecurityGroup</code> and <code>SecurityGroupPermission</code> changes.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public static Map<String, Object> clearEffectivePermissions(DispatchContext dctx, Map<String, ?> context) {
+        if (!EffectivePermissions.isEnabled()) {
+            return ServiceUtil.returnSuccess();
+        }
+        Delegator delegator = dctx.getDelegator();
+        String userLoginId = (String) context.get("userLoginId");
+        EffectivePermissions.clearAfterCommit(delegator, UtilValidate.isNotEmpty(userLoginId) ? userLoginId : null);
+        if (Boolean.TRUE.equals(context.get("distribute"))) {
+            DistributedCacheClear dcc = delegator.getDistributedCacheClear();
+            if (dcc != null) {
+                dcc.runDistributedService("distributedClearEffectivePermissions", UtilMisc.toMap("userLoginId", userLoginId, "distribute", false));
+            }
+        }
+        return ServiceUtil.returnSuccess();
+    }
 }
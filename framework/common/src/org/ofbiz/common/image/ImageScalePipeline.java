@@ -0,0 +1,219 @@
+package org.ofbiz.common.image;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32C;
+
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilProperties;
+
+/**
+ * Shared settings and helpers for scaling all the size variants of an image from a single decode of the original:
+ * a bounded worker pool on which variants are scaled and written, cascade settings (largest variant first, each
+ * smaller variant scaled from the smallest already-scaled variant that is large enough), and a per-original
+ * {@link Manifest} of source checksums, used to skip variants whose original and settings have not changed.
+ *
+ * <p>Configured in imagecommon.properties by <code>image.scale.threads</code> (0: half the processors, 1: no pool),
+ * <code>image.scale.cascade</code>, <code>image.scale.cascade.minRatio</code> and
+ * <code>image.scale.skipUnchanged</code>.</p>
+ *
+ * <p>NOTE: The pool only runs leaf scale and write tasks, which never wait on each other, so it may be used from any
+ * number of callers (including callers themselves running on other pools) without deadlock.</p>
+ *
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public final class ImageScalePipeline {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    private static final String PROP_RESOURCE = ImageUtil.IMAGECOMMON_PROP_RESOURCE;
+    private static final String PROP_PREFIX = ImageUtil.IMAGECOMMON_PROP_PREFIX + "scale.";
+
+    private static final int threads = getThreadCount(UtilProperties.getPropertyAsInteger(PROP_RESOURCE, PROP_PREFIX + "threads", 0));
+    private static final boolean cascade = UtilProperties.getPropertyAsBoolean(PROP_RESOURCE, PROP_PREFIX + "cascade", true);
+    private static final double cascadeMinRatio = UtilProperties.getPropertyAsDouble(PROP_RESOURCE, PROP_PREFIX + "cascade.minRatio", 1.0);
+    private static final boolean skipUnchanged = UtilProperties.getPropertyAsBoolean(PROP_RESOURCE, PROP_PREFIX + "skipUnchanged", false);
+
+    private static volatile Executor executor;
+
+    private ImageScalePipeline() {
+    }
+
+    /** Returns the executor variants are scaled and written on; runs tasks in the calling thread if the pool is disabled. */
+    public static Executor getExecutor() {
+        Executor executor = ImageScalePipeline.executor;
+        if (executor == null) {
+            synchronized (ImageScalePipeline.class) {
+                executor = ImageScalePipeline.executor;
+                if (executor == null) {
+                    executor = (threads > 1) ? makePool(threads) : Runnable::run;
+                    ImageScalePipeline.executor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    public static int getThreadCount() {
+        return threads;
+    }
+
+    /** Whether smaller variants are scaled from larger already-scaled variants instead of the original. */
+    public static boolean isCascade() {
+        return cascade;
+    }
+
+    /**
+     * Minimum ratio of the dimensions of a cascade source variant to those of the target variant; 1.0 allows any
+     * larger or equal variant, higher values limit the number of resampling steps between the original and a variant.
+     */
+    public static double getCascadeMinRatio() {
+        return cascadeMinRatio;
+    }
+
+    /** Whether variants whose original checksum and settings match their {@link Manifest} entry are skipped by default. */
+    public static boolean isSkipUnchanged() {
+        return skipUnchanged;
+    }
+
+    /** Returns true if a variant of the given size may be scaled from a source of the given size under the cascade settings. */
+    public static boolean isCascadeSource(int sourceWidth, int sourceHeight, int targetWidth, int targetHeight) {
+        return sourceWidth >= targetWidth * cascadeMinRatio && sourceHeight >= targetHeight * cascadeMinRatio;
+    }
+
+    /** Returns the checksum of the file contents, as hex CRC32C plus file length. */
+    public static String getChecksum(File file) throws IOException {
+        CRC32C crc = new CRC32C();
+        byte[] buf = new byte[65536];
+        long length = 0;
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = in.read(buf)) > 0) {
+                crc.update(buf, 0, read);
+                length += read;
+            }
+        }
+        return Long.toHexString(crc.getValue()) + "-" + length;
+    }
+
+    /**
+     * Returns a signature of variant settings for {@link Manifest} entries; map arguments are written in key order so
+     * equal settings always give equal signatures.
+     */
+    public static String getVariantSignature(Object... settings) {
+        StringBuilder sb = new StringBuilder();
+        for (Object setting : settings) {
+            if (sb.length() > 0) {
+                sb.append('|');
+            }
+            if (setting instanceof Map) {
+                sb.append(new TreeMap<>((Map<?, ?>) setting));
+            } else {
+                sb.append(setting);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static int getThreadCount(int threads) {
+        return (threads > 0) ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    }
+
+    private static Executor makePool(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "Scipio-image-scale-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Record of the variants last produced from an original image, stored as a hidden properties file next to the
+     * original (<code>.[filename].scaled</code>): the checksum of the original and, per size type, the signature of the
+     * settings the variant was produced with. Entries are only valid for the recorded checksum.
+     */
+    public static class Manifest {
+        private static final String CHECKSUM_KEY = "checksum";
+        private static final String VARIANT_PREFIX = "variant.";
+
+        private final File file;
+        private final String checksum;
+        private final Properties entries = new Properties();
+
+        protected Manifest(File file, String checksum) {
+            this.file = file;
+            this.checksum = checksum;
+        }
+
+        /** Reads the manifest of the given original image file and checksums the original. */
+        public static Manifest read(File origFile) throws IOException {
+            File file = new File(origFile.getParentFile(), "." + origFile.getName() + ".scaled");
+            Manifest manifest = new Manifest(file, ImageScalePipeline.getChecksum(origFile));
+            if (file.isFile()) {
+                Properties props = new Properties();
+                try (InputStream in = Files.newInputStream(file.toPath())) {
+                    props.load(in);
+                } catch (IOException | IllegalArgumentException e) {
+                    Debug.logWarning("Could not read image scale manifest [" + file + "]; ignoring: " + e.toString(), module);
+                    return manifest;
+                }
+                if (manifest.checksum.equals(props.getProperty(CHECKSUM_KEY))) {
+                    manifest.entries.putAll(props);
+                }
+            }
+            return manifest;
+        }
+
+        public String getChecksum() {
+            return checksum;
+        }
+
+        /** Returns true if the variant was last produced from the same original with the same settings signature. */
+        public boolean isUnchanged(String sizeType, String signature) {
+            return signature.equals(entries.getProperty(VARIANT_PREFIX + sizeType));
+        }
+
+        public void put(String sizeType, String signature) {
+            entries.setProperty(VARIANT_PREFIX + sizeType, signature);
+        }
+
+        public void remove(String sizeType) {
+            entries.remove(VARIANT_PREFIX + sizeType);
+        }
+
+        /** Writes the manifest (atomically where supported); logs and returns false on failure. */
+        public boolean store() {
+            entries.setProperty(CHECKSUM_KEY, checksum);
+            File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(tmpFile.toPath())) {
+                    entries.store(out, null);
+                }
+                try {
+                    Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                return true;
+            } catch (IOException e) {
+                Debug.logWarning("Could not write image scale manifest [" + file + "]: " + e.toString(), module);
+                return false;
+            }
+        }
+    }
+}
@@ -933,6 +933,23 @@ public interface Delegator {
      */
     int removeAll(List<? extends GenericEntity> dummyPKs) throws GenericEntityException;
 
+    /**
+     * Removes/deletes Generic Entity records found by all the specified
+     * GenericEntity objects, like {@link #removeAll(List)}.
+     * <p>SCIPIO: 3.0.0: If {@link EntityStoreOptions#isBatch()}, consecutive complete
+     * primary keys of the same entity are deleted using JDBC statement batching,
+     * with entity ECAs and cache clearing still done per value.</p>
+     *
+     * @param dummyPKs
+     *            Collection of GenericEntity instances containing the entities
+     *            or by and fields to remove
+     * @param storeOptions
+     *            An instance of EntityStoreOptions that specifies advanced store
+     *            options or null for default values.
+     * @return int representing number of rows effected by this operation
+     */
+    int removeAll(List<? extends GenericEntity> dummyPKs, EntityStoreOptions storeOptions) throws GenericEntityException;
+
     int removeAll(String entityName) throws GenericEntityException;
 
     /**
@@ -1076,6 +1093,26 @@ public interface Delegator {
      */
     int storeAll(Collection<GenericValue> values, EntityStoreOptions storeOptions) throws GenericEntityException;
 
+    /**
+     * <p>Creates the Entities from the Collection of GenericValue instances in
+     * the persistent store, without checking whether they already exist.</p>
+     * <p>These inserts all happen in one transaction, so they will either all
+     * succeed or all fail, if the data source supports transactions. If
+     * {@link EntityStoreOptions#isBatch()}, consecutive values of the same
+     * entity are inserted using JDBC statement batching, with entity ECAs
+     * and cache clearing still done per value.</p>
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     *
+     * @param values
+     *            Collection of GenericValue instances containing the entities to
+     *            create
+     * @param storeOptions
+     *            An instance of EntityStoreOptions that specifies advanced store
+     *            options or null for default values.
+     * @return int representing number of rows effected by this operation
+     */
+    int createAll(Collection<GenericValue> values, EntityStoreOptions storeOptions) throws GenericEntityException;
+
     /**
      * Store a group of values.
      *
@@ -27,6 +27,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -1299,6 +1300,10 @@ public class GenericDelegator implements Delegator {
             storeOptions = new EntityStoreOptions();
         }
 
+        if (storeOptions.isBatch()) { // SCIPIO: JDBC batch mode
+            return storeAllBatch(values, storeOptions, false);
+        }
+
         int numberChanged = 0;
 
         boolean beganTransaction = false;
@@ -1365,6 +1370,189 @@ public class GenericDelegator implements Delegator {
         }
     }
 
+    /* (non-Javadoc)
+     * @see org.ofbiz.entity.Delegator#createAll(java.util.Collection, org.ofbiz.entity.util.EntityStoreOptions)
+     */
+    @Override
+    public int createAll(Collection<GenericValue> values, EntityStoreOptions storeOptions) throws GenericEntityException { // SCIPIO: 3.0.0: Added
+        if (values == null) {
+            return 0;
+        }
+        if (storeOptions == null) {
+            storeOptions = new EntityStoreOptions();
+        }
+        if (storeOptions.isBatch()) {
+            return storeAllBatch(values, storeOptions, true);
+        }
+
+        int numberCreated = 0;
+        boolean beganTransaction = false;
+        try {
+            beganTransaction = TransactionUtil.begin();
+            for (GenericValue value : values) {
+                if (storeOptions.isCreateDummyFks()) {
+                    value.checkFks(true);
+                }
+                this.create(value);
+                numberCreated++;
+            }
+            TransactionUtil.commit(beganTransaction);
+            return numberCreated;
+        } catch (GenericEntityException e) {
+            String errMsg = "Failure in createAll operation: " + e.toString() + ". Rolling back transaction.";
+            Debug.logError(e, errMsg, module);
+            TransactionUtil.rollback(beganTransaction, errMsg, e);
+            throw new GenericEntityException(e);
+        }
+    }
+
+    /**
+     * Batched implementation of storeAll and createAll (SCIPIO).
+     * <p>The values are processed in consecutive runs of the same entity of at most {@link EntityStoreOptions#getBatchSize()} values,
+     * so the relative order of different entities (and thus foreign key order) is kept. For each run, existing rows are looked up with
+     * bulk primary key queries (unless createOnly), then new and changed values are written through JDBC batches. A run also ends before
+     * a value whose primary key is already in it, so repeated primary keys are applied in order. Entity ECAs,
+     * audit logs, test mode rollback and cache clearing are still handled for each value.</p>
+     */
+    protected int storeAllBatch(Collection<GenericValue> values, EntityStoreOptions storeOptions, boolean createOnly) throws GenericEntityException {
+        int numberChanged = 0;
+        boolean beganTransaction = false;
+        try {
+            beganTransaction = TransactionUtil.begin();
+
+            List<GenericValue> run = new ArrayList<>(storeOptions.getBatchSize());
+            Set<GenericPK> runPks = new HashSet<>();
+            for (GenericValue value : values) {
+                GenericPK primaryKey = value.getPrimaryKey();
+                // NOTE: A primary key repeated within a run ends the run, so the repeated value is written after (and over) the
+                // previous one, as a non-batched storeAll would, instead of both going into the same insert batch
+                if (!run.isEmpty() && (run.size() >= storeOptions.getBatchSize() || !run.get(0).getEntityName().equals(value.getEntityName())
+                        || runPks.contains(primaryKey))) {
+                    numberChanged += storeAllBatchRun(run, storeOptions, createOnly);
+                    run.clear();
+                    runPks.clear();
+                }
+                run.add(value);
+                runPks.add(primaryKey);
+            }
+            if (!run.isEmpty()) {
+                numberChanged += storeAllBatchRun(run, storeOptions, createOnly);
+            }
+
+            TransactionUtil.commit(beganTransaction);
+            return numberChanged;
+        } catch (GenericEntityException e) {
+            String errMsg = "Failure in " + (createOnly ? "createAll" : "storeAll") + " batch operation: " + e.toString() + ". Rolling back transaction.";
+            Debug.logError(e, errMsg, module);
+            TransactionUtil.rollback(beganTransaction, errMsg, e);
+            throw new GenericEntityException(e);
+        }
+    }
+
+    private int storeAllBatchRun(List<GenericValue> run, EntityStoreOptions storeOptions, boolean createOnly) throws GenericEntityException {
+        ModelEntity modelEntity = run.get(0).getModelEntity();
+        String entityName = modelEntity.getEntityName();
+        GenericHelper helper = getEntityHelper(entityName);
+        EntityEcaRuleRunner<?> ecaRunner = this.getEcaRuleRunner(entityName);
+
+        // exists? NOTE: don't use findOne because we don't want the ECA events to fire and such
+        Map<GenericPK, GenericValue> existingByPk = Collections.emptyMap();
+        if (!createOnly) {
+            List<GenericPK> primaryKeys = new ArrayList<>(run.size());
+            for (GenericValue value : run) {
+                GenericPK primaryKey = value.getPrimaryKey();
+                if (!primaryKey.isPrimaryKey()) {
+                    throw new GenericModelException("[GenericDelegator.storeAll] One of the passed primary keys is not a valid primary key: " + primaryKey);
+                }
+                primaryKeys.add(primaryKey);
+            }
+            existingByPk = new HashMap<>();
+            for (GenericValue existing : helper.findAllByPrimaryKeys(modelEntity, primaryKeys, storeOptions.getKeyChunkSize())) {
+                existingByPk.put(existing.getPrimaryKey(), existing);
+            }
+        }
+
+        List<GenericValue> toCreateList = new ArrayList<>(run.size());
+        List<GenericValue> toStoreList = new ArrayList<>(run.size());
+        List<GenericValue> oldValueList = new ArrayList<>(run.size());
+        for (GenericValue value : run) {
+            GenericValue existing = existingByPk.get(value.getPrimaryKey());
+            if (existing == null) {
+                if (storeOptions.isCreateDummyFks()) {
+                    value.checkFks(true);
+                }
+                ecaRunner.evalRules(EntityEcaHandler.EV_VALIDATE, EntityEcaHandler.OP_CREATE, value, false);
+                ecaRunner.evalRules(EntityEcaHandler.EV_RUN, EntityEcaHandler.OP_CREATE, value, false);
+                value.setDelegator(this);
+                if (modelEntity.getHasFieldWithAuditLog()) {
+                    createEntityAuditLogAll(value, false, false);
+                }
+                toCreateList.add(value);
+            } else {
+                // don't send fields that are the same, and if no fields have changed, update nothing
+                GenericValue toStore = GenericValue.create(this, modelEntity, value.getPrimaryKey());
+                boolean atLeastOneField = false;
+                Iterator<ModelField> nonPksIter = modelEntity.getNopksIterator();
+                while (nonPksIter.hasNext()) {
+                    ModelField modelField = nonPksIter.next();
+                    String fieldName = modelField.getName();
+                    if (value.containsKey(fieldName)) {
+                        Object fieldValue = value.get(fieldName);
+                        Object oldValue = existing.get(fieldName);
+                        if (!UtilObject.equalsHelper(oldValue, fieldValue)) {
+                            toStore.put(fieldName, fieldValue);
+                            atLeastOneField = true;
+                        }
+                    }
+                }
+                if (!atLeastOneField) {
+                    continue;
+                }
+                if (storeOptions.isCreateDummyFks()) {
+                    value.checkFks(true);
+                }
+                ecaRunner.evalRules(EntityEcaHandler.EV_VALIDATE, EntityEcaHandler.OP_STORE, toStore, false);
+                ecaRunner.evalRules(EntityEcaHandler.EV_RUN, EntityEcaHandler.OP_STORE, toStore, false);
+                if (modelEntity.getHasFieldWithAuditLog()) {
+                    createEntityAuditLogAll(toStore, true, false);
+                }
+                toStoreList.add(toStore);
+                oldValueList.add(existing);
+            }
+        }
+
+        int numberChanged = helper.createAll(modelEntity, toCreateList, storeOptions.getBatchSize());
+        numberChanged += helper.storeAll(modelEntity, toStoreList, storeOptions.getBatchSize());
+
+        for (GenericValue value : toCreateList) {
+            if (testMode) {
+                storeForTestRollback(new TestOperation(OperationType.INSERT, value));
+            }
+            if (value.lockEnabled()) {
+                refresh(value);
+            } else {
+                // doCacheClear
+                ecaRunner.evalRules(EntityEcaHandler.EV_CACHE_CLEAR, EntityEcaHandler.OP_CREATE, value, false);
+                this.clearCacheLine(value);
+            }
+            ecaRunner.evalRules(EntityEcaHandler.EV_RETURN, EntityEcaHandler.OP_CREATE, value, false);
+        }
+        for (int i = 0; i < toStoreList.size(); i++) {
+            GenericValue value = toStoreList.get(i);
+            // doCacheClear
+            ecaRunner.evalRules(EntityEcaHandler.EV_CACHE_CLEAR, EntityEcaHandler.OP_STORE, value, false);
+            this.clearCacheLine(value);
+            if (testMode) {
+                storeForTestRollback(new TestOperation(OperationType.UPDATE, oldValueList.get(i)));
+            }
+            if (value.lockEnabled()) {
+                refresh(value);
+            }
+            ecaRunner.evalRules(EntityEcaHandler.EV_RETURN, EntityEcaHandler.OP_STORE, value, false);
+        }
+        return numberChanged;
+    }
+
     /* (non-Javadoc)
      * @see org.ofbiz.entity.Delegator#removeAll(java.lang.String)
      */
@@ -1403,6 +1591,94 @@ public class GenericDelegator implements Delegator {
         }
     }
 
+    /* (non-Javadoc)
+     * @see org.ofbiz.entity.Delegator#removeAll(java.util.List, org.ofbiz.entity.util.EntityStoreOptions)
+     */
+    @Override
+    public int removeAll(List<? extends GenericEntity> dummyPKs, EntityStoreOptions storeOptions) throws GenericEntityException { // SCIPIO: 3.0.0: Added
+        if (dummyPKs == null) {
+            return 0;
+        }
+        if (storeOptions == null || !storeOptions.isBatch()) {
+            return removeAll(dummyPKs);
+        }
+
+        boolean beganTransaction = false;
+        int numRemoved = 0;
+        try {
+            beganTransaction = TransactionUtil.begin();
+
+            // consecutive full primary keys of the same entity are removed in JDBC batches; partial keys go through removeByAnd
+            List<GenericPK> run = new ArrayList<>(storeOptions.getBatchSize());
+            for (GenericEntity value : dummyPKs) {
+                if (!run.isEmpty() && (run.size() >= storeOptions.getBatchSize() || !value.containsPrimaryKey()
+                        || !run.get(0).getEntityName().equals(value.getEntityName()))) {
+                    numRemoved += removeAllBatchRun(run, storeOptions);
+                    run.clear();
+                }
+                if (value.containsPrimaryKey()) {
+                    run.add(value.getPrimaryKey());
+                } else {
+                    numRemoved += this.removeByAnd(value.getEntityName(), value.getAllFields());
+                }
+            }
+            if (!run.isEmpty()) {
+                numRemoved += removeAllBatchRun(run, storeOptions);
+            }
+
+            TransactionUtil.commit(beganTransaction);
+            return numRemoved;
+        } catch (GenericEntityException e) {
+            String errMsg = "Failure in removeAll batch operation: " + e.toString() + ". Rolling back transaction.";
+            Debug.logError(e, errMsg, module);
+            TransactionUtil.rollback(beganTransaction, errMsg, e);
+            throw new GenericEntityException(e);
+        }
+    }
+
+    private int removeAllBatchRun(List<GenericPK> run, EntityStoreOptions storeOptions) throws GenericEntityException {
+        ModelEntity modelEntity = run.get(0).getModelEntity();
+        String entityName = modelEntity.getEntityName();
+        GenericHelper helper = getEntityHelper(entityName);
+        EntityEcaRuleRunner<?> ecaRunner = this.getEcaRuleRunner(entityName);
+
+        for (GenericPK primaryKey : run) {
+            ecaRunner.evalRules(EntityEcaHandler.EV_VALIDATE, EntityEcaHandler.OP_REMOVE, primaryKey, false);
+            ecaRunner.evalRules(EntityEcaHandler.EV_RUN, EntityEcaHandler.OP_REMOVE, primaryKey, false);
+        }
+
+        // if audit log on for any fields or in test mode, get the old values before removing so they're still there
+        List<GenericValue> removedValues = null;
+        if (modelEntity.getHasFieldWithAuditLog() || testMode) {
+            removedValues = helper.findAllByPrimaryKeys(modelEntity, run, storeOptions.getKeyChunkSize());
+            if (modelEntity.getHasFieldWithAuditLog()) {
+                for (GenericValue removedValue : removedValues) {
+                    createEntityAuditLogAll(removedValue, true, true);
+                }
+            }
+        }
+
+        int num = helper.removeAllByPrimaryKey(modelEntity, run, storeOptions.getBatchSize());
+
+        for (GenericPK primaryKey : run) {
+            // doCacheClear
+            ecaRunner.evalRules(EntityEcaHandler.EV_CACHE_CLEAR, EntityEcaHandler.OP_REMOVE, primaryKey, false);
+            this.clearCacheLine(primaryKey);
+            if (saveEntitySyncRemoveInfo) {
+                this.saveEntitySyncRemoveInfo(primaryKey);
+            }
+        }
+        if (testMode) {
+            for (GenericValue removedValue : removedValues) {
+                storeForTestRollback(new TestOperation(OperationType.DELETE, removedValue));
+            }
+        }
+        for (GenericPK primaryKey : run) {
+            ecaRunner.evalRules(EntityEcaHandler.EV_RETURN, EntityEcaHandler.OP_REMOVE, primaryKey, false);
+        }
+        return num;
+    }
+
     // ======================================
     // ======= Find Methods =================
     // ======================================
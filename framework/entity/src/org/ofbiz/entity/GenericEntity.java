@@ -34,6 +34,8 @@ import org.ofbiz.base.util.*;
 import org.ofbiz.base.util.Base64;
 import org.ofbiz.base.util.Observable;
 import org.ofbiz.base.util.Observer;
+import org.ofbiz.base.util.cache.CacheWeighable;
+import org.ofbiz.base.util.cache.CacheWeighers;
 import org.ofbiz.base.util.collections.LocalizedMap;
 import org.ofbiz.entity.condition.EntityCondition;
 import org.ofbiz.entity.condition.EntityFieldMap;
@@ -58,7 +60,7 @@ import org.w3c.dom.Element;
  *
  */
 @SuppressWarnings("serial")
-public class GenericEntity implements ScipioMap<String, Object>, LocalizedMap<Object>, Serializable, Comparable<GenericEntity>, Cloneable {
+public class GenericEntity implements ScipioMap<String, Object>, LocalizedMap<Object>, Serializable, Comparable<GenericEntity>, Cloneable, CacheWeighable { // SCIPIO: 3.0.0: CacheWeighable
 
     private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
     public static final GenericEntity NULL_ENTITY = new NullGenericEntity();
@@ -2296,6 +2298,23 @@ public class GenericEntity implements ScipioMap<String, Object>, LocalizedMap<Ob
         return cachedHashCode;
     }
 
+    /**
+     * Returns the estimated retained size of this value in bytes, for weight-bounded entity caches: the object itself,
+     * its fields map with one node per field, and the field values. Field names are shared with the entity model.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    @Override
+    public long getCacheWeight() {
+        long weight = 96 + 36L * fields.size();
+        for (Object value : fields.values()) {
+            weight += CacheWeighers.estimateSize(value);
+        }
+        if (originalDbValues != null) {
+            weight += CacheWeighers.estimateSize(originalDbValues);
+        }
+        return weight;
+    }
+
     /**
      * Creates a String for the entity, overrides the default toString
      * This method is secure, it will not display encrypted fields
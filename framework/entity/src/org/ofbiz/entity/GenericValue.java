@@ -19,8 +19,10 @@
 
 package org.ofbiz.entity;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -28,6 +30,9 @@ import java.util.Objects;
 import org.ofbiz.base.util.Debug;
 import org.ofbiz.base.util.UtilMisc;
 import org.ofbiz.entity.model.ModelEntity;
+import org.ofbiz.entity.model.ModelKeyMap;
+import org.ofbiz.entity.model.ModelRelation;
+import org.ofbiz.entity.util.EntityUtil;
 
 
 /**
@@ -41,6 +46,9 @@ public class GenericValue extends GenericEntity {
 
     public static final GenericValue NULL_VALUE = new NullGenericValue();
 
+    /** SCIPIO: 3.0.0: Related values attached by {@link org.ofbiz.entity.util.EntityUtil#prefetchRelated}, by relation name; never copied. */
+    private transient Map<String, PrefetchedRelated> prefetchedRelated;
+
     /** Creates new GenericValue */
     public static GenericValue create(ModelEntity modelEntity) {
         GenericValue newValue = new GenericValue();
@@ -99,10 +107,12 @@ public class GenericValue extends GenericEntity {
     }
 
     public void refresh() throws GenericEntityException {
+        this.clearPrefetchedRelated(); // SCIPIO
         this.getDelegator().refresh(this);
     }
 
     public void refreshFromCache() throws GenericEntityException {
+        this.clearPrefetchedRelated(); // SCIPIO
         this.getDelegator().refreshFromCache(this);
     }
     
@@ -262,6 +272,124 @@ public class GenericValue extends GenericEntity {
         return this.getDelegator().getRelatedDummyPK(relationName, byAndFields, this);
     }
 
+    /**
+     * Returns a copy of the related values previously attached for the named relation by
+     * {@link org.ofbiz.entity.util.EntityUtil#prefetchRelated(Collection, boolean, String...)}, or null if none were
+     * attached or the relation key fields of this value changed since.
+     * <p>Attached values are only returned by this method, {@link #getRelatedPrefetched} and {@link #getRelatedOnePrefetched};
+     * the regular <code>getRelated*</code> methods always look up the database or entity cache. Mutable values are cloned,
+     * so the caller may modify the result; entity cache values are returned as is, like from the cache.</p>
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public List<GenericValue> getPrefetchedRelated(String relationName) {
+        List<GenericValue> values = findPrefetchedRelated(relationName);
+        return (values != null) ? copyPrefetchedRelated(values) : null;
+    }
+
+    /**
+     * Returns the related values attached for the named relation by
+     * {@link org.ofbiz.entity.util.EntityUtil#prefetchRelated(Collection, boolean, String...)}, filtered by
+     * <code>byAndFields</code> and ordered by <code>orderBy</code> in memory, or if none are attached (or the relation key
+     * fields of this value changed since), looks them up using {@link #getRelated(String, Map, List, boolean)} without cache.
+     * <p>See {@link #getPrefetchedRelated(String)}.</p>
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public List<GenericValue> getRelatedPrefetched(String relationName, Map<String, ? extends Object> byAndFields, List<String> orderBy) throws GenericEntityException {
+        List<GenericValue> values = findPrefetchedRelated(relationName);
+        if (values == null) {
+            return getRelated(relationName, byAndFields, orderBy, false);
+        }
+        return copyPrefetchedRelated(EntityUtil.orderBy(EntityUtil.filterByAnd(values, byAndFields), orderBy));
+    }
+
+    /**
+     * Returns the related value attached for the named "one" relation by
+     * {@link org.ofbiz.entity.util.EntityUtil#prefetchRelated(Collection, boolean, String...)}, or if none is attached
+     * (or the relation key fields of this value changed since), looks it up using {@link #getRelatedOne(String, boolean)} without cache.
+     * <p>See {@link #getPrefetchedRelated(String)}.</p>
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public GenericValue getRelatedOnePrefetched(String relationName) throws GenericEntityException {
+        List<GenericValue> values = findPrefetchedRelated(relationName);
+        if (values == null) {
+            return getRelatedOne(relationName, false);
+        }
+        return values.isEmpty() ? null : copyPrefetchedRelated(values.get(0));
+    }
+
+    /**
+     * Attaches the related values for the named relation, for {@link #getPrefetchedRelated(String)},
+     * {@link #getRelatedPrefetched} and {@link #getRelatedOnePrefetched}, as long as the relation key fields of this
+     * value are unchanged. Ignored for immutable (entity cache) values, which may be shared between threads.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public void setPrefetchedRelated(String relationName, List<GenericValue> values) {
+        if (!isMutable()) {
+            return;
+        }
+        ModelRelation relation = getModelEntity().getRelation(relationName);
+        if (relation == null) {
+            throw new IllegalArgumentException("Could not find relation for relationName: " + relationName + " for value " + this);
+        }
+        if (prefetchedRelated == null) {
+            prefetchedRelated = new HashMap<>();
+        }
+        prefetchedRelated.put(relationName, new PrefetchedRelated(getRelationKeyValues(relation), values));
+    }
+
+    /** Removes all related values attached using {@link #setPrefetchedRelated(String, List)} (SCIPIO). */
+    public void clearPrefetchedRelated() {
+        prefetchedRelated = null;
+    }
+
+    private List<GenericValue> findPrefetchedRelated(String relationName) { // SCIPIO
+        Map<String, PrefetchedRelated> prefetchedRelated = this.prefetchedRelated;
+        if (prefetchedRelated == null) {
+            return null;
+        }
+        PrefetchedRelated related = prefetchedRelated.get(relationName);
+        if (related == null) {
+            return null;
+        }
+        ModelRelation relation = getModelEntity().getRelation(relationName);
+        if (relation == null || !Arrays.equals(related.keyValues, getRelationKeyValues(relation))) {
+            return null;
+        }
+        return related.values;
+    }
+
+    private static List<GenericValue> copyPrefetchedRelated(List<GenericValue> values) { // SCIPIO
+        List<GenericValue> result = new ArrayList<>(values.size());
+        for (GenericValue value : values) {
+            result.add(copyPrefetchedRelated(value));
+        }
+        return result;
+    }
+
+    private static GenericValue copyPrefetchedRelated(GenericValue value) { // SCIPIO
+        // Attached values are shared by all the values with the same key, so callers get their own mutable copies
+        return value.isMutable() ? GenericValue.create(value) : value;
+    }
+
+    private Object[] getRelationKeyValues(ModelRelation relation) { // SCIPIO
+        List<ModelKeyMap> keyMaps = relation.getKeyMaps();
+        Object[] keyValues = new Object[keyMaps.size()];
+        for (int i = 0; i < keyValues.length; i++) {
+            keyValues[i] = get(keyMaps.get(i).getFieldName());
+        }
+        return keyValues;
+    }
+
+    private static final class PrefetchedRelated { // SCIPIO
+        final Object[] keyValues;
+        final List<GenericValue> values;
+
+        PrefetchedRelated(Object[] keyValues, List<GenericValue> values) {
+            this.keyValues = keyValues;
+            this.values = values;
+        }
+    }
+
     /**
      * SCIPIO: Extracts a member entity value from the given view-entity value, straight from its fields in memory,
      * for the given view-entity entity alias OR entity name. The view-entity must map all fields of the member,
@@ -21,11 +21,13 @@ package org.ofbiz.entity.cache;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import org.ofbiz.base.util.Debug;
 import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.base.util.UtilProperties;
 import org.ofbiz.base.util.cache.UtilCache;
 import org.ofbiz.entity.GenericEntity;
 import org.ofbiz.entity.GenericPK;
@@ -37,6 +39,14 @@ public abstract class AbstractEntityConditionCache<K, V> extends AbstractCache<E
 
     private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
 
+    /**
+     * SCIPIO: If true, storeHook uses an {@link EntityConditionCacheIndex} per entity to only evaluate the cached
+     * conditions a stored value can affect, instead of all cached conditions of the entity.
+     */
+    private static final boolean CONDITION_INDEX = UtilProperties.getPropertyAsBoolean("cache", "entitycache.condition.index", true);
+
+    private final ConcurrentMap<String, EntityConditionCacheIndex> conditionIndexes = new ConcurrentHashMap<>(); // SCIPIO
+
     protected AbstractEntityConditionCache(String delegatorName, String id) {
         super(delegatorName, id);
     }
@@ -66,12 +76,35 @@ public abstract class AbstractEntityConditionCache<K, V> extends AbstractCache<E
      * Removes all condition caches that include the specified entity.
      */
     public void remove(GenericEntity entity) {
-        UtilCache.clearCache(getCacheName(entity.getEntityName()));
+        clearCache(entity.getEntityName());
         ModelEntity model = entity.getModelEntity();
         Iterator<String> it = model.getViewConvertorsIterator();
         while (it.hasNext()) {
             String targetEntityName = it.next();
-            UtilCache.clearCache(getCacheName(targetEntityName));
+            clearCache(targetEntityName);
+        }
+    }
+
+    /**
+     * SCIPIO: Also clears the condition indexes.
+     */
+    @Override
+    public void clear() {
+        for (String entityName : conditionIndexes.keySet()) {
+            clearCache(entityName);
+        }
+        super.clear();
+    }
+
+    /**
+     * SCIPIO: Clears the condition cache of the entity, along with its condition index.
+     */
+    private void clearCache(String entityName) {
+        EntityConditionCacheIndex index = conditionIndexes.get(entityName);
+        if (index != null) {
+            index.clear(() -> UtilCache.clearCache(getCacheName(entityName)));
+        } else {
+            UtilCache.clearCache(getCacheName(entityName));
         }
     }
 
@@ -114,11 +147,27 @@ public abstract class AbstractEntityConditionCache<K, V> extends AbstractCache<E
         ConcurrentMap<K, V> conditionCache = utilCache.get(conditionKey);
         if (conditionCache == null) {
             conditionCache = new ConcurrentHashMap<>();
-            utilCache.put(conditionKey, conditionCache);
+            if (CONDITION_INDEX) { // SCIPIO: index the condition before it becomes visible in the cache
+                EntityConditionCacheIndex index = conditionIndexes.computeIfAbsent(entityName, k -> new EntityConditionCacheIndex());
+                ConcurrentMap<K, V> newConditionCache = conditionCache;
+                index.addAndPut(conditionKey, () -> utilCache.put(conditionKey, newConditionCache));
+                index.rebuildIfStale(utilCache);
+            } else {
+                utilCache.put(conditionKey, conditionCache);
+            }
         }
         return conditionCache;
     }
 
+    /**
+     * SCIPIO: Returns the condition index statistics for the entity (see {@link EntityConditionCacheIndex#getStats()}),
+     * or null if it has no index.
+     */
+    public Map<String, Object> getConditionIndexStats(String entityName) {
+        EntityConditionCacheIndex index = conditionIndexes.get(entityName);
+        return (index != null) ? index.getStats() : null;
+    }
+
     protected static final <K,V> boolean isNull(Map<K,V> value) {
         return value == null || value == GenericEntity.NULL_ENTITY || value == GenericValue.NULL_VALUE;
     }
@@ -182,46 +231,124 @@ public abstract class AbstractEntityConditionCache<K, V> extends AbstractCache<E
         if (entityCache == null) {
             return;
         }
+        EntityConditionCacheIndex index = conditionIndexes.get(entityName); // SCIPIO
+        if (index != null && storeHookIndexed(index, entityCache, entityName, isPK, oldValues, newValues)) {
+            return;
+        }
+        int evaluated = 0;
         for (EntityCondition condition: entityCache.getCacheLineKeys()) {
-            boolean shouldRemove = false;
-            if (condition == null) {
-                shouldRemove = true;
-            } else if (oldValues == null) {
-                Iterator<T2> newValueIter = newValues.iterator();
-                while (newValueIter.hasNext() && !shouldRemove) {
-                    T2 newValue = newValueIter.next();
-                    shouldRemove |= condition.mapMatches(getDelegator(), newValue);
+            evaluated++;
+            if (shouldRemove(condition, isPK, oldValues, newValues)) {
+                removeMatched(entityCache, entityName, condition);
+            }
+        }
+        if (index != null) {
+            index.noteFullScan(evaluated);
+        }
+    }
+
+    /**
+     * SCIPIO: storeHook through the condition index: only evaluates the indexed conditions that the stored values
+     * can match, plus the unindexed ones. Returns false if the index cannot tell, in which case the caller scans.
+     * <p>
+     * For PK stores, a condition that no old value matches is removed (see {@link #shouldRemove}), so all cached
+     * conditions are still visited, but the ones the index rules out are removed without evaluation.
+     */
+    private <T1 extends Map<String, Object>, T2 extends Map<String, Object>> boolean storeHookIndexed(EntityConditionCacheIndex index,
+            UtilCache<EntityCondition, Map<K, V>> entityCache, String entityName, boolean isPK, List<T1> oldValues, List<T2> newValues) {
+        EntityConditionCacheIndex.Terms terms = index.getTerms();
+        // a condition can only be removed if an old value matches it, or for new entities if a new value matches it
+        Set<EntityCondition> candidates = (oldValues == null) ? terms.getCandidates(newValues) : terms.getCandidates(oldValues);
+        if (candidates == null) {
+            return false;
+        }
+        Set<EntityCondition> unindexed = terms.getUnindexed();
+        int indexHits = 0;
+        int scanEvaluations = 0;
+        int skipped = 0;
+        if (isPK && oldValues != null) {
+            for (EntityCondition condition: entityCache.getCacheLineKeys()) {
+                boolean remove;
+                if (condition == null || unindexed.contains(condition)) {
+                    scanEvaluations++;
+                    remove = shouldRemove(condition, isPK, oldValues, newValues);
+                } else if (candidates.contains(condition)) {
+                    indexHits++;
+                    remove = shouldRemove(condition, isPK, oldValues, newValues);
+                } else {
+                    skipped++;
+                    remove = true; // no old value can match
                 }
-            } else {
-                boolean oldMatched = false;
-                Iterator<T1> oldValueIter = oldValues.iterator();
-                while (oldValueIter.hasNext() && !shouldRemove) {
-                    T1 oldValue = oldValueIter.next();
-                    if (condition.mapMatches(getDelegator(), oldValue)) {
-                        oldMatched = true;
-                        if (newValues != null) {
-                            Iterator<T2> newValueIter = newValues.iterator();
-                            while (newValueIter.hasNext() && !shouldRemove) {
-                                T2 newValue = newValueIter.next();
-                                shouldRemove |= isNull(newValue) || condition.mapMatches(getDelegator(), newValue);
-                            }
-                        } else {
-                            shouldRemove = true;
-                        }
-                    }
+                if (remove) {
+                    removeMatched(entityCache, entityName, condition);
                 }
-                // QUESTION: what is this? why would we do this?
-                if (!oldMatched && isPK) {
-                    shouldRemove = true;
+            }
+        } else {
+            if (entityCache.containsKey(null)) {
+                removeMatched(entityCache, entityName, null);
+            }
+            for (EntityCondition condition: candidates) {
+                indexHits++;
+                if (shouldRemove(condition, isPK, oldValues, newValues)) {
+                    removeMatched(entityCache, entityName, condition);
                 }
             }
-            if (shouldRemove) {
-                if (Debug.verboseOn()) {
-                    Debug.logVerbose("In storeHook, matched condition, removing from cache for entityName [" + entityName + "] in cache with name [" + entityCache.getName() + "] entry with condition: " + condition, module);
+            for (EntityCondition condition: unindexed) {
+                scanEvaluations++;
+                if (shouldRemove(condition, isPK, oldValues, newValues)) {
+                    removeMatched(entityCache, entityName, condition);
                 }
-                // doesn't work anymore since this is a copy of the cache keySet, can call remove directly though with a concurrent mod exception: cacheKeyIter.remove();
-                entityCache.remove(condition);
             }
+            skipped = Math.max(0, entityCache.size() - indexHits - scanEvaluations);
+        }
+        index.noteIndexedStore(indexHits, scanEvaluations, skipped);
+        return true;
+    }
+
+    /**
+     * SCIPIO: Returns true if a store of the given old/new values must remove the cached condition (factored out of storeHook).
+     */
+    protected <T1 extends Map<String, Object>, T2 extends Map<String, Object>> boolean shouldRemove(EntityCondition condition, boolean isPK, List<T1> oldValues, List<T2> newValues) {
+        boolean shouldRemove = false;
+        if (condition == null) {
+            shouldRemove = true;
+        } else if (oldValues == null) {
+            Iterator<T2> newValueIter = newValues.iterator();
+            while (newValueIter.hasNext() && !shouldRemove) {
+                T2 newValue = newValueIter.next();
+                shouldRemove |= condition.mapMatches(getDelegator(), newValue);
+            }
+        } else {
+            boolean oldMatched = false;
+            Iterator<T1> oldValueIter = oldValues.iterator();
+            while (oldValueIter.hasNext() && !shouldRemove) {
+                T1 oldValue = oldValueIter.next();
+                if (condition.mapMatches(getDelegator(), oldValue)) {
+                    oldMatched = true;
+                    if (newValues != null) {
+                        Iterator<T2> newValueIter = newValues.iterator();
+                        while (newValueIter.hasNext() && !shouldRemove) {
+                            T2 newValue = newValueIter.next();
+                            shouldRemove |= isNull(newValue) || condition.mapMatches(getDelegator(), newValue);
+                        }
+                    } else {
+                        shouldRemove = true;
+                    }
+                }
+            }
+            // QUESTION: what is this? why would we do this?
+            if (!oldMatched && isPK) {
+                shouldRemove = true;
+            }
+        }
+        return shouldRemove;
+    }
+
+    private void removeMatched(UtilCache<EntityCondition, Map<K, V>> entityCache, String entityName, EntityCondition condition) {
+        if (Debug.verboseOn()) {
+            Debug.logVerbose("In storeHook, matched condition, removing from cache for entityName [" + entityName + "] in cache with name [" + entityCache.getName() + "] entry with condition: " + condition, module);
         }
+        // doesn't work anymore since this is a copy of the cache keySet, can call remove directly though with a concurrent mod exception: cacheKeyIter.remove();
+        entityCache.remove(condition);
     }
 }
@@ -0,0 +1,227 @@
+package org.ofbiz.entity.cache;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.ofbiz.base.util.cache.UtilCache;
+import org.ofbiz.entity.GenericEntity;
+import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityConditionListBase;
+import org.ofbiz.entity.condition.EntityConditionValue;
+import org.ofbiz.entity.condition.EntityExpr;
+import org.ofbiz.entity.condition.EntityFieldValue;
+import org.ofbiz.entity.condition.EntityOperator;
+
+/**
+ * SCIPIO: Invalidation index for the cached conditions of one entity in an {@link AbstractEntityConditionCache}.
+ * <p>
+ * Each cached condition is indexed under one of its AND-ed equality terms (field = value). A stored value can
+ * only match the condition if it has that value in that field, so storeHook only has to evaluate the conditions
+ * indexed under the stored values' field values, plus the conditions that have no such term (unindexed).
+ * <p>
+ * The index may hold conditions that are no longer cached (evicted, expired or cleared outside storeHook); these
+ * only cost an extra evaluation, and are dropped when the index grows well past the cache size and is rebuilt from
+ * the cache keys. Conditions are added before the cache put and under the read lock, so a rebuild, which holds the
+ * write lock, cannot lose a condition that is in the cache.
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+final class EntityConditionCacheIndex {
+
+    /** Number of stale index entries tolerated on top of the cache size before a rebuild. */
+    private static final int REBUILD_SLACK = 256;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile Terms terms = new Terms();
+
+    private final LongAdder indexHits = new LongAdder();
+    private final LongAdder scanEvaluations = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder indexedStores = new LongAdder();
+    private final LongAdder fullScans = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+
+    /**
+     * The index contents; replaced as a whole on rebuild so readers never see a partially rebuilt index.
+     */
+    static final class Terms {
+        private final ConcurrentMap<String, ConcurrentMap<Object, Set<EntityCondition>>> byField = new ConcurrentHashMap<>();
+        private final Set<EntityCondition> unindexed = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger size = new AtomicInteger();
+
+        private void add(EntityCondition condition) {
+            EntityExpr term = getEqualityTerm(condition);
+            boolean added;
+            if (term == null) {
+                added = unindexed.add(condition);
+            } else {
+                added = byField.computeIfAbsent(((EntityFieldValue) term.getLhs()).getFieldName(), k -> new ConcurrentHashMap<>())
+                        .computeIfAbsent(term.getRhs(), k -> ConcurrentHashMap.newKeySet()).add(condition);
+            }
+            if (added) {
+                size.incrementAndGet();
+            }
+        }
+
+        Set<EntityCondition> getUnindexed() {
+            return unindexed;
+        }
+
+        /**
+         * Returns the indexed conditions that can match any of the given values, or null if this cannot be
+         * determined (a value holds the wildcard), in which case all conditions must be evaluated.
+         */
+        <T extends Map<String, Object>> Set<EntityCondition> getCandidates(List<T> values) {
+            Set<EntityCondition> candidates = new HashSet<>();
+            if (values == null) {
+                return candidates;
+            }
+            for (Map.Entry<String, ConcurrentMap<Object, Set<EntityCondition>>> fieldEntry : byField.entrySet()) {
+                for (T value : values) {
+                    // NOTE: same lookup as EntityFieldValue.getValue, which EntityExpr.mapMatches uses for the lhs
+                    Object fieldValue = (value == null || value instanceof GenericEntity.NULL) ? null : value.get(fieldEntry.getKey());
+                    if (fieldValue == null) {
+                        continue; // indexed terms are never null
+                    }
+                    if (fieldValue == EntityOperator.WILDCARD) {
+                        return null;
+                    }
+                    Set<EntityCondition> conditions = fieldEntry.getValue().get(fieldValue);
+                    if (conditions != null) {
+                        candidates.addAll(conditions);
+                    }
+                }
+            }
+            return candidates;
+        }
+    }
+
+    Terms getTerms() {
+        return terms;
+    }
+
+    /**
+     * Adds the condition to the index and then runs the cache put, so that a concurrent storeHook or rebuild
+     * cannot miss it.
+     */
+    void addAndPut(EntityCondition condition, Runnable cachePut) {
+        lock.readLock().lock();
+        try {
+            if (condition != null) {
+                terms.add(condition);
+            }
+            cachePut.run();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the index from the cache keys if it has accumulated too many conditions that are no longer cached.
+     */
+    void rebuildIfStale(UtilCache<EntityCondition, ?> cache) {
+        if (terms.size.get() <= (cache.size() * 2L) + REBUILD_SLACK) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (terms.size.get() <= (cache.size() * 2L) + REBUILD_SLACK) {
+                return;
+            }
+            Terms newTerms = new Terms();
+            for (EntityCondition condition : cache.getCacheLineKeys()) {
+                if (condition != null) {
+                    newTerms.add(condition);
+                }
+            }
+            terms = newTerms;
+            rebuilds.increment();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Clears the cache and the index together.
+     */
+    void clear(Runnable cacheClear) {
+        lock.writeLock().lock();
+        try {
+            cacheClear.run();
+            terms = new Terms();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void noteIndexedStore(int indexHits, int scanEvaluations, int skipped) {
+        this.indexedStores.increment();
+        this.indexHits.add(indexHits);
+        this.scanEvaluations.add(scanEvaluations);
+        this.skipped.add(skipped);
+    }
+
+    void noteFullScan(int scanEvaluations) {
+        this.fullScans.increment();
+        this.scanEvaluations.add(scanEvaluations);
+    }
+
+    /**
+     * Returns the index statistics: indexed and unindexed condition counts, the number of store hooks served through
+     * the index and by full scan, and the number of conditions evaluated because the index selected them (indexHits),
+     * evaluated without index selection (scanEvaluations) and not evaluated at all (skipped).
+     */
+    Map<String, Object> getStats() {
+        Terms terms = this.terms;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("indexedConditions", terms.size.get() - terms.unindexed.size());
+        stats.put("unindexedConditions", terms.unindexed.size());
+        stats.put("indexedFields", terms.byField.size());
+        stats.put("indexedStores", indexedStores.sum());
+        stats.put("fullScans", fullScans.sum());
+        stats.put("indexHits", indexHits.sum());
+        stats.put("scanEvaluations", scanEvaluations.sum());
+        stats.put("skipped", skipped.sum());
+        stats.put("rebuilds", rebuilds.sum());
+        return stats;
+    }
+
+    /**
+     * Returns an equality term (field = constant) that every map matching the condition must satisfy, or null if
+     * there is none.
+     */
+    static EntityExpr getEqualityTerm(EntityCondition condition) {
+        if (condition instanceof EntityExpr) {
+            EntityExpr expr = (EntityExpr) condition;
+            Object operator = expr.getOperator();
+            if (operator == EntityOperator.EQUALS) {
+                Object rhs = expr.getRhs();
+                if (expr.getLhs() instanceof EntityFieldValue && rhs != null && rhs != GenericEntity.NULL_FIELD
+                        && rhs != EntityOperator.WILDCARD && !(rhs instanceof EntityConditionValue) && !(rhs instanceof EntityCondition)) {
+                    return expr;
+                }
+            } else if (operator == EntityOperator.AND && expr.getLhs() instanceof EntityCondition) {
+                EntityExpr term = getEqualityTerm((EntityCondition) expr.getLhs());
+                return (term != null) ? term : getEqualityTerm((EntityCondition) expr.getRhs());
+            }
+        } else if (condition instanceof EntityConditionListBase) {
+            EntityConditionListBase<?> list = (EntityConditionListBase<?>) condition;
+            if (list.getOperator() == EntityOperator.AND) {
+                for (int i = 0; i < list.getConditionListSize(); i++) {
+                    EntityExpr term = getEqualityTerm(list.getCondition(i));
+                    if (term != null) {
+                        return term;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
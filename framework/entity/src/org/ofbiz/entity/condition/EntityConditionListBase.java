@@ -52,7 +52,11 @@ public abstract class EntityConditionListBase<T extends EntityCondition> extends
         return this.conditionList.get(index);
     }
 
-    protected int getConditionListSize() {
+    /**
+     * Returns the number of conditions in the list.
+     * <p>SCIPIO: 3.0.0: Now public (was protected).</p>
+     */
+    public int getConditionListSize() {
         return this.conditionList.size();
     }
 
@@ -27,6 +27,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -121,6 +122,27 @@ public class GenericDAO {
             return singleUpdateView(entity, (ModelViewEntity) modelEntity, fieldsToSave, sqlP);
         }
 
+        setCreateStamps(entity, modelEntity, fieldsToSave);
+
+        String sql = makeInsertSql(modelEntity, fieldsToSave);
+
+        try {
+            sqlP.prepareStatement(sql);
+            SqlJdbcUtil.setValues(sqlP, fieldsToSave, entity, modelFieldTypeReader);
+            int retVal = sqlP.executeUpdate();
+
+            entity.synchronizedWithDatasource();
+            return retVal;
+        } catch (GenericEntityException e) {
+            throw new GenericEntityException("Error while inserting: " + entity.toString(), e);
+        }
+    }
+
+    /**
+     * Sets the create and last-updated stamp fields for an insert, adding them to fieldsToSave if missing.
+     * <p>SCIPIO: 3.0.0: Factored out of singleInsert so the batch insert can share it.</p>
+     */
+    private void setCreateStamps(GenericEntity entity, ModelEntity modelEntity, List<ModelField> fieldsToSave) {
         // if we have a STAMP_TX_FIELD or CREATE_STAMP_TX_FIELD then set it with NOW, always do this before the STAMP_FIELD
         // NOTE: these fairly complicated if statements have a few objectives:
         //   1. don't run the TransationUtil.getTransaction*Stamp() methods when we don't need to
@@ -153,24 +175,15 @@ public class GenericDAO {
                 addFieldIfMissing(fieldsToSave, ModelEntity.CREATE_STAMP_FIELD, modelEntity);
             }
         }
+    }
 
+    private String makeInsertSql(ModelEntity modelEntity, List<ModelField> fieldsToSave) {
         StringBuilder sqlB = new StringBuilder("INSERT INTO ").append(modelEntity.getTableName(datasource)).append(" (");
 
         modelEntity.colNameString(fieldsToSave, sqlB, "");
         sqlB.append(") VALUES (");
         modelEntity.fieldsStringList(fieldsToSave, sqlB, "?", ", ");
-        String sql = sqlB.append(")").toString();
-
-        try {
-            sqlP.prepareStatement(sql);
-            SqlJdbcUtil.setValues(sqlP, fieldsToSave, entity, modelFieldTypeReader);
-            int retVal = sqlP.executeUpdate();
-
-            entity.synchronizedWithDatasource();
-            return retVal;
-        } catch (GenericEntityException e) {
-            throw new GenericEntityException("Error while inserting: " + entity.toString(), e);
-        }
+        return sqlB.append(")").toString();
     }
 
     public int updateAll(GenericEntity entity) throws GenericEntityException {
@@ -234,6 +247,33 @@ public class GenericDAO {
             }
         }
 
+        setUpdateStamps(entity, modelEntity, fieldsToSave);
+
+        String sql = makeUpdateSql(modelEntity, fieldsToSave, entity);
+
+        int retVal = 0;
+
+        try {
+            sqlP.prepareStatement(sql);
+            SqlJdbcUtil.setValues(sqlP, fieldsToSave, entity, modelFieldTypeReader);
+            SqlJdbcUtil.setPkValues(sqlP, modelEntity, entity, modelFieldTypeReader);
+            retVal = sqlP.executeUpdate();
+            entity.synchronizedWithDatasource();
+        } catch (GenericEntityException e) {
+            throw new GenericEntityException("Error while updating: " + entity.toString(), e);
+        }
+
+        if (retVal == 0) {
+            throw new GenericEntityNotFoundException("Tried to update an entity that does not exist, entity: " + entity.toString());
+        }
+        return retVal;
+    }
+
+    /**
+     * Sets the last-updated stamp fields for an update, adding them to fieldsToSave if missing.
+     * <p>SCIPIO: 3.0.0: Factored out of singleUpdate so the batch update can share it.</p>
+     */
+    private void setUpdateStamps(GenericEntity entity, ModelEntity modelEntity, List<ModelField> fieldsToSave) {
         // if we have a STAMP_TX_FIELD then set it with NOW, always do this before the STAMP_FIELD
         // NOTE: these fairly complicated if statements have a few objectives:
         //   1. don't run the TransationUtil.getTransaction*Stamp() methods when we don't need to
@@ -248,28 +288,14 @@ public class GenericDAO {
             entity.set(ModelEntity.STAMP_FIELD, TransactionUtil.getTransactionUniqueNowStamp());
             addFieldIfMissing(fieldsToSave, ModelEntity.STAMP_FIELD, modelEntity);
         }
+    }
 
+    private String makeUpdateSql(ModelEntity modelEntity, List<ModelField> fieldsToSave, GenericEntity entity) {
         StringBuilder sql = new StringBuilder().append("UPDATE ").append(modelEntity.getTableName(datasource)).append(" SET ");
         modelEntity.colNameString(fieldsToSave, sql, "", "=?, ", "=?", false);
         sql.append(" WHERE ");
         SqlJdbcUtil.makeWhereStringFromFields(sql, modelEntity.getPkFieldsUnmodifiable(), entity, "AND");
-
-        int retVal = 0;
-
-        try {
-            sqlP.prepareStatement(sql.toString());
-            SqlJdbcUtil.setValues(sqlP, fieldsToSave, entity, modelFieldTypeReader);
-            SqlJdbcUtil.setPkValues(sqlP, modelEntity, entity, modelFieldTypeReader);
-            retVal = sqlP.executeUpdate();
-            entity.synchronizedWithDatasource();
-        } catch (GenericEntityException e) {
-            throw new GenericEntityException("Error while updating: " + entity.toString(), e);
-        }
-
-        if (retVal == 0) {
-            throw new GenericEntityNotFoundException("Tried to update an entity that does not exist, entity: " + entity.toString());
-        }
-        return retVal;
+        return sql.toString();
     }
 
     public int updateByCondition(Delegator delegator, ModelEntity modelEntity, Map<String, ? extends Object> fieldsToSet, EntityCondition condition) throws GenericEntityException {
@@ -1154,6 +1180,213 @@ public class GenericDAO {
         return sqlP.executeUpdate();
     }
 
+    /* ====================================================================== */
+    /* SCIPIO: 3.0.0: JDBC batch operations */
+
+    private enum BatchOperation {
+        INSERT,
+        UPDATE,
+        DELETE
+    }
+
+    /** Binds the statement parameters of one batched row. */
+    @FunctionalInterface
+    private interface BatchRowBinder {
+        void bind(SQLProcessor sqlP, GenericEntity entity) throws GenericEntityException;
+    }
+
+    /**
+     * Inserts the given values of one entity using JDBC statement batching, executing the batch every batchSize rows.
+     * <p>View entities are not batched and are inserted one by one.</p>
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public int insertBatch(ModelEntity modelEntity, List<? extends GenericEntity> entities, int batchSize) throws GenericEntityException {
+        if (UtilValidate.isEmpty(entities)) {
+            return 0;
+        }
+        if (modelEntity instanceof ModelViewEntity) {
+            int retVal = 0;
+            for (GenericEntity entity : entities) {
+                retVal += insert(entity);
+            }
+            return retVal;
+        }
+
+        List<ModelField> fieldsToSave = modelEntity.getFieldsUnmodifiable();
+        for (GenericEntity entity : entities) {
+            setCreateStamps(entity, modelEntity, fieldsToSave);
+        }
+        return executeBatch(modelEntity, makeInsertSql(modelEntity, fieldsToSave), entities, batchSize, BatchOperation.INSERT,
+                (sqlP, entity) -> SqlJdbcUtil.setValues(sqlP, fieldsToSave, entity, modelFieldTypeReader));
+    }
+
+    /**
+     * Updates the non-pk fields present in each of the given values of one entity using JDBC statement batching.
+     * <p>Values are grouped by statement shape (the set of fields they update), so each group shares one prepared statement.
+     * View entities and entities with optimistic locking are not batched and are updated one by one.</p>
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public int updateBatch(ModelEntity modelEntity, List<? extends GenericEntity> entities, int batchSize) throws GenericEntityException {
+        if (UtilValidate.isEmpty(entities)) {
+            return 0;
+        }
+        if (modelEntity instanceof ModelViewEntity || modelEntity.lock()) {
+            int retVal = 0;
+            for (GenericEntity entity : entities) {
+                retVal += update(entity);
+            }
+            return retVal;
+        }
+
+        int retVal = 0;
+        Map<List<ModelField>, List<GenericEntity>> entitiesByShape = new LinkedHashMap<>();
+        for (GenericEntity entity : entities) {
+            List<ModelField> partialFields = new ArrayList<>(modelEntity.getNopksSize());
+            Collection<String> keys = entity.getAllKeys();
+            Iterator<ModelField> nopkIter = modelEntity.getNopksIterator();
+            while (nopkIter.hasNext()) {
+                ModelField curField = nopkIter.next();
+                if (keys.contains(curField.getName())) {
+                    partialFields.add(curField);
+                }
+            }
+            if (partialFields.isEmpty()) {
+                // same as singleUpdate: nothing to update counts as effectively updated
+                retVal++;
+                continue;
+            }
+            setUpdateStamps(entity, modelEntity, partialFields);
+            entitiesByShape.computeIfAbsent(partialFields, k -> new ArrayList<>()).add(entity);
+        }
+        for (Map.Entry<List<ModelField>, List<GenericEntity>> entry : entitiesByShape.entrySet()) {
+            List<ModelField> fieldsToSave = entry.getKey();
+            List<GenericEntity> shapeEntities = entry.getValue();
+            retVal += executeBatch(modelEntity, makeUpdateSql(modelEntity, fieldsToSave, shapeEntities.get(0)), shapeEntities, batchSize, BatchOperation.UPDATE,
+                    (sqlP, entity) -> {
+                        SqlJdbcUtil.setValues(sqlP, fieldsToSave, entity, modelFieldTypeReader);
+                        SqlJdbcUtil.setPkValues(sqlP, modelEntity, entity, modelFieldTypeReader);
+                    });
+        }
+        return retVal;
+    }
+
+    /**
+     * Deletes the given primary keys of one entity using JDBC statement batching.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public int deleteBatch(ModelEntity modelEntity, List<? extends GenericEntity> entities, int batchSize) throws GenericEntityException {
+        if (UtilValidate.isEmpty(entities)) {
+            return 0;
+        }
+        if (modelEntity instanceof ModelViewEntity) {
+            throw new org.ofbiz.entity.GenericNotImplementedException("Operation delete not supported yet for view entities");
+        }
+
+        StringBuilder sql = new StringBuilder().append("DELETE FROM ").append(modelEntity.getTableName(datasource)).append(" WHERE ");
+        SqlJdbcUtil.makeWhereStringFromFields(sql, modelEntity.getPkFieldsUnmodifiable(), entities.get(0), "AND");
+        return executeBatch(modelEntity, sql.toString(), entities, batchSize, BatchOperation.DELETE,
+                (sqlP, entity) -> SqlJdbcUtil.setPkValues(sqlP, modelEntity, entity, modelFieldTypeReader));
+    }
+
+    private int executeBatch(ModelEntity modelEntity, String sql, List<? extends GenericEntity> entities, int batchSize,
+            BatchOperation operation, BatchRowBinder binder) throws GenericEntityException {
+        Delegator delegator = entities.get(0).getDelegator();
+        try (SQLProcessor sqlP = new SQLProcessor(delegator, helperInfo)) {
+            try {
+                sqlP.prepareStatement(sql);
+                boolean useBatch = batchSize > 1 && sqlP.supportsBatchUpdates();
+                int retVal = 0;
+                int batchStart = 0;
+                for (int i = 0; i < entities.size(); i++) {
+                    GenericEntity entity = entities.get(i);
+                    binder.bind(sqlP, entity);
+                    if (!useBatch) {
+                        retVal += checkBatchCount(sqlP.executeUpdate(), entity, operation);
+                        continue;
+                    }
+                    sqlP.addBatch();
+                    if ((i + 1 - batchStart) >= batchSize || i == (entities.size() - 1)) {
+                        int[] counts = sqlP.executeBatch();
+                        for (int j = 0; j < counts.length; j++) {
+                            retVal += checkBatchCount(counts[j], entities.get(batchStart + j), operation);
+                        }
+                        batchStart = i + 1;
+                    }
+                }
+                for (GenericEntity entity : entities) {
+                    if (operation == BatchOperation.DELETE) {
+                        entity.removedFromDatasource();
+                    } else {
+                        entity.synchronizedWithDatasource();
+                    }
+                }
+                if (Debug.verboseOn()) Debug.logVerbose("Batch " + operation + " of " + entities.size() + " rows of entity [" + modelEntity.getEntityName() + "] affected " + retVal + " rows", module);
+                return retVal;
+            } catch (GenericEntityException e) {
+                sqlP.rollback();
+                // no need to create nested, just throw original which will have all info
+                throw e;
+            }
+        }
+    }
+
+    private static int checkBatchCount(int count, GenericEntity entity, BatchOperation operation) throws GenericEntityException {
+        if (count == java.sql.Statement.SUCCESS_NO_INFO) {
+            return 1;
+        } else if (count == java.sql.Statement.EXECUTE_FAILED) {
+            throw new GenericEntityException("Batch " + operation + " failed for entity: " + entity);
+        } else if (count == 0 && operation == BatchOperation.UPDATE) {
+            throw new GenericEntityNotFoundException("Tried to update an entity that does not exist, entity: " + entity);
+        }
+        return count;
+    }
+
+    /**
+     * Selects the values for the given primary keys of one entity, using chunked <code>IN (...)</code> queries
+     * (or OR-ed AND conditions for multi-field primary keys) of at most chunkSize keys each.
+     * <p>The returned list only contains the values found; order is not guaranteed.</p>
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public List<GenericValue> selectByPrimaryKeys(Delegator delegator, ModelEntity modelEntity, List<? extends GenericEntity> primaryKeys, int chunkSize) throws GenericEntityException {
+        if (UtilValidate.isEmpty(primaryKeys)) {
+            return new ArrayList<>();
+        }
+        if (modelEntity.getPksSize() <= 0) {
+            throw new GenericEntityException("Entity has no primary keys, cannot select by primary key");
+        }
+        if (chunkSize <= 0) {
+            chunkSize = primaryKeys.size();
+        }
+
+        List<GenericValue> results = new ArrayList<>(primaryKeys.size());
+        List<ModelField> pkFields = modelEntity.getPkFieldsUnmodifiable();
+        for (int start = 0; start < primaryKeys.size(); start += chunkSize) {
+            List<? extends GenericEntity> chunk = primaryKeys.subList(start, Math.min(start + chunkSize, primaryKeys.size()));
+            EntityCondition condition;
+            if (pkFields.size() == 1) {
+                String pkName = pkFields.get(0).getName();
+                List<Object> pkValues = new ArrayList<>(chunk.size());
+                for (GenericEntity primaryKey : chunk) {
+                    pkValues.add(primaryKey.get(pkName));
+                }
+                condition = EntityCondition.makeCondition(pkName, EntityOperator.IN, pkValues);
+            } else {
+                List<EntityCondition> pkConds = new ArrayList<>(chunk.size());
+                for (GenericEntity primaryKey : chunk) {
+                    pkConds.add(EntityCondition.makeCondition(primaryKey.getPrimaryKey().getAllFields()));
+                }
+                condition = EntityCondition.makeCondition(pkConds, EntityOperator.OR);
+            }
+            try (EntityListIterator eli = selectListIteratorByCondition(delegator, modelEntity, condition, null, null, null, null)) {
+                GenericValue value;
+                while ((value = eli.next()) != null) {
+                    results.add(value);
+                }
+            }
+        }
+        return results;
+    }
+
     /* ====================================================================== */
 
     public void checkDb(Map<String, ModelEntity> modelEntities, List<String> messages, boolean addMissing) {
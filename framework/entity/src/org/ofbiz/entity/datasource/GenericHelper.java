@@ -26,6 +26,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.GenericEntity;
 import org.ofbiz.entity.GenericEntityException;
 import org.ofbiz.entity.GenericPK;
 import org.ofbiz.entity.GenericValue;
@@ -71,6 +72,38 @@ public interface GenericHelper {
      */
     public List<GenericValue> findAllByPrimaryKeys(List<GenericPK> primaryKeys) throws GenericEntityException;
 
+    /** Find the Generic Values of one entity for a number of Primary Keys, using chunked bulk queries (SCIPIO)
+     *@param modelEntity The ModelEntity of the primary keys
+     *@param primaryKeys A List of primary keys of the entity to find by.
+     *@param chunkSize The maximum number of primary keys per query
+     *@return List of the GenericValue objects found, in no particular order
+     */
+    public List<GenericValue> findAllByPrimaryKeys(ModelEntity modelEntity, List<? extends GenericEntity> primaryKeys, int chunkSize) throws GenericEntityException;
+
+    /** Creates a number of Generic Values of one entity, using JDBC statement batching where supported (SCIPIO)
+     *@param modelEntity The ModelEntity of the values
+     *@param values The values to insert
+     *@param batchSize The maximum number of rows per batch
+     *@return int representing number of rows effected by this operation
+     */
+    public int createAll(ModelEntity modelEntity, List<GenericValue> values, int batchSize) throws GenericEntityException;
+
+    /** Stores a number of Generic Values of one entity, using JDBC statement batching where supported (SCIPIO)
+     *@param modelEntity The ModelEntity of the values
+     *@param values The values to update
+     *@param batchSize The maximum number of rows per batch
+     *@return int representing number of rows effected by this operation
+     */
+    public int storeAll(ModelEntity modelEntity, List<GenericValue> values, int batchSize) throws GenericEntityException;
+
+    /** Removes a number of Generic Entities of one entity by primary key, using JDBC statement batching where supported (SCIPIO)
+     *@param modelEntity The ModelEntity of the primary keys
+     *@param primaryKeys The primary keys of the entities to remove
+     *@param batchSize The maximum number of rows per batch
+     *@return int representing number of rows effected by this operation
+     */
+    public int removeAllByPrimaryKey(ModelEntity modelEntity, List<? extends GenericEntity> primaryKeys, int batchSize) throws GenericEntityException;
+
     /** Remove a Generic Entity corresponding to the primaryKey
      *@param  primaryKey  The primary key of the entity to remove.
      *@return int representing number of rows effected by this operation
@@ -26,6 +26,7 @@ import java.util.Set;
 
 import org.ofbiz.base.util.Debug;
 import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.GenericEntity;
 import org.ofbiz.entity.GenericEntityException;
 import org.ofbiz.entity.GenericPK;
 import org.ofbiz.entity.GenericValue;
@@ -114,6 +115,44 @@ public class GenericHelperDAO implements GenericHelper {
         return results;
     }
 
+    /** Find the Generic Values of one entity for a number of Primary Keys, using chunked bulk queries (SCIPIO)
+     *@param modelEntity The ModelEntity of the primary keys
+     *@param primaryKeys A List of primary keys of the entity to find by.
+     *@param chunkSize The maximum number of primary keys per query
+     *@return List of the GenericValue objects found, in no particular order
+     */
+    public List<GenericValue> findAllByPrimaryKeys(ModelEntity modelEntity, List<? extends GenericEntity> primaryKeys, int chunkSize) throws GenericEntityException {
+        if (primaryKeys == null) return null;
+        if (primaryKeys.isEmpty()) return new ArrayList<>();
+        return genericDAO.selectByPrimaryKeys(primaryKeys.get(0).getDelegator(), modelEntity, primaryKeys, chunkSize);
+    }
+
+    /** Creates a number of Generic Values of one entity, using JDBC statement batching where supported (SCIPIO)
+     *@return int representing number of rows effected by this operation
+     */
+    public int createAll(ModelEntity modelEntity, List<GenericValue> values, int batchSize) throws GenericEntityException {
+        if (values == null) return 0;
+        int retVal = genericDAO.insertBatch(modelEntity, values, batchSize);
+        if (Debug.verboseOn()) Debug.logVerbose("Batch Insert Return Value : " + retVal, module);
+        return retVal;
+    }
+
+    /** Stores a number of Generic Values of one entity, using JDBC statement batching where supported (SCIPIO)
+     *@return int representing number of rows effected by this operation
+     */
+    public int storeAll(ModelEntity modelEntity, List<GenericValue> values, int batchSize) throws GenericEntityException {
+        if (values == null) return 0;
+        return genericDAO.updateBatch(modelEntity, values, batchSize);
+    }
+
+    /** Removes a number of Generic Entities of one entity by primary key, using JDBC statement batching where supported (SCIPIO)
+     *@return int representing number of rows effected by this operation
+     */
+    public int removeAllByPrimaryKey(ModelEntity modelEntity, List<? extends GenericEntity> primaryKeys, int batchSize) throws GenericEntityException {
+        if (primaryKeys == null) return 0;
+        return genericDAO.deleteBatch(modelEntity, primaryKeys, batchSize);
+    }
+
     /** Remove a Generic Entity corresponding to the primaryKey
      *@param  primaryKey  The primary key of the entity to remove.
      *@return int representing number of rows effected by this operation
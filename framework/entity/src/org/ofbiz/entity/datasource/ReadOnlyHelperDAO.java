@@ -25,6 +25,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.GenericEntity;
 import org.ofbiz.entity.GenericEntityException;
 import org.ofbiz.entity.GenericPK;
 import org.ofbiz.entity.GenericValue;
@@ -108,6 +109,36 @@ public class ReadOnlyHelperDAO implements GenericHelper {
         return results;
     }
 
+    /** Find the Generic Values of one entity for a number of Primary Keys, using chunked bulk queries (SCIPIO)
+     *@return List of the GenericValue objects found, in no particular order
+     */
+    public List<GenericValue> findAllByPrimaryKeys(ModelEntity modelEntity, List<? extends GenericEntity> primaryKeys, int chunkSize) throws GenericEntityException {
+        if (primaryKeys == null) return null;
+        if (primaryKeys.isEmpty()) return new LinkedList<GenericValue>();
+        return genericDAO.selectByPrimaryKeys(primaryKeys.get(0).getDelegator(), modelEntity, primaryKeys, chunkSize);
+    }
+
+    /** Read only, no creation realize on the database
+     *@return 0
+     */
+    public int createAll(ModelEntity modelEntity, List<GenericValue> values, int batchSize) throws GenericEntityException {
+        return 0;
+    }
+
+    /** Read only, no store realize on the database
+     *@return 0
+     */
+    public int storeAll(ModelEntity modelEntity, List<GenericValue> values, int batchSize) throws GenericEntityException {
+        return 0;
+    }
+
+    /** Read only, no remove realize on the database
+     *@return 0
+     */
+    public int removeAllByPrimaryKey(ModelEntity modelEntity, List<? extends GenericEntity> primaryKeys, int batchSize) throws GenericEntityException {
+        return 0;
+    }
+
     /** Read only, no remove realize on the database
      *@return 0
      */
@@ -450,6 +450,53 @@ public class SQLProcessor implements AutoCloseable {
         }
     }
 
+    /**
+     * Adds the currently bound parameters of the prepared statement to its batch
+     * and resets the binding index so the next row can be bound (SCIPIO).
+     *
+     * @throws GenericDataSourceException
+     */
+    public void addBatch() throws GenericDataSourceException {
+        try {
+            _ps.addBatch();
+            _ind = 1;
+        } catch (SQLException sqle) {
+            throw GenericDataSourceException.from("SQL Exception while adding batch for: " + _sql, sqle, this, getDelegator(), null);
+        }
+    }
+
+    /**
+     * Executes the batch of the prepared statement (SCIPIO).
+     *
+     * @return The update counts of each batched row, as returned by the driver
+     * @throws GenericDataSourceException
+     */
+    public int[] executeBatch() throws GenericDataSourceException {
+        try {
+            return _ps.executeBatch();
+        } catch (SQLException sqle) {
+            this.checkLockWaitInfo(sqle);
+            throw GenericDataSourceException.from("SQL Exception while executing batch of the following:" + _sql, sqle, this, getDelegator(), null);
+        }
+    }
+
+    /**
+     * Returns true if the connection's driver supports JDBC batch updates (SCIPIO).
+     *
+     * @throws GenericDataSourceException
+     * @throws GenericEntityException
+     */
+    public boolean supportsBatchUpdates() throws GenericDataSourceException, GenericEntityException {
+        if (_connection == null) {
+            getConnection();
+        }
+        try {
+            return _connection.getMetaData().supportsBatchUpdates();
+        } catch (SQLException sqle) {
+            throw GenericDataSourceException.from("SQL Exception while reading database meta data", sqle, this, getDelegator(), null);
+        }
+    }
+
     /**
      * Test if there more records available
      *
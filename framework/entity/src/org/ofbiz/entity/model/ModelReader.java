@@ -18,6 +18,7 @@
  *******************************************************************************/
 package org.ofbiz.entity.model;
 
+import java.io.File;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -30,12 +31,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.ofbiz.base.component.ComponentConfig;
+import org.ofbiz.base.concurrent.ExecutionPool;
 import org.ofbiz.base.config.GenericConfigException;
 import org.ofbiz.base.config.MainResourceHandler;
 import org.ofbiz.base.config.ResourceHandler;
 import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilProperties;
 import org.ofbiz.base.util.UtilTimer;
 import org.ofbiz.base.util.UtilValidate;
 import org.ofbiz.base.util.UtilXml;
@@ -60,6 +65,8 @@ public class ModelReader implements Serializable {
 
     private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
     private static final UtilCache<String, ModelReader> readers = UtilCache.createUtilCache("entity.ModelReader", 0, 0);
+    /** Parse the entity model files in parallel (SCIPIO: 3.0.0). */
+    private static final boolean defaultParallelLoad = UtilProperties.getPropertyAsBoolean("general", "entity.model.parallelLoad", true);
 
     protected volatile Map<String, ModelEntity> entityCache = null;
 
@@ -71,6 +78,9 @@ public class ModelReader implements Serializable {
 
     protected String modelName;
 
+    private transient boolean parallelLoad = defaultParallelLoad; // SCIPIO: 3.0.0
+    private transient boolean snapshotEnabled = ModelReaderSnapshot.isEnabled(); // SCIPIO: 3.0.0
+
     /** collection of filenames for entity definitions */
     protected Collection<ResourceHandler> entityResourceHandlers;
 
@@ -130,11 +140,154 @@ public class ModelReader implements Serializable {
         }
     }
 
-    private ModelEntity buildEntity(ResourceHandler entityResourceHandler, Element curEntityElement, int i, ModelInfo def)
-            throws GenericEntityException {
-        boolean isEntity = "entity".equals(curEntityElement.getNodeName());
-        String entityName = UtilXml.checkEmpty(curEntityElement.getAttribute("entity-name")).intern();
-        boolean redefinedEntity = "true".equals(curEntityElement.getAttribute("redefinition"));
+    /**
+     * Creates a new model reader for the given entity-model-reader, neither registered nor shared, and loads it from the
+     * entity model files, in parallel or serially, without the on-disk snapshot; used to compare load modes (tests).
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public static ModelReader createModelReader(String modelName, boolean parallelLoad) throws GenericEntityException {
+        ModelReader reader = new ModelReader(modelName);
+        reader.parallelLoad = parallelLoad;
+        reader.snapshotEnabled = false;
+        reader.getEntityCache();
+        return reader;
+    }
+
+    /**
+     * Writes the snapshot of this (loaded) reader to the given file; returns false if it could not be written (logged).
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public boolean writeSnapshot(File file) throws GenericEntityException {
+        getEntityCache();
+        return ModelReaderSnapshot.save(this, ModelReaderSnapshot.getChecksum(entityResourceHandlers), file);
+    }
+
+    /**
+     * Creates a new model reader for the given entity-model-reader, neither registered nor shared, loaded from the given
+     * snapshot file, or returns null if the file is missing, unreadable or does not match the current entity model files.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public static ModelReader readSnapshot(String modelName, File file) throws GenericEntityException {
+        ModelReader reader = new ModelReader(modelName);
+        reader.snapshotEnabled = false;
+        return ModelReaderSnapshot.load(reader, ModelReaderSnapshot.getChecksum(reader.entityResourceHandlers), file) ? reader : null;
+    }
+
+    /**
+     * Parses the entity model files and builds their entities, in parallel (one task per file) unless disabled by
+     * <code>entity.model.parallelLoad</code>; returns the results in the entity resource handler order.
+     * <p>SCIPIO: 3.0.0: Added, from the former sequential file loop in getEntityCache.</p>
+     */
+    private List<ParsedResource> parseResources() throws GenericEntityException {
+        List<ParsedResource> parsedResources = new ArrayList<>(entityResourceHandlers.size());
+        if (!parallelLoad || entityResourceHandlers.size() <= 1) {
+            for (ResourceHandler entityResourceHandler : entityResourceHandlers) {
+                parsedResources.add(parseResource(entityResourceHandler));
+            }
+            return parsedResources;
+        }
+        List<Future<ParsedResource>> futures = new ArrayList<>(entityResourceHandlers.size());
+        for (ResourceHandler entityResourceHandler : entityResourceHandlers) {
+            futures.add(ExecutionPool.GLOBAL_FORK_JOIN.submit(() -> parseResource(entityResourceHandler)));
+        }
+        GenericEntityException error = null;
+        for (Future<ParsedResource> future : futures) {
+            try {
+                // Wait for all tasks even after an error, so none is still building entities when this returns
+                ParsedResource parsedResource = future.get();
+                if (error == null) {
+                    parsedResources.add(parsedResource);
+                }
+            } catch (ExecutionException e) {
+                if (error == null) {
+                    error = (e.getCause() instanceof GenericEntityException) ? (GenericEntityException) e.getCause()
+                            : new GenericEntityConfException("Error loading entity model file", e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GenericEntityConfException("Interrupted while loading entity model files", e);
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+        return parsedResources;
+    }
+
+    /**
+     * Parses one entity model file and builds its entities and view-entities (without view fields, which need all
+     * entities); does not modify the reader maps, so files may be parsed concurrently.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    private ParsedResource parseResource(ResourceHandler entityResourceHandler) throws GenericEntityException {
+        UtilTimer utilTimer = new UtilTimer();
+        Document document = null;
+        try {
+            document = entityResourceHandler.getDocument();
+        } catch (GenericConfigException e) {
+            throw new GenericEntityConfException("Error getting document from resource handler", e);
+        }
+        if (document == null) {
+            throw new GenericEntityConfException("Could not get document for " + entityResourceHandler.toString());
+        }
+
+        ParsedResource parsedResource = new ParsedResource(entityResourceHandler);
+        Element docElement = document.getDocumentElement();
+        if (docElement == null) {
+            return parsedResource;
+        }
+        parsedResource.entities = new ArrayList<>();
+        docElement.normalize();
+        Node curChild = docElement.getFirstChild();
+
+        ModelInfo def = ModelInfo.createFromElements(ModelInfo.DEFAULT, docElement);
+        String resourceLocation = entityResourceHandler.getLocation();
+        try {
+            resourceLocation = entityResourceHandler.getURL().toExternalForm();
+        } catch (GenericConfigException e) {
+            Debug.logError(e, "Could not get resource URL", module);
+        }
+        int i = 0;
+
+        if (curChild != null) {
+            utilTimer.timerString("Before start of entity loop in " + entityResourceHandler.toString());
+            do {
+                boolean isEntity = "entity".equals(curChild.getNodeName());
+                boolean isViewEntity = "view-entity".equals(curChild.getNodeName());
+                boolean isExtendEntity = "extend-entity".equals(curChild.getNodeName());
+
+                if ((isEntity || isViewEntity) && curChild.getNodeType() == Node.ELEMENT_NODE) {
+                    i++;
+                    Element curEntityElement = (Element) curChild;
+                    String entityName = UtilXml.checkEmpty(curEntityElement.getAttribute("entity-name")).intern();
+                    ModelEntity modelEntity;
+                    if (isEntity) {
+                        modelEntity = createModelEntity(curEntityElement, null, def);
+                        if (Debug.verboseOn()) {
+                            Debug.logVerbose("-- [Entity]: #" + i + ": " + entityName, module);
+                        }
+                    } else {
+                        modelEntity = createModelViewEntity(curEntityElement, null, def);
+                        if (Debug.verboseOn()) {
+                            Debug.logVerbose("-- [ViewEntity]: #" + i + ": " + entityName, module);
+                        }
+                    }
+                    modelEntity.setLocation(resourceLocation);
+                    parsedResource.entities.add(new ParsedEntity(entityName, "true".equals(curEntityElement.getAttribute("redefinition")), modelEntity));
+                } else if (isExtendEntity && curChild.getNodeType() == Node.ELEMENT_NODE) {
+                    parsedResource.extendEntityElements.add((Element) curChild);
+                }
+            } while ((curChild = curChild.getNextSibling()) != null);
+        } else {
+            Debug.logWarning("No child nodes found.", module);
+        }
+        utilTimer.timerString("Finished " + entityResourceHandler.toString() + " - Total Entities: " + i + " FINISHED");
+        return parsedResource;
+    }
+
+    /** Adds a parsed entity to the resource handler maps, warning about duplicates (SCIPIO: 3.0.0: Split from former buildEntity). */
+    private ModelEntity registerEntity(ResourceHandler entityResourceHandler, ParsedEntity parsedEntity) {
+        String entityName = parsedEntity.entityName;
 
         // add entityName to appropriate resourceHandlerEntities collection
         Collection<String> resourceHandlerEntityNames = resourceHandlerEntities.get(entityResourceHandler);
@@ -146,7 +299,7 @@ public class ModelReader implements Serializable {
         resourceHandlerEntityNames.add(entityName);
 
         // check to see if entity with same name has already been read
-        if (entityCache.containsKey(entityName) && !redefinedEntity) {
+        if (entityCache.containsKey(entityName) && !parsedEntity.redefinedEntity) {
             Debug.logWarning("Entity " + entityName +
                     " is defined more than once, most recent will over-write " +
                     "previous definition(s)", module);
@@ -157,42 +310,7 @@ public class ModelReader implements Serializable {
 
         // add entityName, entityFileName pair to entityResourceHandlerMap map
         entityResourceHandlerMap.put(entityName, entityResourceHandler);
-
-        // utilTimer.timerString(" After entityEntityName -- " + i + " --");
-        // ModelEntity entity = createModelEntity(curEntity, utilTimer);
-
-        ModelEntity modelEntity = null;
-        if (isEntity) {
-            modelEntity = createModelEntity(curEntityElement, null, def);
-        } else {
-            modelEntity = createModelViewEntity(curEntityElement, null, def);
-        }
-
-        String resourceLocation = entityResourceHandler.getLocation();
-        try {
-            resourceLocation = entityResourceHandler.getURL().toExternalForm();
-        } catch (GenericConfigException e) {
-            Debug.logError(e, "Could not get resource URL", module);
-        }
-
-        // utilTimer.timerString(" After createModelEntity -- " + i + " --");
-        if (modelEntity != null) {
-            modelEntity.setLocation(resourceLocation);
-            // utilTimer.timerString(" After entityCache.put -- " + i + " --");
-            if (isEntity) {
-                if (Debug.verboseOn()) {
-                    Debug.logVerbose("-- [Entity]: #" + i + ": " + entityName, module);
-                }
-            } else {
-                if (Debug.verboseOn()) {
-                    Debug.logVerbose("-- [ViewEntity]: #" + i + ": " + entityName, module);
-                }
-            }
-        } else {
-            Debug.logWarning("-- -- ENTITYGEN ERROR:getModelEntity: Could not create " +
-                    "entity for entityName: " + entityName, module);
-        }
-        return modelEntity;
+        return parsedEntity.modelEntity;
     }
 
     public Map<String, ModelEntity> getEntityCache() throws GenericEntityException {
@@ -212,58 +330,39 @@ public class ModelReader implements Serializable {
 
                     UtilTimer utilTimer = new UtilTimer();
 
-                    for (ResourceHandler entityResourceHandler : entityResourceHandlers) {
-
-                        // utilTimer.timerString("Before getDocument in file " + entityFileName);
-                        Document document = null;
-
-                        try {
-                            document = entityResourceHandler.getDocument();
-                        } catch (GenericConfigException e) {
-                            throw new GenericEntityConfException("Error getting document from resource handler", e);
-                        }
-                        if (document == null) {
-                            throw new GenericEntityConfException("Could not get document for " + entityResourceHandler.toString());
+                    // SCIPIO: 3.0.0: Reuse the on-disk snapshot of the loaded model when no entity model file changed
+                    String snapshotChecksum = null;
+                    if (snapshotEnabled) {
+                        snapshotChecksum = ModelReaderSnapshot.getChecksum(entityResourceHandlers);
+                        if (ModelReaderSnapshot.load(this, snapshotChecksum)) {
+                            if (Debug.infoOn()) {
+                                Debug.logInfo("Finished loading entities from snapshot " + ModelReaderSnapshot.getSnapshotFile(modelName)
+                                        + " in " + utilTimer.timeSinceStart() + "ms; #Entities=" + numEntities + " #ViewEntities="
+                                        + numViewEntities + " #Fields=" + numFields + " #Relationships=" + numRelations
+                                        + " #AutoRelationships=" + numAutoRelations, module);
+                            }
+                            return entityCache;
                         }
+                    }
 
-                        // utilTimer.timerString("Before getDocumentElement in " +
-                        // entityResourceHandler.toString());
-                        Element docElement = document.getDocumentElement();
-
-                        if (docElement == null) {
+                    // SCIPIO: 3.0.0: The files are parsed and their entities built in parallel (parseResources), then
+                    // registered here in the original file order, so that redefinitions and warnings are unchanged
+                    for (ParsedResource parsedResource : parseResources()) {
+                        if (parsedResource.entities == null) {
                             return null;
                         }
-                        docElement.normalize();
-                        Node curChild = docElement.getFirstChild();
-
-                        ModelInfo def = ModelInfo.createFromElements(ModelInfo.DEFAULT, docElement);
-                        int i = 0;
-
-                        if (curChild != null) {
-                            utilTimer.timerString("Before start of entity loop in " + entityResourceHandler.toString());
-                            do {
-                                boolean isEntity = "entity".equals(curChild.getNodeName());
-                                boolean isViewEntity = "view-entity".equals(curChild.getNodeName());
-                                boolean isExtendEntity = "extend-entity".equals(curChild.getNodeName());
-
-                                if ((isEntity || isViewEntity) && curChild.getNodeType() == Node.ELEMENT_NODE) {
-                                    i++;
-                                    ModelEntity modelEntity = buildEntity(entityResourceHandler, (Element) curChild, i, def);
-                                    // put the view entity in a list to get ready for the second pass to populate fields...
-                                    if (isViewEntity) {
-                                        tempViewEntityList.add((ModelViewEntity) modelEntity);
-                                    } else {
-                                        entityCache.put(modelEntity.getEntityName(), modelEntity);
-                                    }
-                                } else if (isExtendEntity && curChild.getNodeType() == Node.ELEMENT_NODE) {
-                                    tempExtendEntityElementList.add((Element) curChild);
-                                }
-                            } while ((curChild = curChild.getNextSibling()) != null);
-                        } else {
-                            Debug.logWarning("No child nodes found.", module);
+                        for (ParsedEntity parsedEntity : parsedResource.entities) {
+                            ModelEntity modelEntity = registerEntity(parsedResource.resourceHandler, parsedEntity);
+                            // put the view entity in a list to get ready for the second pass to populate fields...
+                            if (modelEntity instanceof ModelViewEntity) {
+                                tempViewEntityList.add((ModelViewEntity) modelEntity);
+                            } else {
+                                entityCache.put(modelEntity.getEntityName(), modelEntity);
+                            }
                         }
-                        utilTimer.timerString("Finished " + entityResourceHandler.toString() + " - Total Entities: " + i + " FINISHED");
+                        tempExtendEntityElementList.addAll(parsedResource.extendEntityElements);
                     }
+                    utilTimer.timerString("Finished parsing " + entityResourceHandlers.size() + " entity model files");
 
                     // all entity elements in, now go through extend-entity elements and add their stuff
                     for (Element extendEntityElement : tempExtendEntityElementList) {
@@ -441,6 +540,9 @@ public class ModelReader implements Serializable {
                                 + numViewEntities + " #Fields=" + numFields + " #Relationships=" + numRelations
                                 + " #AutoRelationships=" + numAutoRelations, module);
                     }
+                    if (snapshotChecksum != null) {
+                        ModelReaderSnapshot.save(this, snapshotChecksum); // SCIPIO
+                    }
                 }
             }
         }
@@ -620,7 +722,9 @@ public class ModelReader implements Serializable {
     ModelEntity createModelEntity(Element entityElement, UtilTimer utilTimer, ModelInfo def) {
         if (entityElement == null)
             return null;
-        this.numEntities++;
+        synchronized (this) { // SCIPIO: 3.0.0: Entity model files may be parsed concurrently
+            this.numEntities++;
+        }
         ModelEntity entity = new ModelEntity(this, entityElement, utilTimer, def);
         return entity;
     }
@@ -628,18 +732,46 @@ public class ModelReader implements Serializable {
     ModelEntity createModelViewEntity(Element entityElement, UtilTimer utilTimer, ModelInfo def) {
         if (entityElement == null)
             return null;
-        this.numViewEntities++;
+        synchronized (this) { // SCIPIO
+            this.numViewEntities++;
+        }
         ModelViewEntity entity = new ModelViewEntity(this, entityElement, utilTimer, def);
         return entity;
     }
 
     public ModelRelation createRelation(ModelEntity entity, Element relationElement) {
-        this.numRelations++;
+        synchronized (this) { // SCIPIO
+            this.numRelations++;
+        }
         ModelRelation relation = ModelRelation.create(entity, relationElement, false);
         return relation;
     }
 
-    public void incrementFieldCount(int amount) {
+    public synchronized void incrementFieldCount(int amount) { // SCIPIO: 3.0.0: synchronized
         this.numFields += amount;
     }
+
+    /** Entities built from one entity model file (SCIPIO: 3.0.0: Added). */
+    private static final class ParsedResource {
+        final ResourceHandler resourceHandler;
+        /** The entities and view-entities in file order, or null if the file has no document element. */
+        List<ParsedEntity> entities;
+        final List<Element> extendEntityElements = new ArrayList<>();
+
+        ParsedResource(ResourceHandler resourceHandler) {
+            this.resourceHandler = resourceHandler;
+        }
+    }
+
+    private static final class ParsedEntity {
+        final String entityName;
+        final boolean redefinedEntity;
+        final ModelEntity modelEntity;
+
+        ParsedEntity(String entityName, boolean redefinedEntity, ModelEntity modelEntity) {
+            this.entityName = entityName;
+            this.redefinedEntity = redefinedEntity;
+            this.modelEntity = modelEntity;
+        }
+    }
 }
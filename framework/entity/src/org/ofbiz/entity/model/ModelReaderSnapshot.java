@@ -0,0 +1,251 @@
+package org.ofbiz.entity.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.ofbiz.base.config.GenericConfigException;
+import org.ofbiz.base.config.ResourceHandler;
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilProperties;
+
+/**
+ * On-disk binary snapshot of a fully loaded {@link ModelReader} (entities and view-entities after extend-entity,
+ * view field population and auto-relations, with the resource handler maps and load counts), used to skip the entity
+ * model XML parsing at startup when no entity model file changed.
+ * <p>A snapshot is only used when its checksum matches the current one, a SHA-256 over the entity model resource
+ * locations and contents (in load order) and the serialization fingerprints of the model classes; otherwise, or if it
+ * cannot be read (e.g. incompatible classes), the model is parsed from XML and the snapshot is rewritten.
+ * The {@link ModelReader} and the entity model {@link ResourceHandler}s are not serialized but written as references
+ * and resolved to the live instances on read.</p>
+ * <p>Configured in general.properties by <code>entity.model.snapshot.enabled</code> (default false) and
+ * <code>entity.model.snapshot.dir</code>; one file per entity-model-reader.</p>
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+final class ModelReaderSnapshot {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    private static final String MAGIC = "SCIPIO-ENTITY-MODEL";
+    private static final int FORMAT_VERSION = 1;
+    /** Serialized model classes whose fingerprints are part of the checksum, so changed classes invalidate the snapshot. */
+    private static final Class<?>[] MODEL_CLASSES = { ModelEntity.class, ModelViewEntity.class, ModelField.class, ModelRelation.class,
+            ModelKeyMap.class, ModelIndex.class, ModelInfo.class };
+
+    private static final boolean enabled = UtilProperties.getPropertyAsBoolean("general", "entity.model.snapshot.enabled", false);
+    private static final String snapshotDir = UtilProperties.getPropertyValue("general", "entity.model.snapshot.dir", "runtime/data/entitymodel");
+
+    private ModelReaderSnapshot() {
+    }
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    static File getSnapshotFile(String modelName) {
+        File dir = new File(snapshotDir);
+        if (!dir.isAbsolute() && System.getProperty("ofbiz.home") != null) {
+            dir = new File(System.getProperty("ofbiz.home"), snapshotDir);
+        }
+        return new File(dir, modelName.replaceAll("[^A-Za-z0-9._-]", "_") + ".ser");
+    }
+
+    /** Returns the checksum of the current entity model resources and classes, or null if a resource cannot be read. */
+    static String getChecksum(Collection<ResourceHandler> resourceHandlers) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((MAGIC + ":" + FORMAT_VERSION).getBytes(StandardCharsets.UTF_8));
+            for (Class<?> modelClass : MODEL_CLASSES) {
+                digest.update((modelClass.getName() + ":" + ObjectStreamClass.lookup(modelClass).getSerialVersionUID()).getBytes(StandardCharsets.UTF_8));
+            }
+            byte[] buffer = new byte[16384];
+            for (ResourceHandler resourceHandler : resourceHandlers) {
+                digest.update(resourceHandler.toString().getBytes(StandardCharsets.UTF_8));
+                try (InputStream in = resourceHandler.getURL().openStream()) {
+                    int count;
+                    while ((count = in.read(buffer)) > 0) {
+                        digest.update(buffer, 0, count);
+                    }
+                }
+            }
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException | GenericConfigException | IOException e) {
+            Debug.logWarning("Could not compute entity model checksum; entity model snapshot not used: " + e.toString(), module);
+            return null;
+        }
+    }
+
+    /**
+     * Loads the snapshot into the reader if it exists and matches the checksum; returns false (leaving the reader
+     * untouched) otherwise.
+     */
+    static boolean load(ModelReader reader, String checksum) {
+        return load(reader, checksum, getSnapshotFile(reader.modelName));
+    }
+
+    /** Loads the given snapshot file into the reader if it exists and matches the checksum; returns false otherwise. */
+    @SuppressWarnings("unchecked")
+    static boolean load(ModelReader reader, String checksum, File file) {
+        if (checksum == null || !file.isFile()) {
+            return false;
+        }
+        List<ResourceHandler> resourceHandlers = new ArrayList<>(reader.entityResourceHandlers);
+        try (SnapshotInputStream in = new SnapshotInputStream(new BufferedInputStream(Files.newInputStream(file.toPath()), 65536), reader, resourceHandlers)) {
+            if (!MAGIC.equals(in.readUTF()) || in.readInt() != FORMAT_VERSION || !checksum.equals(in.readUTF())) {
+                Debug.logInfo("Entity model snapshot [" + file + "] is out of date; loading entity model from XML", module);
+                return false;
+            }
+            Map<String, ModelEntity> entityCache = (Map<String, ModelEntity>) in.readObject();
+            Map<ResourceHandler, Collection<String>> resourceHandlerEntities = (Map<ResourceHandler, Collection<String>>) in.readObject();
+            Map<String, ResourceHandler> entityResourceHandlerMap = (Map<String, ResourceHandler>) in.readObject();
+            int[] counts = (int[]) in.readObject();
+            reader.resourceHandlerEntities = resourceHandlerEntities;
+            reader.entityResourceHandlerMap = entityResourceHandlerMap;
+            reader.numEntities = counts[0];
+            reader.numViewEntities = counts[1];
+            reader.numFields = counts[2];
+            reader.numRelations = counts[3];
+            reader.numAutoRelations = counts[4];
+            reader.entityCache = entityCache;
+            return true;
+        } catch (Exception e) {
+            Debug.logWarning("Could not read entity model snapshot [" + file + "]; loading entity model from XML: " + e.toString(), module);
+            return false;
+        }
+    }
+
+    /** Writes the snapshot of the loaded reader, replacing the previous one atomically; failures are logged only. */
+    static void save(ModelReader reader, String checksum) {
+        save(reader, checksum, getSnapshotFile(reader.modelName));
+    }
+
+    /** Writes the snapshot of the loaded reader to the given file, replacing it atomically; returns false (logged) on failure. */
+    static boolean save(ModelReader reader, String checksum, File file) {
+        if (checksum == null) {
+            return false;
+        }
+        File tempFile = new File(file.getPath() + ".tmp");
+        List<ResourceHandler> resourceHandlers = new ArrayList<>(reader.entityResourceHandlers);
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            try (SnapshotOutputStream out = new SnapshotOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile.toPath()), 65536), reader, resourceHandlers)) {
+                out.writeUTF(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(checksum);
+                out.writeObject(reader.entityCache);
+                out.writeObject(reader.resourceHandlerEntities);
+                out.writeObject(reader.entityResourceHandlerMap);
+                out.writeObject(new int[] { reader.numEntities, reader.numViewEntities, reader.numFields, reader.numRelations, reader.numAutoRelations });
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (Debug.infoOn()) {
+                Debug.logInfo("Wrote entity model snapshot [" + file + "]", module);
+            }
+            return true;
+        } catch (Exception e) {
+            Debug.logWarning(e, "Could not write entity model snapshot [" + file + "]", module);
+            tempFile.delete();
+            return false;
+        }
+    }
+
+    /** Stands in for the owning ModelReader in the stream. */
+    private static final class ReaderRef implements Serializable {
+        private static final long serialVersionUID = 1L;
+        static final ReaderRef INSTANCE = new ReaderRef();
+    }
+
+    /** Stands in for one of the reader's entity model resource handlers (by load order index) in the stream. */
+    private static final class ResourceHandlerRef implements Serializable {
+        private static final long serialVersionUID = 1L;
+        final int index;
+
+        ResourceHandlerRef(int index) {
+            this.index = index;
+        }
+    }
+
+    private static final class SnapshotOutputStream extends ObjectOutputStream {
+        private final ModelReader reader;
+        private final List<ResourceHandler> resourceHandlers;
+
+        SnapshotOutputStream(OutputStream out, ModelReader reader, List<ResourceHandler> resourceHandlers) throws IOException {
+            super(out);
+            this.reader = reader;
+            this.resourceHandlers = resourceHandlers;
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            if (obj == reader) {
+                return ReaderRef.INSTANCE;
+            } else if (obj instanceof ResourceHandler) {
+                for (int i = 0; i < resourceHandlers.size(); i++) {
+                    if (resourceHandlers.get(i) == obj) {
+                        return new ResourceHandlerRef(i);
+                    }
+                }
+            } else if (obj instanceof ModelReader) {
+                throw new IOException("Entity model references a different ModelReader");
+            }
+            return obj;
+        }
+    }
+
+    private static final class SnapshotInputStream extends ObjectInputStream {
+        private final ModelReader reader;
+        private final List<ResourceHandler> resourceHandlers;
+
+        SnapshotInputStream(InputStream in, ModelReader reader, List<ResourceHandler> resourceHandlers) throws IOException {
+            super(in);
+            this.reader = reader;
+            this.resourceHandlers = resourceHandlers;
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            if (obj instanceof ReaderRef) {
+                return reader;
+            } else if (obj instanceof ResourceHandlerRef) {
+                int index = ((ResourceHandlerRef) obj).index;
+                if (index < 0 || index >= resourceHandlers.size()) {
+                    throw new IOException("Invalid entity model resource handler reference: " + index);
+                }
+                return resourceHandlers.get(index);
+            }
+            return obj;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            // Model classes may live in a different loader than the JDK default used by ObjectInputStream
+            try {
+                return Class.forName(desc.getName(), false, ModelReaderSnapshot.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(desc);
+            }
+        }
+    }
+}
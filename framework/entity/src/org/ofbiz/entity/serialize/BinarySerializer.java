@@ -0,0 +1,607 @@
+package org.ofbiz.entity.serialize;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.base.util.UtilObject;
+import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.GenericEntity;
+import org.ofbiz.entity.GenericPK;
+import org.ofbiz.entity.model.ModelEntity;
+
+/**
+ * Compact, versioned binary serializer for service contexts and other object graphs, an alternative to
+ * {@link XmlSerializer} for text fields such as <code>RuntimeData.runtimeInfo</code>.
+ *
+ * <p>The serialized form is the text prefix {@link #PREFIX} followed by the Base64 of a version byte, a flags byte and
+ * the (optionally Deflate-compressed) body. The body is a single tagged value: primitives and their wrappers,
+ * <code>BigDecimal</code>, SQL and util dates, <code>Locale</code>, <code>TimeZone</code>, byte arrays, lists, sets and
+ * maps, and <code>GenericValue</code>/<code>GenericPK</code> as entity name plus tagged field values. Map keys, entity
+ * names and field names are written once and back-referenced afterward. Other <code>Serializable</code> objects fall
+ * back to Java serialization, as in {@link XmlSerializer}.</p>
+ *
+ * <p>Collections and maps of other types are read back as their closest supported type (for example an unmodifiable
+ * list as an <code>ArrayList</code>), in the same way XmlSerializer reads back unknown types as
+ * <code>LinkedList</code>/<code>HashMap</code>. Entity fields no longer in the entity model are skipped on read with
+ * a warning.</p>
+ *
+ * <p>Use {@link #isSerialized(String)} or {@link #deserializeAny(String, Delegator)} to read fields that may hold
+ * either format.</p>
+ *
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public final class BinarySerializer {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    /** Text prefix of serialized values; never the start of an XML document. */
+    public static final String PREFIX = "SCB:";
+    public static final int VERSION = 1;
+
+    /** Bodies at least this large (bytes) are compressed, if it makes them smaller. */
+    private static final int COMPRESS_THRESHOLD = 512;
+    private static final int FLAG_COMPRESSED = 1;
+
+    private static final int T_NULL = 0;
+    private static final int T_STRING = 1;
+    private static final int T_TRUE = 2;
+    private static final int T_FALSE = 3;
+    private static final int T_INTEGER = 4;
+    private static final int T_LONG = 5;
+    private static final int T_FLOAT = 6;
+    private static final int T_DOUBLE = 7;
+    private static final int T_BIG_DECIMAL = 8;
+    private static final int T_TIMESTAMP = 9;
+    private static final int T_SQL_DATE = 10;
+    private static final int T_SQL_TIME = 11;
+    private static final int T_DATE = 12;
+    private static final int T_LOCALE = 13;
+    private static final int T_TIME_ZONE = 14;
+    private static final int T_BYTES = 15;
+    private static final int T_ARRAY_LIST = 16;
+    private static final int T_LINKED_LIST = 17;
+    private static final int T_HASH_SET = 18;
+    private static final int T_LINKED_HASH_SET = 19;
+    private static final int T_TREE_SET = 20;
+    private static final int T_HASH_MAP = 21;
+    private static final int T_LINKED_HASH_MAP = 22;
+    private static final int T_TREE_MAP = 23;
+    private static final int T_GENERIC_VALUE = 24;
+    private static final int T_GENERIC_PK = 25;
+    private static final int T_SERIALIZABLE = 26;
+    private static final int T_BYTE_BUFFER = 27;
+
+    private BinarySerializer() {
+    }
+
+    /** Returns true if the content was written by this serializer (as opposed to XmlSerializer). */
+    public static boolean isSerialized(String content) {
+        return content != null && content.startsWith(PREFIX);
+    }
+
+    /**
+     * Serializes the object, throwing SerializeException for values that cannot be serialized.
+     */
+    public static String serialize(Object object) throws SerializeException {
+        return serializeCore(object, null);
+    }
+
+    /**
+     * Serializes the object, skipping (writing null for) values that cannot be serialized and adding an error message
+     * for each to errorMessageList; returns null if the object could not be written at all. Equivalent of
+     * {@link XmlSerializer#serializeOrNull(Object, List)}.
+     */
+    public static String serializeOrNull(Object object, List<? super String> errorMessageList) {
+        try {
+            return serializeCore(object, errorMessageList);
+        } catch (SerializeException e) {
+            if (errorMessageList != null) {
+                errorMessageList.add("Unable to write serialized value: " + e.toString());
+            }
+            return null;
+        }
+    }
+
+    private static String serializeCore(Object object, List<? super String> errorMessageList) throws SerializeException {
+        byte[] body;
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(256);
+            Writer writer = new Writer(new DataOutputStream(bos), errorMessageList);
+            writer.writeObject(object);
+            writer.out.flush();
+            body = bos.toByteArray();
+        } catch (IOException e) {
+            throw new SerializeException("Unable to serialize object: " + e.getMessage(), e);
+        }
+        int flags = 0;
+        if (body.length >= COMPRESS_THRESHOLD) {
+            byte[] compressed = compress(body);
+            if (compressed.length < body.length) {
+                body = compressed;
+                flags |= FLAG_COMPRESSED;
+            }
+        }
+        byte[] data = new byte[body.length + 2];
+        data[0] = (byte) VERSION;
+        data[1] = (byte) flags;
+        System.arraycopy(body, 0, data, 2, body.length);
+        return PREFIX + Base64.getEncoder().encodeToString(data);
+    }
+
+    /**
+     * Deserializes content written by this serializer. <p>As with {@link XmlSerializer#deserialize(String, Delegator)},
+     * use with caution: entity values are read back as new (not from datasource) values of the given delegator.</p>
+     */
+    public static Object deserialize(String content, Delegator delegator) throws SerializeException {
+        if (!isSerialized(content)) {
+            throw new SerializeException("Content is not in binary serializer format");
+        }
+        byte[] data;
+        try {
+            data = Base64.getDecoder().decode(content.substring(PREFIX.length()).trim());
+        } catch (IllegalArgumentException e) {
+            throw new SerializeException("Invalid binary serializer content: " + e.getMessage(), e);
+        }
+        if (data.length < 2) {
+            throw new SerializeException("Invalid binary serializer content: truncated header");
+        }
+        if (data[0] != VERSION) {
+            throw new SerializeException("Unsupported binary serializer version: " + data[0]);
+        }
+        Inflater inflater = ((data[1] & FLAG_COMPRESSED) != 0) ? new Inflater() : null;
+        try {
+            InputStream in = new ByteArrayInputStream(data, 2, data.length - 2);
+            if (inflater != null) {
+                in = new BufferedInputStream(new InflaterInputStream(in, inflater), 8192);
+            }
+            return new Reader(new DataInputStream(in), delegator).readObject();
+        } catch (EOFException e) {
+            throw new SerializeException("Invalid binary serializer content: unexpected end of data", e);
+        } catch (IOException e) {
+            throw new SerializeException("Unable to deserialize object: " + e.getMessage(), e);
+        } finally {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * Deserializes content written by either this serializer or {@link XmlSerializer}, based on its prefix.
+     */
+    public static Object deserializeAny(String content, Delegator delegator) throws SerializeException {
+        if (content == null) {
+            return null;
+        }
+        if (isSerialized(content)) {
+            return deserialize(content, delegator);
+        }
+        try {
+            return XmlSerializer.deserialize(content, delegator);
+        } catch (SerializeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SerializeException("Unable to deserialize XML: " + e.getMessage(), e);
+        }
+    }
+
+    private static byte[] compress(byte[] body) throws SerializeException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(body.length / 2);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DeflaterOutputStream dos = new DeflaterOutputStream(bos, deflater)) {
+            dos.write(body);
+        } catch (IOException e) {
+            throw new SerializeException("Unable to compress serialized object: " + e.getMessage(), e);
+        } finally {
+            deflater.end();
+        }
+        return bos.toByteArray();
+    }
+
+    private static final class Writer {
+        final DataOutputStream out;
+        final List<? super String> errorMessageList;
+        final Map<String, Integer> names = new HashMap<>();
+
+        Writer(DataOutputStream out, List<? super String> errorMessageList) {
+            this.out = out;
+            this.errorMessageList = errorMessageList;
+        }
+
+        void writeObject(Object object) throws IOException, SerializeException {
+            if (object == null) {
+                out.writeByte(T_NULL);
+            } else if (object instanceof String) {
+                out.writeByte(T_STRING);
+                writeString((String) object);
+            } else if (object instanceof Boolean) {
+                out.writeByte((Boolean) object ? T_TRUE : T_FALSE);
+            } else if (object instanceof Integer) {
+                out.writeByte(T_INTEGER);
+                writeVarLong(zigZag((Integer) object));
+            } else if (object instanceof Long) {
+                out.writeByte(T_LONG);
+                writeVarLong(zigZag((Long) object));
+            } else if (object instanceof Float) {
+                out.writeByte(T_FLOAT);
+                out.writeFloat((Float) object);
+            } else if (object instanceof Double) {
+                out.writeByte(T_DOUBLE);
+                out.writeDouble((Double) object);
+            } else if (object instanceof BigDecimal) {
+                BigDecimal value = (BigDecimal) object;
+                out.writeByte(T_BIG_DECIMAL);
+                writeVarLong(zigZag(value.scale()));
+                writeBytes(value.unscaledValue().toByteArray());
+            } else if (object instanceof Timestamp) {
+                Timestamp value = (Timestamp) object;
+                out.writeByte(T_TIMESTAMP);
+                writeVarLong(zigZag(value.getTime()));
+                writeVarLong(value.getNanos() % 1000000);
+            } else if (object instanceof java.sql.Date) {
+                out.writeByte(T_SQL_DATE);
+                writeVarLong(zigZag(((java.util.Date) object).getTime()));
+            } else if (object instanceof java.sql.Time) {
+                out.writeByte(T_SQL_TIME);
+                writeVarLong(zigZag(((java.util.Date) object).getTime()));
+            } else if (object.getClass() == java.util.Date.class) {
+                out.writeByte(T_DATE);
+                writeVarLong(zigZag(((java.util.Date) object).getTime()));
+            } else if (object instanceof Locale) {
+                out.writeByte(T_LOCALE);
+                writeName(object.toString());
+            } else if (object instanceof TimeZone) {
+                out.writeByte(T_TIME_ZONE);
+                writeName(((TimeZone) object).getID());
+            } else if (object instanceof byte[]) {
+                out.writeByte(T_BYTES);
+                writeBytes((byte[]) object);
+            } else if (object instanceof ByteBuffer) {
+                ByteBuffer value = ((ByteBuffer) object).duplicate();
+                byte[] bytes = new byte[value.remaining()];
+                value.get(bytes);
+                out.writeByte(T_BYTE_BUFFER);
+                writeBytes(bytes);
+            } else if (object instanceof GenericEntity) {
+                // NOTE: Before Map, since GenericEntity is a Map
+                GenericEntity value = (GenericEntity) object;
+                out.writeByte((value instanceof GenericPK) ? T_GENERIC_PK : T_GENERIC_VALUE);
+                writeName(value.getEntityName());
+                Collection<String> keys = value.getAllKeys();
+                writeVarLong(keys.size());
+                for (String key : keys) {
+                    writeName(key);
+                    writeEntry(value.get(key));
+                }
+            } else if (object instanceof Properties) {
+                writeCustom(object);
+            } else if (object instanceof Collection) {
+                Collection<?> value = (Collection<?>) object;
+                int type;
+                if (object instanceof Set) {
+                    if (object instanceof SortedSet && ((SortedSet<?>) object).comparator() == null) {
+                        type = T_TREE_SET;
+                    } else if (object instanceof LinkedHashSet) {
+                        type = T_LINKED_HASH_SET;
+                    } else {
+                        type = T_HASH_SET;
+                    }
+                } else {
+                    type = (object instanceof LinkedList) ? T_LINKED_LIST : T_ARRAY_LIST;
+                }
+                out.writeByte(type);
+                writeVarLong(value.size());
+                for (Object element : value) {
+                    writeEntry(element);
+                }
+            } else if (object instanceof Map) {
+                Map<?, ?> value = (Map<?, ?>) object;
+                int type;
+                if (object instanceof SortedMap && ((SortedMap<?, ?>) object).comparator() == null) {
+                    type = T_TREE_MAP;
+                } else if (object instanceof LinkedHashMap) {
+                    type = T_LINKED_HASH_MAP;
+                } else {
+                    type = T_HASH_MAP;
+                }
+                out.writeByte(type);
+                writeVarLong(value.size());
+                for (Map.Entry<?, ?> entry : value.entrySet()) {
+                    if (entry.getKey() instanceof String) {
+                        // String keys (the common case) are back-referenced like names
+                        out.writeByte(T_STRING);
+                        writeName((String) entry.getKey());
+                    } else {
+                        writeEntry(entry.getKey());
+                    }
+                    writeEntry(entry.getValue());
+                }
+            } else {
+                writeCustom(object);
+            }
+        }
+
+        /** Writes a nested value; if it cannot be serialized and errors are being collected, writes null instead. */
+        void writeEntry(Object object) throws IOException, SerializeException {
+            if (errorMessageList == null) {
+                writeObject(object);
+                return;
+            }
+            int size = out.size();
+            try {
+                writeObject(object);
+            } catch (SerializeException e) {
+                if (out.size() != size) {
+                    throw e; // NOTE: Only happens for I/O-level errors; entries of containers are handled individually
+                }
+                errorMessageList.add(e.getMessage());
+                out.writeByte(T_NULL);
+            }
+        }
+
+        void writeCustom(Object object) throws IOException, SerializeException {
+            if (!(object instanceof Serializable)) {
+                throw new SerializeException("Cannot serialize object of class " + object.getClass().getName());
+            }
+            byte[] bytes;
+            try {
+                bytes = UtilObject.getBytesOrEx(object);
+            } catch (Exception e) {
+                throw new SerializeException("Cannot serialize object of class " + object.getClass().getName() + ": " + e.getMessage(), e);
+            }
+            if (bytes == null) {
+                throw new SerializeException("Cannot serialize object of class " + object.getClass().getName() + "; null byte array returned");
+            }
+            out.writeByte(T_SERIALIZABLE);
+            writeBytes(bytes);
+        }
+
+        /** Writes a name (map key, entity or field name) as a back-reference if already written, otherwise inline. */
+        void writeName(String name) throws IOException {
+            Integer index = names.get(name);
+            if (index != null) {
+                writeVarLong(index + 1);
+                return;
+            }
+            names.put(name, names.size());
+            writeVarLong(0);
+            writeString(name);
+        }
+
+        void writeString(String value) throws IOException {
+            writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void writeBytes(byte[] bytes) throws IOException {
+            writeVarLong(bytes.length);
+            out.write(bytes);
+        }
+
+        void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+    }
+
+    private static final class Reader {
+        final DataInputStream in;
+        final Delegator delegator;
+        final List<String> names = new ArrayList<>();
+
+        Reader(DataInputStream in, Delegator delegator) {
+            this.in = in;
+            this.delegator = delegator;
+        }
+
+        Object readObject() throws IOException, SerializeException {
+            return readObject(in.readUnsignedByte());
+        }
+
+        Object readObject(int type) throws IOException, SerializeException {
+            switch (type) {
+            case T_NULL:
+                return null;
+            case T_STRING:
+                return readString();
+            case T_TRUE:
+                return Boolean.TRUE;
+            case T_FALSE:
+                return Boolean.FALSE;
+            case T_INTEGER:
+                return (int) unZigZag(readVarLong());
+            case T_LONG:
+                return unZigZag(readVarLong());
+            case T_FLOAT:
+                return in.readFloat();
+            case T_DOUBLE:
+                return in.readDouble();
+            case T_BIG_DECIMAL: {
+                int scale = (int) unZigZag(readVarLong());
+                return new BigDecimal(new BigInteger(readBytes()), scale);
+            }
+            case T_TIMESTAMP: {
+                Timestamp value = new Timestamp(unZigZag(readVarLong()));
+                int subMillisNanos = readSize();
+                if (subMillisNanos != 0) {
+                    value.setNanos(value.getNanos() + subMillisNanos);
+                }
+                return value;
+            }
+            case T_SQL_DATE:
+                return new java.sql.Date(unZigZag(readVarLong()));
+            case T_SQL_TIME:
+                return new java.sql.Time(unZigZag(readVarLong()));
+            case T_DATE:
+                return new java.util.Date(unZigZag(readVarLong()));
+            case T_LOCALE:
+                return UtilMisc.parseLocale(readName());
+            case T_TIME_ZONE:
+                return TimeZone.getTimeZone(readName());
+            case T_BYTES:
+                return readBytes();
+            case T_BYTE_BUFFER:
+                return ByteBuffer.wrap(readBytes());
+            case T_ARRAY_LIST:
+                return readCollection(new ArrayList<>());
+            case T_LINKED_LIST:
+                return readCollection(new LinkedList<>());
+            case T_HASH_SET:
+                return readCollection(new HashSet<>());
+            case T_LINKED_HASH_SET:
+                return readCollection(new LinkedHashSet<>());
+            case T_TREE_SET:
+                return readCollection(new TreeSet<>());
+            case T_HASH_MAP:
+                return readMap(new HashMap<>());
+            case T_LINKED_HASH_MAP:
+                return readMap(new LinkedHashMap<>());
+            case T_TREE_MAP:
+                return readMap(new TreeMap<>());
+            case T_GENERIC_VALUE:
+            case T_GENERIC_PK:
+                return readEntity(type == T_GENERIC_PK);
+            case T_SERIALIZABLE: {
+                Object value = UtilObject.getObject(readBytes());
+                if (value == null) {
+                    throw new SerializeException("Problem deserializing object from byte array");
+                }
+                return value;
+            }
+            default:
+                throw new SerializeException("Invalid binary serializer content: unknown type " + type);
+            }
+        }
+
+        Collection<Object> readCollection(Collection<Object> value) throws IOException, SerializeException {
+            int size = readSize();
+            for (int i = 0; i < size; i++) {
+                value.add(readObject());
+            }
+            return value;
+        }
+
+        Map<Object, Object> readMap(Map<Object, Object> value) throws IOException, SerializeException {
+            int size = readSize();
+            for (int i = 0; i < size; i++) {
+                int keyType = in.readUnsignedByte();
+                Object key = (keyType == T_STRING) ? readName() : readObject(keyType);
+                value.put(key, readObject());
+            }
+            return value;
+        }
+
+        GenericEntity readEntity(boolean pk) throws IOException, SerializeException {
+            String entityName = readName();
+            if (delegator == null) {
+                throw new SerializeException("Cannot deserialize entity value [" + entityName + "] without a delegator");
+            }
+            GenericEntity value = pk ? delegator.makePK(entityName) : delegator.makeValue(entityName);
+            if (value == null) {
+                throw new SerializeException("Cannot deserialize entity value: unknown entity [" + entityName + "]");
+            }
+            ModelEntity modelEntity = value.getModelEntity();
+            int size = readSize();
+            for (int i = 0; i < size; i++) {
+                String fieldName = readName();
+                Object fieldValue = readObject();
+                if (modelEntity.isField(fieldName)) {
+                    value.set(fieldName, fieldValue);
+                } else {
+                    Debug.logWarning("Skipping field [" + fieldName + "] of serialized entity value [" + entityName
+                            + "]: not a field of the entity", module);
+                }
+            }
+            return value;
+        }
+
+        String readName() throws IOException, SerializeException {
+            int ref = readSize();
+            if (ref == 0) {
+                String name = readString();
+                names.add(name);
+                return name;
+            }
+            if (ref > names.size()) {
+                throw new SerializeException("Invalid binary serializer content: unknown name reference " + ref);
+            }
+            return names.get(ref - 1);
+        }
+
+        String readString() throws IOException, SerializeException {
+            return new String(readBytes(), StandardCharsets.UTF_8);
+        }
+
+        byte[] readBytes() throws IOException, SerializeException {
+            byte[] bytes = new byte[readSize()];
+            in.readFully(bytes);
+            return bytes;
+        }
+
+        int readSize() throws IOException, SerializeException {
+            long size = readVarLong();
+            if (size < 0 || size > Integer.MAX_VALUE) {
+                throw new SerializeException("Invalid binary serializer content: bad size " + size);
+            }
+            return (int) size;
+        }
+
+        long readVarLong() throws IOException, SerializeException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = in.readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new SerializeException("Invalid binary serializer content: malformed varint");
+        }
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,129 @@
+package org.ofbiz.entity.test;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.ofbiz.entity.serialize.BinarySerializer;
+import org.ofbiz.entity.serialize.XmlSerializer;
+
+/**
+ * Size and CPU benchmark of {@link BinarySerializer} against {@link XmlSerializer} for persisted job contexts.
+ * <p>Each context holds the usual service scalars (strings, booleans, longs, <code>BigDecimal</code>,
+ * <code>Timestamp</code>, <code>Locale</code>) plus a list of <code>lines</code> maps of the same kind, standing in
+ * for the order/item lists typically passed to async services; results are the serialized size in characters and the
+ * serialize and deserialize time per context, after a warmup, and the binary round trip is checked for equality. Entity
+ * values are left out since they need a delegator to read back. Not a unit test (not in a testdef); run manually, e.g.:</p>
+ * <pre>java -cp ... org.ofbiz.entity.test.BinarySerializerBenchmark [lines=0,10,100,1000] [seconds=3] [iterations=3]</pre>
+ * <p>NOTE: Kept dependency-free (no JMH in the build); warmup and repeated iterations stand in for the JMH harness.</p>
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public class BinarySerializerBenchmark {
+
+    private interface Codec {
+        String serialize(Object object) throws Exception;
+        Object deserialize(String content) throws Exception;
+    }
+
+    private static final Codec XML = new Codec() {
+        @Override
+        public String serialize(Object object) throws Exception {
+            return XmlSerializer.serialize(object);
+        }
+        @Override
+        public Object deserialize(String content) throws Exception {
+            return XmlSerializer.deserialize(content, null);
+        }
+    };
+
+    private static final Codec BINARY = new Codec() {
+        @Override
+        public String serialize(Object object) throws Exception {
+            return BinarySerializer.serialize(object);
+        }
+        @Override
+        public Object deserialize(String content) throws Exception {
+            return BinarySerializer.deserialize(content, null);
+        }
+    };
+
+    public static void main(String[] args) throws Exception {
+        String[] lineCounts = ((args.length > 0) ? args[0] : "0,10,100,1000").split(",");
+        int seconds = (args.length > 1) ? Integer.parseInt(args[1]) : 3;
+        int iterations = (args.length > 2) ? Integer.parseInt(args[2]) : 3;
+
+        System.out.println("seconds=" + seconds + ", iterations=" + iterations);
+        for (String lineCount : lineCounts) {
+            Map<String, Object> context = makeContext(Integer.parseInt(lineCount.trim()));
+            String xml = XML.serialize(context);
+            String binary = BINARY.serialize(context);
+            // NOTE: Only the binary round trip is checked exactly; XmlSerializer writes BigDecimal with a fixed scale
+            check("binary", context, BINARY.deserialize(binary));
+            System.out.println("lines=" + lineCount + ": size xml=" + xml.length() + " binary=" + binary.length()
+                    + String.format(" (%.1f%%)", binary.length() * 100.0 / xml.length()));
+            for (int i = 0; i <= iterations; i++) {
+                String label = (i == 0) ? "warmup" : "iteration " + i;
+                int runSeconds = (i == 0) ? 1 : seconds;
+                System.out.println("  " + label + ": xml " + run(XML, context, xml, runSeconds)
+                        + " | binary " + run(BINARY, context, binary, runSeconds));
+            }
+        }
+    }
+
+    static Map<String, Object> makeContext(int lines) {
+        Map<String, Object> context = makeLine(0);
+        context.put("locale", Locale.US);
+        context.put("sendNotification", Boolean.TRUE);
+        List<Map<String, Object>> lineList = new ArrayList<>(lines);
+        for (int i = 1; i <= lines; i++) {
+            lineList.add(makeLine(i));
+        }
+        context.put("lines", lineList);
+        return context;
+    }
+
+    static Map<String, Object> makeLine(int seq) {
+        Map<String, Object> line = new HashMap<>();
+        line.put("orderId", "WS" + (10000 + seq));
+        line.put("orderItemSeqId", String.format("%05d", seq));
+        line.put("productId", "GZ-" + (1000 + seq % 50));
+        line.put("statusId", "ITEM_APPROVED");
+        line.put("quantity", BigDecimal.valueOf(seq % 7 + 1));
+        line.put("unitPrice", new BigDecimal("15.99").add(BigDecimal.valueOf(seq, 2)));
+        line.put("estimatedDeliveryDate", new Timestamp(1700000000000L + seq * 3600000L));
+        line.put("lastUpdatedStamp", new Timestamp(1700000000123L + seq));
+        line.put("sequenceNum", (long) seq);
+        line.put("isPromo", (seq % 10 == 0) ? "Y" : "N");
+        return line;
+    }
+
+    static void check(String name, Object expected, Object actual) {
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException(name + " round trip mismatch:\n  expected: " + expected + "\n  actual: " + actual);
+        }
+    }
+
+    static String run(Codec codec, Object context, String content, int seconds) throws Exception {
+        long serializeOps = 0;
+        long end = System.nanoTime() + seconds * 500000000L;
+        long start = System.nanoTime();
+        while (System.nanoTime() < end) {
+            codec.serialize(context);
+            serializeOps++;
+        }
+        long serializeNanos = System.nanoTime() - start;
+        long deserializeOps = 0;
+        end = System.nanoTime() + seconds * 500000000L;
+        start = System.nanoTime();
+        while (System.nanoTime() < end) {
+            codec.deserialize(content);
+            deserializeOps++;
+        }
+        long deserializeNanos = System.nanoTime() - start;
+        return String.format("ser %,d ns/op, deser %,d ns/op", serializeNanos / serializeOps, deserializeNanos / deserializeOps);
+    }
+}
@@ -0,0 +1,271 @@
+package org.ofbiz.entity.test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import javax.sql.rowset.serial.SerialBlob;
+
+import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.entity.GenericPK;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.serialize.BinarySerializer;
+import org.ofbiz.entity.serialize.SerializeException;
+import org.ofbiz.entity.serialize.XmlSerializer;
+import org.ofbiz.entity.testtools.EntityTestCase;
+
+/**
+ * Tests for {@link BinarySerializer}: round trips of every value tag, entity values, name back-references, the
+ * compressed form and the skipping of non-serializable values.
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public class BinarySerializerTests extends EntityTestCase {
+
+    public BinarySerializerTests(String name) {
+        super(name);
+    }
+
+    public void testValueTags() throws Exception {
+        Timestamp timestamp = new Timestamp(1700000000123L);
+        timestamp.setNanos(123456789);
+
+        List<Object> values = new ArrayList<>();
+        values.add(null);
+        values.add("text é中");
+        values.add("");
+        values.add(Boolean.TRUE);
+        values.add(Boolean.FALSE);
+        values.add(-42);
+        values.add(Integer.MIN_VALUE);
+        values.add(Long.MAX_VALUE);
+        values.add(Long.MIN_VALUE);
+        values.add(-1.5f);
+        values.add(Math.PI);
+        values.add(new BigDecimal("-12345.6789"));
+        values.add(new BigDecimal("1.23E+5")); // negative scale
+        values.add(timestamp);
+        values.add(java.sql.Date.valueOf("2020-02-29"));
+        values.add(java.sql.Time.valueOf("23:59:58"));
+        values.add(new java.util.Date(-86400000L));
+        values.add(Locale.CANADA_FRENCH);
+        values.add(TimeZone.getTimeZone("America/Montreal"));
+        values.add(new ArrayList<>(UtilMisc.toList("a", 1L, null)));
+        values.add(new LinkedList<>(UtilMisc.toList("b", 2L)));
+        values.add(new HashSet<>(UtilMisc.toList("c", "d")));
+        values.add(new LinkedHashSet<>(UtilMisc.toList("f", "e")));
+        values.add(new TreeSet<>(UtilMisc.toList("h", "g")));
+        values.add(UtilMisc.toMap("key", "value", "nested", UtilMisc.toMap("key", 3)));
+        Map<String, Object> linkedMap = new LinkedHashMap<>();
+        linkedMap.put("z", 1);
+        linkedMap.put("y", 2);
+        values.add(linkedMap);
+        values.add(new TreeMap<>(UtilMisc.toMap("b", "2", "a", "1")));
+        values.add(UUID.fromString("0b8c4a14-1f3b-4a6b-9d2e-6d4f3d2a1b0c")); // Java serialization fallback
+
+        for (Object value : values) {
+            Object result = roundTrip(value);
+            assertEquals("Round trip of " + value, value, result);
+            if (value != null) {
+                assertEquals("Class of " + value, value.getClass(), result.getClass());
+            }
+        }
+
+        Timestamp timestampResult = (Timestamp) roundTrip(timestamp);
+        assertEquals("Timestamp nanos", 123456789, timestampResult.getNanos());
+        assertEquals("BigDecimal negative scale", -3, ((BigDecimal) roundTrip(new BigDecimal("1.23E+5"))).scale());
+        assertEquals("LinkedHashSet order", UtilMisc.toList("f", "e"), new ArrayList<>((LinkedHashSet<?>) roundTrip(new LinkedHashSet<>(UtilMisc.toList("f", "e")))));
+        assertEquals("LinkedHashMap order", UtilMisc.toList("z", "y"), new ArrayList<>(((Map<?, ?>) roundTrip(linkedMap)).keySet()));
+
+        byte[] bytes = new byte[] { 0, 1, -1, 127, -128 };
+        assertTrue("Byte array", Arrays.equals(bytes, (byte[]) roundTrip(bytes)));
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 9, 8, 7, 6 }, 1, 2);
+        assertEquals("ByteBuffer (remaining bytes only)", ByteBuffer.wrap(new byte[] { 8, 7 }), roundTrip(buffer));
+        assertEquals("ByteBuffer position untouched", 1, buffer.position());
+
+        // Collections of other types are read back as their closest supported type
+        assertEquals("Unmodifiable list", ArrayList.class, roundTrip(Collections.unmodifiableList(UtilMisc.toList("a"))).getClass());
+    }
+
+    public void testEntityValues() throws Exception {
+        GenericValue testingType = delegator.makeValue("TestingType", "testingTypeId", "bs-type", "description", "Binary serializer");
+        Object result = roundTrip(testingType);
+        assertTrue("GenericValue class", result instanceof GenericValue);
+        assertEquals("GenericValue", testingType, result);
+        assertSame("GenericValue delegator", delegator, ((GenericValue) result).getDelegator());
+
+        GenericPK pk = testingType.getPrimaryKey();
+        result = roundTrip(pk);
+        assertTrue("GenericPK class", result instanceof GenericPK);
+        assertEquals("GenericPK", pk, result);
+
+        Timestamp dateTime = new Timestamp(1700000000000L);
+        dateTime.setNanos(987654321);
+        GenericValue allTypes = delegator.makeValue("TestFieldType", "testFieldTypeId", "bs-all");
+        allTypes.set("blobField", new SerialBlob(new byte[] { 9, 8, 7, 0, -128 }));
+        allTypes.set("byteArrayField", new byte[] { 1, 2, 3 });
+        allTypes.set("objectField", new ArrayList<>(UtilMisc.toList("a", "b")));
+        allTypes.set("dateField", java.sql.Date.valueOf("2021-06-30"));
+        allTypes.set("timeField", java.sql.Time.valueOf("12:34:56"));
+        allTypes.set("dateTimeField", dateTime);
+        allTypes.set("fixedPointField", new BigDecimal("-99.125"));
+        allTypes.set("floatingPointField", -0.25d);
+        allTypes.set("numericField", -7L);
+        allTypes.set("clobField", null);
+
+        // Entity values nested in a context, as in a job context; the second copy exercises the name back-references
+        Map<String, Object> context = UtilMisc.toMap("values", UtilMisc.toList(allTypes, allTypes), "type", testingType);
+        Map<?, ?> contextResult = (Map<?, ?>) roundTrip(context);
+        assertEquals("Nested GenericValue", testingType, contextResult.get("type"));
+        for (Object element : (List<?>) contextResult.get("values")) {
+            GenericValue decoded = (GenericValue) element;
+            assertEquals("Entity name", "TestFieldType", decoded.getEntityName());
+            assertTrue("Blob field", Arrays.equals(getBlobBytes((Blob) allTypes.get("blobField")), getBlobBytes((Blob) decoded.get("blobField"))));
+            assertTrue("Byte array field", Arrays.equals((byte[]) allTypes.get("byteArrayField"), (byte[]) decoded.get("byteArrayField")));
+            for (String fieldName : UtilMisc.toList("testFieldTypeId", "objectField", "dateField", "timeField", "dateTimeField",
+                    "fixedPointField", "floatingPointField", "numericField")) {
+                assertEquals("Field " + fieldName, allTypes.get(fieldName), decoded.get(fieldName));
+            }
+            assertTrue("Null field kept", decoded.containsKey("clobField"));
+            assertNull("Null field", decoded.get("clobField"));
+            assertEquals("Timestamp field nanos", 987654321, decoded.getTimestamp("dateTimeField").getNanos());
+        }
+
+        try {
+            BinarySerializer.deserialize(BinarySerializer.serialize(testingType), null);
+            fail("Entity value deserialized without a delegator");
+        } catch (SerializeException e) {
+            // expected
+        }
+    }
+
+    public void testNameBackReferences() throws Exception {
+        String key = "backReferencedKeyName";
+        List<Map<String, Object>> lines = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            lines.add(UtilMisc.toMap(key, i));
+        }
+        String serialized = BinarySerializer.serialize(lines);
+        byte[] data = decode(serialized);
+        assertEquals("Uncompressed", 0, data[1]);
+        assertEquals("Name written once", 1, countOccurrences(data, key.getBytes(StandardCharsets.UTF_8)));
+        assertEquals("Round trip", lines, BinarySerializer.deserialize(serialized, delegator));
+    }
+
+    public void testCompression() throws Exception {
+        Map<String, Object> small = UtilMisc.toMap("orderId", "WS10000");
+        String serialized = BinarySerializer.serialize(small);
+        assertTrue("Prefix", serialized.startsWith(BinarySerializer.PREFIX));
+        assertTrue("isSerialized", BinarySerializer.isSerialized(serialized));
+        byte[] data = decode(serialized);
+        assertEquals("Version", BinarySerializer.VERSION, data[0]);
+        assertEquals("Small body not compressed", 0, data[1]);
+
+        // Compressible body of well over 512 bytes
+        List<Object> lines = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            lines.add(UtilMisc.toMap("productId", "GZ-1000", "description", "Tiny Chrome Widget", "quantity", new BigDecimal("1.000000")));
+        }
+        Map<String, Object> large = UtilMisc.toMap("orderId", "WS10000", "lines", lines);
+        serialized = BinarySerializer.serialize(large);
+        data = decode(serialized);
+        assertEquals("Large body compressed", 1, data[1]);
+        assertEquals("Compressed round trip", large, BinarySerializer.deserialize(serialized, delegator));
+
+        // Incompressible body of over 512 bytes is kept as is
+        byte[] random = new byte[1024];
+        new java.util.Random(42).nextBytes(random);
+        serialized = BinarySerializer.serialize(random);
+        data = decode(serialized);
+        assertEquals("Incompressible body not compressed", 0, data[1]);
+        assertTrue("Incompressible round trip", Arrays.equals(random, (byte[]) BinarySerializer.deserialize(serialized, delegator)));
+    }
+
+    public void testSerializeOrNull() throws Exception {
+        Map<String, Object> context = new LinkedHashMap<>();
+        context.put("orderId", "WS10000");
+        context.put("notSerializable", new Object());
+        context.put("list", new ArrayList<>(UtilMisc.toList("a", new Object(), "b")));
+
+        try {
+            BinarySerializer.serialize(context);
+            fail("Non-serializable value serialized");
+        } catch (SerializeException e) {
+            // expected
+        }
+
+        List<String> errorMessageList = new ArrayList<>();
+        String serialized = BinarySerializer.serializeOrNull(context, errorMessageList);
+        assertNotNull("Serialized with skipped values", serialized);
+        assertEquals("Error messages", 2, errorMessageList.size());
+        Map<?, ?> result = (Map<?, ?>) BinarySerializer.deserialize(serialized, delegator);
+        assertEquals("Serializable entry", "WS10000", result.get("orderId"));
+        assertTrue("Skipped entry kept as null", result.containsKey("notSerializable"));
+        assertNull("Skipped entry", result.get("notSerializable"));
+        assertEquals("Skipped list element", Arrays.asList("a", null, "b"), result.get("list"));
+
+        errorMessageList.clear();
+        assertNull("Non-serializable top-level value", BinarySerializer.serializeOrNull(new Object(), errorMessageList));
+        assertEquals("Top-level error message", 1, errorMessageList.size());
+    }
+
+    public void testDeserializeAny() throws Exception {
+        Map<String, Object> context = UtilMisc.toMap("entitySyncId", "1500", "locale", Locale.US);
+        assertEquals("Binary", context, BinarySerializer.deserializeAny(BinarySerializer.serialize(context), delegator));
+        assertEquals("XML", context, BinarySerializer.deserializeAny(XmlSerializer.serialize(context), delegator));
+        assertNull("Null", BinarySerializer.deserializeAny(null, delegator));
+
+        try {
+            BinarySerializer.deserialize(BinarySerializer.PREFIX + "not base64!", delegator);
+            fail("Invalid content deserialized");
+        } catch (SerializeException e) {
+            // expected
+        }
+        try {
+            BinarySerializer.deserialize(BinarySerializer.PREFIX + Base64.getEncoder().encodeToString(new byte[] { 99, 0 }), delegator);
+            fail("Unsupported version deserialized");
+        } catch (SerializeException e) {
+            // expected
+        }
+    }
+
+    private Object roundTrip(Object value) throws Exception {
+        String serialized = BinarySerializer.serialize(value);
+        assertTrue("Prefix", BinarySerializer.isSerialized(serialized));
+        return BinarySerializer.deserialize(serialized, delegator);
+    }
+
+    private static byte[] decode(String serialized) {
+        return Base64.getDecoder().decode(serialized.substring(BinarySerializer.PREFIX.length()));
+    }
+
+    private static int countOccurrences(byte[] data, byte[] pattern) {
+        int count = 0;
+        for (int i = 0; i + pattern.length <= data.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(data, i, i + pattern.length), pattern)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static byte[] getBlobBytes(Blob blob) throws Exception {
+        return (blob == null) ? null : blob.getBytes(1, (int) blob.length());
+    }
+}
@@ -24,6 +24,7 @@ import java.util.Map;
 
 import org.ofbiz.base.util.UtilDateTime;
 import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.base.util.collections.PagedList;
 import org.ofbiz.entity.GenericEntityException;
 import org.ofbiz.entity.GenericValue;
 import org.ofbiz.entity.condition.EntityCondition;
@@ -34,6 +35,7 @@ import org.ofbiz.entity.util.EntityFindOptions;
 import org.ofbiz.entity.util.EntityListIterator;
 import org.ofbiz.entity.util.EntityQuery;
 import org.ofbiz.entity.util.EntityUtil;
+import org.ofbiz.entity.util.KeysetPaging;
 
 public class EntityQueryTestSuite extends EntityTestCase {
 
@@ -443,4 +445,133 @@ public class EntityQueryTestSuite extends EntityTestCase {
             TransactionUtil.rollback(transactionStarted, "Transaction is Rolled Back", e);
         }
     }
+
+    /*
+     * queryPagedListByKeyset(): Keyset (seek) paging (SCIPIO).
+     * assert: Walked all pages forward then backward by cursor and compared with the offset paged list (queryPagedList()) of each page.
+     */
+    public void testQueryPagedListByKeyset() throws GenericEntityException {
+        List<GenericValue> testingTypes = new LinkedList<>();
+        for (int i = 1; i <= 7; i++) {
+            // duplicate descriptions make the appended primary key tie-breaker necessary
+            testingTypes.add(delegator.makeValue("TestingType", "testingTypeId", "keysetPaging-" + i, "description", "Value " + (i % 3)));
+        }
+        delegator.storeAll(testingTypes);
+
+        EntityCondition condition = EntityCondition.makeCondition("testingTypeId", EntityOperator.LIKE, "keysetPaging-%");
+        int viewSize = 3;
+        PagedList<GenericValue> page = EntityQuery.use(delegator).from("TestingType").where(condition).orderBy("-description")
+                .queryPagedListByKeyset(null, viewSize, KeysetPaging.CountMode.ONCE);
+        assertEquals("queryPagedListByKeyset(): List size counted on first page", 7, page.getListSize());
+        assertNull("queryPagedListByKeyset(): No previous page on first page", page.getPreviousCursor());
+        int viewIndex = 0;
+        while (true) {
+            PagedList<GenericValue> offsetPage = EntityQuery.use(delegator).from("TestingType").where(condition)
+                    .orderBy("-description", "testingTypeId").queryPagedList(viewIndex, viewSize);
+            assertEquals("queryPagedListByKeyset(): View index matched", viewIndex, page.getViewIndex());
+            assertEquals("queryPagedListByKeyset(): Page " + viewIndex + " matched offset paging", offsetPage.getData(), page.getData());
+            if (page.getNextCursor() == null) {
+                break;
+            }
+            page = EntityQuery.use(delegator).from("TestingType").where(condition).orderBy("-description")
+                    .queryPagedListByKeyset(page.getNextCursor(), viewSize, KeysetPaging.CountMode.ONCE);
+            viewIndex++;
+        }
+        assertEquals("queryPagedListByKeyset(): Number of pages", 2, viewIndex);
+        assertEquals("queryPagedListByKeyset(): Last page size", 1, page.getData().size());
+
+        while (page.getPreviousCursor() != null) {
+            page = EntityQuery.use(delegator).from("TestingType").where(condition).orderBy("-description")
+                    .queryPagedListByKeyset(page.getPreviousCursor(), viewSize, KeysetPaging.CountMode.ONCE);
+            viewIndex--;
+            PagedList<GenericValue> offsetPage = EntityQuery.use(delegator).from("TestingType").where(condition)
+                    .orderBy("-description", "testingTypeId").queryPagedList(viewIndex, viewSize);
+            assertEquals("queryPagedListByKeyset(): Previous page " + viewIndex + " matched offset paging", offsetPage.getData(), page.getData());
+        }
+        assertEquals("queryPagedListByKeyset(): Walked back to first page", 0, viewIndex);
+
+        PagedList<GenericValue> invalidCursorPage = EntityQuery.use(delegator).from("TestingType").where(condition).orderBy("-description")
+                .queryPagedListByKeyset("not-a-cursor", viewSize, KeysetPaging.CountMode.NONE);
+        assertEquals("queryPagedListByKeyset(): Invalid cursor returns first page", 0, invalidCursorPage.getViewIndex());
+        assertTrue("queryPagedListByKeyset(): List size is a lower bound without count", invalidCursorPage.isListSizeEstimated());
+        assertEquals("queryPagedListByKeyset(): List size lower bound", viewSize + 1, invalidCursorPage.getListSize());
+
+        // well-formed cursors with the right signature but values not matching the sort keys (forged)
+        List<KeysetPaging.SortKey> keys = KeysetPaging.makeSortKeys(delegator.getModelEntity("TestingType"), UtilMisc.toList("-description"));
+        int signature = KeysetPaging.makeSignature("TestingType", keys);
+        PagedList<GenericValue> firstPage = EntityQuery.use(delegator).from("TestingType").where(condition).orderBy("-description")
+                .queryPagedListByKeyset(null, viewSize, KeysetPaging.CountMode.NONE);
+        String shortCursor = KeysetPaging.Cursor.next(1, -1, UtilMisc.<Object>toList("Value 1")).encode(signature);
+        PagedList<GenericValue> forgedPage = EntityQuery.use(delegator).from("TestingType").where(condition).orderBy("-description")
+                .queryPagedListByKeyset(shortCursor, viewSize, KeysetPaging.CountMode.NONE);
+        assertEquals("queryPagedListByKeyset(): Cursor with too few values returns first page", 0, forgedPage.getViewIndex());
+        assertEquals("queryPagedListByKeyset(): Cursor with too few values returns first page data", firstPage.getData(), forgedPage.getData());
+        String wrongTypeCursor = KeysetPaging.Cursor.next(1, -1, UtilMisc.<Object>toList(5L, "keysetPaging-1")).encode(signature);
+        forgedPage = EntityQuery.use(delegator).from("TestingType").where(condition).orderBy("-description")
+                .queryPagedListByKeyset(wrongTypeCursor, viewSize, KeysetPaging.CountMode.NONE);
+        assertEquals("queryPagedListByKeyset(): Cursor with a wrong value type returns first page", 0, forgedPage.getViewIndex());
+        assertEquals("queryPagedListByKeyset(): Cursor with a wrong value type returns first page data", firstPage.getData(), forgedPage.getData());
+    }
+
+    /*
+     * testPrefetch: Verifies that prefetched relations match the per-value lookups and are only answered from memory when asked for
+     * assert: Compared prefetched getRelatedOnePrefetched/getRelatedPrefetched results with direct lookups
+     * assert: Checked getRelated without cache ignores the prefetched values
+     * assert: Checked each getRelatedPrefetched call returns its own copies
+     * assert: Checked a removed related record is still returned from memory until the value is refreshed
+     * assert: Checked a changed relation key field is looked up again
+     */
+    public void testPrefetch() throws GenericEntityException {
+        List<GenericValue> testingNodes = new LinkedList<>();
+        testingNodes.add(delegator.makeValue("TestingNode", "testingNodeId", "prefetch-root", "description", "Prefetch root"));
+        for (int i = 1; i <= 3; i++) {
+            testingNodes.add(delegator.makeValue("TestingNode", "testingNodeId", "prefetch-" + i, "primaryParentNodeId", "prefetch-root",
+                    "description", "Prefetch node " + i));
+        }
+        testingNodes.add(delegator.makeValue("TestingNode", "testingNodeId", "prefetch-1-1", "primaryParentNodeId", "prefetch-1",
+                "description", "Prefetch node 1-1"));
+        delegator.storeAll(testingNodes);
+
+        List<GenericValue> nodes = EntityQuery.use(delegator).from("TestingNode")
+                .where(EntityCondition.makeCondition("testingNodeId", EntityOperator.LIKE, "prefetch-%")).orderBy("testingNodeId")
+                .prefetch("PrimaryParentTestingNode", "PrimaryChildTestingNode").queryList();
+        assertEquals("prefetch(): Number of nodes", 5, nodes.size());
+        for (GenericValue node : nodes) {
+            if (node.get("primaryParentNodeId") != null) {
+                GenericValue expectedParent = delegator.findOne("TestingNode", UtilMisc.toMap("testingNodeId", node.get("primaryParentNodeId")), false);
+                assertNotNull("prefetch(): Parent attached to " + node.get("testingNodeId"), node.getPrefetchedRelated("PrimaryParentTestingNode"));
+                assertEquals("prefetch(): Parent of " + node.get("testingNodeId"), expectedParent, node.getRelatedOnePrefetched("PrimaryParentTestingNode"));
+            }
+            List<GenericValue> expectedChildren = delegator.findByAnd("TestingNode", UtilMisc.toMap("primaryParentNodeId", node.get("testingNodeId")),
+                    UtilMisc.toList("testingNodeId"), false);
+            assertEquals("prefetch(): Children of " + node.get("testingNodeId"), expectedChildren,
+                    node.getRelatedPrefetched("PrimaryChildTestingNode", null, UtilMisc.toList("testingNodeId")));
+        }
+
+        GenericValue root = EntityUtil.getFirst(EntityUtil.filterByAnd(nodes, UtilMisc.toMap("testingNodeId", "prefetch-root")));
+        List<GenericValue> rootChildren = root.getRelatedPrefetched("PrimaryChildTestingNode", null, null);
+        assertNotSame("prefetch(): New list on each call", rootChildren, root.getRelatedPrefetched("PrimaryChildTestingNode", null, null));
+        rootChildren.get(0).set("description", "Changed");
+        assertFalse("prefetch(): Returned values are copies", "Changed".equals(
+                root.getRelatedPrefetched("PrimaryChildTestingNode", null, null).get(0).get("description")));
+
+        GenericValue node1 = EntityUtil.getFirst(EntityUtil.filterByAnd(nodes, UtilMisc.toMap("testingNodeId", "prefetch-1")));
+        delegator.removeByAnd("TestingNode", UtilMisc.toMap("testingNodeId", "prefetch-1-1"));
+        assertEquals("prefetch(): getRelated without cache looks up the database", 0, node1.getRelated("PrimaryChildTestingNode", null, null, false).size());
+        assertEquals("prefetch(): Children answered from memory", 1, node1.getRelatedPrefetched("PrimaryChildTestingNode", null, null).size());
+        node1.refresh();
+        assertEquals("prefetch(): Children looked up again after refresh", 0, node1.getRelatedPrefetched("PrimaryChildTestingNode", null, null).size());
+
+        GenericValue node2 = EntityUtil.getFirst(EntityUtil.filterByAnd(nodes, UtilMisc.toMap("testingNodeId", "prefetch-2")));
+        node2.set("primaryParentNodeId", "prefetch-3");
+        assertEquals("prefetch(): Parent looked up again after key change", "prefetch-3",
+                node2.getRelatedOnePrefetched("PrimaryParentTestingNode").get("testingNodeId"));
+
+        List<GenericValue> cachedNodes = EntityUtil.prefetchRelated(
+                EntityQuery.use(delegator).from("TestingNode").where("primaryParentNodeId", "prefetch-root").queryList(), true, "PrimaryParentTestingNode");
+        for (GenericValue node : cachedNodes) {
+            assertNotNull("prefetch(): Parent put in the entity cache", delegator.getFromPrimaryKeyCache(
+                    delegator.makePK("TestingNode", UtilMisc.toMap("testingNodeId", node.get("primaryParentNodeId")))));
+        }
+    }
 }
@@ -18,12 +18,14 @@
  *******************************************************************************/
 package org.ofbiz.entity.test;
 
+import java.io.File;
 import java.math.BigDecimal;
 import java.sql.Blob;
 import java.sql.Date;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -49,18 +51,23 @@ import org.ofbiz.entity.GenericEntity;
 import org.ofbiz.entity.GenericEntityException;
 import org.ofbiz.entity.GenericPK;
 import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.cache.EntityListCache;
 import org.ofbiz.entity.condition.EntityCondition;
 import org.ofbiz.entity.condition.EntityOperator;
 import org.ofbiz.entity.config.model.Datasource;
 import org.ofbiz.entity.config.model.EntityConfig;
 import org.ofbiz.entity.model.ModelEntity;
 import org.ofbiz.entity.model.ModelField;
+import org.ofbiz.entity.model.ModelReader;
+import org.ofbiz.entity.model.ModelRelation;
+import org.ofbiz.entity.model.ModelViewEntity;
 import org.ofbiz.entity.testtools.EntityTestCase;
 import org.ofbiz.entity.transaction.GenericTransactionException;
 import org.ofbiz.entity.transaction.TransactionUtil;
 import org.ofbiz.entity.util.EntityListIterator;
 import org.ofbiz.entity.util.EntityQuery;
 import org.ofbiz.entity.util.EntitySaxReader;
+import org.ofbiz.entity.util.EntityStoreOptions;
 import org.ofbiz.entity.util.SequenceUtil;
 
 public class EntityTestSuite extends EntityTestCase {
@@ -96,6 +103,84 @@ public class EntityTestSuite extends EntityTestCase {
         assertNull("TestingType.newDesc field model is null", modelField);
     }
 
+    /*
+     * Tests the parallel entity model load and the entity model snapshot (written and read back) against the serial
+     * load from the entity model files (SCIPIO)
+     */
+    public void testModelReaderParallelLoadAndSnapshot() throws Exception {
+        String modelName = EntityConfig.getInstance().getDelegator(delegator.getDelegatorName()).getEntityModelReader();
+        ModelReader serialReader = ModelReader.createModelReader(modelName, false);
+        ModelReader parallelReader = ModelReader.createModelReader(modelName, true);
+        assertSameModel("Parallel load", serialReader, parallelReader);
+
+        File snapshotFile = File.createTempFile("entitymodel-test", ".ser");
+        try {
+            assertTrue("Entity model snapshot written", serialReader.writeSnapshot(snapshotFile));
+            ModelReader snapshotReader = ModelReader.readSnapshot(modelName, snapshotFile);
+            assertNotNull("Entity model snapshot read back", snapshotReader);
+            assertSameModel("Snapshot", serialReader, snapshotReader);
+        } finally {
+            snapshotFile.delete();
+        }
+    }
+
+    private static void assertSameModel(String label, ModelReader expected, ModelReader actual) throws GenericEntityException {
+        assertEquals(label + ": entity names", expected.getEntityNames(), actual.getEntityNames());
+        int fieldCount = 0;
+        int relationCount = 0;
+        int viewEntityCount = 0;
+        for (String entityName : expected.getEntityNames()) {
+            ModelEntity expectedEntity = expected.getModelEntity(entityName);
+            ModelEntity actualEntity = actual.getModelEntity(entityName);
+            assertEquals(label + ": " + entityName + " fields", expectedEntity.getAllFieldNames(), actualEntity.getAllFieldNames());
+            assertEquals(label + ": " + entityName + " relations", getRelationNames(expectedEntity), getRelationNames(actualEntity));
+            fieldCount += actualEntity.getFieldsSize();
+            relationCount += actualEntity.getRelationsSize();
+            if (expectedEntity instanceof ModelViewEntity) {
+                assertTrue(label + ": " + entityName + " is a view-entity", actualEntity instanceof ModelViewEntity);
+                // compare the definitions of a sample of the view-entities
+                if ((viewEntityCount++ % 10) == 0) {
+                    assertSameViewEntity(label, (ModelViewEntity) expectedEntity, (ModelViewEntity) actualEntity);
+                }
+            }
+        }
+        Debug.logInfo(label + ": compared " + expected.getEntityNames().size() + " entities (" + viewEntityCount + " view-entities), "
+                + fieldCount + " fields, " + relationCount + " relations", module);
+    }
+
+    private static void assertSameViewEntity(String label, ModelViewEntity expected, ModelViewEntity actual) {
+        String entityName = expected.getEntityName();
+        List<String> expectedMembers = new ArrayList<>();
+        for (ModelViewEntity.ModelMemberEntity member : expected.getAllModelMemberEntities()) {
+            expectedMembers.add(member.getEntityAlias() + ":" + member.getEntityName());
+        }
+        List<String> actualMembers = new ArrayList<>();
+        for (ModelViewEntity.ModelMemberEntity member : actual.getAllModelMemberEntities()) {
+            actualMembers.add(member.getEntityAlias() + ":" + member.getEntityName());
+        }
+        assertEquals(label + ": " + entityName + " member entities", expectedMembers, actualMembers);
+        List<String> expectedAliases = new ArrayList<>();
+        for (ModelViewEntity.ModelAlias alias : expected.getAliasesCopy()) {
+            expectedAliases.add(alias.getName() + ":" + alias.getEntityAlias() + "." + alias.getField());
+        }
+        List<String> actualAliases = new ArrayList<>();
+        for (ModelViewEntity.ModelAlias alias : actual.getAliasesCopy()) {
+            actualAliases.add(alias.getName() + ":" + alias.getEntityAlias() + "." + alias.getField());
+        }
+        assertEquals(label + ": " + entityName + " aliases", expectedAliases, actualAliases);
+        assertEquals(label + ": " + entityName + " view links", expected.getViewLinksSize(), actual.getViewLinksSize());
+    }
+
+    private static List<String> getRelationNames(ModelEntity modelEntity) {
+        List<String> relationNames = new ArrayList<>(modelEntity.getRelationsSize());
+        Iterator<ModelRelation> relations = modelEntity.getRelationsIterator();
+        while (relations.hasNext()) {
+            ModelRelation relation = relations.next();
+            relationNames.add(relation.getCombinedName() + ":" + relation.getType() + ":" + relation.keyMapString(",", ""));
+        }
+        return relationNames;
+    }
+
     /*
      * Tests storing values with the delegator's .create, .makeValue, and .storeAll methods
      */
@@ -307,6 +392,47 @@ public class EntityTestSuite extends EntityTestCase {
         assertEquals("View retrieved from cache has the correct member description", "New Testing Subtype #Cache-3", testValue.getString("subtypeDescription"));
     }
 
+    /*
+     * Tests condition cache invalidation through the condition index (SCIPIO)
+     */
+    public void testEntityConditionCacheIndex() throws Exception {
+        EntityListCache listCache = new EntityListCache(delegator.getDelegatorName());
+        EntityCondition typeOneCond = EntityCondition.makeCondition("description", EntityOperator.EQUALS, "Index Type #1");
+        EntityCondition typeTwoCond = EntityCondition.makeCondition(UtilMisc.toList(
+                EntityCondition.makeCondition("testingTypeId", EntityOperator.LIKE, "TEST-IDX-%"),
+                EntityCondition.makeCondition("description", EntityOperator.EQUALS, "Index Type #2")), EntityOperator.AND);
+        EntityCondition likeCond = EntityCondition.makeCondition("description", EntityOperator.LIKE, "Index Type%");
+        List<EntityCondition> conditions = UtilMisc.toList(typeOneCond, typeTwoCond, likeCond);
+        try {
+            for (EntityCondition condition : conditions) {
+                listCache.put("TestingType", condition, new ArrayList<GenericValue>());
+            }
+            // Update of a "Index Type #1" value: only conditions matching the old and new values are removed
+            GenericValue oldValue = delegator.makeValue("TestingType", "testingTypeId", "TEST-IDX-1", "description", "Index Type #1");
+            GenericValue newValue = delegator.makeValue("TestingType", "testingTypeId", "TEST-IDX-1", "description", "Index Type #1");
+            listCache.storeHook(oldValue, newValue);
+            assertNull("Matching indexed condition removed", listCache.get("TestingType", typeOneCond));
+            assertNotNull("Non-matching indexed condition kept", listCache.get("TestingType", typeTwoCond));
+            assertNull("Matching unindexed condition removed", listCache.get("TestingType", likeCond));
+            Map<String, Object> stats = listCache.getConditionIndexStats("TestingType");
+            if (stats != null) { // null if disabled in cache.properties
+                assertTrue("Index selected the matching condition", ((Number) stats.get("indexHits")).longValue() >= 1);
+                assertTrue("Unindexed condition registered", ((Number) stats.get("unindexedConditions")).intValue() >= 1);
+            }
+            // Store by PK: conditions the PK cannot match are removed without evaluation
+            listCache.put("TestingType", typeOneCond, new ArrayList<GenericValue>());
+            GenericPK pk = delegator.makePK("TestingType", "testingTypeId", "TEST-IDX-2");
+            newValue = delegator.makeValue("TestingType", "testingTypeId", "TEST-IDX-2", "description", "Index Type #2");
+            listCache.storeHook(pk, newValue);
+            assertNull("Condition not matching PK removed", listCache.get("TestingType", typeOneCond));
+            assertNull("Condition not matching PK removed", listCache.get("TestingType", typeTwoCond));
+        } finally {
+            for (EntityCondition condition : conditions) {
+                listCache.remove("TestingType", condition);
+            }
+        }
+    }
+
     /*
      * Tests XML serialization by serializing/deserializing a GenericValue
      */
@@ -734,6 +860,53 @@ public class EntityTestSuite extends EntityTestCase {
         }
     }
 
+    /*
+     * This test will create and then update a large number of unique items with storeAll in JDBC batch mode, then remove them in batch mode
+     */
+    public void testCreateManyAndStoreAllBatched() throws Exception {
+        EntityStoreOptions storeOptions = new EntityStoreOptions(false, 100);
+        try {
+            List<GenericValue> newValues = new ArrayList<>();
+            for (int i = 0; i < TEST_COUNT; i++) {
+                newValues.add(delegator.makeValue("Testing", "testingId", getTestId("T6-", i)));
+            }
+            int n = delegator.storeAll(newValues, storeOptions);
+            assertEquals("Test to create " + TEST_COUNT + " with storeAll in batch mode", TEST_COUNT, n);
+
+            // mix updates of existing values with new ones in the same storeAll
+            List<GenericValue> changedValues = new ArrayList<>();
+            for (int i = 0; i < TEST_COUNT; i += 2) {
+                changedValues.add(delegator.makeValue("Testing", "testingId", getTestId("T6-", i), "testingName", "batch " + i));
+            }
+            changedValues.add(delegator.makeValue("Testing", "testingId", getTestId("T6-", (int) TEST_COUNT), "testingName", "batch new"));
+            n = delegator.storeAll(changedValues, storeOptions);
+            assertEquals("Test to update " + (TEST_COUNT / 2) + " and create one with storeAll in batch mode", (TEST_COUNT / 2) + 1, n);
+            long namedCount = EntityQuery.use(delegator)
+                                         .from("Testing")
+                                         .where(EntityCondition.makeCondition("testingId", EntityOperator.LIKE, "T6-%"),
+                                                EntityCondition.makeCondition("testingName", EntityOperator.NOT_EQUAL, null))
+                                         .queryCount();
+            assertEquals("Test values updated by storeAll in batch mode", (TEST_COUNT / 2) + 1, namedCount);
+
+            // the same new primary key twice in one batch run: created, then updated by the later value
+            List<GenericValue> repeatedValues = new ArrayList<>();
+            repeatedValues.add(delegator.makeValue("Testing", "testingId", "T6-REPEATED", "testingName", "batch first"));
+            repeatedValues.add(delegator.makeValue("Testing", "testingId", "T6-REPEATED", "testingName", "batch last"));
+            n = delegator.storeAll(repeatedValues, storeOptions);
+            assertEquals("Test to create and update a repeated primary key with storeAll in batch mode", 2, n);
+            GenericValue repeatedValue = EntityQuery.use(delegator).from("Testing").where("testingId", "T6-REPEATED").queryOne();
+            assertEquals("Test last value of a repeated primary key wins in batch mode", "batch last", repeatedValue.getString("testingName"));
+        } finally {
+            List<GenericValue> newlyCreatedValues = EntityQuery.use(delegator)
+                                                               .from("Testing")
+                                                               .where(EntityCondition.makeCondition("testingId", EntityOperator.LIKE, "T6-%"))
+                                                               .queryList();
+            delegator.removeAll(newlyCreatedValues, storeOptions);
+        }
+        long remaining = EntityQuery.use(delegator).from("Testing").where(EntityCondition.makeCondition("testingId", EntityOperator.LIKE, "T6-%")).queryCount();
+        assertEquals("Test removeAll in batch mode", 0, remaining);
+    }
+
     /*
      * This test will use the large number of unique items from above and test the EntityListIterator looping through the list
      */
@@ -1187,6 +1360,49 @@ public class EntityTestSuite extends EntityTestCase {
         assertEquals(10020, seqId.longValue());
     }
 
+    /**
+     * Tests the explicit-options SequenceUtil constructor: ids and bank refreshes with and without background refill
+     * and adaptive bank size.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public void testSequenceValueItemOptions() {
+        for (boolean asyncRefill : new boolean[] { false, true }) {
+            for (boolean adaptiveBankSize : new boolean[] { false, true }) {
+                String options = "asyncRefill=" + asyncRefill + ", adaptiveBankSize=" + adaptiveBankSize;
+                SequenceUtil sequencer = new SequenceUtil(delegator.getGroupHelperInfo(delegator.getEntityGroupName("SequenceValueItem")),
+                                                          delegator.getModelEntity("SequenceValueItem"),
+                                                          "seqName", "seqId", asyncRefill, adaptiveBankSize);
+                String sequenceName = "BogusSequence" + UUID.randomUUID().toString();
+                long lastSeqId = 0;
+                for (int i = 0; i < 100; i++) {
+                    Long seqId = sequencer.getNextSeqId(sequenceName, 1, null);
+                    assertNotNull("Sequence id (" + options + ")", seqId);
+                    if (adaptiveBankSize) {
+                        assertTrue("Increasing sequence id (" + options + ")", seqId > lastSeqId);
+                    } else {
+                        assertEquals("Sequence id (" + options + ")", 10000 + i, seqId.longValue());
+                    }
+                    lastSeqId = seqId;
+                }
+                if (adaptiveBankSize) {
+                    // Banks consumed this fast grow beyond the entity sequence-bank-size
+                    assertTrue("Adapted bank size (" + options + ")", sequencer.getBankSize(sequenceName) > 10);
+                } else {
+                    assertEquals("Bank size (" + options + ")", 10, sequencer.getBankSize(sequenceName));
+                }
+                sequencer.forceBankRefresh(sequenceName, 1);
+                Long seqId = sequencer.getNextSeqId(sequenceName, 1, null);
+                assertNotNull("Sequence id after refresh (" + options + ")", seqId);
+                if (adaptiveBankSize) {
+                    assertTrue("Sequence id after refresh (" + options + ")", seqId > lastSeqId);
+                } else {
+                    // The refreshed bank starts after the current one (10090-10099), whether or not it was reserved in the background
+                    assertEquals("Sequence id after refresh (" + options + ")", 10100, seqId.longValue());
+                }
+            }
+        }
+    }
+
     public void testSequenceValueItemWithConcurrentThreads() {
         final SequenceUtil sequencer = new SequenceUtil(delegator.getGroupHelperInfo(delegator.getEntityGroupName("SequenceValueItem")),
                                                   delegator.getModelEntity("SequenceValueItem"),
@@ -0,0 +1,148 @@
+package org.ofbiz.entity.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.entity.util.SequenceUtil;
+
+/**
+ * Contended throughput benchmark of {@link SequenceUtil} id generation, against the legacy synchronized bank.
+ * <p>Bank reservations are simulated with a lock and a fixed latency standing in for the SequenceValueItem
+ * update/select round trips (the database itself is left out). Modes: <code>legacy</code> (synchronized bank, refilled
+ * while holding the bank monitor, as before 3.0.0), <code>sync</code> (lock-free bank, refilled by the caller),
+ * <code>async</code> (lock-free bank, background refill at the low-water mark) and <code>adaptive</code> (async with
+ * adaptive bank size). Results are ids per second and the number of reservations, after a warmup. Not a unit test
+ * (not in a testdef); run manually, e.g.:</p>
+ * <pre>java -cp ... org.ofbiz.entity.test.SequenceUtilBenchmark [threads=64] [latencyMicros=2000] [seconds=5] [iterations=3]</pre>
+ * <p>NOTE: Kept dependency-free (no JMH in the build); warmup and repeated iterations stand in for the JMH harness.</p>
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public class SequenceUtilBenchmark {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    private static final String[] MODES = { "legacy", "sync", "async", "adaptive" };
+    private static final long bankSize = 10;
+
+    public static void main(String[] args) throws Exception {
+        int threads = (args.length > 0) ? Integer.parseInt(args[0]) : 64;
+        long latencyMicros = (args.length > 1) ? Long.parseLong(args[1]) : 2000;
+        int seconds = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+        int iterations = (args.length > 3) ? Integer.parseInt(args[3]) : 3;
+
+        System.out.println("threads=" + threads + ", latencyMicros=" + latencyMicros + ", seconds=" + seconds + ", iterations=" + iterations
+                + ", bankSize=" + bankSize);
+        for (String mode : MODES) {
+            run(mode, threads, latencyMicros, 1, "warmup");
+            for (int i = 1; i <= iterations; i++) {
+                run(mode, threads, latencyMicros, seconds, "iteration " + i);
+            }
+        }
+        System.exit(0);
+    }
+
+    static void run(String mode, int threads, long latencyMicros, int seconds, String label) throws InterruptedException {
+        SimulatedSequence sequence = new SimulatedSequence(latencyMicros);
+        IdSource source;
+        if ("legacy".equals(mode)) {
+            LegacyBank legacyBank = new LegacyBank(sequence);
+            source = legacyBank::getNextSeqId;
+        } else {
+            SimulatedSequenceUtil sequencer = new SimulatedSequenceUtil(sequence, !"sync".equals(mode), "adaptive".equals(mode));
+            source = () -> sequencer.getNextSeqId("BenchmarkSequence", 1, null);
+        }
+
+        LongAdder ops = new LongAdder();
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long[] endNanos = new long[1];
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                ready.countDown();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long count = 0;
+                while (System.nanoTime() < endNanos[0]) {
+                    if (source.next() == null) {
+                        throw new IllegalStateException("Null sequence id returned");
+                    }
+                    count++;
+                }
+                ops.add(count);
+                done.countDown();
+            }, "SequenceUtilBenchmark-" + i).start();
+        }
+        ready.await();
+        endNanos[0] = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        start.countDown();
+        done.await();
+        System.out.printf("%-9s %-12s %,15.0f ids/s %,10d reservations%n", mode, label, ops.sum() / (double) seconds, sequence.reservations);
+    }
+
+    interface IdSource {
+        Long next();
+    }
+
+    /** The sequence row: reservations are serialized (row lock) and take latencyMicros each. */
+    static final class SimulatedSequence {
+        private final long latencyNanos;
+        private long seqId = 10000;
+        private long reservations;
+
+        SimulatedSequence(long latencyMicros) {
+            this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+        }
+
+        synchronized long reserve(long size) {
+            long end = System.nanoTime() + latencyNanos;
+            while (System.nanoTime() < end) {
+                Thread.onSpinWait();
+            }
+            long start = seqId;
+            seqId += size;
+            reservations++;
+            return start;
+        }
+    }
+
+    static final class SimulatedSequenceUtil extends SequenceUtil {
+        private final SimulatedSequence sequence;
+
+        SimulatedSequenceUtil(SimulatedSequence sequence, boolean asyncRefill, boolean adaptiveBankSize) {
+            super(asyncRefill, adaptiveBankSize);
+            this.sequence = sequence;
+        }
+
+        @Override
+        protected Long reserveBank(String seqName, long bankSize) {
+            return sequence.reserve(bankSize);
+        }
+    }
+
+    /** The pre-3.0.0 bank algorithm: one monitor for every id, held during reservations. */
+    static final class LegacyBank {
+        private final SimulatedSequence sequence;
+        private long curSeqId;
+        private long maxSeqId;
+
+        LegacyBank(SimulatedSequence sequence) {
+            this.sequence = sequence;
+        }
+
+        synchronized Long getNextSeqId() {
+            if (curSeqId + 1 > maxSeqId) {
+                curSeqId = sequence.reserve(bankSize);
+                maxSeqId = curSeqId + bankSize;
+                // Logged as in the pre-3.0.0 fillBank, as SequenceUtil still does
+                if (Debug.infoOn()) Debug.logInfo("Got bank of sequenced IDs for [BenchmarkSequence]; curSeqId=" + curSeqId + ", maxSeqId=" + maxSeqId + ", bankSize=" + bankSize, module);
+            }
+            return curSeqId++;
+        }
+    }
+}
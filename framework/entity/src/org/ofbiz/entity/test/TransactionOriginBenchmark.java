@@ -0,0 +1,92 @@
+package org.ofbiz.entity.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.ofbiz.entity.transaction.TransactionOrigin;
+
+/**
+ * Throughput benchmark of the transaction begin/commit origin tracking cost for each {@link TransactionOrigin.Mode}.
+ * <p>Each operation performs the per-transaction bookkeeping TransactionUtil does on begin and commit (origin capture,
+ * thread-local placeholder set and clear) from a call stack of <code>depth</code> frames, which stands in for the
+ * service engine, event and screen frames typically below a transaction begin; results are begin+commit pairs per
+ * second and nanoseconds per pair, after a warmup. The transaction manager itself is left out, so the numbers are
+ * the origin tracking overhead only. Not a unit test (not in a testdef); run manually, e.g.:</p>
+ * <pre>java -cp ... org.ofbiz.entity.test.TransactionOriginBenchmark [threads=4] [depth=120] [seconds=5] [iterations=3] [sampleRate=100]</pre>
+ * <p>NOTE: Kept dependency-free (no JMH in the build); warmup and repeated iterations stand in for the JMH harness.</p>
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public class TransactionOriginBenchmark {
+
+    private static final ThreadLocal<Exception> beginStack = new ThreadLocal<>();
+
+    public static void main(String[] args) throws Exception {
+        int threads = (args.length > 0) ? Integer.parseInt(args[0]) : 4;
+        int depth = (args.length > 1) ? Integer.parseInt(args[1]) : 120;
+        int seconds = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+        int iterations = (args.length > 3) ? Integer.parseInt(args[3]) : 3;
+        int sampleRate = (args.length > 4) ? Integer.parseInt(args[4]) : 100;
+
+        TransactionOrigin.getMode(); // class init (properties loading) outside the measurements
+        System.out.println("threads=" + threads + ", depth=" + depth + ", seconds=" + seconds + ", iterations=" + iterations
+                + ", sampleRate=" + sampleRate);
+        for (TransactionOrigin.Mode mode : TransactionOrigin.Mode.values()) {
+            run(mode, threads, depth, sampleRate, 1, "warmup");
+            for (int i = 1; i <= iterations; i++) {
+                run(mode, threads, depth, sampleRate, seconds, "iteration " + i);
+            }
+        }
+    }
+
+    static void run(TransactionOrigin.Mode mode, int threads, int depth, int sampleRate, int seconds, String label) throws InterruptedException {
+        LongAdder ops = new LongAdder();
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long[] endNanos = new long[1];
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                ready.countDown();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                ops.add(atDepth(depth, () -> {
+                    long count = 0;
+                    while (System.nanoTime() < endNanos[0]) {
+                        // begin
+                        beginStack.set(TransactionOrigin.capture(mode, sampleRate, TransactionOrigin.getCallerDepth()));
+                        // commit
+                        if (beginStack.get() == null) {
+                            throw new IllegalStateException();
+                        }
+                        beginStack.set(null);
+                        count++;
+                    }
+                    return count;
+                }));
+                done.countDown();
+            }, "TransactionOriginBenchmark-" + i).start();
+        }
+        ready.await();
+        endNanos[0] = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        start.countDown();
+        done.await();
+        double opsPerSecond = ops.sum() / (double) seconds;
+        System.out.printf("%-8s %-12s %,15.0f ops/s %,10.0f ns/op%n", mode, label, opsPerSecond,
+                (opsPerSecond > 0) ? (threads * 1e9 / opsPerSecond) : 0);
+    }
+
+    interface Body {
+        long run();
+    }
+
+    static long atDepth(int depth, Body body) {
+        if (depth <= 0) {
+            return body.run();
+        }
+        return atDepth(depth - 1, body);
+    }
+}
@@ -0,0 +1,177 @@
+package org.ofbiz.entity.transaction;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilProperties;
+
+/**
+ * Captures the origin (begin location) of transactions for {@link TransactionUtil}'s transaction begin stack
+ * diagnostics, according to a configurable capture mode.
+ * <p>Capturing a full stack trace on every transaction begin (the legacy behavior) walks and materializes the whole
+ * thread stack for each service call and delegator write; the cheaper modes are:</p>
+ * <ul>
+ * <li><code>full</code>: full stack trace on every begin (default, legacy behavior).</li>
+ * <li><code>caller</code>: only the first few frames outside the transaction code, walked lazily using {@link StackWalker};
+ *     usually enough to identify the code that began the transaction.</li>
+ * <li><code>sampled</code>: full stack trace for about 1 in N begins; the other transactions get an empty placeholder.</li>
+ * <li><code>off</code>: no capture; every transaction gets the shared empty placeholder.</li>
+ * </ul>
+ * <p>Configured in debug.properties by <code>entity.transaction.originCapture</code>,
+ * <code>entity.transaction.originCapture.sampleRate</code> and <code>entity.transaction.originCapture.callerDepth</code>.
+ * The placeholders are still set and cleared in all modes, so suspend/resume and the begin stack save lists keep
+ * working; {@link #isCaptured(Exception)} tells apart placeholders that carry no origin.</p>
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public final class TransactionOrigin {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    public enum Mode {
+        FULL,
+        CALLER,
+        SAMPLED,
+        OFF;
+
+        public static Mode fromName(String name, Mode defaultMode) {
+            if (name == null || name.trim().isEmpty()) {
+                return defaultMode;
+            }
+            try {
+                return Mode.valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                Debug.logWarning("Invalid transaction origin capture mode [" + name + "]; using [" + defaultMode + "]", module);
+                return defaultMode;
+            }
+        }
+    }
+
+    private static final String PLACEHOLDER_MESSAGE = "Tx Stack Placeholder";
+    private static final Exception NOT_CAPTURED = new OriginException(PLACEHOLDER_MESSAGE + " (origin not captured)", new StackTraceElement[0]);
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+    private static final String TRANSACTION_CLASS_PREFIX = TransactionUtil.class.getName();
+
+    private static volatile Mode mode = Mode.fromName(UtilProperties.getPropertyValue("debug", "entity.transaction.originCapture"), Mode.FULL);
+    private static volatile int sampleRate = Math.max(1, UtilProperties.getPropertyAsInteger("debug", "entity.transaction.originCapture.sampleRate", 100));
+    private static volatile int callerDepth = Math.max(1, UtilProperties.getPropertyAsInteger("debug", "entity.transaction.originCapture.callerDepth", 4));
+
+    private TransactionOrigin() {
+    }
+
+    public static Mode getMode() {
+        return mode;
+    }
+
+    /** Changes the capture mode at runtime (not persisted). */
+    public static void setMode(Mode mode) {
+        TransactionOrigin.mode = (mode != null) ? mode : Mode.FULL;
+    }
+
+    public static int getSampleRate() {
+        return sampleRate;
+    }
+
+    public static void setSampleRate(int sampleRate) {
+        TransactionOrigin.sampleRate = Math.max(1, sampleRate);
+    }
+
+    public static int getCallerDepth() {
+        return callerDepth;
+    }
+
+    public static void setCallerDepth(int callerDepth) {
+        TransactionOrigin.callerDepth = Math.max(1, callerDepth);
+    }
+
+    /** Captures the origin of the transaction being begun in the current thread using the configured mode; never null. */
+    public static Exception capture() {
+        return capture(mode, sampleRate, callerDepth);
+    }
+
+    /** Captures the origin of the transaction being begun in the current thread using the given mode; never null. */
+    public static Exception capture(Mode mode, int sampleRate, int callerDepth) {
+        switch (mode) {
+        case CALLER:
+            return new OriginException(PLACEHOLDER_MESSAGE, callerFrames(callerDepth));
+        case SAMPLED:
+            if (sampleRate <= 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0) {
+                return new Exception(PLACEHOLDER_MESSAGE);
+            }
+            return NOT_CAPTURED;
+        case OFF:
+            return NOT_CAPTURED;
+        default:
+            return new Exception(PLACEHOLDER_MESSAGE);
+        }
+    }
+
+    /** Returns true if the placeholder carries an origin location, false if null or an empty placeholder (off or unsampled). */
+    public static boolean isCaptured(Exception placeholder) {
+        return placeholder != null && placeholder != NOT_CAPTURED;
+    }
+
+    private static StackWalker.StackFrame[] callerFrames(int depth) {
+        // Skips TransactionUtil (including nested classes) and this class, then keeps the next depth frames
+        return STACK_WALKER.walk(frames -> frames
+                .dropWhile(frame -> frame.getClassName().startsWith(TRANSACTION_CLASS_PREFIX)
+                        || frame.getClassName().equals(TransactionOrigin.class.getName()))
+                .limit(depth)
+                .toArray(StackWalker.StackFrame[]::new));
+    }
+
+    /**
+     * Placeholder exception with an explicit (partial or empty) stack trace; never fills in the stack itself.
+     * <p>Caller frames are only converted to stack trace elements when the trace is read or printed, which for
+     * placeholders is rare (rollback diagnostics, suspend/resume warnings).</p>
+     */
+    private static final class OriginException extends Exception {
+        private static final StackTraceElement[] EMPTY_STACK_TRACE = new StackTraceElement[0];
+        private volatile StackWalker.StackFrame[] frames;
+
+        OriginException(String message, StackTraceElement[] stackTrace) {
+            super(message, null, false, true);
+            setStackTrace(stackTrace);
+        }
+
+        OriginException(String message, StackWalker.StackFrame[] frames) {
+            this(message, EMPTY_STACK_TRACE);
+            this.frames = frames;
+        }
+
+        private void resolveFrames() {
+            StackWalker.StackFrame[] frames = this.frames;
+            if (frames != null) {
+                StackTraceElement[] stackTrace = new StackTraceElement[frames.length];
+                for (int i = 0; i < frames.length; i++) {
+                    stackTrace[i] = frames[i].toStackTraceElement();
+                }
+                setStackTrace(stackTrace);
+                this.frames = null;
+            }
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+
+        @Override
+        public StackTraceElement[] getStackTrace() {
+            resolveFrames();
+            return super.getStackTrace();
+        }
+
+        @Override
+        public void printStackTrace(java.io.PrintStream s) {
+            resolveFrames();
+            super.printStackTrace(s);
+        }
+
+        @Override
+        public void printStackTrace(java.io.PrintWriter s) {
+            resolveFrames();
+            super.printStackTrace(s);
+        }
+    }
+}
@@ -124,7 +124,7 @@ public final class TransactionUtil implements Status {
                     return false;
                 } else if (currentStatus == Status.STATUS_MARKED_ROLLBACK) {
                     Exception e = getTransactionBeginStack();
-                    if (e != null) {
+                    if (TransactionOrigin.isCaptured(e)) { // SCIPIO: 3.0.0: Skip empty placeholders (origin capture off or unsampled)
                         Debug.logWarning(e, "Active transaction marked for rollback in place, so no transaction begun; this stack trace shows when the exception began: ", module);
                     } else {
                         Debug.logWarning("Active transaction marked for rollback in place, so no transaction begun", module);
@@ -759,7 +759,10 @@ public final class TransactionUtil implements Status {
     }
 
     private static void setTransactionBeginStack() {
-        Exception e = new Exception("Tx Stack Placeholder");
+        // SCIPIO: 3.0.0: Capture according to the configured origin capture mode; a placeholder is always set, but it
+        // is only a full stack trace in full mode (see TransactionOrigin)
+        //Exception e = new Exception("Tx Stack Placeholder");
+        Exception e = TransactionOrigin.capture();
         setTransactionBeginStack(e);
     }
 
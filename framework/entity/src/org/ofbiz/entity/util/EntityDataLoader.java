@@ -57,6 +57,7 @@ import org.xml.sax.SAXException;
 public class EntityDataLoader {
 
     private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+    private static final int loadBatchSize = UtilProperties.getPropertyAsInteger("general", "entity.data.load.batchSize", 0); // SCIPIO
 
     public static String getPathsString(String helperName) {
         StringBuilder pathBuffer = new StringBuilder();
@@ -224,6 +225,14 @@ public class EntityDataLoader {
         return getUrlByComponentList(helperName, components, readerNames);
     }
 
+    /**
+     * Returns the JDBC batch size for entity XML data loads (general.properties entity.data.load.batchSize), 0 for none.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public static int getLoadBatchSize() {
+        return loadBatchSize;
+    }
+
     public static int loadData(URL dataUrl, String helperName, Delegator delegator, List<Object> errorMessages) throws GenericEntityException {
         return loadData(dataUrl, helperName, delegator, errorMessages, -1);
     }
@@ -259,6 +268,7 @@ public class EntityDataLoader {
             }
             reader.setCreateDummyFks(dummyFks);
             reader.setMaintainTxStamps(maintainTxs);
+            reader.setBatchSize(getLoadBatchSize()); // SCIPIO
             rowsChanged += reader.parse(dataUrl);
         } catch (IOException | SAXException e) {
             String xmlError = "[loadData]: Error loading XML Resource \"" + dataUrl.toExternalForm() + "\"; Error was: " + e.getMessage();
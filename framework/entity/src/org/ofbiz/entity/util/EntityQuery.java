@@ -22,6 +22,7 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -39,7 +40,10 @@ import org.ofbiz.entity.GenericEntityException;
 import org.ofbiz.entity.GenericPK;
 import org.ofbiz.entity.GenericValue;
 import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityFieldValue;
 import org.ofbiz.entity.condition.EntityJoinOperator;
+import org.ofbiz.entity.condition.EntityOperator;
+import org.ofbiz.entity.condition.OrderByItem;
 import org.ofbiz.entity.model.DynamicViewEntity;
 import org.ofbiz.entity.model.ModelEntity;
 
@@ -73,6 +77,7 @@ public class EntityQuery {
     private List<String> filterByFieldNames = null;
     private boolean searchPkOnly = false;
     private Map<String, Object> fieldMap = null;
+    private List<String> prefetchRelations = null; // SCIPIO
 
 
 
@@ -331,6 +336,36 @@ public class EntityQuery {
         return this;
     }
 
+    /** Specifies relations to load in batches for the query results (SCIPIO).
+     * <p>
+     * The related values are loaded using one query per relation (per chunk of keys) and attached to the result values,
+     * so that following {@link GenericValue#getRelatedPrefetched}/{@link GenericValue#getRelatedOnePrefetched} calls on them
+     * are answered from memory instead of one query per value; uses and fills the entity cache if {@link #cache()} is set.
+     * Relation names may be dot-separated paths, such as <code>Product.ProductPrice</code> for OrderItem. Applies to the list, single-value and paged list queries,
+     * not to {@link #queryIterator()}. Replaces previously set relations; pass none to clear.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     *
+     * @param relationNames the relation names (relation title + related entity name)
+     * @return this EntityQuery object, to enable chaining
+     * @see EntityUtil#prefetchRelated(Collection, boolean, int, Collection)
+     */
+    public EntityQuery prefetch(String... relationNames) {
+        this.prefetchRelations = (relationNames != null && relationNames.length > 0) ? Arrays.asList(relationNames) : null;
+        return this;
+    }
+
+    /** Specifies relations to load in batches for the query results (SCIPIO).
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     *
+     * @param relationNames the relation names (relation title + related entity name), or null to clear
+     * @return this EntityQuery object, to enable chaining
+     * @see #prefetch(String...)
+     */
+    public EntityQuery prefetch(Collection<String> relationNames) {
+        this.prefetchRelations = UtilValidate.isNotEmpty(relationNames) ? new ArrayList<>(relationNames) : null;
+        return this;
+    }
+
     /** Specifies whether the query should return only values that are currently active using from/thruDate fields.
      * <p>
      * SCIPIO: 2018-09-29: This method no longer throws exception if the date field names
@@ -564,6 +599,10 @@ public class EntityQuery {
         if (useCache) {
             Debug.logWarning("Call to iterator() with cache, ignoring cache" + toLogAppend(), module); // SCIPIO: Improved logging
         }
+        return makeQueryIterator();
+    }
+
+    private EntityListIterator makeQueryIterator() throws GenericEntityException { // SCIPIO: Factored out of queryIterator
         if (dynamicViewEntity == null) {
             return delegator.find(entityName, makeWhereCondition(false), havingEntityCondition, fieldsToSelect, orderBy, makeEntityFindOptions());
         } else {
@@ -620,6 +659,9 @@ public class EntityQuery {
             if (result != null && fieldsToSelect != null) {
                 result = result.select(fieldsToSelect);
             }
+            if (result != null && prefetchRelations != null) { // SCIPIO
+                prefetchRelated(Collections.singletonList(result));
+            }
         } else {
             if (Debug.verboseOn()) {
                 Debug.logVerbose("queryOne: using queryList() implementation" + toLogAppend(), module);
@@ -647,8 +689,12 @@ public class EntityQuery {
      * @return GenericValue representing the only result record from the query
      */
     public long queryCount() throws GenericEntityException {
+        return makeQueryCount();
+    }
+
+    private long makeQueryCount() throws GenericEntityException { // SCIPIO: Factored out of queryCount
         if (dynamicViewEntity != null) {
-            try (EntityListIterator iterator = queryIterator()) {
+            try (EntityListIterator iterator = makeQueryIterator()) {
                 return iterator.getResultsSizeAfterPartialList();
             }
         }
@@ -672,14 +718,21 @@ public class EntityQuery {
         }
         if (filterByDate && useCache) {
             try {
-                return EntityUtil.filterByCondition(result, this.makeDateCondition());
+                result = EntityUtil.filterByCondition(result, this.makeDateCondition()); // SCIPIO: no early return (prefetch)
             } catch(EntityFieldNotFoundException e) { // SCIPIO
                 //Debug.logError(e, "Query error: " + e.getMessage() + toLogAppend(), module); // already logged
             }
         }
+        prefetchRelated(result); // SCIPIO
         return result;
     }
 
+    private void prefetchRelated(List<GenericValue> values) throws GenericEntityException { // SCIPIO
+        if (prefetchRelations != null && values != null && !values.isEmpty()) {
+            EntityUtil.prefetchRelated(values, useCache, 0, prefetchRelations);
+        }
+    }
+
     private EntityFindOptions makeEntityFindOptions() {
         EntityFindOptions findOptions = new EntityFindOptions();
         if (resultSetType != null) {
@@ -878,9 +931,168 @@ public class EntityQuery {
      * @see EntityUtil#getPagedList
      */
     public PagedList<GenericValue> queryPagedList(int viewIndex, int viewSize) throws GenericEntityException {
+        PagedList<GenericValue> pagedList;
         try (EntityListIterator genericValueEli = queryIterator()) {
-            return EntityUtil.getPagedList(genericValueEli, viewIndex, viewSize);
+            pagedList = EntityUtil.getPagedList(genericValueEli, viewIndex, viewSize);
+        }
+        prefetchRelated(pagedList.getData()); // SCIPIO
+        return pagedList;
+    }
+
+    /**
+     * Query paged list using keyset (seek) paging, counting the list size once (SCIPIO).
+     * @param cursor the continuation cursor from {@link PagedList#getNextCursor()} or {@link PagedList#getPreviousCursor()}, or null for the first page
+     * @param viewSize
+     * @return PagedList object with a subset of data items and the cursors of the adjacent pages
+     * @throws GenericEntityException
+     * @see #queryPagedListByKeyset(String, int, KeysetPaging.CountMode)
+     */
+    public PagedList<GenericValue> queryPagedListByKeyset(String cursor, int viewSize) throws GenericEntityException {
+        return queryPagedListByKeyset(cursor, viewSize, KeysetPaging.CountMode.ONCE);
+    }
+
+    /**
+     * Query paged list using keyset (seek) paging (SCIPIO).
+     * <p>Each page is selected by a <code>WHERE (orderBy fields) &gt; (last-seen values)</code> condition with a
+     * <code>LIMIT</code> instead of scrolling an iterator to <code>viewIndex * viewSize</code>, so deep pages cost the same as
+     * the first one and no cursor is held open between pages. Pages are reached through the opaque cursors of the
+     * returned {@link PagedList}; arbitrary page indexes are not supported. The primary key is appended to the order to
+     * make it total. If the order can't be seeked (functions, explicit nulls placement, no primary key), offset paging
+     * is used instead, with the same cursor API. See {@link KeysetPaging}.</p>
+     * <p>The cache option is ignored, as for {@link #queryIterator()}.</p>
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     * @param cursor the continuation cursor from {@link PagedList#getNextCursor()} or {@link PagedList#getPreviousCursor()}, or null for the first page
+     * @param viewSize
+     * @param countMode determines how the list size is computed
+     * @return PagedList object with a subset of data items and the cursors of the adjacent pages
+     * @throws GenericEntityException
+     */
+    public PagedList<GenericValue> queryPagedListByKeyset(String cursor, int viewSize, KeysetPaging.CountMode countMode) throws GenericEntityException {
+        if (viewSize <= 0) {
+            throw new IllegalArgumentException("Invalid viewSize for keyset paging: " + viewSize);
+        }
+        ModelEntity modelEntity = (dynamicViewEntity != null) ? dynamicViewEntity.makeModelViewEntity(delegator) : delegator.getModelEntity(entityName);
+        List<KeysetPaging.SortKey> keys = KeysetPaging.makeSortKeys(modelEntity, orderBy);
+        int signature = KeysetPaging.makeSignature(modelEntity.getEntityName(), (keys != null) ? keys : Collections.emptyList());
+        KeysetPaging.Cursor current = KeysetPaging.Cursor.decode(cursor, signature,
+                (keys != null) ? KeysetPaging.getKeyJavaTypes(delegator, modelEntity, keys) : null);
+        if (keys == null) {
+            if (Debug.verboseOn()) {
+                Debug.logVerbose("queryPagedListByKeyset: order cannot be used for keyset paging; using offset paging" + toLogAppend(), module);
+            }
+            return queryPagedListByOffsetCursor(current, viewSize, signature);
         }
+
+        List<GenericValue> rows = null;
+        boolean backward = false;
+        int viewIndex = 0;
+        if (current != null && !current.isOffset()) {
+            backward = current.isBackward();
+            viewIndex = current.getViewIndex();
+            rows = querySeekPage(keys, KeysetPaging.makeSeekCondition(keys, current.getValues(), backward), backward, viewSize);
+            if (backward && rows.size() <= viewSize && !(rows.size() == viewSize && viewIndex == 0)) {
+                // Reached the start of the list early (rows were added or removed since): restart from the first page
+                rows = null;
+                backward = false;
+                viewIndex = 0;
+            }
+        } else if (current != null) {
+            // Offset cursor (unsupported key value types): scroll to the page once, then continue by keyset
+            viewIndex = current.getViewIndex();
+            try (EntityListIterator it = makeSeekIterator(makeWhereCondition(false), KeysetPaging.makeOrderBy(keys, false), makeEntityFindOptions())) {
+                rows = it.getPartialList(EntityUtil.getStartIndexFromViewIndex(viewIndex, viewSize), viewSize + 1);
+            }
+        }
+        if (rows == null) {
+            rows = querySeekPage(keys, null, false, viewSize);
+        }
+
+        boolean hasMore = rows.size() > viewSize;
+        List<GenericValue> data = hasMore ? new ArrayList<>(rows.subList(0, viewSize)) : rows;
+        if (backward) {
+            Collections.reverse(data);
+        }
+        boolean hasNext = backward || hasMore;
+        boolean hasPrevious = viewIndex > 0;
+
+        long listSize = (current != null) ? current.getListSize() : -1;
+        if (countMode == KeysetPaging.CountMode.EXACT || (countMode == KeysetPaging.CountMode.ONCE && listSize < 0)) {
+            listSize = makeQueryCount();
+        } else if (countMode == KeysetPaging.CountMode.NONE) {
+            listSize = -1;
+        }
+        return makeKeysetPagedList(keys, signature, data, viewIndex, viewSize, hasNext, hasPrevious, listSize, countMode);
+    }
+
+    private List<GenericValue> querySeekPage(List<KeysetPaging.SortKey> keys, EntityCondition seekCondition, boolean backward, int viewSize) throws GenericEntityException { // SCIPIO
+        EntityCondition whereCondition = makeWhereCondition(false);
+        if (seekCondition == null && backward) {
+            return new ArrayList<>();
+        }
+        if (seekCondition != null) {
+            whereCondition = (whereCondition != null) ? EntityCondition.makeCondition(whereCondition, EntityOperator.AND, seekCondition) : seekCondition;
+        }
+        EntityFindOptions findOptions = makeEntityFindOptions().setLimit(viewSize + 1).setOffset(0);
+        findOptions.setMaxRows(viewSize + 1);
+        return querySeekRows(whereCondition, KeysetPaging.makeOrderBy(keys, backward), findOptions);
+    }
+
+    private List<GenericValue> querySeekRows(EntityCondition whereCondition, List<String> seekOrderBy, EntityFindOptions findOptions) throws GenericEntityException { // SCIPIO
+        try (EntityListIterator it = makeSeekIterator(whereCondition, seekOrderBy, findOptions)) {
+            return it.getCompleteList();
+        }
+    }
+
+    private EntityListIterator makeSeekIterator(EntityCondition whereCondition, List<String> seekOrderBy, EntityFindOptions findOptions) throws GenericEntityException { // SCIPIO
+        Set<String> seekFieldsToSelect = null;
+        if (fieldsToSelect != null) {
+            // the sort key fields are needed to make the cursors
+            seekFieldsToSelect = new LinkedHashSet<>(fieldsToSelect);
+            for (String orderByString : seekOrderBy) {
+                seekFieldsToSelect.add(((EntityFieldValue) OrderByItem.parse(orderByString).getValue()).getFieldName());
+            }
+        }
+        if (dynamicViewEntity == null) {
+            return delegator.find(entityName, whereCondition, havingEntityCondition, seekFieldsToSelect, seekOrderBy, findOptions);
+        }
+        return delegator.findListIteratorByCondition(dynamicViewEntity, whereCondition, havingEntityCondition, seekFieldsToSelect, seekOrderBy, findOptions);
+    }
+
+    private PagedList<GenericValue> makeKeysetPagedList(List<KeysetPaging.SortKey> keys, int signature, List<GenericValue> data, int viewIndex, int viewSize,
+                                                        boolean hasNext, boolean hasPrevious, long listSize, KeysetPaging.CountMode countMode) throws GenericEntityException { // SCIPIO
+        prefetchRelated(data);
+        int lowIndex = viewIndex * viewSize;
+        int seenSize = lowIndex + data.size() + (hasNext ? 1 : 0);
+        boolean listSizeEstimated = (countMode != KeysetPaging.CountMode.EXACT);
+        int size = (int) Math.max(listSize, seenSize);
+        long cursorListSize = (countMode == KeysetPaging.CountMode.NONE) ? -1 : size;
+        String nextCursor = null;
+        String previousCursor = null;
+        if (hasNext && !data.isEmpty()) {
+            nextCursor = KeysetPaging.Cursor.next(viewIndex + 1, cursorListSize,
+                    KeysetPaging.getKeyValues(keys, data.get(data.size() - 1))).encode(signature);
+        }
+        if (hasPrevious && !data.isEmpty()) {
+            previousCursor = KeysetPaging.Cursor.previous(viewIndex - 1, cursorListSize,
+                    KeysetPaging.getKeyValues(keys, data.get(0))).encode(signature);
+        }
+        int startIndex = EntityUtil.getStartIndexFromViewIndex(viewIndex, viewSize);
+        int endIndex = lowIndex + data.size();
+        return new PagedList<>(startIndex, endIndex, size, viewIndex, viewSize, data, nextCursor, previousCursor, listSizeEstimated);
+    }
+
+    private PagedList<GenericValue> queryPagedListByOffsetCursor(KeysetPaging.Cursor current, int viewSize, int signature) throws GenericEntityException { // SCIPIO
+        int viewIndex = (current != null) ? current.getViewIndex() : 0;
+        PagedList<GenericValue> pagedList;
+        try (EntityListIterator genericValueEli = makeQueryIterator()) {
+            pagedList = EntityUtil.getPagedList(genericValueEli, viewIndex, viewSize);
+        }
+        prefetchRelated(pagedList.getData());
+        int size = pagedList.getListSize();
+        String nextCursor = (pagedList.getEndIndex() < size) ? KeysetPaging.Cursor.offset(viewIndex + 1, size).encode(signature) : null;
+        String previousCursor = (viewIndex > 0) ? KeysetPaging.Cursor.offset(viewIndex - 1, size).encode(signature) : null;
+        return new PagedList<>(pagedList.getStartIndex(), pagedList.getEndIndex(), size, viewIndex, viewSize, pagedList.getData(),
+                nextCursor, previousCursor, false);
     }
 
     /** SCIPIO: Executes the EntityQuery and returns a list of results; returns null if GenericEntityException.
@@ -1018,6 +1230,21 @@ public class EntityQuery {
         }
     }
 
+    /**
+     * SCIPIO: Query paged list using keyset (seek) paging; returns null if GenericEntityException.
+     * NOTE: Unchecked exceptions representing programming errors may still be thrown.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     * @see #queryPagedListByKeyset(String, int, KeysetPaging.CountMode)
+     */
+    public PagedList<GenericValue> queryPagedListByKeysetSafe(String cursor, int viewSize, KeysetPaging.CountMode countMode) {
+        try {
+            return queryPagedListByKeyset(cursor, viewSize, countMode);
+        } catch (GenericEntityException e) {
+            Debug.logError(e, "Error in queryPagedListByKeyset(): " + e.getMessage() + toLogAppend(), module);
+            return null;
+        }
+    }
+
     @Override
     public String toString() { // SCIPIO: Debugging help
         return "{entityName='" + entityName + '\'' +
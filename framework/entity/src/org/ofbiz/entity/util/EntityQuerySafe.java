@@ -296,4 +296,14 @@ public class EntityQuerySafe extends EntityQuery {
             return null;
         }
     }
+
+    @Override
+    public PagedList<GenericValue> queryPagedListByKeyset(String cursor, int viewSize, KeysetPaging.CountMode countMode) {
+        try {
+            return super.queryPagedListByKeyset(cursor, viewSize, countMode);
+        } catch (GenericEntityException e) {
+            Debug.logError(e, "Error in queryPagedListByKeyset(): " + e.getMessage() + toLogAppend(), module);
+            return null;
+        }
+    }
 }
@@ -97,6 +97,7 @@ public class EntitySaxReader extends DefaultHandler {
     private boolean useTryInsertMethod = false;
     private boolean maintainTxStamps = false;
     private boolean createDummyFks = false;
+    private int batchSize = 0; // SCIPIO: JDBC batch size for storeAll, 0 for none
     private boolean checkDataOnly = false;
     private enum Action {CREATE, CREATE_UPDATE, CREATE_REPLACE, DELETE};
     private List<String> actionTags = UtilMisc.toList("create", "create-update", "create-replace", "delete");
@@ -150,6 +151,13 @@ public class EntitySaxReader extends DefaultHandler {
         this.createDummyFks = createDummyFks;
     }
 
+    /**
+     * Sets the JDBC batch size used to write the values, see {@link EntityStoreOptions#getBatchSize()} (SCIPIO).
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
     public void setCheckDataOnly(boolean checkDataOnly) {
         this.checkDataOnly = checkDataOnly;
     }
@@ -460,7 +468,7 @@ public class EntitySaxReader extends DefaultHandler {
         if (this.checkDataOnly) {
             EntityDataAssert.checkValueList(valuesToWrite, delegator, this.getMessageList());
         } else {
-            delegator.storeAll(valuesToWrite, new EntityStoreOptions(createDummyFks));
+            delegator.storeAll(valuesToWrite, new EntityStoreOptions(createDummyFks, batchSize));
         }
     }
 
@@ -24,11 +24,20 @@ package org.ofbiz.entity.util;
 @SuppressWarnings("serial")
 public class EntityStoreOptions implements java.io.Serializable {
 
+    /** SCIPIO: Default number of primary keys per bulk existence check query; kept well below common IN list limits */
+    public static final int DEFAULT_KEY_CHUNK_SIZE = 500;
+
     /** Option for creating missing referenced values as dummy (pk-only) entries */
     protected boolean createDummyFks = false;
 
+    /** SCIPIO: Option for the number of rows per JDBC batch; 0 or 1 disables batching */
+    protected int batchSize = 0;
+
+    /** SCIPIO: Option for the number of primary keys per bulk existence check query */
+    protected int keyChunkSize = DEFAULT_KEY_CHUNK_SIZE;
+
     /**
-     * Default constructor. Defaults are as follows: createDummyFks = false
+     * Default constructor. Defaults are as follows: createDummyFks = false, batchSize = 0 (no batching)
      */
     public EntityStoreOptions() {
     }
@@ -42,6 +51,17 @@ public class EntityStoreOptions implements java.io.Serializable {
         this.createDummyFks = createDummyFks;
     }
 
+    /**
+     * Optional constructor with options to specify (SCIPIO).
+     *
+     * @param createDummyFks
+     * @param batchSize
+     */
+    public EntityStoreOptions(boolean createDummyFks, int batchSize) {
+        this.createDummyFks = createDummyFks;
+        this.batchSize = batchSize;
+    }
+
     /**
      * If true, missing entries in FK referenced entities will be created while storing the given GenericValues.
      *
@@ -59,4 +79,53 @@ public class EntityStoreOptions implements java.io.Serializable {
     public void setCreateDummyFks(boolean createDummyFks) {
         this.createDummyFks = createDummyFks;
     }
+
+    /**
+     * The number of rows sent to the database per JDBC batch by storeAll, createAll and removeAll (SCIPIO).
+     * <p>If greater than 1, values are processed in consecutive runs of the same entity: existing rows are looked up
+     * with bulk primary key queries and inserts, updates and deletes are sent as JDBC batches grouped by statement shape.
+     * Entity ECAs, audit logs and cache clearing still happen for each value. If 0 or 1, each value is written
+     * with its own statement as before.</p>
+     *
+     * @return int
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * The number of rows sent to the database per JDBC batch (SCIPIO). See {@link #getBatchSize()}.
+     *
+     * @param batchSize
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Returns true if batching is enabled, that is if the batch size is greater than 1 (SCIPIO).
+     *
+     * @return boolean
+     */
+    public boolean isBatch() {
+        return batchSize > 1;
+    }
+
+    /**
+     * The maximum number of primary keys per bulk existence check query in batch mode (SCIPIO).
+     *
+     * @return int
+     */
+    public int getKeyChunkSize() {
+        return keyChunkSize;
+    }
+
+    /**
+     * The maximum number of primary keys per bulk existence check query in batch mode (SCIPIO).
+     *
+     * @param keyChunkSize
+     */
+    public void setKeyChunkSize(int keyChunkSize) {
+        this.keyChunkSize = keyChunkSize;
+    }
 }
@@ -22,6 +22,7 @@ package org.ofbiz.entity.util;
 import java.io.Serializable;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -503,6 +504,58 @@ public final class EntityUtil {
         return result;
     }
 
+    /**
+     * Loads the named relations of all the given values in batches and attaches the related values to them, so that
+     * following {@link GenericValue#getRelatedPrefetched}/{@link GenericValue#getRelatedOnePrefetched} calls on those values
+     * are answered from memory instead of issuing one query per value (SCIPIO).
+     * <p>Each relation is loaded using one <code>IN</code> query per chunk of 500 distinct keys. A relation name may be a
+     * dot-separated path, such as <code>Product.ProductPrice</code> on OrderItem values, to also prefetch the relations
+     * of the related values. See {@link #prefetchRelated(Collection, boolean, int, Collection)}.</p>
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     * @return the passed values
+     */
+    public static <C extends Collection<GenericValue>> C prefetchRelated(C values, String... relationNames) throws GenericEntityException {
+        RelationPrefetch.prefetch(values, false, RelationPrefetch.DEFAULT_CHUNK_SIZE, Arrays.asList(relationNames));
+        return values;
+    }
+
+    /**
+     * Loads the named relations of all the given values in batches and attaches the related values to them, optionally
+     * using the entity cache (SCIPIO).
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     * @return the passed values
+     * @see #prefetchRelated(Collection, boolean, int, Collection)
+     */
+    public static <C extends Collection<GenericValue>> C prefetchRelated(C values, boolean useCache, String... relationNames) throws GenericEntityException {
+        RelationPrefetch.prefetch(values, useCache, RelationPrefetch.DEFAULT_CHUNK_SIZE, Arrays.asList(relationNames));
+        return values;
+    }
+
+    /**
+     * Loads the named relations of all the given values in batches and attaches the related values to them (SCIPIO).
+     * <p>For each relation, the distinct key values of the list are collected and the related values loaded using one
+     * <code>IN</code> query (<code>OR</code> of the key fields for multi-field keys) per chunk of <code>chunkSize</code> keys,
+     * then attached to each value, so that following {@link GenericValue#getRelatedPrefetched}/{@link GenericValue#getRelatedOnePrefetched}
+     * calls on those values are answered from memory, with any <code>byAndFields</code> and <code>orderBy</code> applied in memory.
+     * The regular <code>getRelated</code>/<code>getRelatedOne</code> calls are not answered from attached values. With
+     * <code>useCache</code>, keys already in the entity cache are not queried and the loaded values are put in the entity
+     * cache as a side effect, so following <code>getRelated</code>/<code>getRelatedOne</code> calls using the cache find them there.</p>
+     * <p>Attached values are dropped if the value's key fields change or it is refreshed; they are not updated if the related
+     * records change afterward, like any value held in memory. Each call returns its own copies of them.
+     * Immutable (entity cache) values in the list are not attached to, but still get their relations loaded into the cache
+     * with <code>useCache</code>. Values with null key fields are left to the regular per-value lookup.</p>
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     * @param values the values, of one or more entities; null elements are ignored
+     * @param useCache true to use and fill the entity cache
+     * @param chunkSize the maximum number of keys per query, or 0 for the default (500)
+     * @param relationNames the relation names (relation title + related entity name), optionally dot-separated paths
+     * @return the passed values
+     */
+    public static <C extends Collection<GenericValue>> C prefetchRelated(C values, boolean useCache, int chunkSize, Collection<String> relationNames) throws GenericEntityException {
+        RelationPrefetch.prefetch(values, useCache, chunkSize, relationNames);
+        return values;
+    }
+
     public static <T extends GenericEntity> List<T> filterByCondition(List<T> values, EntityCondition condition) {
         if (values == null) return null;
 
@@ -0,0 +1,446 @@
+package org.ofbiz.entity.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.ObjectType;
+import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.GenericEntity;
+import org.ofbiz.entity.GenericEntityException;
+import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityConditionValue;
+import org.ofbiz.entity.condition.EntityFieldValue;
+import org.ofbiz.entity.condition.EntityOperator;
+import org.ofbiz.entity.condition.OrderByItem;
+import org.ofbiz.entity.model.ModelEntity;
+import org.ofbiz.entity.model.ModelField;
+import org.ofbiz.entity.model.ModelFieldType;
+
+/**
+ * Keyset (seek) pagination support for {@link EntityQuery#queryPagedListByKeyset(String, int, CountMode)}.
+ * <p>Instead of skipping <code>viewIndex * viewSize</code> rows, each page is selected with
+ * <code>WHERE (orderBy fields) &gt; (last-seen values) ... LIMIT viewSize + 1</code>, so the cost of a page does not depend
+ * on its index. The last-seen (or, for previous pages, first-seen) values travel between requests in opaque,
+ * URL-safe continuation cursors ({@link Cursor}).</p>
+ * <p>The sort order is made total by appending the primary key fields not already in the order. Order fields must be
+ * plain fields (no UPPER/LOWER functions nor explicit NULLS FIRST/LAST); nullable fields are ordered with nulls as the
+ * largest values (the {@link OrderByItem#compare} convention), which is made explicit in the generated ORDER BY.
+ * Queries whose order can't be seeked fall back to offset paging, still using cursors.</p>
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public final class KeysetPaging {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    /** How the total list size is determined for keyset paged lists. */
+    public enum CountMode {
+        /** No count query; the list size is a lower bound (rows seen so far, plus one if there is a next page). */
+        NONE,
+        /** Count once on the first page and carry the count in the cursors; an estimate on later pages (default). */
+        ONCE,
+        /** Count on every page (one extra count query per page). */
+        EXACT;
+    }
+
+    /** One field of the (total) sort order. */
+    public static final class SortKey {
+        private final String fieldName;
+        private final boolean descending;
+        private final boolean nullable;
+
+        SortKey(String fieldName, boolean descending, boolean nullable) {
+            this.fieldName = fieldName;
+            this.descending = descending;
+            this.nullable = nullable;
+        }
+
+        public String getFieldName() {
+            return fieldName;
+        }
+
+        public boolean isDescending() {
+            return descending;
+        }
+
+        public boolean isNullable() {
+            return nullable;
+        }
+
+        @Override
+        public String toString() {
+            return (descending ? "-" : "") + fieldName + (nullable ? "?" : "");
+        }
+    }
+
+    private KeysetPaging() {
+    }
+
+    /**
+     * Makes the total sort order for the given entity and orderBy, appending missing primary key fields, or returns null
+     * if the order can't be used for keyset paging.
+     */
+    public static List<SortKey> makeSortKeys(ModelEntity modelEntity, List<String> orderBy) {
+        List<SortKey> keys = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        if (orderBy != null) {
+            for (String orderByString : orderBy) {
+                if (orderByString == null || orderByString.trim().isEmpty()) {
+                    continue;
+                }
+                if (orderByString.toUpperCase(Locale.ROOT).contains("NULLS ")) {
+                    return null;
+                }
+                OrderByItem item = OrderByItem.parse(orderByString);
+                EntityConditionValue value = item.getValue();
+                if (!(value instanceof EntityFieldValue)) {
+                    return null;
+                }
+                String fieldName = ((EntityFieldValue) value).getFieldName();
+                ModelField modelField = modelEntity.getField(fieldName);
+                if (modelField == null) {
+                    return null;
+                }
+                if (seen.add(fieldName)) {
+                    keys.add(new SortKey(fieldName, item.getDescending(), !modelField.getIsPk() && !modelField.getIsNotNull()));
+                }
+            }
+        }
+        List<String> pkFieldNames = modelEntity.getPkFieldNames();
+        if (pkFieldNames.isEmpty()) {
+            return null;
+        }
+        for (String pkFieldName : pkFieldNames) {
+            if (seen.add(pkFieldName)) {
+                keys.add(new SortKey(pkFieldName, false, false));
+            }
+        }
+        return Collections.unmodifiableList(keys);
+    }
+
+    /** Returns the Java types of the sort key fields, used to check the values of decoded cursors. */
+    public static List<String> getKeyJavaTypes(Delegator delegator, ModelEntity modelEntity, List<SortKey> keys) throws GenericEntityException {
+        List<String> javaTypes = new ArrayList<>(keys.size());
+        for (SortKey key : keys) {
+            ModelFieldType fieldType = delegator.getEntityFieldType(modelEntity, modelEntity.getField(key.getFieldName()).getType());
+            javaTypes.add((fieldType != null) ? fieldType.getJavaType() : null);
+        }
+        return Collections.unmodifiableList(javaTypes);
+    }
+
+    /** Makes the orderBy strings for the sort keys, reversed for previous pages, with explicit nulls placement for nullable fields. */
+    public static List<String> makeOrderBy(List<SortKey> keys, boolean backward) {
+        List<String> orderBy = new ArrayList<>(keys.size());
+        for (SortKey key : keys) {
+            boolean descending = key.isDescending() != backward;
+            String orderByString = (descending ? "-" : "") + key.getFieldName();
+            if (key.isNullable()) {
+                // nulls are the largest values
+                orderByString += descending ? " NULLS FIRST" : " NULLS LAST";
+            }
+            orderBy.add(orderByString);
+        }
+        return orderBy;
+    }
+
+    /**
+     * Makes the seek condition selecting the rows after (or, if backward, before) the given sort key values, or returns
+     * null if no row can follow them. The values must match the sort keys, as checked by {@link Cursor#decode(String, int, List)}.
+     */
+    public static EntityCondition makeSeekCondition(List<SortKey> keys, List<Object> values, boolean backward) {
+        if (values == null || values.size() != keys.size()) {
+            throw new IllegalArgumentException("Keyset seek values do not match the sort keys " + keys + ": " + values);
+        }
+        List<EntityCondition> orConds = new ArrayList<>(keys.size());
+        List<EntityCondition> equalConds = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            SortKey key = keys.get(i);
+            Object value = values.get(i);
+            EntityCondition afterCond = makeAfterCondition(key, value, key.isDescending() == backward);
+            if (afterCond != null) {
+                if (equalConds.isEmpty()) {
+                    orConds.add(afterCond);
+                } else {
+                    List<EntityCondition> andConds = new ArrayList<>(equalConds);
+                    andConds.add(afterCond);
+                    orConds.add(EntityCondition.makeCondition(andConds, EntityOperator.AND));
+                }
+            }
+            equalConds.add(EntityCondition.makeCondition(key.getFieldName(), EntityOperator.EQUALS, value));
+        }
+        if (orConds.isEmpty()) {
+            return null;
+        }
+        return (orConds.size() == 1) ? orConds.get(0) : EntityCondition.makeCondition(orConds, EntityOperator.OR);
+    }
+
+    private static EntityCondition makeAfterCondition(SortKey key, Object value, boolean ascending) {
+        String fieldName = key.getFieldName();
+        if (ascending) {
+            if (value == null) {
+                return null; // nulls are last
+            }
+            EntityCondition cond = EntityCondition.makeCondition(fieldName, EntityOperator.GREATER_THAN, value);
+            if (key.isNullable()) {
+                cond = EntityCondition.makeCondition(cond, EntityOperator.OR, EntityCondition.makeCondition(fieldName, EntityOperator.EQUALS, null));
+            }
+            return cond;
+        }
+        if (value == null) {
+            return key.isNullable() ? EntityCondition.makeCondition(fieldName, EntityOperator.NOT_EQUAL, null) : null;
+        }
+        return EntityCondition.makeCondition(fieldName, EntityOperator.LESS_THAN, value);
+    }
+
+    /** Returns the sort key values of the given row. */
+    public static List<Object> getKeyValues(List<SortKey> keys, GenericEntity row) {
+        List<Object> values = new ArrayList<>(keys.size());
+        for (SortKey key : keys) {
+            values.add(row.get(key.getFieldName()));
+        }
+        return values;
+    }
+
+    /** Returns a signature of the entity and sort order, used to reject cursors made for a different query. */
+    public static int makeSignature(String entityName, List<SortKey> keys) {
+        return (entityName + ":" + keys).hashCode();
+    }
+
+    /**
+     * Continuation cursor: the page index, the known list size and, for keyset (non-offset) cursors, the sort key values
+     * of the row to continue after (next) or before (previous).
+     * <p>Encoded as an opaque URL-safe base64 string. Decoding is tolerant: malformed or forged cursors, or cursors for another
+     * query, decode to null and the first page is returned instead.</p>
+     */
+    public static final class Cursor {
+        private static final byte VERSION = 1;
+        private static final byte NEXT = 'n';
+        private static final byte PREVIOUS = 'p';
+        private static final byte OFFSET = 'o';
+
+        private final byte type;
+        private final int viewIndex;
+        private final long listSize;
+        private final List<Object> values;
+
+        private Cursor(byte type, int viewIndex, long listSize, List<Object> values) {
+            this.type = type;
+            this.viewIndex = viewIndex;
+            this.listSize = listSize;
+            this.values = values;
+        }
+
+        public static Cursor next(int viewIndex, long listSize, List<Object> values) {
+            return new Cursor(NEXT, viewIndex, listSize, values);
+        }
+
+        public static Cursor previous(int viewIndex, long listSize, List<Object> values) {
+            return new Cursor(PREVIOUS, viewIndex, listSize, values);
+        }
+
+        public static Cursor offset(int viewIndex, long listSize) {
+            return new Cursor(OFFSET, viewIndex, listSize, null);
+        }
+
+        /** The page index of the page this cursor leads to. */
+        public int getViewIndex() {
+            return viewIndex;
+        }
+
+        /** The list size known when the cursor was made, or -1 if unknown. */
+        public long getListSize() {
+            return listSize;
+        }
+
+        public boolean isOffset() {
+            return type == OFFSET;
+        }
+
+        public boolean isBackward() {
+            return type == PREVIOUS;
+        }
+
+        public List<Object> getValues() {
+            return values;
+        }
+
+        /** Encodes the cursor, falling back to an offset cursor if a value type is not supported. */
+        public String encode(int signature) {
+            try {
+                return Base64.getUrlEncoder().withoutPadding().encodeToString(toBytes(signature, type, values));
+            } catch (IllegalArgumentException e) {
+                if (Debug.verboseOn()) {
+                    Debug.logVerbose("Keyset cursor: " + e.getMessage() + "; using offset cursor", module);
+                }
+                try {
+                    return Base64.getUrlEncoder().withoutPadding().encodeToString(toBytes(signature, OFFSET, null));
+                } catch (IOException e2) {
+                    throw new IllegalStateException(e2);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e); // never for in-memory streams
+            }
+        }
+
+        private byte[] toBytes(int signature, byte type, List<Object> values) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeByte(VERSION);
+                out.writeInt(signature);
+                out.writeByte(type);
+                out.writeInt(viewIndex);
+                out.writeLong(listSize);
+                if (type != OFFSET) {
+                    out.writeShort(values.size());
+                    for (Object value : values) {
+                        writeValue(out, value);
+                    }
+                }
+            }
+            return bytes.toByteArray();
+        }
+
+        /**
+         * Decodes the cursor, returning null if empty, malformed, made for a query with another signature, or if its values
+         * don't match the sort keys in count and Java type (keyJavaTypes, from {@link #getKeyJavaTypes}; null if the query
+         * has no sort keys, in which case only offset cursors are accepted).
+         */
+        public static Cursor decode(String cursor, int signature, List<String> keyJavaTypes) {
+            if (cursor == null || cursor.isEmpty()) {
+                return null;
+            }
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(cursor)))) {
+                if (in.readByte() != VERSION) {
+                    throw new IOException("unsupported version");
+                }
+                if (in.readInt() != signature) {
+                    Debug.logWarning("Keyset cursor was made for a different query or sort order; returning first page", module);
+                    return null;
+                }
+                byte type = in.readByte();
+                int viewIndex = in.readInt();
+                long listSize = in.readLong();
+                if (viewIndex < 0 || (type != NEXT && type != PREVIOUS && type != OFFSET)) {
+                    throw new IOException("invalid cursor header");
+                }
+                List<Object> values = null;
+                if (type != OFFSET) {
+                    int count = in.readShort();
+                    if (keyJavaTypes == null || count != keyJavaTypes.size()) {
+                        throw new IOException("expected " + ((keyJavaTypes != null) ? keyJavaTypes.size() : 0) + " sort key values, got " + count);
+                    }
+                    values = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        values.add(checkValue(readValue(in), keyJavaTypes.get(i)));
+                    }
+                }
+                return new Cursor(type, viewIndex, listSize, values);
+            } catch (IOException | IllegalArgumentException e) {
+                Debug.logWarning("Invalid keyset cursor [" + cursor + "]: " + e.toString() + "; returning first page", module);
+                return null;
+            }
+        }
+
+        /** Returns the value if it has the Java type of its sort key field, converting between number types, else throws IOException. */
+        private static Object checkValue(Object value, String javaType) throws IOException {
+            if (value == null || javaType == null || ObjectType.instanceOf(value, javaType)) {
+                return value;
+            }
+            if (value instanceof Number) {
+                // the cursor stores integers as long and floating-point numbers as double
+                Number number = (Number) value;
+                if (ObjectType.instanceOf(Integer.class, javaType, null) && (value instanceof Long)) {
+                    return number.intValue();
+                } else if (ObjectType.instanceOf(Float.class, javaType, null) && (value instanceof Double)) {
+                    return number.floatValue();
+                } else if (ObjectType.instanceOf(BigDecimal.class, javaType, null) && (value instanceof Long || value instanceof Double)) {
+                    return (value instanceof Long) ? BigDecimal.valueOf(number.longValue()) : BigDecimal.valueOf(number.doubleValue());
+                }
+            }
+            throw new IOException("sort key value of type " + value.getClass().getName() + " does not match field type " + javaType);
+        }
+
+        private static void writeValue(DataOutputStream out, Object value) throws IOException {
+            if (value == null) {
+                out.writeByte('N');
+            } else if (value instanceof String) {
+                byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+                out.writeByte('S');
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                out.writeByte('L');
+                out.writeLong(((Number) value).longValue());
+            } else if (value instanceof Double || value instanceof Float) {
+                out.writeByte('D');
+                out.writeDouble(((Number) value).doubleValue());
+            } else if (value instanceof BigDecimal) {
+                out.writeByte('B');
+                out.writeUTF(value.toString());
+            } else if (value instanceof Timestamp) {
+                out.writeByte('T');
+                out.writeLong(((Timestamp) value).getTime());
+                out.writeInt(((Timestamp) value).getNanos());
+            } else if (value instanceof java.sql.Date) {
+                out.writeByte('d');
+                out.writeLong(((java.sql.Date) value).getTime());
+            } else if (value instanceof Time) {
+                out.writeByte('t');
+                out.writeLong(((Time) value).getTime());
+            } else if (value instanceof Boolean) {
+                out.writeByte('Z');
+                out.writeBoolean((Boolean) value);
+            } else {
+                throw new IllegalArgumentException("unsupported sort key value type: " + value.getClass().getName());
+            }
+        }
+
+        private static Object readValue(DataInputStream in) throws IOException {
+            byte tag = in.readByte();
+            switch (tag) {
+            case 'N':
+                return null;
+            case 'S':
+                int length = in.readInt();
+                if (length < 0 || length > in.available()) {
+                    throw new IOException("invalid string length");
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            case 'L':
+                return in.readLong();
+            case 'D':
+                return in.readDouble();
+            case 'B':
+                return new BigDecimal(in.readUTF());
+            case 'T':
+                Timestamp timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                return timestamp;
+            case 'd':
+                return new java.sql.Date(in.readLong());
+            case 't':
+                return new Time(in.readLong());
+            case 'Z':
+                return in.readBoolean();
+            default:
+                throw new IOException("invalid value tag: " + tag);
+            }
+        }
+    }
+}
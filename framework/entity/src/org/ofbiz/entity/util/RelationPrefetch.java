@@ -0,0 +1,233 @@
+package org.ofbiz.entity.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.GenericEntityException;
+import org.ofbiz.entity.GenericModelException;
+import org.ofbiz.entity.GenericPK;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityOperator;
+import org.ofbiz.entity.model.ModelEntity;
+import org.ofbiz.entity.model.ModelField;
+import org.ofbiz.entity.model.ModelKeyMap;
+import org.ofbiz.entity.model.ModelRelation;
+
+/**
+ * Batch loading of the related values of a list of values, for {@link EntityUtil#prefetchRelated} and
+ * {@link EntityQuery#prefetch(String...)}.
+ * <p>For each relation, the distinct relation key values of the list are collected and the related values are loaded
+ * with one <code>IN</code> (or, for multi-field keys, <code>OR</code>) query per chunk of keys, then attached to each
+ * value using {@link GenericValue#setPrefetchedRelated}, so that the following {@link GenericValue#getRelatedPrefetched}
+ * calls on those values are answered from memory instead of one query per value. When the entity cache is used, keys
+ * already in the cache are not queried and the loaded values are put in the cache (the same cache entries
+ * <code>getRelated</code>/<code>getRelatedOne</code> use), as a side effect.</p>
+ * <p>Values with a null relation key field, and relations whose key fields differ in type or (for "one" relations)
+ * do not map the related entity primary key, are left to the regular per-value lookups.</p>
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+final class RelationPrefetch {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    /** Maximum number of keys per query; stays below the 1000 IN list item limit of some databases. */
+    static final int DEFAULT_CHUNK_SIZE = 500;
+
+    private RelationPrefetch() {
+    }
+
+    /**
+     * Prefetches the given relations of the values; each relation may be a dot-separated path of relation names
+     * (e.g. <code>Product.ProductPrice</code>), whose further levels are prefetched on the related values of the previous level.
+     */
+    static void prefetch(Collection<GenericValue> values, boolean useCache, int chunkSize, Collection<String> relationPaths) throws GenericEntityException {
+        if (values == null || values.isEmpty() || relationPaths == null) {
+            return;
+        }
+        if (chunkSize <= 0) {
+            chunkSize = DEFAULT_CHUNK_SIZE;
+        }
+        for (String relationPath : relationPaths) {
+            Collection<GenericValue> levelValues = values;
+            for (String relationName : relationPath.split("\\.")) {
+                levelValues = prefetchRelation(levelValues, relationName.trim(), useCache, chunkSize);
+                if (levelValues.isEmpty()) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /** Prefetches one relation of the values and returns the distinct related values found. */
+    static Collection<GenericValue> prefetchRelation(Collection<GenericValue> values, String relationName, boolean useCache, int chunkSize) throws GenericEntityException {
+        Map<String, List<GenericValue>> valuesByEntity = new LinkedHashMap<>();
+        for (GenericValue value : values) {
+            if (value != null && value != GenericValue.NULL_VALUE) {
+                valuesByEntity.computeIfAbsent(value.getEntityName(), k -> new ArrayList<>()).add(value);
+            }
+        }
+        Collection<GenericValue> related = new LinkedHashSet<>();
+        for (List<GenericValue> entityValues : valuesByEntity.values()) {
+            GenericValue first = entityValues.get(0);
+            prefetchRelation(first.getDelegator(), first.getModelEntity(), entityValues, relationName, useCache, chunkSize, related);
+        }
+        return related;
+    }
+
+    private static void prefetchRelation(Delegator delegator, ModelEntity modelEntity, List<GenericValue> values, String relationName,
+                                         boolean useCache, int chunkSize, Collection<GenericValue> related) throws GenericEntityException {
+        ModelRelation relation = modelEntity.getRelation(relationName);
+        if (relation == null) {
+            throw new GenericModelException("Could not find relation for relationName: " + relationName + " for entity " + modelEntity.getEntityName());
+        }
+        ModelEntity relEntity = delegator.getModelEntity(relation.getRelEntityName());
+        List<ModelKeyMap> keyMaps = relation.getKeyMaps();
+        boolean one = "one".equals(relation.getType()) || "one-nofk".equals(relation.getType());
+        if (!isPrefetchable(modelEntity, relEntity, keyMaps, one)) {
+            if (Debug.verboseOn()) {
+                Debug.logVerbose("Relation [" + relationName + "] of entity [" + modelEntity.getEntityName()
+                        + "] cannot be prefetched; using per-value lookups", module);
+            }
+            return;
+        }
+
+        // Owners by distinct relation key (list of the key field values, in key map order)
+        Map<List<Object>, List<GenericValue>> owners = new LinkedHashMap<>();
+        for (GenericValue value : values) {
+            List<Object> key = getKey(value, keyMaps, false);
+            if (key != null) {
+                owners.computeIfAbsent(key, k -> new ArrayList<>(1)).add(value);
+            }
+        }
+        if (owners.isEmpty()) {
+            return;
+        }
+
+        Map<List<Object>, List<GenericValue>> found = new HashMap<>();
+        if (useCache) {
+            for (List<Object> key : owners.keySet()) {
+                Map<String, Object> relFields = getRelFields(keyMaps, key);
+                if (one) {
+                    GenericValue cached = delegator.getCache().get(GenericPK.create(delegator, relEntity, relFields));
+                    if (cached != null) {
+                        found.put(key, (cached == GenericValue.NULL_VALUE) ? Collections.emptyList() : Collections.singletonList(cached));
+                    }
+                } else {
+                    List<GenericValue> cached = delegator.getCache().get(relEntity.getEntityName(), EntityCondition.makeCondition(relFields), (List<String>) null);
+                    if (cached != null) {
+                        found.put(key, cached);
+                    }
+                }
+            }
+        }
+
+        List<List<Object>> pending = new ArrayList<>(owners.size() - found.size());
+        for (List<Object> key : owners.keySet()) {
+            if (!found.containsKey(key)) {
+                pending.add(key);
+            }
+        }
+        Map<List<Object>, List<GenericValue>> loaded = new HashMap<>();
+        for (int start = 0; start < pending.size(); start += chunkSize) {
+            List<List<Object>> chunk = pending.subList(start, Math.min(start + chunkSize, pending.size()));
+            for (GenericValue relValue : delegator.findList(relEntity.getEntityName(), makeKeyCondition(keyMaps, chunk), null, null, null, false)) {
+                loaded.computeIfAbsent(getKey(relValue, keyMaps, true), k -> new ArrayList<>(1)).add(relValue);
+            }
+        }
+        for (List<Object> key : pending) {
+            List<GenericValue> relValues = loaded.getOrDefault(key, Collections.emptyList());
+            if (useCache && !relEntity.getNeverCache()) {
+                if (one) {
+                    delegator.putInPrimaryKeyCache(GenericPK.create(delegator, relEntity, getRelFields(keyMaps, key)),
+                            relValues.isEmpty() ? GenericValue.NULL_VALUE : relValues.get(0));
+                } else {
+                    delegator.getCache().put(relEntity.getEntityName(), EntityCondition.makeCondition(getRelFields(keyMaps, key)), (List<String>) null, relValues);
+                }
+            }
+            found.put(key, relValues);
+        }
+
+        for (Map.Entry<List<Object>, List<GenericValue>> entry : owners.entrySet()) {
+            List<GenericValue> relValues = found.get(entry.getKey());
+            if (one && relValues.size() > 1) {
+                relValues = relValues.subList(0, 1);
+            }
+            relValues = Collections.unmodifiableList(relValues);
+            for (GenericValue owner : entry.getValue()) {
+                owner.setPrefetchedRelated(relationName, relValues);
+            }
+            related.addAll(relValues);
+        }
+    }
+
+    private static boolean isPrefetchable(ModelEntity modelEntity, ModelEntity relEntity, List<ModelKeyMap> keyMaps, boolean one) {
+        if (keyMaps.isEmpty()) {
+            return false;
+        }
+        for (ModelKeyMap keyMap : keyMaps) {
+            ModelField field = modelEntity.getField(keyMap.getFieldName());
+            ModelField relField = relEntity.getField(keyMap.getRelFieldName());
+            // Keys are matched in memory, so both sides must hold the same value types
+            if (field == null || relField == null || !field.getType().equals(relField.getType())) {
+                return false;
+            }
+        }
+        if (one) {
+            // Must be a primary key lookup, like getRelatedOne
+            Set<String> relFieldNames = new HashSet<>();
+            for (ModelKeyMap keyMap : keyMaps) {
+                relFieldNames.add(keyMap.getRelFieldName());
+            }
+            return relFieldNames.equals(new HashSet<>(relEntity.getPkFieldNames()));
+        }
+        return true;
+    }
+
+    private static List<Object> getKey(GenericValue value, List<ModelKeyMap> keyMaps, boolean relSide) {
+        Object[] key = new Object[keyMaps.size()];
+        for (int i = 0; i < key.length; i++) {
+            ModelKeyMap keyMap = keyMaps.get(i);
+            key[i] = value.get(relSide ? keyMap.getRelFieldName() : keyMap.getFieldName());
+            if (key[i] == null && !relSide) {
+                return null;
+            }
+        }
+        return Arrays.asList(key);
+    }
+
+    private static Map<String, Object> getRelFields(List<ModelKeyMap> keyMaps, List<Object> key) {
+        // Same field map as GenericDelegator.getRelated/getRelatedOne, so the cache entries match
+        Map<String, Object> relFields = new HashMap<>();
+        for (int i = 0; i < keyMaps.size(); i++) {
+            relFields.put(keyMaps.get(i).getRelFieldName(), key.get(i));
+        }
+        return relFields;
+    }
+
+    private static EntityCondition makeKeyCondition(List<ModelKeyMap> keyMaps, List<List<Object>> keys) {
+        if (keyMaps.size() == 1) {
+            List<Object> keyValues = new ArrayList<>(keys.size());
+            for (List<Object> key : keys) {
+                keyValues.add(key.get(0));
+            }
+            return EntityCondition.makeCondition(keyMaps.get(0).getRelFieldName(), EntityOperator.IN, keyValues);
+        }
+        List<EntityCondition> keyConditions = new ArrayList<>(keys.size());
+        for (List<Object> key : keys) {
+            keyConditions.add(EntityCondition.makeCondition(getRelFields(keyMaps, key)));
+        }
+        return EntityCondition.makeCondition(keyConditions, EntityOperator.OR);
+    }
+}
@@ -22,12 +22,20 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.transaction.Transaction;
 
+import org.ofbiz.base.concurrent.ExecutionPool;
 import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilProperties;
 import org.ofbiz.entity.GenericEntityException;
 import org.ofbiz.entity.datasource.GenericHelperInfo;
 import org.ofbiz.entity.model.ModelEntity;
@@ -38,18 +46,42 @@ import org.ofbiz.entity.transaction.TransactionUtil;
 
 /**
  * Sequence Utility to get unique sequences from named sequence banks
+ * <p>SCIPIO: 3.0.0: Optionally (<code>entity.sequence.asyncRefill</code>, off by default), banks hand out ids without
+ * locking (atomic increment on the current bank) and, when a bank drops to its low-water mark, the next bank is reserved
+ * in the background, so that callers only block on the database when a bank is consumed before the next one is ready;
+ * this hides the reservation latency from occasional callers, but does not raise the throughput of callers contending
+ * for a sequence, which is bound by the reservations either way. Optionally (<code>entity.sequence.adaptiveBankSize</code>,
+ * off by default), bank sizes adapt to the allocation rate of each sequence, between the entity sequence-bank-size and
+ * <code>entity.sequence.maxBankSize</code>; see general.properties.</p>
  */
 public class SequenceUtil {
 
     private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
 
+    private static final boolean defaultAsyncRefill = UtilProperties.getPropertyAsBoolean("general", "entity.sequence.asyncRefill", false); // SCIPIO
+    private static final boolean defaultAdaptiveBankSize = UtilProperties.getPropertyAsBoolean("general", "entity.sequence.adaptiveBankSize", false); // SCIPIO
+    private static final int lowWaterPercent = Math.min(90, Math.max(1, UtilProperties.getPropertyAsInteger("general", "entity.sequence.lowWaterPercent", 25))); // SCIPIO
+    private static final long growNanos = TimeUnit.MILLISECONDS.toNanos(UtilProperties.getPropertyAsLong("general", "entity.sequence.adaptiveBankSize.growMillis", 2000)); // SCIPIO
+    private static final long shrinkNanos = TimeUnit.MILLISECONDS.toNanos(UtilProperties.getPropertyAsLong("general", "entity.sequence.adaptiveBankSize.shrinkMillis", 60000)); // SCIPIO
+
     private final ConcurrentMap<String, SequenceBank> sequences = new ConcurrentHashMap<String, SequenceBank>();
     private final GenericHelperInfo helperInfo;
     private final String tableName;
     private final String nameColName;
     private final String idColName;
+    private final boolean asyncRefill; // SCIPIO
+    private final boolean adaptiveBankSize; // SCIPIO
 
     public SequenceUtil(GenericHelperInfo helperInfo, ModelEntity seqEntity, String nameFieldName, String idFieldName) {
+        this(helperInfo, seqEntity, nameFieldName, idFieldName, defaultAsyncRefill, defaultAdaptiveBankSize);
+    }
+
+    /**
+     * Constructor with explicit background refill and adaptive bank size options, instead of the general.properties defaults.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public SequenceUtil(GenericHelperInfo helperInfo, ModelEntity seqEntity, String nameFieldName, String idFieldName,
+                        boolean asyncRefill, boolean adaptiveBankSize) {
         this.helperInfo = helperInfo;
         if (seqEntity == null) {
             throw new IllegalArgumentException("The sequence model entity was null but is required.");
@@ -69,6 +101,22 @@ public class SequenceUtil {
             throw new IllegalArgumentException("Could not find the field definition for the sequence id field " + idFieldName);
         }
         this.idColName = idField.getColName();
+        this.asyncRefill = asyncRefill;
+        this.adaptiveBankSize = adaptiveBankSize;
+    }
+
+    /**
+     * Constructor for subclasses that reserve ids elsewhere than in the sequence table, by overriding
+     * {@link #reserveBank(String, long)} (tests and benchmarks).
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    protected SequenceUtil(boolean asyncRefill, boolean adaptiveBankSize) {
+        this.helperInfo = null;
+        this.tableName = null;
+        this.nameColName = null;
+        this.idColName = null;
+        this.asyncRefill = asyncRefill;
+        this.adaptiveBankSize = adaptiveBankSize;
     }
 
     public Long getNextSeqId(String seqName, long staggerMax, ModelEntity seqModelEntity) {
@@ -86,6 +134,12 @@ public class SequenceUtil {
         bank.refresh(staggerMax);
     }
 
+    /** Returns the current (adapted) bank size of the named sequence, or -1 if it was not used yet (SCIPIO). */
+    public long getBankSize(String seqName) {
+        SequenceBank bank = sequences.get(seqName);
+        return (bank != null) ? bank.bankSize : -1;
+    }
+
     private SequenceBank getBank(String seqName, ModelEntity seqModelEntity) {
         SequenceBank bank = sequences.get(seqName);
 
@@ -103,26 +157,44 @@ public class SequenceUtil {
         return bank;
     }
 
+    /**
+     * A range of reserved ids, consumed by atomic increment (SCIPIO).
+     */
+    private static final class Range {
+        static final Range EMPTY = new Range(0, 0);
+
+        final AtomicLong curSeqId;
+        final long maxSeqId;
+        final long lowWater;
+        final long createdNanos = System.nanoTime();
+        final AtomicBoolean refillRequested = new AtomicBoolean();
+        final AtomicBoolean sizeAdapted = new AtomicBoolean();
+
+        Range(long curSeqId, long bankSize) {
+            this.curSeqId = new AtomicLong(curSeqId);
+            this.maxSeqId = curSeqId + bankSize;
+            this.lowWater = Math.max(1, (bankSize * lowWaterPercent) / 100);
+        }
+    }
+
     private class SequenceBank {
         public static final long defaultBankSize = 10;
-        public static final long maxBankSize = 5000;
+        public static final long maxBankSize = Math.max(defaultBankSize, UtilProperties.getPropertyAsLong("general", "entity.sequence.maxBankSize", 5000)); // SCIPIO: configurable
         public static final long startSeqId = 10000;
 
         private final String seqName;
-        private final long bankSize;
-        private final String updateForLockStatement;
-        private final String selectSequenceStatement;
+        private final long baseBankSize; // SCIPIO: entity sequence-bank-size, the lower bound of the adapted bankSize
+        private volatile long bankSize;
 
-        private long curSeqId;
-        private long maxSeqId;
+        // SCIPIO: 3.0.0: Lock-free current range, with a background reservation of the next one; fillLock only serializes bank switches
+        private volatile Range current = Range.EMPTY;
+        private final AtomicReference<CompletableFuture<Range>> nextRange = new AtomicReference<>();
+        private final Object fillLock = new Object();
 
         private SequenceBank(String seqName, long bankSize) {
             this.seqName = seqName;
-            curSeqId = 0;
-            maxSeqId = 0;
+            this.baseBankSize = bankSize;
             this.bankSize = bankSize;
-            updateForLockStatement = "UPDATE " + SequenceUtil.this.tableName + " SET " + SequenceUtil.this.idColName + "=" + SequenceUtil.this.idColName + " WHERE " + SequenceUtil.this.nameColName + "='" + this.seqName + "'";
-            selectSequenceStatement = "SELECT " + SequenceUtil.this.idColName + " FROM " + SequenceUtil.this.tableName + " WHERE " + SequenceUtil.this.nameColName + "='" + this.seqName + "'";
         }
 
         private Long getNextSeqId(long staggerMax) {
@@ -131,170 +203,277 @@ public class SequenceUtil {
                 stagger = (long)Math.ceil(Math.random() * staggerMax);
                 if (stagger == 0) stagger = 1;
             }
-            synchronized (this) {
-                if ((curSeqId + stagger) <= maxSeqId) {
-                    long retSeqId = curSeqId;
-                    curSeqId += stagger;
-                    return retSeqId;
-                } else {
-                    fillBank(stagger);
-                    if ((curSeqId + stagger) <= maxSeqId) {
-                        long retSeqId = curSeqId;
-                        curSeqId += stagger;
-                        return retSeqId;
-                    } else {
+            if (!asyncRefill) {
+                // SCIPIO: 3.0.0: Without background refill, one lock per id with the refill done under it, as before
+                // 3.0.0: measured faster than the lock-free path when callers contend for banks refilled in their own threads
+                synchronized (fillLock) {
+                    Range range = current;
+                    if ((range.curSeqId.get() + stagger) > range.maxSeqId && !fillBank(range, stagger)) {
                         Debug.logError("Fill bank failed, returning null", module);
                         return null;
                     }
+                    return current.curSeqId.getAndAdd(stagger);
+                }
+            }
+            // SCIPIO: 3.0.0: Lock-free; retries after each bank switch (by this or another thread) until a reservation fails
+            while (true) {
+                Range range = current;
+                long retSeqId = range.curSeqId.getAndAdd(stagger);
+                if ((retSeqId + stagger) <= range.maxSeqId) {
+                    if (asyncRefill && (range.maxSeqId - retSeqId - stagger) <= range.lowWater) {
+                        requestRefill(range, stagger);
+                    }
+                    return retSeqId;
+                }
+                if (!fillBank(range, stagger)) {
+                    Debug.logError("Fill bank failed, returning null", module);
+                    return null;
                 }
             }
         }
 
-        private synchronized void refresh(long staggerMax) {
-            this.curSeqId = this.maxSeqId;
-            this.fillBank(staggerMax);
+        /**
+         * Drops the current bank and switches to a bank reserved from the database after it: the background reservation
+         * if there is one (waiting for it if still running; none of its ids were handed out), otherwise a new reservation.
+         */
+        private void refresh(long staggerMax) {
+            synchronized (fillLock) {
+                Range range = null;
+                CompletableFuture<Range> pending = nextRange.getAndSet(null);
+                if (pending != null) {
+                    try {
+                        range = pending.join();
+                    } catch (RuntimeException e) {
+                        Debug.logError(e, "Error in background reservation of sequenced IDs for [" + seqName + "]", module);
+                    }
+                }
+                if (range == null || (range.maxSeqId - range.curSeqId.get()) < staggerMax) {
+                    range = reserveRange(getFillBankSize(staggerMax));
+                }
+                current = (range != null) ? range : Range.EMPTY;
+            }
         }
 
-        /*
-           The algorithm to get the new sequence id in a thread safe way is the following:
-           1 - run an update with no changes to get a lock on the record
-               1bis - if no record is found, try to create and update it to get the lock
-           2 - select the record (now locked) to get the curSeqId
-           3 - increment the sequence
-           The three steps are executed in one dedicated database transaction.
+        /**
+         * Switches from the exhausted range to the next one: the background reservation if there is one (waiting for it
+         * if still running, which keeps the ids increasing), otherwise a new reservation. Returns false if no range could be reserved.
          */
-        private void fillBank(long stagger) {
-            // no need to get a new bank, SeqIds available
-            if ((curSeqId + stagger) <= maxSeqId) {
+        private boolean fillBank(Range exhausted, long stagger) {
+            synchronized (fillLock) {
+                if (current != exhausted) {
+                    return true; // switched by another thread
+                }
+                Range range = null;
+                CompletableFuture<Range> pending = nextRange.getAndSet(null);
+                if (pending != null) {
+                    try {
+                        range = pending.join();
+                    } catch (RuntimeException e) {
+                        Debug.logError(e, "Error in background reservation of sequenced IDs for [" + seqName + "]", module);
+                    }
+                }
+                if (range == null || (range.maxSeqId - range.curSeqId.get()) < stagger) {
+                    adaptBankSize(exhausted);
+                    range = reserveRange(getFillBankSize(stagger));
+                }
+                if (range == null || (range.maxSeqId - range.curSeqId.get()) < stagger) {
+                    return false; // reservation failed, or stagger larger than maxBankSize
+                }
+                current = range;
+                return true;
+            }
+        }
+
+        private void requestRefill(Range range, long stagger) {
+            if (current != range || !range.refillRequested.compareAndSet(false, true)) {
                 return;
             }
+            CompletableFuture<Range> pending = new CompletableFuture<>();
+            if (!nextRange.compareAndSet(null, pending)) {
+                return; // already reserved or reserving the next range (requested while the previous bank was current)
+            }
+            adaptBankSize(range);
+            long fillBankSize = getFillBankSize(stagger);
+            try {
+                ExecutionPool.GLOBAL_BATCH.execute(() -> {
+                    try {
+                        pending.complete(reserveRange(fillBankSize));
+                    } catch (Throwable t) {
+                        pending.completeExceptionally(t);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                pending.complete(null); // reserved by the caller at the end of the bank
+            }
+        }
+
+        /** Grows the bank size when a bank lasted less than growMillis, shrinks it when it lasted more than shrinkMillis; once per range. */
+        private void adaptBankSize(Range range) {
+            if (!adaptiveBankSize || range == Range.EMPTY || !range.sizeAdapted.compareAndSet(false, true)) {
+                return;
+            }
+            long lifetime = System.nanoTime() - range.createdNanos;
+            long bankSize = this.bankSize;
+            if (lifetime < growNanos && bankSize < maxBankSize) {
+                this.bankSize = Math.min(maxBankSize, bankSize * 2);
+            } else if (lifetime > shrinkNanos && bankSize > baseBankSize) {
+                this.bankSize = Math.max(baseBankSize, bankSize / 2);
+            } else {
+                return;
+            }
+            if (Debug.verboseOn()) {
+                Debug.logVerbose("Adapted bank size for [" + seqName + "] from " + bankSize + " to " + this.bankSize
+                        + " (last bank lasted " + TimeUnit.NANOSECONDS.toMillis(lifetime) + "ms)", module);
+            }
+        }
 
+        private long getFillBankSize(long stagger) {
             long bankSize = this.bankSize;
             if (stagger > 1) {
                 // NOTE: could use staggerMax for this, but if that is done it would be easier to guess a valid next id without a brute force attack
-                bankSize = stagger * defaultBankSize;
+                bankSize = Math.max(bankSize, stagger * defaultBankSize);
             }
 
             if (bankSize > maxBankSize) {
                 bankSize = maxBankSize;
             }
+            return bankSize;
+        }
 
-            Transaction suspendedTransaction = null;
-            try {
-                if (TransactionUtil.isTransactionInPlace()) { // SCIPIO: 2018-09-04: added check to eliminate useless warnings
-                    suspendedTransaction = TransactionUtil.suspend();
-                }
+        private Range reserveRange(long bankSize) {
+            Long curSeqId = reserveBank(seqName, bankSize);
+            if (curSeqId == null) {
+                return null;
+            }
+            if (Debug.infoOn()) Debug.logInfo("Got bank of sequenced IDs for [" + this.seqName + "]; curSeqId=" + curSeqId + ", maxSeqId=" + (curSeqId + bankSize) + ", bankSize=" + bankSize, module);
+            return new Range(curSeqId, bankSize);
+        }
+    }
 
-                boolean beganTransaction = false;
-                try {
-                    beganTransaction = TransactionUtil.begin();
+    /*
+       The algorithm to get the new sequence id in a thread safe way is the following:
+       1 - run an update with no changes to get a lock on the record
+           1bis - if no record is found, try to create and update it to get the lock
+       2 - select the record (now locked) to get the curSeqId
+       3 - increment the sequence
+       The three steps are executed in one dedicated database transaction.
+     */
+    /**
+     * Reserves a bank of <code>bankSize</code> ids for the named sequence in the sequence table and returns its first id,
+     * or null if the reservation failed (logged).
+     * <p>SCIPIO: 3.0.0: Factored out of SequenceBank.fillBank; may be called from a background thread.</p>
+     */
+    protected Long reserveBank(String seqName, long bankSize) {
+        String updateForLockStatement = "UPDATE " + this.tableName + " SET " + this.idColName + "=" + this.idColName + " WHERE " + this.nameColName + "='" + seqName + "'";
+        String selectSequenceStatement = "SELECT " + this.idColName + " FROM " + this.tableName + " WHERE " + this.nameColName + "='" + seqName + "'";
+        long curSeqId = 0;
+
+        Transaction suspendedTransaction = null;
+        try {
+            if (TransactionUtil.isTransactionInPlace()) { // SCIPIO: 2018-09-04: added check to eliminate useless warnings
+                suspendedTransaction = TransactionUtil.suspend();
+            }
 
-                    Connection connection = null;
-                    Statement stmt = null;
-                    ResultSet rs = null;
+            boolean beganTransaction = false;
+            try {
+                beganTransaction = TransactionUtil.begin();
 
-                    try {
-                        connection = TransactionFactoryLoader.getInstance().getConnection(SequenceUtil.this.helperInfo);
-                    } catch (SQLException sqle) {
-                        Debug.logWarning("Unable to establish a connection with the database. Error was:" + sqle.toString(), module);
-                        throw sqle;
-                    } catch (GenericEntityException e) {
-                        Debug.logWarning("Unable to establish a connection with the database. Error was: " + e.toString(), module);
-                        throw e;
-                    }
-                    if (connection == null) {
-                        throw new GenericEntityException("Unable to establish a connection with the database, connection was null...");
-                    }
+                Connection connection = null;
+                Statement stmt = null;
+                ResultSet rs = null;
 
-                    try {
-                        stmt = connection.createStatement();
-                        String sql = null;
-                        // 1 - run an update with no changes to get a lock on the record
-                        if (stmt.executeUpdate(updateForLockStatement) <= 0) {
-                            // SCIPIO: This occurs normally and frequently; counterproductive to log as warning since almost never an error
-                            //Debug.logWarning("Lock failed; no sequence row was found, will try to add a new one for sequence: " + seqName, module);
-                            Debug.logInfo("Lock failed; no sequence row was found, will try to add a new one for sequence: " + seqName, module);
-                            sql = "INSERT INTO " + SequenceUtil.this.tableName + " (" + SequenceUtil.this.nameColName + ", " + SequenceUtil.this.idColName + ") VALUES ('" + this.seqName + "', " + startSeqId + ")";
-                            try {
-                                stmt.executeUpdate(sql);
-                            } catch (SQLException sqle) {
-                                // insert failed: this means that another thread inserted the record; then retry to run an update with no changes to get a lock on the record
-                                if (stmt.executeUpdate(updateForLockStatement) <= 0) {
-                                    // This should never happen
-                                    throw new GenericEntityException("No rows changed when trying insert new sequence: " + seqName);
-                                }
+                try {
+                    connection = TransactionFactoryLoader.getInstance().getConnection(this.helperInfo);
+                } catch (SQLException sqle) {
+                    Debug.logWarning("Unable to establish a connection with the database. Error was:" + sqle.toString(), module);
+                    throw sqle;
+                } catch (GenericEntityException e) {
+                    Debug.logWarning("Unable to establish a connection with the database. Error was: " + e.toString(), module);
+                    throw e;
+                }
+                if (connection == null) {
+                    throw new GenericEntityException("Unable to establish a connection with the database, connection was null...");
+                }
 
+                try {
+                    stmt = connection.createStatement();
+                    String sql = null;
+                    // 1 - run an update with no changes to get a lock on the record
+                    if (stmt.executeUpdate(updateForLockStatement) <= 0) {
+                        // SCIPIO: This occurs normally and frequently; counterproductive to log as warning since almost never an error
+                        //Debug.logWarning("Lock failed; no sequence row was found, will try to add a new one for sequence: " + seqName, module);
+                        Debug.logInfo("Lock failed; no sequence row was found, will try to add a new one for sequence: " + seqName, module);
+                        sql = "INSERT INTO " + this.tableName + " (" + this.nameColName + ", " + this.idColName + ") VALUES ('" + seqName + "', " + SequenceBank.startSeqId + ")";
+                        try {
+                            stmt.executeUpdate(sql);
+                        } catch (SQLException sqle) {
+                            // insert failed: this means that another thread inserted the record; then retry to run an update with no changes to get a lock on the record
+                            if (stmt.executeUpdate(updateForLockStatement) <= 0) {
+                                // This should never happen
+                                throw new GenericEntityException("No rows changed when trying insert new sequence: " + seqName);
                             }
+
                         }
-                        // 2 - select the record (now locked) to get the curSeqId
-                        rs = stmt.executeQuery(selectSequenceStatement);
-                        boolean sequenceFound = rs.next();
-                        if (sequenceFound) {
-                            curSeqId = rs.getLong(SequenceUtil.this.idColName);
-                        }
-                        rs.close();
-                        if (!sequenceFound) {
-                            throw new GenericEntityException("Failed to find the sequence record for sequence: " + seqName);
-                        }
-                        // 3 - increment the sequence
-                        sql = "UPDATE " + SequenceUtil.this.tableName + " SET " + SequenceUtil.this.idColName + "=" + SequenceUtil.this.idColName + "+" + bankSize + " WHERE " + SequenceUtil.this.nameColName + "='" + this.seqName + "'";
-                        if (stmt.executeUpdate(sql) <= 0) {
-                            throw new GenericEntityException("Update failed, no rows changes for seqName: " + seqName);
-                        }
+                    }
+                    // 2 - select the record (now locked) to get the curSeqId
+                    rs = stmt.executeQuery(selectSequenceStatement);
+                    boolean sequenceFound = rs.next();
+                    if (sequenceFound) {
+                        curSeqId = rs.getLong(this.idColName);
+                    }
+                    rs.close();
+                    if (!sequenceFound) {
+                        throw new GenericEntityException("Failed to find the sequence record for sequence: " + seqName);
+                    }
+                    // 3 - increment the sequence
+                    sql = "UPDATE " + this.tableName + " SET " + this.idColName + "=" + this.idColName + "+" + bankSize + " WHERE " + this.nameColName + "='" + seqName + "'";
+                    if (stmt.executeUpdate(sql) <= 0) {
+                        throw new GenericEntityException("Update failed, no rows changes for seqName: " + seqName);
+                    }
 
-                        TransactionUtil.commit(beganTransaction);
+                    TransactionUtil.commit(beganTransaction);
 
+                } catch (SQLException sqle) {
+                    Debug.logWarning(sqle, "SQL Exception:" + sqle.getMessage(), module);
+                    throw sqle;
+                } finally {
+                    try {
+                        if (stmt != null) stmt.close();
                     } catch (SQLException sqle) {
-                        Debug.logWarning(sqle, "SQL Exception:" + sqle.getMessage(), module);
-                        throw sqle;
-                    } finally {
-                        try {
-                            if (stmt != null) stmt.close();
-                        } catch (SQLException sqle) {
-                            Debug.logWarning(sqle, "Error closing statement in sequence util", module);
-                        }
-                        try {
-                            connection.close();
-                        } catch (SQLException sqle) {
-                            Debug.logWarning(sqle, "Error closing connection in sequence util", module);
-                        }
+                        Debug.logWarning(sqle, "Error closing statement in sequence util", module);
                     }
-                } catch (SQLException | GenericEntityException  e) {
-                    // reset the sequence fields and return (note: it would be better to throw an exception)
-                    curSeqId = 0;
-                    maxSeqId = 0;
-                    String errMsg = "General error in getting a sequenced ID";
-                    Debug.logError(e, errMsg, module);
                     try {
-                        TransactionUtil.rollback(beganTransaction, errMsg, e);
-                    } catch (GenericTransactionException gte2) {
-                        Debug.logError(gte2, "Unable to rollback transaction", module);
+                        connection.close();
+                    } catch (SQLException sqle) {
+                        Debug.logWarning(sqle, "Error closing connection in sequence util", module);
                     }
-                    return;
                 }
-            } catch (GenericTransactionException e) {
-                Debug.logError(e, "System Error suspending transaction in sequence util", module);
-                // reset the sequence fields and return (note: it would be better to throw an exception)
-                curSeqId = 0;
-                maxSeqId = 0;
-                return;
-            } finally {
-                if (suspendedTransaction != null) {
-                    try {
-                        TransactionUtil.resume(suspendedTransaction);
-                    } catch (GenericTransactionException e) {
-                        Debug.logError(e, "Error resuming suspended transaction in sequence util", module);
-                        // reset the sequence fields and return (note: it would be better to throw an exception)
-                        curSeqId = 0;
-                        maxSeqId = 0;
-                        return;
-                    }
+            } catch (SQLException | GenericEntityException  e) {
+                // return no bank (note: it would be better to throw an exception)
+                String errMsg = "General error in getting a sequenced ID";
+                Debug.logError(e, errMsg, module);
+                try {
+                    TransactionUtil.rollback(beganTransaction, errMsg, e);
+                } catch (GenericTransactionException gte2) {
+                    Debug.logError(gte2, "Unable to rollback transaction", module);
+                }
+                return null;
+            }
+        } catch (GenericTransactionException e) {
+            Debug.logError(e, "System Error suspending transaction in sequence util", module);
+            // return no bank (note: it would be better to throw an exception)
+            return null;
+        } finally {
+            if (suspendedTransaction != null) {
+                try {
+                    TransactionUtil.resume(suspendedTransaction);
+                } catch (GenericTransactionException e) {
+                    Debug.logError(e, "Error resuming suspended transaction in sequence util", module);
+                    // return no bank (note: it would be better to throw an exception)
+                    return null;
                 }
             }
-
-            maxSeqId = curSeqId + bankSize;
-            if (Debug.infoOn()) Debug.logInfo("Got bank of sequenced IDs for [" + this.seqName + "]; curSeqId=" + curSeqId + ", maxSeqId=" + maxSeqId + ", bankSize=" + bankSize, module);
         }
+        return curSeqId;
     }
 }
-
@@ -0,0 +1,596 @@
+package org.ofbiz.entityext.synchronization;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import javax.sql.rowset.serial.SerialBlob;
+
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilObject;
+import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.GenericEntity;
+import org.ofbiz.entity.GenericEntityException;
+import org.ofbiz.entity.model.ModelEntity;
+import org.ofbiz.entity.model.ModelField;
+import org.ofbiz.entity.model.ModelFieldType;
+
+/**
+ * Compact binary streaming format for EntitySync data, used instead of serialized <code>GenericValue</code> lists
+ * by the binary store services and {@link EntitySyncStreams}.
+ *
+ * <p>A stream starts with a small uncompressed header (magic, version, flags), followed by the (optionally
+ * Deflate-compressed) body: a sequence of records, each a type byte, a varint payload length and the payload.
+ * The first row of each entity is preceded by an entity definition record that assigns it a numeric ID and lists
+ * its field names; rows then reference the entity and its fields by ID only, and encode only the fields present
+ * on the value, each as a varint field ID and a tagged value. Removed primary keys are encoded as rows like any
+ * other value. A chunk end record carries the end of the <code>lastUpdatedTxStamp</code> window of the chunk and
+ * its row count; the receiver acknowledges the chunk by that stamp.</p>
+ *
+ * <p>Field definitions are matched by name on decode, so sender and receiver entity models may differ in field
+ * order; fields unknown to the receiver are skipped with a warning.</p>
+ *
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public final class EntitySyncBinaryCodec {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    public static final int MAGIC = 0x45534231; // "ESB1"
+    public static final int VERSION = 1;
+
+    private static final int FLAG_COMPRESSED = 1;
+
+    private static final int REC_END = 0;
+    private static final int REC_ENTITY = 1;
+    private static final int REC_CREATE = 2;
+    private static final int REC_STORE = 3;
+    private static final int REC_REMOVE = 4;
+    private static final int REC_CHUNK_END = 5;
+
+    private static final int T_NULL = 0;
+    private static final int T_STRING = 1;
+    private static final int T_LONG = 2;
+    private static final int T_INTEGER = 3;
+    private static final int T_DOUBLE = 4;
+    private static final int T_FLOAT = 5;
+    private static final int T_BIG_DECIMAL = 6;
+    private static final int T_TIMESTAMP = 7;
+    private static final int T_SQL_DATE = 8;
+    private static final int T_SQL_TIME = 9;
+    private static final int T_TRUE = 10;
+    private static final int T_FALSE = 11;
+    private static final int T_BYTES = 12;
+    private static final int T_SERIALIZED = 13;
+
+    private EntitySyncBinaryCodec() {
+    }
+
+    public enum RowType {
+        CREATE(REC_CREATE), STORE(REC_STORE), REMOVE(REC_REMOVE), CHUNK_END(REC_CHUNK_END);
+
+        private final int recordType;
+
+        RowType(int recordType) {
+            this.recordType = recordType;
+        }
+    }
+
+    /**
+     * Encodes one chunk (values to create, values to store and keys to remove, in that order) to a byte array.
+     */
+    public static byte[] encodeChunk(List<? extends GenericEntity> valuesToCreate, List<? extends GenericEntity> valuesToStore,
+                                     List<? extends GenericEntity> keysToRemove, Timestamp chunkStartTime, Timestamp chunkEndTime,
+                                     int compressionLevel) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Writer writer = new Writer(out, compressionLevel)) {
+            for (GenericEntity value : valuesToCreate) {
+                writer.writeRow(RowType.CREATE, value);
+            }
+            for (GenericEntity value : valuesToStore) {
+                writer.writeRow(RowType.STORE, value);
+            }
+            for (GenericEntity value : keysToRemove) {
+                writer.writeRow(RowType.REMOVE, value);
+            }
+            writer.writeChunkEnd(chunkStartTime, chunkEndTime);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes EntitySync rows to a stream. Not thread-safe.
+     */
+    public static final class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final Deflater deflater;
+        private final Map<String, EntityDef> entityDefs = new HashMap<>();
+        private final Payload payload = new Payload();
+        private final DataOutputStream payloadOut = new DataOutputStream(payload);
+        private long chunkRowCount = 0;
+        private long rowCount = 0;
+        private boolean closed = false;
+
+        /**
+         * Creates a writer; <code>compressionLevel</code> is a {@link Deflater} level, or a negative value for no compression.
+         */
+        public Writer(OutputStream out, int compressionLevel) throws IOException {
+            DataOutputStream headerOut = new DataOutputStream(out);
+            headerOut.writeInt(MAGIC);
+            headerOut.writeByte(VERSION);
+            headerOut.writeByte(compressionLevel >= 0 ? FLAG_COMPRESSED : 0);
+            headerOut.flush();
+            if (compressionLevel >= 0) {
+                this.deflater = new Deflater(Math.min(compressionLevel, Deflater.BEST_COMPRESSION));
+                out = new DeflaterOutputStream(out, deflater, 65536);
+            } else {
+                this.deflater = null;
+            }
+            this.out = new DataOutputStream(new BufferedOutputStream(out, 65536));
+        }
+
+        public void writeRow(RowType type, GenericEntity value) throws IOException {
+            if (type == RowType.CHUNK_END) {
+                throw new IllegalArgumentException("Use writeChunkEnd to end a chunk");
+            }
+            ModelEntity modelEntity = value.getModelEntity();
+            EntityDef entityDef = entityDefs.get(modelEntity.getEntityName());
+            if (entityDef == null) {
+                entityDef = new EntityDef(entityDefs.size(), modelEntity.getEntityName(), modelEntity.getAllFieldNames());
+                entityDefs.put(entityDef.entityName, entityDef);
+                payload.reset();
+                writeVarInt(payloadOut, entityDef.entityId);
+                writeString(payloadOut, entityDef.entityName);
+                writeVarInt(payloadOut, entityDef.fieldNames.size());
+                for (String fieldName : entityDef.fieldNames) {
+                    writeString(payloadOut, fieldName);
+                }
+                writeRecord(REC_ENTITY);
+            }
+            payload.reset();
+            writeVarInt(payloadOut, entityDef.entityId);
+            List<String> fieldNames = entityDef.fieldNames;
+            for (int i = 0; i < fieldNames.size(); i++) {
+                String fieldName = fieldNames.get(i);
+                if (value.containsKey(fieldName)) {
+                    writeVarInt(payloadOut, i + 1);
+                    writeValue(payloadOut, value.get(fieldName));
+                }
+            }
+            writeVarInt(payloadOut, 0);
+            writeRecord(type.recordType);
+            chunkRowCount++;
+            rowCount++;
+        }
+
+        /**
+         * Ends the current chunk; the receiver acknowledges the rows written since the previous chunk end
+         * by <code>chunkEndTime</code>.
+         */
+        public void writeChunkEnd(Timestamp chunkStartTime, Timestamp chunkEndTime) throws IOException {
+            payload.reset();
+            writeTimestamp(payloadOut, chunkStartTime);
+            writeTimestamp(payloadOut, chunkEndTime);
+            writeVarLong(payloadOut, chunkRowCount);
+            writeRecord(REC_CHUNK_END);
+            chunkRowCount = 0;
+        }
+
+        public long getRowCount() {
+            return rowCount;
+        }
+
+        private void writeRecord(int recordType) throws IOException {
+            payloadOut.flush();
+            out.writeByte(recordType);
+            writeVarInt(out, payload.size());
+            payload.writeTo(out);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                out.writeByte(REC_END);
+                writeVarInt(out, 0);
+                out.close();
+            } finally {
+                if (deflater != null) {
+                    deflater.end();
+                }
+            }
+        }
+    }
+
+    /**
+     * A decoded row: a value to create or store, a primary key to remove, or a chunk end marker.
+     */
+    public static final class Row {
+        private final RowType type;
+        private final GenericEntity entity;
+        private final Timestamp chunkStartTime;
+        private final Timestamp chunkEndTime;
+        private final long chunkRowCount;
+
+        Row(RowType type, GenericEntity entity, Timestamp chunkStartTime, Timestamp chunkEndTime, long chunkRowCount) {
+            this.type = type;
+            this.entity = entity;
+            this.chunkStartTime = chunkStartTime;
+            this.chunkEndTime = chunkEndTime;
+            this.chunkRowCount = chunkRowCount;
+        }
+
+        public RowType getType() { return type; }
+        /** The value ({@link org.ofbiz.entity.GenericValue}) for create/store rows, the {@link org.ofbiz.entity.GenericPK} for remove rows. */
+        public GenericEntity getEntity() { return entity; }
+        public Timestamp getChunkStartTime() { return chunkStartTime; }
+        public Timestamp getChunkEndTime() { return chunkEndTime; }
+        public long getChunkRowCount() { return chunkRowCount; }
+    }
+
+    /**
+     * Reads EntitySync rows from a stream, one at a time. Not thread-safe.
+     */
+    public static final class Reader implements Closeable {
+        private final Delegator delegator;
+        private final DataInputStream in;
+        private final Inflater inflater;
+        private final List<EntityDef> entityDefs = new ArrayList<>();
+        private byte[] buffer = new byte[1024];
+        private boolean ended = false;
+
+        public Reader(InputStream in, Delegator delegator) throws IOException {
+            this.delegator = delegator;
+            DataInputStream headerIn = new DataInputStream(in);
+            if (headerIn.readInt() != MAGIC) {
+                throw new IOException("Not an EntitySync binary stream");
+            }
+            int version = headerIn.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported EntitySync binary stream version [" + version + "]");
+            }
+            if ((headerIn.readUnsignedByte() & FLAG_COMPRESSED) != 0) {
+                this.inflater = new Inflater();
+                in = new InflaterInputStream(in, inflater, 65536);
+            } else {
+                this.inflater = null;
+            }
+            this.in = new DataInputStream(new BufferedInputStream(in, 65536));
+        }
+
+        /**
+         * Returns the next row, or null at the end of the stream.
+         */
+        public Row next() throws IOException, GenericEntityException {
+            while (!ended) {
+                int recordType = in.read();
+                if (recordType < 0) {
+                    throw new EOFException("EntitySync binary stream ended without end record");
+                }
+                int length = readVarInt(in);
+                if (buffer.length < length) {
+                    buffer = new byte[Math.max(length, buffer.length * 2)];
+                }
+                in.readFully(buffer, 0, length);
+                DataInputStream payloadIn = new DataInputStream(new ByteArrayInputStream(buffer, 0, length));
+                switch (recordType) {
+                case REC_END:
+                    ended = true;
+                    return null;
+                case REC_ENTITY:
+                    readEntityDef(payloadIn);
+                    break;
+                case REC_CREATE:
+                    return new Row(RowType.CREATE, readEntity(payloadIn, false), null, null, 0);
+                case REC_STORE:
+                    return new Row(RowType.STORE, readEntity(payloadIn, false), null, null, 0);
+                case REC_REMOVE:
+                    return new Row(RowType.REMOVE, readEntity(payloadIn, true), null, null, 0);
+                case REC_CHUNK_END:
+                    Timestamp chunkStartTime = readTimestamp(payloadIn);
+                    Timestamp chunkEndTime = readTimestamp(payloadIn);
+                    return new Row(RowType.CHUNK_END, null, chunkStartTime, chunkEndTime, readVarLong(payloadIn));
+                default:
+                    // unknown record types from newer writers are skipped using the length prefix
+                    Debug.logWarning("EntitySync binary stream: skipping unknown record type [" + recordType + "]", module);
+                }
+            }
+            return null;
+        }
+
+        private void readEntityDef(DataInputStream payloadIn) throws IOException {
+            int entityId = readVarInt(payloadIn);
+            String entityName = readString(payloadIn);
+            ModelEntity modelEntity = delegator.getModelEntity(entityName);
+            if (modelEntity == null) {
+                throw new IOException("EntitySync binary stream: entity [" + entityName + "] not found");
+            }
+            int fieldCount = readVarInt(payloadIn);
+            List<String> fieldNames = new ArrayList<>(fieldCount);
+            boolean[] blobFields = new boolean[fieldCount];
+            for (int i = 0; i < fieldCount; i++) {
+                String fieldName = readString(payloadIn);
+                ModelField modelField = modelEntity.getField(fieldName);
+                if (modelField == null) {
+                    Debug.logWarning("EntitySync binary stream: field [" + fieldName + "] of entity [" + entityName
+                            + "] is not defined locally; its values will be skipped", module);
+                    fieldNames.add(null);
+                    continue;
+                }
+                fieldNames.add(fieldName);
+                try {
+                    ModelFieldType fieldType = delegator.getEntityFieldType(modelEntity, modelField.getType());
+                    blobFields[i] = (fieldType != null) && "java.sql.Blob".equals(fieldType.getJavaType());
+                } catch (GenericEntityException e) {
+                    throw new IOException(e);
+                }
+            }
+            if (entityId != entityDefs.size()) {
+                throw new IOException("EntitySync binary stream: unexpected entity ID [" + entityId + "] for entity [" + entityName + "]");
+            }
+            entityDefs.add(new EntityDef(entityId, entityName, fieldNames, blobFields));
+        }
+
+        private GenericEntity readEntity(DataInputStream payloadIn, boolean pk) throws IOException {
+            int entityId = readVarInt(payloadIn);
+            if (entityId >= entityDefs.size()) {
+                throw new IOException("EntitySync binary stream: undefined entity ID [" + entityId + "]");
+            }
+            EntityDef entityDef = entityDefs.get(entityId);
+            GenericEntity entity = pk ? delegator.makePK(entityDef.entityName) : delegator.makeValue(entityDef.entityName);
+            int fieldId;
+            while ((fieldId = readVarInt(payloadIn)) != 0) {
+                Object value = readValue(payloadIn);
+                String fieldName = entityDef.fieldNames.get(fieldId - 1);
+                if (fieldName != null) {
+                    if (value instanceof byte[] && entityDef.blobFields[fieldId - 1]) {
+                        try {
+                            value = new SerialBlob((byte[]) value);
+                        } catch (SQLException e) {
+                            throw new IOException(e);
+                        }
+                    }
+                    entity.set(fieldName, value, true);
+                }
+            }
+            return entity;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                in.close();
+            } finally {
+                if (inflater != null) {
+                    inflater.end();
+                }
+            }
+        }
+    }
+
+    private static final class EntityDef {
+        private final int entityId;
+        private final String entityName;
+        private final List<String> fieldNames;
+        private final boolean[] blobFields;
+
+        EntityDef(int entityId, String entityName, List<String> fieldNames) {
+            this(entityId, entityName, fieldNames, null);
+        }
+
+        EntityDef(int entityId, String entityName, List<String> fieldNames, boolean[] blobFields) {
+            this.entityId = entityId;
+            this.entityName = entityName;
+            this.fieldNames = fieldNames;
+            this.blobFields = blobFields;
+        }
+    }
+
+    /** Reusable record payload buffer. */
+    private static final class Payload extends ByteArrayOutputStream {
+        Payload() {
+            super(1024);
+        }
+    }
+
+    /**
+     * Writes one tagged field value, as in rows: a type byte followed by the value; see {@link #readValue(DataInputStream)}.
+     */
+    public static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(T_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(T_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Long) {
+            out.writeByte(T_LONG);
+            writeVarLong(out, zigZag((Long) value));
+        } else if (value instanceof Integer) {
+            out.writeByte(T_INTEGER);
+            writeVarLong(out, zigZag((Integer) value));
+        } else if (value instanceof Double) {
+            out.writeByte(T_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(T_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) value;
+            out.writeByte(T_BIG_DECIMAL);
+            writeVarLong(out, zigZag(decimal.scale()));
+            writeBytes(out, decimal.unscaledValue().toByteArray());
+        } else if (value instanceof Timestamp) {
+            out.writeByte(T_TIMESTAMP);
+            writeTimestamp(out, (Timestamp) value);
+        } else if (value instanceof java.sql.Date) {
+            out.writeByte(T_SQL_DATE);
+            writeVarLong(out, zigZag(((java.sql.Date) value).getTime()));
+        } else if (value instanceof java.sql.Time) {
+            out.writeByte(T_SQL_TIME);
+            writeVarLong(out, zigZag(((java.sql.Time) value).getTime()));
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? T_TRUE : T_FALSE);
+        } else if (value instanceof byte[]) {
+            out.writeByte(T_BYTES);
+            writeBytes(out, (byte[]) value);
+        } else if (value instanceof ByteBuffer) {
+            ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            out.writeByte(T_BYTES);
+            writeBytes(out, bytes);
+        } else if (value instanceof Blob) {
+            try {
+                Blob blob = (Blob) value;
+                out.writeByte(T_BYTES);
+                writeBytes(out, blob.getBytes(1, (int) blob.length()));
+            } catch (SQLException e) {
+                throw new IOException(e);
+            }
+        } else {
+            out.writeByte(T_SERIALIZED);
+            writeBytes(out, UtilObject.getBytesOrEx(value));
+        }
+    }
+
+    /**
+     * Reads one tagged field value written by {@link #writeValue(DataOutputStream, Object)}; byte arrays are returned
+     * as is (rows convert them to {@link SerialBlob} for blob fields).
+     */
+    public static Object readValue(DataInputStream in) throws IOException {
+        int type = in.readUnsignedByte();
+        switch (type) {
+        case T_NULL: return null;
+        case T_STRING: return readString(in);
+        case T_LONG: return unZigZag(readVarLong(in));
+        case T_INTEGER: return (int) unZigZag(readVarLong(in));
+        case T_DOUBLE: return in.readDouble();
+        case T_FLOAT: return in.readFloat();
+        case T_BIG_DECIMAL:
+            int scale = (int) unZigZag(readVarLong(in));
+            return new BigDecimal(new BigInteger(readBytes(in)), scale);
+        case T_TIMESTAMP: return readTimestamp(in);
+        case T_SQL_DATE: return new java.sql.Date(unZigZag(readVarLong(in)));
+        case T_SQL_TIME: return new java.sql.Time(unZigZag(readVarLong(in)));
+        case T_TRUE: return Boolean.TRUE;
+        case T_FALSE: return Boolean.FALSE;
+        case T_BYTES: return readBytes(in);
+        case T_SERIALIZED:
+            Object value = UtilObject.getObject(readBytes(in));
+            if (value == null) {
+                throw new IOException("EntitySync binary stream: could not deserialize field value");
+            }
+            return value;
+        default:
+            throw new IOException("EntitySync binary stream: unknown value type [" + type + "]");
+        }
+    }
+
+    private static void writeTimestamp(DataOutputStream out, Timestamp value) throws IOException {
+        if (value == null) {
+            out.writeByte(0);
+            return;
+        }
+        out.writeByte(1);
+        // millis without the sub-millisecond part, plus the full nanos
+        writeVarLong(out, zigZag(value.getTime()));
+        writeVarInt(out, value.getNanos() % 1000000);
+    }
+
+    private static Timestamp readTimestamp(DataInputStream in) throws IOException {
+        if (in.readUnsignedByte() == 0) {
+            return null;
+        }
+        Timestamp value = new Timestamp(unZigZag(readVarLong(in)));
+        int subMillisNanos = readVarInt(in);
+        if (subMillisNanos != 0) {
+            value.setNanos(value.getNanos() + subMillisNanos);
+        }
+        return value;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        writeVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException {
+        long value = readVarLong(in);
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("EntitySync binary stream: varint out of range");
+        }
+        return (int) value;
+    }
+
+    static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("EntitySync binary stream: malformed varint");
+    }
+}
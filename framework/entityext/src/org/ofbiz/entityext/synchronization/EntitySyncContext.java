@@ -206,6 +206,34 @@ public class EntitySyncContext {
         }
     }
 
+    /**
+     * Creates a context for one parallel stream of a push sync, syncing only the given subset of the parent's
+     * entities; see {@link EntitySyncStreams}. The stream keeps its own known next create/update/remove times.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    protected EntitySyncContext(EntitySyncContext parent, List<ModelEntity> entityModelToUseList) {
+        this.delegator = parent.delegator;
+        this.dispatcher = parent.dispatcher;
+        this.context = parent.context;
+        this.userLogin = parent.userLogin;
+        this.isOfflineSync = parent.isOfflineSync;
+        this.entitySyncId = parent.entitySyncId;
+        this.entitySync = parent.entitySync;
+        this.targetServiceName = parent.targetServiceName;
+        this.targetDelegatorName = parent.targetDelegatorName;
+        this.syncEndStamp = parent.syncEndStamp;
+        this.offlineSyncSplitMillis = parent.offlineSyncSplitMillis;
+        this.syncSplitMillis = parent.syncSplitMillis;
+        this.syncEndBufferMillis = parent.syncEndBufferMillis;
+        this.maxRunningNoUpdateMillis = parent.maxRunningNoUpdateMillis;
+        this.lastSuccessfulSynchTime = parent.lastSuccessfulSynchTime;
+        this.entityModelToUseList = entityModelToUseList;
+        this.entityNameToUseSet = this.makeEntityNameToUseSet();
+        this.currentRunStartTime = parent.currentRunStartTime;
+        this.currentRunEndTime = parent.currentRunEndTime;
+        this.startDate = parent.startDate;
+    }
+
     /**
      * To see if it is running check:
      *  - in the running status
@@ -984,29 +1012,28 @@ public class EntitySyncContext {
 
                 this.totalStoreCalls++;
 
-                long toCreateInsertedCur = remoteStoreResult.get("toCreateInserted") == null ? 0 : (Long) remoteStoreResult.get("toCreateInserted");
-                long toCreateUpdatedCur = remoteStoreResult.get("toCreateUpdated") == null ? 0 : (Long) remoteStoreResult.get("toCreateUpdated");
-                long toCreateNotUpdatedCur = remoteStoreResult.get("toCreateNotUpdated") == null ? 0 : (Long) remoteStoreResult.get("toCreateNotUpdated");
-                long toStoreInsertedCur = remoteStoreResult.get("toStoreInserted") == null ? 0 : (Long) remoteStoreResult.get("toStoreInserted");
-                long toStoreUpdatedCur = remoteStoreResult.get("toStoreUpdated") == null ? 0 : (Long) remoteStoreResult.get("toStoreUpdated");
-                long toStoreNotUpdatedCur = remoteStoreResult.get("toStoreNotUpdated") == null ? 0 : (Long) remoteStoreResult.get("toStoreNotUpdated");
-                long toRemoveDeletedCur = remoteStoreResult.get("toRemoveDeleted") == null ? 0 : (Long) remoteStoreResult.get("toRemoveDeleted");
-                long toRemoveAlreadyDeletedCur = remoteStoreResult.get("toRemoveAlreadyDeleted") == null ? 0 : (Long) remoteStoreResult.get("toRemoveAlreadyDeleted");
-
-                this.toCreateInserted += toCreateInsertedCur;
-                this.toCreateUpdated += toCreateUpdatedCur;
-                this.toCreateNotUpdated += toCreateNotUpdatedCur;
-                this.toStoreInserted += toStoreInsertedCur;
-                this.toStoreUpdated += toStoreUpdatedCur;
-                this.toStoreNotUpdated += toStoreNotUpdatedCur;
-                this.toRemoveDeleted += toRemoveDeletedCur;
-                this.toRemoveAlreadyDeleted += toRemoveAlreadyDeletedCur;
+                this.addStoreCounts(StoreCounts.fromResult(remoteStoreResult)); // SCIPIO: 3.0.0: Refactored
             } catch (GenericServiceException e) {
                 throw new SyncServiceErrorException(serviceErrorMsg, e);
             }
         }
     }
 
+    /**
+     * Adds the store results reported by the target for one store call to the totals of the current run.
+     * <p>SCIPIO: 3.0.0: Added (factored out of {@link #runPushSendData}).</p>
+     */
+    public void addStoreCounts(StoreCounts counts) {
+        this.toCreateInserted += counts.toCreateInserted;
+        this.toCreateUpdated += counts.toCreateUpdated;
+        this.toCreateNotUpdated += counts.toCreateNotUpdated;
+        this.toStoreInserted += counts.toStoreInserted;
+        this.toStoreUpdated += counts.toStoreUpdated;
+        this.toStoreNotUpdated += counts.toStoreNotUpdated;
+        this.toRemoveDeleted += counts.toRemoveDeleted;
+        this.toRemoveAlreadyDeleted += counts.toRemoveAlreadyDeleted;
+    }
+
     // ======================== PULL Methods ========================
     public void runPullStartOrRestoreSavedResults() throws SyncDataErrorException, SyncServiceErrorException, SyncAbortException {
         // if EntitySync.statusId is ESR_RUNNING, make sure startDate matches EntitySync.lastHistoryStartDate; or return error
@@ -1118,6 +1145,66 @@ public class EntitySyncContext {
         return ctx.makeEntityNameToUseSet();
     }
 
+    /**
+     * Result counts of storing EntitySync data, as returned by the store services.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public static class StoreCounts {
+        long toCreateInserted = 0;
+        long toCreateUpdated = 0;
+        long toCreateNotUpdated = 0;
+        long toStoreInserted = 0;
+        long toStoreUpdated = 0;
+        long toStoreNotUpdated = 0;
+        long toRemoveDeleted = 0;
+        long toRemoveAlreadyDeleted = 0;
+
+        public static StoreCounts fromResult(Map<String, ? extends Object> result) {
+            StoreCounts counts = new StoreCounts();
+            counts.toCreateInserted = getCount(result, "toCreateInserted");
+            counts.toCreateUpdated = getCount(result, "toCreateUpdated");
+            counts.toCreateNotUpdated = getCount(result, "toCreateNotUpdated");
+            counts.toStoreInserted = getCount(result, "toStoreInserted");
+            counts.toStoreUpdated = getCount(result, "toStoreUpdated");
+            counts.toStoreNotUpdated = getCount(result, "toStoreNotUpdated");
+            counts.toRemoveDeleted = getCount(result, "toRemoveDeleted");
+            counts.toRemoveAlreadyDeleted = getCount(result, "toRemoveAlreadyDeleted");
+            return counts;
+        }
+
+        private static long getCount(Map<String, ? extends Object> result, String name) {
+            Object count = result.get(name);
+            return (count == null) ? 0 : (Long) count;
+        }
+
+        public void add(StoreCounts other) {
+            this.toCreateInserted += other.toCreateInserted;
+            this.toCreateUpdated += other.toCreateUpdated;
+            this.toCreateNotUpdated += other.toCreateNotUpdated;
+            this.toStoreInserted += other.toStoreInserted;
+            this.toStoreUpdated += other.toStoreUpdated;
+            this.toStoreNotUpdated += other.toStoreNotUpdated;
+            this.toRemoveDeleted += other.toRemoveDeleted;
+            this.toRemoveAlreadyDeleted += other.toRemoveAlreadyDeleted;
+        }
+
+        public void putResult(Map<String, Object> result) {
+            result.put("toCreateInserted", toCreateInserted);
+            result.put("toCreateUpdated", toCreateUpdated);
+            result.put("toCreateNotUpdated", toCreateNotUpdated);
+            result.put("toStoreInserted", toStoreInserted);
+            result.put("toStoreUpdated", toStoreUpdated);
+            result.put("toStoreNotUpdated", toStoreNotUpdated);
+            result.put("toRemoveDeleted", toRemoveDeleted);
+            result.put("toRemoveAlreadyDeleted", toRemoveAlreadyDeleted);
+        }
+
+        public long getTotal() {
+            return toCreateInserted + toCreateUpdated + toCreateNotUpdated + toStoreInserted + toStoreUpdated
+                    + toStoreNotUpdated + toRemoveDeleted + toRemoveAlreadyDeleted;
+        }
+    }
+
     /** This class signifies an abort condition, so the state and such of the EntitySync value in the datasource should not be changed */
     @SuppressWarnings("serial")
     public static class SyncAbortException extends GeneralServiceException {
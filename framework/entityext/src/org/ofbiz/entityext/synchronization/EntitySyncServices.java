@@ -20,6 +20,7 @@ package org.ofbiz.entityext.synchronization;
 
 import static org.ofbiz.base.util.UtilGenerics.checkList;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URL;
 import java.sql.Timestamp;
@@ -53,6 +54,7 @@ import org.ofbiz.entity.serialize.SerializeException;
 import org.ofbiz.entity.serialize.XmlSerializer;
 import org.ofbiz.entity.util.EntityQuery;
 import org.ofbiz.entityext.synchronization.EntitySyncContext.SyncAbortException;
+import org.ofbiz.entityext.synchronization.EntitySyncContext.StoreCounts;
 import org.ofbiz.entityext.synchronization.EntitySyncContext.SyncErrorException;
 import org.ofbiz.service.DispatchContext;
 import org.ofbiz.service.GenericServiceException;
@@ -89,6 +91,12 @@ public class EntitySyncServices {
 
             esc.runPushStartRunning();
 
+            // SCIPIO: 3.0.0: Binary store services get compressed binary chunks, sent in parallel streams
+            if (EntitySyncStreams.isBinaryTarget(dctx.getDispatcher(), esc.targetServiceName)) {
+                runPushStreams(esc, new EntitySyncStreams(esc, new EntitySyncStreams.ServiceTransport()));
+                return ServiceUtil.returnSuccess();
+            }
+
             // increment starting time to run until now
             esc.setSplitStartTime(); // just run this the first time, will be updated between each loop automatically
             while (esc.hasMoreTimeToSync()) {
@@ -127,6 +135,24 @@ public class EntitySyncServices {
         return ServiceUtil.returnSuccess();
     }
 
+    /**
+     * Runs the splits of a started push EntitySync (see {@link EntitySyncContext#runPushStartRunning()}) through the
+     * given binary streams, recording <code>lastSuccessfulSynchTime</code> after each split all streams acknowledged,
+     * then saves the final results. On error, the caller saves the error info using
+     * {@link SyncErrorException#saveSyncErrorInfo(EntitySyncContext)}.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public static void runPushStreams(EntitySyncContext esc, EntitySyncStreams streams) throws SyncErrorException {
+        esc.setSplitStartTime();
+        while (esc.hasMoreTimeToSync()) {
+            esc.totalSplits++;
+            streams.sendSplit();
+            esc.saveResultsReportedFromDataStore();
+            esc.advanceRunTimes();
+        }
+        esc.saveFinalSyncResults();
+    }
+
     /**
      * Store Entity Sync Data
      *@param dctx The DispatchContext that this service is operating in
@@ -153,102 +179,27 @@ public class EntitySyncServices {
 
         if (Debug.infoOn()) Debug.logInfo("Running storeEntitySyncData (" + entitySyncId + ") - [" + valuesToCreate.size() + "] to create; [" + valuesToStore.size() + "] to store; [" + keysToRemove.size() + "] to remove.", module);
         try {
-            long toCreateInserted = 0;
-            long toCreateUpdated = 0;
-            long toCreateNotUpdated = 0;
-            long toStoreInserted = 0;
-            long toStoreUpdated = 0;
-            long toStoreNotUpdated = 0;
-            long toRemoveDeleted = 0;
-            long toRemoveAlreadyDeleted = 0;
+            // SCIPIO: 3.0.0: Per-row logic moved to storeSyncValue/removeSyncKey, shared with storeEntitySyncDataBinary
+            StoreCounts counts = new StoreCounts();
 
             // create all values in the valuesToCreate List; if the value already exists update it, or if exists and was updated more recently than this one dont update it
             for (GenericValue valueToCreate : valuesToCreate) {
-                // to Create check if exists (find by pk), if not insert; if exists check lastUpdatedStamp: if null or before the candidate value insert, otherwise don't insert
-                // NOTE: use the delegator from this DispatchContext rather than the one named in the GenericValue
-
-                // maintain the original timestamps when doing storage of synced data, by default with will update the timestamps to now
-                valueToCreate.setIsFromEntitySync(true);
-
-                // check to make sure all foreign keys are created; if not create dummy values as place holders
-                valueToCreate.checkFks(true);
-
-                GenericValue existingValue = EntityQuery.use(delegator)
-                                                        .from(valueToCreate.getEntityName())
-                                                        .where(valueToCreate.getPrimaryKey())
-                                                        .queryOne();
-                if (existingValue == null) {
-                    delegator.create(valueToCreate);
-                    toCreateInserted++;
-                } else {
-                    // if the existing value has a stamp field that is AFTER the stamp on the valueToCreate, don't update it
-                    if (existingValue.get(ModelEntity.STAMP_FIELD) != null && existingValue.getTimestamp(ModelEntity.STAMP_FIELD).after(valueToCreate.getTimestamp(ModelEntity.STAMP_FIELD))) {
-                        toCreateNotUpdated++;
-                    } else {
-                        delegator.store(valueToCreate);
-                        toCreateUpdated++;
-                    }
-                }
+                storeSyncValue(delegator, valueToCreate, true, counts);
             }
 
             // iterate through to store list and store each
             for (GenericValue valueToStore  : valuesToStore) {
-                // to store check if exists (find by pk), if not insert; if exists check lastUpdatedStamp: if null or before the candidate value insert, otherwise don't insert
-
-                // maintain the original timestamps when doing storage of synced data, by default with will update the timestamps to now
-                valueToStore.setIsFromEntitySync(true);
-
-                // check to make sure all foreign keys are created; if not create dummy values as place holders
-                valueToStore.checkFks(true);
-
-                GenericValue existingValue = EntityQuery.use(delegator)
-                                                        .from(valueToStore.getEntityName())
-                                                        .where(valueToStore.getPrimaryKey())
-                                                        .queryOne();
-                if (existingValue == null) {
-                    delegator.create(valueToStore);
-                    toStoreInserted++;
-                } else {
-                    // if the existing value has a stamp field that is AFTER the stamp on the valueToStore, don't update it
-                    if (existingValue.get(ModelEntity.STAMP_FIELD) != null && existingValue.getTimestamp(ModelEntity.STAMP_FIELD).after(valueToStore.getTimestamp(ModelEntity.STAMP_FIELD))) {
-                        toStoreNotUpdated++;
-                    } else {
-                        delegator.store(valueToStore);
-                        toStoreUpdated++;
-                    }
-                }
+                storeSyncValue(delegator, valueToStore, false, counts);
             }
 
             // iterate through to remove list and remove each
             for (GenericEntity pkToRemove : keysToRemove) {
-                // check to see if it exists, if so remove and count, if not just count already removed
-                // always do a removeByAnd, if it was a removeByAnd great, if it was a removeByPrimaryKey, this will also work and save us a query
-                pkToRemove.setIsFromEntitySync(true);
-
-                // remove the stamp fields inserted by EntitySyncContext.java at or near line 646
-                pkToRemove.remove(ModelEntity.STAMP_TX_FIELD);
-                pkToRemove.remove(ModelEntity.STAMP_FIELD);
-                pkToRemove.remove(ModelEntity.CREATE_STAMP_TX_FIELD);
-                pkToRemove.remove(ModelEntity.CREATE_STAMP_FIELD);
-
-                int numRemByAnd = delegator.removeByAnd(pkToRemove.getEntityName(), pkToRemove);
-                if (numRemByAnd == 0) {
-                    toRemoveAlreadyDeleted++;
-                } else {
-                    toRemoveDeleted++;
-                }
+                removeSyncKey(delegator, pkToRemove, counts);
             }
 
             Map<String, Object> result = ServiceUtil.returnSuccess();
-            result.put("toCreateInserted", toCreateInserted);
-            result.put("toCreateUpdated", toCreateUpdated);
-            result.put("toCreateNotUpdated", toCreateNotUpdated);
-            result.put("toStoreInserted", toStoreInserted);
-            result.put("toStoreUpdated", toStoreUpdated);
-            result.put("toStoreNotUpdated", toStoreNotUpdated);
-            result.put("toRemoveDeleted", toRemoveDeleted);
-            result.put("toRemoveAlreadyDeleted", toRemoveAlreadyDeleted);
-            if (Debug.infoOn()) Debug.logInfo("Finishing storeEntitySyncData (" + entitySyncId + ") - [" + keysToRemove.size() + "] to remove. Actually removed: " + toRemoveDeleted  + " already removed: " + toRemoveAlreadyDeleted, module);
+            counts.putResult(result);
+            if (Debug.infoOn()) Debug.logInfo("Finishing storeEntitySyncData (" + entitySyncId + ") - [" + keysToRemove.size() + "] to remove. Actually removed: " + counts.toRemoveDeleted  + " already removed: " + counts.toRemoveAlreadyDeleted, module);
             return result;
         } catch (GenericEntityException e) {
             Debug.logError(e, "Exception saving Entity Sync Data for entitySyncId [" + entitySyncId + "]: " + e.toString(), module);
@@ -259,6 +210,204 @@ public class EntitySyncServices {
         }
     }
 
+    /**
+     * Stores one synced value: if it does not exist it is inserted; if it exists it is updated, unless the existing
+     * value has a more recent stamp.
+     * <p>SCIPIO: 3.0.0: Factored out of {@link #storeEntitySyncData}.</p>
+     */
+    static void storeSyncValue(Delegator delegator, GenericValue value, boolean toCreate, StoreCounts counts) throws GenericEntityException {
+        // to create/store check if exists (find by pk), if not insert; if exists check lastUpdatedStamp: if null or before the candidate value insert, otherwise don't insert
+        // NOTE: use the delegator from this DispatchContext rather than the one named in the GenericValue
+
+        // maintain the original timestamps when doing storage of synced data, by default with will update the timestamps to now
+        value.setIsFromEntitySync(true);
+
+        // check to make sure all foreign keys are created; if not create dummy values as place holders
+        value.checkFks(true);
+
+        GenericValue existingValue = EntityQuery.use(delegator)
+                                                .from(value.getEntityName())
+                                                .where(value.getPrimaryKey())
+                                                .queryOne();
+        if (existingValue == null) {
+            delegator.create(value);
+            if (toCreate) {
+                counts.toCreateInserted++;
+            } else {
+                counts.toStoreInserted++;
+            }
+        } else {
+            // if the existing value has a stamp field that is AFTER the stamp on the value, don't update it
+            if (existingValue.get(ModelEntity.STAMP_FIELD) != null && existingValue.getTimestamp(ModelEntity.STAMP_FIELD).after(value.getTimestamp(ModelEntity.STAMP_FIELD))) {
+                if (toCreate) {
+                    counts.toCreateNotUpdated++;
+                } else {
+                    counts.toStoreNotUpdated++;
+                }
+            } else {
+                delegator.store(value);
+                if (toCreate) {
+                    counts.toCreateUpdated++;
+                } else {
+                    counts.toStoreUpdated++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes one synced primary key, counting it as already deleted if nothing matched.
+     * <p>SCIPIO: 3.0.0: Factored out of {@link #storeEntitySyncData}.</p>
+     */
+    static void removeSyncKey(Delegator delegator, GenericEntity pkToRemove, StoreCounts counts) throws GenericEntityException {
+        // check to see if it exists, if so remove and count, if not just count already removed
+        // always do a removeByAnd, if it was a removeByAnd great, if it was a removeByPrimaryKey, this will also work and save us a query
+        pkToRemove.setIsFromEntitySync(true);
+
+        // remove the stamp fields inserted by EntitySyncContext.java at or near line 646
+        pkToRemove.remove(ModelEntity.STAMP_TX_FIELD);
+        pkToRemove.remove(ModelEntity.STAMP_FIELD);
+        pkToRemove.remove(ModelEntity.CREATE_STAMP_TX_FIELD);
+        pkToRemove.remove(ModelEntity.CREATE_STAMP_FIELD);
+
+        int numRemByAnd = delegator.removeByAnd(pkToRemove.getEntityName(), pkToRemove);
+        if (numRemByAnd == 0) {
+            counts.toRemoveAlreadyDeleted++;
+        } else {
+            counts.toRemoveDeleted++;
+        }
+    }
+
+    /**
+     * Store Entity Sync Data from a binary chunk (see {@link EntitySyncBinaryCodec}). The rows are decoded and
+     * stored one at a time, in the order written, in the service transaction; the chunk is acknowledged by
+     * returning its end stamp as <code>ackTxStamp</code>.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     *@param dctx The DispatchContext that this service is operating in
+     *@param context Map containing the input parameters
+     *@return Map with the result of the service, the output parameters
+     */
+    public static Map<String, Object> storeEntitySyncDataBinary(DispatchContext dctx, Map<String, Object> context) {
+        Delegator delegator = dctx.getDelegator();
+        String overrideDelegatorName = (String) context.get("delegatorName");
+        Locale locale = (Locale) context.get("locale");
+        if (UtilValidate.isNotEmpty(overrideDelegatorName)) {
+            delegator = DelegatorFactory.getDelegator(overrideDelegatorName);
+            if (delegator == null) {
+                return ServiceUtil.returnError(UtilProperties.getMessage(resource, "EntityExtCannotFindDelegator", UtilMisc.toMap("overrideDelegatorName", overrideDelegatorName), locale));
+            }
+        }
+        String entitySyncId = (String) context.get("entitySyncId");
+        byte[] syncData = (byte[]) context.get("syncData");
+        try {
+            StoreCounts counts = new StoreCounts();
+            Timestamp ackTxStamp = storeSyncData(delegator, syncData, counts);
+            if (Debug.infoOn()) Debug.logInfo("Finishing storeEntitySyncDataBinary (" + entitySyncId + ") - [" + counts.getTotal() + "] rows from ["
+                    + syncData.length + "] bytes, acknowledged up to [" + ackTxStamp + "]", module);
+            Map<String, Object> result = ServiceUtil.returnSuccess();
+            counts.putResult(result);
+            result.put("ackTxStamp", ackTxStamp);
+            return result;
+        } catch (Exception e) {
+            Debug.logError(e, "Error saving Entity Sync Data for entitySyncId [" + entitySyncId + "]: " + e.toString(), module);
+            return ServiceUtil.returnError(UtilProperties.getMessage(resource, "EntityExtErrorSavingEntitySyncData", UtilMisc.toMap("entitySyncId", entitySyncId, "errorString", e.toString()), locale));
+        }
+    }
+
+    /**
+     * Decodes and stores a binary chunk, returning the end stamp of its last complete chunk.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    static Timestamp storeSyncData(Delegator delegator, byte[] syncData, StoreCounts counts) throws IOException, GenericEntityException {
+        Timestamp ackTxStamp = null;
+        long chunkRows = 0;
+        try (EntitySyncBinaryCodec.Reader reader = new EntitySyncBinaryCodec.Reader(new ByteArrayInputStream(syncData), delegator)) {
+            EntitySyncBinaryCodec.Row row;
+            while ((row = reader.next()) != null) {
+                switch (row.getType()) {
+                case CREATE:
+                    storeSyncValue(delegator, (GenericValue) row.getEntity(), true, counts);
+                    chunkRows++;
+                    break;
+                case STORE:
+                    storeSyncValue(delegator, (GenericValue) row.getEntity(), false, counts);
+                    chunkRows++;
+                    break;
+                case REMOVE:
+                    removeSyncKey(delegator, row.getEntity(), counts);
+                    chunkRows++;
+                    break;
+                case CHUNK_END:
+                    if (chunkRows != row.getChunkRowCount()) {
+                        throw new IOException("Chunk ending at [" + row.getChunkEndTime() + "] has [" + chunkRows + "] rows, expected [" + row.getChunkRowCount() + "]");
+                    }
+                    ackTxStamp = row.getChunkEndTime();
+                    chunkRows = 0;
+                    break;
+                }
+            }
+        }
+        if (chunkRows > 0 || ackTxStamp == null) {
+            throw new IOException("Incomplete EntitySync binary chunk: missing chunk end record");
+        }
+        return ackTxStamp;
+    }
+
+    /**
+     * Benchmark the binary EntitySync transport against a local loopback stand-in for the target: runs the push
+     * side of the given EntitySync from its last successful sync time (without changing the EntitySync or its
+     * history) and decodes each chunk locally, or stores it into <code>targetDelegatorName</code> if given.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     *@param dctx The DispatchContext that this service is operating in
+     *@param context Map containing the input parameters
+     *@return Map with the result of the service, the output parameters
+     */
+    public static Map<String, Object> benchmarkEntitySyncTransport(DispatchContext dctx, Map<String, ? extends Object> context) {
+        Locale locale = (Locale) context.get("locale");
+        String targetDelegatorName = (String) context.get("targetDelegatorName");
+        Integer maxStreams = (Integer) context.get("maxStreams");
+        Integer compressionLevel = (Integer) context.get("compressionLevel");
+        Integer maxSplits = (Integer) context.get("maxSplits");
+        Delegator targetDelegator = null;
+        if (UtilValidate.isNotEmpty(targetDelegatorName)) {
+            targetDelegator = DelegatorFactory.getDelegator(targetDelegatorName);
+            if (targetDelegator == null) {
+                return ServiceUtil.returnError(UtilProperties.getMessage(resource, "EntityExtCannotFindDelegator", UtilMisc.toMap("overrideDelegatorName", targetDelegatorName), locale));
+            }
+        }
+        try {
+            EntitySyncContext esc = new EntitySyncContext(dctx, context);
+            EntitySyncStreams.LoopbackTransport transport = new EntitySyncStreams.LoopbackTransport(esc.delegator, targetDelegator);
+            EntitySyncStreams streams = new EntitySyncStreams(esc, transport,
+                    (maxStreams != null) ? maxStreams : EntitySyncStreams.DEFAULT_MAX_STREAMS,
+                    (compressionLevel != null) ? compressionLevel : EntitySyncStreams.DEFAULT_COMPRESSION_LEVEL);
+            long startTime = System.nanoTime();
+            int splits = 0;
+            while (esc.currentRunStartTime != null && esc.hasMoreTimeToSync() && (maxSplits == null || splits < maxSplits)) {
+                streams.sendSplit();
+                esc.advanceRunTimes();
+                splits++;
+            }
+            long elapsedMillis = Math.max(1, (System.nanoTime() - startTime) / 1000000);
+            Map<String, Object> result = ServiceUtil.returnSuccess();
+            result.put("splits", (long) splits);
+            result.put("streams", (long) streams.getStreamCount());
+            result.put("chunks", streams.getTotalChunks());
+            result.put("rows", streams.getTotalRows());
+            result.put("bytes", streams.getTotalBytes());
+            result.put("elapsedMillis", elapsedMillis);
+            result.put("decodeMillis", transport.getDecodeNanos() / 1000000);
+            result.put("rowsPerSecond", streams.getTotalRows() * 1000 / elapsedMillis);
+            Debug.logInfo("EntitySync [" + esc.entitySyncId + "] loopback benchmark: " + splits + " splits, " + streams.getStreamCount() + " streams, "
+                    + streams.getTotalRows() + " rows, " + streams.getTotalBytes() + " bytes in " + elapsedMillis + "ms", module);
+            return result;
+        } catch (SyncAbortException e) {
+            return e.returnError(module.toString());
+        } catch (SyncErrorException e) {
+            return e.returnError(module.toString());
+        }
+    }
+
     /**
      * Run Pull Entity Sync - Pull From Remote
      *@param dctx The DispatchContext that this service is operating in
@@ -0,0 +1,393 @@
+package org.ofbiz.entityext.synchronization;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ofbiz.base.concurrent.ExecutionPool;
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.base.util.UtilProperties;
+import org.ofbiz.base.util.UtilValidate;
+import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.GenericEntity;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.model.ModelEntity;
+import org.ofbiz.entity.model.ModelRelation;
+import org.ofbiz.entity.transaction.TransactionUtil;
+import org.ofbiz.entityext.synchronization.EntitySyncContext.StoreCounts;
+import org.ofbiz.entityext.synchronization.EntitySyncContext.SyncErrorException;
+import org.ofbiz.entityext.synchronization.EntitySyncContext.SyncOtherErrorException;
+import org.ofbiz.entityext.synchronization.EntitySyncContext.SyncServiceErrorException;
+import org.ofbiz.service.GenericServiceException;
+import org.ofbiz.service.LocalDispatcher;
+import org.ofbiz.service.ModelService;
+import org.ofbiz.service.ServiceUtil;
+
+/**
+ * Parallel binary push transport for EntitySync.
+ *
+ * <p>The entities of an EntitySync are split into independent groups: entities linked by a relation (directly or
+ * through other synced entities) always end up in the same group, so rows are still sent in stamp order relative to
+ * the rows they may reference. The groups are distributed over up to <code>entitysync.stream.maxParallel</code>
+ * streams. For each split (time window) every stream assembles its rows, encodes them as one compressed
+ * {@link EntitySyncBinaryCodec} chunk and sends it through a {@link Transport}; the streams run in parallel.</p>
+ *
+ * <p>The split is only reported as synced (<code>lastSuccessfulSynchTime</code>) once all streams acknowledged their
+ * chunk by its end stamp, so an interrupted run resumes from the last fully acknowledged chunk; chunks that were
+ * stored but not reported are simply stored again, which the store logic tolerates.</p>
+ *
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public class EntitySyncStreams {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    public static final int DEFAULT_MAX_STREAMS = UtilProperties.getPropertyAsInteger("general", "entitysync.stream.maxParallel", 4);
+    public static final int DEFAULT_COMPRESSION_LEVEL = UtilProperties.getPropertyAsInteger("general", "entitysync.stream.compressionLevel", 6);
+
+    private final EntitySyncContext esc;
+    private final Transport transport;
+    private final int compressionLevel;
+    private final List<EntitySyncContext> streams = new ArrayList<>();
+    private final Map<String, Integer> streamIndexByEntityName = new HashMap<>();
+
+    private final AtomicLong totalChunks = new AtomicLong();
+    private final AtomicLong totalRows = new AtomicLong();
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    public EntitySyncStreams(EntitySyncContext esc, Transport transport, int maxStreams, int compressionLevel) {
+        this.esc = esc;
+        this.transport = transport;
+        this.compressionLevel = compressionLevel;
+        for (List<ModelEntity> streamEntities : assignStreams(makeIndependentGroups(esc.entityModelToUseList), maxStreams)) {
+            for (ModelEntity modelEntity : streamEntities) {
+                streamIndexByEntityName.put(modelEntity.getEntityName(), streams.size());
+            }
+            streams.add(new EntitySyncContext(esc, streamEntities));
+        }
+        if (Debug.infoOn()) {
+            Debug.logInfo("EntitySync [" + esc.entitySyncId + "]: syncing " + esc.entityModelToUseList.size() + " entities in "
+                    + streams.size() + " parallel binary streams", module);
+        }
+    }
+
+    public EntitySyncStreams(EntitySyncContext esc, Transport transport) {
+        this(esc, transport, DEFAULT_MAX_STREAMS, DEFAULT_COMPRESSION_LEVEL);
+    }
+
+    /**
+     * Returns true if the given store service accepts binary chunks (has a <code>syncData</code> IN parameter),
+     * such as <code>storeEntitySyncDataBinary</code> and its remote variants.
+     */
+    public static boolean isBinaryTarget(LocalDispatcher dispatcher, String targetServiceName) {
+        if (UtilValidate.isEmpty(targetServiceName)) {
+            return false;
+        }
+        try {
+            ModelService modelService = dispatcher.getDispatchContext().getModelService(targetServiceName);
+            return modelService.getParam("syncData") != null;
+        } catch (GenericServiceException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Splits the entities into groups that share no relations with entities of other groups (connected components
+     * of the relation graph restricted to the given entities), largest first.
+     */
+    public static List<List<ModelEntity>> makeIndependentGroups(List<ModelEntity> entities) {
+        Map<String, Integer> indexByName = new HashMap<>();
+        for (int i = 0; i < entities.size(); i++) {
+            indexByName.put(entities.get(i).getEntityName(), i);
+        }
+        int[] parents = new int[entities.size()];
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = i;
+        }
+        for (int i = 0; i < entities.size(); i++) {
+            for (ModelRelation relation : entities.get(i).getRelationsList(true, true, true)) {
+                Integer relIndex = indexByName.get(relation.getRelEntityName());
+                if (relIndex != null) {
+                    int root = findRoot(parents, i);
+                    int relRoot = findRoot(parents, relIndex);
+                    if (root != relRoot) {
+                        parents[Math.max(root, relRoot)] = Math.min(root, relRoot);
+                    }
+                }
+            }
+        }
+        Map<Integer, List<ModelEntity>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < entities.size(); i++) {
+            groups.computeIfAbsent(findRoot(parents, i), k -> new ArrayList<>()).add(entities.get(i));
+        }
+        List<List<ModelEntity>> groupList = new ArrayList<>(groups.values());
+        groupList.sort(Comparator.comparingInt((List<ModelEntity> group) -> group.size()).reversed());
+        return groupList;
+    }
+
+    private static int findRoot(int[] parents, int index) {
+        while (parents[index] != index) {
+            parents[index] = parents[parents[index]];
+            index = parents[index];
+        }
+        return index;
+    }
+
+    /**
+     * Distributes the groups (largest first) over up to <code>maxStreams</code> streams, each to the stream with the
+     * fewest entities so far.
+     */
+    static List<List<ModelEntity>> assignStreams(List<List<ModelEntity>> groups, int maxStreams) {
+        int streamCount = Math.max(1, Math.min(maxStreams, groups.size()));
+        List<List<ModelEntity>> streams = new ArrayList<>(streamCount);
+        for (int i = 0; i < streamCount; i++) {
+            streams.add(new ArrayList<>());
+        }
+        for (List<ModelEntity> group : groups) {
+            List<ModelEntity> smallest = streams.get(0);
+            for (List<ModelEntity> stream : streams) {
+                if (stream.size() < smallest.size()) {
+                    smallest = stream;
+                }
+            }
+            smallest.addAll(group);
+        }
+        return streams;
+    }
+
+    public int getStreamCount() {
+        return streams.size();
+    }
+
+    public long getTotalChunks() {
+        return totalChunks.get();
+    }
+
+    public long getTotalRows() {
+        return totalRows.get();
+    }
+
+    /** Total size of the encoded (compressed) chunks sent. */
+    public long getTotalBytes() {
+        return totalBytes.get();
+    }
+
+    /**
+     * Sends the current split (time window) of the main context on all streams in parallel and adds the row counts
+     * and store results to the main context. Throws the first stream error after all streams finished.
+     */
+    public void sendSplit() throws SyncErrorException {
+        Timestamp startTime = esc.currentRunStartTime;
+        Timestamp endTime = esc.currentRunEndTime;
+        for (EntitySyncContext stream : streams) {
+            stream.currentRunStartTime = startTime;
+            stream.currentRunEndTime = endTime;
+        }
+        // removed keys all come from EntitySyncRemove, so read (and deserialize) them once and hand them to their streams
+        List<List<GenericEntity>> streamKeysToRemove = new ArrayList<>(streams.size());
+        for (int i = 0; i < streams.size(); i++) {
+            streamKeysToRemove.add(new ArrayList<>());
+        }
+        for (GenericEntity keyToRemove : esc.assembleKeysToRemove()) {
+            streamKeysToRemove.get(streamIndexByEntityName.get(keyToRemove.getEntityName())).add(keyToRemove);
+        }
+        StreamResult total = new StreamResult();
+        SyncErrorException error = null;
+        if (streams.size() == 1) {
+            total.add(sendStreamSplit(streams.get(0), streamKeysToRemove.get(0), startTime, endTime));
+        } else {
+            List<Future<StreamResult>> futures = new ArrayList<>(streams.size());
+            for (int i = 0; i < streams.size(); i++) {
+                EntitySyncContext stream = streams.get(i);
+                List<GenericEntity> keysToRemove = streamKeysToRemove.get(i);
+                futures.add(ExecutionPool.GLOBAL_BATCH.submit(() -> sendStreamSplit(stream, keysToRemove, startTime, endTime)));
+            }
+            for (Future<StreamResult> future : futures) {
+                try {
+                    total.add(future.get());
+                } catch (ExecutionException e) {
+                    if (error == null) {
+                        error = (e.getCause() instanceof SyncErrorException) ? (SyncErrorException) e.getCause()
+                                : new SyncOtherErrorException("Error in EntitySync stream: " + e.getCause(), e.getCause());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    if (error == null) {
+                        error = new SyncOtherErrorException("Interrupted waiting for EntitySync streams", e);
+                    }
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+        esc.totalRowsToCreate = total.rowsToCreate;
+        esc.totalRowsToStore = total.rowsToStore;
+        esc.totalRowsToRemove = total.rowsToRemove;
+        esc.totalRowsPerSplit = total.rowsToCreate + total.rowsToStore + total.rowsToRemove;
+        esc.totalStoreCalls += total.storeCalls;
+        esc.addStoreCounts(total.counts);
+    }
+
+    private StreamResult sendStreamSplit(EntitySyncContext stream, List<GenericEntity> keysToRemove, Timestamp startTime, Timestamp endTime) throws SyncErrorException {
+        StreamResult result = new StreamResult();
+        ArrayList<GenericValue> valuesToCreate = stream.assembleValuesToCreate();
+        ArrayList<GenericValue> valuesToStore = stream.assembleValuesToStore();
+        result.rowsToCreate = valuesToCreate.size();
+        result.rowsToStore = valuesToStore.size();
+        result.rowsToRemove = keysToRemove.size();
+        long rowCount = result.rowsToCreate + result.rowsToStore + result.rowsToRemove;
+        if (rowCount == 0) {
+            return result;
+        }
+        byte[] chunk;
+        try {
+            chunk = EntitySyncBinaryCodec.encodeChunk(valuesToCreate, valuesToStore, keysToRemove, startTime, endTime, compressionLevel);
+        } catch (IOException e) {
+            throw new SyncOtherErrorException("Error encoding EntitySync [" + esc.entitySyncId + "] chunk ending at [" + endTime + "]", e);
+        }
+        result.counts = transport.sendChunk(stream, chunk, rowCount, endTime);
+        result.storeCalls = 1;
+        totalChunks.incrementAndGet();
+        totalRows.addAndGet(rowCount);
+        totalBytes.addAndGet(chunk.length);
+        if (Debug.verboseOn()) {
+            Debug.logVerbose("EntitySync [" + esc.entitySyncId + "]: sent chunk ending at [" + endTime + "]: " + rowCount
+                    + " rows, " + chunk.length + " bytes", module);
+        }
+        return result;
+    }
+
+    private static class StreamResult {
+        long rowsToCreate;
+        long rowsToStore;
+        long rowsToRemove;
+        long storeCalls;
+        StoreCounts counts = new StoreCounts();
+
+        void add(StreamResult other) {
+            rowsToCreate += other.rowsToCreate;
+            rowsToStore += other.rowsToStore;
+            rowsToRemove += other.rowsToRemove;
+            storeCalls += other.storeCalls;
+            counts.add(other.counts);
+        }
+    }
+
+    /**
+     * Sends one encoded chunk to the target and returns the store results once the target acknowledged it.
+     * Implementations must be thread-safe; chunks of different streams are sent concurrently.
+     */
+    public interface Transport {
+        StoreCounts sendChunk(EntitySyncContext stream, byte[] chunk, long rowCount, Timestamp chunkEndTime) throws SyncErrorException;
+    }
+
+    /**
+     * Sends chunks to the EntitySync <code>targetServiceName</code>, normally <code>storeEntitySyncDataBinary</code> or
+     * one of its remote variants (<code>remoteStoreEntitySyncDataBinaryHttp</code>, <code>remoteStoreEntitySyncDataBinaryRmi</code>).
+     */
+    public static class ServiceTransport implements Transport {
+        @Override
+        public StoreCounts sendChunk(EntitySyncContext stream, byte[] chunk, long rowCount, Timestamp chunkEndTime) throws SyncErrorException {
+            Map<String, Object> targetServiceMap = UtilMisc.toMap("entitySyncId", stream.entitySyncId, "syncData", chunk, "userLogin", stream.userLogin);
+            if (UtilValidate.isNotEmpty(stream.targetDelegatorName)) {
+                targetServiceMap.put("delegatorName", stream.targetDelegatorName);
+            }
+            String serviceErrorMsg = "Error running EntitySync [" + stream.entitySyncId + "], call to store service [" + stream.targetServiceName + "] failed.";
+            try {
+                Map<String, Object> remoteStoreResult = stream.dispatcher.runSync(stream.targetServiceName, targetServiceMap);
+                if (ServiceUtil.isError(remoteStoreResult)) {
+                    throw new SyncOtherErrorException(serviceErrorMsg, null, null, remoteStoreResult, null);
+                }
+                Timestamp ackTxStamp = (Timestamp) remoteStoreResult.get("ackTxStamp");
+                if (!chunkEndTime.equals(ackTxStamp)) {
+                    throw new SyncOtherErrorException(serviceErrorMsg + " Chunk ending at [" + chunkEndTime + "] was acknowledged as [" + ackTxStamp + "].");
+                }
+                return StoreCounts.fromResult(remoteStoreResult);
+            } catch (GenericServiceException e) {
+                throw new SyncServiceErrorException(serviceErrorMsg, e);
+            }
+        }
+    }
+
+    /**
+     * Local loopback stand-in for a remote target, for benchmarking: decodes each chunk and, if a target delegator
+     * is given, stores it there in its own transaction using the same logic as <code>storeEntitySyncDataBinary</code>.
+     * Without a target delegator the chunks are only decoded and verified.
+     */
+    public static class LoopbackTransport implements Transport {
+        private final Delegator sourceDelegator;
+        private final Delegator targetDelegator;
+        private final AtomicLong decodeNanos = new AtomicLong();
+
+        public LoopbackTransport(Delegator sourceDelegator, Delegator targetDelegator) {
+            this.sourceDelegator = sourceDelegator;
+            this.targetDelegator = targetDelegator;
+        }
+
+        /** Total time spent decoding (and storing, with a target delegator) chunks. */
+        public long getDecodeNanos() {
+            return decodeNanos.get();
+        }
+
+        @Override
+        public StoreCounts sendChunk(EntitySyncContext stream, byte[] chunk, long rowCount, Timestamp chunkEndTime) throws SyncErrorException {
+            long startTime = System.nanoTime();
+            StoreCounts counts = new StoreCounts();
+            try {
+                Timestamp ackTxStamp;
+                if (targetDelegator != null) {
+                    boolean beganTransaction = TransactionUtil.begin(7200);
+                    try {
+                        ackTxStamp = EntitySyncServices.storeSyncData(targetDelegator, chunk, counts);
+                        TransactionUtil.commit(beganTransaction);
+                    } catch (Exception e) {
+                        TransactionUtil.rollback(beganTransaction, "Error storing loopback EntitySync chunk", e);
+                        throw e;
+                    }
+                } else {
+                    ackTxStamp = decode(chunk, rowCount);
+                }
+                if (!chunkEndTime.equals(ackTxStamp)) {
+                    throw new SyncOtherErrorException("Loopback chunk ending at [" + chunkEndTime + "] was acknowledged as [" + ackTxStamp + "]");
+                }
+            } catch (SyncErrorException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new SyncOtherErrorException("Error in loopback EntitySync transport: " + e.toString(), e);
+            } finally {
+                decodeNanos.addAndGet(System.nanoTime() - startTime);
+            }
+            return counts;
+        }
+
+        private Timestamp decode(byte[] chunk, long rowCount) throws Exception {
+            long rows = 0;
+            Timestamp ackTxStamp = null;
+            try (EntitySyncBinaryCodec.Reader reader = new EntitySyncBinaryCodec.Reader(new ByteArrayInputStream(chunk), sourceDelegator)) {
+                EntitySyncBinaryCodec.Row row;
+                while ((row = reader.next()) != null) {
+                    if (row.getType() == EntitySyncBinaryCodec.RowType.CHUNK_END) {
+                        ackTxStamp = row.getChunkEndTime();
+                    } else {
+                        rows++;
+                    }
+                }
+            }
+            if (rows != rowCount) {
+                throw new IOException("Decoded [" + rows + "] rows, expected [" + rowCount + "]");
+            }
+            return ackTxStamp;
+        }
+    }
+}
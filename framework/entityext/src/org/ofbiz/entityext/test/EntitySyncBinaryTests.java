@@ -0,0 +1,394 @@
+package org.ofbiz.entityext.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.sql.rowset.serial.SerialBlob;
+
+import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.entity.GenericEntity;
+import org.ofbiz.entity.GenericPK;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.model.ModelEntity;
+import org.ofbiz.entity.util.EntityQuery;
+import org.ofbiz.entityext.synchronization.EntitySyncBinaryCodec;
+import org.ofbiz.entityext.synchronization.EntitySyncContext;
+import org.ofbiz.entityext.synchronization.EntitySyncContext.StoreCounts;
+import org.ofbiz.entityext.synchronization.EntitySyncContext.SyncErrorException;
+import org.ofbiz.entityext.synchronization.EntitySyncContext.SyncOtherErrorException;
+import org.ofbiz.entityext.synchronization.EntitySyncServices;
+import org.ofbiz.entityext.synchronization.EntitySyncStreams;
+import org.ofbiz.service.ServiceUtil;
+import org.ofbiz.service.testtools.OFBizTestCase;
+
+/**
+ * Tests for the binary EntitySync format ({@link EntitySyncBinaryCodec}) and the parallel push ({@link EntitySyncStreams}).
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public class EntitySyncBinaryTests extends OFBizTestCase {
+
+    private static final String ENTITY_SYNC_ID = "EsbTestPush";
+
+    public EntitySyncBinaryTests(String name) {
+        super(name);
+    }
+
+    /*
+     * testValueTags: Round-trips every value tag through writeValue/readValue
+     */
+    public void testValueTags() throws Exception {
+        Timestamp nanosStamp = Timestamp.valueOf("2021-03-04 05:06:07.123456789");
+        Timestamp beforeEpochStamp = new Timestamp(-1001);
+        beforeEpochStamp.setNanos(999999999);
+        List<Object> values = UtilMisc.<Object>toList(null, "Grüße €", Long.MIN_VALUE, -1L, Long.MAX_VALUE, Integer.MIN_VALUE, 42,
+                3.25d, -0.5f, new BigDecimal(new BigInteger("-12345"), -3), new BigDecimal("-0.000123"), nanosStamp, beforeEpochStamp,
+                java.sql.Date.valueOf("2020-02-29"), Time.valueOf("13:14:15"), Boolean.TRUE, Boolean.FALSE, new byte[] { 0, -1, 127 },
+                new ArrayList<>(UtilMisc.toList("serialized", "list")));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (Object value : values) {
+                EntitySyncBinaryCodec.writeValue(out, value);
+            }
+            EntitySyncBinaryCodec.writeValue(out, ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            for (Object value : values) {
+                Object decoded = EntitySyncBinaryCodec.readValue(in);
+                if (value instanceof byte[]) {
+                    assertTrue("Bytes round-trip", Arrays.equals((byte[]) value, (byte[]) decoded));
+                } else {
+                    assertEquals("Value round-trip", value, decoded);
+                    if (value != null) {
+                        assertEquals("Value type round-trip", value.getClass(), decoded.getClass());
+                    }
+                }
+            }
+            assertTrue("ByteBuffer decoded as bytes", Arrays.equals(new byte[] { 1, 2, 3 }, (byte[]) EntitySyncBinaryCodec.readValue(in)));
+            assertEquals("All values read", -1, in.read());
+        }
+        assertEquals("Timestamp nanos kept", 123456789, ((Timestamp) values.get(11)).getNanos());
+    }
+
+    /*
+     * testChunkRoundTrip: Round-trips created, stored and removed rows of all field types through a compressed and an uncompressed chunk
+     */
+    public void testChunkRoundTrip() throws Exception {
+        GenericValue allTypes = delegator.makeValue("TestFieldType");
+        allTypes.set("testFieldTypeId", "esb-types");
+        allTypes.set("blobField", new SerialBlob(new byte[] { 9, 8, 7, 0, -128 }));
+        allTypes.set("byteArrayField", new byte[] { 1, 2, 3 });
+        allTypes.set("objectField", new ArrayList<>(UtilMisc.toList("a", "b")));
+        allTypes.set("dateField", java.sql.Date.valueOf("2020-02-29"));
+        allTypes.set("timeField", Time.valueOf("23:59:58"));
+        allTypes.set("dateTimeField", Timestamp.valueOf("2021-03-04 05:06:07.123456789"));
+        allTypes.set("fixedPointField", new BigDecimal(new BigInteger("-987"), -2));
+        allTypes.set("floatingPointField", -1.0E-3d);
+        allTypes.set("numericField", -123456789012L);
+        allTypes.set("clobField", null);
+        List<GenericValue> objectFieldValues = new ArrayList<>();
+        for (Object objectValue : UtilMisc.<Object>toList(-42, 1.5f, "text", ByteBuffer.wrap(new byte[] { 5 }))) {
+            GenericValue value = delegator.makeValue("TestFieldType", "testFieldTypeId", "esb-object-" + objectFieldValues.size());
+            value.set("objectField", objectValue);
+            objectFieldValues.add(value);
+        }
+        GenericPK removedKey = delegator.makePK("TestingNode", "testingNodeId", "esb-removed");
+        Timestamp chunkStart = Timestamp.valueOf("2021-03-04 05:00:00.0");
+        Timestamp chunkEnd = Timestamp.valueOf("2021-03-04 05:10:00.000000001");
+
+        for (int compressionLevel : new int[] { -1, 6 }) {
+            byte[] chunk = EntitySyncBinaryCodec.encodeChunk(Collections.singletonList(allTypes), objectFieldValues,
+                    Collections.singletonList(removedKey), chunkStart, chunkEnd, compressionLevel);
+            List<EntitySyncBinaryCodec.Row> rows = readRows(chunk);
+            assertEquals("Row count (compression " + compressionLevel + ")", 3 + objectFieldValues.size(), rows.size());
+
+            EntitySyncBinaryCodec.Row createRow = rows.get(0);
+            assertEquals("Create row type", EntitySyncBinaryCodec.RowType.CREATE, createRow.getType());
+            GenericEntity decoded = createRow.getEntity();
+            for (String fieldName : allTypes.getModelEntity().getAllFieldNames()) {
+                assertEquals("Field present: " + fieldName, allTypes.containsKey(fieldName), decoded.containsKey(fieldName));
+            }
+            assertNull("Null field value", decoded.get("clobField"));
+            assertTrue("Blob field", Arrays.equals(getBlobBytes((Blob) allTypes.get("blobField")), getBlobBytes((Blob) decoded.get("blobField"))));
+            assertTrue("Byte array field", Arrays.equals((byte[]) allTypes.get("byteArrayField"), (byte[]) decoded.get("byteArrayField")));
+            for (String fieldName : UtilMisc.toList("testFieldTypeId", "objectField", "dateField", "timeField", "dateTimeField",
+                    "fixedPointField", "floatingPointField", "numericField")) {
+                assertEquals("Field " + fieldName, allTypes.get(fieldName), decoded.get(fieldName));
+            }
+            assertEquals("Negative BigDecimal scale", -2, ((BigDecimal) decoded.get("fixedPointField")).scale());
+
+            for (int i = 0; i < objectFieldValues.size(); i++) {
+                EntitySyncBinaryCodec.Row storeRow = rows.get(1 + i);
+                assertEquals("Store row type", EntitySyncBinaryCodec.RowType.STORE, storeRow.getType());
+                Object expected = objectFieldValues.get(i).get("objectField");
+                Object actual = storeRow.getEntity().get("objectField");
+                if (expected instanceof ByteBuffer) {
+                    assertTrue("Object field bytes", Arrays.equals(new byte[] { 5 }, (byte[]) actual));
+                } else {
+                    assertEquals("Object field value", expected, actual);
+                }
+            }
+
+            EntitySyncBinaryCodec.Row removeRow = rows.get(1 + objectFieldValues.size());
+            assertEquals("Remove row type", EntitySyncBinaryCodec.RowType.REMOVE, removeRow.getType());
+            assertTrue("Removed key is a primary key", removeRow.getEntity() instanceof GenericPK);
+            assertEquals("Removed key", removedKey, removeRow.getEntity());
+
+            EntitySyncBinaryCodec.Row chunkEndRow = rows.get(rows.size() - 1);
+            assertEquals("Chunk end row type", EntitySyncBinaryCodec.RowType.CHUNK_END, chunkEndRow.getType());
+            assertEquals("Chunk start", chunkStart, chunkEndRow.getChunkStartTime());
+            assertEquals("Chunk end", chunkEnd, chunkEndRow.getChunkEndTime());
+            assertEquals("Chunk row count", 2 + objectFieldValues.size(), chunkEndRow.getChunkRowCount());
+        }
+    }
+
+    /*
+     * testUnknownField: Decodes a hand-written version 1 stream whose entity definition has a field the receiver does not know
+     */
+    public void testUnknownField() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(EntitySyncBinaryCodec.MAGIC);
+        out.writeByte(1); // version
+        out.writeByte(0); // flags: not compressed
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        payload.write(0); // entity ID
+        writeShortString(payload, "TestingType");
+        payload.write(3); // field count
+        writeShortString(payload, "testingTypeId");
+        writeShortString(payload, "senderOnlyField");
+        writeShortString(payload, "description");
+        writeRecord(out, 1, payload); // entity definition
+
+        payload.reset();
+        payload.write(0); // entity ID
+        payload.write(1); // testingTypeId
+        payload.write(1); // string
+        writeShortString(payload, "esb-unknown");
+        payload.write(2); // senderOnlyField
+        payload.write(1); // string
+        writeShortString(payload, "skipped");
+        payload.write(3); // description
+        payload.write(1); // string
+        writeShortString(payload, "Known field");
+        payload.write(0); // end of fields
+        writeRecord(out, 2, payload); // create
+
+        payload.reset();
+        writeRecord(out, 0, payload); // end of stream
+        out.flush();
+
+        List<EntitySyncBinaryCodec.Row> rows = readRows(bytes.toByteArray());
+        assertEquals("Row count", 1, rows.size());
+        GenericEntity decoded = rows.get(0).getEntity();
+        assertEquals("Entity", "TestingType", decoded.getEntityName());
+        assertEquals("Known PK field", "esb-unknown", decoded.get("testingTypeId"));
+        assertEquals("Known field after unknown field", "Known field", decoded.get("description"));
+        assertEquals("Only known fields set", 2, decoded.size());
+    }
+
+    /*
+     * testStoreBinary: Stores chunks with storeEntitySyncDataBinary and checks the ackTxStamp and store counts
+     */
+    public void testStoreBinary() throws Exception {
+        GenericValue userLogin = getUserLogin();
+        Timestamp chunkEnd = Timestamp.valueOf("2021-03-04 05:10:00.0");
+        List<GenericValue> values = new ArrayList<>();
+        for (int i = 1; i <= 2; i++) {
+            GenericValue value = delegator.makeValue("TestingType", "testingTypeId", "esb-store-" + i, "description", "Stored " + i);
+            setStamps(value, chunkEnd);
+            values.add(value);
+        }
+        byte[] chunk = EntitySyncBinaryCodec.encodeChunk(values, Collections.<GenericValue>emptyList(), Collections.<GenericPK>emptyList(),
+                null, chunkEnd, 6);
+        Map<String, Object> result = dispatcher.runSync("storeEntitySyncDataBinary",
+                UtilMisc.toMap("entitySyncId", ENTITY_SYNC_ID, "syncData", chunk, "userLogin", userLogin));
+        assertTrue("storeEntitySyncDataBinary success", ServiceUtil.isSuccess(result));
+        assertEquals("ackTxStamp", chunkEnd, result.get("ackTxStamp"));
+        assertEquals("toCreateInserted", 2L, result.get("toCreateInserted"));
+        assertEquals("Stored value", "Stored 2", EntityQuery.use(delegator).from("TestingType").where("testingTypeId", "esb-store-2").queryOne().get("description"));
+
+        Timestamp removeChunkEnd = new Timestamp(chunkEnd.getTime() + 1000);
+        chunk = EntitySyncBinaryCodec.encodeChunk(Collections.<GenericValue>emptyList(), Collections.<GenericValue>emptyList(),
+                Collections.singletonList(delegator.makePK("TestingType", "testingTypeId", "esb-store-2")), chunkEnd, removeChunkEnd, 6);
+        result = dispatcher.runSync("storeEntitySyncDataBinary", UtilMisc.toMap("entitySyncId", ENTITY_SYNC_ID, "syncData", chunk, "userLogin", userLogin));
+        assertTrue("storeEntitySyncDataBinary remove success", ServiceUtil.isSuccess(result));
+        assertEquals("ackTxStamp after remove", removeChunkEnd, result.get("ackTxStamp"));
+        assertEquals("toRemoveDeleted", 1L, result.get("toRemoveDeleted"));
+        assertNull("Removed value", EntityQuery.use(delegator).from("TestingType").where("testingTypeId", "esb-store-2").queryOne());
+
+        delegator.removeByAnd("TestingType", UtilMisc.toMap("testingTypeId", "esb-store-1"));
+    }
+
+    /*
+     * testPushResumeAfterFailedStream: Pushes two independent entities in parallel streams through a LoopbackTransport,
+     * fails one stream on the second split, and checks lastSuccessfulSynchTime only covers the splits all streams acknowledged
+     * and that the next run resumes from there
+     */
+    public void testPushResumeAfterFailedStream() throws Exception {
+        GenericValue userLogin = getUserLogin();
+        // inside the sync window, which ends syncEndBufferMillis (5 minutes) before now
+        long base = (System.currentTimeMillis() - 10 * 60 * 1000) / 1000 * 1000;
+        Timestamp baseStamp = new Timestamp(base);
+        Timestamp firstSplitEnd = new Timestamp(base + 60000);
+        Timestamp secondSplitEnd = new Timestamp(base + 120000);
+
+        removePushTestData();
+        delegator.create("EntitySync", "entitySyncId", ENTITY_SYNC_ID, "runStatusId", "ESR_NOT_STARTED", "syncSplitMillis", 60000L,
+                "lastSuccessfulSynchTime", baseStamp, "targetServiceName", "storeEntitySyncDataBinary");
+        for (String entityName : UtilMisc.toList("TestingType", "TestingNode")) {
+            delegator.create("EntitySyncInclude", "entitySyncId", ENTITY_SYNC_ID, "entityOrPackage", entityName, "applEnumId", "ESIA_INCLUDE");
+        }
+        createWithStamps(delegator.makeValue("TestingType", "testingTypeId", "esb-push-1", "description", "Push 1"), new Timestamp(base + 1000));
+        createWithStamps(delegator.makeValue("TestingNode", "testingNodeId", "esb-push-node-1", "description", "Push node 1"), new Timestamp(base + 2000));
+        createWithStamps(delegator.makeValue("TestingType", "testingTypeId", "esb-push-2", "description", "Push 2"), new Timestamp(base + 61000));
+        createWithStamps(delegator.makeValue("TestingNode", "testingNodeId", "esb-push-node-2", "description", "Push node 2"), new Timestamp(base + 62000));
+
+        try {
+            // first run: the TestingNode stream fails on the second split, after the TestingType stream acknowledged it
+            RecordingTransport failingTransport = new RecordingTransport(firstSplitEnd, "TestingNode");
+            EntitySyncContext esc = new EntitySyncContext(dispatcher.getDispatchContext(),
+                    UtilMisc.toMap("entitySyncId", ENTITY_SYNC_ID, "userLogin", userLogin));
+            esc.runPushStartRunning();
+            EntitySyncStreams streams = new EntitySyncStreams(esc, failingTransport, 4, 6);
+            assertEquals("Independent entities get their own streams", 2, streams.getStreamCount());
+            try {
+                EntitySyncServices.runPushStreams(esc, streams);
+                fail("Push should fail on the second split");
+            } catch (SyncErrorException e) {
+                e.saveSyncErrorInfo(esc);
+            }
+            assertTrue("First split acknowledged", failingTransport.ackedChunkEnds.contains(firstSplitEnd));
+            assertTrue("Second split acknowledged by the other stream", failingTransport.ackedChunkEnds.contains(secondSplitEnd));
+            GenericValue entitySync = EntityQuery.use(delegator).from("EntitySync").where("entitySyncId", ENTITY_SYNC_ID).queryOne();
+            assertEquals("lastSuccessfulSynchTime is the last split acknowledged by all streams", firstSplitEnd,
+                    entitySync.getTimestamp("lastSuccessfulSynchTime"));
+            assertEquals("Run status after failed stream", "ESR_OTHER_ERROR", entitySync.getString("runStatusId"));
+
+            // second run: resumes from the last fully acknowledged split and re-sends the partially acknowledged one
+            RecordingTransport transport = new RecordingTransport(null, null);
+            esc = new EntitySyncContext(dispatcher.getDispatchContext(), UtilMisc.toMap("entitySyncId", ENTITY_SYNC_ID, "userLogin", userLogin));
+            assertEquals("Resumes from lastSuccessfulSynchTime", firstSplitEnd, esc.currentRunStartTime);
+            esc.runPushStartRunning();
+            EntitySyncServices.runPushStreams(esc, new EntitySyncStreams(esc, transport, 4, 6));
+            assertFalse("First split not re-sent", transport.ackedChunkEnds.contains(firstSplitEnd));
+            assertTrue("Second split re-sent", transport.ackedChunkEnds.contains(secondSplitEnd));
+            assertTrue("Rows of the failed split re-sent", transport.sentIds.containsAll(UtilMisc.toList("esb-push-2", "esb-push-node-2")));
+            assertFalse("Rows of acknowledged splits not re-sent", transport.sentIds.contains("esb-push-1") || transport.sentIds.contains("esb-push-node-1"));
+            entitySync = EntityQuery.use(delegator).from("EntitySync").where("entitySyncId", ENTITY_SYNC_ID).queryOne();
+            assertEquals("Run status after resumed run", "ESR_COMPLETE", entitySync.getString("runStatusId"));
+            assertEquals("lastSuccessfulSynchTime after resumed run", esc.syncEndStamp, entitySync.getTimestamp("lastSuccessfulSynchTime"));
+        } finally {
+            removePushTestData();
+        }
+    }
+
+    /**
+     * Decodes and records each chunk, then acknowledges it through the {@link EntitySyncStreams.LoopbackTransport};
+     * fails chunks ending after <code>failAfter</code> on the stream syncing <code>failEntityName</code>.
+     */
+    private class RecordingTransport extends EntitySyncStreams.LoopbackTransport {
+        private final Timestamp failAfter;
+        private final String failEntityName;
+        final Set<Timestamp> ackedChunkEnds = Collections.synchronizedSet(new HashSet<>());
+        final Set<Object> sentIds = Collections.synchronizedSet(new HashSet<>());
+
+        RecordingTransport(Timestamp failAfter, String failEntityName) {
+            super(delegator, null);
+            this.failAfter = failAfter;
+            this.failEntityName = failEntityName;
+        }
+
+        @Override
+        public StoreCounts sendChunk(EntitySyncContext stream, byte[] chunk, long rowCount, Timestamp chunkEndTime) throws SyncErrorException {
+            if (failAfter != null && chunkEndTime.after(failAfter) && stream.entityNameToUseSet.contains(failEntityName)) {
+                throw new SyncOtherErrorException("Test failure of the stream syncing [" + failEntityName + "] at [" + chunkEndTime + "]");
+            }
+            StoreCounts counts = super.sendChunk(stream, chunk, rowCount, chunkEndTime);
+            try {
+                for (EntitySyncBinaryCodec.Row row : readRows(chunk)) {
+                    if (row.getEntity() != null) {
+                        sentIds.add(row.getEntity().get(row.getEntity().getModelEntity().getFirstPkFieldName()));
+                    }
+                }
+            } catch (Exception e) {
+                throw new SyncOtherErrorException("Could not decode chunk", e);
+            }
+            ackedChunkEnds.add(chunkEndTime);
+            return counts;
+        }
+    }
+
+    private List<EntitySyncBinaryCodec.Row> readRows(byte[] chunk) throws Exception {
+        List<EntitySyncBinaryCodec.Row> rows = new ArrayList<>();
+        try (EntitySyncBinaryCodec.Reader reader = new EntitySyncBinaryCodec.Reader(new ByteArrayInputStream(chunk), delegator)) {
+            EntitySyncBinaryCodec.Row row;
+            while ((row = reader.next()) != null) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private GenericValue getUserLogin() throws Exception {
+        return EntityQuery.use(delegator).from("UserLogin").where("userLoginId", "system").queryOne();
+    }
+
+    private void createWithStamps(GenericValue value, Timestamp stamp) throws Exception {
+        setStamps(value, stamp);
+        value.setIsFromEntitySync(true); // keeps the given stamps
+        delegator.create(value);
+    }
+
+    private void removePushTestData() throws Exception {
+        delegator.removeByAnd("EntitySyncHistory", UtilMisc.toMap("entitySyncId", ENTITY_SYNC_ID));
+        delegator.removeByAnd("EntitySyncInclude", UtilMisc.toMap("entitySyncId", ENTITY_SYNC_ID));
+        delegator.removeByAnd("EntitySync", UtilMisc.toMap("entitySyncId", ENTITY_SYNC_ID));
+        for (String id : UtilMisc.toList("esb-push-1", "esb-push-2")) {
+            delegator.removeByAnd("TestingType", UtilMisc.toMap("testingTypeId", id));
+        }
+        for (String id : UtilMisc.toList("esb-push-node-1", "esb-push-node-2")) {
+            delegator.removeByAnd("TestingNode", UtilMisc.toMap("testingNodeId", id));
+        }
+    }
+
+    private static void setStamps(GenericValue value, Timestamp stamp) {
+        value.set(ModelEntity.CREATE_STAMP_FIELD, stamp);
+        value.set(ModelEntity.CREATE_STAMP_TX_FIELD, stamp);
+        value.set(ModelEntity.STAMP_FIELD, stamp);
+        value.set(ModelEntity.STAMP_TX_FIELD, stamp);
+    }
+
+    private static byte[] getBlobBytes(Blob blob) throws Exception {
+        return blob.getBytes(1, (int) blob.length());
+    }
+
+    private static void writeShortString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.write(bytes.length); // single-byte varint
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeRecord(DataOutputStream out, int recordType, ByteArrayOutputStream payload) throws IOException {
+        out.writeByte(recordType);
+        out.writeByte(payload.size()); // single-byte varint
+        payload.writeTo(out);
+    }
+}
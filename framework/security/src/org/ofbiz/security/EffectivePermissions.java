@@ -0,0 +1,229 @@
+package org.ofbiz.security;
+
+import java.sql.Timestamp;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilProperties;
+import org.ofbiz.base.util.cache.UtilCache;
+import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.GenericEntityException;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.transaction.GenericTransactionException;
+import org.ofbiz.entity.transaction.TransactionUtil;
+import org.ofbiz.entity.util.EntityQuery;
+
+/**
+ * Per-delegator cache of the effective permission set of each user login, so that permission checks are a bit test
+ * instead of a <code>UserLoginSecurityGroup</code> lookup plus one <code>SecurityGroupPermission</code> lookup per group
+ * (and per <code>_ADMIN</code> variant) on every call.
+ *
+ * <p>Permission IDs are interned to bit indexes shared by all delegators. A {@link Snapshot} holds the bits of the
+ * permissions of the groups the user is a member of at the time it was built, and expires at the next
+ * <code>fromDate</code>/<code>thruDate</code> of the user's group memberships, when the set changes by itself.
+ * Snapshots are invalidated by {@link #clearUser(String)} (<code>Security.clearUserData</code> and
+ * <code>UserLoginSecurityGroup</code> writes) and {@link #clearAll()} (<code>SecurityGroupPermission</code> writes),
+ * which the entity ECAs of the common component run after commit. Changes that bypass the entity ECAs (stores with
+ * ECAs disabled, direct SQL) only become visible when the snapshot expires from the cache (expireTime).</p>
+ *
+ * <p>Enabled by <code>security.effectivePermissions.enabled</code> in security.properties; the cache is sized and
+ * expired by <code>security.EffectivePermissions</code> in cache.properties.</p>
+ *
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public final class EffectivePermissions {
+
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    private static final boolean enabled = UtilProperties.getPropertyAsBoolean("security", "security.effectivePermissions.enabled", true);
+
+    private static final Map<String, EffectivePermissions> instances = new ConcurrentHashMap<>();
+
+    private static final Map<String, Integer> permissionIndexes = new ConcurrentHashMap<>();
+    private static final AtomicInteger nextPermissionIndex = new AtomicInteger();
+
+    private final Delegator delegator;
+    private final UtilCache<String, Snapshot> snapshots;
+    /** Incremented before every invalidation; snapshots built across an invalidation are used once but not cached. */
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    private EffectivePermissions(Delegator delegator) {
+        this.delegator = delegator;
+        String cacheName = "security.EffectivePermissions." + delegator.getDelegatorName();
+        this.snapshots = UtilCache.getOrCreateUtilCache(cacheName, 0, 0, 0, false, "security.EffectivePermissions", cacheName);
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Returns the effective permissions of the given delegator, or null if disabled. */
+    public static EffectivePermissions getInstance(Delegator delegator) {
+        if (!enabled) {
+            return null;
+        }
+        EffectivePermissions instance = instances.get(delegator.getDelegatorName());
+        if (instance == null) {
+            instance = instances.computeIfAbsent(delegator.getDelegatorName(), name -> new EffectivePermissions(delegator));
+        }
+        return instance;
+    }
+
+    /**
+     * Invalidates the snapshot of the given user login, or all snapshots of the delegator if userLoginId is null, once
+     * the current transaction commits (immediately if there is none).
+     */
+    public static void clearAfterCommit(Delegator delegator, String userLoginId) {
+        EffectivePermissions instance = enabled ? instances.get(delegator.getDelegatorName()) : null;
+        if (instance == null) {
+            return;
+        }
+        try {
+            if (TransactionUtil.isTransactionInPlace()) {
+                TransactionUtil.registerSynchronization(new Synchronization() {
+                    @Override
+                    public void beforeCompletion() {
+                    }
+                    @Override
+                    public void afterCompletion(int status) {
+                        if (status == Status.STATUS_COMMITTED) {
+                            instance.clear(userLoginId);
+                        }
+                    }
+                });
+                return;
+            }
+        } catch (GenericTransactionException e) {
+            Debug.logWarning("Could not register effective permission invalidation for transaction commit; invalidating now: " + e.toString(), module);
+        }
+        instance.clear(userLoginId);
+    }
+
+    public void clear(String userLoginId) {
+        if (userLoginId != null) {
+            clearUser(userLoginId);
+        } else {
+            clearAll();
+        }
+    }
+
+    public void clearUser(String userLoginId) {
+        invalidationCount.incrementAndGet();
+        snapshots.remove(userLoginId);
+    }
+
+    public void clearAll() {
+        invalidationCount.incrementAndGet();
+        snapshots.clear();
+    }
+
+    public boolean hasPermission(String userLoginId, String permission) {
+        return getSnapshot(userLoginId).hasPermission(permission);
+    }
+
+    /** Returns true if the user has the entity permission (entity + action) or its <code>_ADMIN</code> variant. */
+    public boolean hasEntityPermission(String userLoginId, String entity, String action) {
+        Snapshot snapshot = getSnapshot(userLoginId);
+        return snapshot.hasPermission(entity.concat(action)) || snapshot.hasPermission(entity.concat("_ADMIN"));
+    }
+
+    public Snapshot getSnapshot(String userLoginId) {
+        if (userLoginId == null) {
+            return Snapshot.EMPTY;
+        }
+        Snapshot snapshot = snapshots.get(userLoginId);
+        if (snapshot != null && System.currentTimeMillis() < snapshot.getExpiresAt()) {
+            return snapshot;
+        }
+        long invalidationCount = this.invalidationCount.get();
+        snapshot = buildSnapshot(userLoginId);
+        // NOTE: Not cached if an invalidation ran while it was being read, since it may predate the change
+        if (snapshot != null && this.invalidationCount.get() == invalidationCount) {
+            snapshots.put(userLoginId, snapshot);
+        }
+        return (snapshot != null) ? snapshot : Snapshot.EMPTY;
+    }
+
+    /** Reads the user's permissions, or returns null if they could not be read (not cached). */
+    private Snapshot buildSnapshot(String userLoginId) {
+        long now = System.currentTimeMillis();
+        long expiresAt = Long.MAX_VALUE;
+        BitSet bits = new BitSet();
+        try {
+            List<GenericValue> userLoginSecurityGroups = EntityQuery.use(delegator).from("UserLoginSecurityGroup")
+                    .where("userLoginId", userLoginId).cache(true).queryList();
+            for (GenericValue userLoginSecurityGroup : userLoginSecurityGroups) {
+                Timestamp fromDate = userLoginSecurityGroup.getTimestamp("fromDate");
+                Timestamp thruDate = userLoginSecurityGroup.getTimestamp("thruDate");
+                if (fromDate != null && fromDate.getTime() > now) {
+                    expiresAt = Math.min(expiresAt, fromDate.getTime());
+                    continue;
+                }
+                if (thruDate != null) {
+                    if (thruDate.getTime() <= now) {
+                        continue;
+                    }
+                    expiresAt = Math.min(expiresAt, thruDate.getTime());
+                }
+                List<GenericValue> groupPermissions = EntityQuery.use(delegator).from("SecurityGroupPermission")
+                        .where("groupId", userLoginSecurityGroup.getString("groupId")).cache(true).queryList();
+                for (GenericValue groupPermission : groupPermissions) {
+                    bits.set(internPermission(groupPermission.getString("permissionId")));
+                }
+            }
+        } catch (GenericEntityException e) {
+            Debug.logWarning(e, "Could not read permissions of user login [" + userLoginId + "]", module);
+            return null;
+        }
+        return new Snapshot(bits.toLongArray(), expiresAt);
+    }
+
+    static int internPermission(String permissionId) {
+        Integer index = permissionIndexes.get(permissionId);
+        if (index == null) {
+            index = permissionIndexes.computeIfAbsent(permissionId, id -> nextPermissionIndex.getAndIncrement());
+        }
+        return index;
+    }
+
+    /** Returns the bit index of the permission, or -1 if no group has ever been read with it. */
+    static int getPermissionIndex(String permissionId) {
+        Integer index = permissionIndexes.get(permissionId);
+        return (index != null) ? index : -1;
+    }
+
+    /** Immutable effective permission set of a user login. */
+    public static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new long[0], Long.MAX_VALUE);
+
+        private final long[] bits;
+        private final long expiresAt;
+
+        Snapshot(long[] bits, long expiresAt) {
+            this.bits = bits;
+            this.expiresAt = expiresAt;
+        }
+
+        public boolean hasPermission(String permissionId) {
+            int index = (permissionId != null) ? getPermissionIndex(permissionId) : -1;
+            if (index < 0) {
+                return false;
+            }
+            int word = index >>> 6;
+            return word < bits.length && (bits[word] & (1L << index)) != 0;
+        }
+
+        /** Returns the time in millis at which a group membership of the user starts or ends, or Long.MAX_VALUE. */
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+    }
+}
@@ -87,6 +87,7 @@ public final class SecurityFactory {
     private static final class OFBizSecurity implements Security {
 
         private Delegator delegator = null;
+        private EffectivePermissions effectivePermissions = null; // SCIPIO: 3.0.0: Permission set snapshots (null if disabled)
 
         private static final Map<String, Map<String, String>> simpleRoleEntity = UtilMisc.toMap(
             "ORDERMGR", UtilMisc.<String, String>toMap("name", "OrderRole", "pkey", "orderId"),
@@ -99,6 +100,9 @@ public final class SecurityFactory {
         public void clearUserData(GenericValue userLogin) {
             if (userLogin != null) {
                 delegator.getCache().remove("UserLoginSecurityGroup", EntityCondition.makeCondition("userLoginId", EntityOperator.EQUALS, userLogin.getString("userLoginId")));
+                if (effectivePermissions != null && userLogin.getString("userLoginId") != null) { // SCIPIO: 3.0.0
+                    effectivePermissions.clearUser(userLogin.getString("userLoginId"));
+                }
             }
         }
 
@@ -121,6 +125,9 @@ public final class SecurityFactory {
         @Override
         public boolean hasEntityPermission(String entity, String action, GenericValue userLogin) {
             if (userLogin == null || entity == null || action == null) return false;
+            if (effectivePermissions != null) { // SCIPIO: 3.0.0: Bit test on the user's permission snapshot
+                return effectivePermissions.hasEntityPermission(userLogin.getString("userLoginId"), entity, action);
+            }
             String permission = entity.concat(action);
             String adminPermission = entity.concat("_ADMIN");
             Iterator<GenericValue> iterator = findUserLoginSecurityGroupByUserLoginId(userLogin.getString("userLoginId"));
@@ -161,6 +168,9 @@ public final class SecurityFactory {
             if (userLogin == null) {
                 return false;
             }
+            if (effectivePermissions != null) { // SCIPIO: 3.0.0: Bit test on the user's permission snapshot
+                return permission != null && effectivePermissions.hasPermission(userLogin.getString("userLoginId"), permission);
+            }
             Iterator<GenericValue> iterator = findUserLoginSecurityGroupByUserLoginId(userLogin.getString("userLoginId"));
             GenericValue userLoginSecurityGroup = null;
             while (iterator.hasNext()) {
@@ -323,6 +333,7 @@ public final class SecurityFactory {
             }
             Assert.notNull("delegator", delegator);
             this.delegator = delegator;
+            this.effectivePermissions = EffectivePermissions.getInstance(delegator); // SCIPIO: 3.0.0
         }
 
         protected GenericValue getUserLoginForRequest(HttpServletRequest request) { // SCIPIO
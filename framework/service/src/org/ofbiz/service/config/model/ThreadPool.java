@@ -47,9 +47,15 @@ public final class ThreadPool {
     public static final int PURGE_JOBS_DAYS = 30;
     public static final int QUEUE_SIZE = 100;
     public static final int THREAD_TTL = 120000; // Idle thread lifespan - 2 minutes.
+    /** SCIPIO: Job claim modes (job-claim attribute). */
+    public static final String JOB_CLAIM_ROW = "row";
+    public static final String JOB_CLAIM_BATCH = "batch";
+    public static final String JOB_CLAIM_SKIP_LOCKED = "skip-locked";
+    public static final String JOB_CLAIM = JOB_CLAIM_ROW;
 
     private final int failedRetryMin;
     private final int jobs;
+    private final String jobClaim; // SCIPIO
     private final int maxThreads;
     private final int minThreads;
     private final int pollDbMillis;
@@ -164,6 +170,14 @@ public final class ThreadPool {
                 throw new ServiceConfigException("<thread-pool> element poll-db-millis attribute value is invalid");
             }
         }
+        String jobClaim = poolElement.getAttribute("job-claim").intern(); // SCIPIO
+        if (jobClaim.isEmpty()) {
+            this.jobClaim = JOB_CLAIM;
+        } else if (JOB_CLAIM_ROW.equals(jobClaim) || JOB_CLAIM_BATCH.equals(jobClaim) || JOB_CLAIM_SKIP_LOCKED.equals(jobClaim)) {
+            this.jobClaim = jobClaim;
+        } else {
+            throw new ServiceConfigException("<thread-pool> element job-claim attribute value is invalid");
+        }
         List<? extends Element> runFromPoolElementList = UtilXml.childElementList(poolElement, "run-from-pool");
         if (runFromPoolElementList.isEmpty()) {
             this.runFromPools = Collections.emptyList();
@@ -189,6 +203,14 @@ public final class ThreadPool {
         return jobs;
     }
 
+    /**
+     * SCIPIO: Returns the job claim mode: "row", "batch" or "skip-locked" (see service-config.xsd).
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public String getJobClaim() {
+        return jobClaim;
+    }
+
     public int getMaxThreads() {
         return maxThreads;
     }
@@ -228,6 +250,7 @@ public final class ThreadPool {
     public Map<String, Object> toMap(Map<String, Object> map) { // SCIPIO
         map.put("failedRetryMin", failedRetryMin);
         map.put("jobs", jobs);
+        map.put("jobClaim", jobClaim);
         map.put("maxThreads", maxThreads);
         map.put("minThreads", minThreads);
         map.put("pollDbMillis", pollDbMillis);
@@ -30,7 +30,6 @@ import org.ofbiz.base.util.UtilMisc;
 import org.ofbiz.base.util.UtilValidate;
 import org.ofbiz.entity.GenericEntityException;
 import org.ofbiz.entity.GenericValue;
-import org.ofbiz.entity.serialize.XmlSerializer;
 import org.ofbiz.service.AsyncOptions;
 import org.ofbiz.service.MemoryAsyncOptions;
 import org.ofbiz.service.DispatchContext;
@@ -48,6 +47,7 @@ import org.ofbiz.service.job.JobManager;
 import org.ofbiz.service.job.JobManagerException;
 import org.ofbiz.service.job.JobPriority;
 import org.ofbiz.service.job.PersistedServiceJob;
+import org.ofbiz.service.job.RuntimeDataSerializer;
 
 /**
  * Generic Asynchronous Engine.
@@ -106,7 +106,9 @@ public abstract class GenericAsyncEngine extends AbstractEngine {
                 // SCIPIO: 2019-03-08: Do not throw exceptions needlessly; instead, simply skip any non-serializable values.
                 //runtimeData.set("runtimeInfo", XmlSerializer.serialize(context));
                 List<String> errorMessageList = new ArrayList<>();
-                runtimeData.set("runtimeInfo", XmlSerializer.serializeOrNull(context, errorMessageList));
+                // SCIPIO: 3.0.0: Format (XML or compact binary) selected per service
+                //runtimeData.set("runtimeInfo", XmlSerializer.serializeOrNull(context, errorMessageList));
+                runtimeData.set("runtimeInfo", RuntimeDataSerializer.serializeOrNull(modelService.name, context, errorMessageList));
                 runtimeData.create();
 
                 // Get the userLoginId out of the context
@@ -18,12 +18,18 @@
  *******************************************************************************/
 package org.ofbiz.service.job;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.RejectedExecutionException;
 
@@ -40,10 +46,17 @@ import org.ofbiz.entity.Delegator;
 import org.ofbiz.entity.GenericEntityException;
 import org.ofbiz.entity.GenericValue;
 import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityConditionParam;
+import org.ofbiz.entity.config.model.Datasource;
+import org.ofbiz.entity.config.model.EntityConfig;
+import org.ofbiz.entity.datasource.GenericHelperInfo;
+import org.ofbiz.entity.jdbc.SQLProcessor;
+import org.ofbiz.entity.jdbc.SqlJdbcUtil;
+import org.ofbiz.entity.model.ModelFieldTypeReader;
+import org.ofbiz.entity.model.ModelEntity;
 import org.ofbiz.entity.condition.EntityExpr;
 import org.ofbiz.entity.condition.EntityJoinOperator;
 import org.ofbiz.entity.condition.EntityOperator;
-import org.ofbiz.entity.serialize.XmlSerializer;
 import org.ofbiz.entity.transaction.TransactionUtil;
 import org.ofbiz.entity.util.EntityFilter;
 import org.ofbiz.entity.util.EntityListIterator;
@@ -87,6 +100,10 @@ public final class JobManager {
     private static final boolean debugPollLogIntervalVerbose = UtilProperties.getPropertyAsBoolean("service", "jobManager.debug.poll.logInterval.verbose", false);
     private static volatile long debugPollLogLastTimestamp = 0;
     private static final List<String> jobPollMainCondOrderBy = UtilMisc.unmodifiableArrayList("priority DESC NULLS LAST", "runTime"); // SCIPIO: refactored
+    /** SCIPIO: Max jobs claimed per statement in batch job claim modes (also keeps IN lists under the Oracle limit). */
+    private static final int jobClaimChunkSize = UtilProperties.getPropertyAsInteger("service", "jobManager.claim.chunkSize", 500);
+    /** SCIPIO: Datasource field-type-names whose databases support SELECT ... FOR UPDATE SKIP LOCKED. */
+    private static final Set<String> skipLockedFieldTypeNames = UtilMisc.unmodifiableHashSet("postgres", "postnew", "mysql", "mariadb", "oracle");
 
     private static void assertIsRunning() {
         if (isShutDown) {
@@ -125,6 +142,7 @@ public final class JobManager {
 
     private final Delegator delegator;
     private boolean crashedJobsReloaded = false;
+    private volatile Boolean skipLockedSupported = null; // SCIPIO
 
     /**
      * SCIPIO: Determines if run-at-start jobs have been queued or not.
@@ -317,12 +335,16 @@ public final class JobManager {
                 return poll;
             }
 
-            try (EntityListIterator jobsIterator = EntityQuery.use(delegator)
-                    .from("JobSandbox").where(mainCondition)
-                    .orderBy(jobPollMainCondOrderBy)
-                    .maxRows(limit).queryIterator()) { // SCIPIO: maxRows
-                // SCIPIO: factored out into method
-                jobsResult.add(ownAndCollectJobs(dctx, delegator, limit, jobsIterator, poll, null));
+            if (isSkipLockedClaim(delegator)) { // SCIPIO: 3.0.0: Lock and claim in the poll query itself
+                pollAndClaimJobsSkipLocked(dctx, delegator, mainCondition, limit, poll);
+            } else {
+                try (EntityListIterator jobsIterator = EntityQuery.use(delegator)
+                        .from("JobSandbox").where(mainCondition)
+                        .orderBy(jobPollMainCondOrderBy)
+                        .maxRows(limit).queryIterator()) { // SCIPIO: maxRows
+                    // SCIPIO: factored out into method
+                    jobsResult.add(ownAndCollectJobs(dctx, delegator, limit, jobsIterator, poll, null));
+                }
             }
             //} catch (GenericEntityException e) { // SCIPIO: 2018-08-29: this catch is counter-productive
             //    Debug.logWarning(e, module);
@@ -404,9 +426,36 @@ public final class JobManager {
      * SCIPIO: Takes ownership of job and adds to list.
      * <p>
      * Factored out from {@link #poll}.
+     * <p>
+     * SCIPIO: 3.0.0: Dispatches to the job claim mode of the thread-pool config (job-claim attribute); job-claim="skip-locked"
+     * uses batch claims here, since the main poll claims its jobs in {@link #pollAndClaimJobsSkipLocked} instead.
      */
     protected CollectJobsResult ownAndCollectJobs(DispatchContext dctx, Delegator delegator, int limit,
             EntityListIterator jobsIterator, List<Job> poll, EntityFilter ignoreFilter) throws GenericEntityException {
+        if (ThreadPool.JOB_CLAIM_ROW.equals(getJobClaim())) {
+            return ownAndCollectJobsByRow(dctx, delegator, limit, jobsIterator, poll, ignoreFilter);
+        }
+        return ownAndCollectJobsByBatch(dctx, delegator, limit, jobsIterator, poll, ignoreFilter);
+    }
+
+    private String getJobClaim() {
+        try {
+            return getThreadPoolConfig().getJobClaim();
+        } catch (GenericConfigException e) {
+            Debug.logError(e, "Unable to get job claim mode; using row claims", module);
+            return ThreadPool.JOB_CLAIM_ROW;
+        }
+    }
+
+    private boolean isSkipLockedClaim(Delegator delegator) {
+        return ThreadPool.JOB_CLAIM_SKIP_LOCKED.equals(getJobClaim()) && isSkipLockedSupported(delegator);
+    }
+
+    /**
+     * SCIPIO: Takes ownership of each job with its own conditional update (job-claim="row").
+     */
+    protected CollectJobsResult ownAndCollectJobsByRow(DispatchContext dctx, Delegator delegator, int limit,
+            EntityListIterator jobsIterator, List<Job> poll, EntityFilter ignoreFilter) throws GenericEntityException {
         CollectJobsResult result = new CollectJobsResult();
         if (limit < 0 || poll.size() < limit) {
             GenericValue jobValue = jobsIterator.next();
@@ -414,6 +463,7 @@ public final class JobManager {
                 // SCIPIO: filter
                 if (ignoreFilter != null && ignoreFilter.matches(jobValue)) {
                     result.ignored++;
+                    jobValue = jobsIterator.next(); // SCIPIO: 3.0.0: Fixed missing advance
                     continue;
                 }
                 // Claim ownership of this value. Using storeByCondition to avoid a race condition.
@@ -431,6 +481,161 @@ public final class JobManager {
         return result;
     }
 
+    /**
+     * SCIPIO: Takes ownership of the polled jobs in chunks, with one update statement per chunk
+     * (job-claim="batch", and the startup jobs for "skip-locked").
+     * <p>
+     * The update is conditional on <code>runByInstanceId IS NULL</code> and the jobs owned by this instance are read back
+     * when some were claimed by another instance in between. Jobs are added to the poll list in poll order.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    protected CollectJobsResult ownAndCollectJobsByBatch(DispatchContext dctx, Delegator delegator, int limit,
+            EntityListIterator jobsIterator, List<Job> poll, EntityFilter ignoreFilter) throws GenericEntityException {
+        CollectJobsResult result = new CollectJobsResult();
+        if (limit >= 0 && poll.size() >= limit) {
+            return result;
+        }
+        Map<String, GenericValue> candidates = new LinkedHashMap<>();
+        GenericValue jobValue = jobsIterator.next();
+        while (jobValue != null) {
+            if (ignoreFilter != null && ignoreFilter.matches(jobValue)) {
+                result.ignored++;
+            } else {
+                candidates.put(jobValue.getString("jobId"), jobValue);
+                if (candidates.size() >= jobClaimChunkSize || (limit >= 0 && poll.size() + candidates.size() >= limit)) {
+                    claimJobs(dctx, delegator, candidates, poll);
+                    candidates.clear();
+                    if (limit >= 0 && poll.size() >= limit) {
+                        return result;
+                    }
+                }
+            }
+            jobValue = jobsIterator.next();
+        }
+        if (!candidates.isEmpty()) {
+            claimJobs(dctx, delegator, candidates, poll);
+        }
+        return result;
+    }
+
+    private void claimJobs(DispatchContext dctx, Delegator delegator, Map<String, GenericValue> candidates, List<Job> poll) throws GenericEntityException {
+        Collection<String> jobIds = candidates.keySet();
+        int rowsUpdated = delegator.storeByCondition("JobSandbox", UtilMisc.toMap("runByInstanceId", instanceId), EntityCondition.makeCondition(
+                EntityCondition.makeCondition("jobId", EntityOperator.IN, jobIds),
+                EntityCondition.makeCondition("runByInstanceId", EntityOperator.EQUALS, null)));
+        Set<String> ownedJobIds;
+        if (rowsUpdated == jobIds.size()) {
+            ownedJobIds = new HashSet<>(jobIds);
+        } else {
+            // Another instance claimed some of the jobs in between; read back ours
+            ownedJobIds = new HashSet<>();
+            if (rowsUpdated > 0) {
+                List<GenericValue> ownedJobs = EntityQuery.use(delegator).select("jobId").from("JobSandbox").where(
+                        EntityCondition.makeCondition("jobId", EntityOperator.IN, jobIds),
+                        EntityCondition.makeCondition("runByInstanceId", instanceId)).queryList();
+                for (GenericValue ownedJob : ownedJobs) {
+                    ownedJobIds.add(ownedJob.getString("jobId"));
+                }
+            }
+        }
+        if (isDebug()) {
+            Debug.logInfo("Claimed " + ownedJobIds.size() + " of " + candidates.size() + " polled jobs", module);
+        }
+        for (Map.Entry<String, GenericValue> entry : candidates.entrySet()) {
+            if (ownedJobIds.contains(entry.getKey())) {
+                poll.add(new PersistedServiceJob(dctx, entry.getValue(), null));
+            }
+        }
+    }
+
+    /**
+     * SCIPIO: Polls and takes ownership of the due jobs in one step (job-claim="skip-locked"): the poll query itself,
+     * <code>SELECT ... WHERE [poll condition] ORDER BY [poll order] LIMIT [limit] FOR UPDATE SKIP LOCKED</code>, locks up to
+     * limit unowned due jobs, skipping the rows already locked by the polls of other servers, so that concurrent pollers
+     * each get their own next jobs instead of all competing for the same first ones; exactly the locked jobs are then
+     * updated to this instance. The locks are held until the poll transaction ends.
+     * <p>
+     * NOTE: Oracle does not allow a row limit clause with FOR UPDATE, so there the limit is applied as JDBC max rows;
+     * Oracle only locks SKIP LOCKED rows as they are fetched.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    protected void pollAndClaimJobsSkipLocked(DispatchContext dctx, Delegator delegator, EntityCondition pollCondition, int limit,
+            List<Job> poll) throws GenericEntityException {
+        List<String> jobIds = lockPolledJobs(delegator, pollCondition, limit);
+        if (jobIds.isEmpty()) {
+            return;
+        }
+        int rowsUpdated = delegator.storeByCondition("JobSandbox", UtilMisc.toMap("runByInstanceId", instanceId),
+                EntityCondition.makeCondition("jobId", EntityOperator.IN, jobIds));
+        if (rowsUpdated != jobIds.size()) {
+            Debug.logWarning("Claimed " + rowsUpdated + " jobs but locked " + jobIds.size() + "; job execution will verify ownership", module);
+        }
+        List<GenericValue> jobValues = EntityQuery.use(delegator).from("JobSandbox")
+                .where(EntityCondition.makeCondition("jobId", EntityOperator.IN, jobIds))
+                .orderBy(jobPollMainCondOrderBy).queryList();
+        for (GenericValue jobValue : jobValues) {
+            poll.add(new PersistedServiceJob(dctx, jobValue, null));
+        }
+        if (isDebug()) {
+            Debug.logInfo("Locked and claimed " + jobValues.size() + " polled jobs", module);
+        }
+    }
+
+    /**
+     * SCIPIO: Runs the poll query with <code>FOR UPDATE SKIP LOCKED</code> and returns the IDs of the locked jobs, in poll order.
+     */
+    private List<String> lockPolledJobs(Delegator delegator, EntityCondition pollCondition, int limit) throws GenericEntityException {
+        GenericHelperInfo helperInfo = delegator.getGroupHelperInfo(delegator.getEntityGroupName("JobSandbox"));
+        Datasource datasource = EntityConfig.getDatasource(helperInfo.getHelperBaseName());
+        ModelFieldTypeReader modelFieldTypeReader = ModelFieldTypeReader.getModelFieldTypeReader(helperInfo.getHelperBaseName());
+        ModelEntity modelEntity = delegator.getModelEntity("JobSandbox");
+        List<EntityConditionParam> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT ");
+        sql.append(modelEntity.getField("jobId").getColName()).append(" FROM ").append(modelEntity.getTableName(datasource));
+        sql.append(" WHERE ").append(pollCondition.makeWhereString(modelEntity, params, datasource));
+        sql.append(SqlJdbcUtil.makeOrderByClause(modelEntity, jobPollMainCondOrderBy, datasource));
+        boolean limitClause = (limit >= 0) && !"oracle".equals(datasource.getFieldTypeName());
+        if (limitClause) {
+            sql.append(" LIMIT ").append(limit);
+        }
+        sql.append(" FOR UPDATE SKIP LOCKED");
+        List<String> lockedJobIds = new ArrayList<>();
+        try (SQLProcessor sqlP = new SQLProcessor(delegator, helperInfo)) {
+            sqlP.prepareStatement(sql.toString(), false, 0, 0, -1, (limit >= 0 && !limitClause) ? limit : -1);
+            for (EntityConditionParam param : params) {
+                SqlJdbcUtil.setValue(sqlP, param.getModelField(), modelEntity.getEntityName(), param.getFieldValue(),
+                        modelFieldTypeReader, delegator, modelEntity);
+            }
+            try (ResultSet rs = sqlP.executeQuery()) {
+                while (rs.next()) {
+                    lockedJobIds.add(rs.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            throw new GenericEntityException("Unable to lock JobSandbox jobs for claim: " + e.getMessage(), e);
+        }
+        return lockedJobIds;
+    }
+
+    /**
+     * SCIPIO: Returns true if the JobSandbox datasource supports <code>FOR UPDATE SKIP LOCKED</code>, based on its field-type-name;
+     * logs a warning once otherwise.
+     */
+    private boolean isSkipLockedSupported(Delegator delegator) {
+        Boolean supported = skipLockedSupported;
+        if (supported == null) {
+            GenericHelperInfo helperInfo = delegator.getGroupHelperInfo(delegator.getEntityGroupName("JobSandbox"));
+            Datasource datasource = EntityConfig.getDatasource(helperInfo.getHelperBaseName());
+            supported = (datasource != null) && skipLockedFieldTypeNames.contains(datasource.getFieldTypeName());
+            if (!supported) {
+                Debug.logWarning("thread-pool job-claim=\"skip-locked\" is not supported for datasource ["
+                        + helperInfo.getHelperBaseName() + "]; using job-claim=\"batch\"", module);
+            }
+            skipLockedSupported = supported;
+        }
+        return supported;
+    }
+
     private static class CollectJobsResult {
         int ignored = 0;
         public int getIgnored() { return ignored; }
@@ -649,7 +854,9 @@ public final class JobManager {
             // SCIPIO: 2019-03-08: Do not throw exceptions needlessly; instead, simply skip any non-serializable values.
             //runtimeData.set("runtimeInfo", XmlSerializer.serialize(context));
             List<String> errorMessageList = new ArrayList<>();
-            runtimeData.set("runtimeInfo", XmlSerializer.serializeOrNull(context, errorMessageList));
+            // SCIPIO: 3.0.0: Format (XML or compact binary) selected per service
+            //runtimeData.set("runtimeInfo", XmlSerializer.serializeOrNull(context, errorMessageList));
+            runtimeData.set("runtimeInfo", RuntimeDataSerializer.serializeOrNull(serviceName, context, errorMessageList));
             runtimeData = delegator.createSetNextSeqId(runtimeData);
             dataId = runtimeData.getString("runtimeDataId");
             if (errorMessageList.size() > 0) {
@@ -18,25 +18,20 @@
  *******************************************************************************/
 package org.ofbiz.service.job;
 
-import java.io.IOException;
 import java.sql.Timestamp;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
-import javax.xml.parsers.ParserConfigurationException;
-
 import org.apache.commons.lang3.StringUtils;
 import org.ofbiz.base.config.GenericConfigException;
 import org.ofbiz.base.util.Debug;
 import org.ofbiz.base.util.UtilDateTime;
-import org.ofbiz.base.util.UtilGenerics;
 import org.ofbiz.base.util.UtilValidate;
 import org.ofbiz.entity.Delegator;
 import org.ofbiz.entity.GenericEntityException;
 import org.ofbiz.entity.GenericValue;
 import org.ofbiz.entity.serialize.SerializeException;
-import org.ofbiz.entity.serialize.XmlSerializer;
 import org.ofbiz.entity.util.EntityQuery;
 import org.ofbiz.service.DispatchContext;
 import org.ofbiz.service.GenericRequester;
@@ -49,7 +44,6 @@ import org.ofbiz.service.calendar.RecurrenceInfoException;
 import org.ofbiz.service.calendar.TemporalExpression;
 import org.ofbiz.service.calendar.TemporalExpressionWorker;
 import org.ofbiz.service.config.ServiceConfigUtil;
-import org.xml.sax.SAXException;
 
 import com.ibm.icu.util.Calendar;
 
@@ -372,7 +366,9 @@ public class PersistedServiceJob extends GenericServiceJob {
             if (UtilValidate.isNotEmpty(jobValue.getString("runtimeDataId"))) {
                 GenericValue contextObj = jobValue.getRelatedOne("RuntimeData", false);
                 if (contextObj != null) {
-                    context = UtilGenerics.checkMap(XmlSerializer.deserialize(contextObj.getString("runtimeInfo"), delegator), String.class, Object.class);
+                    // SCIPIO: 3.0.0: Reads both XML and compact binary rows
+                    //context = UtilGenerics.checkMap(XmlSerializer.deserialize(contextObj.getString("runtimeInfo"), delegator), String.class, Object.class);
+                    context = RuntimeDataSerializer.deserialize(contextObj.getString("runtimeInfo"), delegator);
                 }
             }
             if (context == null) {
@@ -400,12 +396,6 @@ public class PersistedServiceJob extends GenericServiceJob {
             Debug.logError(e, "PersistedServiceJob.getContext(): Entity Exception", module);
         } catch (SerializeException e) {
             Debug.logError(e, "PersistedServiceJob.getContext(): Serialize Exception", module);
-        } catch (ParserConfigurationException e) {
-            Debug.logError(e, "PersistedServiceJob.getContext(): Parse Exception", module);
-        } catch (SAXException e) {
-            Debug.logError(e, "PersistedServiceJob.getContext(): SAXException", module);
-        } catch (IOException e) {
-            Debug.logError(e, "PersistedServiceJob.getContext(): IOException", module);
         }
         if (context == null) {
             Debug.logError("Job context is null", module);
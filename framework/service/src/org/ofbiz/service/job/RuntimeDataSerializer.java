@@ -0,0 +1,74 @@
+package org.ofbiz.service.job;
+
+import java.util.List;
+import java.util.Map;
+
+import org.ofbiz.base.util.UtilGenerics;
+import org.ofbiz.base.util.UtilProperties;
+import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.serialize.BinarySerializer;
+import org.ofbiz.entity.serialize.SerializeException;
+import org.ofbiz.entity.serialize.XmlSerializer;
+
+/**
+ * Serializes the contexts of persisted jobs to and from <code>RuntimeData.runtimeInfo</code>, in either the legacy
+ * {@link XmlSerializer} format or the compact {@link BinarySerializer} format.
+ *
+ * <p>The format written is selected per service by <code>runtimeData.serializer.service.[serviceName]</code>, otherwise
+ * globally by <code>runtimeData.serializer</code> (<code>xml</code> or <code>binary</code>) in service.properties.
+ * Reads detect the format of each row, so existing XML rows (and seed data) keep working after switching.</p>
+ *
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public final class RuntimeDataSerializer {
+
+    public enum Format {
+        XML,
+        BINARY;
+
+        public static Format fromName(String name, Format defaultFormat) {
+            if ("binary".equalsIgnoreCase(name)) {
+                return BINARY;
+            } else if ("xml".equalsIgnoreCase(name)) {
+                return XML;
+            }
+            return defaultFormat;
+        }
+    }
+
+    private static final Format defaultFormat = Format.fromName(UtilProperties.getPropertyValue("service", "runtimeData.serializer"), Format.XML);
+
+    private RuntimeDataSerializer() {
+    }
+
+    public static Format getDefaultFormat() {
+        return defaultFormat;
+    }
+
+    /** Returns the format to write the context of the given service in. */
+    public static Format getFormat(String serviceName) {
+        if (serviceName != null) {
+            String name = UtilProperties.getPropertyValue("service", "runtimeData.serializer.service." + serviceName);
+            if (!name.isEmpty()) {
+                return Format.fromName(name, defaultFormat);
+            }
+        }
+        return defaultFormat;
+    }
+
+    /**
+     * Serializes the context of the given service, skipping non-serializable values (see
+     * {@link XmlSerializer#serializeOrNull(Object, List)}); returns null if the context could not be written at all.
+     */
+    public static String serializeOrNull(String serviceName, Map<String, ?> context, List<? super String> errorMessageList) {
+        if (getFormat(serviceName) == Format.BINARY) {
+            return BinarySerializer.serializeOrNull(context, errorMessageList);
+        }
+        return XmlSerializer.serializeOrNull(context, errorMessageList);
+    }
+
+    /** Deserializes a context written in either format. */
+    public static Map<String, Object> deserialize(String runtimeInfo, Delegator delegator) throws SerializeException {
+        return UtilGenerics.checkMap(BinarySerializer.deserializeAny(runtimeInfo, delegator), String.class, Object.class);
+    }
+}
@@ -0,0 +1,73 @@
+package org.ofbiz.service.test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.serialize.BinarySerializer;
+import org.ofbiz.entity.util.EntityQuery;
+import org.ofbiz.service.job.RuntimeDataSerializer;
+import org.ofbiz.service.testtools.OFBizTestCase;
+
+/**
+ * Tests that {@link RuntimeDataSerializer} reads <code>RuntimeData.runtimeInfo</code> rows in both the legacy XML and
+ * the binary format.
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public class RuntimeDataSerializerTests extends OFBizTestCase {
+
+    /** A job context as written by XmlSerializer in existing rows and seed data (see EntityScheduledServices.xml). */
+    private static final String XML_RUNTIME_INFO = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<ofbiz-ser>\n"
+            + "  <map-HashMap>\n"
+            + "    <map-Entry>\n"
+            + "      <map-Key>\n"
+            + "        <std-String value=\"entitySyncId\"/>\n"
+            + "      </map-Key>\n"
+            + "      <map-Value>\n"
+            + "        <std-String value=\"1500\"/>\n"
+            + "      </map-Value>\n"
+            + "    </map-Entry>\n"
+            + "  </map-HashMap>\n"
+            + "</ofbiz-ser>\n";
+
+    public RuntimeDataSerializerTests(String name) {
+        super(name);
+    }
+
+    public void testDeserializeXmlRow() throws Exception {
+        delegator.createOrStore(delegator.makeValue("RuntimeData", "runtimeDataId", "RDS_TEST_XML", "runtimeInfo", XML_RUNTIME_INFO));
+        GenericValue runtimeData = EntityQuery.use(delegator).from("RuntimeData").where("runtimeDataId", "RDS_TEST_XML").queryOne();
+        Map<String, Object> context = RuntimeDataSerializer.deserialize(runtimeData.getString("runtimeInfo"), delegator);
+        assertEquals("XML row context", UtilMisc.toMap("entitySyncId", "1500"), context);
+    }
+
+    public void testDeserializeBinaryRow() throws Exception {
+        List<Object> lines = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            lines.add(UtilMisc.toMap("productId", "GZ-" + i, "quantity", new BigDecimal("2.5")));
+        }
+        GenericValue testingType = delegator.makeValue("TestingType", "testingTypeId", "RDS_TEST", "description", "Runtime data");
+        Map<String, Object> context = UtilMisc.toMap("orderId", "WS10000", "locale", Locale.US, "lines", lines,
+                "testingType", testingType, "notSerializable", new Object());
+
+        List<String> errorMessageList = new ArrayList<>();
+        String runtimeInfo = BinarySerializer.serializeOrNull(context, errorMessageList);
+        assertTrue("Binary format", BinarySerializer.isSerialized(runtimeInfo));
+        assertEquals("Skipped values", 1, errorMessageList.size());
+
+        delegator.createOrStore(delegator.makeValue("RuntimeData", "runtimeDataId", "RDS_TEST_BINARY", "runtimeInfo", runtimeInfo));
+        GenericValue runtimeData = EntityQuery.use(delegator).from("RuntimeData").where("runtimeDataId", "RDS_TEST_BINARY").queryOne();
+        Map<String, Object> result = RuntimeDataSerializer.deserialize(runtimeData.getString("runtimeInfo"), delegator);
+        assertEquals("orderId", "WS10000", result.get("orderId"));
+        assertEquals("locale", Locale.US, result.get("locale"));
+        assertEquals("lines", lines, result.get("lines"));
+        assertEquals("testingType", testingType, result.get("testingType"));
+        assertTrue("Skipped value kept as null", result.containsKey("notSerializable"));
+        assertNull("Skipped value", result.get("notSerializable"));
+    }
+}
@@ -57,6 +57,7 @@ import org.ofbiz.webapp.ExtWebappInfo;
 import org.ofbiz.webapp.control.RequestAttrPolicy.RedirectAttrPolicy;
 import org.ofbiz.webapp.control.RequestAttrPolicy.RestoreAttrPolicyInvoker;
 import org.ofbiz.webapp.event.RequestBodyMapHandlerFactory;
+import org.ofbiz.webapp.stats.StatsWriter;
 import org.ofbiz.webapp.website.WebSiteWorker;
 
 /**
@@ -440,6 +441,7 @@ public class ContextFilter implements Filter {
      * @see javax.servlet.Filter#destroy()
      */
     public void destroy() {
+        StatsWriter.drain(); // SCIPIO: 3.0.0: Write the server stats still buffered
         getDispatcher(config.getServletContext()).deregister();
         config = null;
     }
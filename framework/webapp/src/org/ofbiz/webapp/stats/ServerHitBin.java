@@ -24,6 +24,8 @@ import java.util.Deque;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -46,6 +48,8 @@ import com.ibm.icu.util.Calendar;
  * <p>Counts server hits and tracks statistics for request, events and views
  * <p>Handles total stats since the server started and binned
  *  stats according to settings in the serverstats.properties file.
+ * <p>SCIPIO: 3.0.0: Hit counters are striped ({@link LongAdder}) instead of synchronized, and ServerHit/ServerHitBin
+ *  values are written by {@link StatsWriter} in the background when <code>stats.persist.async</code> is enabled.
  */
 public class ServerHitBin {
     // Debug module name
@@ -232,10 +236,15 @@ public class ServerHitBin {
                         serverHitBin.set("serverIpAddress", address.getHostAddress());
                         serverHitBin.set("serverHostName", address.getHostName());
                     }
-                    try {
-                        delegator.createSetNextSeqId(serverHitBin);
-                    } catch (GenericEntityException e) {
-                        Debug.logError(e, "Could not save ServerHitBin:", module);
+                    if (StatsWriter.isEnabled()) { // SCIPIO: 3.0.0: Asynchronous batched persistence
+                        serverHitBin.setNextSeqId();
+                        StatsWriter.getInstance().offerCreate(delegator, serverHitBin);
+                    } else {
+                        try {
+                            delegator.createSetNextSeqId(serverHitBin);
+                        } catch (GenericEntityException e) {
+                            Debug.logError(e, "Could not save ServerHitBin:", module);
+                        }
                     }
                 }
             } else {
@@ -334,10 +343,11 @@ public class ServerHitBin {
     private final long startTime;
     private final long endTime;
 
-    private long numberHits;
-    private long totalRunningTime;
-    private long minTime;
-    private long maxTime;
+    // SCIPIO: 3.0.0: Striped counters instead of synchronized methods, so concurrent requests don't serialize on the bin
+    private final LongAdder numberHits = new LongAdder();
+    private final LongAdder totalRunningTime = new LongAdder();
+    private final LongAccumulator minTime = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator maxTime = new LongAccumulator(Math::max, 0);
 
     private ServerHitBin(String id, int type, boolean limitLength, Delegator delegator) {
         this.id = id;
@@ -352,10 +362,6 @@ public class ServerHitBin {
         } else {
             this.endTime = 0;
         }
-        this.numberHits = 0;
-        this.totalRunningTime = 0;
-        this.minTime = Long.MAX_VALUE;
-        this.maxTime = 0;
     }
 
     private ServerHitBin(ServerHitBin oldBin, long startTime) {
@@ -372,10 +378,6 @@ public class ServerHitBin {
         } else {
             this.endTime = 0;
         }
-        this.numberHits = 0;
-        this.totalRunningTime = 0;
-        this.minTime = Long.MAX_VALUE;
-        this.maxTime = 0;
     }
 
     public Delegator getDelegator() {
@@ -421,20 +423,20 @@ public class ServerHitBin {
         return (this.getBinLength()) / 60000.0;
     }
 
-    public synchronized long getNumberHits() {
-        return this.numberHits;
+    public long getNumberHits() {
+        return this.numberHits.sum();
     }
 
-    public synchronized long getMinTime() {
-        return this.minTime;
+    public long getMinTime() {
+        return this.minTime.get();
     }
 
-    public synchronized long getMaxTime() {
-        return this.maxTime;
+    public long getMaxTime() {
+        return this.maxTime.get();
     }
 
-    public synchronized long getTotalRunningTime() {
-        return this.totalRunningTime;
+    public long getTotalRunningTime() {
+        return this.totalRunningTime.sum();
     }
 
     public double getMinTimeSeconds() {
@@ -445,7 +447,7 @@ public class ServerHitBin {
         return (this.getMaxTime()) / 1000.0;
     }
 
-    public synchronized double getAvgTime() {
+    public double getAvgTime() {
         return ((double) this.getTotalRunningTime()) / ((double) this.getNumberHits());
     }
 
@@ -458,13 +460,11 @@ public class ServerHitBin {
         return this.getNumberHits() / this.getBinLengthMinutes();
     }
 
-    private synchronized void addHit(long runningTime) {
-        this.numberHits++;
-        this.totalRunningTime += runningTime;
-        if (runningTime < this.minTime)
-            this.minTime = runningTime;
-        if (runningTime > this.maxTime)
-            this.maxTime = runningTime;
+    private void addHit(long runningTime) {
+        this.numberHits.increment();
+        this.totalRunningTime.add(runningTime);
+        this.minTime.accumulate(runningTime);
+        this.maxTime.accumulate(runningTime);
     }
 
     private void saveHit(HttpServletRequest request, long startTime, long runningTime, GenericValue userLogin) throws GenericEntityException {
@@ -494,14 +494,19 @@ public class ServerHitBin {
                 return;
             }
             String visitId = visit.getString("visitId");
-            visit = EntityQuery.use(delegator).from("Visit").where("visitId", visitId).queryOne();
+            // SCIPIO: 3.0.0: In async mode the visit may still be queued in the StatsWriter (written before the hit)
+            if (!StatsWriter.isEnabled()) {
+                visit = EntityQuery.use(delegator).from("Visit").where("visitId", visitId).queryOne();
+            }
             if (visit == null) {
                 // GenericValue stored in client session does not exist in database.
                 Debug.logInfo("The Visit GenericValue stored in the client session does not exist in the database, not storing server hit.", module);
                 return;
             }
 
-            Debug.logInfo("Visit delegatorName=" + visit.getDelegator().getDelegatorName() + ", ServerHitBin delegatorName=" + this.delegator.getDelegatorName(), module);
+            if (Debug.verboseOn()) { // SCIPIO: 3.0.0: Was logged at info for every hit
+                Debug.logVerbose("Visit delegatorName=" + visit.getDelegator().getDelegatorName() + ", ServerHitBin delegatorName=" + this.delegator.getDelegatorName(), module);
+            }
 
             GenericValue serverHit = delegator.makeValue("ServerHit");
 
@@ -555,7 +560,9 @@ public class ServerHitBin {
             // So prevent entity engine from logging errors; it throws GenericEntityException anyway.
             // TODO?: in future this should be optimized/replaced using Delegator/GenericValue/SqlProcessor logging options. 
             //serverHit.create();
-            if (Debug.verboseOn()) {
+            if (StatsWriter.isEnabled()) { // SCIPIO: 3.0.0: Asynchronous batched persistence
+                StatsWriter.getInstance().offerCreate(delegator, serverHit);
+            } else if (Debug.verboseOn()) {
                 serverHit.create();
             } else {
                 try {
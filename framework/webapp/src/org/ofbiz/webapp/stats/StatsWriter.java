@@ -0,0 +1,373 @@
+package org.ofbiz.webapp.stats;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.ofbiz.base.concurrent.ExecutionPool;
+import org.ofbiz.base.util.Debug;
+import org.ofbiz.base.util.UtilMisc;
+import org.ofbiz.base.util.UtilProperties;
+import org.ofbiz.entity.Delegator;
+import org.ofbiz.entity.GenericEntityException;
+import org.ofbiz.entity.GenericPK;
+import org.ofbiz.entity.GenericValue;
+import org.ofbiz.entity.condition.EntityCondition;
+import org.ofbiz.entity.condition.EntityOperator;
+import org.ofbiz.entity.util.EntityQuery;
+import org.ofbiz.entity.util.EntityStoreOptions;
+
+/**
+ * Asynchronous, batched writer for the server stats entities: ServerHit, ServerHitBin and, if enabled, Visit and Visitor (SCIPIO).
+ * <p>Request threads only put values into a bounded lock-free ring buffer ({@link #offer}); a single background thread drains
+ * it every <code>stats.persist.async.flushInterval</code> milliseconds, or as soon as a batch is full, and writes the values
+ * using JDBC batches ({@link Delegator#createAll(Collection, EntityStoreOptions)}). When the buffer is full the value is dropped
+ * and counted instead of blocking the request (see {@link #getStats()}); stats persistence is best-effort. The buffer is
+ * drained when webapps are stopped ({@link #drain()}, from {@link org.ofbiz.webapp.control.ContextFilter#destroy()}), so
+ * values are only lost on an abnormal shutdown.</p>
+ * <p>Within a flush, creates are written in dependency order (Visitor, Visit, ServerHitBin, ServerHit) before updates, so a hit
+ * never reaches the database before its visit; as in {@link ServerHitBin}, hits whose Visit is neither in the flush nor in the
+ * database are discarded (counted as failed) rather than written. If a batch fails (typically a duplicate ServerHit primary key from concurrent
+ * AJAX requests), its values are retried one by one and the failing ones are counted and discarded.</p>
+ * <p>Configured in serverstats.properties: <code>stats.persist.async</code> (hits and bins), <code>stats.persist.async.visit</code>
+ * (Visit and Visitor creation), <code>stats.persist.async.bufferSize</code>, <code>stats.persist.async.batchSize</code> and
+ * <code>stats.persist.async.flushInterval</code>.</p>
+ * <p>SCIPIO: 3.0.0: Added.</p>
+ */
+public final class StatsWriter {
+    private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
+
+    private static final boolean ENABLED = UtilProperties.getPropertyAsBoolean("serverstats", "stats.persist.async", false);
+    private static final boolean VISIT_ENABLED = ENABLED && UtilProperties.getPropertyAsBoolean("serverstats", "stats.persist.async.visit", false);
+    private static final List<String> CREATE_ORDER = UtilMisc.unmodifiableArrayList("Visitor", "Visit", "ServerHitBin", "ServerHit");
+    private static final long DROP_LOG_INTERVAL = 1000;
+    private static final long DRAIN_TIMEOUT = 30;
+
+    private static class Holder {
+        private static final StatsWriter INSTANCE = new StatsWriter(
+                UtilProperties.getPropertyAsInteger("serverstats", "stats.persist.async.bufferSize", 8192),
+                UtilProperties.getPropertyAsInteger("serverstats", "stats.persist.async.batchSize", 200),
+                UtilProperties.getPropertyAsInteger("serverstats", "stats.persist.async.flushInterval", 1000));
+    }
+
+    private final RingBuffer<Record> buffer;
+    private final int batchSize;
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+    private final Runnable flushTask = this::flushRequested;
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    private StatsWriter(int bufferSize, int batchSize, long flushInterval) {
+        this.buffer = new RingBuffer<>(bufferSize > 0 ? bufferSize : 8192);
+        this.batchSize = (batchSize > 0) ? batchSize : 200;
+        this.executor = ExecutionPool.getScheduledExecutor(null, "Scipio-StatsWriter", 1, 0, false);
+        flushInterval = (flushInterval > 0) ? flushInterval : 1000;
+        this.executor.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        Debug.logInfo("Started asynchronous stats writer [bufferSize=" + buffer.capacity() + ", batchSize=" + this.batchSize
+                + ", flushInterval=" + flushInterval + "ms, visits=" + VISIT_ENABLED + "]", module);
+    }
+
+    /** Returns true if ServerHit and ServerHitBin values are persisted asynchronously (<code>stats.persist.async</code>). */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /** Returns true if Visit and Visitor values are created asynchronously (<code>stats.persist.async.visit</code>). */
+    public static boolean isVisitEnabled() {
+        return VISIT_ENABLED;
+    }
+
+    public static StatsWriter getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Queues the value to be created, or stored if <code>store</code>, by the writer thread; never blocks.
+     * The caller must not modify the value afterward (pass a copy of session values).
+     * Returns false if the buffer was full and the value was dropped.
+     */
+    public boolean offer(Delegator delegator, GenericValue value, boolean store) {
+        if (!buffer.offer(new Record(delegator, value, store))) {
+            dropped.increment();
+            long numDropped = dropped.sum();
+            if (numDropped % DROP_LOG_INTERVAL == 1) {
+                Debug.logWarning("Stats writer buffer full (" + buffer.capacity() + "), dropped " + numDropped
+                        + " values so far; consider increasing stats.persist.async.bufferSize", module);
+            }
+            requestFlush();
+            return false;
+        }
+        enqueued.increment();
+        if (buffer.size() >= batchSize) {
+            requestFlush();
+        }
+        return true;
+    }
+
+    public boolean offerCreate(Delegator delegator, GenericValue value) {
+        return offer(delegator, value, false);
+    }
+
+    /**
+     * Writes the values buffered so far and waits for them (up to 30 seconds); called when webapps are stopped, so
+     * buffered values are not lost on shutdown. Does nothing if <code>stats.persist.async</code> is off.
+     */
+    public static void drain() {
+        if (!ENABLED) {
+            return;
+        }
+        StatsWriter writer = getInstance();
+        if (writer.buffer.size() == 0) {
+            return;
+        }
+        try {
+            Future<?> future = writer.executor.submit(writer::flush);
+            future.get(DRAIN_TIMEOUT, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException | ExecutionException | TimeoutException e) {
+            Debug.logWarning("Could not write buffered server stats: " + e.toString(), module);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Returns the writer counters: enqueued, dropped, written, failed, batches and pending (currently buffered). */
+    public Map<String, Object> getStats() {
+        return UtilMisc.toMap("enqueued", enqueued.sum(), "dropped", dropped.sum(), "written", written.sum(),
+                "failed", failed.sum(), "batches", batches.sum(), "pending", (long) buffer.size());
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            executor.execute(flushTask);
+        }
+    }
+
+    private void flushRequested() {
+        flushRequested.set(false);
+        flush();
+    }
+
+    /** Drains and writes the buffer; only ever runs on the single writer thread. */
+    private void flush() {
+        try {
+            List<Record> records = new ArrayList<>(batchSize);
+            while (buffer.drainTo(records, batchSize) > 0) {
+                write(records);
+                records.clear();
+            }
+        } catch (Throwable t) { // must not kill the scheduled task
+            Debug.logError(t, "Error writing server stats", module);
+        }
+    }
+
+    private void write(List<Record> records) {
+        Map<Delegator, List<Record>> delegatorRecords = new LinkedHashMap<>();
+        for (Record record : records) {
+            delegatorRecords.computeIfAbsent(record.delegator, k -> new ArrayList<>()).add(record);
+        }
+        for (Map.Entry<Delegator, List<Record>> entry : delegatorRecords.entrySet()) {
+            Delegator delegator = entry.getKey();
+            List<GenericValue> creates = new ArrayList<>();
+            List<GenericValue> stores = new ArrayList<>();
+            Set<GenericPK> createPks = new HashSet<>();
+            for (String entityName : CREATE_ORDER) {
+                for (Record record : entry.getValue()) {
+                    if (!record.store && entityName.equals(record.value.getEntityName())) {
+                        // Duplicate ServerHit PKs within the batch (same millisecond) would fail the whole batch
+                        if (createPks.add(record.value.getPrimaryKey())) {
+                            creates.add(record.value);
+                        } else {
+                            failed.increment();
+                        }
+                    }
+                }
+            }
+            for (Record record : entry.getValue()) {
+                if (record.store) {
+                    stores.add(record.value);
+                }
+            }
+            creates = checkVisits(delegator, creates);
+            if (!creates.isEmpty()) {
+                writeBatch(delegator, creates, false);
+            }
+            if (!stores.isEmpty()) {
+                writeBatch(delegator, stores, true);
+            }
+        }
+    }
+
+    /**
+     * Removes the ServerHit values whose Visit is neither created in the same flush nor in the database, as
+     * {@link ServerHitBin} does before creating a hit synchronously (the Visit in the session may not have been stored).
+     */
+    private List<GenericValue> checkVisits(Delegator delegator, List<GenericValue> creates) {
+        Set<String> existingVisitIds = new HashSet<>();
+        Set<String> hitVisitIds = new HashSet<>();
+        for (GenericValue value : creates) {
+            if ("Visit".equals(value.getEntityName())) {
+                existingVisitIds.add(value.getString("visitId"));
+            } else if ("ServerHit".equals(value.getEntityName())) {
+                hitVisitIds.add(value.getString("visitId"));
+            }
+        }
+        hitVisitIds.removeAll(existingVisitIds);
+        if (hitVisitIds.isEmpty()) {
+            return creates;
+        }
+        try {
+            List<GenericValue> visits = EntityQuery.use(delegator).select("visitId").from("Visit")
+                    .where(EntityCondition.makeCondition("visitId", EntityOperator.IN, hitVisitIds)).queryList();
+            for (GenericValue visit : visits) {
+                existingVisitIds.add(visit.getString("visitId"));
+            }
+        } catch (GenericEntityException e) {
+            Debug.logError(e, "Could not look up the visits of server hits; not storing them", module);
+        }
+        List<GenericValue> checked = new ArrayList<>(creates.size());
+        int missing = 0;
+        for (GenericValue value : creates) {
+            if ("ServerHit".equals(value.getEntityName()) && !existingVisitIds.contains(value.getString("visitId"))) {
+                missing++;
+            } else {
+                checked.add(value);
+            }
+        }
+        if (missing > 0) {
+            failed.add(missing);
+            Debug.logInfo("The Visit of " + missing + " server hits does not exist in the database, not storing them", module);
+        }
+        return checked;
+    }
+
+    private void writeBatch(Delegator delegator, List<GenericValue> values, boolean store) {
+        batches.increment();
+        EntityStoreOptions storeOptions = new EntityStoreOptions(false, batchSize);
+        try {
+            // See ServerHitBin.saveHit: duplicate ServerHit PKs are expected, so prevent the entity engine logging errors
+            Debug.setThreadLevelDisableWarningError();
+            try {
+                if (store) {
+                    delegator.storeAll(values, storeOptions);
+                } else {
+                    delegator.createAll(values, storeOptions);
+                }
+            } finally {
+                Debug.restoreThreadLevelAllow();
+            }
+            written.add(values.size());
+            return;
+        } catch (GenericEntityException e) {
+            if (Debug.verboseOn()) {
+                Debug.logVerbose("Batch write of " + values.size() + " stats values failed, retrying individually: " + e.toString(), module);
+            }
+        }
+        for (GenericValue value : values) {
+            try {
+                Debug.setThreadLevelDisableWarningError();
+                try {
+                    if (store) {
+                        delegator.store(value);
+                    } else {
+                        delegator.create(value);
+                    }
+                } finally {
+                    Debug.restoreThreadLevelAllow();
+                }
+                written.increment();
+            } catch (GenericEntityException e) {
+                failed.increment();
+                if (Debug.verboseOn()) {
+                    Debug.logVerbose("Could not write " + value.getEntityName() + " " + value.getPrimaryKey() + ": " + e.toString(), module);
+                }
+            }
+        }
+    }
+
+    private static final class Record {
+        private final Delegator delegator;
+        private final GenericValue value;
+        private final boolean store;
+
+        private Record(Delegator delegator, GenericValue value, boolean store) {
+            this.delegator = delegator;
+            this.value = value;
+            this.store = store;
+        }
+    }
+
+    /**
+     * Bounded lock-free multi-producer, single-consumer ring buffer.
+     * Producers claim a slot by CAS on the tail sequence and then publish the element into it; the single consumer
+     * reads published slots from the head, clears them, and advances the head.
+     */
+    static final class RingBuffer<E> {
+        private final AtomicReferenceArray<E> slots;
+        private final int mask;
+        private final AtomicLong tail = new AtomicLong();
+        private volatile long head; // written only by the consumer
+
+        RingBuffer(int capacity) {
+            int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1; // round up to power of two
+            this.slots = new AtomicReferenceArray<>(size);
+            this.mask = size - 1;
+        }
+
+        int capacity() {
+            return slots.length();
+        }
+
+        int size() {
+            return (int) Math.max(0, tail.get() - head);
+        }
+
+        boolean offer(E element) {
+            long t;
+            do {
+                t = tail.get();
+                if (t - head >= slots.length()) {
+                    return false;
+                }
+            } while (!tail.compareAndSet(t, t + 1));
+            slots.set((int) t & mask, element);
+            return true;
+        }
+
+        /** Moves up to max published elements to the collection, stopping at a claimed but not yet published slot. Consumer only. */
+        int drainTo(Collection<? super E> target, int max) {
+            long h = head;
+            int count = 0;
+            while (count < max) {
+                int index = (int) h & mask;
+                E element = slots.get(index);
+                if (element == null) {
+                    break;
+                }
+                slots.lazySet(index, null);
+                target.add(element);
+                h++;
+                count++;
+            }
+            head = h;
+            return count;
+        }
+    }
+}
@@ -43,6 +43,7 @@ import org.ofbiz.entity.util.EntityUtilProperties;
 
 /**
  * Handles saving and maintaining visit information
+ * <p>SCIPIO: 3.0.0: Visit and Visitor creation and updates go through {@link StatsWriter} when <code>stats.persist.async.visit</code> is enabled.</p>
  */
 public class VisitHandler {
     // Debug module name
@@ -72,10 +73,14 @@ public class VisitHandler {
             if (modelUserLogin.isField("partyId")) {
                 visitor.set("partyId", userLogin.get("partyId"));
             }
-            try {
-                visitor.store();
-            } catch (GenericEntityException e) {
-                Debug.logError(e, "Could not update visitor: ", module);
+            if (StatsWriter.isVisitEnabled()) { // SCIPIO: 3.0.0: Asynchronous, after the queued create
+                StatsWriter.getInstance().offer(visitor.getDelegator(), (GenericValue) visitor.clone(), true);
+            } else {
+                try {
+                    visitor.store();
+                } catch (GenericEntityException e) {
+                    Debug.logError(e, "Could not update visitor: ", module);
+                }
             }
         }
 
@@ -92,10 +97,14 @@ public class VisitHandler {
                 visit.set("visitorId", visitor.get("visitorId"));
             }
 
-            try {
-                visit.store();
-            } catch (GenericEntityException e) {
-                Debug.logError(e, "Could not update visit: ", module);
+            if (StatsWriter.isVisitEnabled()) { // SCIPIO: 3.0.0: Asynchronous, after the queued create
+                StatsWriter.getInstance().offer(visit.getDelegator(), (GenericValue) visit.clone(), true);
+            } else {
+                try {
+                    visit.store();
+                } catch (GenericEntityException e) {
+                    Debug.logError(e, "Could not update visit: ", module);
+                }
             }
         }
     }
@@ -174,7 +183,13 @@ public class VisitHandler {
                                 try {
                                     GenericValue checkVisitor = EntityQuery.use(delegator).from("Visitor").where("visitorId", visitorId).queryOne();
                                     if (checkVisitor == null) {
-                                        GenericValue newVisitor = delegator.create("Visitor", "visitorId", visitorId);
+                                        GenericValue newVisitor;
+                                        if (StatsWriter.isVisitEnabled()) { // SCIPIO: 3.0.0: May also just be queued (duplicates are discarded)
+                                            newVisitor = delegator.makeValue("Visitor", "visitorId", visitorId);
+                                            StatsWriter.getInstance().offerCreate(delegator, (GenericValue) newVisitor.clone());
+                                        } else {
+                                            newVisitor = delegator.create("Visitor", "visitorId", visitorId);
+                                        }
                                         session.setAttribute("visitor", newVisitor);
                                     }
                                     visit.set("visitorId", visitorId);
@@ -191,7 +206,12 @@ public class VisitHandler {
                             }
 
                             try {
-                                visit = delegator.createSetNextSeqId(visit);
+                                if (StatsWriter.isVisitEnabled()) { // SCIPIO: 3.0.0: Asynchronous batched creation
+                                    visit.setNextSeqId();
+                                    StatsWriter.getInstance().offerCreate(delegator, (GenericValue) visit.clone());
+                                } else {
+                                    visit = delegator.createSetNextSeqId(visit);
+                                }
                                 session.setAttribute("visit", visit);
                             } catch (GenericEntityException e) {
                                 Debug.logError(e, "Could not create new visit:", module);
@@ -251,7 +271,12 @@ public class VisitHandler {
                                 // no visitor cookie? create visitor and send back cookie too
                                 visitor = delegator.makeValue("Visitor");
                                 try {
-                                    delegator.createSetNextSeqId(visitor);
+                                    if (StatsWriter.isVisitEnabled()) { // SCIPIO: 3.0.0: Asynchronous batched creation
+                                        visitor.setNextSeqId();
+                                        StatsWriter.getInstance().offerCreate(delegator, (GenericValue) visitor.clone());
+                                    } else {
+                                        delegator.createSetNextSeqId(visitor);
+                                    }
                                 } catch (GenericEntityException e) {
                                     Debug.logError(e, "Could not create new visitor:", module);
                                     visitor = null;
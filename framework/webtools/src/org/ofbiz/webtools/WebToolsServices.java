@@ -573,6 +573,7 @@ public class WebToolsServices {
             reader.setCreateDummyFks(createDummyFks);
             reader.setCheckDataOnly(checkDataOnly);
             reader.setPlaceholderValues(placeholderValues);
+            reader.setBatchSize(EntityDataLoader.getLoadBatchSize()); // SCIPIO
             commonOptions.toReader(reader); // SCIPIO
 
             long numberRead = (url != null ? reader.parse(url) : reader.parse(xmltext));
@@ -18,6 +18,7 @@
  */
 import org.ofbiz.base.util.cache.UtilCache;
 import org.ofbiz.base.util.cache.CacheLine;
+import org.ofbiz.base.util.cache.CacheWeighers;
 import org.ofbiz.base.util.UtilFormatOut;
 import org.ofbiz.security.Security;
 
@@ -38,6 +39,12 @@ if (cacheName) {
         cache.missCountSoftRef = UtilFormatOut.formatQuantity(utilCache.getMissCountSoftRef());
         cache.removeHitCount = UtilFormatOut.formatQuantity(utilCache.getRemoveHitCount());
         cache.removeMissCount = UtilFormatOut.formatQuantity(utilCache.getRemoveMissCount());
+        cache.hitRatio = UtilFormatOut.formatPercentage(utilCache.getHitRatio()); // SCIPIO: 3.0.0
+        cache.evictionCount = UtilFormatOut.formatQuantity(utilCache.getEvictionCount()); // SCIPIO: 3.0.0
+        cache.evictionPolicy = utilCache.getEvictionPolicy(); // SCIPIO: 3.0.0
+        cache.weigher = CacheWeighers.getWeigherName(utilCache.getWeigher()); // SCIPIO: 3.0.0
+        cache.maxWeight = utilCache.isWeighted() ? UtilFormatOut.formatQuantity(utilCache.getMaxWeight()) : null; // SCIPIO: 3.0.0
+        cache.weightedSize = utilCache.isWeighted() ? UtilFormatOut.formatQuantity(utilCache.getWeightedSize()) : null; // SCIPIO: 3.0.0
         cache.maxInMemory = utilCache.getMaxInMemory(); // SCIPIO: this causes issues: UtilFormatOut.formatQuantity(utilCache.getMaxInMemory());
         cache.expireTime = utilCache.getExpireTime(); // SCIPIO: this causes issues: UtilFormatOut.formatQuantity(utilCache.getExpireTime());
         cache.useSoftReference = utilCache.getUseSoftReference().toString();
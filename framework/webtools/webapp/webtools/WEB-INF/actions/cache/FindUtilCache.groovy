@@ -50,6 +50,9 @@ names.each { cacheName ->
         cache.missCountSoftRef = UtilFormatOut.formatQuantity(utilCache.getMissCountSoftRef());
         cache.removeHitCount = UtilFormatOut.formatQuantity(utilCache.getRemoveHitCount());
         cache.removeMissCount = UtilFormatOut.formatQuantity(utilCache.getRemoveMissCount());
+        cache.hitRatio = UtilFormatOut.formatPercentage(utilCache.getHitRatio()); // SCIPIO: 3.0.0
+        cache.evictionCount = UtilFormatOut.formatQuantity(utilCache.getEvictionCount()); // SCIPIO: 3.0.0
+        cache.evictionPolicy = utilCache.getEvictionPolicy(); // SCIPIO: 3.0.0
         cache.maxInMemory = UtilFormatOut.formatQuantity(utilCache.getMaxInMemory());
         cache.expireTime = UtilFormatOut.formatQuantity(utilCache.getExpireTime());
         cache.useSoftReference = utilCache.getUseSoftReference().toString();
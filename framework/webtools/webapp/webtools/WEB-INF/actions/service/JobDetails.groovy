@@ -20,14 +20,14 @@
 import org.ofbiz.entity.Delegator;
 import org.ofbiz.entity.GenericValue
 import org.ofbiz.base.util.UtilGenerics
-import org.ofbiz.entity.serialize.XmlSerializer;
+import org.ofbiz.service.job.RuntimeDataSerializer
 
 GenericValue job = ((Delegator)delegator).findOne("JobSandbox", [jobId:parameters.jobId], false)
 context.job = job
 if (job) {
     GenericValue runtimeData = job.getRelatedOne("RuntimeData", false)
     if (runtimeData) {
-        runtimeInfoMap = UtilGenerics.checkMap(XmlSerializer.deserialize(runtimeData.getString("runtimeInfo"), delegator), String.class, Object.class)
+        runtimeInfoMap = RuntimeDataSerializer.deserialize(runtimeData.getString("runtimeInfo"), delegator) // SCIPIO: 3.0.0: XML or binary
         runtimeInfoList = []
         runtimeInfoMap.each { key, value ->
             valueMap = [key : key, value : value.toString()]
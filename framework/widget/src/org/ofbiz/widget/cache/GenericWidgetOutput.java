@@ -18,7 +18,10 @@
  *******************************************************************************/
 package org.ofbiz.widget.cache;
 
-public class GenericWidgetOutput {
+import org.ofbiz.base.util.cache.CacheWeighable;
+import org.ofbiz.base.util.cache.CacheWeighers;
+
+public class GenericWidgetOutput implements CacheWeighable { // SCIPIO: 3.0.0: CacheWeighable
 
     //private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
 
@@ -32,4 +35,13 @@ public class GenericWidgetOutput {
     public String toString() {
         return this.output;
     }
+
+    /**
+     * Returns the estimated retained size of the rendered output in bytes, for weight-bounded screen and form caches.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    @Override
+    public long getCacheWeight() {
+        return 16 + CacheWeighers.estimateSize(output);
+    }
 }
@@ -38,6 +38,7 @@ import org.ofbiz.base.util.UtilMisc;
 import org.ofbiz.base.util.UtilValidate;
 import org.ofbiz.base.util.collections.MapStack;
 import org.ofbiz.base.util.collections.MapState;
+import org.ofbiz.base.util.collections.PagedList;
 import org.ofbiz.base.util.collections.RenderMapStack;
 import org.ofbiz.entity.GenericEntity;
 import org.ofbiz.entity.GenericEntityException;
@@ -1092,6 +1093,8 @@ public class FormRenderer {
                 iter = (Iterator<?>) obj;
             } else if (obj instanceof List<?>) {
                 iter = ((List<?>) obj).listIterator();
+            } else if (obj instanceof PagedList<?>) { // SCIPIO: 3.0.0: Paged lists (including keyset paged lists)
+                iter = ((PagedList<?>) obj).iterator();
             }
 
             // set low and high index
@@ -1102,7 +1105,8 @@ public class FormRenderer {
             int highIndex = (Integer) context.get("highIndex");
 
             // we're passed a subset of the list, so use (0, viewSize) range
-            if (modelForm.isOverridenListSize()) {
+            // SCIPIO: 3.0.0: PagedList data is also only the page subset
+            if (modelForm.isOverridenListSize() || obj instanceof PagedList<?>) {
                 lowIndex = 0;
                 highIndex = (Integer) context.get("viewSize");
             }
@@ -42,6 +42,13 @@ public final class Paginator {
 
     private static final Debug.OfbizLogger module = Debug.getOfbizLogger(java.lang.invoke.MethodHandles.lookup().lookupClass());
 
+    /**
+     * Request parameter name prefix of the keyset paging continuation cursor; the paginator number is appended
+     * (<code>VIEW_CURSOR_0</code>), as for <code>VIEW_INDEX</code> and <code>VIEW_SIZE</code>.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public static final String VIEW_CURSOR_PARAM_PREFIX = "VIEW_CURSOR_";
+
     public static int getActualPageSize(Map<String, Object> context) {
         Integer value = (Integer) context.get("actualPageSize");
         return value != null ? value : (getHighIndex(context) - getLowIndex(context));
@@ -83,7 +90,14 @@ public final class Paginator {
             PagedList<?> pagedList = (PagedList<?>) entryList;
             listSize = pagedList.getListSize(); // SCIPIO: getSize() -> getListSize()
         }
-        if (modelForm.getPaginate(context)) {
+        if (entryList instanceof PagedList && ((PagedList<?>) entryList).isCursorPaged()) {
+            // SCIPIO: 3.0.0: For keyset paged lists the page was determined by the cursor, not the requested view index
+            PagedList<?> pagedList = (PagedList<?>) entryList;
+            viewIndex = pagedList.getViewIndex();
+            viewSize = pagedList.getViewSize();
+            lowIndex = viewIndex * viewSize;
+            highIndex = (viewIndex + 1) * viewSize;
+        } else if (modelForm.getPaginate(context)) {
             viewIndex = getViewIndex(modelForm, context);
             viewSize = getViewSize(modelForm, context);
             lowIndex = viewIndex * viewSize;
@@ -101,6 +115,42 @@ public final class Paginator {
         context.put("highIndex", highIndex);
     }
 
+    /**
+     * Returns the list of the form as a keyset (cursor) paged list, or null if the list is not one.
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public static PagedList<?> getCursorPagedList(ModelForm modelForm, Map<String, Object> context) {
+        String lookupName = modelForm.getListName();
+        Object obj = UtilValidate.isNotEmpty(lookupName) ? context.get(lookupName) : null;
+        return (obj instanceof PagedList<?> && ((PagedList<?>) obj).isCursorPaged()) ? (PagedList<?>) obj : null;
+    }
+
+    /**
+     * Returns the keyset paging cursor request parameter name for the current paginator (<code>VIEW_CURSOR_n</code>).
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public static String getViewCursorParam(Map<String, ? extends Object> context) {
+        return VIEW_CURSOR_PARAM_PREFIX + WidgetWorker.getPaginatorNumber(UtilGenerics.cast(context));
+    }
+
+    /**
+     * Returns the keyset paging cursor requested for the current paginator, to pass to
+     * {@link org.ofbiz.entity.util.EntityQuery#queryPagedListByKeyset}, or null for the first page.
+     * <p>Reads <code>parameters.VIEW_CURSOR_n</code>, then the <code>viewCursor</code> context field.</p>
+     * <p>SCIPIO: 3.0.0: Added.</p>
+     */
+    public static String getViewCursor(Map<String, ? extends Object> context) {
+        Object value = null;
+        Map<String, Object> parameters = UtilGenerics.cast(context.get("parameters"));
+        if (parameters != null) {
+            value = parameters.get(getViewCursorParam(context));
+        }
+        if (value == null) {
+            value = context.get("viewCursor");
+        }
+        return (value instanceof String && !((String) value).isEmpty()) ? (String) value : null;
+    }
+
     public static int getListSize(Map<String, Object> context) {
         Integer value = (Integer) context.get("listSize");
         return value != null ? value : 0;
@@ -207,7 +257,10 @@ public final class Paginator {
         int highIndex = (Integer) context.get("highIndex");
 
         // we're passed a subset of the list, so use (0, viewSize) range
-        if (modelForm.isOverridenListSize()) {
+        // SCIPIO: 3.0.0: PagedList data is also only the page subset
+        boolean pageSubset = modelForm.isOverridenListSize() || (obj instanceof PagedList<?>);
+        int pageLowIndex = lowIndex;
+        if (pageSubset) {
             lowIndex = 0;
             highIndex = (Integer) context.get("viewSize");
         }
@@ -228,7 +281,11 @@ public final class Paginator {
         if ((itemIndex + 1) < highIndex) {
             highIndex = itemIndex + 1;
             // if list size is overridden, use full listSize
-            context.put("highIndex", modelForm.isOverridenListSize() ? listSize : highIndex);
+            if (obj instanceof PagedList<?> && !modelForm.isOverridenListSize()) { // SCIPIO: 3.0.0: Page subset of the full list
+                context.put("highIndex", pageLowIndex + highIndex);
+            } else {
+                context.put("highIndex", modelForm.isOverridenListSize() ? listSize : highIndex);
+            }
         }
         context.put("actualPageSize", highIndex - lowIndex);
 
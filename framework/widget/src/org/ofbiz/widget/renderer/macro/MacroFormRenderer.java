@@ -28,6 +28,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
@@ -50,8 +51,10 @@ import org.ofbiz.base.util.UtilHttp;
 import org.ofbiz.base.util.UtilMisc;
 import org.ofbiz.base.util.UtilProperties;
 import org.ofbiz.base.util.UtilValidate;
+import org.ofbiz.base.util.collections.PagedList;
 import org.ofbiz.base.util.string.FlexibleStringExpander;
 import org.ofbiz.base.util.template.FreeMarkerWorker;
+import org.ofbiz.base.util.template.FtlMacroInvoker;
 import org.ofbiz.base.util.template.FtlScriptFormatter;
 import org.ofbiz.entity.Delegator;
 import org.ofbiz.webapp.control.RequestHandler;
@@ -102,6 +105,7 @@ import freemarker.core.Environment;
 import freemarker.template.Template;
 import freemarker.template.TemplateException;
 import freemarker.template.TemplateModelException;
+import freemarker.template.utility.Constants;
 
 /**
  * Widget Library - Form Renderer implementation based on Freemarker macros
@@ -188,6 +192,26 @@ public final class MacroFormRenderer implements FormStringRenderer {
         }
     }
 
+    /**
+     * SCIPIO: Executes the named macro with prebuilt args, through {@link FtlMacroInvoker} unless
+     * <code>widget.ftl.render.macro.directInvoke</code> is disabled.
+     * <p>
+     * NOTE: String args must be non-null (see {@link UtilFormatOut#checkNull(String)}) to get the same
+     * empty string as {@link FtlScriptFormatter#makeStringLiteral(String)}; null args are omitted.
+     */
+    private void executeMacro(Appendable writer, String macroName, Map<String, Object> args) throws IOException {
+        if (!MacroScreenRenderer.DIRECT_INVOKE_MACROS) {
+            executeMacro(writer, FtlMacroInvoker.makeMacroCall(macroName, args, ftlFmt));
+            return;
+        }
+        try {
+            FtlMacroInvoker.invokeMacro(getEnvironment(writer), macroName, args);
+        } catch (TemplateException | IOException e) {
+            Debug.logError(e, "Error rendering screen thru ftl macro: " + FtlMacroInvoker.makeMacroCall(macroName, args, ftlFmt), module);
+            handleError(writer, e); // SCIPIO
+        }
+    }
+
     /**
      * SCIPIO: makes exception handling decision for executeMacro exceptions.
      */
@@ -236,12 +260,9 @@ public final class MacroFormRenderer implements FormStringRenderer {
             // nothing to render
             return;
         }
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderLabel ");
-        sr.append("text=");
-        sr.append(ftlFmt.makeStringLiteral(labelText));
-        sr.append(" />");
-        executeMacro(writer, sr.toString());
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("text", labelText);
+        executeMacro(writer, "renderLabel", args);
     }
 
     public void renderDisplayField(Appendable writer, Map<String, Object> context, DisplayField displayField) throws IOException {
@@ -266,23 +287,15 @@ public final class MacroFormRenderer implements FormStringRenderer {
             title = description;
             description = description.substring(0, size - 8) + "..." + description.substring(description.length() - 5);
         }
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderDisplayField ");
-        appendFieldInfo(sr, context, modelFormField);
-        sr.append("type=");
-        sr.append(ftlFmt.makeStringLiteral(type));
-        sr.append(" imageLocation=");
-        sr.append(ftlFmt.makeStringLiteral(imageLocation));
-        sr.append(" idName=");
-        sr.append(ftlFmt.makeStringLiteral(idName));
-        sr.append(" description=");
-        sr.append(ftlFmt.makeStringLiteral(description)); // SCIPIO: redundant: FreeMarkerWorker.encodeDoubleQuotes(description)
-        sr.append(" title=");
-        sr.append(ftlFmt.makeStringLiteral(title));
-        sr.append(" class=");
-        sr.append(ftlFmt.makeStringLiteral(modelFormField.getWidgetStyle(context)));
-        sr.append(" alert=");
-        sr.append(ftlFmt.makeStringLiteral(modelFormField.shouldBeRed(context)));
+        Map<String, Object> args = new LinkedHashMap<>();
+        putFieldInfo(args, context, modelFormField);
+        args.put("type", UtilFormatOut.checkNull(type));
+        args.put("imageLocation", UtilFormatOut.checkNull(imageLocation));
+        args.put("idName", UtilFormatOut.checkNull(idName));
+        args.put("description", UtilFormatOut.checkNull(description));
+        args.put("title", title);
+        args.put("class", UtilFormatOut.checkNull(modelFormField.getWidgetStyle(context)));
+        args.put("alert", Boolean.toString(modelFormField.shouldBeRed(context))); // NOTE: string, not boolean (legacy)
         if (ajaxEnabled) {
             String url = inPlaceEditor.getUrl(context);
             // SCIPIO: js encoder
@@ -306,9 +319,7 @@ public final class MacroFormRenderer implements FormStringRenderer {
 
             }
             extraParameter += "}";
-            sr.append(" inPlaceEditorUrl=");
-            sr.append(ftlFmt.makeStringLiteral(url));
-            sr.append(" inPlaceEditorParams=");
+            args.put("inPlaceEditorUrl", UtilFormatOut.checkNull(url));
             StringWriter inPlaceEditorParams = new StringWriter();
             inPlaceEditorParams.append("{name: '");
             if (UtilValidate.isNotEmpty(inPlaceEditor.getParamName())) {
@@ -357,12 +368,11 @@ public final class MacroFormRenderer implements FormStringRenderer {
                 inPlaceEditorParams.append(", cols: '" + inPlaceEditor.getCols() + "'");
             }
             inPlaceEditorParams.append("}");
-            sr.append(ftlFmt.makeStringLiteral(inPlaceEditorParams.toString()));
+            args.put("inPlaceEditorParams", inPlaceEditorParams.toString());
         }
-        appendRequiredFieldParam(sr, context, modelFormField);
-        appendTooltipParam(sr, context, modelFormField); // SCIPIO
-        sr.append(" />");
-        executeMacro(writer, sr.toString());
+        putRequiredFieldParam(args, context, modelFormField);
+        putTooltipParams(args, context, modelFormField); // SCIPIO
+        executeMacro(writer, "renderDisplayField", args);
         if (displayField instanceof DisplayEntityField) {
             makeHyperlinkString(writer, ((DisplayEntityField) displayField).getSubHyperlink(), context);
         }
@@ -1371,22 +1381,14 @@ public final class MacroFormRenderer implements FormStringRenderer {
         String conditionGroup = modelFormField.getConditionGroup();
         String event = modelFormField.getEvent();
         String id = modelFormField.getCurrentContainerId(context);
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderHiddenField ");
-        sr.append(" name=");
-        sr.append(ftlFmt.makeStringLiteral(name));
-        sr.append(" conditionGroup=");
-        sr.append(ftlFmt.makeStringLiteral(conditionGroup));
-        sr.append(" value=");
-        sr.append(ftlFmt.makeStringLiteral(value));
-        sr.append(" id=");
-        sr.append(ftlFmt.makeStringLiteral(id));
-        sr.append(" event=");
-        sr.append(ftlFmt.makeStringLiteral(event));
-        sr.append(" action=");
-        sr.append(ftlFmt.makeStringLiteral(action));
-        sr.append(" />");
-        executeMacro(writer, sr.toString());
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("name", UtilFormatOut.checkNull(name));
+        args.put("conditionGroup", UtilFormatOut.checkNull(conditionGroup));
+        args.put("value", UtilFormatOut.checkNull(value));
+        args.put("id", UtilFormatOut.checkNull(id));
+        args.put("event", UtilFormatOut.checkNull(event));
+        args.put("action", UtilFormatOut.checkNull(action));
+        executeMacro(writer, "renderHiddenField", args);
     }
 
     public void renderIgnoredField(Appendable writer, Map<String, Object> context, IgnoredField ignoredField) {
@@ -1832,104 +1834,70 @@ public final class MacroFormRenderer implements FormStringRenderer {
             evenRowStyle = FlexibleStringExpander.expandString(modelForm.getEvenRowStyle(), context);
             oddRowStyle = FlexibleStringExpander.expandString(modelForm.getOddRowStyle(), context);
         }
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderFormatItemRowOpen ");
-        sr.append(" formName=");
-        sr.append(ftlFmt.makeStringLiteral(modelForm.getFormName(context))); // SCIPIO: Replaced getName();
-        sr.append(" itemIndex=");
-        sr.append(Integer.toString(itemIndex));
-        sr.append(" altRowStyles=");
-        sr.append(ftlFmt.makeStringLiteral(altRowStyles));
-        sr.append(" evenRowStyle=");
-        sr.append(ftlFmt.makeStringLiteral(evenRowStyle));
-        sr.append(" oddRowStyle=");
-        sr.append(ftlFmt.makeStringLiteral(oddRowStyle));
-        sr.append(" />");
-        executeMacro(writer, sr.toString());
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("formName", UtilFormatOut.checkNull(modelForm.getFormName(context))); // SCIPIO: Replaced getName();
+        args.put("itemIndex", itemIndex);
+        args.put("altRowStyles", UtilFormatOut.checkNull(altRowStyles));
+        args.put("evenRowStyle", UtilFormatOut.checkNull(evenRowStyle));
+        args.put("oddRowStyle", UtilFormatOut.checkNull(oddRowStyle));
+        executeMacro(writer, "renderFormatItemRowOpen", args);
     }
 
     public void renderFormatItemRowClose(Appendable writer, Map<String, Object> context, ModelForm modelForm) throws IOException {
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderFormatItemRowClose ");
-        sr.append(" formName=");
-        sr.append(ftlFmt.makeStringLiteral(modelForm.getFormName(context))); // SCIPIO: Replaced getName();
-        sr.append("/>");
-        executeMacro(writer, sr.toString());
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("formName", UtilFormatOut.checkNull(modelForm.getFormName(context))); // SCIPIO: Replaced getName();
+        executeMacro(writer, "renderFormatItemRowClose", args);
     }
 
     public void renderFormatItemRowCellOpen(Appendable writer, Map<String, Object> context, ModelForm modelForm, ModelFormField modelFormField, int positionSpan) throws IOException {
         String areaStyle = (modelFormField != null) ? modelFormField.getWidgetAreaStyle() : "";
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderFormatItemRowCellOpen ");
-        sr.append(" fieldName=");
-        sr.append(ftlFmt.makeStringLiteral((modelFormField != null) ? modelFormField.getName() : ""));
-        sr.append(" style=");
-        sr.append(ftlFmt.makeStringLiteral(areaStyle));
-        sr.append(" positionSpan=");
-        sr.append(Integer.toString(positionSpan));
-        sr.append(" />");
-        executeMacro(writer, sr.toString());
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("fieldName", UtilFormatOut.checkNull((modelFormField != null) ? modelFormField.getName() : ""));
+        args.put("style", UtilFormatOut.checkNull(areaStyle));
+        args.put("positionSpan", positionSpan);
+        executeMacro(writer, "renderFormatItemRowCellOpen", args);
     }
 
     public void renderFormatItemRowCellClose(Appendable writer, Map<String, Object> context, ModelForm modelForm, ModelFormField modelFormField) throws IOException {
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderFormatItemRowCellClose");
-        sr.append(" fieldName=");
-        sr.append(ftlFmt.makeStringLiteral(modelFormField.getName()));
-        sr.append("/>");
-        executeMacro(writer, sr.toString());
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("fieldName", UtilFormatOut.checkNull(modelFormField.getName()));
+        executeMacro(writer, "renderFormatItemRowCellClose", args);
     }
 
     public void renderFormatItemRowFormCellOpen(Appendable writer, Map<String, Object> context, ModelForm modelForm) throws IOException {
         String areaStyle = modelForm.getFormTitleAreaStyle();
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderFormatItemRowFormCellOpen ");
-        sr.append(" style=");
-        sr.append(ftlFmt.makeStringLiteral(areaStyle));
-        sr.append(" />");
-        executeMacro(writer, sr.toString());
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("style", UtilFormatOut.checkNull(areaStyle));
+        executeMacro(writer, "renderFormatItemRowFormCellOpen", args);
     }
 
     public void renderFormatItemRowFormCellClose(Appendable writer, Map<String, Object> context, ModelForm modelForm) throws IOException {
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderFormatItemRowFormCellClose />");
-        executeMacro(writer, sr.toString());
+        executeMacro(writer, "renderFormatItemRowFormCellClose", null);
     }
 
     public void renderFormatSingleWrapperOpen(Appendable writer, Map<String, Object> context, ModelForm modelForm) throws IOException {
         String style = FlexibleStringExpander.expandString(modelForm.getDefaultTableStyle(), context);
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderFormatSingleWrapperOpen ");
-        sr.append(" formName=");
-        sr.append(ftlFmt.makeStringLiteral(modelForm.getFormName(context))); // SCIPIO: Replaced getName();
-        sr.append(" style=");
-        sr.append(ftlFmt.makeStringLiteral(style));
-        sr.append(" />");
-        executeMacro(writer, sr.toString());
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("formName", UtilFormatOut.checkNull(modelForm.getFormName(context))); // SCIPIO: Replaced getName();
+        args.put("style", UtilFormatOut.checkNull(style));
+        executeMacro(writer, "renderFormatSingleWrapperOpen", args);
     }
 
     public void renderFormatSingleWrapperClose(Appendable writer, Map<String, Object> context, ModelForm modelForm) throws IOException {
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderFormatSingleWrapperClose");
-        sr.append(" formName=");
-        sr.append(ftlFmt.makeStringLiteral(modelForm.getFormName(context))); // SCIPIO: Replaced getName();
-        sr.append("/>");
-        executeMacro(writer, sr.toString());
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("formName", UtilFormatOut.checkNull(modelForm.getFormName(context))); // SCIPIO: Replaced getName();
+        executeMacro(writer, "renderFormatSingleWrapperClose", args);
     }
 
     public void renderFormatFieldRowOpen(Appendable writer, Map<String, Object> context, ModelForm modelForm) throws IOException {
         Integer positions = (Integer) context.get("formFieldRender_positions"); // SCIPIO
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderFormatFieldRowOpen");
-        sr.append(" positions=" + (positions != null ? positions.toString() : "\"\""));
-        sr.append(" />");
-        executeMacro(writer, sr.toString());
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("positions", (positions != null) ? positions : "");
+        executeMacro(writer, "renderFormatFieldRowOpen", args);
     }
 
     public void renderFormatFieldRowClose(Appendable writer, Map<String, Object> context, ModelForm modelForm) throws IOException {
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderFormatFieldRowClose />");
-        executeMacro(writer, sr.toString());
+        executeMacro(writer, "renderFormatFieldRowClose", null);
     }
 
     /**
@@ -1967,32 +1935,65 @@ public final class MacroFormRenderer implements FormStringRenderer {
         sr.append(" fieldTitleBlank=" + fieldTitleBlank + " ");
     }
 
+    /**
+     * SCIPIO: puts position params (map-based version of {@link #appendPositionParams}).
+     */
+    private void putPositionParams(Map<String, Object> args, Map<String, Object> context, ModelFormField modelFormField) {
+        putPositionParam(args, context, "positions");
+        putPositionParam(args, context, "position");
+        putPositionParam(args, context, "positionSpan");
+        putPositionParam(args, context, "nextPositionInRow");
+        putPositionParam(args, context, "lastPositionInRow");
+    }
+
+    private static void putPositionParam(Map<String, Object> args, Map<String, Object> context, String name) {
+        Integer value = (Integer) context.get("formFieldRender_" + name);
+        args.put(name, (value != null) ? value : "");
+    }
+
+    /**
+     * SCIPIO: puts fieldType and fieldTitleBlank params (map-based version of {@link #appendFieldInfo}).
+     */
+    private void putFieldInfo(Map<String, Object> args, Map<String, Object> context, ModelFormField modelFormField) {
+        String fieldType = null;
+        if (modelFormField.getFieldInfo() != null) {
+            fieldType = modelFormField.getFieldInfo().getFieldTypeName();
+        }
+        args.put("fieldType", UtilFormatOut.checkNull(fieldType));
+        args.put("fieldTitleBlank", modelFormField.isBlankTitle(context));
+    }
+
+    /**
+     * SCIPIO: puts the compiled attribs expression; the usual empty one is passed as an empty hash so the call
+     * needs no raw expression.
+     */
+    private static void putAttribsParam(Map<String, Object> args, String attribs) {
+        if (MacroScreenRenderer.DIRECT_INVOKE_MACROS && "{}".equals(attribs)) {
+            args.put("attribs", Constants.EMPTY_HASH);
+        } else {
+            args.put("attribs", new StringBuilder(attribs)); // NOTE: must NOT be a String: raw FTL expression
+        }
+    }
+
     public void renderFormatFieldRowTitleCellOpen(Appendable writer, Map<String, Object> context, ModelFormField modelFormField) throws IOException {
         String style = modelFormField.getTitleAreaStyle();
 
         // SCIPIO: extra attribs map (json-like)
         String attribs = modelFormField.getAttribsExpr().compile(context);
 
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderFormatFieldRowTitleCellOpen ");
-        sr.append(" style=");
-        sr.append(ftlFmt.makeStringLiteral(style));
-        sr.append("");
-        appendPositionParams(sr, context, modelFormField);
-        appendFieldInfo(sr, context, modelFormField);
-        appendAsterisksParams(sr, context, modelFormField);
-        sr.append(" attribs=(");
-        sr.append(attribs);
-        sr.append(") />");
-        executeMacro(writer, sr.toString());
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("style", UtilFormatOut.checkNull(style));
+        putPositionParams(args, context, modelFormField);
+        putFieldInfo(args, context, modelFormField);
+        putAsterisksParams(args, context, modelFormField);
+        putAttribsParam(args, attribs);
+        executeMacro(writer, "renderFormatFieldRowTitleCellOpen", args);
     }
 
     public void renderFormatFieldRowTitleCellClose(Appendable writer, Map<String, Object> context, ModelFormField modelFormField) throws IOException {
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderFormatFieldRowTitleCellClose ");
-        appendFieldInfo(sr, context, modelFormField);
-        sr.append(" />");
-        executeMacro(writer, sr.toString());
+        Map<String, Object> args = new LinkedHashMap<>();
+        putFieldInfo(args, context, modelFormField);
+        executeMacro(writer, "renderFormatFieldRowTitleCellClose", args);
     }
 
     public void renderFormatFieldRowSpacerCell(Appendable writer, Map<String, Object> context, ModelFormField modelFormField) throws IOException {
@@ -2004,29 +2005,21 @@ public final class MacroFormRenderer implements FormStringRenderer {
         // SCIPIO: extra attribs map (json-like)
         String attribs = modelFormField.getAttribsExpr().compile(context);
 
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderFormatFieldRowWidgetCellOpen ");
+        Map<String, Object> args = new LinkedHashMap<>();
         // SCIPIO: TODO: REVIEW: why was this commented again? probably not needed, but usually better to give more info than less...
-        //sr.append(" positionSpan=");
-        //sr.append(Integer.toString(positionSpan));
-        sr.append(" style=");
-        sr.append(ftlFmt.makeStringLiteral(areaStyle));
-        sr.append("");
-        appendPositionParams(sr, context, modelFormField);
-        appendFieldInfo(sr, context, modelFormField);
-        appendAsterisksParams(sr, context, modelFormField);
-        sr.append(" attribs=(");
-        sr.append(attribs);
-        sr.append(") />");
-        executeMacro(writer, sr.toString());
+        //args.put("positionSpan", positionSpan);
+        args.put("style", UtilFormatOut.checkNull(areaStyle));
+        putPositionParams(args, context, modelFormField);
+        putFieldInfo(args, context, modelFormField);
+        putAsterisksParams(args, context, modelFormField);
+        putAttribsParam(args, attribs);
+        executeMacro(writer, "renderFormatFieldRowWidgetCellOpen", args);
     }
 
     public void renderFormatFieldRowWidgetCellClose(Appendable writer, Map<String, Object> context, ModelFormField modelFormField, int positions, int positionSpan, Integer nextPositionInRow) throws IOException {
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderFormatFieldRowWidgetCellClose ");
-        appendFieldInfo(sr, context, modelFormField);
-        sr.append(" />");
-        executeMacro(writer, sr.toString());
+        Map<String, Object> args = new LinkedHashMap<>();
+        putFieldInfo(args, context, modelFormField);
+        executeMacro(writer, "renderFormatFieldRowWidgetCellClose", args);
     }
 
     public void renderFormatEmptySpace(Appendable writer, Map<String, Object> context, ModelForm modelForm) throws IOException {
@@ -2035,16 +2028,10 @@ public final class MacroFormRenderer implements FormStringRenderer {
 
     // SCIPIO: 2017-01-13: new overloads for new role parameter
     public void renderFormatEmptySpace(Appendable writer, Map<String, Object> context, ModelForm modelForm, String role) throws IOException {
-        StringWriter sr = new StringWriter();
-
-        sr.append("<@renderFormatEmptySpace");
-        sr.append(" role=");
-        sr.append(ftlFmt.makeStringLiteral(role != null ? role : ""));
-        sr.append(" formType=");
-        sr.append(ftlFmt.makeStringLiteral(modelForm.getType()));
-        sr.append("/>");
-
-        executeMacro(writer, sr.toString());
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("role", UtilFormatOut.checkNull(role));
+        args.put("formType", UtilFormatOut.checkNull(modelForm.getType()));
+        executeMacro(writer, "renderFormatEmptySpace", args);
     }
 
     public void renderTextFindField(Appendable writer, Map<String, Object> context, TextFindField textFindField) throws IOException {
@@ -2611,6 +2598,10 @@ public final class MacroFormRenderer implements FormStringRenderer {
         Set<String> paramNames = new HashSet<>();
         paramNames.add(viewIndexParam);
         paramNames.add(viewSizeParam);
+        // SCIPIO: 3.0.0: Keyset paged lists: pages are reached by cursor, which replaces any cursor in the query string
+        PagedList<?> cursorPagedList = Paginator.getCursorPagedList(modelForm, context);
+        String viewCursorParam = Paginator.getViewCursorParam(context);
+        paramNames.add(viewCursorParam);
         queryString = UtilHttp.stripNamedParamsFromQueryString(queryString, paramNames);
         String anchor = "";
         String paginateAnchor = modelForm.getPaginateTargetAnchor();
@@ -2701,16 +2692,28 @@ public final class MacroFormRenderer implements FormStringRenderer {
                 firstUrl = rh.makeLink(this.request, this.response, urlPath + linkText);
             }
         }
-        if (viewIndex > 0) {
+        String paramSep = ajaxEnabled ? "&" : "&amp;";
+        String previousCursorText = "";
+        String nextCursorText = "";
+        if (cursorPagedList != null) {
+            if (cursorPagedList.getPreviousCursor() != null) {
+                previousCursorText = paramSep + viewCursorParam + "=" + cursorPagedList.getPreviousCursor();
+            }
+            if (cursorPagedList.getNextCursor() != null) {
+                nextCursorText = paramSep + viewCursorParam + "=" + cursorPagedList.getNextCursor();
+            }
+        }
+        if (viewIndex > 0 && (cursorPagedList == null || cursorPagedList.getPreviousCursor() != null)) {
             if (ajaxEnabled) {
-                ajaxPreviousUrl = createAjaxParamsFromUpdateAreas(updateAreas, prepLinkText + (viewIndex - 1) + anchor, context);
+                ajaxPreviousUrl = createAjaxParamsFromUpdateAreas(updateAreas, prepLinkText + (viewIndex - 1) + previousCursorText + anchor, context);
             } else {
-                linkText = prepLinkText + (viewIndex - 1) + anchor;
+                linkText = prepLinkText + (viewIndex - 1) + previousCursorText + anchor;
                 previousUrl = rh.makeLink(this.request, this.response, urlPath + linkText);
             }
         }
         // Page select dropdown
-        if (listSize > 0) { // SCIPIO: removed: && this.javaScriptEnabled
+        // SCIPIO: 3.0.0: Not for keyset paged lists, which can't jump to arbitrary pages
+        if (listSize > 0 && cursorPagedList == null) { // SCIPIO: removed: && this.javaScriptEnabled
             if (ajaxEnabled) {
                 ajaxSelectUrl = createAjaxParamsFromUpdateAreas(updateAreas, prepLinkText + "' + this.value + '", context);
             } else {
@@ -2722,16 +2725,17 @@ public final class MacroFormRenderer implements FormStringRenderer {
             }
         }
         // Next button
-        if (highIndex < listSize) {
+        if ((cursorPagedList == null) ? (highIndex < listSize) : (cursorPagedList.getNextCursor() != null)) {
             if (ajaxEnabled) {
-                ajaxNextUrl = createAjaxParamsFromUpdateAreas(updateAreas, prepLinkText + (viewIndex + 1) + anchor, context);
+                ajaxNextUrl = createAjaxParamsFromUpdateAreas(updateAreas, prepLinkText + (viewIndex + 1) + nextCursorText + anchor, context);
             } else {
-                linkText = prepLinkText + (viewIndex + 1) + anchor;
+                linkText = prepLinkText + (viewIndex + 1) + nextCursorText + anchor;
                 nextUrl = rh.makeLink(this.request, this.response, urlPath + linkText);
             }
         }
         // Last button
-        if (highIndex < listSize) {
+        // SCIPIO: 3.0.0: Not for keyset paged lists, which can't jump to arbitrary pages
+        if (highIndex < listSize && cursorPagedList == null) {
             int lastIndex = UtilMisc.getViewLastIndex(listSize, viewSize);
             if (ajaxEnabled) {
                 ajaxLastUrl = createAjaxParamsFromUpdateAreas(updateAreas, prepLinkText + lastIndex + anchor, context);
@@ -3336,11 +3340,9 @@ public final class MacroFormRenderer implements FormStringRenderer {
     @Deprecated
     public void appendTooltip(Appendable writer, Map<String, Object> context, ModelFormField modelFormField) throws IOException {
         // render the tooltip, in other methods too
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderTooltip");
-        appendTooltipParam(sr, context, modelFormField); // SCIPIO: now delegates
-        sr.append(" />");
-        executeMacro(writer, sr.toString());
+        Map<String, Object> args = new LinkedHashMap<>();
+        putTooltipParams(args, context, modelFormField); // SCIPIO: now delegates
+        executeMacro(writer, "renderTooltip", args);
     }
 
     /**
@@ -3355,6 +3357,14 @@ public final class MacroFormRenderer implements FormStringRenderer {
         sr.append(ftlFmt.makeStringLiteral(modelFormField.getTooltipStyle()));
     }
 
+    /**
+     * SCIPIO: Puts tooltip & tooltipStyle parameters for a map-based macro call.
+     */
+    public void putTooltipParams(Map<String, Object> args, Map<String, Object> context, ModelFormField modelFormField) {
+        args.put("tooltip", UtilFormatOut.checkNull(modelFormField.getTooltip(context)));
+        args.put("tooltipStyle", UtilFormatOut.checkNull(modelFormField.getTooltipStyle()));
+    }
+
     public void makeHyperlinkString(Appendable writer, ModelFormField.SubHyperlink subHyperlink, Map<String, Object> context) throws IOException {
         if (subHyperlink == null) {
             return;
@@ -3375,11 +3385,9 @@ public final class MacroFormRenderer implements FormStringRenderer {
     }
 
     public void addAsterisks(Appendable writer, Map<String, Object> context, ModelFormField modelFormField) throws IOException {
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderAsterisks");
-        appendAsterisksParams(sr, context, modelFormField);
-        sr.append(" />");
-        executeMacro(writer, sr.toString());
+        Map<String, Object> args = new LinkedHashMap<>();
+        putAsterisksParams(args, context, modelFormField);
+        executeMacro(writer, "renderAsterisks", args);
     }
 
     /**
@@ -3399,6 +3407,19 @@ public final class MacroFormRenderer implements FormStringRenderer {
         sr.append("");
     }
 
+    /**
+     * SCIPIO: Puts renderAsterisks macro args for a map-based macro call.
+     */
+    public void putAsterisksParams(Map<String, Object> args, Map<String, Object> context, ModelFormField modelFormField) {
+        if (modelFormField.getRequiredField()) {
+            args.put("requiredField", "true");
+            args.put("requiredStyle", UtilFormatOut.checkNull(modelFormField.getRequiredFieldStyle()));
+        } else {
+            args.put("requiredField", "false");
+            args.put("requiredStyle", "");
+        }
+    }
+
     public void appendContentUrl(Appendable writer, String location) throws IOException {
         StringBuilder buffer = new StringBuilder();
         ContentUrlTag.appendContentPrefix(this.request, buffer);
@@ -3856,6 +3877,13 @@ public final class MacroFormRenderer implements FormStringRenderer {
         sr.append(" requiredField=" + (modelFormField.getRequiredField() ? "\"true\"" : "\"false\""));
     }
 
+    /**
+     * SCIPIO: helper to put requiredField param for a map-based macro call.
+     */
+    protected void putRequiredFieldParam(Map<String, Object> args, Map<String, Object> context, ModelFormField modelFormField) {
+        args.put("requiredField", modelFormField.getRequiredField() ? "true" : "false");
+    }
+
     // SCIPIO: new
     @Override
     public void renderFormPageScripts(Appendable writer, Map<String, Object> context, ModelForm modelForm)
@@ -40,6 +40,7 @@ import org.ofbiz.base.util.UtilProperties;
 import org.ofbiz.base.util.UtilValidate;
 import org.ofbiz.base.util.string.FlexibleStringExpander;
 import org.ofbiz.base.util.template.FreeMarkerWorker;
+import org.ofbiz.base.util.template.FtlMacroInvoker;
 import org.ofbiz.base.util.template.FtlScriptFormatter;
 import org.ofbiz.webapp.control.RequestHandler;
 import org.ofbiz.webapp.taglib.ContentUrlTag;
@@ -192,26 +193,18 @@ public class MacroMenuRenderer implements MenuStringRenderer {
      * NOTE: To prevent auto-enclosing String in quotes, pass a StringBuilder or other non-String wrapper instead.
      */
     private void executeMacroReal(Appendable writer, String macroName, Map<String, Object> macroParameters) throws IOException, TemplateException {
-        StringBuilder sb = new StringBuilder("<@");
-        sb.append(macroName);
-        if (macroParameters != null) {
-            for (Map.Entry<String, Object> parameter : macroParameters.entrySet()) {
-                sb.append(' ');
-                sb.append(parameter.getKey());
-                sb.append("=");
-                Object value = parameter.getValue();
-                if (value instanceof String) {
-                    sb.append(ftlFmt.makeStringLiteral((String) value));
-                } else {
-                    sb.append(value);
-                }
+        if (MacroScreenRenderer.DIRECT_INVOKE_MACROS) { // SCIPIO: invoke without parsing a call string
+            if (Debug.verboseOn()) {
+                Debug.logVerbose("Invoking macro: " + FtlMacroInvoker.makeMacroCall(macroName, macroParameters, ftlFmt), module);
             }
+            FtlMacroInvoker.invokeMacro(getEnvironment(writer), macroName, macroParameters);
+            return;
         }
-        sb.append(" />");
+        String macro = FtlMacroInvoker.makeMacroCall(macroName, macroParameters, ftlFmt);
         if (Debug.verboseOn()) {
-            Debug.logVerbose("Executing macro: " + sb, module);
+            Debug.logVerbose("Executing macro: " + macro, module);
         }
-        executeMacro(writer, sb.toString());
+        executeMacro(writer, macro);
     }
 
     /**
@@ -380,7 +373,9 @@ public class MacroMenuRenderer implements MenuStringRenderer {
 
         }
         if (targetParameters.length() == 0) {
-            targetParameters.append("\"\"");
+            parameters.put("parameterList", ""); // SCIPIO: plain string, so the call needs no raw expression
+        } else {
+            parameters.put("parameterList", targetParameters); // SCIPIO: NOTE: this must NOT be a String; explicitly pass StringBuilder (obscure workaround)
         }
         if (UtilValidate.isNotEmpty(target)) {
             if (!"hidden-form".equals(linkType)) {
@@ -391,7 +386,6 @@ public class MacroMenuRenderer implements MenuStringRenderer {
         }
         parameters.put("linkUrl", linkUrl);
         parameters.put("actionUrl", actionUrl);
-        parameters.put("parameterList", targetParameters); // SCIPIO: NOTE: this must NOT be a String; explicitly pass StringBuilder (obscure workaround)
         String imgStr = "";
         Image img = link.getImage();
         if (img != null) {
@@ -45,7 +45,9 @@ import org.ofbiz.base.util.UtilRender;
 import org.ofbiz.base.util.UtilValidate;
 import org.ofbiz.base.util.cache.UtilCache;
 import org.ofbiz.base.util.collections.MapStack;
+import org.ofbiz.base.util.collections.PagedList;
 import org.ofbiz.base.util.template.FreeMarkerWorker;
+import org.ofbiz.base.util.template.FtlMacroInvoker;
 import org.ofbiz.base.util.template.FtlScriptFormatter;
 import org.ofbiz.entity.Delegator;
 import org.ofbiz.entity.GenericValue;
@@ -100,6 +102,11 @@ public class MacroScreenRenderer implements ScreenStringRenderer {
     protected static final UtilCache<String, Template> ftlHtmlTemplateCache = UtilCache.createUtilCache("widget.screen.template.ftl.macro", 0, 0, false);
 
     protected static final Boolean AUTO_FLUSH_MACROS = UtilProperties.getPropertyAsBoolean("widget", "widget.ftl.render.io.autoFlush", null);
+    /**
+     * SCIPIO: If true, map-based macro calls are invoked directly through {@link FtlMacroInvoker} instead of
+     * being built into a call string that is parsed as a new template for every call.
+     */
+    protected static final boolean DIRECT_INVOKE_MACROS = UtilProperties.getPropertyAsBoolean("widget", "widget.ftl.render.macro.directInvoke", true);
 
     public MacroScreenRenderer(String name, String macroLibraryPath) throws TemplateException, IOException {
         // SCIPIO: use special config for HTML
@@ -198,23 +205,16 @@ public class MacroScreenRenderer implements ScreenStringRenderer {
     private void executeMacro(Appendable writer, String macroName, Map<String, Object> parameters) throws IOException {
         if (!shouldOutput(writer)) return; // SCIPIO: 2017-05-04: new, here as a failsafe (NOTE: not most efficient location for check)
 
-        StringBuilder sb = new StringBuilder("<@");
-        sb.append(macroName);
-        if (parameters != null) {
-            for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
-                sb.append(' ');
-                sb.append(parameter.getKey());
-                sb.append("=");
-                Object value = parameter.getValue();
-                if (value instanceof String) {
-                    sb.append(ftlFmt.makeStringLiteral((String) value));
-                } else {
-                    sb.append(value);
-                }
+        if (DIRECT_INVOKE_MACROS) { // SCIPIO: invoke without parsing a call string
+            try {
+                FtlMacroInvoker.invokeMacro(getEnvironment(writer), macroName, parameters);
+            } catch (TemplateException | IOException e) {
+                Debug.logError(e, "Error rendering screen macro [" + FtlMacroInvoker.makeMacroCall(macroName, parameters, ftlFmt) + "] thru ftl", module);
+                handleError(writer, e);
             }
+            return;
         }
-        sb.append(" />");
-        executeMacro(writer, sb.toString());
+        executeMacro(writer, FtlMacroInvoker.makeMacroCall(macroName, parameters, ftlFmt));
     }
 
     private Environment getEnvironment(Appendable writer) throws TemplateException, IOException {
@@ -951,6 +951,10 @@ public class MacroScreenRenderer implements ScreenStringRenderer {
         HashSet<String> paramNames = new HashSet<>();
         paramNames.add(viewIndexParam);
         paramNames.add(viewSizeParam);
+        // SCIPIO: 3.0.0: Keyset paged lists: pages are reached by cursor, which replaces any cursor in the query string
+        PagedList<?> cursorPagedList = Paginator.getCursorPagedList(modelForm, context);
+        String viewCursorParam = Paginator.getViewCursorParam(context);
+        paramNames.add(viewCursorParam);
         queryString = UtilHttp.stripNamedParamsFromQueryString(queryString, paramNames);
 
         String anchor = "";
@@ -979,19 +983,29 @@ public class MacroScreenRenderer implements ScreenStringRenderer {
         // these links in reverse order
         // Last button
         String lastLinkUrl = "";
-        if (highIndex < listSize) {
+        if (highIndex < listSize && cursorPagedList == null) { // SCIPIO: 3.0.0: Keyset paged lists can't jump to the last page
             int lastIndex = UtilMisc.getViewLastIndex(listSize, viewSize);
             linkText = prepLinkText + lastIndex + anchor;
             lastLinkUrl = rh.makeLink(request, response, linkText);
         }
         String nextLinkUrl = "";
-        if (highIndex < listSize) {
+        if (cursorPagedList != null) { // SCIPIO: 3.0.0
+            if (cursorPagedList.getNextCursor() != null) {
+                linkText = prepLinkText + (viewIndex + 1) + "&amp;" + viewCursorParam + "=" + cursorPagedList.getNextCursor() + anchor;
+                nextLinkUrl = rh.makeLink(request, response, linkText);
+            }
+        } else if (highIndex < listSize) {
             linkText = prepLinkText + (viewIndex + 1) + anchor;
             // - make the link
             nextLinkUrl = rh.makeLink(request, response, linkText);
         }
         String previousLinkUrl = "";
-        if (viewIndex > 0) {
+        if (cursorPagedList != null) { // SCIPIO: 3.0.0
+            if (viewIndex > 0 && cursorPagedList.getPreviousCursor() != null) {
+                linkText = prepLinkText + (viewIndex - 1) + "&amp;" + viewCursorParam + "=" + cursorPagedList.getPreviousCursor() + anchor;
+                previousLinkUrl = rh.makeLink(request, response, linkText);
+            }
+        } else if (viewIndex > 0) {
             linkText = prepLinkText + (viewIndex - 1) + anchor;
             previousLinkUrl = rh.makeLink(request, response, linkText);
         }
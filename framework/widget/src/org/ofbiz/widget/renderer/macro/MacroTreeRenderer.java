@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
@@ -32,10 +33,12 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.ofbiz.base.util.Debug;
 import org.ofbiz.base.util.StringUtil;
+import org.ofbiz.base.util.UtilFormatOut;
 import org.ofbiz.base.util.UtilGenerics;
 import org.ofbiz.base.util.UtilMisc;
 import org.ofbiz.base.util.UtilValidate;
 import org.ofbiz.base.util.template.FreeMarkerWorker;
+import org.ofbiz.base.util.template.FtlMacroInvoker;
 import org.ofbiz.base.util.template.FtlScriptFormatter;
 import org.ofbiz.webapp.control.RequestHandler;
 import org.ofbiz.webapp.taglib.ContentUrlTag;
@@ -120,6 +123,23 @@ public class MacroTreeRenderer implements TreeStringRenderer {
         }
     }
 
+    /**
+     * SCIPIO: Executes the named macro with prebuilt args, through {@link FtlMacroInvoker} unless
+     * <code>widget.ftl.render.macro.directInvoke</code> is disabled.
+     */
+    private void executeMacro(Appendable writer, String macroName, Map<String, Object> args) throws IOException {
+        if (!MacroScreenRenderer.DIRECT_INVOKE_MACROS) {
+            executeMacro(writer, FtlMacroInvoker.makeMacroCall(macroName, args, ftlFmt));
+            return;
+        }
+        try {
+            FtlMacroInvoker.invokeMacro(getEnvironment(writer), macroName, args);
+        } catch (TemplateException | IOException e) {
+            Debug.logError(e, "Error rendering tree thru ftl", module);
+            handleError(writer, e);
+        }
+    }
+
     /**
      * SCIPIO: makes exception handling decision for executeMacro exceptions.
      */
@@ -145,16 +165,11 @@ public class MacroTreeRenderer implements TreeStringRenderer {
      * @param modelWidget The widget
      */
     public void renderBeginningBoundaryComment(Appendable writer, String widgetType, ModelWidget modelWidget) throws IOException {
-        StringWriter sr = new StringWriter();
-        sr.append("<@formatBoundaryComment ");
-        sr.append(" boundaryType=");
-        sr.append(ftlFmt.makeStringLiteral("Begin"));
-        sr.append(" widgetType=");
-        sr.append(ftlFmt.makeStringLiteral(widgetType));
-        sr.append(" widgetName=");
-        sr.append(ftlFmt.makeStringLiteral(modelWidget.getBoundaryCommentName()));
-        sr.append(" />");
-        executeMacro(writer, sr.toString());
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("boundaryType", "Begin");
+        args.put("widgetType", UtilFormatOut.checkNull(widgetType));
+        args.put("widgetName", UtilFormatOut.checkNull(modelWidget.getBoundaryCommentName()));
+        executeMacro(writer, "formatBoundaryComment", args);
     }
 
     /**
@@ -164,16 +179,11 @@ public class MacroTreeRenderer implements TreeStringRenderer {
      * @param modelWidget The widget
      */
     public void renderEndingBoundaryComment(Appendable writer, String widgetType, ModelWidget modelWidget) throws IOException {
-        StringWriter sr = new StringWriter();
-        sr.append("<@formatBoundaryComment ");
-        sr.append(" boundaryType=");
-        sr.append(ftlFmt.makeStringLiteral("End"));
-        sr.append(" widgetType=");
-        sr.append(ftlFmt.makeStringLiteral(widgetType));
-        sr.append(" widgetName=");
-        sr.append(ftlFmt.makeStringLiteral(modelWidget.getBoundaryCommentName()));
-        sr.append(" />");
-        executeMacro(writer, sr.toString());
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("boundaryType", "End");
+        args.put("widgetType", UtilFormatOut.checkNull(widgetType));
+        args.put("widgetName", UtilFormatOut.checkNull(modelWidget.getBoundaryCommentName()));
+        executeMacro(writer, "formatBoundaryComment", args);
     }
 
     public void renderNodeBegin(Appendable writer, Map<String, Object> context, ModelTree.ModelNode node, int depth) throws IOException {
@@ -191,12 +201,9 @@ public class MacroTreeRenderer implements TreeStringRenderer {
             style = "basic-tree scp-tree-widget";
         }
 
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderNodeBegin ");
-        sr.append(" style=");
-        sr.append(ftlFmt.makeStringLiteral(style));
-        sr.append(" />");
-        executeMacro(writer, sr.toString());
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("style", UtilFormatOut.checkNull(style));
+        executeMacro(writer, "renderNodeBegin", args);
 
         String pkName = node.getPkName(context);
         String entityId = null;
@@ -270,14 +277,10 @@ public class MacroTreeRenderer implements TreeStringRenderer {
 
     public void renderNodeEnd(Appendable writer, Map<String, Object> context, ModelTree.ModelNode node) throws IOException {
         Boolean processChildren = (Boolean) context.get("processChildren");
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderNodeEnd ");
-        sr.append(" processChildren=");
-        sr.append(Boolean.toString(processChildren));
-        sr.append(" isRootNode=");
-        sr.append(Boolean.toString(node.isRootNode()));
-        sr.append(" />");
-        executeMacro(writer, sr.toString());
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("processChildren", processChildren);
+        args.put("isRootNode", node.isRootNode());
+        executeMacro(writer, "renderNodeEnd", args);
         if (node.isRootNode()) {
             if (ModelWidget.widgetBoundaryCommentsEnabled(context)) {
                 renderEndingBoundaryComment(writer, "Tree Widget", node.getModelTree());
@@ -288,12 +291,9 @@ public class MacroTreeRenderer implements TreeStringRenderer {
     public void renderLastElement(Appendable writer, Map<String, Object> context, ModelTree.ModelNode node) throws IOException {
         Boolean processChildren = (Boolean) context.get("processChildren");
         if (processChildren) {
-            StringWriter sr = new StringWriter();
-            sr.append("<@renderLastElement ");
-            sr.append("style=");
-            sr.append(ftlFmt.makeStringLiteral("basic-tree"));
-            sr.append("/>");
-            executeMacro(writer, sr.toString());
+            Map<String, Object> args = new LinkedHashMap<>();
+            args.put("style", "basic-tree");
+            executeMacro(writer, "renderLastElement", args);
         }
     }
 
@@ -302,16 +302,11 @@ public class MacroTreeRenderer implements TreeStringRenderer {
         String style = label.getStyle(context);
         String labelText = label.getText(context);
 
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderLabel ");
-        sr.append("id=");
-        sr.append(ftlFmt.makeStringLiteral(id));
-        sr.append(" style=");
-        sr.append(ftlFmt.makeStringLiteral(style));
-        sr.append(" labelText=");
-        sr.append(ftlFmt.makeStringLiteral(labelText));
-        sr.append(" />");
-        executeMacro(writer, sr.toString());
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("id", UtilFormatOut.checkNull(id));
+        args.put("style", UtilFormatOut.checkNull(style));
+        args.put("labelText", UtilFormatOut.checkNull(labelText));
+        executeMacro(writer, "renderLabel", args);
     }
 
     public void renderLink(Appendable writer, Map<String, Object> context, ModelTree.ModelNode.Link link) throws IOException {
@@ -340,26 +335,16 @@ public class MacroTreeRenderer implements TreeStringRenderer {
             imgStr = sw.toString();
         }
 
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderLink ");
-        sr.append("id=");
-        sr.append(ftlFmt.makeStringLiteral(id));
-        sr.append(" style=");
-        sr.append(ftlFmt.makeStringLiteral(style));
-        sr.append(" name=");
-        sr.append(ftlFmt.makeStringLiteral(name));
-        sr.append(" title=");
-        sr.append(ftlFmt.makeStringLiteral(title));
-        sr.append(" targetWindow=");
-        sr.append(ftlFmt.makeStringLiteral(targetWindow));
-        sr.append(" linkUrl=");
-        sr.append(ftlFmt.makeStringLiteral(linkUrl.toString()));
-        sr.append(" linkText=");
-        sr.append(ftlFmt.makeStringLiteral(linkText));
-        sr.append(" imgStr=");
-        sr.append(ftlFmt.makeStringLiteral(imgStr));
-        sr.append(" />");
-        executeMacro(writer, sr.toString());
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("id", UtilFormatOut.checkNull(id));
+        args.put("style", UtilFormatOut.checkNull(style));
+        args.put("name", UtilFormatOut.checkNull(name));
+        args.put("title", UtilFormatOut.checkNull(title));
+        args.put("targetWindow", UtilFormatOut.checkNull(targetWindow));
+        args.put("linkUrl", UtilFormatOut.checkNull(linkUrl.toString()));
+        args.put("linkText", UtilFormatOut.checkNull(linkText));
+        args.put("imgStr", UtilFormatOut.checkNull(imgStr));
+        executeMacro(writer, "renderLink", args);
     }
 
     public void renderImage(Appendable writer, Map<String, Object> context, ModelTree.ModelNode.Image image) throws IOException {
@@ -401,26 +386,16 @@ public class MacroTreeRenderer implements TreeStringRenderer {
         } else {
             urlString = src;
         }
-        StringWriter sr = new StringWriter();
-        sr.append("<@renderImage ");
-        sr.append("src=");
-        sr.append(ftlFmt.makeStringLiteral(src));
-        sr.append(" id=");
-        sr.append(ftlFmt.makeStringLiteral(id));
-        sr.append(" style=");
-        sr.append(ftlFmt.makeStringLiteral(style));
-        sr.append(" wid=");
-        sr.append(ftlFmt.makeStringLiteral(wid));
-        sr.append(" hgt=");
-        sr.append(ftlFmt.makeStringLiteral(hgt));
-        sr.append(" border=");
-        sr.append(ftlFmt.makeStringLiteral(border));
-        sr.append(" alt=");
-        sr.append(ftlFmt.makeStringLiteral(alt));
-        sr.append(" urlString=");
-        sr.append(ftlFmt.makeStringLiteral(urlString));
-        sr.append(" />");
-        executeMacro(writer, sr.toString());
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("src", UtilFormatOut.checkNull(src));
+        args.put("id", UtilFormatOut.checkNull(id));
+        args.put("style", UtilFormatOut.checkNull(style));
+        args.put("wid", UtilFormatOut.checkNull(wid));
+        args.put("hgt", UtilFormatOut.checkNull(hgt));
+        args.put("border", UtilFormatOut.checkNull(border));
+        args.put("alt", UtilFormatOut.checkNull(alt));
+        args.put("urlString", UtilFormatOut.checkNull(urlString));
+        executeMacro(writer, "renderImage", args);
     }
 
     public ScreenStringRenderer getScreenStringRenderer(Map<String, Object> context) {